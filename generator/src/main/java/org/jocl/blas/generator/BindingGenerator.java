@@ -0,0 +1,632 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.generator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jocl.blas.generator.BindingSpec.JavaMethod;
+import org.jocl.blas.generator.BindingSpec.JavaParameter;
+import org.jocl.blas.generator.BindingSpec.Kind;
+import org.jocl.blas.generator.BindingSpec.NativeParameter;
+import org.jocl.blas.generator.BindingSpec.NativeRoutine;
+
+/**
+ * Generates the bindings of the synchronous Read/Write helpers of
+ * <code>CLBLAS</code> that transfer Java arrays in critical regions,
+ * from the {@link BindingSpec} in <code>critical-transfers.spec</code>.
+ * The other functions of the binding are not generated. <br>
+ * <br>
+ * The generated code consists of
+ * <ul>
+ *   <li>the public <code>float[]</code> and <code>double[]</code>
+ *   overloads in <code>CLBLAS.java</code></li>
+ *   <li>the <code>native</code> declarations in
+ *   <code>CLBLAS.java</code></li>
+ *   <li>the JNI functions in <code>JOCLBLAS.cpp</code></li>
+ *   <li>the JNI function declarations in <code>JOCLBLAS.hpp</code></li>
+ * </ul>
+ * Each part replaces the lines between the marker comments
+ * <code>// BindingGenerator: begin <i>region</i></code> and
+ * <code>// BindingGenerator: end <i>region</i></code> in the
+ * respective file. The chunking logic that the overloads call is not
+ * generated. <br>
+ * <br>
+ * The main method updates the files. With the argument
+ * <code>--check</code>, it only reports the regions that are not up to
+ * date, and fails if there are any. The path of the JOCLBLAS project
+ * directory may be given as the last argument, and defaults to the
+ * current directory.
+ */
+public class BindingGenerator
+{
+    /**
+     * The prefix of the marker comments
+     */
+    static final String MARKER = "// BindingGenerator: ";
+
+    /**
+     * The specification of the generated bindings
+     */
+    private final BindingSpec spec;
+
+    /**
+     * Creates a new generator for the given specification
+     *
+     * @param spec The specification
+     */
+    public BindingGenerator(BindingSpec spec)
+    {
+        this.spec = spec;
+    }
+
+    /**
+     * The entry point of the generator
+     *
+     * @param args The arguments
+     * @throws IOException If a file can not be read or written, or if
+     * a region is not up to date in <code>--check</code> mode
+     */
+    public static void main(String[] args) throws IOException
+    {
+        boolean check = false;
+        String directory = ".";
+        for (String arg : args)
+        {
+            if (arg.equals("--check"))
+            {
+                check = true;
+            }
+            else
+            {
+                directory = arg;
+            }
+        }
+        BindingGenerator generator =
+            new BindingGenerator(BindingSpec.readCriticalTransfers());
+        int outdated = generator.update(new File(directory), check);
+        if (check && outdated > 0)
+        {
+            throw new IOException(outdated + " generated regions are not " +
+                "up to date. Run the generator to update them.");
+        }
+    }
+
+    /**
+     * Updates all regions in the given project directory that are not up
+     * to date, or only reports them if <code>check</code> is
+     * <code>true</code>
+     *
+     * @param root The project directory
+     * @param check Whether the regions should only be checked
+     * @return The number of regions that were not up to date
+     * @throws IOException If a file can not be read or written
+     */
+    public int update(File root, boolean check) throws IOException
+    {
+        int outdated = 0;
+        for (Map.Entry<File, Map<String, String>> entry :
+            createRegions(root).entrySet())
+        {
+            File file = entry.getKey();
+            for (Map.Entry<String, String> region :
+                entry.getValue().entrySet())
+            {
+                String name = region.getKey();
+                String content = region.getValue();
+                if (content.equals(readRegion(file, name)))
+                {
+                    continue;
+                }
+                outdated++;
+                if (check)
+                {
+                    System.out.println(file + ": " + name +
+                        " is not up to date");
+                }
+                else
+                {
+                    writeRegion(file, name, content);
+                    System.out.println(file + ": " + name + " updated");
+                }
+            }
+        }
+        return outdated;
+    }
+
+    /**
+     * Returns the generated content of all regions, for each file in the
+     * given project directory
+     *
+     * @param root The project directory
+     * @return The regions
+     */
+    Map<File, Map<String, String>> createRegions(File root)
+    {
+        Map<File, Map<String, String>> result =
+            new LinkedHashMap<File, Map<String, String>>();
+        Map<String, String> clblas = new LinkedHashMap<String, String>();
+        clblas.put("overloads", generateJavaMethods());
+        clblas.put("natives", generateNativeDeclarations());
+        result.put(new File(root, "src/main/java/org/jocl/blas/CLBLAS.java"),
+            clblas);
+        result.put(new File(root, "src/main/native/JOCLBLAS.cpp"),
+            Collections.singletonMap(
+                "functions", generateJniFunctions()));
+        result.put(new File(root, "src/main/native/JOCLBLAS.hpp"),
+            Collections.singletonMap(
+                "declarations", generateJniDeclarations()));
+        return result;
+    }
+
+    /**
+     * Generates the public Java methods, for all element types
+     *
+     * @return The code
+     */
+    String generateJavaMethods()
+    {
+        List<String> blocks = new ArrayList<String>();
+        for (String elementType : spec.elementTypes)
+        {
+            for (JavaMethod method : spec.javaMethods)
+            {
+                blocks.add(generateJavaMethod(method, elementType));
+            }
+        }
+        return join(blocks, "\n");
+    }
+
+    /**
+     * Generates the given public Java method for the given element type
+     */
+    private static String generateJavaMethod(
+        JavaMethod method, String elementType)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("    /**\n");
+        for (String line : method.doc)
+        {
+            sb.append("     * ").append(line).append("\n");
+        }
+        sb.append("     *\n");
+        for (JavaParameter parameter : method.parameters)
+        {
+            sb.append("     * @param ").append(parameter.name).append(" ");
+            sb.append(parameter.doc).append("\n");
+        }
+        sb.append("     * @return The {@link clblasStatus}\n");
+        sb.append("     * @throws IndexOutOfBoundsException If the region " +
+            "of the array is\n");
+        sb.append("     * not completely contained in the array\n");
+        sb.append("     */\n");
+        sb.append("    public static int ").append(method.name).append("(\n");
+        for (int i = 0; i < method.parameters.size(); i++)
+        {
+            JavaParameter parameter = method.parameters.get(i);
+            sb.append("        ").append(parameter.type).append(" ");
+            sb.append(parameter.name);
+            sb.append(i < method.parameters.size() - 1 ? ", \n" : ")\n");
+        }
+        sb.append("    {\n");
+        sb.append("        return ");
+        if (method.checked)
+        {
+            sb.append("checkResult(");
+        }
+        sb.append(method.callee).append("(");
+        for (int i = 0; i < method.arguments.size(); i++)
+        {
+            if (i > 0)
+            {
+                sb.append("            ");
+            }
+            sb.append(method.arguments.get(i));
+            if (i < method.arguments.size() - 1)
+            {
+                sb.append(", \n");
+            }
+        }
+        sb.append(method.checked ? "));\n" : ");\n");
+        sb.append("    }\n");
+        return sb.toString().replace("$T", elementType);
+    }
+
+    /**
+     * Generates the <code>native</code> declarations
+     *
+     * @return The code
+     */
+    String generateNativeDeclarations()
+    {
+        List<String> blocks = new ArrayList<String>();
+        for (NativeRoutine routine : spec.nativeRoutines)
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append("    private static native int ");
+            sb.append(routine.name).append("CriticalNative(\n");
+            for (int i = 0; i < routine.parameters.size(); i++)
+            {
+                NativeParameter parameter = routine.parameters.get(i);
+                sb.append("        ").append(parameter.kind.javaType);
+                sb.append(" ").append(parameter.name);
+                sb.append(i < routine.parameters.size() - 1 ? ", \n" : ");\n");
+            }
+            blocks.add(sb.toString());
+        }
+        return join(blocks, "\n");
+    }
+
+    /**
+     * Generates the JNI functions
+     *
+     * @return The code
+     */
+    String generateJniFunctions()
+    {
+        List<String> blocks = new ArrayList<String>();
+        for (NativeRoutine routine : spec.nativeRoutines)
+        {
+            blocks.add(generateJniFunction(routine));
+        }
+        return join(blocks, "\n");
+    }
+
+    /**
+     * Generates the JNI function for the given routine
+     */
+    private static String generateJniFunction(NativeRoutine routine)
+    {
+        String name = routine.name;
+        List<NativeParameter> parameters = routine.parameters;
+        String array = routine.getArray().name;
+        StringBuilder sb = new StringBuilder();
+        sb.append("/**\n");
+        for (String line : routine.doc)
+        {
+            sb.append("* ").append(line).append("\n");
+        }
+        sb.append("*/\n");
+        sb.append("JNIEXPORT jint JNICALL Java_org_jocl_blas_CLBLAS_");
+        sb.append(name).append("CriticalNative(JNIEnv *env, jclass cls");
+        for (NativeParameter parameter : parameters)
+        {
+            sb.append(", ").append(parameter.kind.jniType);
+            sb.append(" ").append(parameter.name);
+        }
+        sb.append(")\n");
+        sb.append("{\n");
+
+        sb.append("    // Null-checks for non-primitive arguments\n");
+        for (NativeParameter parameter : parameters)
+        {
+            if (parameter.kind.jniType.equals("jobject"))
+            {
+                sb.append("    if (").append(parameter.name);
+                sb.append(" == nullptr)\n");
+                sb.append("    {\n");
+                sb.append("        ThrowByName(env, " +
+                    "\"java/lang/NullPointerException\", \"Parameter '");
+                sb.append(parameter.name).append("' is null for ");
+                sb.append(name).append("\");\n");
+                sb.append("        return JOCL_BLAS_STATUS_INTERNAL_ERROR;\n");
+                sb.append("    }\n");
+            }
+        }
+        sb.append("\n");
+
+        List<String> formats = new ArrayList<String>();
+        List<String> names = new ArrayList<String>();
+        for (NativeParameter parameter : parameters)
+        {
+            formats.add(parameter.name + "=" + parameter.kind.format);
+            names.add(parameter.name);
+        }
+        sb.append("    // Log message\n");
+        sb.append("    Logger::log(LOG_TRACE, \"Executing ").append(name);
+        sb.append("Critical(").append(join(formats, ", "));
+        sb.append(")\\n\",\n");
+        sb.append("        ").append(join(names, ", ")).append(");\n");
+        sb.append("\n");
+
+        sb.append("    // Native variable declarations\n");
+        for (NativeParameter parameter : parameters)
+        {
+            Kind kind = parameter.kind;
+            if (kind == Kind.ARRAY)
+            {
+                continue;
+            }
+            sb.append("    ").append(kind.nativeType).append(" ");
+            sb.append(parameter.name).append("_native");
+            if (kind == Kind.SIZE)
+            {
+                sb.append(" = 0");
+            }
+            else if (kind != Kind.ORDER)
+            {
+                sb.append(" = nullptr");
+            }
+            sb.append(";\n");
+        }
+        sb.append("\n");
+
+        sb.append("    // Obtain native variable values. This has to be " +
+            "done before the \n");
+        sb.append("    // array is accessed, because it involves JNI calls\n");
+        for (NativeParameter parameter : parameters)
+        {
+            Kind kind = parameter.kind;
+            String n = parameter.name;
+            if (kind == Kind.ORDER || kind == Kind.SIZE)
+            {
+                sb.append("    ").append(n).append("_native = (");
+                sb.append(kind.nativeType).append(")").append(n);
+                sb.append(";\n");
+            }
+            else if (kind != Kind.ARRAY)
+            {
+                sb.append("    if (!initNative(env, ").append(n);
+                sb.append(", ").append(n).append("_native, true)) " +
+                    "return JOCL_BLAS_STATUS_INTERNAL_ERROR;\n");
+            }
+        }
+        sb.append("\n");
+
+        List<String> arguments = new ArrayList<String>();
+        for (NativeParameter parameter : parameters)
+        {
+            arguments.add(parameter.kind == Kind.ARRAY ?
+                "array_native" : parameter.name + "_native");
+        }
+        sb.append("    // Native function call, with the array held in " +
+            "a critical region\n");
+        sb.append("    void *array_native = " +
+            "env->GetPrimitiveArrayCritical((jarray)");
+        sb.append(array).append(", nullptr);\n");
+        sb.append("    if (array_native == nullptr)\n");
+        sb.append("    {\n");
+        sb.append("        return JOCL_BLAS_STATUS_INTERNAL_ERROR;\n");
+        sb.append("    }\n");
+        sb.append("    clblasStatus jniResult_native = ").append(name);
+        sb.append("(").append(join(arguments, ", "));
+        sb.append(", 0, nullptr);\n");
+        sb.append("    env->ReleasePrimitiveArrayCritical((jarray)");
+        sb.append(array).append(", array_native, ");
+        sb.append(routine.write ? "JNI_ABORT" : "0").append(");\n");
+        sb.append("\n");
+
+        sb.append("    // Return the result\n");
+        sb.append("    jint jniResult = (jint)jniResult_native;\n");
+        sb.append("    return jniResult;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Generates the declarations of the JNI functions
+     *
+     * @return The code
+     */
+    String generateJniDeclarations()
+    {
+        List<String> blocks = new ArrayList<String>();
+        for (NativeRoutine routine : spec.nativeRoutines)
+        {
+            StringBuilder signature = new StringBuilder("(");
+            List<String> types = new ArrayList<String>();
+            types.add("JNIEnv *");
+            types.add("jclass");
+            for (NativeParameter parameter : routine.parameters)
+            {
+                signature.append(parameter.kind.signature);
+                types.add(parameter.kind.jniType);
+            }
+            signature.append(")I");
+            String method = routine.name + "CriticalNative";
+            StringBuilder sb = new StringBuilder();
+            sb.append("    /*\n");
+            sb.append("    * Class:     org_jocl_blas_CLBLAS\n");
+            sb.append("    * Method:    ").append(method).append("\n");
+            sb.append("    * Signature: ").append(signature).append("\n");
+            sb.append("    */\n");
+            sb.append("    JNIEXPORT jint JNICALL Java_org_jocl_blas_CLBLAS_");
+            sb.append(method).append("\n");
+            sb.append("        (").append(join(types, ", ")).append(");\n");
+            blocks.add(sb.toString());
+        }
+        return join(blocks, "\n");
+    }
+
+    /**
+     * Returns the lines between the markers of the given region in the
+     * given file, with <code>\n</code> line separators
+     *
+     * @param file The file
+     * @param region The region
+     * @return The content
+     * @throws IOException If the file can not be read, or does not
+     * contain the markers of the region
+     */
+    static String readRegion(File file, String region) throws IOException
+    {
+        List<String> lines = readLines(file);
+        int range[] = findRegion(file, lines, region);
+        StringBuilder sb = new StringBuilder();
+        for (int i = range[0] + 1; i < range[1]; i++)
+        {
+            sb.append(lines.get(i)).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Replace the lines between the markers of the given region in the
+     * given file with the given content, keeping the line separators of
+     * the file
+     *
+     * @param file The file
+     * @param region The region
+     * @param content The content, with <code>\n</code> line separators
+     * @throws IOException If the file can not be read or written, or
+     * does not contain the markers of the region
+     */
+    static void writeRegion(File file, String region, String content)
+        throws IOException
+    {
+        String separator = readText(file).contains("\r\n") ? "\r\n" : "\n";
+        List<String> lines = readLines(file);
+        int range[] = findRegion(file, lines, region);
+        List<String> result = new ArrayList<String>();
+        result.addAll(lines.subList(0, range[0] + 1));
+        if (content.length() > 0)
+        {
+            String text = content.substring(0, content.length() - 1);
+            result.addAll(Arrays.asList(text.split("\n", -1)));
+        }
+        result.addAll(lines.subList(range[1], lines.size()));
+        Writer writer = new OutputStreamWriter(
+            new FileOutputStream(file), "UTF-8");
+        try
+        {
+            for (String line : result)
+            {
+                writer.write(line);
+                writer.write(separator);
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Returns the indices of the begin and end markers of the given
+     * region in the given lines
+     */
+    private static int[] findRegion(File file, List<String> lines,
+        String region) throws IOException
+    {
+        int begin = -1;
+        int end = -1;
+        for (int i = 0; i < lines.size(); i++)
+        {
+            String line = lines.get(i).trim();
+            if (line.equals(MARKER + "begin " + region))
+            {
+                begin = i;
+            }
+            else if (line.equals(MARKER + "end " + region))
+            {
+                end = i;
+            }
+        }
+        if (begin == -1 || end < begin)
+        {
+            throw new IOException(
+                "No region " + region + " found in " + file);
+        }
+        return new int[] { begin, end };
+    }
+
+    /**
+     * Returns the lines of the given file
+     */
+    private static List<String> readLines(File file) throws IOException
+    {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new FileInputStream(file), "UTF-8"));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                lines.add(line);
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the contents of the given file
+     */
+    private static String readText(File file) throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        InputStreamReader reader = new InputStreamReader(
+            new FileInputStream(file), "UTF-8");
+        try
+        {
+            char buffer[] = new char[8192];
+            int n;
+            while ((n = reader.read(buffer)) != -1)
+            {
+                sb.append(buffer, 0, n);
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Joins the given strings with the given separator
+     */
+    private static String join(List<String> strings, String separator)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < strings.size(); i++)
+        {
+            if (i > 0)
+            {
+                sb.append(separator);
+            }
+            sb.append(strings.get(i));
+        }
+        return sb.toString();
+    }
+}
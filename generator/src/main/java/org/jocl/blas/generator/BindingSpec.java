@@ -0,0 +1,414 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.generator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The specification of the bindings that are generated by the
+ * {@link BindingGenerator}, as it is read from a specification file.
+ * The format of the file is described in
+ * <code>critical-transfers.spec</code>.
+ */
+public class BindingSpec
+{
+    /**
+     * The name of the resource that contains the specification of the
+     * critical array transfers
+     */
+    static final String CRITICAL_TRANSFERS = "critical-transfers.spec";
+
+    /**
+     * The kinds of the parameters of the native methods, with their Java
+     * type, JNI type, JNI signature, native type and format specifier
+     */
+    enum Kind
+    {
+        ORDER("int", "jint", "I", "clblasOrder", "%d"),
+        SIZE("long", "jlong", "J", "size_t", "%ld"),
+        MEM("cl_mem", "jobject", "Lorg/jocl/cl_mem;", "cl_mem", "%p"),
+        QUEUE("cl_command_queue", "jobject",
+            "Lorg/jocl/cl_command_queue;", "cl_command_queue", "%p"),
+        ARRAY("Object", "jobject", "Ljava/lang/Object;", null, "%p");
+
+        final String javaType;
+        final String jniType;
+        final String signature;
+        final String nativeType;
+        final String format;
+
+        Kind(String javaType, String jniType, String signature,
+            String nativeType, String format)
+        {
+            this.javaType = javaType;
+            this.jniType = jniType;
+            this.signature = signature;
+            this.nativeType = nativeType;
+            this.format = format;
+        }
+    }
+
+    /**
+     * A parameter of a native method
+     */
+    static class NativeParameter
+    {
+        final Kind kind;
+        final String name;
+
+        NativeParameter(Kind kind, String name)
+        {
+            this.kind = kind;
+            this.name = name;
+        }
+    }
+
+    /**
+     * A native method that calls a synchronous clBLAS transfer function
+     * with an array that is held in a critical region
+     */
+    static class NativeRoutine
+    {
+        final String name;
+        final boolean write;
+        final List<String> doc = new ArrayList<String>();
+        final List<NativeParameter> parameters =
+            new ArrayList<NativeParameter>();
+
+        NativeRoutine(String name, boolean write)
+        {
+            this.name = name;
+            this.write = write;
+        }
+
+        NativeParameter getArray()
+        {
+            for (NativeParameter parameter : parameters)
+            {
+                if (parameter.kind == Kind.ARRAY)
+                {
+                    return parameter;
+                }
+            }
+            throw new IllegalStateException("No array in " + name);
+        }
+    }
+
+    /**
+     * A parameter of a public Java method. The type may contain the
+     * placeholder <code>$T</code> for the element type.
+     */
+    static class JavaParameter
+    {
+        final String type;
+        final String name;
+        final String doc;
+
+        JavaParameter(String type, String name, String doc)
+        {
+            this.type = type;
+            this.name = name;
+            this.doc = doc;
+        }
+    }
+
+    /**
+     * A public Java method that transfers a Java array. The documentation
+     * and the arguments may contain the placeholder <code>$T</code> for
+     * the element type. The arguments of the call are given in lines.
+     */
+    static class JavaMethod
+    {
+        final String name;
+        final List<String> doc = new ArrayList<String>();
+        final List<JavaParameter> parameters =
+            new ArrayList<JavaParameter>();
+        final List<String> arguments = new ArrayList<String>();
+        String callee;
+        boolean checked;
+
+        JavaMethod(String name)
+        {
+            this.name = name;
+        }
+    }
+
+    /**
+     * The element types of the Java overloads
+     */
+    final List<String> elementTypes = new ArrayList<String>();
+
+    /**
+     * The native methods
+     */
+    final List<NativeRoutine> nativeRoutines = new ArrayList<NativeRoutine>();
+
+    /**
+     * The public Java methods
+     */
+    final List<JavaMethod> javaMethods = new ArrayList<JavaMethod>();
+
+    /**
+     * Reads the specification of the critical array transfers from the
+     * resource of this package
+     *
+     * @return The specification
+     * @throws IOException If the resource can not be read or is not valid
+     */
+    public static BindingSpec readCriticalTransfers() throws IOException
+    {
+        InputStream inputStream =
+            BindingSpec.class.getResourceAsStream(CRITICAL_TRANSFERS);
+        if (inputStream == null)
+        {
+            throw new IOException(
+                "Resource " + CRITICAL_TRANSFERS + " not found");
+        }
+        Reader reader = new InputStreamReader(inputStream, "UTF-8");
+        try
+        {
+            return read(reader);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads a specification from the given reader. The reader is not
+     * closed.
+     *
+     * @param reader The reader
+     * @return The specification
+     * @throws IOException If the specification can not be read or is not
+     * valid
+     */
+    public static BindingSpec read(Reader reader) throws IOException
+    {
+        BindingSpec spec = new BindingSpec();
+        Map<String, String> parameterDocs = new HashMap<String, String>();
+        NativeRoutine routine = null;
+        JavaMethod method = null;
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = bufferedReader.readLine()) != null)
+        {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.length() == 0 || trimmed.startsWith("#"))
+            {
+                continue;
+            }
+            String keyword = trimmed.split("\\s+", 2)[0];
+            String rest = trimmed.substring(keyword.length()).trim();
+            String error = null;
+            if (keyword.equals("end"))
+            {
+                if (routine == null && method == null)
+                {
+                    error = "Unexpected end";
+                }
+                else if (method != null && method.callee == null)
+                {
+                    error = "Missing call in method " + method.name;
+                }
+                routine = null;
+                method = null;
+            }
+            else if (routine != null)
+            {
+                error = parseNativeLine(routine, keyword, trimmed, rest);
+            }
+            else if (method != null)
+            {
+                error = parseMethodLine(
+                    method, parameterDocs, keyword, trimmed, rest);
+            }
+            else if (keyword.equals("types"))
+            {
+                spec.elementTypes.addAll(Arrays.asList(rest.split("\\s+")));
+            }
+            else if (keyword.equals("param"))
+            {
+                String tokens[] = rest.split("\\s+", 2);
+                if (tokens.length != 2)
+                {
+                    error = "Expected param <name> <description>";
+                }
+                else
+                {
+                    parameterDocs.put(tokens[0], tokens[1]);
+                }
+            }
+            else if (keyword.equals("native"))
+            {
+                String tokens[] = rest.split("\\s+");
+                if (tokens.length != 2 || !(tokens[1].equals("write") ||
+                    tokens[1].equals("read")))
+                {
+                    error = "Expected native <name> <write|read>";
+                }
+                else
+                {
+                    routine = new NativeRoutine(tokens[0],
+                        tokens[1].equals("write"));
+                    spec.nativeRoutines.add(routine);
+                }
+            }
+            else if (keyword.equals("method"))
+            {
+                method = new JavaMethod(rest);
+                spec.javaMethods.add(method);
+            }
+            else
+            {
+                error = "Unknown keyword " + keyword;
+            }
+            if (error != null)
+            {
+                throw new IOException(
+                    "Line " + lineNumber + ": " + error + ": " + line);
+            }
+        }
+        if (routine != null || method != null)
+        {
+            throw new IOException("Missing end at the end of the input");
+        }
+        return spec;
+    }
+
+    /**
+     * Parses a line inside of a <code>native</code> block
+     *
+     * @return An error message, or <code>null</code>
+     */
+    private static String parseNativeLine(NativeRoutine routine,
+        String keyword, String trimmed, String rest)
+    {
+        if (keyword.equals("doc"))
+        {
+            routine.doc.add(docText(trimmed));
+            return null;
+        }
+        if (!keyword.equals("parameters"))
+        {
+            return "Unknown keyword " + keyword + " in native";
+        }
+        for (String token : rest.split("\\s+"))
+        {
+            int colon = token.indexOf(':');
+            Kind kind = Kind.SIZE;
+            String name = token;
+            if (colon != -1)
+            {
+                name = token.substring(0, colon);
+                try
+                {
+                    kind = Kind.valueOf(
+                        token.substring(colon + 1).toUpperCase());
+                }
+                catch (IllegalArgumentException e)
+                {
+                    return "Unknown kind in " + token;
+                }
+            }
+            routine.parameters.add(new NativeParameter(kind, name));
+        }
+        return null;
+    }
+
+    /**
+     * Parses a line inside of a <code>method</code> block
+     *
+     * @return An error message, or <code>null</code>
+     */
+    private static String parseMethodLine(JavaMethod method,
+        Map<String, String> parameterDocs, String keyword, String trimmed,
+        String rest)
+    {
+        if (keyword.equals("doc"))
+        {
+            method.doc.add(docText(trimmed));
+        }
+        else if (keyword.equals("parameter"))
+        {
+            String tokens[] = rest.split("\\s+", 3);
+            if (tokens.length < 2)
+            {
+                return "Expected parameter <type> <name> [<description>]";
+            }
+            String doc = tokens.length == 3 ?
+                tokens[2] : parameterDocs.get(tokens[1]);
+            if (doc == null)
+            {
+                return "No description for " + tokens[1];
+            }
+            method.parameters.add(
+                new JavaParameter(tokens[0], tokens[1], doc));
+        }
+        else if (keyword.equals("call"))
+        {
+            String tokens[] = rest.split("\\s+");
+            method.callee = tokens[0];
+            method.checked =
+                tokens.length > 1 && tokens[1].equals("checked");
+        }
+        else if (keyword.equals("arguments"))
+        {
+            method.arguments.add(rest);
+        }
+        else
+        {
+            return "Unknown keyword " + keyword + " in method";
+        }
+        return null;
+    }
+
+    /**
+     * Returns the text after the <code>doc</code> keyword of the given
+     * trimmed line, keeping its leading whitespace
+     */
+    private static String docText(String trimmed)
+    {
+        if (trimmed.length() <= "doc ".length())
+        {
+            return "";
+        }
+        return trimmed.substring("doc ".length());
+    }
+}
@@ -0,0 +1,256 @@
+# The synchronous Read/Write helpers of CLBLAS that transfer Java arrays
+# in critical regions.
+#
+# Lines starting with '#' and empty lines are ignored. Inside of a block,
+# the leading whitespace of a line is ignored. The text after "doc " is
+# used verbatim.
+#
+# types <type>...
+#     The element types of the Java overloads. In the "method" blocks,
+#     "$T" is replaced with the element type.
+#
+# param <name> <description>
+#     The description of a Java parameter that is used when a "parameter"
+#     line of a method does not contain a description.
+#
+# native <name> <write|read>
+#     A private native method <name>CriticalNative, and its JNI function
+#     that calls the clBLAS function <name> with the array held in a
+#     critical region. Contains "doc" lines for the JNI function, and
+#     "parameters" lines with <name>[:<kind>] entries. The kinds are order,
+#     size, mem, queue and array, and the default is size.
+#
+# method <name>
+#     A public Java overload for each element type. Contains "doc" lines,
+#     one "parameter <type> <name> [<description>]" line per parameter,
+#     one "call <function> [checked]" line, and one "arguments" line for
+#     each line of arguments of the call. With "checked", the result is
+#     passed to checkResult.
+
+types float double
+
+param order The {@link clblasOrder}
+param offA The offset of A, in elements
+param ldA The leading dimension of A
+param nrA The number of rows of A
+param ncA The number of columns of A
+param xA The x position of the region in A
+param yA The y position of the region in A
+param offB The offset of B, in elements
+param ldB The leading dimension of B
+param nrB The number of rows of B
+param ncB The number of columns of B
+param xB The x position of the region in B
+param yB The y position of the region in B
+param sx The size of the matrix in the x dimension
+param sy The size of the matrix in the y dimension
+param nx The size of the region in the x dimension
+param ny The size of the region in the y dimension
+param nb_elem The number of elements
+param command_queue The command queue
+param numEventsInWaitList The number of events in the wait list
+param eventWaitList The wait list
+
+native clblasWriteSubMatrix write
+    doc Copies synchronously a sub-matrix from a Java array (A) to device (B).
+    doc     See  clblasWriteSubMatrix(). The array is accessed in a critical region
+    doc     instead of being copied. The caller is responsible for waiting for
+    doc     all events that the transfer depends on and for all commands that
+    doc     were enqueued before, and for limiting the size of the transfer,
+    doc     because no other JNI functions may be called and the garbage
+    doc     collector may be blocked while the array is held.
+    parameters order:order element_size A:array offA ldA nrA ncA xA yA
+    parameters B:mem offB ldB nrB ncB xB yB nx ny command_queue:queue
+end
+
+native clblasReadSubMatrix read
+    doc Copies synchronously a sub-matrix from device (A) to a Java array (B).
+    doc     See  clblasReadSubMatrix(). The array is accessed in a critical region
+    doc     instead of being copied. The caller is responsible for waiting for
+    doc     all events that the transfer depends on and for all commands that
+    doc     were enqueued before, and for limiting the size of the transfer,
+    doc     because no other JNI functions may be called and the garbage
+    doc     collector may be blocked while the array is held.
+    parameters order:order element_size A:mem offA ldA nrA ncA xA yA
+    parameters B:array offB ldB nrB ncB xB yB nx ny command_queue:queue
+end
+
+native clblasWriteVector write
+    doc Copies synchronously a vector from a Java array (A) to device (B).
+    doc     See  clblasWriteVector() and  clblasWriteSubMatrixCriticalNative().
+    parameters nb_elem element_size A:array offA B:mem offB
+    parameters command_queue:queue
+end
+
+native clblasReadVector read
+    doc Copies synchronously a vector from device (A) to a Java array (B).
+    doc     See  clblasReadVector() and  clblasWriteSubMatrixCriticalNative().
+    parameters nb_elem element_size A:mem offA B:array offB
+    parameters command_queue:queue
+end
+
+method clblasWriteSubMatrix
+    doc Copies synchronously a sub-matrix from a Java array (A) to device
+    doc (B). See {@link #clblasWriteSubMatrix(int, long, Pointer, long,
+    doc long, long, long, long, long, cl_mem, long, long, long, long, long,
+    doc long, long, long, cl_command_queue, int, cl_event[])}.<br>
+    doc <br>
+    doc Unlike with a {@link Pointer} to the array, the array is not
+    doc copied: It is accessed in a critical region while the data is
+    doc transferred, in chunks of at most {@link #CRITICAL_CHUNK_SIZE}
+    doc bytes, so that the garbage collector is not blocked for too long.
+    doc The events in the wait list and all commands that have already
+    doc been enqueued into the command queue are waited for before the
+    doc array is accessed, so that the critical region only covers the
+    doc copy itself.
+    parameter int order
+    parameter $T[] A The source array
+    parameter long offA
+    parameter long ldA
+    parameter long nrA
+    parameter long ncA
+    parameter long xA
+    parameter long yA
+    parameter cl_mem B The destination matrix on the device
+    parameter long offB
+    parameter long ldB
+    parameter long nrB
+    parameter long ncB
+    parameter long xB
+    parameter long yB
+    parameter long nx
+    parameter long ny
+    parameter cl_command_queue command_queue
+    parameter int numEventsInWaitList
+    parameter cl_event[] eventWaitList
+    call transferSubMatrixCritical checked
+    arguments true, order
+    arguments Sizeof.cl_$T, A, offA, ldA, nrA, ncA, xA, yA
+    arguments B, offB, ldB, nrB, ncB, xB, yB, nx, ny
+    arguments command_queue, numEventsInWaitList, eventWaitList
+end
+
+method clblasReadSubMatrix
+    doc Copies synchronously a sub-matrix from device (A) to a Java array
+    doc (B). See {@link #clblasReadSubMatrix(int, long, cl_mem, long, long,
+    doc long, long, long, long, Pointer, long, long, long, long, long, long,
+    doc long, long, cl_command_queue, int, cl_event[])}, and
+    doc {@link #clblasWriteSubMatrix(int, $T[], long, long, long, long,
+    doc long, long, cl_mem, long, long, long, long, long, long, long, long,
+    doc cl_command_queue, int, cl_event[])} for the access of the array.
+    parameter int order
+    parameter cl_mem A The source matrix on the device
+    parameter long offA
+    parameter long ldA
+    parameter long nrA
+    parameter long ncA
+    parameter long xA
+    parameter long yA
+    parameter $T[] B The destination array
+    parameter long offB
+    parameter long ldB
+    parameter long nrB
+    parameter long ncB
+    parameter long xB
+    parameter long yB
+    parameter long nx
+    parameter long ny
+    parameter cl_command_queue command_queue
+    parameter int numEventsInWaitList
+    parameter cl_event[] eventWaitList
+    call transferSubMatrixCritical checked
+    arguments false, order
+    arguments Sizeof.cl_$T, B, offB, ldB, nrB, ncB, xB, yB
+    arguments A, offA, ldA, nrA, ncA, xA, yA, nx, ny
+    arguments command_queue, numEventsInWaitList, eventWaitList
+end
+
+method clblasWriteMatrix
+    doc Copies synchronously a whole matrix from a Java array (A) to device
+    doc (B). This is the same as {@link #clblasWriteSubMatrix(int, $T[],
+    doc long, long, long, long, long, long, cl_mem, long, long, long, long,
+    doc long, long, long, long, cl_command_queue, int, cl_event[])} for
+    doc the whole sx x sy region.
+    parameter int order
+    parameter long sx
+    parameter long sy
+    parameter $T[] A The source array
+    parameter long offA
+    parameter long ldA
+    parameter cl_mem B The destination matrix on the device
+    parameter long offB
+    parameter long ldB
+    parameter cl_command_queue command_queue
+    parameter int numEventsInWaitList
+    parameter cl_event[] eventWaitList
+    call clblasWriteSubMatrix
+    arguments order, A, offA, ldA, sx, sy, 0, 0
+    arguments B, offB, ldB, sx, sy, 0, 0, sx, sy
+    arguments command_queue, numEventsInWaitList, eventWaitList
+end
+
+method clblasReadMatrix
+    doc Copies synchronously a whole matrix from device (A) to a Java array
+    doc (B). This is the same as {@link #clblasReadSubMatrix(int, cl_mem,
+    doc long, long, long, long, long, long, $T[], long, long, long, long,
+    doc long, long, long, long, cl_command_queue, int, cl_event[])} for
+    doc the whole sx x sy region.
+    parameter int order
+    parameter long sx
+    parameter long sy
+    parameter cl_mem A The source matrix on the device
+    parameter long offA
+    parameter long ldA
+    parameter $T[] B The destination array
+    parameter long offB
+    parameter long ldB
+    parameter cl_command_queue command_queue
+    parameter int numEventsInWaitList
+    parameter cl_event[] eventWaitList
+    call clblasReadSubMatrix
+    arguments order, A, offA, ldA, sx, sy, 0, 0
+    arguments B, offB, ldB, sx, sy, 0, 0, sx, sy
+    arguments command_queue, numEventsInWaitList, eventWaitList
+end
+
+method clblasWriteVector
+    doc Copies synchronously a vector from a Java array (A) to device (B).
+    doc See {@link #clblasWriteVector(long, long, Pointer, long, cl_mem,
+    doc long, cl_command_queue, int, cl_event[])}, and
+    doc {@link #clblasWriteSubMatrix(int, $T[], long, long, long, long,
+    doc long, long, cl_mem, long, long, long, long, long, long, long, long,
+    doc cl_command_queue, int, cl_event[])} for the access of the array.
+    parameter long nb_elem
+    parameter $T[] A The source array
+    parameter long offA
+    parameter cl_mem B The destination vector on the device
+    parameter long offB
+    parameter cl_command_queue command_queue
+    parameter int numEventsInWaitList
+    parameter cl_event[] eventWaitList
+    call transferVectorCritical checked
+    arguments true, nb_elem
+    arguments Sizeof.cl_$T, A, offA, B, offB
+    arguments command_queue, numEventsInWaitList, eventWaitList
+end
+
+method clblasReadVector
+    doc Copies synchronously a vector from device (A) to a Java array (B).
+    doc See {@link #clblasReadVector(long, long, cl_mem, long, Pointer,
+    doc long, cl_command_queue, int, cl_event[])}, and
+    doc {@link #clblasWriteSubMatrix(int, $T[], long, long, long, long,
+    doc long, long, cl_mem, long, long, long, long, long, long, long, long,
+    doc cl_command_queue, int, cl_event[])} for the access of the array.
+    parameter long nb_elem
+    parameter cl_mem A The source vector on the device
+    parameter long offA
+    parameter $T[] B The destination array
+    parameter long offB
+    parameter cl_command_queue command_queue
+    parameter int numEventsInWaitList
+    parameter cl_event[] eventWaitList
+    call transferVectorCritical checked
+    arguments false, nb_elem
+    arguments Sizeof.cl_$T, B, offB, A, offA
+    arguments command_queue, numEventsInWaitList, eventWaitList
+end
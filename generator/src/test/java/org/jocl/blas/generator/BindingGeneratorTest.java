@@ -0,0 +1,126 @@
+package org.jocl.blas.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link BindingGenerator}. The JOCLBLAS project directory
+ * is given by the system property <code>bindings.directory</code>, and
+ * defaults to the parent directory.
+ */
+public class BindingGeneratorTest
+{
+    @Test
+    public void testRegionsAreUpToDate() throws IOException
+    {
+        File root = new File(System.getProperty("bindings.directory", ".."));
+        BindingGenerator generator =
+            new BindingGenerator(BindingSpec.readCriticalTransfers());
+        assertEquals(0, generator.update(root, true));
+    }
+
+    @Test
+    public void testCriticalTransfersAreRead() throws IOException
+    {
+        BindingSpec spec = BindingSpec.readCriticalTransfers();
+        assertEquals(2, spec.elementTypes.size());
+        assertEquals(4, spec.nativeRoutines.size());
+        assertEquals(6, spec.javaMethods.size());
+        for (BindingSpec.JavaMethod method : spec.javaMethods)
+        {
+            assertTrue(method.name, method.callee != null);
+        }
+    }
+
+    @Test
+    public void testInvalidSpecIsRejected()
+    {
+        String inputs[] = {
+            "native clblasWriteVector copy\nend\n",
+            "native clblasWriteVector write\n    parameters A:buffer\nend\n",
+            "method clblasWriteVector\n    parameter long nb_elem\nend\n",
+            "method clblasWriteVector\n",
+            "end\n"
+        };
+        for (String input : inputs)
+        {
+            try
+            {
+                BindingSpec.read(new StringReader(input));
+                fail("Expected IOException for " + input);
+            }
+            catch (IOException e)
+            {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testWriteRegionKeepsLineSeparators() throws IOException
+    {
+        File file = File.createTempFile("BindingGeneratorTest", ".cpp");
+        try
+        {
+            write(file, "a\r\n// BindingGenerator: begin test\r\nold\r\n" +
+                "// BindingGenerator: end test\r\nb\r\n");
+            BindingGenerator.writeRegion(file, "test", "x\ny\n");
+            assertEquals("a\r\n// BindingGenerator: begin test\r\nx\r\n" +
+                "y\r\n// BindingGenerator: end test\r\nb\r\n", read(file));
+            assertEquals("x\ny\n", BindingGenerator.readRegion(file, "test"));
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Writes the given text to the given file
+     */
+    private static void write(File file, String text) throws IOException
+    {
+        OutputStream outputStream = new FileOutputStream(file);
+        try
+        {
+            outputStream.write(text.getBytes("UTF-8"));
+        }
+        finally
+        {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Reads the text from the given file
+     */
+    private static String read(File file) throws IOException
+    {
+        byte data[] = new byte[(int)file.length()];
+        InputStream inputStream = new FileInputStream(file);
+        try
+        {
+            int offset = 0;
+            while (offset < data.length)
+            {
+                offset += inputStream.read(data, offset, data.length - offset);
+            }
+        }
+        finally
+        {
+            inputStream.close();
+        }
+        return new String(data, "UTF-8");
+    }
+}
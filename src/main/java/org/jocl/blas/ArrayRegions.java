@@ -0,0 +1,110 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas;
+
+/**
+ * Utility methods for validating the regions of Java arrays that are 
+ * accessed by the native code of the transfer helpers in {@link CLBLAS} 
+ * that receive arrays. These arrays are accessed directly in a critical
+ * region, so an invalid region would cause an access outside of the 
+ * array, and has to be detected before the native function is called.
+ */
+final class ArrayRegions
+{
+    /**
+     * Validate the region of a sub-matrix transfer in the given array. 
+     * The region consists of <code>nx * ny</code> elements starting at 
+     * position (x,y). As in clBLAS, lines of the matrix are strided by 
+     * the leading dimension along y for row-major and along x for 
+     * column-major matrices.
+     * 
+     * @param name The name of the array, for the error message
+     * @param order The {@link clblasOrder}
+     * @param length The length of the array
+     * @param off The offset, in elements
+     * @param ld The leading dimension
+     * @param x The x position of the region
+     * @param y The y position of the region
+     * @param nx The size of the region in the x dimension
+     * @param ny The size of the region in the y dimension
+     * @throws IndexOutOfBoundsException If any value is negative, or the
+     * region is not completely contained in the array
+     */
+    static void checkSubMatrix(String name, int order, int length, 
+        long off, long ld, long x, long y, long nx, long ny)
+    {
+        if (off < 0 || ld < 0 || x < 0 || y < 0 || nx < 0 || ny < 0)
+        {
+            throw new IndexOutOfBoundsException("Invalid region for " + 
+                name + ": off=" + off + ", ld=" + ld + ", x=" + x + 
+                ", y=" + y + ", nx=" + nx + ", ny=" + ny);
+        }
+        if (nx == 0 || ny == 0)
+        {
+            return;
+        }
+        boolean rowMajor = order == clblasOrder.clblasRowMajor;
+        long lastLine = rowMajor ? y + ny - 1 : x + nx - 1;
+        long lastPosition = rowMajor ? x + nx - 1 : y + ny - 1;
+        double last = (double)off + (double)lastLine * ld + lastPosition;
+        if (last >= length)
+        {
+            throw new IndexOutOfBoundsException("The region for " + name + 
+                " with off=" + off + ", ld=" + ld + ", x=" + x + ", y=" + y +
+                ", nx=" + nx + ", ny=" + ny + 
+                " exceeds the array length " + length);
+        }
+    }
+    
+    /**
+     * Validate the region of a vector transfer in the given array
+     * 
+     * @param name The name of the array, for the error message
+     * @param length The length of the array
+     * @param off The offset, in elements
+     * @param n The number of elements
+     * @throws IndexOutOfBoundsException If any value is negative, or the
+     * region is not completely contained in the array
+     */
+    static void checkVector(String name, int length, long off, long n)
+    {
+        if (off < 0 || n < 0 || n > length || off > length - n)
+        {
+            throw new IndexOutOfBoundsException("The region for " + name + 
+                " with off=" + off + " and " + n + 
+                " elements exceeds the array length " + length);
+        }
+    }
+    
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private ArrayRegions()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
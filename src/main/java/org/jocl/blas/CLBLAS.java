@@ -26,10 +26,13 @@
  */
 package org.jocl.blas;
 
+import java.lang.reflect.Array;
+
 import org.jocl.CL;
 import org.jocl.CLException;
 import org.jocl.LibUtils;
 import org.jocl.Pointer;
+import org.jocl.Sizeof;
 import org.jocl.cl_command_queue;
 import org.jocl.cl_context;
 import org.jocl.cl_event;
@@ -120,6 +123,63 @@ public class CLBLAS
     }
     
     
+    /**
+     * The {@link ShapeRecorder} that receives the signatures of the
+     * calls, or <code>null</code> if no signatures should be recorded
+     */
+    private static volatile ShapeRecorder shapeRecorder = null;
+
+    /**
+     * Set the {@link ShapeRecorder} that will receive the
+     * {@link ShapeSignature}s of the calls to the routines that build
+     * their kernels depending on the order, transposition, uplo, side and
+     * diag flags and the problem size. These are the real-valued
+     * GEMM, SYMM, SYRK, SYR2K, TRMM, TRSM, GEMV, SYMV, TRMV and TRSV
+     * routines. The signatures may later be passed to
+     * {@link ShapeWarmUp} to build the respective kernels in advance.<br>
+     * <br>
+     * By default, no signatures are recorded.
+     *
+     * @param recorder The recorder. May be <code>null</code> to disable
+     * the recording.
+     */
+    public static void setShapeRecorder(ShapeRecorder recorder)
+    {
+        shapeRecorder = recorder;
+    }
+
+    /**
+     * Pass the given signature information to the current
+     * {@link ShapeRecorder}, if there is one.
+     *
+     * @param routine The routine name
+     * @param order The order
+     * @param transA The transposition of A
+     * @param transB The transposition of B
+     * @param uplo The uplo flag
+     * @param side The side flag
+     * @param diag The diag flag
+     * @param M The M dimension
+     * @param N The N dimension
+     * @param K The K dimension
+     */
+    private static void recordShape(String routine,
+        int order, int transA, int transB, int uplo, int side, int diag,
+        long M, long N, long K)
+    {
+        ShapeRecorder recorder = shapeRecorder;
+        if (recorder != null)
+        {
+            recorder.record(new ShapeSignature(routine,
+                order, transA, transB, uplo, side, diag, M, N, K));
+        }
+    }
+
+    /**
+     * Short name for {@link ShapeSignature#UNUSED}
+     */
+    private static final int UNUSED = ShapeSignature.UNUSED;
+
     public static final int JOCL_BLAS_STATUS_INTERNAL_ERROR = -32786;
 
     
@@ -154,6 +214,9 @@ public class CLBLAS
      * Must be called before any other clblas API function is invoked.
      * This function is not thread-safe.
      *
+     * See {@link CLBLASLifecycle} for a thread-safe, reference counted
+     * alternative.
+     *
      * @return
      *   -  clblasSucces on success;
      *   -  clblasOutOfHostMemory if there is not enough of memory to allocate
@@ -175,6 +238,9 @@ public class CLBLAS
      * internal data.
      * This function is not thread-safe.
      *
+     * See {@link CLBLASLifecycle} for a thread-safe, reference counted
+     * alternative.
+     *
      */
     public static void clblasTeardown()
     {
@@ -3424,6 +3490,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasSgemv", order, transA, UNUSED, UNUSED, UNUSED, UNUSED, M, N, UNUSED);
         return checkResult(clblasSgemvNative(order, transA, M, N, alpha, A, offA, lda, x, offx, incx, beta, y, offy, incy, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasSgemvNative(
@@ -3519,6 +3586,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasDgemv", order, transA, UNUSED, UNUSED, UNUSED, UNUSED, M, N, UNUSED);
         return checkResult(clblasDgemvNative(order, transA, M, N, alpha, A, offA, lda, x, offx, incx, beta, y, offy, incy, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasDgemvNative(
@@ -3785,6 +3853,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasSsymv", order, UNUSED, UNUSED, uplo, UNUSED, UNUSED, UNUSED, N, UNUSED);
         return checkResult(clblasSsymvNative(order, uplo, N, alpha, A, offA, lda, x, offx, incx, beta, y, offy, incy, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasSsymvNative(
@@ -3876,6 +3945,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasDsymv", order, UNUSED, UNUSED, uplo, UNUSED, UNUSED, UNUSED, N, UNUSED);
         return checkResult(clblasDsymvNative(order, uplo, N, alpha, A, offA, lda, x, offx, incx, beta, y, offy, incy, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasDsymvNative(
@@ -4155,6 +4225,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasStrmv", order, trans, UNUSED, uplo, UNUSED, diag, UNUSED, N, UNUSED);
         return checkResult(clblasStrmvNative(order, uplo, trans, diag, N, A, offa, lda, X, offx, incx, scratchBuff, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasStrmvNative(
@@ -4237,6 +4308,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasDtrmv", order, trans, UNUSED, uplo, UNUSED, diag, UNUSED, N, UNUSED);
         return checkResult(clblasDtrmvNative(order, uplo, trans, diag, N, A, offa, lda, X, offx, incx, scratchBuff, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasDtrmvNative(
@@ -4470,6 +4542,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasStrsv", order, trans, UNUSED, uplo, UNUSED, diag, UNUSED, N, UNUSED);
         return checkResult(clblasStrsvNative(order, uplo, trans, diag, N, A, offa, lda, X, offx, incx, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasStrsvNative(
@@ -4547,6 +4620,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasDtrsv", order, trans, UNUSED, uplo, UNUSED, diag, UNUSED, N, UNUSED);
         return checkResult(clblasDtrsvNative(order, uplo, trans, diag, N, A, offa, lda, X, offx, incx, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasDtrsvNative(
@@ -9040,6 +9114,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasSgemm", order, transA, transB, UNUSED, UNUSED, UNUSED, M, N, K);
         return checkResult(clblasSgemmNative(order, transA, transB, M, N, K, alpha, A, offA, lda, B, offB, ldb, beta, C, offC, ldc, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasSgemmNative(
@@ -9145,6 +9220,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasDgemm", order, transA, transB, UNUSED, UNUSED, UNUSED, M, N, K);
         return checkResult(clblasDgemmNative(order, transA, transB, M, N, K, alpha, A, offA, lda, B, offB, ldb, beta, C, offC, ldc, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasDgemmNative(
@@ -9442,6 +9518,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasStrmm", order, transA, UNUSED, uplo, side, diag, M, N, UNUSED);
         return checkResult(clblasStrmmNative(order, side, uplo, transA, diag, M, N, alpha, A, offA, lda, B, offB, ldb, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasStrmmNative(
@@ -9538,6 +9615,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasDtrmm", order, transA, UNUSED, uplo, side, diag, M, N, UNUSED);
         return checkResult(clblasDtrmmNative(order, side, uplo, transA, diag, M, N, alpha, A, offA, lda, B, offB, ldb, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasDtrmmNative(
@@ -9813,6 +9891,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasStrsm", order, transA, UNUSED, uplo, side, diag, M, N, UNUSED);
         return checkResult(clblasStrsmNative(order, side, uplo, transA, diag, M, N, alpha, A, offA, lda, B, offB, ldb, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasStrsmNative(
@@ -9909,6 +9988,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasDtrsm", order, transA, UNUSED, uplo, side, diag, M, N, UNUSED);
         return checkResult(clblasDtrsmNative(order, side, uplo, transA, diag, M, N, alpha, A, offA, lda, B, offB, ldb, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasDtrsmNative(
@@ -10180,6 +10260,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasSsyrk", order, transA, UNUSED, uplo, UNUSED, UNUSED, UNUSED, N, K);
         return checkResult(clblasSsyrkNative(order, uplo, transA, N, K, alpha, A, offA, lda, beta, C, offC, ldc, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasSsyrkNative(
@@ -10272,6 +10353,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasDsyrk", order, transA, UNUSED, uplo, UNUSED, UNUSED, UNUSED, N, K);
         return checkResult(clblasDsyrkNative(order, uplo, transA, N, K, alpha, A, offA, lda, beta, C, offC, ldc, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasDsyrkNative(
@@ -10546,6 +10628,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasSsyr2k", order, transAB, UNUSED, uplo, UNUSED, UNUSED, UNUSED, N, K);
         return checkResult(clblasSsyr2kNative(order, uplo, transAB, N, K, alpha, A, offA, lda, B, offB, ldb, beta, C, offC, ldc, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasSsyr2kNative(
@@ -10649,6 +10732,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasDsyr2k", order, transAB, UNUSED, uplo, UNUSED, UNUSED, UNUSED, N, K);
         return checkResult(clblasDsyr2kNative(order, uplo, transAB, N, K, alpha, A, offA, lda, B, offB, ldb, beta, C, offC, ldc, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasDsyr2kNative(
@@ -10963,6 +11047,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasSsymm", order, UNUSED, UNUSED, uplo, side, UNUSED, M, N, UNUSED);
         return checkResult(clblasSsymmNative(order, side, uplo, M, N, alpha, A, offa, lda, B, offb, ldb, beta, C, offc, ldc, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasSsymmNative(
@@ -11067,6 +11152,7 @@ public class CLBLAS
         cl_event[] eventWaitList, 
         cl_event[] events)
     {
+        recordShape("clblasDsymm", order, UNUSED, UNUSED, uplo, side, UNUSED, M, N, UNUSED);
         return checkResult(clblasDsymmNative(order, side, uplo, M, N, alpha, A, offa, lda, B, offb, ldb, beta, C, offc, ldc, numCommandQueues, commandQueues, numEventsInWaitList, eventWaitList, events));
     }
     private static native int clblasDsymmNative(
@@ -13124,6 +13210,805 @@ public class CLBLAS
         cl_event[] event);
 
 
+    /**
+     * The maximum number of bytes of a Java array that are transferred 
+     * in one critical region by the transfer helpers that accept Java 
+     * arrays. While an array is accessed in a critical region, the 
+     * garbage collector may be blocked, so larger transfers are split 
+     * into chunks of this size.
+     */
+    public static final long CRITICAL_CHUNK_SIZE = 4L << 20;
+    
+    // BindingGenerator: begin overloads
+    /**
+     * Copies synchronously a sub-matrix from a Java array (A) to device
+     * (B). See {@link #clblasWriteSubMatrix(int, long, Pointer, long,
+     * long, long, long, long, long, cl_mem, long, long, long, long, long,
+     * long, long, long, cl_command_queue, int, cl_event[])}.<br>
+     * <br>
+     * Unlike with a {@link Pointer} to the array, the array is not
+     * copied: It is accessed in a critical region while the data is
+     * transferred, in chunks of at most {@link #CRITICAL_CHUNK_SIZE}
+     * bytes, so that the garbage collector is not blocked for too long.
+     * The events in the wait list and all commands that have already
+     * been enqueued into the command queue are waited for before the
+     * array is accessed, so that the critical region only covers the
+     * copy itself.
+     *
+     * @param order The {@link clblasOrder}
+     * @param A The source array
+     * @param offA The offset of A, in elements
+     * @param ldA The leading dimension of A
+     * @param nrA The number of rows of A
+     * @param ncA The number of columns of A
+     * @param xA The x position of the region in A
+     * @param yA The y position of the region in A
+     * @param B The destination matrix on the device
+     * @param offB The offset of B, in elements
+     * @param ldB The leading dimension of B
+     * @param nrB The number of rows of B
+     * @param ncB The number of columns of B
+     * @param xB The x position of the region in B
+     * @param yB The y position of the region in B
+     * @param nx The size of the region in the x dimension
+     * @param ny The size of the region in the y dimension
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @return The {@link clblasStatus}
+     * @throws IndexOutOfBoundsException If the region of the array is
+     * not completely contained in the array
+     */
+    public static int clblasWriteSubMatrix(
+        int order, 
+        float[] A, 
+        long offA, 
+        long ldA, 
+        long nrA, 
+        long ncA, 
+        long xA, 
+        long yA, 
+        cl_mem B, 
+        long offB, 
+        long ldB, 
+        long nrB, 
+        long ncB, 
+        long xB, 
+        long yB, 
+        long nx, 
+        long ny, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, 
+        cl_event[] eventWaitList)
+    {
+        return checkResult(transferSubMatrixCritical(true, order, 
+            Sizeof.cl_float, A, offA, ldA, nrA, ncA, xA, yA, 
+            B, offB, ldB, nrB, ncB, xB, yB, nx, ny, 
+            command_queue, numEventsInWaitList, eventWaitList));
+    }
+
+    /**
+     * Copies synchronously a sub-matrix from device (A) to a Java array
+     * (B). See {@link #clblasReadSubMatrix(int, long, cl_mem, long, long,
+     * long, long, long, long, Pointer, long, long, long, long, long, long,
+     * long, long, cl_command_queue, int, cl_event[])}, and
+     * {@link #clblasWriteSubMatrix(int, float[], long, long, long, long,
+     * long, long, cl_mem, long, long, long, long, long, long, long, long,
+     * cl_command_queue, int, cl_event[])} for the access of the array.
+     *
+     * @param order The {@link clblasOrder}
+     * @param A The source matrix on the device
+     * @param offA The offset of A, in elements
+     * @param ldA The leading dimension of A
+     * @param nrA The number of rows of A
+     * @param ncA The number of columns of A
+     * @param xA The x position of the region in A
+     * @param yA The y position of the region in A
+     * @param B The destination array
+     * @param offB The offset of B, in elements
+     * @param ldB The leading dimension of B
+     * @param nrB The number of rows of B
+     * @param ncB The number of columns of B
+     * @param xB The x position of the region in B
+     * @param yB The y position of the region in B
+     * @param nx The size of the region in the x dimension
+     * @param ny The size of the region in the y dimension
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @return The {@link clblasStatus}
+     * @throws IndexOutOfBoundsException If the region of the array is
+     * not completely contained in the array
+     */
+    public static int clblasReadSubMatrix(
+        int order, 
+        cl_mem A, 
+        long offA, 
+        long ldA, 
+        long nrA, 
+        long ncA, 
+        long xA, 
+        long yA, 
+        float[] B, 
+        long offB, 
+        long ldB, 
+        long nrB, 
+        long ncB, 
+        long xB, 
+        long yB, 
+        long nx, 
+        long ny, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, 
+        cl_event[] eventWaitList)
+    {
+        return checkResult(transferSubMatrixCritical(false, order, 
+            Sizeof.cl_float, B, offB, ldB, nrB, ncB, xB, yB, 
+            A, offA, ldA, nrA, ncA, xA, yA, nx, ny, 
+            command_queue, numEventsInWaitList, eventWaitList));
+    }
+
+    /**
+     * Copies synchronously a whole matrix from a Java array (A) to device
+     * (B). This is the same as {@link #clblasWriteSubMatrix(int, float[],
+     * long, long, long, long, long, long, cl_mem, long, long, long, long,
+     * long, long, long, long, cl_command_queue, int, cl_event[])} for
+     * the whole sx x sy region.
+     *
+     * @param order The {@link clblasOrder}
+     * @param sx The size of the matrix in the x dimension
+     * @param sy The size of the matrix in the y dimension
+     * @param A The source array
+     * @param offA The offset of A, in elements
+     * @param ldA The leading dimension of A
+     * @param B The destination matrix on the device
+     * @param offB The offset of B, in elements
+     * @param ldB The leading dimension of B
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @return The {@link clblasStatus}
+     * @throws IndexOutOfBoundsException If the region of the array is
+     * not completely contained in the array
+     */
+    public static int clblasWriteMatrix(
+        int order, 
+        long sx, 
+        long sy, 
+        float[] A, 
+        long offA, 
+        long ldA, 
+        cl_mem B, 
+        long offB, 
+        long ldB, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, 
+        cl_event[] eventWaitList)
+    {
+        return clblasWriteSubMatrix(order, A, offA, ldA, sx, sy, 0, 0, 
+            B, offB, ldB, sx, sy, 0, 0, sx, sy, 
+            command_queue, numEventsInWaitList, eventWaitList);
+    }
+
+    /**
+     * Copies synchronously a whole matrix from device (A) to a Java array
+     * (B). This is the same as {@link #clblasReadSubMatrix(int, cl_mem,
+     * long, long, long, long, long, long, float[], long, long, long, long,
+     * long, long, long, long, cl_command_queue, int, cl_event[])} for
+     * the whole sx x sy region.
+     *
+     * @param order The {@link clblasOrder}
+     * @param sx The size of the matrix in the x dimension
+     * @param sy The size of the matrix in the y dimension
+     * @param A The source matrix on the device
+     * @param offA The offset of A, in elements
+     * @param ldA The leading dimension of A
+     * @param B The destination array
+     * @param offB The offset of B, in elements
+     * @param ldB The leading dimension of B
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @return The {@link clblasStatus}
+     * @throws IndexOutOfBoundsException If the region of the array is
+     * not completely contained in the array
+     */
+    public static int clblasReadMatrix(
+        int order, 
+        long sx, 
+        long sy, 
+        cl_mem A, 
+        long offA, 
+        long ldA, 
+        float[] B, 
+        long offB, 
+        long ldB, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, 
+        cl_event[] eventWaitList)
+    {
+        return clblasReadSubMatrix(order, A, offA, ldA, sx, sy, 0, 0, 
+            B, offB, ldB, sx, sy, 0, 0, sx, sy, 
+            command_queue, numEventsInWaitList, eventWaitList);
+    }
+
+    /**
+     * Copies synchronously a vector from a Java array (A) to device (B).
+     * See {@link #clblasWriteVector(long, long, Pointer, long, cl_mem,
+     * long, cl_command_queue, int, cl_event[])}, and
+     * {@link #clblasWriteSubMatrix(int, float[], long, long, long, long,
+     * long, long, cl_mem, long, long, long, long, long, long, long, long,
+     * cl_command_queue, int, cl_event[])} for the access of the array.
+     *
+     * @param nb_elem The number of elements
+     * @param A The source array
+     * @param offA The offset of A, in elements
+     * @param B The destination vector on the device
+     * @param offB The offset of B, in elements
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @return The {@link clblasStatus}
+     * @throws IndexOutOfBoundsException If the region of the array is
+     * not completely contained in the array
+     */
+    public static int clblasWriteVector(
+        long nb_elem, 
+        float[] A, 
+        long offA, 
+        cl_mem B, 
+        long offB, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, 
+        cl_event[] eventWaitList)
+    {
+        return checkResult(transferVectorCritical(true, nb_elem, 
+            Sizeof.cl_float, A, offA, B, offB, 
+            command_queue, numEventsInWaitList, eventWaitList));
+    }
+
+    /**
+     * Copies synchronously a vector from device (A) to a Java array (B).
+     * See {@link #clblasReadVector(long, long, cl_mem, long, Pointer,
+     * long, cl_command_queue, int, cl_event[])}, and
+     * {@link #clblasWriteSubMatrix(int, float[], long, long, long, long,
+     * long, long, cl_mem, long, long, long, long, long, long, long, long,
+     * cl_command_queue, int, cl_event[])} for the access of the array.
+     *
+     * @param nb_elem The number of elements
+     * @param A The source vector on the device
+     * @param offA The offset of A, in elements
+     * @param B The destination array
+     * @param offB The offset of B, in elements
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @return The {@link clblasStatus}
+     * @throws IndexOutOfBoundsException If the region of the array is
+     * not completely contained in the array
+     */
+    public static int clblasReadVector(
+        long nb_elem, 
+        cl_mem A, 
+        long offA, 
+        float[] B, 
+        long offB, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, 
+        cl_event[] eventWaitList)
+    {
+        return checkResult(transferVectorCritical(false, nb_elem, 
+            Sizeof.cl_float, B, offB, A, offA, 
+            command_queue, numEventsInWaitList, eventWaitList));
+    }
+
+    /**
+     * Copies synchronously a sub-matrix from a Java array (A) to device
+     * (B). See {@link #clblasWriteSubMatrix(int, long, Pointer, long,
+     * long, long, long, long, long, cl_mem, long, long, long, long, long,
+     * long, long, long, cl_command_queue, int, cl_event[])}.<br>
+     * <br>
+     * Unlike with a {@link Pointer} to the array, the array is not
+     * copied: It is accessed in a critical region while the data is
+     * transferred, in chunks of at most {@link #CRITICAL_CHUNK_SIZE}
+     * bytes, so that the garbage collector is not blocked for too long.
+     * The events in the wait list and all commands that have already
+     * been enqueued into the command queue are waited for before the
+     * array is accessed, so that the critical region only covers the
+     * copy itself.
+     *
+     * @param order The {@link clblasOrder}
+     * @param A The source array
+     * @param offA The offset of A, in elements
+     * @param ldA The leading dimension of A
+     * @param nrA The number of rows of A
+     * @param ncA The number of columns of A
+     * @param xA The x position of the region in A
+     * @param yA The y position of the region in A
+     * @param B The destination matrix on the device
+     * @param offB The offset of B, in elements
+     * @param ldB The leading dimension of B
+     * @param nrB The number of rows of B
+     * @param ncB The number of columns of B
+     * @param xB The x position of the region in B
+     * @param yB The y position of the region in B
+     * @param nx The size of the region in the x dimension
+     * @param ny The size of the region in the y dimension
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @return The {@link clblasStatus}
+     * @throws IndexOutOfBoundsException If the region of the array is
+     * not completely contained in the array
+     */
+    public static int clblasWriteSubMatrix(
+        int order, 
+        double[] A, 
+        long offA, 
+        long ldA, 
+        long nrA, 
+        long ncA, 
+        long xA, 
+        long yA, 
+        cl_mem B, 
+        long offB, 
+        long ldB, 
+        long nrB, 
+        long ncB, 
+        long xB, 
+        long yB, 
+        long nx, 
+        long ny, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, 
+        cl_event[] eventWaitList)
+    {
+        return checkResult(transferSubMatrixCritical(true, order, 
+            Sizeof.cl_double, A, offA, ldA, nrA, ncA, xA, yA, 
+            B, offB, ldB, nrB, ncB, xB, yB, nx, ny, 
+            command_queue, numEventsInWaitList, eventWaitList));
+    }
+
+    /**
+     * Copies synchronously a sub-matrix from device (A) to a Java array
+     * (B). See {@link #clblasReadSubMatrix(int, long, cl_mem, long, long,
+     * long, long, long, long, Pointer, long, long, long, long, long, long,
+     * long, long, cl_command_queue, int, cl_event[])}, and
+     * {@link #clblasWriteSubMatrix(int, double[], long, long, long, long,
+     * long, long, cl_mem, long, long, long, long, long, long, long, long,
+     * cl_command_queue, int, cl_event[])} for the access of the array.
+     *
+     * @param order The {@link clblasOrder}
+     * @param A The source matrix on the device
+     * @param offA The offset of A, in elements
+     * @param ldA The leading dimension of A
+     * @param nrA The number of rows of A
+     * @param ncA The number of columns of A
+     * @param xA The x position of the region in A
+     * @param yA The y position of the region in A
+     * @param B The destination array
+     * @param offB The offset of B, in elements
+     * @param ldB The leading dimension of B
+     * @param nrB The number of rows of B
+     * @param ncB The number of columns of B
+     * @param xB The x position of the region in B
+     * @param yB The y position of the region in B
+     * @param nx The size of the region in the x dimension
+     * @param ny The size of the region in the y dimension
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @return The {@link clblasStatus}
+     * @throws IndexOutOfBoundsException If the region of the array is
+     * not completely contained in the array
+     */
+    public static int clblasReadSubMatrix(
+        int order, 
+        cl_mem A, 
+        long offA, 
+        long ldA, 
+        long nrA, 
+        long ncA, 
+        long xA, 
+        long yA, 
+        double[] B, 
+        long offB, 
+        long ldB, 
+        long nrB, 
+        long ncB, 
+        long xB, 
+        long yB, 
+        long nx, 
+        long ny, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, 
+        cl_event[] eventWaitList)
+    {
+        return checkResult(transferSubMatrixCritical(false, order, 
+            Sizeof.cl_double, B, offB, ldB, nrB, ncB, xB, yB, 
+            A, offA, ldA, nrA, ncA, xA, yA, nx, ny, 
+            command_queue, numEventsInWaitList, eventWaitList));
+    }
+
+    /**
+     * Copies synchronously a whole matrix from a Java array (A) to device
+     * (B). This is the same as {@link #clblasWriteSubMatrix(int, double[],
+     * long, long, long, long, long, long, cl_mem, long, long, long, long,
+     * long, long, long, long, cl_command_queue, int, cl_event[])} for
+     * the whole sx x sy region.
+     *
+     * @param order The {@link clblasOrder}
+     * @param sx The size of the matrix in the x dimension
+     * @param sy The size of the matrix in the y dimension
+     * @param A The source array
+     * @param offA The offset of A, in elements
+     * @param ldA The leading dimension of A
+     * @param B The destination matrix on the device
+     * @param offB The offset of B, in elements
+     * @param ldB The leading dimension of B
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @return The {@link clblasStatus}
+     * @throws IndexOutOfBoundsException If the region of the array is
+     * not completely contained in the array
+     */
+    public static int clblasWriteMatrix(
+        int order, 
+        long sx, 
+        long sy, 
+        double[] A, 
+        long offA, 
+        long ldA, 
+        cl_mem B, 
+        long offB, 
+        long ldB, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, 
+        cl_event[] eventWaitList)
+    {
+        return clblasWriteSubMatrix(order, A, offA, ldA, sx, sy, 0, 0, 
+            B, offB, ldB, sx, sy, 0, 0, sx, sy, 
+            command_queue, numEventsInWaitList, eventWaitList);
+    }
+
+    /**
+     * Copies synchronously a whole matrix from device (A) to a Java array
+     * (B). This is the same as {@link #clblasReadSubMatrix(int, cl_mem,
+     * long, long, long, long, long, long, double[], long, long, long, long,
+     * long, long, long, long, cl_command_queue, int, cl_event[])} for
+     * the whole sx x sy region.
+     *
+     * @param order The {@link clblasOrder}
+     * @param sx The size of the matrix in the x dimension
+     * @param sy The size of the matrix in the y dimension
+     * @param A The source matrix on the device
+     * @param offA The offset of A, in elements
+     * @param ldA The leading dimension of A
+     * @param B The destination array
+     * @param offB The offset of B, in elements
+     * @param ldB The leading dimension of B
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @return The {@link clblasStatus}
+     * @throws IndexOutOfBoundsException If the region of the array is
+     * not completely contained in the array
+     */
+    public static int clblasReadMatrix(
+        int order, 
+        long sx, 
+        long sy, 
+        cl_mem A, 
+        long offA, 
+        long ldA, 
+        double[] B, 
+        long offB, 
+        long ldB, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, 
+        cl_event[] eventWaitList)
+    {
+        return clblasReadSubMatrix(order, A, offA, ldA, sx, sy, 0, 0, 
+            B, offB, ldB, sx, sy, 0, 0, sx, sy, 
+            command_queue, numEventsInWaitList, eventWaitList);
+    }
+
+    /**
+     * Copies synchronously a vector from a Java array (A) to device (B).
+     * See {@link #clblasWriteVector(long, long, Pointer, long, cl_mem,
+     * long, cl_command_queue, int, cl_event[])}, and
+     * {@link #clblasWriteSubMatrix(int, double[], long, long, long, long,
+     * long, long, cl_mem, long, long, long, long, long, long, long, long,
+     * cl_command_queue, int, cl_event[])} for the access of the array.
+     *
+     * @param nb_elem The number of elements
+     * @param A The source array
+     * @param offA The offset of A, in elements
+     * @param B The destination vector on the device
+     * @param offB The offset of B, in elements
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @return The {@link clblasStatus}
+     * @throws IndexOutOfBoundsException If the region of the array is
+     * not completely contained in the array
+     */
+    public static int clblasWriteVector(
+        long nb_elem, 
+        double[] A, 
+        long offA, 
+        cl_mem B, 
+        long offB, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, 
+        cl_event[] eventWaitList)
+    {
+        return checkResult(transferVectorCritical(true, nb_elem, 
+            Sizeof.cl_double, A, offA, B, offB, 
+            command_queue, numEventsInWaitList, eventWaitList));
+    }
+
+    /**
+     * Copies synchronously a vector from device (A) to a Java array (B).
+     * See {@link #clblasReadVector(long, long, cl_mem, long, Pointer,
+     * long, cl_command_queue, int, cl_event[])}, and
+     * {@link #clblasWriteSubMatrix(int, double[], long, long, long, long,
+     * long, long, cl_mem, long, long, long, long, long, long, long, long,
+     * cl_command_queue, int, cl_event[])} for the access of the array.
+     *
+     * @param nb_elem The number of elements
+     * @param A The source vector on the device
+     * @param offA The offset of A, in elements
+     * @param B The destination array
+     * @param offB The offset of B, in elements
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @return The {@link clblasStatus}
+     * @throws IndexOutOfBoundsException If the region of the array is
+     * not completely contained in the array
+     */
+    public static int clblasReadVector(
+        long nb_elem, 
+        cl_mem A, 
+        long offA, 
+        double[] B, 
+        long offB, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, 
+        cl_event[] eventWaitList)
+    {
+        return checkResult(transferVectorCritical(false, nb_elem, 
+            Sizeof.cl_double, B, offB, A, offA, 
+            command_queue, numEventsInWaitList, eventWaitList));
+    }
+    // BindingGenerator: end overloads
+
+    /**
+     * Transfer a sub-matrix between a Java array and a device matrix, 
+     * in chunks of at most {@link #CRITICAL_CHUNK_SIZE} bytes of the 
+     * array, or of a single row or column if this is larger. The chunks
+     * are formed along the dimension that is strided 
+     * by the leading dimension, which is y for row-major and x for 
+     * column-major matrices.
+     * 
+     * @param write Whether the array is written to the device
+     * @param order The {@link clblasOrder}
+     * @param element_size The size of one element, in bytes
+     * @param array The array
+     * @param offH The offset of the array, in elements
+     * @param ldH The leading dimension of the array
+     * @param nrH The number of rows of the array
+     * @param ncH The number of columns of the array
+     * @param xH The x position of the region in the array
+     * @param yH The y position of the region in the array
+     * @param mem The device matrix
+     * @param offD The offset of the device matrix, in elements
+     * @param ldD The leading dimension of the device matrix
+     * @param nrD The number of rows of the device matrix
+     * @param ncD The number of columns of the device matrix
+     * @param xD The x position of the region in the device matrix
+     * @param yD The y position of the region in the device matrix
+     * @param nx The size of the region in the x dimension
+     * @param ny The size of the region in the y dimension
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @return The status
+     */
+    private static int transferSubMatrixCritical(boolean write, int order, 
+        long element_size, Object array, long offH, long ldH, 
+        long nrH, long ncH, long xH, long yH, 
+        cl_mem mem, long offD, long ldD, 
+        long nrD, long ncD, long xD, long yD, long nx, long ny, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, cl_event[] eventWaitList)
+    {
+        ArrayRegions.checkSubMatrix(write ? "A" : "B", order, 
+            Array.getLength(array), offH, ldH, xH, yH, nx, ny);
+        int result = waitForQueue(
+            command_queue, numEventsInWaitList, eventWaitList);
+        if (result != CL.CL_SUCCESS)
+        {
+            return result;
+        }
+        boolean rowMajor = order == clblasOrder.clblasRowMajor;
+        long n = rowMajor ? ny : nx;
+        long chunk = Math.max(1, 
+            CRITICAL_CHUNK_SIZE / Math.max(1, ldH * element_size));
+        for (long start = 0; start < n; start += chunk)
+        {
+            long size = Math.min(chunk, n - start);
+            long dx = rowMajor ? 0 : start;
+            long dy = rowMajor ? start : 0;
+            long cx = rowMajor ? nx : size;
+            long cy = rowMajor ? size : ny;
+            if (write)
+            {
+                result = clblasWriteSubMatrixCriticalNative(order, 
+                    element_size, array, offH, ldH, nrH, ncH, 
+                    xH + dx, yH + dy, mem, offD, ldD, nrD, ncD, 
+                    xD + dx, yD + dy, cx, cy, command_queue);
+            }
+            else
+            {
+                result = clblasReadSubMatrixCriticalNative(order, 
+                    element_size, mem, offD, ldD, nrD, ncD, 
+                    xD + dx, yD + dy, array, offH, ldH, nrH, ncH, 
+                    xH + dx, yH + dy, cx, cy, command_queue);
+            }
+            if (result != CL.CL_SUCCESS)
+            {
+                return result;
+            }
+        }
+        return CL.CL_SUCCESS;
+    }
+    
+    /**
+     * Transfer a vector between a Java array and a device vector, in 
+     * chunks of at most {@link #CRITICAL_CHUNK_SIZE} bytes
+     * 
+     * @param write Whether the array is written to the device
+     * @param nb_elem The number of elements
+     * @param element_size The size of one element, in bytes
+     * @param array The array
+     * @param offH The offset of the array, in elements
+     * @param mem The device vector
+     * @param offD The offset of the device vector, in elements
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @return The status
+     */
+    private static int transferVectorCritical(boolean write, 
+        long nb_elem, long element_size, Object array, long offH, 
+        cl_mem mem, long offD, cl_command_queue command_queue, 
+        int numEventsInWaitList, cl_event[] eventWaitList)
+    {
+        ArrayRegions.checkVector(write ? "A" : "B", 
+            Array.getLength(array), offH, nb_elem);
+        int result = waitForQueue(
+            command_queue, numEventsInWaitList, eventWaitList);
+        if (result != CL.CL_SUCCESS)
+        {
+            return result;
+        }
+        long chunk = Math.max(1, CRITICAL_CHUNK_SIZE / element_size);
+        for (long start = 0; start < nb_elem; start += chunk)
+        {
+            long size = Math.min(chunk, nb_elem - start);
+            if (write)
+            {
+                result = clblasWriteVectorCriticalNative(size, element_size, 
+                    array, offH + start, mem, offD + start, command_queue);
+            }
+            else
+            {
+                result = clblasReadVectorCriticalNative(size, element_size, 
+                    mem, offD + start, array, offH + start, command_queue);
+            }
+            if (result != CL.CL_SUCCESS)
+            {
+                return result;
+            }
+        }
+        return CL.CL_SUCCESS;
+    }
+    
+    /**
+     * Wait for the given events, and for all commands that have been 
+     * enqueued into the given queue. The transfers of Java arrays wait 
+     * before the arrays are accessed, because the events may depend on 
+     * threads that are blocked while an array is held in a critical 
+     * region, and because the synchronous transfer in the critical 
+     * region would otherwise first wait for all previous commands of 
+     * the queue, blocking the garbage collector for their duration.
+     * 
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events
+     * @param eventWaitList The events
+     * @return The OpenCL status
+     */
+    private static int waitForQueue(cl_command_queue command_queue, 
+        int numEventsInWaitList, cl_event[] eventWaitList)
+    {
+        if (numEventsInWaitList != 0)
+        {
+            int result = 
+                CL.clWaitForEvents(numEventsInWaitList, eventWaitList);
+            if (result != CL.CL_SUCCESS)
+            {
+                return result;
+            }
+        }
+        return CL.clFinish(command_queue);
+    }
+    
+    // BindingGenerator: begin natives
+    private static native int clblasWriteSubMatrixCriticalNative(
+        int order, 
+        long element_size, 
+        Object A, 
+        long offA, 
+        long ldA, 
+        long nrA, 
+        long ncA, 
+        long xA, 
+        long yA, 
+        cl_mem B, 
+        long offB, 
+        long ldB, 
+        long nrB, 
+        long ncB, 
+        long xB, 
+        long yB, 
+        long nx, 
+        long ny, 
+        cl_command_queue command_queue);
+
+    private static native int clblasReadSubMatrixCriticalNative(
+        int order, 
+        long element_size, 
+        cl_mem A, 
+        long offA, 
+        long ldA, 
+        long nrA, 
+        long ncA, 
+        long xA, 
+        long yA, 
+        Object B, 
+        long offB, 
+        long ldB, 
+        long nrB, 
+        long ncB, 
+        long xB, 
+        long yB, 
+        long nx, 
+        long ny, 
+        cl_command_queue command_queue);
+
+    private static native int clblasWriteVectorCriticalNative(
+        long nb_elem, 
+        long element_size, 
+        Object A, 
+        long offA, 
+        cl_mem B, 
+        long offB, 
+        cl_command_queue command_queue);
+
+    private static native int clblasReadVectorCriticalNative(
+        long nb_elem, 
+        long element_size, 
+        cl_mem A, 
+        long offA, 
+        Object B, 
+        long offB, 
+        cl_command_queue command_queue);
+    // BindingGenerator: end natives
+
+
     /**
      * Private constructor to prevent instantiation
      */
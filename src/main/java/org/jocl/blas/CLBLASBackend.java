@@ -0,0 +1,157 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas;
+
+import org.jocl.cl_command_queue;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+
+/**
+ * Interface for a backend that executes the most frequently called 
+ * BLAS routines on a single command queue. <br>
+ * <br>
+ * The parameters are the same as those of the respective methods of 
+ * {@link CLBLAS}, except for the command queue and the event, which 
+ * are passed directly instead of in arrays, so that implementations 
+ * may avoid any allocation for a call. The default backend calls the 
+ * JNI methods of {@link CLBLAS}. Other implementations, for example the
+ * one that calls the clBLAS library via the Foreign Function and Memory 
+ * API of Java 22, may be selected with {@link CLBLASBackends}. <br>
+ * <br>
+ * Implementations must be thread-safe.
+ */
+public interface CLBLASBackend
+{
+    /**
+     * Matrix-matrix product of general rectangular matrices. See 
+     * {@link CLBLAS#clblasSgemm}.
+     * 
+     * @param order The {@link clblasOrder}
+     * @param transA How matrix A is to be transposed
+     * @param transB How matrix B is to be transposed
+     * @param M The number of rows of op(A) and C
+     * @param N The number of columns of op(B) and C
+     * @param K The number of columns of op(A) and rows of op(B)
+     * @param alpha The factor of op(A)*op(B)
+     * @param A The matrix A
+     * @param offA The offset of A, in elements
+     * @param lda The leading dimension of A
+     * @param B The matrix B
+     * @param offB The offset of B, in elements
+     * @param ldb The leading dimension of B
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C, in elements
+     * @param ldc The leading dimension of C
+     * @param commandQueue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the completion of the product. May be 
+     * <code>null</code>.
+     * @return The {@link clblasStatus}
+     */
+    int sgemm(int order, int transA, int transB, 
+        long M, long N, long K, float alpha, 
+        cl_mem A, long offA, long lda, cl_mem B, long offB, long ldb, 
+        float beta, cl_mem C, long offC, long ldc, 
+        cl_command_queue commandQueue, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event);
+    
+    /**
+     * Matrix-vector product with a general rectangular matrix. See 
+     * {@link CLBLAS#clblasSgemv}.
+     * 
+     * @param order The {@link clblasOrder}
+     * @param transA How matrix A is to be transposed
+     * @param M The number of rows of A
+     * @param N The number of columns of A
+     * @param alpha The factor of op(A)*x
+     * @param A The matrix A
+     * @param offA The offset of A, in elements
+     * @param lda The leading dimension of A
+     * @param x The vector x
+     * @param offx The offset of x, in elements
+     * @param incx The increment of x
+     * @param beta The factor of y
+     * @param y The vector y
+     * @param offy The offset of y, in elements
+     * @param incy The increment of y
+     * @param commandQueue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the completion of the product. May be 
+     * <code>null</code>.
+     * @return The {@link clblasStatus}
+     */
+    int sgemv(int order, int transA, long M, long N, float alpha, 
+        cl_mem A, long offA, long lda, cl_mem x, long offx, int incx, 
+        float beta, cl_mem y, long offy, int incy, 
+        cl_command_queue commandQueue, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event);
+    
+    /**
+     * Scale vector X and add it to vector Y. See 
+     * {@link CLBLAS#clblasSaxpy}.
+     * 
+     * @param N The number of elements
+     * @param alpha The factor of X
+     * @param X The vector X
+     * @param offx The offset of X, in elements
+     * @param incx The increment of X
+     * @param Y The vector Y
+     * @param offy The offset of Y, in elements
+     * @param incy The increment of Y
+     * @param commandQueue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the completion of the operation. May 
+     * be <code>null</code>.
+     * @return The {@link clblasStatus}
+     */
+    int saxpy(long N, float alpha, cl_mem X, long offx, int incx, 
+        cl_mem Y, long offy, int incy, cl_command_queue commandQueue, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event);
+    
+    /**
+     * Scale vector X. See {@link CLBLAS#clblasSscal}.
+     * 
+     * @param N The number of elements
+     * @param alpha The factor of X
+     * @param X The vector X
+     * @param offx The offset of X, in elements
+     * @param incx The increment of X
+     * @param commandQueue The command queue
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the completion of the operation. May 
+     * be <code>null</code>.
+     * @return The {@link clblasStatus}
+     */
+    int sscal(long N, float alpha, cl_mem X, long offx, int incx, 
+        cl_command_queue commandQueue, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event);
+}
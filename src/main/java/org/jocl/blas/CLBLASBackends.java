@@ -0,0 +1,356 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.jocl.cl_command_queue;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+
+/**
+ * Methods for the selection of the {@link CLBLASBackend}. <br>
+ * <br>
+ * By default, the {@link #getJniBackend() JNI backend} is used. A 
+ * different backend may be set with {@link #setBackend}, or selected 
+ * when the backend is first obtained, with the system property 
+ * {@value #BACKEND_PROPERTY}: The value <code>jni</code> selects the JNI
+ * backend, the value {@value #FOREIGN_BACKEND} selects the backend that
+ * calls clBLAS via the Foreign Function and Memory API, and any other 
+ * value is interpreted as the fully qualified name of a class that 
+ * implements {@link CLBLASBackend} and has a public constructor without
+ * arguments. This allows implementations that are compiled for newer 
+ * Java versions to be used without a dependency of this library on 
+ * them. <br>
+ * <br>
+ * The Foreign Function and Memory backend, 
+ * <code>{@value #FOREIGN_BACKEND_CLASS}</code>, requires Java 22. It is 
+ * only contained in the library when it was built with Java 22 or later,
+ * which activates the <code>java22</code> build profile.
+ */
+public final class CLBLASBackends
+{
+    /**
+     * The name of the system property that selects the backend
+     */
+    public static final String BACKEND_PROPERTY = "org.jocl.blas.backend";
+    
+    /**
+     * The value of the system property {@value #BACKEND_PROPERTY} that
+     * selects the backend that uses the Foreign Function and Memory API
+     */
+    public static final String FOREIGN_BACKEND = "ffm";
+    
+    /**
+     * The name of the class of the backend that uses the Foreign 
+     * Function and Memory API
+     */
+    static final String FOREIGN_BACKEND_CLASS = 
+        "org.jocl.blas.ForeignCLBLASBackend";
+    
+    /**
+     * The {@link CLBLASBackend} that calls the JNI methods of 
+     * {@link CLBLAS}. The single-element arrays for the command queue 
+     * and the event are kept for each thread, so that a call does not 
+     * allocate any arrays. The references in these arrays are cleared 
+     * after each call.
+     */
+    private static class JniBackend implements CLBLASBackend
+    {
+        /**
+         * The single-element arrays of one thread
+         */
+        private static class Arrays
+        {
+            /**
+             * The array for the command queue
+             */
+            final cl_command_queue queues[] = new cl_command_queue[1];
+            
+            /**
+             * The array for the event
+             */
+            final cl_event events[] = new cl_event[1];
+            
+            /**
+             * Returns the command queue array, containing the given 
+             * command queue
+             * 
+             * @param commandQueue The command queue
+             * @return The command queue array
+             */
+            cl_command_queue[] queues(cl_command_queue commandQueue)
+            {
+                queues[0] = commandQueue;
+                return queues;
+            }
+            
+            /**
+             * Returns the event array, containing the given event, or 
+             * <code>null</code> if the event is <code>null</code>
+             * 
+             * @param event The event
+             * @return The event array
+             */
+            cl_event[] events(cl_event event)
+            {
+                if (event == null)
+                {
+                    return null;
+                }
+                events[0] = event;
+                return events;
+            }
+            
+            /**
+             * Clears the references in the arrays
+             */
+            void clear()
+            {
+                queues[0] = null;
+                events[0] = null;
+            }
+        }
+        
+        /**
+         * The arrays of each thread
+         */
+        private final ThreadLocal<Arrays> arrays = new ThreadLocal<Arrays>()
+        {
+            @Override
+            protected Arrays initialValue()
+            {
+                return new Arrays();
+            }
+        };
+
+        @Override
+        public int sgemm(int order, int transA, int transB, 
+            long M, long N, long K, float alpha, 
+            cl_mem A, long offA, long lda, cl_mem B, long offB, long ldb, 
+            float beta, cl_mem C, long offC, long ldc, 
+            cl_command_queue commandQueue, int numEventsInWaitList, 
+            cl_event eventWaitList[], cl_event event)
+        {
+            Arrays current = arrays.get();
+            try
+            {
+                return CLBLAS.clblasSgemm(order, transA, transB, M, N, K, 
+                    alpha, A, offA, lda, B, offB, ldb, beta, C, offC, ldc, 
+                    1, current.queues(commandQueue), 
+                    numEventsInWaitList, eventWaitList, current.events(event));
+            }
+            finally
+            {
+                current.clear();
+            }
+        }
+
+        @Override
+        public int sgemv(int order, int transA, long M, long N, 
+            float alpha, cl_mem A, long offA, long lda, 
+            cl_mem x, long offx, int incx, 
+            float beta, cl_mem y, long offy, int incy, 
+            cl_command_queue commandQueue, int numEventsInWaitList, 
+            cl_event eventWaitList[], cl_event event)
+        {
+            Arrays current = arrays.get();
+            try
+            {
+                return CLBLAS.clblasSgemv(order, transA, M, N, alpha, 
+                    A, offA, lda, x, offx, incx, beta, y, offy, incy, 
+                    1, current.queues(commandQueue), 
+                    numEventsInWaitList, eventWaitList, current.events(event));
+            }
+            finally
+            {
+                current.clear();
+            }
+        }
+
+        @Override
+        public int saxpy(long N, float alpha, 
+            cl_mem X, long offx, int incx, cl_mem Y, long offy, int incy, 
+            cl_command_queue commandQueue, int numEventsInWaitList, 
+            cl_event eventWaitList[], cl_event event)
+        {
+            Arrays current = arrays.get();
+            try
+            {
+                return CLBLAS.clblasSaxpy(N, alpha, X, offx, incx, 
+                    Y, offy, incy, 
+                    1, current.queues(commandQueue), 
+                    numEventsInWaitList, eventWaitList, current.events(event));
+            }
+            finally
+            {
+                current.clear();
+            }
+        }
+
+        @Override
+        public int sscal(long N, float alpha, 
+            cl_mem X, long offx, int incx, 
+            cl_command_queue commandQueue, int numEventsInWaitList, 
+            cl_event eventWaitList[], cl_event event)
+        {
+            Arrays current = arrays.get();
+            try
+            {
+                return CLBLAS.clblasSscal(N, alpha, X, offx, incx, 
+                    1, current.queues(commandQueue), 
+                    numEventsInWaitList, eventWaitList, current.events(event));
+            }
+            finally
+            {
+                current.clear();
+            }
+        }
+
+    }
+    
+    /**
+     * The JNI backend
+     */
+    private static final CLBLASBackend JNI_BACKEND = new JniBackend();
+    
+    /**
+     * The current backend. This is initialized lazily, when it is 
+     * first obtained.
+     */
+    private static volatile CLBLASBackend backend = null;
+    
+    /**
+     * Returns the backend that calls the JNI methods of {@link CLBLAS}
+     * 
+     * @return The JNI backend
+     */
+    public static CLBLASBackend getJniBackend()
+    {
+        return JNI_BACKEND;
+    }
+    
+    /**
+     * Returns the current backend. If no backend was set, then this will
+     * be the backend that is selected by the system property 
+     * {@value #BACKEND_PROPERTY}, or the JNI backend if the property is
+     * not set.
+     * 
+     * @return The backend
+     * @throws IllegalStateException If the system property does not 
+     * denote a backend that can be instantiated
+     */
+    public static CLBLASBackend getBackend()
+    {
+        CLBLASBackend result = backend;
+        if (result == null)
+        {
+            result = createBackend(System.getProperty(BACKEND_PROPERTY));
+            backend = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Set the backend that is returned by {@link #getBackend()}
+     * 
+     * @param newBackend The backend. If this is <code>null</code>, then 
+     * the backend will be selected again with the system property when 
+     * it is obtained for the next time.
+     */
+    public static void setBackend(CLBLASBackend newBackend)
+    {
+        backend = newBackend;
+    }
+    
+    /**
+     * Creates the backend with the given name
+     * 
+     * @param name The name, which is <code>null</code> or 
+     * <code>jni</code> for the JNI backend, {@value #FOREIGN_BACKEND} 
+     * for the Foreign Function and Memory backend, or a class name
+     * @return The backend
+     * @throws IllegalStateException If the backend can not be 
+     * instantiated
+     */
+    static CLBLASBackend createBackend(String name)
+    {
+        if (name == null || name.equals("jni"))
+        {
+            return JNI_BACKEND;
+        }
+        String className = name;
+        if (name.equals(FOREIGN_BACKEND))
+        {
+            className = FOREIGN_BACKEND_CLASS;
+        }
+        Throwable cause = null;
+        try
+        {
+            Class<?> c = Class.forName(className);
+            return (CLBLASBackend)c.getDeclaredConstructor().newInstance();
+        }
+        catch (ClassNotFoundException e)
+        {
+            cause = e;
+        }
+        catch (NoSuchMethodException e)
+        {
+            cause = e;
+        }
+        catch (InstantiationException e)
+        {
+            cause = e;
+        }
+        catch (IllegalAccessException e)
+        {
+            cause = e;
+        }
+        catch (InvocationTargetException e)
+        {
+            cause = e.getCause();
+        }
+        catch (ClassCastException e)
+        {
+            cause = e;
+        }
+        catch (LinkageError e)
+        {
+            cause = e;
+        }
+        throw new IllegalStateException(
+            "Could not create CLBLAS backend " + name, cause);
+    }
+    
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private CLBLASBackends()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
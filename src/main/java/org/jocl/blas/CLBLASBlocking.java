@@ -0,0 +1,665 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas;
+
+import static org.jocl.blas.clblasStatus.clblasSuccess;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.util.concurrent.CountDownLatch;
+
+import org.jocl.CL;
+import org.jocl.EventCallbackFunction;
+import org.jocl.NativePointerObject;
+import org.jocl.Pointer;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+
+/**
+ * Blocking variants of the synchronous data transfer helpers of 
+ * {@link CLBLAS} that do not block the calling thread inside native 
+ * code. <br>
+ * <br>
+ * The synchronous helpers like {@link CLBLAS#clblasReadMatrix} wait for 
+ * the completion of the transfer inside the native library. When they 
+ * are called from a virtual thread, this pins the carrier thread for 
+ * the whole duration of the transfer. The methods in this class have 
+ * the same signatures as the synchronous helpers, but enqueue the 
+ * respective <code>Async</code> variant, and then wait for the 
+ * completion of its event with the mechanisms of 
+ * <code>java.util.concurrent</code>, which allows a virtual thread to 
+ * unmount from its carrier thread while waiting.<br>
+ * <br>
+ * Unlike for the synchronous helpers, the host memory must be a direct
+ * buffer or native memory. The <code>Async</code> variants transfer a 
+ * pointer to a Java array or a non-direct buffer from a temporary copy
+ * that is freed before the transfer is complete, so the methods in 
+ * this class throw an <code>IllegalArgumentException</code> for such 
+ * pointers. Java arrays can be transferred with the synchronous 
+ * helpers of {@link CLBLAS} that accept arrays, like 
+ * {@link CLBLAS#clblasReadMatrix(int, long, long, cl_mem, long, long, 
+ * float[], long, long, cl_command_queue, int, cl_event[])}.<br>
+ * <br>
+ * This requires OpenCL 1.1 or later, for <code>clSetEventCallback</code>.
+ */
+public final class CLBLASBlocking
+{
+    /**
+     * Interface for the registration of completion callbacks for 
+     * events. This is only used to replace the OpenCL event callbacks
+     * with a simulation in tests and benchmarks.
+     */
+    interface EventCallbackRegistrar
+    {
+        /**
+         * Register the given callback to be called when the given 
+         * event completes, as in <code>clSetEventCallback</code>
+         * 
+         * @param event The event
+         * @param callback The callback
+         * @return The error code
+         */
+        int register(cl_event event, EventCallbackFunction callback);
+    }
+    
+    /**
+     * The {@link EventCallbackRegistrar} that uses 
+     * <code>clSetEventCallback</code>
+     */
+    private static final EventCallbackRegistrar DEFAULT_REGISTRAR = 
+        new EventCallbackRegistrar()
+    {
+        @Override
+        public int register(cl_event event, EventCallbackFunction callback)
+        {
+            return CL.clSetEventCallback(
+                event, CL.CL_COMPLETE, callback, null);
+        }
+    };
+    
+    /**
+     * The current {@link EventCallbackRegistrar}
+     */
+    private static volatile EventCallbackRegistrar registrar = 
+        DEFAULT_REGISTRAR;
+    
+    /**
+     * The field of a {@link NativePointerObject} that stores the Java 
+     * buffer that a pointer refers to, if any
+     */
+    private static final Field POINTER_BUFFER = findPointerBuffer();
+    
+    /**
+     * Set the {@link EventCallbackRegistrar} that is used for waiting
+     * for events. This is only intended for tests and benchmarks.
+     * 
+     * @param newRegistrar The registrar. If this is <code>null</code>,
+     * then the default registrar will be used.
+     */
+    static void setEventCallbackRegistrar(EventCallbackRegistrar newRegistrar)
+    {
+        registrar = newRegistrar == null ? DEFAULT_REGISTRAR : newRegistrar;
+    }
+    
+    /**
+     * Wait until the given event has completed. The calling thread is
+     * parked with the mechanisms of <code>java.util.concurrent</code>,
+     * which does not pin the carrier thread when the calling thread is 
+     * a virtual thread. If the thread is interrupted while waiting, 
+     * then it continues to wait, and its interrupted status is restored
+     * before this method returns.<br>
+     * <br>
+     * The commands in the queue of the event must have been flushed.
+     * 
+     * @param event The event
+     * @return <code>CL_SUCCESS</code> if the event completed normally, 
+     * the (negative) execution status of the event if it was terminated
+     * abnormally, or the error code of <code>clSetEventCallback</code>
+     */
+    public static int await(cl_event event)
+    {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final int status[] = { CL.CL_COMPLETE };
+        int result = registrar.register(event, new EventCallbackFunction()
+        {
+            @Override
+            public void function(cl_event event,
+                int command_exec_callback_type, Object user_data)
+            {
+                status[0] = command_exec_callback_type;
+                latch.countDown();
+            }
+        });
+        if (result != CL.CL_SUCCESS)
+        {
+            return result;
+        }
+        boolean interrupted = false;
+        while (true)
+        {
+            try
+            {
+                latch.await();
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+        return status[0] < 0 ? status[0] : CL.CL_SUCCESS;
+    }
+    
+    /**
+     * Returns the field of a {@link NativePointerObject} that stores the
+     * Java buffer that a pointer refers to
+     * 
+     * @return The field
+     * @throws ExceptionInInitializerError If the field can not be 
+     * accessed
+     */
+    private static Field findPointerBuffer()
+    {
+        try
+        {
+            Field field = 
+                NativePointerObject.class.getDeclaredField("buffer");
+            field.setAccessible(true);
+            return field;
+        }
+        catch (NoSuchFieldException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
+    /**
+     * Make sure that the given pointer does not refer to a Java array or
+     * a non-direct buffer. The <code>Async</code> functions transfer 
+     * such a pointer from a temporary copy, which is released before the
+     * transfer is complete, and a read would not reach the Java memory.
+     * 
+     * @param pointer The pointer
+     * @param name The parameter name
+     * @throws IllegalArgumentException If the pointer refers to a Java 
+     * array or a non-direct buffer
+     */
+    private static void checkHostPointer(Pointer pointer, String name)
+    {
+        if (pointer == null)
+        {
+            return;
+        }
+        Buffer buffer = null;
+        try
+        {
+            buffer = (Buffer) POINTER_BUFFER.get(pointer);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        if (buffer != null && !buffer.isDirect())
+        {
+            throw new IllegalArgumentException("Parameter '" + name + 
+                "' refers to a Java array or a non-direct buffer. " + 
+                "Only direct buffers and native memory can be " + 
+                "transferred without blocking.");
+        }
+    }
+    
+    /**
+     * Flush the given queue, wait for the given event, and release it.
+     * This is called after an <code>Async</code> function returned the
+     * given result.
+     * 
+     * @param result The result of the <code>Async</code> function
+     * @param commandQueue The command queue
+     * @param event The event
+     * @return The clblasStatus
+     */
+    private static int complete(
+        int result, cl_command_queue commandQueue, cl_event event)
+    {
+        if (result != clblasSuccess)
+        {
+            return result;
+        }
+        try
+        {
+            result = CL.clFlush(commandQueue);
+            if (result != CL.CL_SUCCESS)
+            {
+                CL.clWaitForEvents(1, new cl_event[] { event });
+                return result;
+            }
+            return await(event);
+        }
+        finally
+        {
+            CL.clReleaseEvent(event);
+        }
+    }
+    
+    /**
+     * Blocking variant of {@link CLBLAS#clblasWriteSubMatrix}, 
+     * implemented with {@link CLBLAS#clblasWriteSubMatrixAsync}
+     *
+     * @param order The order
+     * @param element_size The element size
+     * @param A The source matrix on the host
+     * @param offA The offset of A
+     * @param ldA The leading dimension of A
+     * @param nrA The number of rows of A
+     * @param ncA The number of columns of A
+     * @param xA The x-position in A
+     * @param yA The y-position in A
+     * @param B The destination matrix on the device
+     * @param offB The offset of B
+     * @param ldB The leading dimension of B
+     * @param nrB The number of rows of B
+     * @param ncB The number of columns of B
+     * @param xB The x-position in B
+     * @param yB The y-position in B
+     * @param nx The size in x-direction
+     * @param ny The size in y-direction
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events to wait for
+     * @param eventWaitList The events to wait for
+     * @return The clblasStatus
+     * @throws IllegalArgumentException If A refers to a Java array or
+     * a non-direct buffer
+     */
+    public static int clblasWriteSubMatrix(
+        int order, long element_size, 
+        Pointer A, long offA, long ldA, long nrA, long ncA, long xA, long yA, 
+        cl_mem B, long offB, long ldB, long nrB, long ncB, long xB, long yB, 
+        long nx, long ny, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, cl_event[] eventWaitList)
+    {
+        checkHostPointer(A, "A");
+        cl_event event[] = { new cl_event() };
+        int result = CLBLAS.clblasWriteSubMatrixAsync(order, element_size, 
+            A, offA, ldA, nrA, ncA, xA, yA, B, offB, ldB, nrB, ncB, xB, yB, 
+            nx, ny, command_queue, numEventsInWaitList, eventWaitList, event);
+        return complete(result, command_queue, event[0]);
+    }
+    
+    /**
+     * Blocking variant of {@link CLBLAS#clblasReadSubMatrix}, 
+     * implemented with {@link CLBLAS#clblasReadSubMatrixAsync}
+     *
+     * @param order The order
+     * @param element_size The element size
+     * @param A The source matrix on the device
+     * @param offA The offset of A
+     * @param ldA The leading dimension of A
+     * @param nrA The number of rows of A
+     * @param ncA The number of columns of A
+     * @param xA The x-position in A
+     * @param yA The y-position in A
+     * @param B The destination matrix on the host
+     * @param offB The offset of B
+     * @param ldB The leading dimension of B
+     * @param nrB The number of rows of B
+     * @param ncB The number of columns of B
+     * @param xB The x-position in B
+     * @param yB The y-position in B
+     * @param nx The size in x-direction
+     * @param ny The size in y-direction
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events to wait for
+     * @param eventWaitList The events to wait for
+     * @return The clblasStatus
+     * @throws IllegalArgumentException If B refers to a Java array or
+     * a non-direct buffer
+     */
+    public static int clblasReadSubMatrix(
+        int order, long element_size, 
+        cl_mem A, long offA, long ldA, long nrA, long ncA, long xA, long yA, 
+        Pointer B, long offB, long ldB, long nrB, long ncB, long xB, long yB, 
+        long nx, long ny, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, cl_event[] eventWaitList)
+    {
+        checkHostPointer(B, "B");
+        cl_event event[] = { new cl_event() };
+        int result = CLBLAS.clblasReadSubMatrixAsync(order, element_size, 
+            A, offA, ldA, nrA, ncA, xA, yA, B, offB, ldB, nrB, ncB, xB, yB, 
+            nx, ny, command_queue, numEventsInWaitList, eventWaitList, event);
+        return complete(result, command_queue, event[0]);
+    }
+    
+    /**
+     * Blocking variant of {@link CLBLAS#clblasCopySubMatrix}, 
+     * implemented with {@link CLBLAS#clblasCopySubMatrixAsync}
+     *
+     * @param order The order
+     * @param element_size The element size
+     * @param A The source matrix on the device
+     * @param offA The offset of A
+     * @param ldA The leading dimension of A
+     * @param nrA The number of rows of A
+     * @param ncA The number of columns of A
+     * @param xA The x-position in A
+     * @param yA The y-position in A
+     * @param B The destination matrix on the device
+     * @param offB The offset of B
+     * @param ldB The leading dimension of B
+     * @param nrB The number of rows of B
+     * @param ncB The number of columns of B
+     * @param xB The x-position in B
+     * @param yB The y-position in B
+     * @param nx The size in x-direction
+     * @param ny The size in y-direction
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events to wait for
+     * @param eventWaitList The events to wait for
+     * @return The clblasStatus
+     */
+    public static int clblasCopySubMatrix(
+        int order, long element_size, 
+        cl_mem A, long offA, long ldA, long nrA, long ncA, long xA, long yA, 
+        cl_mem B, long offB, long ldB, long nrB, long ncB, long xB, long yB, 
+        long nx, long ny, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, cl_event[] eventWaitList)
+    {
+        cl_event event[] = { new cl_event() };
+        int result = CLBLAS.clblasCopySubMatrixAsync(order, element_size, 
+            A, offA, ldA, nrA, ncA, xA, yA, B, offB, ldB, nrB, ncB, xB, yB, 
+            nx, ny, command_queue, numEventsInWaitList, eventWaitList, event);
+        return complete(result, command_queue, event[0]);
+    }
+    
+    /**
+     * Blocking variant of {@link CLBLAS#clblasWriteVector}, 
+     * implemented with {@link CLBLAS#clblasWriteVectorAsync}
+     *
+     * @param nb_elem The number of elements
+     * @param element_size The element size
+     * @param A The source vector on the host
+     * @param offA The offset of A
+     * @param B The destination vector on the device
+     * @param offB The offset of B
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events to wait for
+     * @param eventWaitList The events to wait for
+     * @return The clblasStatus
+     * @throws IllegalArgumentException If A refers to a Java array or
+     * a non-direct buffer
+     */
+    public static int clblasWriteVector(
+        long nb_elem, long element_size, 
+        Pointer A, long offA, cl_mem B, long offB, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, cl_event[] eventWaitList)
+    {
+        checkHostPointer(A, "A");
+        cl_event event[] = { new cl_event() };
+        int result = CLBLAS.clblasWriteVectorAsync(nb_elem, element_size, 
+            A, offA, B, offB, 
+            command_queue, numEventsInWaitList, eventWaitList, event);
+        return complete(result, command_queue, event[0]);
+    }
+    
+    /**
+     * Blocking variant of {@link CLBLAS#clblasReadVector}, 
+     * implemented with {@link CLBLAS#clblasReadVectorAsync}
+     *
+     * @param nb_elem The number of elements
+     * @param element_size The element size
+     * @param A The source vector on the device
+     * @param offA The offset of A
+     * @param B The destination vector on the host
+     * @param offB The offset of B
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events to wait for
+     * @param eventWaitList The events to wait for
+     * @return The clblasStatus
+     * @throws IllegalArgumentException If B refers to a Java array or
+     * a non-direct buffer
+     */
+    public static int clblasReadVector(
+        long nb_elem, long element_size, 
+        cl_mem A, long offA, Pointer B, long offB, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, cl_event[] eventWaitList)
+    {
+        checkHostPointer(B, "B");
+        cl_event event[] = { new cl_event() };
+        int result = CLBLAS.clblasReadVectorAsync(nb_elem, element_size, 
+            A, offA, B, offB, 
+            command_queue, numEventsInWaitList, eventWaitList, event);
+        return complete(result, command_queue, event[0]);
+    }
+    
+    /**
+     * Blocking variant of {@link CLBLAS#clblasCopyVector}, 
+     * implemented with {@link CLBLAS#clblasCopyVectorAsync}
+     *
+     * @param nb_elem The number of elements
+     * @param element_size The element size
+     * @param A The source vector on the device
+     * @param offA The offset of A
+     * @param B The destination vector on the device
+     * @param offB The offset of B
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events to wait for
+     * @param eventWaitList The events to wait for
+     * @return The clblasStatus
+     */
+    public static int clblasCopyVector(
+        long nb_elem, long element_size, 
+        cl_mem A, long offA, cl_mem B, long offB, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, cl_event[] eventWaitList)
+    {
+        cl_event event[] = { new cl_event() };
+        int result = CLBLAS.clblasCopyVectorAsync(nb_elem, element_size, 
+            A, offA, B, offB, 
+            command_queue, numEventsInWaitList, eventWaitList, event);
+        return complete(result, command_queue, event[0]);
+    }
+    
+    /**
+     * Blocking variant of {@link CLBLAS#clblasWriteMatrix}, 
+     * implemented with {@link CLBLAS#clblasWriteMatrixAsync}
+     *
+     * @param order The order
+     * @param sx The size in x-direction
+     * @param sy The size in y-direction
+     * @param element_size The element size
+     * @param A The source matrix on the host
+     * @param offA The offset of A
+     * @param ldA The leading dimension of A
+     * @param B The destination matrix on the device
+     * @param offB The offset of B
+     * @param ldB The leading dimension of B
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events to wait for
+     * @param eventWaitList The events to wait for
+     * @return The clblasStatus
+     * @throws IllegalArgumentException If A refers to a Java array or
+     * a non-direct buffer
+     */
+    public static int clblasWriteMatrix(
+        int order, long sx, long sy, long element_size, 
+        Pointer A, long offA, long ldA, cl_mem B, long offB, long ldB, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, cl_event[] eventWaitList)
+    {
+        checkHostPointer(A, "A");
+        cl_event event[] = { new cl_event() };
+        int result = CLBLAS.clblasWriteMatrixAsync(order, sx, sy, 
+            element_size, A, offA, ldA, B, offB, ldB, 
+            command_queue, numEventsInWaitList, eventWaitList, event);
+        return complete(result, command_queue, event[0]);
+    }
+    
+    /**
+     * Blocking variant of {@link CLBLAS#clblasReadMatrix}, 
+     * implemented with {@link CLBLAS#clblasReadMatrixAsync}
+     *
+     * @param order The order
+     * @param sx The size in x-direction
+     * @param sy The size in y-direction
+     * @param element_size The element size
+     * @param A The source matrix on the device
+     * @param offA The offset of A
+     * @param ldA The leading dimension of A
+     * @param B The destination matrix on the host
+     * @param offB The offset of B
+     * @param ldB The leading dimension of B
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events to wait for
+     * @param eventWaitList The events to wait for
+     * @return The clblasStatus
+     * @throws IllegalArgumentException If B refers to a Java array or
+     * a non-direct buffer
+     */
+    public static int clblasReadMatrix(
+        int order, long sx, long sy, long element_size, 
+        cl_mem A, long offA, long ldA, Pointer B, long offB, long ldB, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, cl_event[] eventWaitList)
+    {
+        checkHostPointer(B, "B");
+        cl_event event[] = { new cl_event() };
+        int result = CLBLAS.clblasReadMatrixAsync(order, sx, sy, 
+            element_size, A, offA, ldA, B, offB, ldB, 
+            command_queue, numEventsInWaitList, eventWaitList, event);
+        return complete(result, command_queue, event[0]);
+    }
+    
+    /**
+     * Blocking variant of {@link CLBLAS#clblasCopyMatrix}, 
+     * implemented with {@link CLBLAS#clblasCopyMatrixAsync}
+     *
+     * @param order The order
+     * @param sx The size in x-direction
+     * @param sy The size in y-direction
+     * @param element_size The element size
+     * @param A The source matrix on the device
+     * @param offA The offset of A
+     * @param ldA The leading dimension of A
+     * @param B The destination matrix on the device
+     * @param offB The offset of B
+     * @param ldB The leading dimension of B
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events to wait for
+     * @param eventWaitList The events to wait for
+     * @return The clblasStatus
+     */
+    public static int clblasCopyMatrix(
+        int order, long sx, long sy, long element_size, 
+        cl_mem A, long offA, long ldA, cl_mem B, long offB, long ldB, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, cl_event[] eventWaitList)
+    {
+        cl_event event[] = { new cl_event() };
+        int result = CLBLAS.clblasCopyMatrixAsync(order, sx, sy, 
+            element_size, A, offA, ldA, B, offB, ldB, 
+            command_queue, numEventsInWaitList, eventWaitList, event);
+        return complete(result, command_queue, event[0]);
+    }
+    
+    /**
+     * Blocking variant of {@link CLBLAS#clblasFillVector}, 
+     * implemented with {@link CLBLAS#clblasFillVectorAsync}
+     *
+     * @param nb_elem The number of elements
+     * @param element_size The element size
+     * @param A The vector on the device
+     * @param offA The offset of A
+     * @param pattern The fill pattern, with the size of one element
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events to wait for
+     * @param eventWaitList The events to wait for
+     * @return The clblasStatus
+     */
+    public static int clblasFillVector(
+        long nb_elem, long element_size, cl_mem A, long offA, Pointer pattern,
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, cl_event[] eventWaitList)
+    {
+        cl_event event[] = { new cl_event() };
+        int result = CLBLAS.clblasFillVectorAsync(nb_elem, element_size, 
+            A, offA, pattern, 
+            command_queue, numEventsInWaitList, eventWaitList, event);
+        return complete(result, command_queue, event[0]);
+    }
+    
+    /**
+     * Blocking variant of {@link CLBLAS#clblasFillSubMatrix}, 
+     * implemented with {@link CLBLAS#clblasFillSubMatrixAsync}
+     *
+     * @param order The order
+     * @param element_size The element size
+     * @param A The matrix on the device
+     * @param offA The offset of A
+     * @param ldA The leading dimension of A
+     * @param nrA The number of rows of A
+     * @param ncA The number of columns of A
+     * @param xA The x-position in A
+     * @param yA The y-position in A
+     * @param nx The size in x-direction
+     * @param ny The size in y-direction
+     * @param pattern The fill pattern, with the size of one element
+     * @param command_queue The command queue
+     * @param numEventsInWaitList The number of events to wait for
+     * @param eventWaitList The events to wait for
+     * @return The clblasStatus
+     */
+    public static int clblasFillSubMatrix(
+        int order, long element_size, 
+        cl_mem A, long offA, long ldA, long nrA, long ncA, long xA, long yA, 
+        long nx, long ny, Pointer pattern, 
+        cl_command_queue command_queue, 
+        int numEventsInWaitList, cl_event[] eventWaitList)
+    {
+        cl_event event[] = { new cl_event() };
+        int result = CLBLAS.clblasFillSubMatrixAsync(order, element_size, 
+            A, offA, ldA, nrA, ncA, (int) xA, (int) yA, nx, ny, pattern, 
+            command_queue, numEventsInWaitList, eventWaitList, event);
+        return complete(result, command_queue, event[0]);
+    }
+    
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private CLBLASBlocking()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas;
+
+import static org.jocl.blas.clblasStatus.clblasSuccess;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe, reference counted manager for the lifecycle of the 
+ * clBLAS library. <br>
+ * <br>
+ * {@link CLBLAS#clblasSetup()} and {@link CLBLAS#clblasTeardown()} are 
+ * not thread-safe. When several independent components of an application 
+ * use clBLAS, they may instead call {@link #acquire()} before they start 
+ * using the library, and {@link #release()} when they are done. The 
+ * library is set up lazily by the first call to {@link #acquire()}, and 
+ * torn down exactly once, when the last reference is released. If it is 
+ * acquired again afterwards, it will be set up again.<br>
+ * <br>
+ * Acquiring and releasing a reference while other references are held
+ * does not acquire any lock. Only the transitions between the states
+ * where the library is not initialized and where it is initialized
+ * are serialized.<br>
+ * <br>
+ * The {@link #getInstance() default instance} manages the native library.
+ * Its state is shared by all users of the class loader that loaded
+ * JOCLBLAS, which is also the scope in which the native library can be 
+ * loaded. Components in different class loaders should therefore obtain 
+ * JOCLBLAS from a common parent class loader.
+ */
+public final class CLBLASLifecycle
+{
+    /**
+     * Interface for the library whose lifecycle is managed by a
+     * {@link CLBLASLifecycle}
+     */
+    public static interface Library
+    {
+        /**
+         * Set up the library, as in {@link CLBLAS#clblasSetup()}
+         * 
+         * @return The clblasStatus
+         */
+        int setup();
+        
+        /**
+         * Tear down the library, as in {@link CLBLAS#clblasTeardown()}
+         */
+        void teardown();
+    }
+    
+    /**
+     * The {@link Library} that calls the CLBLAS functions. The CLBLAS 
+     * class, and thus the native library, is only loaded when one of 
+     * these methods is called for the first time.
+     */
+    private static class NativeLibrary implements Library
+    {
+        @Override
+        public int setup()
+        {
+            return CLBLAS.clblasSetup();
+        }
+
+        @Override
+        public void teardown()
+        {
+            CLBLAS.clblasTeardown();
+        }
+    }
+    
+    /**
+     * The default instance, for the native library
+     */
+    private static final CLBLASLifecycle INSTANCE = 
+        new CLBLASLifecycle(new NativeLibrary());
+    
+    /**
+     * Returns the instance that manages the lifecycle of the native
+     * clBLAS library
+     * 
+     * @return The instance
+     */
+    public static CLBLASLifecycle getInstance()
+    {
+        return INSTANCE;
+    }
+    
+    /**
+     * The library
+     */
+    private final Library library;
+    
+    /**
+     * The number of references that are currently held. This is only
+     * changed from 0 to 1 or from 1 to 0 while holding the 
+     * {@link #transitionLock}
+     */
+    private final AtomicInteger referenceCount;
+    
+    /**
+     * The lock that serializes the setup and teardown of the library
+     */
+    private final Object transitionLock;
+    
+    /**
+     * The number of times that the library has been set up
+     */
+    private final AtomicInteger setupCount;
+    
+    /**
+     * Creates a new lifecycle manager for the given library. Applications
+     * will usually use the {@link #getInstance() default instance}.
+     * 
+     * @param library The library
+     * @throws NullPointerException If the library is <code>null</code>
+     */
+    public CLBLASLifecycle(Library library)
+    {
+        if (library == null)
+        {
+            throw new NullPointerException("The library is null");
+        }
+        this.library = library;
+        this.referenceCount = new AtomicInteger();
+        this.transitionLock = new Object();
+        this.setupCount = new AtomicInteger();
+    }
+    
+    /**
+     * Acquire a reference to the library. If the library is not yet
+     * initialized, then it will be set up. Each successful call to this 
+     * method must be balanced by a call to {@link #release()}.<br>
+     * <br>
+     * If the setup fails, then no reference is acquired, and the
+     * clblasStatus of the setup is returned (or the CLException is
+     * thrown, if exceptions are enabled in {@link CLBLAS}). 
+     * 
+     * @return The clblasStatus: {@link clblasStatus#clblasSuccess} if 
+     * the reference was acquired, or the error code of the setup
+     */
+    public int acquire()
+    {
+        // Fast path: The library is already initialized
+        while (true)
+        {
+            int count = referenceCount.get();
+            if (count == 0)
+            {
+                break;
+            }
+            if (referenceCount.compareAndSet(count, count + 1))
+            {
+                return clblasSuccess;
+            }
+        }
+        
+        // Slow path: The library may have to be set up. The reference
+        // count may only be changed from 0 to 1 while holding the lock.
+        synchronized (transitionLock)
+        {
+            if (referenceCount.get() == 0)
+            {
+                int result = library.setup();
+                if (result != clblasSuccess)
+                {
+                    return result;
+                }
+                setupCount.incrementAndGet();
+            }
+            referenceCount.incrementAndGet();
+            return clblasSuccess;
+        }
+    }
+    
+    /**
+     * Release a reference that was obtained with {@link #acquire()}. 
+     * When the last reference is released, the library is torn down.
+     * 
+     * @throws IllegalStateException If no reference is currently held
+     */
+    public void release()
+    {
+        // Fast path: Other references remain
+        while (true)
+        {
+            int count = referenceCount.get();
+            if (count <= 0)
+            {
+                throw new IllegalStateException(
+                    "No reference to the library is held");
+            }
+            if (count == 1)
+            {
+                break;
+            }
+            if (referenceCount.compareAndSet(count, count - 1))
+            {
+                return;
+            }
+        }
+        
+        // Slow path: This may be the last reference. Another thread may 
+        // concurrently acquire a reference, so the count has to be 
+        // re-checked while holding the lock.
+        synchronized (transitionLock)
+        {
+            while (true)
+            {
+                int count = referenceCount.get();
+                if (count <= 0)
+                {
+                    throw new IllegalStateException(
+                        "No reference to the library is held");
+                }
+                if (referenceCount.compareAndSet(count, count - 1))
+                {
+                    if (count == 1)
+                    {
+                        library.teardown();
+                    }
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of references that are currently held
+     * 
+     * @return The reference count
+     */
+    public int getReferenceCount()
+    {
+        return referenceCount.get();
+    }
+    
+    /**
+     * Returns whether the library is currently initialized, meaning that
+     * at least one reference is held
+     * 
+     * @return Whether the library is initialized
+     */
+    public boolean isInitialized()
+    {
+        return referenceCount.get() > 0;
+    }
+    
+    /**
+     * Returns how often the library has been set up by this instance
+     * 
+     * @return The number of setups
+     */
+    public int getSetupCount()
+    {
+        return setupCount.get();
+    }
+    
+}
@@ -0,0 +1,905 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jocl.CL;
+import org.jocl.EventCallbackFunction;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+
+/**
+ * An execution context that distributes the CLBLAS calls of concurrent
+ * caller threads over a pool of command queues. <br>
+ * <br>
+ * When many threads enqueue their work into a single command queue, they
+ * are serialized inside the OpenCL implementation. This class assigns
+ * each calling thread to one queue of a pool, based on its thread ID.
+ * The assignment does not acquire any lock and does not allocate any
+ * thread-local state, so it is also suitable for large numbers of
+ * short-lived (or virtual) threads. <br>
+ * <br>
+ * Operations are submitted together with the buffers that they read 
+ * and write. When an operation accesses a buffer that has been written 
+ * by an operation on a different queue (or writes a buffer that has 
+ * been read by an operation on a different queue), the respective 
+ * events are added to its event wait list. Buffers are identified by
+ * their <code>cl_mem</code> objects. The access states of all buffers 
+ * of an operation are locked, in a fixed order, from the collection of
+ * its dependencies until its event has been recorded, so operations 
+ * that are submitted concurrently and access the same buffer are 
+ * ordered, and each one waits for the other one if they are on 
+ * different queues. <br>
+ * <br>
+ * The access state of a buffer, including the events that it refers 
+ * to, is kept until the buffer is {@link #forget(cl_mem) forgotten} or
+ * the context is {@link #finish() finished}. Callers that release 
+ * buffers must call {@link #forget(cl_mem)} before, because otherwise
+ * the states of released buffers accumulate, and a new buffer that 
+ * happens to be equal to a released one would inherit its state. <br>
+ * <br>
+ * The queues must belong to the same context and device. They are
+ * not owned by this class, and will not be released by it.
+ */
+public final class ExecutionContext
+{
+    /**
+     * Interface for an operation that may be submitted to an
+     * {@link ExecutionContext}. The parameters correspond to the last 
+     * parameters of the CLBLAS routines.
+     */
+    public static interface Operation
+    {
+        /**
+         * Enqueue this operation into the given command queue
+         * 
+         * @param commandQueue The command queue
+         * @param numEventsInWaitList The number of events in the wait list
+         * @param eventWaitList The event wait list. May be 
+         * <code>null</code> if the number of events is 0.
+         * @param event The event that will identify the operation
+         * @return The clblasStatus
+         */
+        int enqueue(cl_command_queue commandQueue, 
+            int numEventsInWaitList, cl_event eventWaitList[], 
+            cl_event event);
+    }
+    
+    /**
+     * Interface for the event functions that are used by the context
+     */
+    interface Events
+    {
+        /**
+         * Retain the given event. See {@link CL#clRetainEvent}.
+         * 
+         * @param event The event
+         */
+        void retain(cl_event event);
+
+        /**
+         * Release the given event. See {@link CL#clReleaseEvent}.
+         * 
+         * @param event The event
+         */
+        void release(cl_event event);
+
+        /**
+         * Register a callback that is called when the given event is
+         * complete. See {@link CL#clSetEventCallback}.
+         * 
+         * @param event The event
+         * @param callback The callback
+         */
+        void onComplete(cl_event event, EventCallbackFunction callback);
+    }
+    
+    /**
+     * The {@link Events} that call the respective OpenCL functions
+     */
+    private static final Events CL_EVENTS = new Events()
+    {
+        @Override
+        public void retain(cl_event event)
+        {
+            CL.clRetainEvent(event);
+        }
+
+        @Override
+        public void release(cl_event event)
+        {
+            CL.clReleaseEvent(event);
+        }
+
+        @Override
+        public void onComplete(cl_event event, 
+            EventCallbackFunction callback)
+        {
+            CL.clSetEventCallback(event, CL.CL_COMPLETE, callback, null);
+        }
+    };
+    
+    /**
+     * The order in which the states of buffers are locked
+     */
+    private static final Comparator<BufferState> LOCK_ORDER = 
+        new Comparator<BufferState>()
+    {
+        @Override
+        public int compare(BufferState s0, BufferState s1)
+        {
+            return s0.id < s1.id ? -1 : (s0.id > s1.id ? 1 : 0);
+        }
+    };
+    
+    /**
+     * The access state of one buffer. The fields may only be accessed
+     * while holding the lock.
+     */
+    private static class BufferState
+    {
+        /**
+         * The ID, which defines the order in which states are locked
+         */
+        final long id;
+        
+        /**
+         * The lock
+         */
+        final ReentrantLock lock = new ReentrantLock();
+        
+        /**
+         * Whether the buffer was forgotten, and this state was removed
+         * from the map
+         */
+        boolean forgotten;
+        
+        /**
+         * The event of the last operation that wrote the buffer,
+         * or <code>null</code>
+         */
+        cl_event lastWrite;
+        
+        /**
+         * The index of the queue of the last write operation
+         */
+        int lastWriteQueue = -1;
+        
+        /**
+         * For each queue, the event of the last operation that read
+         * the buffer since the last write, or <code>null</code>
+         */
+        final cl_event lastReads[];
+        
+        /**
+         * Creates a new instance
+         * 
+         * @param id The ID
+         * @param numQueues The number of queues
+         */
+        BufferState(long id, int numQueues)
+        {
+            this.id = id;
+            this.lastReads = new cl_event[numQueues];
+        }
+    }
+    
+    /**
+     * The command queues
+     */
+    private final cl_command_queue commandQueues[];
+    
+    /**
+     * The event functions
+     */
+    private final Events events;
+    
+    /**
+     * Whether the completion of operations is tracked
+     */
+    private final boolean trackCompletion;
+    
+    /**
+     * The access states of the buffers
+     */
+    private final ConcurrentMap<cl_mem, BufferState> bufferStates;
+    
+    /**
+     * The ID for the next buffer state
+     */
+    private final AtomicLong nextStateId;
+    
+    /**
+     * The number of submitted operations, per queue
+     */
+    private final AtomicLongArray submitted;
+
+    /**
+     * The number of completed operations, per queue
+     */
+    private final AtomicLongArray completed;
+    
+    /**
+     * The number of cross-queue waits, per queue
+     */
+    private final AtomicLongArray crossQueueWaits;
+    
+    /**
+     * The total latency, in nanoseconds, per queue
+     */
+    private final AtomicLongArray totalLatencyNanos;
+    
+    /**
+     * Creates a new execution context for the given command queues
+     * 
+     * @param commandQueues The command queues
+     * @param trackCompletion Whether the completion of operations should
+     * be tracked for the {@link #getStatistics() statistics}. This 
+     * registers an event callback for each operation.
+     * @throws IllegalArgumentException If no command queues are given
+     * @throws NullPointerException If any queue is <code>null</code>
+     */
+    public ExecutionContext(
+        cl_command_queue commandQueues[], boolean trackCompletion)
+    {
+        this(commandQueues, trackCompletion, CL_EVENTS);
+    }
+    
+    /**
+     * Creates a new execution context for the given command queues, 
+     * which uses the given event functions
+     * 
+     * @param commandQueues The command queues
+     * @param trackCompletion Whether the completion should be tracked
+     * @param events The event functions
+     * @throws IllegalArgumentException If no command queues are given
+     * @throws NullPointerException If any queue is <code>null</code>
+     */
+    ExecutionContext(cl_command_queue commandQueues[], 
+        boolean trackCompletion, Events events)
+    {
+        if (commandQueues.length == 0)
+        {
+            throw new IllegalArgumentException("No command queues given");
+        }
+        for (int i = 0; i < commandQueues.length; i++)
+        {
+            if (commandQueues[i] == null)
+            {
+                throw new NullPointerException(
+                    "Command queue " + i + " is null");
+            }
+        }
+        int n = commandQueues.length;
+        this.commandQueues = commandQueues.clone();
+        this.events = events;
+        this.trackCompletion = trackCompletion;
+        this.bufferStates = new ConcurrentHashMap<cl_mem, BufferState>();
+        this.nextStateId = new AtomicLong();
+        this.submitted = new AtomicLongArray(n);
+        this.completed = new AtomicLongArray(n);
+        this.crossQueueWaits = new AtomicLongArray(n);
+        this.totalLatencyNanos = new AtomicLongArray(n);
+    }
+    
+    /**
+     * Returns the number of command queues in this context
+     * 
+     * @return The number of command queues
+     */
+    public int getNumCommandQueues()
+    {
+        return commandQueues.length;
+    }
+    
+    /**
+     * Returns the index of the command queue that the current thread
+     * is assigned to
+     * 
+     * @return The queue index
+     */
+    public int getQueueIndex()
+    {
+        long id = Thread.currentThread().getId();
+        
+        // Mix the bits of the ID, so that threads whose IDs differ in 
+        // a regular pattern are still distributed over all queues
+        id ^= (id >>> 33);
+        id *= 0xff51afd7ed558ccdL;
+        id ^= (id >>> 33);
+        return (int) ((id & Long.MAX_VALUE) % commandQueues.length);
+    }
+    
+    /**
+     * Returns the command queue that the current thread is assigned to
+     * 
+     * @return The command queue
+     */
+    public cl_command_queue getCommandQueue()
+    {
+        return commandQueues[getQueueIndex()];
+    }
+    
+    /**
+     * Submit the given operation to the command queue of the current 
+     * thread. The operation will wait for all operations on other 
+     * queues that it has a conflicting access with.
+     * 
+     * @param reads The buffers that are read by the operation. May be
+     * <code>null</code>.
+     * @param writes The buffers that are written by the operation. May 
+     * be <code>null</code>.
+     * @param operation The operation
+     * @param event An optional event that will identify the operation.
+     * May be <code>null</code>.
+     * @return The clblasStatus of the operation
+     */
+    public int submit(cl_mem reads[], cl_mem writes[], 
+        Operation operation, cl_event event)
+    {
+        int queueIndex = getQueueIndex();
+        cl_command_queue commandQueue = commandQueues[queueIndex];
+        
+        List<BufferState> states = lockStates(reads, writes);
+        try
+        {
+            List<cl_event> waitEvents = new ArrayList<cl_event>();
+            if (reads != null)
+            {
+                for (cl_mem mem : reads)
+                {
+                    collectReadDependencies(
+                        bufferStates.get(mem), queueIndex, waitEvents);
+                }
+            }
+            if (writes != null)
+            {
+                for (cl_mem mem : writes)
+                {
+                    collectWriteDependencies(
+                        bufferStates.get(mem), queueIndex, waitEvents);
+                }
+            }
+            
+            boolean ownEvent = event == null;
+            cl_event operationEvent = ownEvent ? new cl_event() : event;
+            int numWaitEvents = waitEvents.size();
+            cl_event eventWaitList[] = numWaitEvents == 0 ? null : 
+                waitEvents.toArray(new cl_event[numWaitEvents]);
+            long submitTime = System.nanoTime();
+            int result = CL.CL_SUCCESS;
+            try
+            {
+                result = operation.enqueue(commandQueue, 
+                    numWaitEvents, eventWaitList, operationEvent);
+            }
+            finally
+            {
+                for (cl_event waitEvent : waitEvents)
+                {
+                    events.release(waitEvent);
+                }
+            }
+            if (result != CL.CL_SUCCESS)
+            {
+                return result;
+            }
+            
+            submitted.incrementAndGet(queueIndex);
+            if (numWaitEvents > 0)
+            {
+                crossQueueWaits.incrementAndGet(queueIndex);
+            }
+            if (reads != null)
+            {
+                for (cl_mem mem : reads)
+                {
+                    recordRead(bufferStates.get(mem), 
+                        queueIndex, operationEvent);
+                }
+            }
+            if (writes != null)
+            {
+                for (cl_mem mem : writes)
+                {
+                    recordWrite(bufferStates.get(mem), 
+                        queueIndex, operationEvent);
+                }
+            }
+            if (trackCompletion)
+            {
+                trackCompletion(operationEvent, queueIndex, submitTime);
+            }
+            if (ownEvent)
+            {
+                events.release(operationEvent);
+            }
+            return result;
+        }
+        finally
+        {
+            unlock(states, states.size());
+        }
+    }
+    
+    /**
+     * Lock the states of all given buffers, in the order of their IDs, 
+     * creating them if necessary. If one of the states is forgotten 
+     * while waiting for its lock, all locks are released and the 
+     * states are obtained again.
+     * 
+     * @param reads The buffers that are read. May be <code>null</code>.
+     * @param writes The buffers that are written. May be 
+     * <code>null</code>.
+     * @return The locked states
+     */
+    private List<BufferState> lockStates(cl_mem reads[], cl_mem writes[])
+    {
+        while (true)
+        {
+            List<BufferState> states = new ArrayList<BufferState>();
+            addStates(reads, states);
+            addStates(writes, states);
+            Collections.sort(states, LOCK_ORDER);
+            int locked = 0;
+            boolean valid = true;
+            for (BufferState state : states)
+            {
+                state.lock.lock();
+                locked++;
+                if (state.forgotten)
+                {
+                    valid = false;
+                    break;
+                }
+            }
+            if (valid)
+            {
+                return states;
+            }
+            unlock(states, locked);
+        }
+    }
+    
+    /**
+     * Add the states of the given buffers to the given list, if they are
+     * not already contained
+     * 
+     * @param mems The buffers. May be <code>null</code>.
+     * @param states The states
+     */
+    private void addStates(cl_mem mems[], List<BufferState> states)
+    {
+        if (mems == null)
+        {
+            return;
+        }
+        for (cl_mem mem : mems)
+        {
+            BufferState state = getState(mem);
+            if (!states.contains(state))
+            {
+                states.add(state);
+            }
+        }
+    }
+    
+    /**
+     * Unlock the first <code>n</code> of the given states
+     * 
+     * @param states The states
+     * @param n The number of states to unlock
+     */
+    private static void unlock(List<BufferState> states, int n)
+    {
+        for (int i = n - 1; i >= 0; i--)
+        {
+            states.get(i).lock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the state for the given buffer, creating it if necessary
+     * 
+     * @param mem The buffer
+     * @return The state
+     */
+    private BufferState getState(cl_mem mem)
+    {
+        BufferState state = bufferStates.get(mem);
+        if (state == null)
+        {
+            BufferState newState = new BufferState(
+                nextStateId.getAndIncrement(), commandQueues.length);
+            state = bufferStates.putIfAbsent(mem, newState);
+            if (state == null)
+            {
+                state = newState;
+            }
+        }
+        return state;
+    }
+    
+    /**
+     * Collect the events that an operation on the given queue that reads
+     * the buffer with the given state has to wait for. The collected 
+     * events are retained. The caller must hold the lock of the state.
+     * 
+     * @param state The state of the buffer
+     * @param queueIndex The queue index
+     * @param waitEvents The collected events
+     */
+    private void collectReadDependencies(
+        BufferState state, int queueIndex, List<cl_event> waitEvents)
+    {
+        if (state.lastWrite != null && state.lastWriteQueue != queueIndex)
+        {
+            addWaitEvent(state.lastWrite, waitEvents);
+        }
+    }
+    
+    /**
+     * Collect the events that an operation on the given queue that writes
+     * the buffer with the given state has to wait for. The collected 
+     * events are retained. The caller must hold the lock of the state.
+     * 
+     * @param state The state of the buffer
+     * @param queueIndex The queue index
+     * @param waitEvents The collected events
+     */
+    private void collectWriteDependencies(
+        BufferState state, int queueIndex, List<cl_event> waitEvents)
+    {
+        if (state.lastWrite != null && state.lastWriteQueue != queueIndex)
+        {
+            addWaitEvent(state.lastWrite, waitEvents);
+        }
+        for (int i = 0; i < state.lastReads.length; i++)
+        {
+            if (i != queueIndex && state.lastReads[i] != null)
+            {
+                addWaitEvent(state.lastReads[i], waitEvents);
+            }
+        }
+    }
+    
+    /**
+     * Retain the given event and add it to the given list, if it is not
+     * already contained
+     * 
+     * @param event The event
+     * @param waitEvents The list
+     */
+    private void addWaitEvent(cl_event event, List<cl_event> waitEvents)
+    {
+        for (cl_event waitEvent : waitEvents)
+        {
+            if (waitEvent == event)
+            {
+                return;
+            }
+        }
+        events.retain(event);
+        waitEvents.add(event);
+    }
+    
+    /**
+     * Record that the buffer with the given state was read by the 
+     * operation with the given event on the given queue. The caller 
+     * must hold the lock of the state.
+     * 
+     * @param state The state of the buffer
+     * @param queueIndex The queue index
+     * @param event The event
+     */
+    private void recordRead(BufferState state, int queueIndex, cl_event event)
+    {
+        events.retain(event);
+        if (state.lastReads[queueIndex] != null)
+        {
+            events.release(state.lastReads[queueIndex]);
+        }
+        state.lastReads[queueIndex] = event;
+    }
+    
+    /**
+     * Record that the buffer with the given state was written by the 
+     * operation with the given event on the given queue. The caller 
+     * must hold the lock of the state.
+     * 
+     * @param state The state of the buffer
+     * @param queueIndex The queue index
+     * @param event The event
+     */
+    private void recordWrite(
+        BufferState state, int queueIndex, cl_event event)
+    {
+        events.retain(event);
+        releaseEvents(state);
+        state.lastWrite = event;
+        state.lastWriteQueue = queueIndex;
+    }
+    
+    /**
+     * Release all events that are referred to by the given state. The 
+     * caller must hold the lock of the state.
+     * 
+     * @param state The state
+     */
+    private void releaseEvents(BufferState state)
+    {
+        if (state.lastWrite != null)
+        {
+            events.release(state.lastWrite);
+            state.lastWrite = null;
+            state.lastWriteQueue = -1;
+        }
+        for (int i = 0; i < state.lastReads.length; i++)
+        {
+            if (state.lastReads[i] != null)
+            {
+                events.release(state.lastReads[i]);
+                state.lastReads[i] = null;
+            }
+        }
+    }
+    
+    /**
+     * Register a callback that updates the statistics when the operation
+     * with the given event has completed
+     * 
+     * @param event The event
+     * @param queueIndex The queue index
+     * @param submitTime The submission time
+     */
+    private void trackCompletion(
+        cl_event event, final int queueIndex, final long submitTime)
+    {
+        events.onComplete(event, new EventCallbackFunction()
+            {
+                @Override
+                public void function(cl_event event, 
+                    int command_exec_callback_type, Object user_data)
+                {
+                    completed.incrementAndGet(queueIndex);
+                    totalLatencyNanos.addAndGet(
+                        queueIndex, System.nanoTime() - submitTime);
+                }
+            });
+    }
+    
+    /**
+     * Stop tracking the accesses to the given buffer, and release the 
+     * events that its state refers to. This has to be called before 
+     * the buffer is released. The state of a buffer is otherwise only 
+     * removed by {@link #finish()}.
+     * 
+     * @param mem The buffer
+     */
+    public void forget(cl_mem mem)
+    {
+        BufferState state = bufferStates.get(mem);
+        if (state == null)
+        {
+            return;
+        }
+        state.lock.lock();
+        try
+        {
+            if (bufferStates.remove(mem, state))
+            {
+                state.forgotten = true;
+                releaseEvents(state);
+            }
+        }
+        finally
+        {
+            state.lock.unlock();
+        }
+    }
+    
+    /**
+     * Wait until all operations in all command queues have completed,
+     * and stop tracking all buffers
+     * 
+     * @return The first error code of <code>clFinish</code>, or 
+     * <code>CL_SUCCESS</code>
+     */
+    public int finish()
+    {
+        int result = CL.CL_SUCCESS;
+        for (cl_command_queue commandQueue : commandQueues)
+        {
+            int finishResult = CL.clFinish(commandQueue);
+            if (result == CL.CL_SUCCESS)
+            {
+                result = finishResult;
+            }
+        }
+        for (cl_mem mem : bufferStates.keySet())
+        {
+            forget(mem);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns a snapshot of the statistics of all command queues
+     * 
+     * @return The statistics
+     */
+    public List<QueueStatistics> getStatistics()
+    {
+        List<QueueStatistics> result = new ArrayList<QueueStatistics>();
+        for (int i = 0; i < commandQueues.length; i++)
+        {
+            result.add(new QueueStatistics(i, submitted.get(i), 
+                completed.get(i), crossQueueWaits.get(i), 
+                totalLatencyNanos.get(i)));
+        }
+        return result;
+    }
+    
+    /**
+     * Submit a {@link CLBLAS#clblasSgemv} call to the command queue of 
+     * the current thread. See {@link #submit}.
+     * 
+     * @param order The order
+     * @param transA The transposition of A
+     * @param M The number of rows of A
+     * @param N The number of columns of A
+     * @param alpha The factor of A
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param x The vector x
+     * @param offx The offset of x
+     * @param incx The increment of x
+     * @param beta The factor of y
+     * @param y The vector y
+     * @param offy The offset of y
+     * @param incy The increment of y
+     * @param event An optional event. May be <code>null</code>.
+     * @return The clblasStatus
+     */
+    public int sgemv(final int order, final int transA, 
+        final long M, final long N, final float alpha, 
+        final cl_mem A, final long offA, final long lda, 
+        final cl_mem x, final long offx, final int incx, final float beta, 
+        final cl_mem y, final long offy, final int incy, cl_event event)
+    {
+        return submit(new cl_mem[] { A, x }, new cl_mem[] { y }, 
+            new Operation()
+            {
+                @Override
+                public int enqueue(cl_command_queue commandQueue,
+                    int numEventsInWaitList, cl_event[] eventWaitList, 
+                    cl_event event)
+                {
+                    return CLBLAS.clblasSgemv(order, transA, M, N, alpha, 
+                        A, offA, lda, x, offx, incx, beta, y, offy, incy, 
+                        1, new cl_command_queue[] { commandQueue }, 
+                        numEventsInWaitList, eventWaitList, 
+                        new cl_event[] { event });
+                }
+            }, event);
+    }
+    
+    /**
+     * Submit a {@link CLBLAS#clblasSgemm} call to the command queue of 
+     * the current thread. See {@link #submit}.
+     * 
+     * @param order The order
+     * @param transA The transposition of A
+     * @param transB The transposition of B
+     * @param M The number of rows of C
+     * @param N The number of columns of C
+     * @param K The inner dimension
+     * @param alpha The factor of A*B
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param B The matrix B
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     * @param event An optional event. May be <code>null</code>.
+     * @return The clblasStatus
+     */
+    public int sgemm(final int order, final int transA, final int transB,
+        final long M, final long N, final long K, final float alpha, 
+        final cl_mem A, final long offA, final long lda, 
+        final cl_mem B, final long offB, final long ldb, final float beta, 
+        final cl_mem C, final long offC, final long ldc, cl_event event)
+    {
+        return submit(new cl_mem[] { A, B }, new cl_mem[] { C }, 
+            new Operation()
+            {
+                @Override
+                public int enqueue(cl_command_queue commandQueue,
+                    int numEventsInWaitList, cl_event[] eventWaitList, 
+                    cl_event event)
+                {
+                    return CLBLAS.clblasSgemm(order, transA, transB, 
+                        M, N, K, alpha, A, offA, lda, B, offB, ldb, 
+                        beta, C, offC, ldc, 
+                        1, new cl_command_queue[] { commandQueue }, 
+                        numEventsInWaitList, eventWaitList, 
+                        new cl_event[] { event });
+                }
+            }, event);
+    }
+    
+    /**
+     * Submit a {@link CLBLAS#clblasSaxpy} call to the command queue of 
+     * the current thread. See {@link #submit}.
+     * 
+     * @param N The number of elements
+     * @param alpha The factor of x
+     * @param X The vector x
+     * @param offx The offset of x
+     * @param incx The increment of x
+     * @param Y The vector y
+     * @param offy The offset of y
+     * @param incy The increment of y
+     * @param event An optional event. May be <code>null</code>.
+     * @return The clblasStatus
+     */
+    public int saxpy(final long N, final float alpha, 
+        final cl_mem X, final long offx, final int incx, 
+        final cl_mem Y, final long offy, final int incy, cl_event event)
+    {
+        return submit(new cl_mem[] { X }, new cl_mem[] { Y }, 
+            new Operation()
+            {
+                @Override
+                public int enqueue(cl_command_queue commandQueue,
+                    int numEventsInWaitList, cl_event[] eventWaitList, 
+                    cl_event event)
+                {
+                    return CLBLAS.clblasSaxpy(N, alpha, 
+                        X, offx, incx, Y, offy, incy, 
+                        1, new cl_command_queue[] { commandQueue }, 
+                        numEventsInWaitList, eventWaitList, 
+                        new cl_event[] { event });
+                }
+            }, event);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas;
+
+/**
+ * A snapshot of the statistics of one command queue of an 
+ * {@link ExecutionContext}
+ */
+public final class QueueStatistics
+{
+    /**
+     * The index of the queue in the context
+     */
+    private final int queueIndex;
+    
+    /**
+     * The number of operations that have been submitted
+     */
+    private final long submitted;
+    
+    /**
+     * The number of operations that have completed
+     */
+    private final long completed;
+    
+    /**
+     * The number of operations that had to wait for an operation
+     * on another queue
+     */
+    private final long crossQueueWaits;
+    
+    /**
+     * The sum of the times between submission and completion
+     */
+    private final long totalLatencyNanos;
+
+    /**
+     * Creates a new instance
+     * 
+     * @param queueIndex The index of the queue
+     * @param submitted The number of submitted operations
+     * @param completed The number of completed operations
+     * @param crossQueueWaits The number of cross-queue waits
+     * @param totalLatencyNanos The total latency, in nanoseconds
+     */
+    QueueStatistics(int queueIndex, long submitted, long completed, 
+        long crossQueueWaits, long totalLatencyNanos)
+    {
+        this.queueIndex = queueIndex;
+        this.submitted = submitted;
+        this.completed = completed;
+        this.crossQueueWaits = crossQueueWaits;
+        this.totalLatencyNanos = totalLatencyNanos;
+    }
+    
+    /**
+     * Returns the index of the queue in the {@link ExecutionContext}
+     * 
+     * @return The queue index
+     */
+    public int getQueueIndex()
+    {
+        return queueIndex;
+    }
+
+    /**
+     * Returns the number of operations that have been submitted to 
+     * the queue
+     * 
+     * @return The number of submitted operations
+     */
+    public long getSubmitted()
+    {
+        return submitted;
+    }
+
+    /**
+     * Returns the number of operations that have completed. This is 
+     * only tracked when the {@link ExecutionContext} was created with
+     * completion tracking, and will be 0 otherwise.
+     * 
+     * @return The number of completed operations
+     */
+    public long getCompleted()
+    {
+        return completed;
+    }
+    
+    /**
+     * Returns the number of operations that have been submitted but
+     * not yet completed. This is only meaningful when the
+     * {@link ExecutionContext} was created with completion tracking.
+     * 
+     * @return The number of operations in flight
+     */
+    public long getInFlight()
+    {
+        return submitted - completed;
+    }
+
+    /**
+     * Returns the number of operations that had to wait for an 
+     * operation on another queue because they shared a buffer
+     * 
+     * @return The number of cross-queue waits
+     */
+    public long getCrossQueueWaits()
+    {
+        return crossQueueWaits;
+    }
+
+    /**
+     * Returns the sum of the times between the submission and the 
+     * completion of all completed operations, in nanoseconds. This 
+     * is only tracked when the {@link ExecutionContext} was created 
+     * with completion tracking.
+     * 
+     * @return The total latency
+     */
+    public long getTotalLatencyNanos()
+    {
+        return totalLatencyNanos;
+    }
+    
+    /**
+     * Returns the average time between the submission and the 
+     * completion of an operation, in nanoseconds, or 0 if no 
+     * operation has been completed
+     * 
+     * @return The average latency
+     */
+    public double getAverageLatencyNanos()
+    {
+        if (completed == 0)
+        {
+            return 0;
+        }
+        return (double) totalLatencyNanos / completed;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "QueueStatistics[" +
+            "queueIndex=" + queueIndex + "," +
+            "submitted=" + submitted + "," +
+            "completed=" + completed + "," +
+            "crossQueueWaits=" + crossQueueWaits + "," +
+            "averageLatencyNanos=" + getAverageLatencyNanos() + "]";
+    }
+}
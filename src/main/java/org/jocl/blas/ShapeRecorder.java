@@ -0,0 +1,287 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A recorder for the distinct {@link ShapeSignature}s of the calls that 
+ * are made through {@link CLBLAS}. <br>
+ * <br>
+ * A recorder may be installed with 
+ * {@link CLBLAS#setShapeRecorder(ShapeRecorder)}. The signatures that
+ * have been recorded may be written into a file, for example, when the 
+ * application shuts down, and be read at the next startup, to be passed 
+ * to {@link ShapeWarmUp#replay(org.jocl.cl_context, 
+ * org.jocl.cl_command_queue, Iterable)}.<br>
+ * <br>
+ * This class is thread-safe. Recording a signature that has already been
+ * recorded does not acquire any lock.
+ */
+public final class ShapeRecorder
+{
+    /**
+     * The logger used in this class
+     */
+    private static final Logger logger = 
+        Logger.getLogger(ShapeRecorder.class.getName());
+    
+    /**
+     * The default maximum number of signatures that are recorded
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 4096;
+    
+    /**
+     * The prefix for comment lines in signature files
+     */
+    private static final String COMMENT_PREFIX = "#";
+    
+    /**
+     * The character set for signature files
+     */
+    private static final String CHARSET = "UTF-8";
+    
+    /**
+     * The recorded signatures. Only the key set is used.
+     */
+    private final ConcurrentMap<ShapeSignature, Boolean> signatures;
+    
+    /**
+     * The maximum number of signatures that are recorded
+     */
+    private final int maximumSize;
+    
+    /**
+     * The number of signatures that have been recorded
+     */
+    private final AtomicInteger size;
+    
+    /**
+     * Creates a new recorder that records up to 
+     * {@link #DEFAULT_MAXIMUM_SIZE} signatures
+     */
+    public ShapeRecorder()
+    {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+    
+    /**
+     * Creates a new recorder that records up to the given number of
+     * signatures. Further signatures will be ignored, so that applications
+     * with a large number of different problem sizes do not cause this
+     * recorder to grow without bounds.
+     * 
+     * @param maximumSize The maximum number of signatures
+     * @throws IllegalArgumentException If the given size is negative
+     */
+    public ShapeRecorder(int maximumSize)
+    {
+        if (maximumSize < 0)
+        {
+            throw new IllegalArgumentException(
+                "The maximum size may not be negative, but is "+maximumSize);
+        }
+        this.signatures = new ConcurrentHashMap<ShapeSignature, Boolean>();
+        this.maximumSize = maximumSize;
+        this.size = new AtomicInteger();
+    }
+    
+    /**
+     * Record the given signature
+     * 
+     * @param signature The signature
+     */
+    public void record(ShapeSignature signature)
+    {
+        if (signatures.containsKey(signature))
+        {
+            return;
+        }
+        if (size.get() >= maximumSize)
+        {
+            return;
+        }
+        if (signatures.putIfAbsent(signature, Boolean.TRUE) == null)
+        {
+            size.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Returns an unmodifiable snapshot of the signatures that have 
+     * been recorded until now
+     * 
+     * @return The signatures
+     */
+    public Set<ShapeSignature> getSignatures()
+    {
+        return Collections.unmodifiableSet(
+            new LinkedHashSet<ShapeSignature>(signatures.keySet()));
+    }
+    
+    /**
+     * Removes all signatures from this recorder
+     */
+    public void clear()
+    {
+        signatures.clear();
+        size.set(0);
+    }
+    
+    /**
+     * Write the signatures that have been recorded until now into
+     * the given file, one signature per line
+     * 
+     * @param file The file
+     * @throws IOException If an IO error occurs
+     */
+    public void write(File file) throws IOException
+    {
+        BufferedWriter writer = null;
+        try
+        {
+            writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), CHARSET));
+            writer.write(COMMENT_PREFIX + " JOCLBLAS shape signatures: " +
+                "routine,order,transA,transB,uplo,side,diag,M,N,K");
+            writer.newLine();
+            for (ShapeSignature signature : signatures.keySet())
+            {
+                writer.write(signature.format());
+                writer.newLine();
+            }
+        }
+        finally
+        {
+            if (writer != null)
+            {
+                writer.close();
+            }
+        }
+    }
+    
+    /**
+     * Register a shutdown hook that {@link #write(File) writes} the 
+     * signatures into the given file when the JVM shuts down. Errors
+     * while writing the file will only be logged.
+     * 
+     * @param file The file
+     */
+    public void writeOnShutdown(final File file)
+    {
+        Thread hook = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    write(file);
+                }
+                catch (IOException e)
+                {
+                    logger.log(Level.WARNING, 
+                        "Could not write shape signatures to " + file, e);
+                }
+            }
+        }, "JOCLBLAS-ShapeRecorder-shutdown");
+        Runtime.getRuntime().addShutdownHook(hook);
+    }
+    
+    /**
+     * Read the signatures from the given file, which has been written
+     * with {@link #write(File)}. If the file does not exist, then an
+     * empty list is returned. Lines that can not be parsed are skipped
+     * with a warning.
+     * 
+     * @param file The file
+     * @return The signatures
+     * @throws IOException If an IO error occurs
+     */
+    public static List<ShapeSignature> read(File file) throws IOException
+    {
+        List<ShapeSignature> result = new ArrayList<ShapeSignature>();
+        if (!file.exists())
+        {
+            return result;
+        }
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), CHARSET));
+            while (true)
+            {
+                String line = reader.readLine();
+                if (line == null)
+                {
+                    break;
+                }
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith(COMMENT_PREFIX))
+                {
+                    continue;
+                }
+                try
+                {
+                    result.add(ShapeSignature.parse(line));
+                }
+                catch (IllegalArgumentException e)
+                {
+                    logger.warning("Skipping invalid shape signature in " + 
+                        file + ": " + e.getMessage());
+                }
+            }
+        }
+        finally
+        {
+            if (reader != null)
+            {
+                reader.close();
+            }
+        }
+        return result;
+    }
+    
+}
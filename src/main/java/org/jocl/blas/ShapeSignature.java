@@ -0,0 +1,335 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas;
+
+/**
+ * The signature of a single call to one of the CLBLAS routines: The name
+ * of the routine, the flags that select the computational kernel, and the
+ * problem dimensions. clBLAS generates and builds its kernels lazily based
+ * on exactly this information, so a set of signatures that was observed 
+ * in one run can be used to warm up the kernel cache in the next run. 
+ * See {@link ShapeRecorder} and {@link ShapeWarmUp}.<br>
+ * <br>
+ * Flags and dimensions that are not used by the respective routine are
+ * set to {@link #UNUSED}.
+ */
+public final class ShapeSignature
+{
+    /**
+     * The value for flags and dimensions that are not used by a routine
+     */
+    public static final int UNUSED = -1;
+    
+    /**
+     * The separator that is used in the {@link #format() formatted}
+     * representation of a signature
+     */
+    private static final String SEPARATOR = ",";
+    
+    /**
+     * The name of the routine, e.g. "clblasSgemm"
+     */
+    private final String routine;
+    
+    /**
+     * The {@link clblasOrder}
+     */
+    private final int order;
+
+    /**
+     * The {@link clblasTranspose} for matrix A
+     */
+    private final int transA;
+    
+    /**
+     * The {@link clblasTranspose} for matrix B
+     */
+    private final int transB;
+    
+    /**
+     * The {@link clblasUplo}
+     */
+    private final int uplo;
+    
+    /**
+     * The {@link clblasSide}
+     */
+    private final int side;
+    
+    /**
+     * The {@link clblasDiag}
+     */
+    private final int diag;
+    
+    /**
+     * The M dimension
+     */
+    private final long M;
+    
+    /**
+     * The N dimension
+     */
+    private final long N;
+    
+    /**
+     * The K dimension
+     */
+    private final long K;
+
+    /**
+     * Creates a new signature
+     * 
+     * @param routine The name of the routine, e.g. "clblasSgemm"
+     * @param order The {@link clblasOrder}
+     * @param transA The {@link clblasTranspose} for matrix A
+     * @param transB The {@link clblasTranspose} for matrix B
+     * @param uplo The {@link clblasUplo}
+     * @param side The {@link clblasSide}
+     * @param diag The {@link clblasDiag}
+     * @param M The M dimension
+     * @param N The N dimension
+     * @param K The K dimension
+     * @throws NullPointerException If the routine name is <code>null</code>
+     */
+    public ShapeSignature(String routine, 
+        int order, int transA, int transB, int uplo, int side, int diag,
+        long M, long N, long K)
+    {
+        if (routine == null)
+        {
+            throw new NullPointerException("The routine name is null");
+        }
+        this.routine = routine;
+        this.order = order;
+        this.transA = transA;
+        this.transB = transB;
+        this.uplo = uplo;
+        this.side = side;
+        this.diag = diag;
+        this.M = M;
+        this.N = N;
+        this.K = K;
+    }
+    
+    /**
+     * Parses a signature from a string that was created with
+     * {@link #format()}
+     * 
+     * @param string The string
+     * @return The signature
+     * @throws IllegalArgumentException If the string can not be parsed
+     */
+    public static ShapeSignature parse(String string)
+    {
+        String tokens[] = string.trim().split(SEPARATOR);
+        if (tokens.length != 10)
+        {
+            throw new IllegalArgumentException(
+                "Expected 10 tokens, found " + tokens.length + 
+                " in \"" + string + "\"");
+        }
+        try
+        {
+            return new ShapeSignature(tokens[0].trim(), 
+                Integer.parseInt(tokens[1].trim()), 
+                Integer.parseInt(tokens[2].trim()), 
+                Integer.parseInt(tokens[3].trim()), 
+                Integer.parseInt(tokens[4].trim()), 
+                Integer.parseInt(tokens[5].trim()), 
+                Integer.parseInt(tokens[6].trim()), 
+                Long.parseLong(tokens[7].trim()), 
+                Long.parseLong(tokens[8].trim()), 
+                Long.parseLong(tokens[9].trim()));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException(
+                "Invalid signature: \"" + string + "\"", e);
+        }
+    }
+    
+    /**
+     * Returns the compact string representation of this signature that 
+     * can be parsed with {@link #parse(String)}
+     * 
+     * @return The string representation
+     */
+    public String format()
+    {
+        return routine + SEPARATOR + 
+            order + SEPARATOR + transA + SEPARATOR + transB + SEPARATOR + 
+            uplo + SEPARATOR + side + SEPARATOR + diag + SEPARATOR + 
+            M + SEPARATOR + N + SEPARATOR + K;
+    }
+
+    /**
+     * Returns the name of the routine, e.g. "clblasSgemm"
+     * 
+     * @return The routine name
+     */
+    public String getRoutine()
+    {
+        return routine;
+    }
+
+    /**
+     * Returns the {@link clblasOrder}
+     * 
+     * @return The order
+     */
+    public int getOrder()
+    {
+        return order;
+    }
+
+    /**
+     * Returns the {@link clblasTranspose} for matrix A
+     * 
+     * @return The transpose flag for A
+     */
+    public int getTransA()
+    {
+        return transA;
+    }
+
+    /**
+     * Returns the {@link clblasTranspose} for matrix B
+     * 
+     * @return The transpose flag for B
+     */
+    public int getTransB()
+    {
+        return transB;
+    }
+
+    /**
+     * Returns the {@link clblasUplo}
+     * 
+     * @return The uplo flag
+     */
+    public int getUplo()
+    {
+        return uplo;
+    }
+
+    /**
+     * Returns the {@link clblasSide}
+     * 
+     * @return The side flag
+     */
+    public int getSide()
+    {
+        return side;
+    }
+
+    /**
+     * Returns the {@link clblasDiag}
+     * 
+     * @return The diag flag
+     */
+    public int getDiag()
+    {
+        return diag;
+    }
+
+    /**
+     * Returns the M dimension
+     * 
+     * @return The M dimension
+     */
+    public long getM()
+    {
+        return M;
+    }
+
+    /**
+     * Returns the N dimension
+     * 
+     * @return The N dimension
+     */
+    public long getN()
+    {
+        return N;
+    }
+
+    /**
+     * Returns the K dimension
+     * 
+     * @return The K dimension
+     */
+    public long getK()
+    {
+        return K;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = routine.hashCode();
+        result = 31 * result + order;
+        result = 31 * result + transA;
+        result = 31 * result + transB;
+        result = 31 * result + uplo;
+        result = 31 * result + side;
+        result = 31 * result + diag;
+        result = 31 * result + (int) (M ^ (M >>> 32));
+        result = 31 * result + (int) (N ^ (N >>> 32));
+        result = 31 * result + (int) (K ^ (K >>> 32));
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+        if (this == object)
+        {
+            return true;
+        }
+        if (!(object instanceof ShapeSignature))
+        {
+            return false;
+        }
+        ShapeSignature other = (ShapeSignature) object;
+        return 
+            order == other.order && 
+            transA == other.transA && 
+            transB == other.transB && 
+            uplo == other.uplo && 
+            side == other.side && 
+            diag == other.diag && 
+            M == other.M && 
+            N == other.N && 
+            K == other.K &&
+            routine.equals(other.routine);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ShapeSignature[" + format() + "]";
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasSide.clblasLeft;
+import static org.jocl.blas.clblasStatus.clblasNotImplemented;
+import static org.jocl.blas.clblasStatus.clblasSuccess;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+
+/**
+ * Methods to warm up the kernel cache of clBLAS, by executing the
+ * routines for a set of {@link ShapeSignature}s that have been
+ * recorded with a {@link ShapeRecorder}. <br>
+ * <br>
+ * clBLAS generates and builds the kernels lazily, when a routine is
+ * called for the first time with a certain combination of flags and
+ * problem sizes. Replaying the signatures that have been observed in a
+ * previous run moves this cost to the startup of the application.
+ */
+public final class ShapeWarmUp
+{
+    /**
+     * The logger used in this class
+     */
+    private static final Logger logger = 
+        Logger.getLogger(ShapeWarmUp.class.getName());
+    
+    /**
+     * Execute the routines for all given signatures once, on buffers
+     * with the required sizes, and wait for their completion. 
+     * The library must have been initialized with 
+     * {@link CLBLAS#clblasSetup()}. Signatures of routines that are not
+     * supported, or for which the execution fails, are skipped and
+     * logged.<br>
+     * <br>
+     * Note that any {@link ShapeRecorder} that is currently installed
+     * will also receive these signatures.
+     * 
+     * @param context The context
+     * @param commandQueue The command queue
+     * @param signatures The signatures
+     * @return The number of signatures that have been replayed successfully
+     */
+    public static int replay(cl_context context, 
+        cl_command_queue commandQueue, 
+        Iterable<? extends ShapeSignature> signatures)
+    {
+        int replayed = 0;
+        for (ShapeSignature signature : signatures)
+        {
+            int result = clblasSuccess;
+            try
+            {
+                result = replay(context, commandQueue, signature);
+            }
+            catch (RuntimeException e)
+            {
+                logger.log(Level.WARNING, "Could not replay " + signature, e);
+                continue;
+            }
+            if (result == clblasSuccess)
+            {
+                replayed++;
+            }
+            else
+            {
+                logger.warning("Could not replay " + signature + ": " + 
+                    clblasStatus.stringFor(result));
+            }
+        }
+        return replayed;
+    }
+    
+    /**
+     * Execute the routine for the given signature once, and wait for
+     * its completion.
+     * 
+     * @param context The context
+     * @param commandQueue The command queue
+     * @param signature The signature
+     * @return The clblasStatus of the call, or 
+     * {@link clblasStatus#clblasNotImplemented} if the routine is not 
+     * supported
+     */
+    private static int replay(cl_context context, 
+        cl_command_queue commandQueue, ShapeSignature signature)
+    {
+        String routine = signature.getRoutine();
+        if (!routine.startsWith("clblasS") && !routine.startsWith("clblasD"))
+        {
+            return clblasNotImplemented;
+        }
+        boolean isDouble = routine.charAt(6) == 'D';
+        String operation = routine.substring(7);
+        long elementSize = isDouble ? Sizeof.cl_double : Sizeof.cl_float;
+        
+        int order = signature.getOrder();
+        int transA = signature.getTransA();
+        int transB = signature.getTransB();
+        int uplo = signature.getUplo();
+        int side = signature.getSide();
+        int diag = signature.getDiag();
+        long M = signature.getM();
+        long N = signature.getN();
+        long K = signature.getK();
+        
+        cl_command_queue commandQueues[] = { commandQueue };
+        cl_event events[] = { new cl_event() };
+        
+        Buffers buffers = new Buffers(context, elementSize);
+        int result = clblasNotImplemented;
+        try
+        {
+            if (operation.equals("gemm"))
+            {
+                long rA = transA == clblasNoTrans ? M : K;
+                long cA = transA == clblasNoTrans ? K : M;
+                long rB = transB == clblasNoTrans ? K : N;
+                long cB = transB == clblasNoTrans ? N : K;
+                cl_mem A = buffers.create(rA * cA);
+                cl_mem B = buffers.create(rB * cB);
+                cl_mem C = buffers.create(M * N);
+                long lda = ld(order, rA, cA);
+                long ldb = ld(order, rB, cB);
+                long ldc = ld(order, M, N);
+                if (isDouble)
+                {
+                    result = CLBLAS.clblasDgemm(order, transA, transB, 
+                        M, N, K, 1.0, A, 0, lda, B, 0, ldb, 0.0, C, 0, ldc, 
+                        1, commandQueues, 0, null, events);
+                }
+                else
+                {
+                    result = CLBLAS.clblasSgemm(order, transA, transB, 
+                        M, N, K, 1.0f, A, 0, lda, B, 0, ldb, 0.0f, C, 0, ldc, 
+                        1, commandQueues, 0, null, events);
+                }
+            }
+            else if (operation.equals("symm"))
+            {
+                long nA = side == clblasLeft ? M : N;
+                cl_mem A = buffers.create(nA * nA);
+                cl_mem B = buffers.create(M * N);
+                cl_mem C = buffers.create(M * N);
+                long ldb = ld(order, M, N);
+                if (isDouble)
+                {
+                    result = CLBLAS.clblasDsymm(order, side, uplo, M, N, 
+                        1.0, A, 0, nA, B, 0, ldb, 0.0, C, 0, ldb, 
+                        1, commandQueues, 0, null, events);
+                }
+                else
+                {
+                    result = CLBLAS.clblasSsymm(order, side, uplo, M, N, 
+                        1.0f, A, 0, nA, B, 0, ldb, 0.0f, C, 0, ldb, 
+                        1, commandQueues, 0, null, events);
+                }
+            }
+            else if (operation.equals("syrk") || operation.equals("syr2k"))
+            {
+                long rA = transA == clblasNoTrans ? N : K;
+                long cA = transA == clblasNoTrans ? K : N;
+                cl_mem A = buffers.create(rA * cA);
+                cl_mem C = buffers.create(N * N);
+                long lda = ld(order, rA, cA);
+                if (operation.equals("syrk"))
+                {
+                    if (isDouble)
+                    {
+                        result = CLBLAS.clblasDsyrk(order, uplo, transA, 
+                            N, K, 1.0, A, 0, lda, 0.0, C, 0, N, 
+                            1, commandQueues, 0, null, events);
+                    }
+                    else
+                    {
+                        result = CLBLAS.clblasSsyrk(order, uplo, transA, 
+                            N, K, 1.0f, A, 0, lda, 0.0f, C, 0, N, 
+                            1, commandQueues, 0, null, events);
+                    }
+                }
+                else
+                {
+                    cl_mem B = buffers.create(rA * cA);
+                    if (isDouble)
+                    {
+                        result = CLBLAS.clblasDsyr2k(order, uplo, transA, 
+                            N, K, 1.0, A, 0, lda, B, 0, lda, 0.0, C, 0, N, 
+                            1, commandQueues, 0, null, events);
+                    }
+                    else
+                    {
+                        result = CLBLAS.clblasSsyr2k(order, uplo, transA, 
+                            N, K, 1.0f, A, 0, lda, B, 0, lda, 0.0f, C, 0, N, 
+                            1, commandQueues, 0, null, events);
+                    }
+                }
+            }
+            else if (operation.equals("trmm") || operation.equals("trsm"))
+            {
+                long nA = side == clblasLeft ? M : N;
+                cl_mem A = buffers.create(nA * nA);
+                cl_mem B = buffers.create(M * N);
+                long ldb = ld(order, M, N);
+                boolean trmm = operation.equals("trmm");
+                if (isDouble)
+                {
+                    result = trmm ?
+                        CLBLAS.clblasDtrmm(order, side, uplo, transA, diag, 
+                            M, N, 1.0, A, 0, nA, B, 0, ldb, 
+                            1, commandQueues, 0, null, events) :
+                        CLBLAS.clblasDtrsm(order, side, uplo, transA, diag, 
+                            M, N, 1.0, A, 0, nA, B, 0, ldb, 
+                            1, commandQueues, 0, null, events);
+                }
+                else
+                {
+                    result = trmm ?
+                        CLBLAS.clblasStrmm(order, side, uplo, transA, diag, 
+                            M, N, 1.0f, A, 0, nA, B, 0, ldb, 
+                            1, commandQueues, 0, null, events) :
+                        CLBLAS.clblasStrsm(order, side, uplo, transA, diag, 
+                            M, N, 1.0f, A, 0, nA, B, 0, ldb, 
+                            1, commandQueues, 0, null, events);
+                }
+            }
+            else if (operation.equals("gemv"))
+            {
+                long nx = transA == clblasNoTrans ? N : M;
+                long ny = transA == clblasNoTrans ? M : N;
+                cl_mem A = buffers.create(M * N);
+                cl_mem x = buffers.create(nx);
+                cl_mem y = buffers.create(ny);
+                long lda = ld(order, M, N);
+                if (isDouble)
+                {
+                    result = CLBLAS.clblasDgemv(order, transA, M, N, 
+                        1.0, A, 0, lda, x, 0, 1, 0.0, y, 0, 1, 
+                        1, commandQueues, 0, null, events);
+                }
+                else
+                {
+                    result = CLBLAS.clblasSgemv(order, transA, M, N, 
+                        1.0f, A, 0, lda, x, 0, 1, 0.0f, y, 0, 1, 
+                        1, commandQueues, 0, null, events);
+                }
+            }
+            else if (operation.equals("symv"))
+            {
+                cl_mem A = buffers.create(N * N);
+                cl_mem x = buffers.create(N);
+                cl_mem y = buffers.create(N);
+                if (isDouble)
+                {
+                    result = CLBLAS.clblasDsymv(order, uplo, N, 
+                        1.0, A, 0, N, x, 0, 1, 0.0, y, 0, 1, 
+                        1, commandQueues, 0, null, events);
+                }
+                else
+                {
+                    result = CLBLAS.clblasSsymv(order, uplo, N, 
+                        1.0f, A, 0, N, x, 0, 1, 0.0f, y, 0, 1, 
+                        1, commandQueues, 0, null, events);
+                }
+            }
+            else if (operation.equals("trmv"))
+            {
+                cl_mem A = buffers.create(N * N);
+                cl_mem X = buffers.create(N);
+                cl_mem scratch = buffers.create(N);
+                if (isDouble)
+                {
+                    result = CLBLAS.clblasDtrmv(order, uplo, transA, diag, 
+                        N, A, 0, N, X, 0, 1, scratch, 
+                        1, commandQueues, 0, null, events);
+                }
+                else
+                {
+                    result = CLBLAS.clblasStrmv(order, uplo, transA, diag, 
+                        N, A, 0, N, X, 0, 1, scratch, 
+                        1, commandQueues, 0, null, events);
+                }
+            }
+            else if (operation.equals("trsv"))
+            {
+                cl_mem A = buffers.create(N * N);
+                cl_mem X = buffers.create(N);
+                if (isDouble)
+                {
+                    result = CLBLAS.clblasDtrsv(order, uplo, transA, diag, 
+                        N, A, 0, N, X, 0, 1, 
+                        1, commandQueues, 0, null, events);
+                }
+                else
+                {
+                    result = CLBLAS.clblasStrsv(order, uplo, transA, diag, 
+                        N, A, 0, N, X, 0, 1, 
+                        1, commandQueues, 0, null, events);
+                }
+            }
+            if (result == clblasSuccess)
+            {
+                CL.clWaitForEvents(1, events);
+                CL.clReleaseEvent(events[0]);
+            }
+        }
+        finally
+        {
+            buffers.release();
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the smallest valid leading dimension for a matrix with
+     * the given size
+     * 
+     * @param order The {@link clblasOrder}
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @return The leading dimension
+     */
+    private static long ld(int order, long rows, long columns)
+    {
+        return Math.max(1, order == clblasRowMajor ? columns : rows);
+    }
+    
+    /**
+     * Simple collection of the buffers that are created for a single
+     * replayed call
+     */
+    private static class Buffers
+    {
+        /**
+         * The context
+         */
+        private final cl_context context;
+        
+        /**
+         * The size of one element, in bytes
+         */
+        private final long elementSize;
+        
+        /**
+         * The buffers that have been created
+         */
+        private final cl_mem buffers[] = new cl_mem[3];
+        
+        /**
+         * The number of buffers that have been created
+         */
+        private int count = 0;
+        
+        /**
+         * Creates a new instance
+         * 
+         * @param context The context
+         * @param elementSize The size of one element, in bytes
+         */
+        Buffers(cl_context context, long elementSize)
+        {
+            this.context = context;
+            this.elementSize = elementSize;
+        }
+        
+        /**
+         * Create a buffer for the given number of elements
+         * 
+         * @param elements The number of elements
+         * @return The buffer
+         */
+        cl_mem create(long elements)
+        {
+            long size = Math.max(1, elements) * elementSize;
+            int errcode[] = { 0 };
+            cl_mem mem = CL.clCreateBuffer(
+                context, CL.CL_MEM_READ_WRITE, size, null, errcode);
+            if (errcode[0] != CL.CL_SUCCESS)
+            {
+                throw new CLException(
+                    "Could not create buffer with " + size + " bytes: " + 
+                    CL.stringFor_errorCode(errcode[0]), errcode[0]);
+            }
+            buffers[count++] = mem;
+            return mem;
+        }
+        
+        /**
+         * Release all buffers that have been created
+         */
+        void release()
+        {
+            for (int i = 0; i < count; i++)
+            {
+                if (buffers[i] != null)
+                {
+                    CL.clReleaseMemObject(buffers[i]);
+                }
+            }
+            count = 0;
+        }
+    }
+    
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private ShapeWarmUp()
+    {
+        // Private constructor to prevent instantiation
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.batch;
+
+/**
+ * The adaptive time window of a {@link SgemvCoalescingExecutor}. <br>
+ * <br>
+ * The window is derived from an exponentially weighted moving average 
+ * of the time between the arrivals of requests: When requests arrive 
+ * so rarely that no further request is expected within the maximum 
+ * window, then the window is 0, and requests are executed immediately.
+ * Otherwise, the window is the time in which the target number of
+ * requests is expected to arrive, limited to the maximum window.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+final class AdaptiveWindow
+{
+    /**
+     * The weight of a new sample in the moving average
+     */
+    private static final double SMOOTHING = 0.125;
+    
+    /**
+     * The maximum window, in nanoseconds
+     */
+    private final long maximumWindowNs;
+    
+    /**
+     * The number of requests that should be collected in one window
+     */
+    private final int targetCount;
+    
+    /**
+     * The time of the last arrival, or <code>Long.MIN_VALUE</code>
+     */
+    private long lastArrivalNs = Long.MIN_VALUE;
+    
+    /**
+     * The average time between two arrivals, in nanoseconds
+     */
+    private double averageGapNs;
+    
+    /**
+     * Creates a new window
+     * 
+     * @param maximumWindowNs The maximum window, in nanoseconds
+     * @param targetCount The number of requests that should be
+     * collected in one window
+     */
+    AdaptiveWindow(long maximumWindowNs, int targetCount)
+    {
+        this.maximumWindowNs = maximumWindowNs;
+        this.targetCount = targetCount;
+        this.averageGapNs = Double.POSITIVE_INFINITY;
+    }
+    
+    /**
+     * Notify this window about the arrival of a request
+     * 
+     * @param nowNs The current time, from System.nanoTime()
+     */
+    synchronized void onArrival(long nowNs)
+    {
+        if (lastArrivalNs != Long.MIN_VALUE)
+        {
+            // Gaps longer than the maximum window carry no information 
+            // except that the load is low
+            double gap = Math.min(nowNs - lastArrivalNs, 
+                2.0 * maximumWindowNs + 1);
+            if (Double.isInfinite(averageGapNs))
+            {
+                averageGapNs = gap;
+            }
+            else
+            {
+                averageGapNs += SMOOTHING * (gap - averageGapNs);
+            }
+        }
+        lastArrivalNs = nowNs;
+    }
+    
+    /**
+     * Returns the current window, in nanoseconds
+     * 
+     * @return The window
+     */
+    synchronized long getWindowNs()
+    {
+        if (averageGapNs > maximumWindowNs)
+        {
+            return 0;
+        }
+        double window = averageGapNs * (targetCount - 1);
+        return (long) Math.min(window, maximumWindowNs);
+    }
+}
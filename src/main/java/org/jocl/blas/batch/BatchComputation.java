@@ -0,0 +1,61 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.batch;
+
+import org.jocl.cl_command_queue;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+
+/**
+ * Interface for the computation that is applied to each batch of a 
+ * {@link TransferPipeline}. <br>
+ * <br>
+ * The input and output matrices reside in device buffers that have 
+ * the same layout as the {@link org.jocl.blas.memory.HostMatrix} 
+ * instances that have been submitted to the pipeline. 
+ */
+public interface BatchComputation
+{
+    /**
+     * Enqueue the computation of the output matrix from the input matrix
+     * 
+     * @param commandQueue The command queue
+     * @param input The input matrix
+     * @param ldInput The leading dimension of the input matrix
+     * @param output The output matrix
+     * @param ldOutput The leading dimension of the output matrix
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The event wait list
+     * @param events The event that will identify the computation, as
+     * an array of length 1 
+     * @return The {@link org.jocl.blas.clblasStatus}
+     */
+    int enqueue(cl_command_queue commandQueue, 
+        cl_mem input, long ldInput, cl_mem output, long ldOutput,
+        int numEventsInWaitList, cl_event eventWaitList[], 
+        cl_event events[]);
+}
@@ -0,0 +1,263 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.batch;
+
+import static org.jocl.blas.clblasOrder.clblasColumnMajor;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.Pointer;
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.CLBLAS;
+import org.jocl.blas.clblasStatus;
+
+/**
+ * Implementation of a {@link SgemvBatchBackend} that computes the 
+ * products on an OpenCL device, with {@link CLBLAS#clblasSgemm}. <br>
+ * <br>
+ * The matrix W is expected to reside on the device. The input and 
+ * output vectors are transferred through buffers for the maximum batch
+ * size that are allocated once. The input vectors are staged in a 
+ * direct buffer, so that they can be written without blocking. Instances of this class are not 
+ * thread-safe, and have to be {@link #release() released} when they are 
+ * no longer used.
+ */
+public final class DeviceSgemvBatchBackend implements SgemvBatchBackend
+{
+    /**
+     * The command queue
+     */
+    private final cl_command_queue commandQueue;
+    
+    /**
+     * The matrix W
+     */
+    private final cl_mem W;
+    
+    /**
+     * The offset of W, in elements
+     */
+    private final long offW;
+    
+    /**
+     * The transposition flag for W, for a column-major computation
+     */
+    private final int transW;
+    
+    /**
+     * The number of rows of op(W)
+     */
+    private final int M;
+    
+    /**
+     * The number of columns of op(W)
+     */
+    private final int N;
+    
+    /**
+     * The leading dimension of W
+     */
+    private final long ldw;
+    
+    /**
+     * The maximum batch size
+     */
+    private final int maximumBatchSize;
+    
+    /**
+     * The direct buffer that the input vectors are staged in for the
+     * non-blocking write
+     */
+    private final FloatBuffer stagingBuffer;
+    
+    /**
+     * The buffer for the input vectors
+     */
+    private cl_mem inputBuffer;
+
+    /**
+     * The buffer for the output vectors
+     */
+    private cl_mem outputBuffer;
+    
+    /**
+     * Creates a new backend for the given matrix. The matrix will be
+     * referenced, not copied, and not released by this class.
+     * 
+     * @param context The context
+     * @param commandQueue The command queue
+     * @param order The {@link org.jocl.blas.clblasOrder} of W
+     * @param transW The {@link org.jocl.blas.clblasTranspose} for W
+     * @param M The number of rows of W
+     * @param N The number of columns of W
+     * @param W The matrix W
+     * @param offW The offset of W, in elements
+     * @param ldw The leading dimension of W
+     * @param maximumBatchSize The maximum batch size
+     * @throws CLException If the buffers can not be created
+     */
+    public DeviceSgemvBatchBackend(cl_context context, 
+        cl_command_queue commandQueue, int order, int transW, int M, int N, 
+        cl_mem W, long offW, long ldw, int maximumBatchSize)
+    {
+        this.commandQueue = commandQueue;
+        this.W = W;
+        this.offW = offW;
+        this.transW = HostSgemvBatchBackend.columnMajorTrans(order, transW);
+        this.M = transW == clblasNoTrans ? M : N;
+        this.N = transW == clblasNoTrans ? N : M;
+        this.ldw = ldw;
+        this.maximumBatchSize = maximumBatchSize;
+        this.stagingBuffer = ByteBuffer.allocateDirect(
+            this.N * maximumBatchSize * Sizeof.cl_float)
+            .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        
+        int errcode[] = { 0 };
+        this.inputBuffer = CL.clCreateBuffer(context, CL.CL_MEM_READ_ONLY, 
+            (long) this.N * maximumBatchSize * Sizeof.cl_float, null, errcode);
+        check(errcode[0], "clCreateBuffer");
+        this.outputBuffer = CL.clCreateBuffer(context, CL.CL_MEM_WRITE_ONLY, 
+            (long) this.M * maximumBatchSize * Sizeof.cl_float, null, errcode);
+        if (errcode[0] != CL.CL_SUCCESS)
+        {
+            CL.clReleaseMemObject(inputBuffer);
+            check(errcode[0], "clCreateBuffer");
+        }
+    }
+
+    @Override
+    public int getInputSize()
+    {
+        return N;
+    }
+
+    @Override
+    public int getOutputSize()
+    {
+        return M;
+    }
+    
+    @Override
+    public int getMaximumBatchSize()
+    {
+        return maximumBatchSize;
+    }
+
+    @Override
+    public void multiply(float inputs[], float outputs[], int batchSize)
+    {
+        if (inputBuffer == null)
+        {
+            throw new IllegalStateException("The backend was released");
+        }
+        if (batchSize > maximumBatchSize)
+        {
+            throw new IllegalArgumentException("Batch size " + batchSize + 
+                " exceeds maximum batch size " + maximumBatchSize);
+        }
+        FloatBuffer staged = stage(stagingBuffer, inputs, N * batchSize);
+        check(CL.clEnqueueWriteBuffer(commandQueue, inputBuffer, false, 0, 
+            (long) N * batchSize * Sizeof.cl_float, Pointer.to(staged), 
+            0, null, null), "clEnqueueWriteBuffer");
+        check(CLBLAS.clblasSgemm(clblasColumnMajor, transW, clblasNoTrans, 
+            M, batchSize, N, 1.0f, W, offW, ldw, inputBuffer, 0, N, 
+            0.0f, outputBuffer, 0, M, 1, 
+            new cl_command_queue[] { commandQueue }, 0, null, 
+            (cl_event[]) null), "clblasSgemm");
+        check(CL.clEnqueueReadBuffer(commandQueue, outputBuffer, true, 0, 
+            (long) M * batchSize * Sizeof.cl_float, Pointer.to(outputs), 
+            0, null, null), "clEnqueueReadBuffer");
+    }
+    
+    /**
+     * Copy the given number of elements of the given array into the 
+     * given direct staging buffer. Non-blocking writes in JOCL may only 
+     * be performed with pointers to direct buffers, because the array
+     * of a pointer to a Java array may be moved before the write 
+     * completes. The staging buffer may only be reused after the write
+     * completed.
+     * 
+     * @param staging The direct staging buffer
+     * @param inputs The input array
+     * @param length The number of elements
+     * @return The staging buffer, with position 0 and the given limit
+     * @throws IndexOutOfBoundsException If the array or the staging 
+     * buffer has less than the given number of elements
+     */
+    static FloatBuffer stage(FloatBuffer staging, float inputs[], int length)
+    {
+        if (length > inputs.length || length > staging.capacity())
+        {
+            throw new IndexOutOfBoundsException("Can not stage " + length + 
+                " elements of an array with length " + inputs.length + 
+                " in a buffer with capacity " + staging.capacity());
+        }
+        staging.clear();
+        staging.put(inputs, 0, length);
+        staging.flip();
+        return staging;
+    }
+    
+    /**
+     * Release the buffers that have been allocated by this backend
+     */
+    public void release()
+    {
+        if (inputBuffer != null)
+        {
+            CL.clReleaseMemObject(inputBuffer);
+            CL.clReleaseMemObject(outputBuffer);
+            inputBuffer = null;
+            outputBuffer = null;
+        }
+    }
+    
+    /**
+     * Throws a CLException if the given result is not CL_SUCCESS
+     * 
+     * @param result The result
+     * @param name The name of the function that returned the result
+     * @throws CLException If the result is not CL_SUCCESS
+     */
+    private static void check(int result, String name)
+    {
+        if (result != CL.CL_SUCCESS)
+        {
+            throw new CLException(name + " failed: " + 
+                clblasStatus.stringFor(result), result);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.batch;
+
+import static org.jocl.blas.clblasOrder.clblasColumnMajor;
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+import static org.jocl.blas.clblasTranspose.clblasTrans;
+
+import org.jocl.blas.host.HostBLAS;
+
+/**
+ * Implementation of a {@link SgemvBatchBackend} that computes the 
+ * products on the host, with {@link HostBLAS}
+ */
+public final class HostSgemvBatchBackend implements SgemvBatchBackend
+{
+    /**
+     * The matrix W
+     */
+    private final float W[];
+    
+    /**
+     * The transposition flag for W, for a column-major computation
+     */
+    private final int transW;
+    
+    /**
+     * The number of rows of op(W)
+     */
+    private final int M;
+    
+    /**
+     * The number of columns of op(W)
+     */
+    private final int N;
+    
+    /**
+     * The leading dimension of W
+     */
+    private final int ldw;
+    
+    /**
+     * The maximum batch size
+     */
+    private final int maximumBatchSize;
+    
+    /**
+     * Creates a new backend for the given matrix. The matrix will be
+     * referenced, not copied.
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder} of W
+     * @param transW The {@link org.jocl.blas.clblasTranspose} for W
+     * @param M The number of rows of W
+     * @param N The number of columns of W
+     * @param W The matrix W
+     * @param ldw The leading dimension of W
+     * @param maximumBatchSize The maximum batch size
+     */
+    public HostSgemvBatchBackend(int order, int transW, int M, int N, 
+        float W[], int ldw, int maximumBatchSize)
+    {
+        this.W = W;
+        this.transW = columnMajorTrans(order, transW);
+        this.M = transW == clblasNoTrans ? M : N;
+        this.N = transW == clblasNoTrans ? N : M;
+        this.ldw = ldw;
+        this.maximumBatchSize = maximumBatchSize;
+    }
+    
+    /**
+     * Returns the transposition flag that has to be used for a matrix
+     * with the given order and transposition in a column-major 
+     * computation.
+     * 
+     * @param order The order
+     * @param trans The transposition
+     * @return The column-major transposition
+     */
+    static int columnMajorTrans(int order, int trans)
+    {
+        if (order == clblasColumnMajor)
+        {
+            return trans;
+        }
+        if (order != clblasRowMajor)
+        {
+            throw new IllegalArgumentException("Invalid order: " + order);
+        }
+        return trans == clblasNoTrans ? clblasTrans : clblasNoTrans;
+    }
+
+    @Override
+    public int getInputSize()
+    {
+        return N;
+    }
+
+    @Override
+    public int getOutputSize()
+    {
+        return M;
+    }
+    
+    @Override
+    public int getMaximumBatchSize()
+    {
+        return maximumBatchSize;
+    }
+
+    @Override
+    public void multiply(float inputs[], float outputs[], int batchSize)
+    {
+        // The inputs form an N x batchSize column-major matrix, and the
+        // outputs form an M x batchSize column-major matrix
+        HostBLAS.clblasSgemm(clblasColumnMajor, transW, clblasNoTrans, 
+            M, batchSize, N, 1.0f, W, 0, ldw, inputs, 0, N, 
+            0.0f, outputs, 0, M);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.batch;
+
+/**
+ * A snapshot of the statistics of a {@link TransferPipeline}. <br>
+ * <br>
+ * The throughput is computed from the host time between the first 
+ * submission and the completion of the last batch. The busy times and 
+ * occupancies of the stages are computed from the profiling information 
+ * of the events, and are only available when the command queues have 
+ * been created with <code>CL_QUEUE_PROFILING_ENABLE</code>. The 
+ * occupancy of a stage is the fraction of the device time span of all 
+ * profiled batches in which the stage was busy. With a perfect overlap, 
+ * the occupancy of the slowest stage approaches 1.0.
+ */
+public final class PipelineStatistics
+{
+    /**
+     * The number of completed batches
+     */
+    private final long completedBatches;
+    
+    /**
+     * The host time, in nanoseconds
+     */
+    private final long elapsedNanos;
+    
+    /**
+     * The number of batches with profiling information
+     */
+    private final long profiledBatches;
+    
+    /**
+     * The device time span of the profiled batches, in nanoseconds
+     */
+    private final long deviceSpanNanos;
+
+    /**
+     * The busy time of the upload stage, in nanoseconds
+     */
+    private final long uploadBusyNanos;
+    
+    /**
+     * The busy time of the compute stage, in nanoseconds
+     */
+    private final long computeBusyNanos;
+    
+    /**
+     * The busy time of the download stage, in nanoseconds
+     */
+    private final long downloadBusyNanos;
+
+    /**
+     * Creates a new instance
+     * 
+     * @param completedBatches The number of completed batches
+     * @param elapsedNanos The host time
+     * @param profiledBatches The number of profiled batches
+     * @param deviceSpanNanos The device time span
+     * @param uploadBusyNanos The busy time of the upload stage
+     * @param computeBusyNanos The busy time of the compute stage
+     * @param downloadBusyNanos The busy time of the download stage
+     */
+    PipelineStatistics(long completedBatches, long elapsedNanos, 
+        long profiledBatches, long deviceSpanNanos, long uploadBusyNanos, 
+        long computeBusyNanos, long downloadBusyNanos)
+    {
+        this.completedBatches = completedBatches;
+        this.elapsedNanos = elapsedNanos;
+        this.profiledBatches = profiledBatches;
+        this.deviceSpanNanos = deviceSpanNanos;
+        this.uploadBusyNanos = uploadBusyNanos;
+        this.computeBusyNanos = computeBusyNanos;
+        this.downloadBusyNanos = downloadBusyNanos;
+    }
+    
+    /**
+     * Returns the number of batches that have been completed
+     * 
+     * @return The number of completed batches
+     */
+    public long getCompletedBatches()
+    {
+        return completedBatches;
+    }
+    
+    /**
+     * Returns the host time between the first submission and the
+     * completion of the last batch, in nanoseconds
+     * 
+     * @return The elapsed time
+     */
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+    
+    /**
+     * Returns the number of completed batches per second, or 0 if no
+     * batch has been completed
+     * 
+     * @return The throughput
+     */
+    public double getThroughput()
+    {
+        if (elapsedNanos == 0)
+        {
+            return 0;
+        }
+        return completedBatches * 1e9 / elapsedNanos;
+    }
+    
+    /**
+     * Returns the number of batches for which profiling information
+     * was available
+     * 
+     * @return The number of profiled batches
+     */
+    public long getProfiledBatches()
+    {
+        return profiledBatches;
+    }
+    
+    /**
+     * Returns the time between the start of the first upload and the
+     * end of the last download of the profiled batches, in nanoseconds
+     * 
+     * @return The device time span
+     */
+    public long getDeviceSpanNanos()
+    {
+        return deviceSpanNanos;
+    }
+
+    /**
+     * Returns the total busy time of the upload stage, in nanoseconds
+     * 
+     * @return The busy time
+     */
+    public long getUploadBusyNanos()
+    {
+        return uploadBusyNanos;
+    }
+    
+    /**
+     * Returns the total busy time of the compute stage, in nanoseconds
+     * 
+     * @return The busy time
+     */
+    public long getComputeBusyNanos()
+    {
+        return computeBusyNanos;
+    }
+    
+    /**
+     * Returns the total busy time of the download stage, in nanoseconds
+     * 
+     * @return The busy time
+     */
+    public long getDownloadBusyNanos()
+    {
+        return downloadBusyNanos;
+    }
+    
+    /**
+     * Returns the occupancy of the upload stage, or 0 if no profiling
+     * information was available
+     * 
+     * @return The occupancy
+     */
+    public double getUploadOccupancy()
+    {
+        return occupancy(uploadBusyNanos);
+    }
+    
+    /**
+     * Returns the occupancy of the compute stage, or 0 if no profiling
+     * information was available
+     * 
+     * @return The occupancy
+     */
+    public double getComputeOccupancy()
+    {
+        return occupancy(computeBusyNanos);
+    }
+    
+    /**
+     * Returns the occupancy of the download stage, or 0 if no profiling
+     * information was available
+     * 
+     * @return The occupancy
+     */
+    public double getDownloadOccupancy()
+    {
+        return occupancy(downloadBusyNanos);
+    }
+    
+    /**
+     * Returns the occupancy for the given busy time
+     * 
+     * @param busyNanos The busy time
+     * @return The occupancy
+     */
+    private double occupancy(long busyNanos)
+    {
+        if (deviceSpanNanos == 0)
+        {
+            return 0;
+        }
+        return (double) busyNanos / deviceSpanNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PipelineStatistics[" +
+            "completedBatches=" + completedBatches + "," +
+            "throughput=" + getThroughput() + "," +
+            "profiledBatches=" + profiledBatches + "," +
+            "uploadOccupancy=" + getUploadOccupancy() + "," +
+            "computeOccupancy=" + getComputeOccupancy() + "," +
+            "downloadOccupancy=" + getDownloadOccupancy() + "]";
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.batch;
+
+import org.jocl.cl_command_queue;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.CLBLAS;
+
+/**
+ * Implementation of a {@link BatchComputation} that multiplies each 
+ * input matrix with a fixed matrix W, with {@link CLBLAS#clblasSgemm}:
+ * <code>C = alpha * op(A) * op(W)</code>, where A is the input matrix
+ * and C is the output matrix. <br>
+ * <br>
+ * The matrix W is expected to reside on the device. It is referenced,
+ * not copied, and not released by this class.
+ */
+public final class SgemmBatchComputation implements BatchComputation
+{
+    /**
+     * The {@link org.jocl.blas.clblasOrder} of all matrices
+     */
+    private final int order;
+    
+    /**
+     * The {@link org.jocl.blas.clblasTranspose} for the input matrices
+     */
+    private final int transA;
+    
+    /**
+     * The {@link org.jocl.blas.clblasTranspose} for W
+     */
+    private final int transW;
+    
+    /**
+     * The number of rows of op(A) and C
+     */
+    private final long M;
+    
+    /**
+     * The number of columns of op(W) and C
+     */
+    private final long N;
+    
+    /**
+     * The number of columns of op(A) and rows of op(W)
+     */
+    private final long K;
+    
+    /**
+     * The scalar alpha
+     */
+    private final float alpha;
+    
+    /**
+     * The matrix W
+     */
+    private final cl_mem W;
+    
+    /**
+     * The offset of W, in elements
+     */
+    private final long offW;
+    
+    /**
+     * The leading dimension of W
+     */
+    private final long ldw;
+    
+    /**
+     * Creates a new computation
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder} of all matrices
+     * @param transA The {@link org.jocl.blas.clblasTranspose} for the 
+     * input matrices
+     * @param transW The {@link org.jocl.blas.clblasTranspose} for W
+     * @param M The number of rows of op(A) and C
+     * @param N The number of columns of op(W) and C
+     * @param K The number of columns of op(A) and rows of op(W)
+     * @param alpha The scalar alpha
+     * @param W The matrix W
+     * @param offW The offset of W, in elements
+     * @param ldw The leading dimension of W
+     */
+    public SgemmBatchComputation(int order, int transA, int transW, 
+        long M, long N, long K, float alpha, cl_mem W, long offW, long ldw)
+    {
+        this.order = order;
+        this.transA = transA;
+        this.transW = transW;
+        this.M = M;
+        this.N = N;
+        this.K = K;
+        this.alpha = alpha;
+        this.W = W;
+        this.offW = offW;
+        this.ldw = ldw;
+    }
+
+    @Override
+    public int enqueue(cl_command_queue commandQueue, 
+        cl_mem input, long ldInput, cl_mem output, long ldOutput,
+        int numEventsInWaitList, cl_event eventWaitList[], 
+        cl_event events[])
+    {
+        return CLBLAS.clblasSgemm(order, transA, transW, M, N, K, alpha, 
+            input, 0, ldInput, W, offW, ldw, 0.0f, output, 0, ldOutput, 
+            1, new cl_command_queue[] { commandQueue }, 
+            numEventsInWaitList, eventWaitList, events);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.batch;
+
+/**
+ * Interface for a backend that multiplies a fixed matrix with batches 
+ * of vectors, turning many matrix-vector products into one 
+ * matrix-matrix product.<br>
+ * <br>
+ * The fixed matrix <i>op(W)</i> has {@link #getOutputSize()} rows and 
+ * {@link #getInputSize()} columns. The input vectors of a batch are 
+ * stored consecutively in one array, as are the output vectors.
+ */
+public interface SgemvBatchBackend
+{
+    /**
+     * Returns the size of the input vectors, which is the number of
+     * columns of <i>op(W)</i>
+     * 
+     * @return The input size
+     */
+    int getInputSize();
+    
+    /**
+     * Returns the size of the output vectors, which is the number of
+     * rows of <i>op(W)</i>
+     * 
+     * @return The output size
+     */
+    int getOutputSize();
+    
+    /**
+     * Returns the maximum number of vectors that may be passed to
+     * {@link #multiply(float[], float[], int)} at once
+     * 
+     * @return The maximum batch size
+     */
+    int getMaximumBatchSize();
+    
+    /**
+     * Compute <code>y<sub>b</sub> = op(W) * x<sub>b</sub></code> for all 
+     * vectors of the given batch.
+     * 
+     * @param inputs The input vectors, with a length of at least
+     * <code>batchSize * getInputSize()</code>
+     * @param outputs The output vectors, with a length of at least
+     * <code>batchSize * getOutputSize()</code>
+     * @param batchSize The number of vectors
+     * @throws org.jocl.CLException If an OpenCL error occurs
+     */
+    void multiply(float inputs[], float outputs[], int batchSize);
+}
@@ -0,0 +1,60 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.batch;
+
+/**
+ * Interface for a listener that receives the results of a 
+ * {@link SgemvBatchProcessor}. The methods are called from the worker 
+ * thread of the processor, one at a time. A listener that blocks will 
+ * eventually cause the submission of new vectors to block.
+ */
+public interface SgemvBatchListener
+{
+    /**
+     * Will be called for each result, in the order in which the input
+     * vectors have been submitted
+     * 
+     * @param input The input vector, as it was submitted
+     * @param output The output vector
+     */
+    void onNext(float input[], float output[]);
+    
+    /**
+     * Will be called when the processing failed. No further methods 
+     * will be called afterwards.
+     * 
+     * @param throwable The cause of the failure
+     */
+    void onError(Throwable throwable);
+    
+    /**
+     * Will be called after the processor was closed and the results for
+     * all vectors that have been submitted have been passed to 
+     * {@link #onNext(float[], float[])}
+     */
+    void onComplete();
+}
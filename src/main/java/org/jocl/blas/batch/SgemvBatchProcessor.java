@@ -0,0 +1,455 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A processor for a stream of vectors that are multiplied with a fixed
+ * matrix. <br>
+ * <br>
+ * The vectors that are {@link #submit(float[]) submitted} are collected
+ * into batches, so that the matrix-vector products can be computed with 
+ * a single matrix-matrix product by a {@link SgemvBatchBackend}. A batch
+ * is processed as soon as it contains the maximum number of vectors, or 
+ * when the oldest vector in the batch has been waiting for the maximum
+ * latency. The results are passed to a {@link SgemvBatchListener}, in 
+ * the order in which the vectors have been submitted. <br>
+ * <br>
+ * The number of vectors that have been submitted but whose results have
+ * not yet been passed to the listener is limited by the capacity of the
+ * processor. When the capacity is exhausted, {@link #submit(float[])} 
+ * blocks until results have been delivered. <br>
+ * <br>
+ * This class is thread-safe. The batches are processed by a single 
+ * worker thread, which is started when the processor is created, and
+ * which terminates after the processor was {@link #close() closed}.
+ */
+public final class SgemvBatchProcessor
+{
+    /**
+     * A vector that has been submitted
+     */
+    private static class Item
+    {
+        /**
+         * The input vector
+         */
+        final float input[];
+        
+        /**
+         * The time of the submission, from System.nanoTime()
+         */
+        final long submitTimeNs;
+        
+        /**
+         * Creates a new item
+         * 
+         * @param input The input vector
+         * @param submitTimeNs The time of the submission
+         */
+        Item(float input[], long submitTimeNs)
+        {
+            this.input = input;
+            this.submitTimeNs = submitTimeNs;
+        }
+    }
+    
+    /**
+     * The item that marks the end of the stream
+     */
+    private static final Item END = new Item(null, 0);
+    
+    /**
+     * The backend
+     */
+    private final SgemvBatchBackend backend;
+    
+    /**
+     * The maximum batch size
+     */
+    private final int batchSize;
+    
+    /**
+     * The maximum latency, in nanoseconds
+     */
+    private final long maximumLatencyNs;
+    
+    /**
+     * The listener
+     */
+    private final SgemvBatchListener listener;
+    
+    /**
+     * The queue of submitted items
+     */
+    private final BlockingQueue<Item> queue;
+    
+    /**
+     * The permits for submitting items
+     */
+    private final Semaphore permits;
+    
+    /**
+     * The latch that is counted down when the worker terminates
+     */
+    private final CountDownLatch terminated;
+    
+    /**
+     * The number of batches that have been processed
+     */
+    private final AtomicLong batchCount;
+    
+    /**
+     * The number of vectors that have been processed
+     */
+    private final AtomicLong vectorCount;
+    
+    /**
+     * Whether the processor was closed
+     */
+    private volatile boolean closed;
+    
+    /**
+     * Whether the processor failed
+     */
+    private volatile boolean failed;
+    
+    /**
+     * Creates a new processor and starts its worker thread
+     * 
+     * @param backend The backend
+     * @param batchSize The maximum number of vectors in one batch. If 
+     * this is larger than the maximum batch size of the backend, then 
+     * the maximum batch size of the backend will be used.
+     * @param maximumLatency The maximum time that a vector will wait 
+     * for further vectors to be added to its batch
+     * @param unit The unit of the maximum latency
+     * @param capacity The maximum number of vectors that have been 
+     * submitted and whose results have not been delivered yet
+     * @param listener The listener
+     * @throws IllegalArgumentException If the batch size or the capacity
+     * are not positive, or the maximum latency is negative
+     */
+    public SgemvBatchProcessor(SgemvBatchBackend backend, int batchSize, 
+        long maximumLatency, TimeUnit unit, int capacity, 
+        SgemvBatchListener listener)
+    {
+        if (batchSize <= 0)
+        {
+            throw new IllegalArgumentException(
+                "The batch size must be positive, but is " + batchSize);
+        }
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException(
+                "The capacity must be positive, but is " + capacity);
+        }
+        if (maximumLatency < 0)
+        {
+            throw new IllegalArgumentException(
+                "The maximum latency may not be negative");
+        }
+        this.backend = backend;
+        this.batchSize = Math.min(batchSize, backend.getMaximumBatchSize());
+        this.maximumLatencyNs = unit.toNanos(maximumLatency);
+        this.listener = listener;
+        this.queue = new LinkedBlockingQueue<Item>();
+        this.permits = new Semaphore(capacity);
+        this.terminated = new CountDownLatch(1);
+        this.batchCount = new AtomicLong();
+        this.vectorCount = new AtomicLong();
+        
+        Thread worker = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                processItems();
+            }
+        }, "JOCLBLAS-SgemvBatchProcessor");
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    /**
+     * Submit the given vector. The vector will be referenced until its 
+     * result was delivered, and must not be modified until then. If
+     * the capacity of this processor is exhausted, then this method 
+     * blocks until results have been delivered.
+     * 
+     * @param input The input vector
+     * @throws InterruptedException If the thread is interrupted while
+     * waiting
+     * @throws IllegalArgumentException If the length of the vector does
+     * not match the input size of the backend
+     * @throws IllegalStateException If the processor has been closed, 
+     * or failed
+     */
+    public void submit(float input[]) throws InterruptedException
+    {
+        validate(input);
+        permits.acquire();
+        enqueue(input);
+    }
+    
+    /**
+     * Submit the given vector, waiting at most the given time if the
+     * capacity of this processor is exhausted. See 
+     * {@link #submit(float[])}.
+     * 
+     * @param input The input vector
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout
+     * @return Whether the vector was submitted
+     * @throws InterruptedException If the thread is interrupted while
+     * waiting
+     * @throws IllegalArgumentException If the length of the vector does
+     * not match the input size of the backend
+     * @throws IllegalStateException If the processor has been closed, 
+     * or failed
+     */
+    public boolean offer(float input[], long timeout, TimeUnit unit)
+        throws InterruptedException
+    {
+        validate(input);
+        if (!permits.tryAcquire(timeout, unit))
+        {
+            return false;
+        }
+        enqueue(input);
+        return true;
+    }
+    
+    /**
+     * Make sure that the given vector may be submitted
+     * 
+     * @param input The input vector
+     * @throws IllegalArgumentException If the length of the vector does
+     * not match the input size of the backend
+     * @throws IllegalStateException If the processor has been closed, 
+     * or failed
+     */
+    private void validate(float input[])
+    {
+        if (input.length != backend.getInputSize())
+        {
+            throw new IllegalArgumentException("Expected a vector of size " + 
+                backend.getInputSize() + ", but got " + input.length);
+        }
+        checkState();
+    }
+    
+    /**
+     * Make sure that vectors may still be submitted
+     * 
+     * @throws IllegalStateException If the processor has been closed, 
+     * or failed
+     */
+    private void checkState()
+    {
+        if (failed)
+        {
+            throw new IllegalStateException("The processor failed");
+        }
+        if (closed)
+        {
+            throw new IllegalStateException("The processor was closed");
+        }
+    }
+    
+    /**
+     * Enqueue the given input vector, after a permit was acquired for it
+     * 
+     * @param input The input vector
+     */
+    private void enqueue(float input[])
+    {
+        synchronized (queue)
+        {
+            try
+            {
+                checkState();
+            }
+            catch (IllegalStateException e)
+            {
+                permits.release();
+                throw e;
+            }
+            queue.add(new Item(input, System.nanoTime()));
+        }
+    }
+    
+    /**
+     * Close this processor. No further vectors may be submitted. The
+     * vectors that have already been submitted will still be processed, 
+     * and then {@link SgemvBatchListener#onComplete()} will be called.
+     * Calling this method on a closed processor has no effect.
+     */
+    public void close()
+    {
+        synchronized (queue)
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+            queue.add(END);
+        }
+    }
+    
+    /**
+     * Wait until the worker thread of this processor terminated, after 
+     * this processor was closed or failed
+     * 
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout
+     * @return Whether the worker thread terminated
+     * @throws InterruptedException If the thread is interrupted while
+     * waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) 
+        throws InterruptedException
+    {
+        return terminated.await(timeout, unit);
+    }
+    
+    /**
+     * Returns the number of batches that have been processed
+     * 
+     * @return The number of batches
+     */
+    public long getBatchCount()
+    {
+        return batchCount.get();
+    }
+    
+    /**
+     * Returns the number of vectors that have been processed
+     * 
+     * @return The number of vectors
+     */
+    public long getVectorCount()
+    {
+        return vectorCount.get();
+    }
+    
+    /**
+     * The main loop of the worker thread
+     */
+    private void processItems()
+    {
+        try
+        {
+            List<Item> batch = new ArrayList<Item>(batchSize);
+            float inputs[] = new float[batchSize * backend.getInputSize()];
+            float outputs[] = new float[batchSize * backend.getOutputSize()];
+            boolean end = false;
+            while (!end)
+            {
+                Item first = queue.take();
+                if (first == END)
+                {
+                    break;
+                }
+                batch.add(first);
+                long deadline = first.submitTimeNs + maximumLatencyNs;
+                while (batch.size() < batchSize)
+                {
+                    long remaining = deadline - System.nanoTime();
+                    Item next = remaining > 0 ? 
+                        queue.poll(remaining, TimeUnit.NANOSECONDS) : 
+                        queue.poll();
+                    if (next == null)
+                    {
+                        break;
+                    }
+                    if (next == END)
+                    {
+                        end = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                processBatch(batch, inputs, outputs);
+                batch.clear();
+            }
+            listener.onComplete();
+        }
+        catch (Throwable t)
+        {
+            synchronized (queue)
+            {
+                failed = true;
+            }
+            // Release the permits for all items that will never be 
+            // processed, so that blocked submitters will see the failure
+            permits.release(Integer.MAX_VALUE / 2);
+            listener.onError(t);
+        }
+        finally
+        {
+            terminated.countDown();
+        }
+    }
+    
+    /**
+     * Process the given batch
+     * 
+     * @param batch The batch
+     * @param inputs The array for the input vectors
+     * @param outputs The array for the output vectors
+     */
+    private void processBatch(List<Item> batch, float inputs[], float outputs[])
+    {
+        int n = backend.getInputSize();
+        int m = backend.getOutputSize();
+        int size = batch.size();
+        for (int b = 0; b < size; b++)
+        {
+            System.arraycopy(batch.get(b).input, 0, inputs, b * n, n);
+        }
+        backend.multiply(inputs, outputs, size);
+        batchCount.incrementAndGet();
+        vectorCount.addAndGet(size);
+        for (int b = 0; b < size; b++)
+        {
+            float output[] = new float[m];
+            System.arraycopy(outputs, b * m, output, 0, m);
+            listener.onNext(batch.get(b).input, output);
+            permits.release();
+        }
+    }
+}
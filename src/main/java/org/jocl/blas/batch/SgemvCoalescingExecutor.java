@@ -0,0 +1,1129 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.batch;
+
+import static org.jocl.blas.clblasOrder.clblasColumnMajor;
+import static org.jocl.blas.clblasStatus.clblasSuccess;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.CLBLAS;
+import org.jocl.blas.clblasStatus;
+
+/**
+ * An executor for {@link CLBLAS#clblasSgemv} calls that coalesces 
+ * concurrent calls on the same matrix into a single matrix-matrix 
+ * product. <br>
+ * <br>
+ * The calls that are {@link #sgemv submitted} are collected for a short
+ * time window. All calls in a window that refer to the same matrix 
+ * <code>cl_mem</code> with the same offset, leading dimension, order, 
+ * transposition and size are merged: Their vectors x are gathered into
+ * the columns of a scratch matrix, the products are computed with one 
+ * call to {@link CLBLAS#clblasSgemm}, and the columns of the result are
+ * scaled and accumulated into the vectors y of the respective callers.
+ * Calls that can not be merged with others are executed with a plain
+ * {@link CLBLAS#clblasSgemv}. <br>
+ * <br>
+ * The window adapts to the load: When calls arrive so rarely that no 
+ * other call is expected within the maximum window, they are executed
+ * immediately. Under a higher load, the window is the time in which 
+ * the maximum number of calls for one batch is expected to arrive, but
+ * never longer than the maximum window. <br>
+ * <br>
+ * A call that reads a vector that is written by a call that is already
+ * pending, or that writes a vector that is read or written by a pending 
+ * call, will not be merged with the pending calls, but will start the 
+ * next window. So calls that are submitted by one thread are executed 
+ * in the order in which they have been submitted. <br>
+ * <br>
+ * This class is thread-safe. The calls are enqueued by a single worker
+ * thread, which is started when the executor is created, and which 
+ * terminates after the executor was {@link #close() closed}.
+ */
+public final class SgemvCoalescingExecutor
+{
+    /**
+     * Interface for the operations that the requests are executed with.
+     * The operations are modeled after the respective methods in
+     * {@link CLBLAS}, and are enqueued into a single command queue.
+     */
+    interface Operations
+    {
+        /**
+         * Enqueue y = alpha * op(A) * x + beta * y. See 
+         * {@link CLBLAS#clblasSgemv}.
+         * 
+         * @return The {@link clblasStatus}
+         */
+        int sgemv(int order, int transA, long M, long N, float alpha, 
+            cl_mem A, long offA, long lda, cl_mem x, long offx, int incx, 
+            float beta, cl_mem y, long offy, int incy);
+
+        /**
+         * Enqueue C = alpha * op(A) * op(B) + beta * C. See 
+         * {@link CLBLAS#clblasSgemm}.
+         * 
+         * @return The {@link clblasStatus}
+         */
+        int sgemm(int order, int transA, int transB, 
+            long M, long N, long K, float alpha, 
+            cl_mem A, long offA, long lda, cl_mem B, long offB, long ldb, 
+            float beta, cl_mem C, long offC, long ldc);
+
+        /**
+         * Enqueue Y = X. See {@link CLBLAS#clblasScopy}.
+         * 
+         * @return The {@link clblasStatus}
+         */
+        int scopy(long N, cl_mem X, long offx, int incx, 
+            cl_mem Y, long offy, int incy);
+
+        /**
+         * Enqueue X = alpha * X. See {@link CLBLAS#clblasSscal}.
+         * 
+         * @return The {@link clblasStatus}
+         */
+        int sscal(long N, float alpha, cl_mem X, long offx, int incx);
+
+        /**
+         * Enqueue Y = alpha * X + Y. See {@link CLBLAS#clblasSaxpy}.
+         * 
+         * @return The {@link clblasStatus}
+         */
+        int saxpy(long N, float alpha, cl_mem X, long offx, int incx, 
+            cl_mem Y, long offy, int incy);
+
+        /**
+         * Wait until all enqueued operations are finished
+         * 
+         * @return The OpenCL status
+         */
+        int finish();
+
+        /**
+         * Create a buffer for the given number of float elements
+         * 
+         * @param size The size, in elements
+         * @return The buffer
+         * @throws CLException If the buffer can not be created
+         */
+        cl_mem createBuffer(long size);
+
+        /**
+         * Release the given buffer, which was created with 
+         * {@link #createBuffer(long)}
+         * 
+         * @param buffer The buffer
+         */
+        void releaseBuffer(cl_mem buffer);
+    }
+    
+    /**
+     * Implementation of the {@link Operations} that enqueues the 
+     * operations into an OpenCL command queue
+     */
+    private static final class DeviceOperations implements Operations
+    {
+        /**
+         * The context
+         */
+        private final cl_context context;
+        
+        /**
+         * The command queue
+         */
+        private final cl_command_queue commandQueues[];
+        
+        /**
+         * Creates new operations for the given context and queue
+         * 
+         * @param context The context
+         * @param commandQueue The command queue
+         */
+        DeviceOperations(cl_context context, cl_command_queue commandQueue)
+        {
+            this.context = context;
+            this.commandQueues = new cl_command_queue[] { commandQueue };
+        }
+        
+        @Override
+        public int sgemv(int order, int transA, long M, long N, 
+            float alpha, cl_mem A, long offA, long lda, 
+            cl_mem x, long offx, int incx, 
+            float beta, cl_mem y, long offy, int incy)
+        {
+            return CLBLAS.clblasSgemv(order, transA, M, N, alpha, 
+                A, offA, lda, x, offx, incx, beta, y, offy, incy, 
+                1, commandQueues, 0, null, (cl_event[]) null);
+        }
+
+        @Override
+        public int sgemm(int order, int transA, int transB, 
+            long M, long N, long K, float alpha, 
+            cl_mem A, long offA, long lda, cl_mem B, long offB, long ldb, 
+            float beta, cl_mem C, long offC, long ldc)
+        {
+            return CLBLAS.clblasSgemm(order, transA, transB, M, N, K, 
+                alpha, A, offA, lda, B, offB, ldb, beta, C, offC, ldc, 
+                1, commandQueues, 0, null, (cl_event[]) null);
+        }
+
+        @Override
+        public int scopy(long N, cl_mem X, long offx, int incx, 
+            cl_mem Y, long offy, int incy)
+        {
+            return CLBLAS.clblasScopy(N, X, offx, incx, Y, offy, incy, 
+                1, commandQueues, 0, null, (cl_event[]) null);
+        }
+
+        @Override
+        public int sscal(long N, float alpha, cl_mem X, long offx, int incx)
+        {
+            return CLBLAS.clblasSscal(N, alpha, X, offx, incx, 
+                1, commandQueues, 0, null, (cl_event[]) null);
+        }
+
+        @Override
+        public int saxpy(long N, float alpha, cl_mem X, long offx, 
+            int incx, cl_mem Y, long offy, int incy)
+        {
+            return CLBLAS.clblasSaxpy(N, alpha, X, offx, incx, 
+                Y, offy, incy, 1, commandQueues, 0, null, (cl_event[]) null);
+        }
+
+        @Override
+        public int finish()
+        {
+            return CL.clFinish(commandQueues[0]);
+        }
+
+        @Override
+        public cl_mem createBuffer(long size)
+        {
+            int errcode[] = { 0 };
+            cl_mem buffer = CL.clCreateBuffer(context, CL.CL_MEM_READ_WRITE, 
+                size * Sizeof.cl_float, null, errcode);
+            if (errcode[0] != CL.CL_SUCCESS)
+            {
+                throw new CLException("clCreateBuffer failed: " + 
+                    clblasStatus.stringFor(errcode[0]), errcode[0]);
+            }
+            return buffer;
+        }
+
+        @Override
+        public void releaseBuffer(cl_mem buffer)
+        {
+            CL.clReleaseMemObject(buffer);
+        }
+    }
+    
+    /**
+     * A call that has been submitted
+     */
+    private static final class Request
+    {
+        // The arguments of the call, as described in sgemv
+        final int order;
+        final int transA;
+        final long M;
+        final long N;
+        final float alpha;
+        final cl_mem A;
+        final long offA;
+        final long lda;
+        final cl_mem x;
+        final long offx;
+        final int incx;
+        final float beta;
+        final cl_mem y;
+        final long offy;
+        final int incy;
+        
+        /**
+         * The time of the submission, from System.nanoTime()
+         */
+        final long submitTimeNs;
+        
+        /**
+         * The result that is handed out to the caller
+         */
+        final Result result;
+        
+        /**
+         * Creates a new request for the given arguments of 
+         * {@link SgemvCoalescingExecutor#sgemv}
+         */
+        Request(int order, int transA, long M, long N, float alpha, 
+            cl_mem A, long offA, long lda, cl_mem x, long offx, int incx, 
+            float beta, cl_mem y, long offy, int incy, long submitTimeNs)
+        {
+            this.order = order;
+            this.transA = transA;
+            this.M = M;
+            this.N = N;
+            this.alpha = alpha;
+            this.A = A;
+            this.offA = offA;
+            this.lda = lda;
+            this.x = x;
+            this.offx = offx;
+            this.incx = incx;
+            this.beta = beta;
+            this.y = y;
+            this.offy = offy;
+            this.incy = incy;
+            this.submitTimeNs = submitTimeNs;
+            this.result = new Result();
+        }
+        
+        /**
+         * Returns the length of the vector x
+         * 
+         * @return The length of x
+         */
+        long getInputSize()
+        {
+            return transA == clblasNoTrans ? N : M;
+        }
+        
+        /**
+         * Returns the length of the vector y
+         * 
+         * @return The length of y
+         */
+        long getOutputSize()
+        {
+            return transA == clblasNoTrans ? M : N;
+        }
+    }
+    
+    /**
+     * The key for requests that may be merged into one GEMM
+     */
+    private static final class Key
+    {
+        private final cl_mem A;
+        private final long offA;
+        private final long lda;
+        private final int order;
+        private final int transA;
+        private final long M;
+        private final long N;
+        
+        /**
+         * Creates the key for the given request
+         * 
+         * @param r The request
+         */
+        Key(Request r)
+        {
+            this.A = r.A;
+            this.offA = r.offA;
+            this.lda = r.lda;
+            this.order = r.order;
+            this.transA = r.transA;
+            this.M = r.M;
+            this.N = r.N;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = A.hashCode();
+            result = 31 * result + (int) (offA ^ (offA >>> 32));
+            result = 31 * result + (int) (lda ^ (lda >>> 32));
+            result = 31 * result + order;
+            result = 31 * result + transA;
+            result = 31 * result + (int) (M ^ (M >>> 32));
+            result = 31 * result + (int) (N ^ (N >>> 32));
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object object)
+        {
+            if (this == object)
+            {
+                return true;
+            }
+            if (!(object instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) object;
+            return A.equals(other.A) && offA == other.offA && 
+                lda == other.lda && order == other.order && 
+                transA == other.transA && M == other.M && N == other.N;
+        }
+    }
+    
+    /**
+     * The {@link Future} for the status of a request. The value is the 
+     * {@link clblasStatus} of the operation, which is 
+     * <code>clblasSuccess</code> when the vector y of the request 
+     * contains the result.
+     */
+    private static final class Result implements Future<Integer>
+    {
+        /**
+         * The latch that is counted down when the result is available
+         */
+        private final CountDownLatch done = new CountDownLatch(1);
+        
+        /**
+         * The status
+         */
+        private volatile int status;
+        
+        /**
+         * The exception that caused the request to fail
+         */
+        private volatile Throwable cause;
+        
+        /**
+         * Complete this result with the given status
+         * 
+         * @param status The status
+         */
+        void complete(int status)
+        {
+            this.status = status;
+            done.countDown();
+        }
+
+        /**
+         * Complete this result with the given exception
+         * 
+         * @param cause The cause
+         */
+        void fail(Throwable cause)
+        {
+            this.cause = cause;
+            done.countDown();
+        }
+        
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isDone()
+        {
+            return done.getCount() == 0;
+        }
+
+        @Override
+        public Integer get() throws InterruptedException, ExecutionException
+        {
+            done.await();
+            return getResult();
+        }
+
+        @Override
+        public Integer get(long timeout, TimeUnit unit) 
+            throws InterruptedException, ExecutionException, TimeoutException
+        {
+            if (!done.await(timeout, unit))
+            {
+                throw new TimeoutException();
+            }
+            return getResult();
+        }
+        
+        /**
+         * Returns the status, or throws the exception that caused the
+         * request to fail
+         * 
+         * @return The status
+         * @throws ExecutionException If the request failed
+         */
+        private Integer getResult() throws ExecutionException
+        {
+            if (cause != null)
+            {
+                throw new ExecutionException(cause);
+            }
+            return status;
+        }
+    }
+    
+    /**
+     * The request that marks the end of the stream
+     */
+    private static final Request END = new Request(
+        0, 0, 0, 0, 0, null, 0, 0, null, 0, 0, 0, null, 0, 0, 0);
+    
+    /**
+     * The operations
+     */
+    private final Operations operations;
+    
+    /**
+     * The maximum number of requests that are merged into one GEMM
+     */
+    private final int maximumBatchSize;
+    
+    /**
+     * The adaptive window
+     */
+    private final AdaptiveWindow window;
+    
+    /**
+     * The queue of submitted requests
+     */
+    private final BlockingQueue<Request> queue;
+    
+    /**
+     * The latch that is counted down when the worker terminates
+     */
+    private final CountDownLatch terminated;
+    
+    /**
+     * The number of requests that have been submitted
+     */
+    private final AtomicLong requestCount;
+
+    /**
+     * The number of GEMM calls that have been enqueued
+     */
+    private final AtomicLong gemmCount;
+
+    /**
+     * The number of GEMV calls that have been enqueued
+     */
+    private final AtomicLong gemvCount;
+    
+    /**
+     * The request that did not fit into the previous window, and that
+     * starts the next window. Only accessed by the worker.
+     */
+    private Request carry;
+    
+    /**
+     * The scratch buffer for the vectors x. Only accessed by the worker.
+     */
+    private cl_mem inputBuffer;
+
+    /**
+     * The size of the input buffer, in elements
+     */
+    private long inputBufferSize;
+    
+    /**
+     * The scratch buffer for the products. Only accessed by the worker.
+     */
+    private cl_mem outputBuffer;
+    
+    /**
+     * The size of the output buffer, in elements
+     */
+    private long outputBufferSize;
+    
+    /**
+     * Whether the executor was closed. Only accessed while holding the
+     * lock on the queue, so that no request can be added after the 
+     * end of the stream.
+     */
+    private boolean closed;
+    
+    /**
+     * Creates a new executor and starts its worker thread
+     * 
+     * @param context The context
+     * @param commandQueue The command queue
+     * @param maximumBatchSize The maximum number of calls that are 
+     * merged into one matrix-matrix product
+     * @param maximumWindow The maximum time that a call will wait for
+     * further calls that it may be merged with
+     * @param unit The unit of the maximum window
+     * @throws IllegalArgumentException If the maximum batch size is not
+     * positive, or the maximum window is negative
+     */
+    public SgemvCoalescingExecutor(cl_context context, 
+        cl_command_queue commandQueue, int maximumBatchSize, 
+        long maximumWindow, TimeUnit unit)
+    {
+        this(new DeviceOperations(context, commandQueue), 
+            maximumBatchSize, maximumWindow, unit);
+    }
+    
+    /**
+     * Creates a new executor that executes the requests with the given
+     * operations, and starts its worker thread
+     * 
+     * @param operations The operations
+     * @param maximumBatchSize The maximum number of calls that are 
+     * merged into one matrix-matrix product
+     * @param maximumWindow The maximum time that a call will wait for
+     * further calls that it may be merged with
+     * @param unit The unit of the maximum window
+     * @throws IllegalArgumentException If the maximum batch size is not
+     * positive, or the maximum window is negative
+     */
+    SgemvCoalescingExecutor(Operations operations, int maximumBatchSize, 
+        long maximumWindow, TimeUnit unit)
+    {
+        if (maximumBatchSize <= 0)
+        {
+            throw new IllegalArgumentException(
+                "The maximum batch size must be positive, but is " + 
+                maximumBatchSize);
+        }
+        if (maximumWindow < 0)
+        {
+            throw new IllegalArgumentException(
+                "The maximum window may not be negative");
+        }
+        this.operations = operations;
+        this.maximumBatchSize = maximumBatchSize;
+        this.window = new AdaptiveWindow(
+            unit.toNanos(maximumWindow), maximumBatchSize);
+        this.queue = new LinkedBlockingQueue<Request>();
+        this.terminated = new CountDownLatch(1);
+        this.requestCount = new AtomicLong();
+        this.gemmCount = new AtomicLong();
+        this.gemvCount = new AtomicLong();
+        
+        Thread worker = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                processRequests();
+            }
+        }, "JOCLBLAS-SgemvCoalescingExecutor");
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    /**
+     * Submit a call to {@link CLBLAS#clblasSgemv}, with the same 
+     * arguments as the respective method, except for the command queues
+     * and events. <br>
+     * <br>
+     * The returned future will provide the {@link clblasStatus} of the
+     * operation. When this is <code>clblasSuccess</code>, the vector y
+     * contains the result. If the operation caused an exception, then 
+     * the future will throw an <code>ExecutionException</code> with 
+     * this exception as its cause.
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param transA The {@link org.jocl.blas.clblasTranspose} for A
+     * @param M The number of rows of A
+     * @param N The number of columns of A
+     * @param alpha The factor for the product
+     * @param A The matrix A
+     * @param offA The offset of A, in elements
+     * @param lda The leading dimension of A
+     * @param x The vector x
+     * @param offx The offset of x, in elements
+     * @param incx The increment of x
+     * @param beta The factor for y
+     * @param y The vector y
+     * @param offy The offset of y, in elements
+     * @param incy The increment of y
+     * @return The future for the status
+     * @throws IllegalStateException If the executor was closed
+     */
+    public Future<Integer> sgemv(int order, int transA, long M, long N, 
+        float alpha, cl_mem A, long offA, long lda, 
+        cl_mem x, long offx, int incx, float beta, 
+        cl_mem y, long offy, int incy)
+    {
+        synchronized (queue)
+        {
+            if (closed)
+            {
+                throw new IllegalStateException("The executor was closed");
+            }
+            long nowNs = System.nanoTime();
+            window.onArrival(nowNs);
+            Request request = new Request(order, transA, M, N, alpha, 
+                A, offA, lda, x, offx, incx, beta, y, offy, incy, nowNs);
+            requestCount.incrementAndGet();
+            queue.add(request);
+            return request.result;
+        }
+    }
+    
+    /**
+     * Close this executor. The calls that have already been submitted
+     * will still be executed. 
+     */
+    public void close()
+    {
+        synchronized (queue)
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+            queue.add(END);
+        }
+    }
+    
+    /**
+     * Wait until the worker thread of this executor has terminated, 
+     * after the executor was {@link #close() closed}
+     * 
+     * @param timeout The timeout
+     * @param unit The unit of the timeout
+     * @return Whether the worker terminated before the timeout elapsed
+     * @throws InterruptedException If the thread is interrupted
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) 
+        throws InterruptedException
+    {
+        return terminated.await(timeout, unit);
+    }
+    
+    /**
+     * Returns the current window, in the given unit
+     * 
+     * @param unit The unit
+     * @return The current window
+     */
+    public long getWindow(TimeUnit unit)
+    {
+        return unit.convert(window.getWindowNs(), TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Returns the number of calls that have been submitted
+     * 
+     * @return The number of calls
+     */
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+    
+    /**
+     * Returns the number of matrix-matrix products that have been 
+     * enqueued for merged calls
+     * 
+     * @return The number of GEMM calls
+     */
+    public long getGemmCount()
+    {
+        return gemmCount.get();
+    }
+    
+    /**
+     * Returns the number of calls that could not be merged and have 
+     * been enqueued as a matrix-vector product
+     * 
+     * @return The number of GEMV calls
+     */
+    public long getGemvCount()
+    {
+        return gemvCount.get();
+    }
+    
+    /**
+     * The main loop of the worker thread
+     */
+    private void processRequests()
+    {
+        try
+        {
+            boolean end = false;
+            while (!end)
+            {
+                List<Request> pending = new ArrayList<Request>();
+                end = collectRequests(pending);
+                if (!pending.isEmpty())
+                {
+                    execute(pending);
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            releaseBuffers();
+            failRemaining();
+            terminated.countDown();
+        }
+    }
+    
+    /**
+     * Collect the requests for one window into the given list
+     * 
+     * @param pending The list of pending requests
+     * @return Whether the end of the stream was reached
+     * @throws InterruptedException If the thread is interrupted
+     */
+    private boolean collectRequests(List<Request> pending) 
+        throws InterruptedException
+    {
+        Request first = carry;
+        carry = null;
+        if (first == null)
+        {
+            first = queue.take();
+        }
+        if (first == END)
+        {
+            return true;
+        }
+        pending.add(first);
+        long deadlineNs = first.submitTimeNs + window.getWindowNs();
+        while (pending.size() < maximumBatchSize)
+        {
+            long remainingNs = deadlineNs - System.nanoTime();
+            Request request = remainingNs > 0 ? 
+                queue.poll(remainingNs, TimeUnit.NANOSECONDS) : queue.poll();
+            if (request == null)
+            {
+                break;
+            }
+            if (request == END)
+            {
+                return true;
+            }
+            if (conflicts(request, pending))
+            {
+                carry = request;
+                break;
+            }
+            pending.add(request);
+        }
+        return false;
+    }
+    
+    /**
+     * Returns whether the given request depends on one of the pending 
+     * requests, or one of the pending requests depends on it
+     * 
+     * @param request The request
+     * @param pending The pending requests
+     * @return Whether there is a dependency
+     */
+    private static boolean conflicts(Request request, List<Request> pending)
+    {
+        for (Request p : pending)
+        {
+            if (p.y.equals(request.x) || p.y.equals(request.A) || 
+                p.y.equals(request.y) || p.x.equals(request.y) || 
+                p.A.equals(request.y))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Enqueue the operations for the given requests, wait until they
+     * are finished, and complete their results
+     * 
+     * @param pending The requests
+     */
+    private void execute(List<Request> pending)
+    {
+        Map<Key, List<Request>> groups = 
+            new LinkedHashMap<Key, List<Request>>();
+        for (Request request : pending)
+        {
+            Key key = new Key(request);
+            List<Request> group = groups.get(key);
+            if (group == null)
+            {
+                group = new ArrayList<Request>();
+                groups.put(key, group);
+            }
+            group.add(request);
+        }
+        
+        List<Request> enqueued = new ArrayList<Request>();
+        for (List<Request> group : groups.values())
+        {
+            try
+            {
+                int status = group.size() == 1 ? 
+                    enqueueSgemv(group.get(0)) : enqueueMerged(group);
+                if (status != clblasSuccess)
+                {
+                    complete(group, status);
+                }
+                else
+                {
+                    enqueued.addAll(group);
+                }
+            }
+            catch (RuntimeException e)
+            {
+                fail(group, e);
+            }
+        }
+        if (enqueued.isEmpty())
+        {
+            return;
+        }
+        try
+        {
+            complete(enqueued, operations.finish());
+        }
+        catch (RuntimeException e)
+        {
+            fail(enqueued, e);
+        }
+    }
+    
+    /**
+     * Enqueue the given request as a single GEMV
+     * 
+     * @param r The request
+     * @return The status
+     */
+    private int enqueueSgemv(Request r)
+    {
+        gemvCount.incrementAndGet();
+        return operations.sgemv(r.order, r.transA, r.M, r.N, r.alpha, 
+            r.A, r.offA, r.lda, r.x, r.offx, r.incx, r.beta, 
+            r.y, r.offy, r.incy);
+    }
+    
+    /**
+     * Enqueue the given requests, which all have the same {@link Key},
+     * as a single GEMM, together with the operations for gathering the
+     * vectors x and scattering the results into the vectors y
+     * 
+     * @param group The requests
+     * @return The status
+     */
+    private int enqueueMerged(List<Request> group)
+    {
+        Request first = group.get(0);
+        long inputSize = first.getInputSize();
+        long outputSize = first.getOutputSize();
+        int batchSize = group.size();
+        ensureBuffers(inputSize * batchSize, outputSize * batchSize);
+        
+        for (int i = 0; i < batchSize; i++)
+        {
+            Request r = group.get(i);
+            int status = operations.scopy(inputSize, r.x, r.offx, r.incx, 
+                inputBuffer, i * inputSize, 1);
+            if (status != clblasSuccess)
+            {
+                return status;
+            }
+        }
+        
+        // The product is computed in column-major order, so a row-major
+        // matrix is treated as the transposed column-major matrix
+        int trans = HostSgemvBatchBackend.columnMajorTrans(
+            first.order, first.transA);
+        gemmCount.incrementAndGet();
+        int status = operations.sgemm(clblasColumnMajor, trans, 
+            clblasNoTrans, outputSize, batchSize, inputSize, 1.0f, 
+            first.A, first.offA, first.lda, inputBuffer, 0, inputSize, 
+            0.0f, outputBuffer, 0, outputSize);
+        if (status != clblasSuccess)
+        {
+            return status;
+        }
+        
+        for (int i = 0; i < batchSize; i++)
+        {
+            Request r = group.get(i);
+            status = scatter(r, i * outputSize, outputSize);
+            if (status != clblasSuccess)
+            {
+                return status;
+            }
+        }
+        return clblasSuccess;
+    }
+    
+    /**
+     * Enqueue the operations that compute y = alpha * p + beta * y for 
+     * the given request, where p is the product in the output buffer 
+     * at the given offset
+     * 
+     * @param r The request
+     * @param offset The offset of the product in the output buffer
+     * @param n The length of the product
+     * @return The status
+     */
+    private int scatter(Request r, long offset, long n)
+    {
+        int status;
+        if (r.beta == 0.0f)
+        {
+            // As in BLAS, y is not read when beta is 0
+            status = operations.scopy(n, outputBuffer, offset, 1, 
+                r.y, r.offy, r.incy);
+            if (status != clblasSuccess || r.alpha == 1.0f)
+            {
+                return status;
+            }
+            return operations.sscal(n, r.alpha, r.y, r.offy, r.incy);
+        }
+        if (r.beta != 1.0f)
+        {
+            status = operations.sscal(n, r.beta, r.y, r.offy, r.incy);
+            if (status != clblasSuccess)
+            {
+                return status;
+            }
+        }
+        return operations.saxpy(n, r.alpha, outputBuffer, offset, 1, 
+            r.y, r.offy, r.incy);
+    }
+    
+    /**
+     * Make sure that the scratch buffers have at least the given sizes
+     * 
+     * @param inputSize The size of the input buffer, in elements
+     * @param outputSize The size of the output buffer, in elements
+     * @throws CLException If a buffer can not be created
+     */
+    private void ensureBuffers(long inputSize, long outputSize)
+    {
+        if (inputBufferSize < inputSize)
+        {
+            if (inputBuffer != null)
+            {
+                operations.releaseBuffer(inputBuffer);
+                inputBuffer = null;
+                inputBufferSize = 0;
+            }
+            inputBuffer = operations.createBuffer(inputSize);
+            inputBufferSize = inputSize;
+        }
+        if (outputBufferSize < outputSize)
+        {
+            if (outputBuffer != null)
+            {
+                operations.releaseBuffer(outputBuffer);
+                outputBuffer = null;
+                outputBufferSize = 0;
+            }
+            outputBuffer = operations.createBuffer(outputSize);
+            outputBufferSize = outputSize;
+        }
+    }
+    
+    /**
+     * Release the scratch buffers
+     */
+    private void releaseBuffers()
+    {
+        if (inputBuffer != null)
+        {
+            operations.releaseBuffer(inputBuffer);
+            inputBuffer = null;
+        }
+        if (outputBuffer != null)
+        {
+            operations.releaseBuffer(outputBuffer);
+            outputBuffer = null;
+        }
+    }
+    
+    /**
+     * Fail all requests that are still queued when the worker terminates
+     * before the end of the stream was reached
+     */
+    private void failRemaining()
+    {
+        List<Request> remaining = new ArrayList<Request>();
+        if (carry != null)
+        {
+            remaining.add(carry);
+            carry = null;
+        }
+        queue.drainTo(remaining);
+        remaining.remove(END);
+        fail(remaining, new IllegalStateException(
+            "The executor terminated before the call was executed"));
+    }
+    
+    /**
+     * Complete the results of all given requests with the given status
+     * 
+     * @param requests The requests
+     * @param status The status
+     */
+    private static void complete(List<Request> requests, int status)
+    {
+        for (Request request : requests)
+        {
+            request.result.complete(status);
+        }
+    }
+    
+    /**
+     * Fail the results of all given requests with the given exception
+     * 
+     * @param requests The requests
+     * @param cause The cause
+     */
+    private static void fail(List<Request> requests, Throwable cause)
+    {
+        for (Request request : requests)
+        {
+            request.result.fail(cause);
+        }
+    }
+}
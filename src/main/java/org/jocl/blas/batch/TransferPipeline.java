@@ -0,0 +1,581 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.batch;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.Pointer;
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.clblasStatus;
+import org.jocl.blas.memory.HostMatrix;
+
+/**
+ * A pipeline that overlaps the transfers and the computations for a
+ * stream of host-resident batches. <br>
+ * <br>
+ * Each batch that is {@link #submit(HostMatrix, HostMatrix) submitted}
+ * passes through three stages: The input matrix is uploaded with
+ * {@link HostMatrix#enqueueWrite} into the upload queue, the
+ * {@link BatchComputation} is enqueued into the compute queue, and the
+ * output matrix is downloaded with {@link HostMatrix#enqueueRead} into
+ * the download queue. The stages of one batch are connected with
+ * events, but the stages of different batches are not, so that batch
+ * <i>i+1</i> may be uploaded while batch <i>i</i> is computed and
+ * batch <i>i-1</i> is downloaded. <br>
+ * <br>
+ * The pipeline has a fixed number of slots, each with its own device
+ * buffers for the input and the output. The depth is the maximum number
+ * of batches in flight. When all slots are occupied, the submission
+ * waits until the oldest batch has been downloaded, and passes it to
+ * the {@link TransferPipelineListener}. The device buffers of a slot
+ * are allocated when it is used for the first time, and re-allocated
+ * when a larger batch is submitted. <br>
+ * <br>
+ * For {@link #getStatistics() statistics} about the occupancy of the
+ * stages, the command queues have to be created with
+ * <code>CL_QUEUE_PROFILING_ENABLE</code>. The queues are not owned by
+ * this class, and will not be released by it. To make use of the
+ * overlap, they should be different queues of the same device. <br>
+ * <br>
+ * Instances of this class are not thread-safe, and have to be
+ * {@link #release() released} when they are no longer used.
+ */
+public final class TransferPipeline
+{
+    /**
+     * One slot of the pipeline
+     */
+    private static class Slot
+    {
+        /**
+         * The device buffer for the input
+         */
+        cl_mem input;
+
+        /**
+         * The size of the input buffer, in bytes
+         */
+        long inputCapacity;
+
+        /**
+         * The device buffer for the output
+         */
+        cl_mem output;
+
+        /**
+         * The size of the output buffer, in bytes
+         */
+        long outputCapacity;
+
+        /**
+         * The index of the batch that occupies this slot
+         */
+        long batchIndex;
+
+        /**
+         * The input matrix of the batch
+         */
+        HostMatrix hostInput;
+
+        /**
+         * The output matrix of the batch
+         */
+        HostMatrix hostOutput;
+
+        /**
+         * The event of the upload, or <code>null</code>
+         */
+        cl_event upload;
+
+        /**
+         * The event of the computation, or <code>null</code>
+         */
+        cl_event compute;
+
+        /**
+         * The event of the download, or <code>null</code> if the slot
+         * is not occupied
+         */
+        cl_event download;
+    }
+
+    /**
+     * The context
+     */
+    private final cl_context context;
+
+    /**
+     * The command queue for the uploads
+     */
+    private final cl_command_queue uploadQueue;
+
+    /**
+     * The command queue for the computations
+     */
+    private final cl_command_queue computeQueue;
+
+    /**
+     * The command queue for the downloads
+     */
+    private final cl_command_queue downloadQueue;
+
+    /**
+     * The computation
+     */
+    private final BatchComputation computation;
+
+    /**
+     * The listener, or <code>null</code>
+     */
+    private final TransferPipelineListener listener;
+
+    /**
+     * The slots
+     */
+    private final Slot slots[];
+
+    /**
+     * The number of batches that have been submitted
+     */
+    private long submittedBatches;
+
+    /**
+     * The number of batches that have been completed
+     */
+    private long completedBatches;
+
+    /**
+     * The time of the first submission, from System.nanoTime()
+     */
+    private long firstSubmitNanos;
+
+    /**
+     * The time of the last completion, from System.nanoTime()
+     */
+    private long lastCompleteNanos;
+
+    /**
+     * The number of batches with profiling information
+     */
+    private long profiledBatches;
+
+    /**
+     * The earliest profiled upload start time
+     */
+    private long firstStartNanos = Long.MAX_VALUE;
+
+    /**
+     * The latest profiled download end time
+     */
+    private long lastEndNanos = Long.MIN_VALUE;
+
+    /**
+     * The busy times of the upload, compute and download stages
+     */
+    private final long busyNanos[] = new long[3];
+
+    /**
+     * Whether this pipeline was released
+     */
+    private boolean released;
+
+    /**
+     * Creates a new pipeline
+     *
+     * @param context The context
+     * @param uploadQueue The command queue for the uploads
+     * @param computeQueue The command queue for the computations
+     * @param downloadQueue The command queue for the downloads
+     * @param depth The maximum number of batches in flight
+     * @param computation The computation
+     * @param listener The listener. May be <code>null</code>.
+     * @throws IllegalArgumentException If the depth is not positive
+     */
+    public TransferPipeline(cl_context context,
+        cl_command_queue uploadQueue, cl_command_queue computeQueue,
+        cl_command_queue downloadQueue, int depth,
+        BatchComputation computation, TransferPipelineListener listener)
+    {
+        if (depth <= 0)
+        {
+            throw new IllegalArgumentException(
+                "The depth must be positive, but is " + depth);
+        }
+        this.context = context;
+        this.uploadQueue = uploadQueue;
+        this.computeQueue = computeQueue;
+        this.downloadQueue = downloadQueue;
+        this.computation = computation;
+        this.listener = listener;
+        this.slots = new Slot[depth];
+        for (int i = 0; i < depth; i++)
+        {
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * Returns the maximum number of batches in flight
+     *
+     * @return The depth
+     */
+    public int getDepth()
+    {
+        return slots.length;
+    }
+
+    /**
+     * Returns the number of batches that have been submitted but not
+     * yet completed
+     *
+     * @return The number of batches in flight
+     */
+    public long getInFlight()
+    {
+        return submittedBatches - completedBatches;
+    }
+
+    /**
+     * Submit the given batch. If the maximum number of batches is in
+     * flight, this waits until the oldest batch has been completed.
+     * The given matrices must not be accessed or freed until the batch
+     * has been passed to the listener, or {@link #finish()} returned.
+     *
+     * @param input The input matrix
+     * @param output The output matrix
+     * @return The index of the batch
+     * @throws IllegalStateException If the pipeline was released
+     * @throws CLException If an OpenCL error occurs
+     */
+    public long submit(HostMatrix input, HostMatrix output)
+    {
+        if (released)
+        {
+            throw new IllegalStateException("The pipeline was released");
+        }
+        if (submittedBatches == 0)
+        {
+            firstSubmitNanos = System.nanoTime();
+        }
+        long batchIndex = submittedBatches;
+        Slot slot = slots[(int) (batchIndex % slots.length)];
+        if (slot.download != null)
+        {
+            complete(slot);
+        }
+        ensureCapacity(slot,
+            input.getSizeInBytes(), output.getSizeInBytes());
+
+        cl_event upload = null;
+        cl_event compute = null;
+        cl_event download = null;
+        boolean success = false;
+        try
+        {
+            cl_event event = new cl_event();
+            check(input.enqueueWrite(uploadQueue, slot.input, 0,
+                input.getLd(), 0, null, new cl_event[] { event }),
+                "clblasWriteMatrixAsync");
+            upload = event;
+            CL.clFlush(uploadQueue);
+
+            event = new cl_event();
+            check(computation.enqueue(computeQueue,
+                slot.input, input.getLd(), slot.output, output.getLd(),
+                1, new cl_event[] { upload }, new cl_event[] { event }),
+                "BatchComputation");
+            compute = event;
+            CL.clFlush(computeQueue);
+
+            event = new cl_event();
+            check(output.enqueueRead(downloadQueue, slot.output, 0,
+                output.getLd(), 1, new cl_event[] { compute },
+                new cl_event[] { event }), "clblasReadMatrixAsync");
+            download = event;
+            CL.clFlush(downloadQueue);
+            success = true;
+        }
+        finally
+        {
+            if (!success)
+            {
+                // Wait for the stages that have been enqueued, because
+                // they still refer to the buffers of the slot
+                releaseAfterCompletion(upload);
+                releaseAfterCompletion(compute);
+            }
+        }
+        slot.batchIndex = batchIndex;
+        slot.hostInput = input;
+        slot.hostOutput = output;
+        slot.upload = upload;
+        slot.compute = compute;
+        slot.download = download;
+        submittedBatches++;
+        return batchIndex;
+    }
+
+    /**
+     * Wait until all batches that have been submitted are completed,
+     * and pass them to the listener
+     *
+     * @throws CLException If an OpenCL error occurs
+     */
+    public void finish()
+    {
+        for (long i = completedBatches; i < submittedBatches; i++)
+        {
+            Slot slot = slots[(int) (i % slots.length)];
+            if (slot.download != null)
+            {
+                complete(slot);
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the statistics of this pipeline
+     *
+     * @return The statistics
+     */
+    public PipelineStatistics getStatistics()
+    {
+        long elapsed = completedBatches == 0 ? 0 :
+            lastCompleteNanos - firstSubmitNanos;
+        long span = profiledBatches == 0 ? 0 :
+            lastEndNanos - firstStartNanos;
+        return new PipelineStatistics(completedBatches, elapsed,
+            profiledBatches, span, busyNanos[0], busyNanos[1], busyNanos[2]);
+    }
+
+    /**
+     * Wait until all batches that have been submitted are completed,
+     * and release the device buffers of this pipeline
+     *
+     * @throws CLException If an OpenCL error occurs
+     */
+    public void release()
+    {
+        if (released)
+        {
+            return;
+        }
+        try
+        {
+            finish();
+        }
+        finally
+        {
+            released = true;
+            for (Slot slot : slots)
+            {
+                releaseBuffers(slot);
+            }
+        }
+    }
+
+    /**
+     * Wait for the completion of the batch in the given slot, record
+     * its statistics, release its events, and pass it to the listener
+     *
+     * @param slot The slot
+     * @throws CLException If an OpenCL error occurs
+     */
+    private void complete(Slot slot)
+    {
+        try
+        {
+            check(CL.clWaitForEvents(1, new cl_event[] { slot.download }),
+                "clWaitForEvents");
+            lastCompleteNanos = System.nanoTime();
+            recordProfiling(slot);
+        }
+        finally
+        {
+            CL.clReleaseEvent(slot.upload);
+            CL.clReleaseEvent(slot.compute);
+            CL.clReleaseEvent(slot.download);
+            slot.upload = null;
+            slot.compute = null;
+            slot.download = null;
+        }
+        HostMatrix input = slot.hostInput;
+        HostMatrix output = slot.hostOutput;
+        slot.hostInput = null;
+        slot.hostOutput = null;
+        completedBatches++;
+        if (listener != null)
+        {
+            listener.batchCompleted(slot.batchIndex, input, output);
+        }
+    }
+
+    /**
+     * Record the profiling information of the events of the given slot,
+     * if it is available
+     *
+     * @param slot The slot
+     */
+    private void recordProfiling(Slot slot)
+    {
+        long times[] = new long[6];
+        cl_event events[] = { slot.upload, slot.compute, slot.download };
+        for (int i = 0; i < events.length; i++)
+        {
+            int startResult = CL.clGetEventProfilingInfo(events[i],
+                CL.CL_PROFILING_COMMAND_START, Sizeof.cl_ulong,
+                Pointer.to(times).withByteOffset(
+                    (i * 2) * Sizeof.cl_ulong), null);
+            int endResult = CL.clGetEventProfilingInfo(events[i],
+                CL.CL_PROFILING_COMMAND_END, Sizeof.cl_ulong,
+                Pointer.to(times).withByteOffset(
+                    (i * 2 + 1) * Sizeof.cl_ulong), null);
+            if (startResult != CL.CL_SUCCESS || endResult != CL.CL_SUCCESS)
+            {
+                return;
+            }
+        }
+        for (int i = 0; i < events.length; i++)
+        {
+            busyNanos[i] += times[i * 2 + 1] - times[i * 2];
+        }
+        firstStartNanos = Math.min(firstStartNanos, times[0]);
+        lastEndNanos = Math.max(lastEndNanos, times[5]);
+        profiledBatches++;
+    }
+
+    /**
+     * Make sure that the buffers of the given slot have at least the
+     * given sizes
+     *
+     * @param slot The slot
+     * @param inputSize The input size, in bytes
+     * @param outputSize The output size, in bytes
+     * @throws CLException If a buffer can not be created
+     */
+    private void ensureCapacity(Slot slot, long inputSize, long outputSize)
+    {
+        if (slot.inputCapacity < inputSize)
+        {
+            if (slot.input != null)
+            {
+                CL.clReleaseMemObject(slot.input);
+                slot.input = null;
+                slot.inputCapacity = 0;
+            }
+            slot.input = createBuffer(CL.CL_MEM_READ_ONLY, inputSize);
+            slot.inputCapacity = inputSize;
+        }
+        if (slot.outputCapacity < outputSize)
+        {
+            if (slot.output != null)
+            {
+                CL.clReleaseMemObject(slot.output);
+                slot.output = null;
+                slot.outputCapacity = 0;
+            }
+            slot.output = createBuffer(CL.CL_MEM_READ_WRITE, outputSize);
+            slot.outputCapacity = outputSize;
+        }
+    }
+
+    /**
+     * Release the buffers of the given slot
+     *
+     * @param slot The slot
+     */
+    private static void releaseBuffers(Slot slot)
+    {
+        if (slot.input != null)
+        {
+            CL.clReleaseMemObject(slot.input);
+            slot.input = null;
+            slot.inputCapacity = 0;
+        }
+        if (slot.output != null)
+        {
+            CL.clReleaseMemObject(slot.output);
+            slot.output = null;
+            slot.outputCapacity = 0;
+        }
+    }
+
+    /**
+     * Wait for the given event and release it
+     *
+     * @param event The event, or <code>null</code>
+     */
+    private static void releaseAfterCompletion(cl_event event)
+    {
+        if (event != null)
+        {
+            CL.clWaitForEvents(1, new cl_event[] { event });
+            CL.clReleaseEvent(event);
+        }
+    }
+
+    /**
+     * Creates a buffer with the given flags and size
+     *
+     * @param flags The memory flags
+     * @param size The size, in bytes
+     * @return The buffer
+     * @throws CLException If the buffer can not be created
+     */
+    private cl_mem createBuffer(long flags, long size)
+    {
+        int errcode[] = { 0 };
+        cl_mem buffer = CL.clCreateBuffer(context, flags,
+            Math.max(size, Sizeof.cl_float), null, errcode);
+        if (errcode[0] != CL.CL_SUCCESS)
+        {
+            throw new CLException("clCreateBuffer failed: " +
+                CL.stringFor_errorCode(errcode[0]), errcode[0]);
+        }
+        return buffer;
+    }
+
+    /**
+     * Throws a CLException if the given result is not CL_SUCCESS
+     *
+     * @param result The result
+     * @param name The name of the function that returned the result
+     * @throws CLException If the result is not CL_SUCCESS
+     */
+    private static void check(int result, String name)
+    {
+        if (result != CL.CL_SUCCESS)
+        {
+            throw new CLException(name + " failed: " +
+                clblasStatus.stringFor(result), result);
+        }
+    }
+}
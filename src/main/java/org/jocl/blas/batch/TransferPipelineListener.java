@@ -0,0 +1,50 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.batch;
+
+import org.jocl.blas.memory.HostMatrix;
+
+/**
+ * Interface for a listener that is informed about the batches that 
+ * have been completed by a {@link TransferPipeline}. The methods are 
+ * called from the thread that submits the batches or finishes the
+ * pipeline.
+ */
+public interface TransferPipelineListener
+{
+    /**
+     * Will be called when the output of a batch has been transferred
+     * back to the host. The input and output matrices are no longer
+     * used by the pipeline afterwards, and may be reused or freed.
+     * 
+     * @param batchIndex The index of the batch, in the order of the
+     * submission
+     * @param input The input matrix
+     * @param output The output matrix
+     */
+    void batchCompleted(long batchIndex, HostMatrix input, HostMatrix output);
+}
@@ -0,0 +1,278 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.expression;
+
+import org.jocl.Sizeof;
+
+/**
+ * The order of evaluation of a chain of float matrix products that has
+ * the smallest estimated time according to a {@link MatrixCostModel}.
+ * <br>
+ * <br>
+ * The chain consists of <code>n</code> matrices, where matrix
+ * <code>i</code> has <code>dimensions[i]</code> rows and
+ * <code>dimensions[i+1]</code> columns. The order is computed with the
+ * classical dynamic programming algorithm, in O(n<sup>3</sup>).
+ */
+final class ChainOrder
+{
+    /**
+     * The dimensions
+     */
+    private final long dimensions[];
+
+    /**
+     * The cost model
+     */
+    private final MatrixCostModel costModel;
+
+    /**
+     * The cost of the best order for each sub-chain [i,j]
+     */
+    private final double costs[][];
+
+    /**
+     * The index of the last matrix of the left part of the best order
+     * for each sub-chain [i,j]
+     */
+    private final int splits[][];
+
+    /**
+     * Compute the order for the chain with the given dimensions that
+     * requires the smallest number of floating point operations
+     *
+     * @param dimensions The dimensions
+     * @throws IllegalArgumentException If there are less than two
+     * dimensions
+     */
+    ChainOrder(long dimensions[])
+    {
+        this(dimensions, MatrixCostModel.FLOPS_ONLY);
+    }
+
+    /**
+     * Compute the best order for the chain with the given dimensions,
+     * according to the given cost model
+     *
+     * @param dimensions The dimensions
+     * @param costModel The cost model
+     * @throws IllegalArgumentException If there are less than two
+     * dimensions
+     */
+    ChainOrder(long dimensions[], MatrixCostModel costModel)
+    {
+        if (dimensions.length < 2)
+        {
+            throw new IllegalArgumentException(
+                "Expected at least 2 dimensions, but found " +
+                dimensions.length);
+        }
+        this.dimensions = dimensions.clone();
+        this.costModel = costModel;
+        int n = dimensions.length - 1;
+        this.costs = new double[n][n];
+        this.splits = new int[n][n];
+        for (int length = 2; length <= n; length++)
+        {
+            for (int i = 0; i + length - 1 < n; i++)
+            {
+                int j = i + length - 1;
+                costs[i][j] = Double.POSITIVE_INFINITY;
+                for (int s = i; s < j; s++)
+                {
+                    double cost = costs[i][s] + costs[s + 1][j] +
+                        productCost(dimensions[i], dimensions[s + 1],
+                            dimensions[j + 1]);
+                    if (cost < costs[i][j])
+                    {
+                        costs[i][j] = cost;
+                        splits[i][j] = s;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of matrices in the chain
+     *
+     * @return The number of matrices
+     */
+    int size()
+    {
+        return dimensions.length - 1;
+    }
+
+    /**
+     * Returns the estimated time of the best order for the whole chain
+     *
+     * @return The estimated time
+     */
+    double getCost()
+    {
+        return costs[0][size() - 1];
+    }
+
+    /**
+     * Returns the number of floating point operations of the best order
+     * for the sub-chain from matrix i to matrix j, inclusive
+     *
+     * @param i The index of the first matrix
+     * @param j The index of the last matrix
+     * @return The number of operations
+     */
+    double getFlops(int i, int j)
+    {
+        if (i == j)
+        {
+            return 0;
+        }
+        int s = splits[i][j];
+        return getFlops(i, s) + getFlops(s + 1, j) + productFlops(
+            dimensions[i], dimensions[s + 1], dimensions[j + 1]);
+    }
+
+    /**
+     * Returns the index of the last matrix of the left part of the best
+     * order for the sub-chain from matrix i to matrix j, inclusive
+     *
+     * @param i The index of the first matrix
+     * @param j The index of the last matrix
+     * @return The split index
+     */
+    int getSplit(int i, int j)
+    {
+        return splits[i][j];
+    }
+
+    /**
+     * Returns the estimated time of the given sub-chain when it is
+     * evaluated from left to right
+     *
+     * @param i The index of the first matrix
+     * @param j The index of the last matrix
+     * @return The estimated time
+     */
+    double getLeftToRightCost(int i, int j)
+    {
+        double cost = 0;
+        for (int s = i + 1; s <= j; s++)
+        {
+            cost += productCost(dimensions[i], dimensions[s],
+                dimensions[s + 1]);
+        }
+        return cost;
+    }
+
+    /**
+     * Returns the number of floating point operations of the given
+     * sub-chain when it is evaluated from left to right
+     *
+     * @param i The index of the first matrix
+     * @param j The index of the last matrix
+     * @return The number of operations
+     */
+    double getLeftToRightFlops(int i, int j)
+    {
+        double flops = 0;
+        for (int s = i + 1; s <= j; s++)
+        {
+            flops += productFlops(dimensions[i], dimensions[s],
+                dimensions[s + 1]);
+        }
+        return flops;
+    }
+
+    /**
+     * Returns a string representation of the best order for the
+     * sub-chain from matrix i to matrix j, inclusive, where matrix k is
+     * denoted as <code>Mk</code>
+     *
+     * @param i The index of the first matrix
+     * @param j The index of the last matrix
+     * @return The string
+     */
+    String toString(int i, int j)
+    {
+        if (i == j)
+        {
+            return "M" + i;
+        }
+        int s = splits[i][j];
+        return "(" + toString(i, s) + " * " + toString(s + 1, j) + ")";
+    }
+
+    /**
+     * Returns the number of floating point operations of the product
+     * of a MxK matrix and a KxN matrix
+     *
+     * @param M The number of rows of the first matrix
+     * @param K The number of columns of the first matrix
+     * @param N The number of columns of the second matrix
+     * @return The number of operations
+     */
+    static double productFlops(long M, long K, long N)
+    {
+        return 2.0 * M * K * N;
+    }
+
+    /**
+     * Returns the number of bytes that are read and written by the
+     * product of a MxK float matrix and a KxN float matrix
+     *
+     * @param M The number of rows of the first matrix
+     * @param K The number of columns of the first matrix
+     * @param N The number of columns of the second matrix
+     * @return The number of bytes
+     */
+    static double productBytes(long M, long K, long N)
+    {
+        return ((double)M * K + (double)K * N + (double)M * N) *
+            Sizeof.cl_float;
+    }
+
+    /**
+     * Returns the estimated time of the product of a MxK matrix and a
+     * KxN matrix
+     *
+     * @param M The number of rows of the first matrix
+     * @param K The number of columns of the first matrix
+     * @param N The number of columns of the second matrix
+     * @return The estimated time
+     */
+    private double productCost(long M, long K, long N)
+    {
+        return costModel.estimateSeconds(
+            productFlops(M, K, N), productBytes(M, K, N));
+    }
+
+    @Override
+    public String toString()
+    {
+        return toString(0, size() - 1);
+    }
+}
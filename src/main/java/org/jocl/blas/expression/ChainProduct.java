@@ -0,0 +1,199 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.expression;
+
+import org.jocl.blas.memory.DeviceMatrix;
+
+/**
+ * The result of a {@link MatrixChainMultiplier#chainMultiply} call. It
+ * contains the matrix with the product, the order in which the product
+ * was evaluated, and the estimated and the actual costs of the
+ * evaluation. <br>
+ * <br>
+ * Instances of this class are immutable.
+ */
+public final class ChainProduct
+{
+    /**
+     * The result matrix
+     */
+    private final DeviceMatrix result;
+
+    /**
+     * The parenthesization
+     */
+    private final String parenthesization;
+
+    /**
+     * The plan that was executed
+     */
+    private final MatrixPlan plan;
+
+    /**
+     * The actual time, in seconds
+     */
+    private final double actualSeconds;
+
+    /**
+     * Creates a new chain product
+     *
+     * @param result The result matrix
+     * @param parenthesization The parenthesization
+     * @param plan The plan that was executed
+     * @param actualSeconds The actual time, in seconds
+     */
+    ChainProduct(DeviceMatrix result, String parenthesization,
+        MatrixPlan plan, double actualSeconds)
+    {
+        this.result = result;
+        this.parenthesization = parenthesization;
+        this.plan = plan;
+        this.actualSeconds = actualSeconds;
+    }
+
+    /**
+     * Returns the matrix that contains the product. The matrix was
+     * obtained from the {@link org.jocl.blas.memory.DeviceMatrixPool}
+     * of the multiplier, and should be returned to this pool when it is
+     * no longer needed.
+     *
+     * @return The result matrix
+     */
+    public DeviceMatrix getResult()
+    {
+        return result;
+    }
+
+    /**
+     * Returns a string representation of the order in which the product
+     * was evaluated, for example <code>((M0 * M1) * M2)</code>, where
+     * <code>Mk</code> is the matrix with index k
+     *
+     * @return The parenthesization
+     */
+    public String getParenthesization()
+    {
+        return parenthesization;
+    }
+
+    /**
+     * Returns the number of floating point operations of the evaluation
+     *
+     * @return The number of operations
+     */
+    public double getFlops()
+    {
+        return plan.getFlops();
+    }
+
+    /**
+     * Returns the number of floating point operations that the
+     * evaluation from left to right would have required
+     *
+     * @return The number of operations
+     */
+    public double getLeftToRightFlops()
+    {
+        return plan.getLeftToRightFlops();
+    }
+
+    /**
+     * Returns the number of bytes that are read and written in device
+     * memory by the evaluation
+     *
+     * @return The number of bytes
+     */
+    public double getBytes()
+    {
+        return plan.getBytes();
+    }
+
+    /**
+     * Returns the number of SGEMM and SGEMV calls of the evaluation
+     *
+     * @return The number of calls
+     */
+    public int getCallCount()
+    {
+        return plan.getCallCount();
+    }
+
+    /**
+     * Returns the time that the evaluation was estimated to take by the
+     * {@link MatrixCostModel} of the multiplier
+     *
+     * @return The estimated time, in seconds
+     */
+    public double getEstimatedSeconds()
+    {
+        return plan.getEstimatedSeconds();
+    }
+
+    /**
+     * Returns the time that the evaluation from left to right is
+     * estimated to take by the {@link MatrixCostModel} of the multiplier
+     *
+     * @return The estimated time, in seconds
+     */
+    public double getLeftToRightEstimatedSeconds()
+    {
+        return plan.getLeftToRightEstimatedSeconds();
+    }
+
+    /**
+     * Returns the time that the evaluation actually took, from enqueuing
+     * the first call until the completion of the last call
+     *
+     * @return The actual time, in seconds
+     */
+    public double getActualSeconds()
+    {
+        return actualSeconds;
+    }
+
+    /**
+     * Returns the floating point operations per second that have been
+     * achieved by the evaluation
+     *
+     * @return The floating point operations per second
+     */
+    public double getActualFlopsPerSecond()
+    {
+        return getFlops() / actualSeconds;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ChainProduct[" + parenthesization +
+            ", flops=" + getFlops() +
+            ", leftToRightFlops=" + getLeftToRightFlops() +
+            ", bytes=" + getBytes() +
+            ", estimatedSeconds=" + getEstimatedSeconds() +
+            ", actualSeconds=" + actualSeconds + "]";
+    }
+}
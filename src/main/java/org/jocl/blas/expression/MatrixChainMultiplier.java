@@ -0,0 +1,224 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.expression;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.blas.CLBLASBackend;
+import org.jocl.blas.CLBLASBackends;
+import org.jocl.blas.kernel.KernelCache;
+import org.jocl.blas.memory.DeviceMatrix;
+import org.jocl.blas.memory.DeviceMatrixPool;
+
+/**
+ * A utility for computing the product of a chain of float matrices in
+ * the order that has the smallest estimated cost. <br>
+ * <br>
+ * The order is computed according to a {@link MatrixCostModel}, which
+ * takes into account the floating point operations as well as the
+ * traffic between the device memory and the compute units that is
+ * caused by the operands and the intermediate results of the products.
+ * The products are computed with SGEMM (or SGEMV, for vectors), and the
+ * intermediate results and the result are obtained from a
+ * {@link DeviceMatrixPool}, so that repeated products of chains with
+ * the same shapes do not create new memory objects. <br>
+ * <br>
+ * The {@link ChainProduct} that is returned by
+ * {@link #chainMultiply(DeviceMatrix...)} reports the estimated and the
+ * actual costs, which may be used for calibrating the cost model. <br>
+ * <br>
+ * This class is thread-safe, but the products are executed one after
+ * another, because the actual time is measured on the command queue.
+ */
+public final class MatrixChainMultiplier
+{
+    /**
+     * The command queue
+     */
+    private final cl_command_queue commandQueue;
+
+    /**
+     * The pool for the intermediate results and the result
+     */
+    private final DeviceMatrixPool pool;
+
+    /**
+     * The cost model
+     */
+    private final MatrixCostModel costModel;
+
+    /**
+     * The evaluator
+     */
+    private final MatrixExpressionEvaluator evaluator;
+
+    /**
+     * Creates a new multiplier for the given context and command queue,
+     * using the current {@link CLBLASBackends#getBackend() backend} and
+     * the shared {@link KernelCache#getInstance() kernel cache}
+     *
+     * @param context The context
+     * @param commandQueue The command queue, which must be an in-order
+     * queue
+     * @param pool The pool for the intermediate results and the result
+     * @param costModel The cost model
+     * @throws NullPointerException If the pool or the cost model is
+     * <code>null</code>
+     */
+    public MatrixChainMultiplier(cl_context context,
+        cl_command_queue commandQueue, DeviceMatrixPool pool,
+        MatrixCostModel costModel)
+    {
+        this(context, commandQueue, CLBLASBackends.getBackend(),
+            KernelCache.getInstance(), pool, costModel);
+    }
+
+    /**
+     * Creates a new multiplier for the given context and command queue,
+     * using the given backend and kernel cache
+     *
+     * @param context The context
+     * @param commandQueue The command queue, which must be an in-order
+     * queue
+     * @param backend The backend
+     * @param kernelCache The kernel cache
+     * @param pool The pool for the intermediate results and the result
+     * @param costModel The cost model
+     * @throws NullPointerException If the pool or the cost model is
+     * <code>null</code>
+     */
+    public MatrixChainMultiplier(cl_context context,
+        cl_command_queue commandQueue, CLBLASBackend backend,
+        KernelCache kernelCache, DeviceMatrixPool pool,
+        MatrixCostModel costModel)
+    {
+        if (pool == null)
+        {
+            throw new NullPointerException("The pool is null");
+        }
+        if (costModel == null)
+        {
+            throw new NullPointerException("The cost model is null");
+        }
+        this.commandQueue = commandQueue;
+        this.pool = pool;
+        this.costModel = costModel;
+        this.evaluator = new MatrixExpressionEvaluator(
+            context, commandQueue, backend, kernelCache, pool);
+    }
+
+    /**
+     * Returns the cost model of this multiplier
+     *
+     * @return The cost model
+     */
+    public MatrixCostModel getCostModel()
+    {
+        return costModel;
+    }
+
+    /**
+     * Computes the product of the given matrices, in the order with the
+     * smallest estimated cost. This method waits until the computation
+     * is complete. The result is stored in a matrix that is obtained
+     * from the pool of this multiplier, and should be returned to the
+     * pool when it is no longer needed.
+     *
+     * @param matrices The matrices
+     * @return The product, with the estimated and actual costs
+     * @throws NullPointerException If any matrix is <code>null</code>
+     * @throws IllegalArgumentException If there are less than two
+     * matrices, they are not float matrices, they do not have the same
+     * order, or their sizes do not match
+     * @throws CLException If an OpenCL error occurs
+     */
+    public synchronized ChainProduct chainMultiply(DeviceMatrix... matrices)
+    {
+        if (matrices.length < 2)
+        {
+            throw new IllegalArgumentException(
+                "Expected at least 2 matrices, but found " + matrices.length);
+        }
+        MatrixExpression product = MatrixExpression.matrix(matrices[0]);
+        long dimensions[] = new long[matrices.length + 1];
+        dimensions[0] = matrices[0].getRows();
+        for (int i = 1; i < matrices.length; i++)
+        {
+            product = product.times(MatrixExpression.matrix(matrices[i]));
+            dimensions[i] = matrices[i].getRows();
+        }
+        dimensions[matrices.length] =
+            matrices[matrices.length - 1].getColumns();
+        String parenthesization =
+            new ChainOrder(dimensions, costModel).toString();
+
+        DeviceMatrix result = pool.acquire(product.getOrder(),
+            product.getRows(), product.getColumns(), Sizeof.cl_float);
+        try
+        {
+            MatrixPlan plan = new MatrixPlan.Builder(costModel)
+                .assign(result, product).build();
+            check(CL.clFinish(commandQueue), "clFinish");
+            long before = System.nanoTime();
+            evaluator.execute(plan);
+            check(CL.clFinish(commandQueue), "clFinish");
+            double actualSeconds = (System.nanoTime() - before) / 1e9;
+            return new ChainProduct(
+                result, parenthesization, plan, actualSeconds);
+        }
+        catch (RuntimeException e)
+        {
+            pool.release(result);
+            throw e;
+        }
+    }
+
+    /**
+     * Throws a CLException if the given result is not CL_SUCCESS
+     *
+     * @param result The result
+     * @param name The name of the function that returned the result
+     * @throws CLException If the result is not CL_SUCCESS
+     */
+    private static void check(int result, String name)
+    {
+        if (result != CL.CL_SUCCESS)
+        {
+            throw new CLException(name + " failed: " +
+                CL.stringFor_errorCode(result), result);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MatrixChainMultiplier[" + costModel + ", " + pool + "]";
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.expression;
+
+/**
+ * A simple model for the time that BLAS calls take on a device, which
+ * is used for choosing the order of matrix products. <br>
+ * <br>
+ * The time of a call is estimated as the sum of the time for its
+ * floating point operations and the time for transferring its operands
+ * and its result between the device memory and the compute units. For
+ * products with small inner dimensions, the transfer of the result
+ * dominates, so the order with the fewest floating point operations is
+ * not always the fastest one. <br>
+ * <br>
+ * Instances of this class are immutable.
+ */
+public final class MatrixCostModel
+{
+    /**
+     * A model that only counts floating point operations: The estimated
+     * time is the number of floating point operations.
+     */
+    public static final MatrixCostModel FLOPS_ONLY =
+        new MatrixCostModel(1.0, Double.POSITIVE_INFINITY);
+
+    /**
+     * A model with 1 TFLOP/s and 200 GB/s, which are typical values for
+     * a discrete GPU. The values of a specific device can be obtained by
+     * comparing the {@link ChainProduct#getActualSeconds() actual} and
+     * the estimated times of chains with different shapes.
+     */
+    public static final MatrixCostModel DEFAULT =
+        new MatrixCostModel(1.0e12, 2.0e11);
+
+    /**
+     * The floating point operations per second
+     */
+    private final double flopsPerSecond;
+
+    /**
+     * The bytes per second
+     */
+    private final double bytesPerSecond;
+
+    /**
+     * Creates a new cost model
+     *
+     * @param flopsPerSecond The floating point operations per second
+     * @param bytesPerSecond The bytes that can be transferred between
+     * the device memory and the compute units per second. This may be
+     * <code>Double.POSITIVE_INFINITY</code> to ignore the transfers.
+     * @throws IllegalArgumentException If any value is not positive
+     */
+    public MatrixCostModel(double flopsPerSecond, double bytesPerSecond)
+    {
+        if (!(flopsPerSecond > 0) || !(bytesPerSecond > 0))
+        {
+            throw new IllegalArgumentException("The rates must be " +
+                "positive, but are " + flopsPerSecond + " FLOP/s and " +
+                bytesPerSecond + " B/s");
+        }
+        this.flopsPerSecond = flopsPerSecond;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Returns the floating point operations per second
+     *
+     * @return The floating point operations per second
+     */
+    public double getFlopsPerSecond()
+    {
+        return flopsPerSecond;
+    }
+
+    /**
+     * Returns the bytes per second
+     *
+     * @return The bytes per second
+     */
+    public double getBytesPerSecond()
+    {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Returns the estimated time for the given number of floating point
+     * operations and transferred bytes
+     *
+     * @param flops The number of floating point operations
+     * @param bytes The number of bytes
+     * @return The estimated time, in seconds
+     */
+    public double estimateSeconds(double flops, double bytes)
+    {
+        return flops / flopsPerSecond + bytes / bytesPerSecond;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MatrixCostModel[" + flopsPerSecond + " FLOP/s, " +
+            bytesPerSecond + " B/s]";
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.expression;
+
+import org.jocl.Sizeof;
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.memory.DeviceMatrix;
+
+/**
+ * A lazily evaluated expression of float matrices that reside in
+ * {@link DeviceMatrix} objects. <br>
+ * <br>
+ * Expressions are built from {@link #matrix(DeviceMatrix) matrices},
+ * which are combined with {@link #times(MatrixExpression)},
+ * {@link #times(float)}, {@link #plus}, {@link #minus} and
+ * {@link #transpose()}. Vectors are matrices with a single row or
+ * column. For example, the right-hand sides of
+ * <code>D = alpha*A*B + beta*C</code> and <code>E = D^T * x</code> are
+ * <pre><code>
+ * matrix(A).times(matrix(B)).times(alpha).plus(matrix(C).times(beta))
+ * matrix(D).transpose().times(matrix(x))
+ * </code></pre>
+ * Nothing is computed when an expression is created. Expressions are
+ * assigned to matrices in a {@link MatrixPlan}, which maps them to
+ * BLAS calls, and which is executed with a
+ * {@link MatrixExpressionEvaluator}. <br>
+ * <br>
+ * The sizes of the operands are checked when an expression is created.
+ * All matrices of an expression must have the same
+ * {@link clblasOrder}. Expressions are immutable.
+ */
+public final class MatrixExpression
+{
+    /**
+     * The kinds of expressions
+     */
+    enum Kind
+    {
+        MATRIX, SCALED, TRANSPOSED, PRODUCT, SUM
+    }
+
+    /**
+     * The kind of this expression
+     */
+    final Kind kind;
+
+    /**
+     * The matrix, or <code>null</code>
+     */
+    final DeviceMatrix matrix;
+
+    /**
+     * The factor of a scaled expression
+     */
+    final float factor;
+
+    /**
+     * The left (or only) operand, or <code>null</code>
+     */
+    final MatrixExpression left;
+
+    /**
+     * The right operand, or <code>null</code>
+     */
+    final MatrixExpression right;
+
+    /**
+     * The {@link clblasOrder} of the matrices
+     */
+    private final int order;
+
+    /**
+     * The number of rows
+     */
+    private final long rows;
+
+    /**
+     * The number of columns
+     */
+    private final long columns;
+
+    /**
+     * Creates a new expression
+     *
+     * @param kind The kind
+     * @param matrix The matrix
+     * @param factor The factor
+     * @param left The left operand
+     * @param right The right operand
+     * @param order The order
+     * @param rows The number of rows
+     * @param columns The number of columns
+     */
+    private MatrixExpression(Kind kind, DeviceMatrix matrix, float factor,
+        MatrixExpression left, MatrixExpression right,
+        int order, long rows, long columns)
+    {
+        this.kind = kind;
+        this.matrix = matrix;
+        this.factor = factor;
+        this.left = left;
+        this.right = right;
+        this.order = order;
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * Creates an expression that refers to the given matrix
+     *
+     * @param matrix The matrix
+     * @return The expression
+     * @throws NullPointerException If the matrix is <code>null</code>
+     * @throws IllegalArgumentException If the elements of the matrix
+     * are not floats
+     */
+    public static MatrixExpression matrix(DeviceMatrix matrix)
+    {
+        if (matrix == null)
+        {
+            throw new NullPointerException("The matrix is null");
+        }
+        if (matrix.getElementSize() != Sizeof.cl_float)
+        {
+            throw new IllegalArgumentException(
+                "Only float matrices are supported, but found " + matrix);
+        }
+        return new MatrixExpression(Kind.MATRIX, matrix, 0, null, null,
+            matrix.getOrder(), matrix.getRows(), matrix.getColumns());
+    }
+
+    /**
+     * Returns the {@link clblasOrder} of the matrices of this expression
+     *
+     * @return The order
+     */
+    public int getOrder()
+    {
+        return order;
+    }
+
+    /**
+     * Returns the number of rows of this expression
+     *
+     * @return The number of rows
+     */
+    public long getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns of this expression
+     *
+     * @return The number of columns
+     */
+    public long getColumns()
+    {
+        return columns;
+    }
+
+    /**
+     * Returns the product of this expression and the given one
+     *
+     * @param other The other expression
+     * @return The product
+     * @throws NullPointerException If the operand is <code>null</code>
+     * @throws IllegalArgumentException If the number of columns of this
+     * expression is not the number of rows of the other one, or the
+     * orders do not match
+     */
+    public MatrixExpression times(MatrixExpression other)
+    {
+        checkOrder(other);
+        if (columns != other.rows)
+        {
+            throw new IllegalArgumentException("Can not multiply a " +
+                rows + "x" + columns + " matrix with a " +
+                other.rows + "x" + other.columns + " matrix");
+        }
+        return new MatrixExpression(Kind.PRODUCT, null, 0, this, other,
+            order, rows, other.columns);
+    }
+
+    /**
+     * Returns the product of this expression and the given factor
+     *
+     * @param factor The factor
+     * @return The product
+     */
+    public MatrixExpression times(float factor)
+    {
+        return new MatrixExpression(Kind.SCALED, null, factor, this, null,
+            order, rows, columns);
+    }
+
+    /**
+     * Returns the sum of this expression and the given one
+     *
+     * @param other The other expression
+     * @return The sum
+     * @throws NullPointerException If the operand is <code>null</code>
+     * @throws IllegalArgumentException If the sizes or the orders do
+     * not match
+     */
+    public MatrixExpression plus(MatrixExpression other)
+    {
+        checkOrder(other);
+        if (rows != other.rows || columns != other.columns)
+        {
+            throw new IllegalArgumentException("Can not add a " +
+                rows + "x" + columns + " matrix and a " +
+                other.rows + "x" + other.columns + " matrix");
+        }
+        return new MatrixExpression(Kind.SUM, null, 0, this, other,
+            order, rows, columns);
+    }
+
+    /**
+     * Returns the difference of this expression and the given one
+     *
+     * @param other The other expression
+     * @return The difference
+     * @throws NullPointerException If the operand is <code>null</code>
+     * @throws IllegalArgumentException If the sizes or the orders do
+     * not match
+     */
+    public MatrixExpression minus(MatrixExpression other)
+    {
+        if (other == null)
+        {
+            throw new NullPointerException("The operand is null");
+        }
+        return plus(other.times(-1.0f));
+    }
+
+    /**
+     * Returns the transpose of this expression
+     *
+     * @return The transpose
+     */
+    public MatrixExpression transpose()
+    {
+        return new MatrixExpression(Kind.TRANSPOSED, null, 0, this, null,
+            order, columns, rows);
+    }
+
+    /**
+     * Make sure that the given expression is not <code>null</code> and
+     * has the same order as this one
+     *
+     * @param other The other expression
+     * @throws NullPointerException If the operand is <code>null</code>
+     * @throws IllegalArgumentException If the orders do not match
+     */
+    private void checkOrder(MatrixExpression other)
+    {
+        if (other == null)
+        {
+            throw new NullPointerException("The operand is null");
+        }
+        if (order != other.order)
+        {
+            throw new IllegalArgumentException("Can not combine a " +
+                clblasOrder.stringFor(order) + " matrix with a " +
+                clblasOrder.stringFor(other.order) + " matrix");
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        switch (kind)
+        {
+            case MATRIX:
+                return "M" + Integer.toHexString(
+                    System.identityHashCode(matrix));
+            case SCALED:
+                return "(" + factor + " * " + left + ")";
+            case TRANSPOSED:
+                return left + "^T";
+            case PRODUCT:
+                return "(" + left + " * " + right + ")";
+            default:
+                return "(" + left + " + " + right + ")";
+        }
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.expression;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_mem;
+import org.jocl.blas.CLBLASBackend;
+import org.jocl.blas.CLBLASBackends;
+import org.jocl.blas.clblasStatus;
+import org.jocl.blas.kernel.CachedKernel;
+import org.jocl.blas.kernel.KernelCache;
+import org.jocl.blas.memory.DeviceMatrix;
+import org.jocl.blas.memory.DeviceMatrixPool;
+
+/**
+ * An evaluator for {@link MatrixExpression} instances and
+ * {@link MatrixPlan} instances on an OpenCL device. <br>
+ * <br>
+ * The products are computed with the SGEMM and SGEMV functions of a
+ * {@link CLBLASBackend}, and the remaining sums are computed with a
+ * kernel that is obtained from a {@link KernelCache}. All calls are
+ * enqueued into a single command queue, which must be an in-order
+ * queue, and the methods return without waiting for their completion.
+ * The temporary matrices of a plan are released after all calls have
+ * been enqueued, which is valid because OpenCL only deletes them after
+ * the calls completed. If a {@link DeviceMatrixPool} is given, the
+ * temporary matrices are obtained from and returned to this pool
+ * instead, which is valid as long as all users of the pool enqueue
+ * their commands into the same command queue. <br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class MatrixExpressionEvaluator
+{
+    /**
+     * The size of the work groups of the kernel, in each dimension
+     */
+    private static final int TILE_SIZE = 16;
+
+    /**
+     * The source code of the kernel
+     */
+    private static final String KERNELS_SOURCE =
+        "__kernel void addMatrix(const int M, const int N,\n" +
+        "    const float alpha, __global const float *A, const long offA,\n" +
+        "    const int sAi, const int sAj,\n" +
+        "    const float beta, __global float *C, const long offC,\n" +
+        "    const int sCi, const int sCj)\n" +
+        "{\n" +
+        "    const int j = get_global_id(0);\n" +
+        "    const int i = get_global_id(1);\n" +
+        "    if (i >= M || j >= N)\n" +
+        "    {\n" +
+        "        return;\n" +
+        "    }\n" +
+        "    const long ic = offC + (long)i * sCi + (long)j * sCj;\n" +
+        "    const float a = \n" +
+        "        alpha * A[offA + (long)i * sAi + (long)j * sAj];\n" +
+        "    C[ic] = beta == 0.0f ? a : a + beta * C[ic];\n" +
+        "}\n";
+
+    /**
+     * The context
+     */
+    private final cl_context context;
+
+    /**
+     * The command queue
+     */
+    private final cl_command_queue commandQueue;
+
+    /**
+     * The backend
+     */
+    private final CLBLASBackend backend;
+
+    /**
+     * The kernel cache
+     */
+    private final KernelCache kernelCache;
+
+    /**
+     * The pool for the temporary matrices. May be <code>null</code>.
+     */
+    private final DeviceMatrixPool pool;
+
+    /**
+     * The operations that the plans are executed with
+     */
+    private final MatrixOperations operations = new MatrixOperations()
+    {
+        @Override
+        public DeviceMatrix createTemporary(
+            int order, long rows, long columns)
+        {
+            return MatrixExpressionEvaluator.this.createTemporary(
+                order, rows, columns);
+        }
+
+        @Override
+        public void releaseTemporary(DeviceMatrix matrix)
+        {
+            if (pool != null)
+            {
+                pool.release(matrix);
+            }
+            else
+            {
+                matrix.release();
+            }
+        }
+
+        @Override
+        public void gemm(int order, int transA, int transB,
+            long M, long N, long K, float alpha,
+            DeviceMatrix A, DeviceMatrix B, float beta, DeviceMatrix C)
+        {
+            check(backend.sgemm(order, transA, transB, M, N, K, alpha,
+                A.getMem(), A.getOffset(), A.getLd(),
+                B.getMem(), B.getOffset(), B.getLd(), beta,
+                C.getMem(), C.getOffset(), C.getLd(),
+                commandQueue, 0, null, null), "clblasSgemm");
+        }
+
+        @Override
+        public void gemv(int order, int transA, long M, long N,
+            float alpha, DeviceMatrix A, DeviceMatrix x, long incx,
+            float beta, DeviceMatrix y, long incy)
+        {
+            check(backend.sgemv(order, transA, M, N, alpha,
+                A.getMem(), A.getOffset(), A.getLd(),
+                x.getMem(), x.getOffset(), (int)incx, beta,
+                y.getMem(), y.getOffset(), (int)incy,
+                commandQueue, 0, null, null), "clblasSgemv");
+        }
+
+        @Override
+        public void add(int order, int transA, long M, long N,
+            float alpha, DeviceMatrix A, float beta, DeviceMatrix C)
+        {
+            boolean rowMajor = order == clblasRowMajor;
+            boolean rowsOfA = (transA == clblasNoTrans) == rowMajor;
+            int sAi = (int)(rowsOfA ? A.getLd() : 1);
+            int sAj = (int)(rowsOfA ? 1 : A.getLd());
+            int sCi = (int)(rowMajor ? C.getLd() : 1);
+            int sCj = (int)(rowMajor ? 1 : C.getLd());
+            long globalWorkSize[] = {
+                CachedKernel.roundUp(Math.max(N, 1), TILE_SIZE),
+                CachedKernel.roundUp(Math.max(M, 1), TILE_SIZE)
+            };
+            long localWorkSize[] = { TILE_SIZE, TILE_SIZE };
+            int result = kernelCache.getKernel(
+                context, KERNELS_SOURCE, "addMatrix").enqueue(
+                    commandQueue, globalWorkSize, localWorkSize, 0, null, null,
+                    (int)M, (int)N, alpha, A.getMem(), A.getOffset(), sAi, sAj,
+                    beta, C.getMem(), C.getOffset(), sCi, sCj);
+            if (result != CL.CL_SUCCESS)
+            {
+                throw new CLException("clEnqueueNDRangeKernel failed: " +
+                    CL.stringFor_errorCode(result), result);
+            }
+        }
+    };
+
+    /**
+     * Creates a new evaluator for the given context and command queue,
+     * using the current {@link CLBLASBackends#getBackend() backend} and
+     * the shared {@link KernelCache#getInstance() kernel cache}
+     *
+     * @param context The context
+     * @param commandQueue The command queue
+     */
+    public MatrixExpressionEvaluator(
+        cl_context context, cl_command_queue commandQueue)
+    {
+        this(context, commandQueue, CLBLASBackends.getBackend(),
+            KernelCache.getInstance());
+    }
+
+    /**
+     * Creates a new evaluator for the given context and command queue,
+     * using the given backend and kernel cache
+     *
+     * @param context The context
+     * @param commandQueue The command queue
+     * @param backend The backend
+     * @param kernelCache The kernel cache
+     */
+    public MatrixExpressionEvaluator(cl_context context,
+        cl_command_queue commandQueue, CLBLASBackend backend,
+        KernelCache kernelCache)
+    {
+        this(context, commandQueue, backend, kernelCache, null);
+    }
+
+    /**
+     * Creates a new evaluator for the given context and command queue,
+     * using the given backend and kernel cache, which obtains the
+     * temporary matrices from the given pool
+     *
+     * @param context The context
+     * @param commandQueue The command queue
+     * @param backend The backend
+     * @param kernelCache The kernel cache
+     * @param pool The pool for the temporary matrices. If this is
+     * <code>null</code>, then the temporary matrices are created and
+     * released for each plan.
+     */
+    public MatrixExpressionEvaluator(cl_context context,
+        cl_command_queue commandQueue, CLBLASBackend backend,
+        KernelCache kernelCache, DeviceMatrixPool pool)
+    {
+        this.context = context;
+        this.commandQueue = commandQueue;
+        this.backend = backend;
+        this.kernelCache = kernelCache;
+        this.pool = pool;
+    }
+
+    /**
+     * Enqueue the evaluation of the given expression into the given
+     * matrix. For evaluating multiple expressions, or the same
+     * expression multiple times, a {@link MatrixPlan} should be created
+     * and passed to {@link #execute(MatrixPlan)}.
+     *
+     * @param target The matrix
+     * @param value The expression
+     * @throws IllegalArgumentException If the expression can not be
+     * assigned to the matrix
+     * @throws CLException If an OpenCL error occurs
+     */
+    public void evaluate(DeviceMatrix target, MatrixExpression value)
+    {
+        execute(new MatrixPlan.Builder().assign(target, value).build());
+    }
+
+    /**
+     * Enqueue the calls of the given plan
+     *
+     * @param plan The plan
+     * @throws CLException If an OpenCL error occurs
+     */
+    public void execute(MatrixPlan plan)
+    {
+        plan.execute(operations);
+    }
+
+    /**
+     * Creates a temporary matrix without padding
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @return The matrix
+     * @throws CLException If the memory object can not be created
+     */
+    private DeviceMatrix createTemporary(int order, long rows, long columns)
+    {
+        if (pool != null)
+        {
+            return pool.acquire(order, rows, columns, Sizeof.cl_float);
+        }
+        long size = Math.max(rows * columns, 1) * Sizeof.cl_float;
+        int errcode[] = { 0 };
+        cl_mem mem = CL.clCreateBuffer(context,
+            CL.CL_MEM_READ_WRITE, size, null, errcode);
+        if (errcode[0] != CL.CL_SUCCESS)
+        {
+            throw new CLException("clCreateBuffer failed: " +
+                CL.stringFor_errorCode(errcode[0]), errcode[0]);
+        }
+        long ld = Math.max(order == clblasRowMajor ? columns : rows, 1);
+        return new DeviceMatrix(
+            mem, order, rows, columns, Sizeof.cl_float, 0, ld);
+    }
+
+    /**
+     * Throws a CLException if the given result is not CL_SUCCESS
+     *
+     * @param result The result
+     * @param name The name of the function that returned the result
+     * @throws CLException If the result is not CL_SUCCESS
+     */
+    private static void check(int result, String name)
+    {
+        if (result != CL.CL_SUCCESS)
+        {
+            throw new CLException(name + " failed: " +
+                clblasStatus.stringFor(result), result);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.expression;
+
+import org.jocl.blas.memory.DeviceMatrix;
+
+/**
+ * Interface for the operations that a {@link MatrixPlan} is executed
+ * with. The operations are modeled after the respective methods in
+ * {@link org.jocl.blas.CLBLAS}, with the matrices and vectors being
+ * given as {@link DeviceMatrix} objects. Implementations may execute
+ * the operations asynchronously, but have to execute them in the order
+ * in which they are issued.
+ */
+interface MatrixOperations
+{
+    /**
+     * Creates a temporary matrix with unspecified contents
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @return The matrix
+     */
+    DeviceMatrix createTemporary(int order, long rows, long columns);
+
+    /**
+     * Release the given matrix, which was created with
+     * {@link #createTemporary}. This is called after the last operation
+     * that uses the matrix was issued.
+     *
+     * @param matrix The matrix
+     */
+    void releaseTemporary(DeviceMatrix matrix);
+
+    /**
+     * Compute C = alpha * op(A) * op(B) + beta * C. See
+     * {@link org.jocl.blas.CLBLAS#clblasSgemm}.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param transA How matrix A is to be transposed
+     * @param transB How matrix B is to be transposed
+     * @param M The number of rows of op(A) and C
+     * @param N The number of columns of op(B) and C
+     * @param K The number of columns of op(A) and rows of op(B)
+     * @param alpha The factor of op(A)*op(B)
+     * @param A The matrix A
+     * @param B The matrix B
+     * @param beta The factor of C
+     * @param C The matrix C
+     */
+    void gemm(int order, int transA, int transB, long M, long N, long K,
+        float alpha, DeviceMatrix A, DeviceMatrix B,
+        float beta, DeviceMatrix C);
+
+    /**
+     * Compute y = alpha * op(A) * x + beta * y. See
+     * {@link org.jocl.blas.CLBLAS#clblasSgemv}. The vectors are
+     * matrices with a single row or column.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param transA How matrix A is to be transposed
+     * @param M The number of rows of A
+     * @param N The number of columns of A
+     * @param alpha The factor of op(A)*x
+     * @param A The matrix A
+     * @param x The vector x
+     * @param incx The increment of x
+     * @param beta The factor of y
+     * @param y The vector y
+     * @param incy The increment of y
+     */
+    void gemv(int order, int transA, long M, long N, float alpha,
+        DeviceMatrix A, DeviceMatrix x, long incx,
+        float beta, DeviceMatrix y, long incy);
+
+    /**
+     * Compute C = alpha * op(A) + beta * C. If beta is 0, then C does
+     * not have to be initialized. A may be the same matrix as C if it
+     * is not transposed.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param transA How matrix A is to be transposed
+     * @param M The number of rows of C
+     * @param N The number of columns of C
+     * @param alpha The factor of op(A)
+     * @param A The matrix A
+     * @param beta The factor of C
+     * @param C The matrix C
+     */
+    void add(int order, int transA, long M, long N, float alpha,
+        DeviceMatrix A, float beta, DeviceMatrix C);
+}
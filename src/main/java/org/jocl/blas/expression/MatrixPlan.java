@@ -0,0 +1,1295 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.expression;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+import static org.jocl.blas.clblasTranspose.clblasTrans;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jocl.Sizeof;
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.memory.DeviceMatrix;
+
+/**
+ * A sequence of assignments of {@link MatrixExpression} instances to
+ * matrices, which is mapped to a sequence of BLAS calls. For example,
+ * <pre><code>
+ * D = alpha*A*B + beta*D;
+ * E = D^T * x;
+ * </code></pre>
+ * is created with
+ * <pre><code>
+ * MatrixPlan plan = new MatrixPlan.Builder()
+ *     .assign(D, matrix(A).times(matrix(B)).times(alpha)
+ *         .plus(matrix(D).times(beta)))
+ *     .assign(E, matrix(D).transpose().times(matrix(x)))
+ *     .build();
+ * </code></pre>
+ * and results in one SGEMM and one SGEMV call, without any temporary
+ * matrix. <br>
+ * <br>
+ * Each expression is expanded into a sum of terms, where each term is
+ * a factor times a product of matrices. Factors are folded into the
+ * <code>alpha</code> and <code>beta</code> parameters of the calls,
+ * and transposes are folded into the {@link org.jocl.blas.clblasTranspose}
+ * flags. A term of the target matrix itself is folded into the
+ * <code>beta</code> of the first call that writes the target. Products
+ * of more than two matrices are evaluated in the order with the
+ * smallest estimated time according to the {@link MatrixCostModel} of
+ * the builder, which is by default the order that requires the
+ * smallest number of floating point operations. Products with a
+ * matrix that has a single row or column are computed with SGEMV.
+ * The products are written directly into the target matrix where
+ * possible. Temporary matrices are only used for intermediate results
+ * of longer products, for sums that are multiplied with other
+ * matrices, and when the target matrix is also an operand of a
+ * product. Temporary matrices with the same size are reused within
+ * the plan. Terms that are not products are added with a small
+ * kernel. <br>
+ * <br>
+ * The assignments are executed in the order in which they have been
+ * added, so later assignments see the results of earlier ones.
+ * Different matrices that are used in one assignment must not overlap,
+ * unless they are the same matrix. <br>
+ * <br>
+ * Instances of this class are immutable.
+ */
+public final class MatrixPlan
+{
+    /**
+     * A builder for {@link MatrixPlan} instances
+     */
+    public static final class Builder
+    {
+        /**
+         * The cost model
+         */
+        private final MatrixCostModel costModel;
+
+        /**
+         * The assigned matrices
+         */
+        private final List<DeviceMatrix> targets =
+            new ArrayList<DeviceMatrix>();
+
+        /**
+         * The assigned expressions
+         */
+        private final List<MatrixExpression> values =
+            new ArrayList<MatrixExpression>();
+
+        /**
+         * Creates a new builder that orders products by the number of
+         * floating point operations, using the
+         * {@link MatrixCostModel#FLOPS_ONLY} model
+         */
+        public Builder()
+        {
+            this(MatrixCostModel.FLOPS_ONLY);
+        }
+
+        /**
+         * Creates a new builder that orders products by their estimated
+         * time according to the given cost model
+         *
+         * @param costModel The cost model
+         * @throws NullPointerException If the cost model is
+         * <code>null</code>
+         */
+        public Builder(MatrixCostModel costModel)
+        {
+            if (costModel == null)
+            {
+                throw new NullPointerException("The cost model is null");
+            }
+            this.costModel = costModel;
+        }
+
+        /**
+         * Add the assignment of the given expression to the given matrix
+         *
+         * @param target The matrix
+         * @param value The expression
+         * @return This builder
+         * @throws NullPointerException If any argument is
+         * <code>null</code>
+         * @throws IllegalArgumentException If the matrix is not a float
+         * matrix, its size does not match the size of the expression,
+         * or its order is not the order of the expression or of the
+         * previous assignments
+         */
+        public Builder assign(DeviceMatrix target, MatrixExpression value)
+        {
+            if (target == null)
+            {
+                throw new NullPointerException("The target is null");
+            }
+            if (value == null)
+            {
+                throw new NullPointerException("The value is null");
+            }
+            if (target.getElementSize() != Sizeof.cl_float)
+            {
+                throw new IllegalArgumentException(
+                    "Only float matrices are supported, but found " + target);
+            }
+            if (target.getRows() != value.getRows() ||
+                target.getColumns() != value.getColumns())
+            {
+                throw new IllegalArgumentException("Can not assign a " +
+                    value.getRows() + "x" + value.getColumns() +
+                    " expression to " + target);
+            }
+            int order = targets.isEmpty() ?
+                target.getOrder() : targets.get(0).getOrder();
+            if (target.getOrder() != order || value.getOrder() != order)
+            {
+                throw new IllegalArgumentException(
+                    "All matrices must have the order " +
+                    clblasOrder.stringFor(order));
+            }
+            targets.add(target);
+            values.add(value);
+            return this;
+        }
+
+        /**
+         * Create the plan for the assignments that have been added
+         *
+         * @return The plan
+         * @throws IllegalStateException If no assignments have been added
+         */
+        public MatrixPlan build()
+        {
+            if (targets.isEmpty())
+            {
+                throw new IllegalStateException("No assignments were added");
+            }
+            Planner planner = new Planner(costModel);
+            for (int i = 0; i < targets.size(); i++)
+            {
+                planner.assign(targets.get(i), values.get(i));
+            }
+            return new MatrixPlan(
+                targets.get(0).getOrder(), costModel, planner);
+        }
+    }
+
+    /**
+     * The operations of the steps of a plan
+     */
+    enum Operation
+    {
+        GEMM, GEMV, ADD
+    }
+
+    /**
+     * An operand of a step, which is either a given matrix or a
+     * temporary matrix
+     */
+    static final class Operand
+    {
+        /**
+         * The matrix, or <code>null</code> for a temporary matrix
+         */
+        final DeviceMatrix matrix;
+
+        /**
+         * The index of the temporary matrix, or -1
+         */
+        final int temporary;
+
+        /**
+         * The number of rows
+         */
+        final long rows;
+
+        /**
+         * The number of columns
+         */
+        final long columns;
+
+        /**
+         * Creates an operand for the given matrix
+         *
+         * @param matrix The matrix
+         */
+        Operand(DeviceMatrix matrix)
+        {
+            this.matrix = matrix;
+            this.temporary = -1;
+            this.rows = matrix.getRows();
+            this.columns = matrix.getColumns();
+        }
+
+        /**
+         * Creates an operand for a temporary matrix
+         *
+         * @param temporary The index of the temporary matrix
+         * @param rows The number of rows
+         * @param columns The number of columns
+         */
+        Operand(int temporary, long rows, long columns)
+        {
+            this.matrix = null;
+            this.temporary = temporary;
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        /**
+         * Returns the matrix of this operand
+         *
+         * @param temporaries The temporary matrices
+         * @return The matrix
+         */
+        DeviceMatrix resolve(DeviceMatrix temporaries[])
+        {
+            return matrix != null ? matrix : temporaries[temporary];
+        }
+
+        @Override
+        public String toString()
+        {
+            if (matrix == null)
+            {
+                return "T" + temporary;
+            }
+            return "M" + Integer.toHexString(System.identityHashCode(matrix));
+        }
+    }
+
+    /**
+     * A single call of a plan
+     */
+    static final class Step
+    {
+        /**
+         * The operation
+         */
+        final Operation operation;
+
+        /**
+         * The {@link org.jocl.blas.clblasTranspose} of A
+         */
+        final int transA;
+
+        /**
+         * The {@link org.jocl.blas.clblasTranspose} of B
+         */
+        final int transB;
+
+        /**
+         * The M parameter
+         */
+        final long M;
+
+        /**
+         * The N parameter
+         */
+        final long N;
+
+        /**
+         * The K parameter
+         */
+        final long K;
+
+        /**
+         * The alpha parameter
+         */
+        final float alpha;
+
+        /**
+         * The beta parameter
+         */
+        final float beta;
+
+        /**
+         * The matrix A
+         */
+        final Operand A;
+
+        /**
+         * The matrix B, or the vector x, or <code>null</code>
+         */
+        final Operand B;
+
+        /**
+         * The matrix C, or the vector y
+         */
+        final Operand C;
+
+        /**
+         * Creates a new step
+         *
+         * @param operation The operation
+         * @param transA The transpose of A
+         * @param transB The transpose of B
+         * @param M The M parameter
+         * @param N The N parameter
+         * @param K The K parameter
+         * @param alpha The alpha parameter
+         * @param A The matrix A
+         * @param B The matrix B
+         * @param beta The beta parameter
+         * @param C The matrix C
+         */
+        Step(Operation operation, int transA, int transB,
+            long M, long N, long K, float alpha, Operand A, Operand B,
+            float beta, Operand C)
+        {
+            this.operation = operation;
+            this.transA = transA;
+            this.transB = transB;
+            this.M = M;
+            this.N = N;
+            this.K = K;
+            this.alpha = alpha;
+            this.A = A;
+            this.B = B;
+            this.beta = beta;
+            this.C = C;
+        }
+
+        /**
+         * Execute this step with the given operations
+         *
+         * @param operations The operations
+         * @param order The {@link clblasOrder}
+         * @param temporaries The temporary matrices
+         */
+        void execute(MatrixOperations operations, int order,
+            DeviceMatrix temporaries[])
+        {
+            DeviceMatrix a = A.resolve(temporaries);
+            DeviceMatrix c = C.resolve(temporaries);
+            switch (operation)
+            {
+                case GEMM:
+                    operations.gemm(order, transA, transB, M, N, K,
+                        alpha, a, B.resolve(temporaries), beta, c);
+                    break;
+                case GEMV:
+                    DeviceMatrix x = B.resolve(temporaries);
+                    operations.gemv(order, transA, M, N, alpha,
+                        a, x, increment(x), beta, c, increment(c));
+                    break;
+                default:
+                    operations.add(order, transA, M, N, alpha, a, beta, c);
+                    break;
+            }
+        }
+
+        /**
+         * Returns the number of floating point operations of this step
+         *
+         * @return The number of operations
+         */
+        double getFlops()
+        {
+            switch (operation)
+            {
+                case GEMM:
+                    return ChainOrder.productFlops(M, K, N);
+                case GEMV:
+                    return 2.0 * M * N;
+                default:
+                    return 2.0 * M * N;
+            }
+        }
+
+        /**
+         * Returns the number of bytes that are read and written by this
+         * step
+         *
+         * @return The number of bytes
+         */
+        double getBytes()
+        {
+            double c = beta == 0.0f ? 0.0 : 1.0;
+            switch (operation)
+            {
+                case GEMM:
+                    return ChainOrder.productBytes(M, K, N) +
+                        c * M * N * Sizeof.cl_float;
+                case GEMV:
+                    double y = transA == clblasNoTrans ? M : N;
+                    return ((double)M * N + M + N + c * y) *
+                        Sizeof.cl_float;
+                default:
+                    return (2.0 + c) * M * N * Sizeof.cl_float;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            String a = A + (transA == clblasNoTrans ? "" : "^T");
+            switch (operation)
+            {
+                case GEMM:
+                    String b = B + (transB == clblasNoTrans ? "" : "^T");
+                    return "GEMM " + C + " = " + alpha + " * " + a +
+                        " * " + b + " + " + beta + " * " + C;
+                case GEMV:
+                    return "GEMV " + C + " = " + alpha + " * " + a +
+                        " * " + B + " + " + beta + " * " + C;
+                default:
+                    return "ADD " + C + " = " + alpha + " * " + a +
+                        " + " + beta + " * " + C;
+            }
+        }
+    }
+
+    /**
+     * A term of an expanded expression: A factor times a product of
+     * matrices
+     */
+    private static final class Term
+    {
+        /**
+         * The factor
+         */
+        final float scale;
+
+        /**
+         * The matrices of the product
+         */
+        final List<Factor> factors;
+
+        /**
+         * Creates a new term
+         *
+         * @param scale The factor
+         * @param factors The matrices
+         */
+        Term(float scale, List<Factor> factors)
+        {
+            this.scale = scale;
+            this.factors = factors;
+        }
+    }
+
+    /**
+     * A matrix in a product. This is either a single matrix, or an
+     * expression that can not be expanded into a single product, and
+     * that has to be evaluated into a temporary matrix.
+     */
+    private static final class Factor
+    {
+        /**
+         * The expression
+         */
+        final MatrixExpression expression;
+
+        /**
+         * Whether the expression is transposed
+         */
+        final boolean transposed;
+
+        /**
+         * Creates a new factor
+         *
+         * @param expression The expression
+         * @param transposed Whether the expression is transposed
+         */
+        Factor(MatrixExpression expression, boolean transposed)
+        {
+            this.expression = expression;
+            this.transposed = transposed;
+        }
+    }
+
+    /**
+     * An operand that is used in a product, possibly transposed
+     */
+    private static final class Resolved
+    {
+        /**
+         * The operand
+         */
+        final Operand operand;
+
+        /**
+         * Whether the operand is transposed
+         */
+        final boolean transposed;
+
+        /**
+         * Whether the operand is a temporary matrix that is owned by the
+         * product, and released after the product was issued
+         */
+        final boolean owned;
+
+        /**
+         * Creates a new instance
+         *
+         * @param operand The operand
+         * @param transposed Whether the operand is transposed
+         * @param owned Whether the operand is owned by the product
+         */
+        Resolved(Operand operand, boolean transposed, boolean owned)
+        {
+            this.operand = operand;
+            this.transposed = transposed;
+            this.owned = owned;
+        }
+
+        /**
+         * Returns the number of rows of the operand after the transpose
+         *
+         * @return The number of rows
+         */
+        long rows()
+        {
+            return transposed ? operand.columns : operand.rows;
+        }
+
+        /**
+         * Returns the number of columns of the operand after the
+         * transpose
+         *
+         * @return The number of columns
+         */
+        long columns()
+        {
+            return transposed ? operand.rows : operand.columns;
+        }
+
+        /**
+         * Returns the {@link org.jocl.blas.clblasTranspose} of the
+         * operand
+         *
+         * @return The transpose
+         */
+        int trans()
+        {
+            return transposed ? clblasTrans : clblasNoTrans;
+        }
+    }
+
+    /**
+     * The class that creates the steps of a plan
+     */
+    private static final class Planner
+    {
+        /**
+         * The steps
+         */
+        final List<Step> steps = new ArrayList<Step>();
+
+        /**
+         * The sizes of the temporary matrices
+         */
+        final List<long[]> temporaries = new ArrayList<long[]>();
+
+        /**
+         * The indices of the temporary matrices that are currently not
+         * used
+         */
+        private final List<Integer> free = new ArrayList<Integer>();
+
+        /**
+         * The number of floating point operations that have been saved
+         * by evaluating products in the best order instead of from left
+         * to right
+         */
+        double savedFlops;
+
+        /**
+         * The estimated time that has been saved by evaluating products
+         * in the best order instead of from left to right
+         */
+        double savedCost;
+
+        /**
+         * The cost model
+         */
+        private final MatrixCostModel costModel;
+
+        /**
+         * Creates a new planner
+         *
+         * @param costModel The cost model
+         */
+        Planner(MatrixCostModel costModel)
+        {
+            this.costModel = costModel;
+        }
+
+        /**
+         * Add the steps for the assignment of the given expression to
+         * the given matrix
+         *
+         * @param target The matrix
+         * @param value The expression
+         */
+        void assign(DeviceMatrix target, MatrixExpression value)
+        {
+            List<Term> terms = expand(value, false);
+            Operand operand = new Operand(target);
+            if (!isAliased(terms, target))
+            {
+                evaluate(terms, operand);
+                return;
+            }
+            Operand temporary = allocate(target.getRows(), target.getColumns());
+            evaluate(terms, temporary);
+            add(operand, new Resolved(temporary, false, true), 1.0f, 0.0f);
+            release(temporary);
+        }
+
+        /**
+         * Add the steps for writing the sum of the given terms into the
+         * given operand
+         *
+         * @param terms The terms
+         * @param target The target operand
+         */
+        private void evaluate(List<Term> terms, Operand target)
+        {
+            float beta = 0.0f;
+            boolean folded = false;
+            List<Term> products = new ArrayList<Term>();
+            List<Term> matrices = new ArrayList<Term>();
+            for (Term term : terms)
+            {
+                if (term.factors.size() > 1)
+                {
+                    products.add(term);
+                }
+                else if (isTarget(term.factors.get(0), target))
+                {
+                    beta += term.scale;
+                    folded = true;
+                }
+                else
+                {
+                    matrices.add(term);
+                }
+            }
+            if (products.isEmpty() && matrices.isEmpty())
+            {
+                add(target, new Resolved(target, false, false), beta, 0.0f);
+                return;
+            }
+            if (!folded)
+            {
+                beta = 0.0f;
+            }
+            for (Term term : products)
+            {
+                evaluateProduct(term, target, beta);
+                beta = 1.0f;
+            }
+            for (Term term : matrices)
+            {
+                Factor factor = term.factors.get(0);
+                add(target, new Resolved(new Operand(
+                    factor.expression.matrix), factor.transposed, false),
+                    term.scale, beta);
+                beta = 1.0f;
+            }
+        }
+
+        /**
+         * Add the steps for computing the given product term into the
+         * given target
+         *
+         * @param term The term
+         * @param target The target
+         * @param beta The factor of the target
+         */
+        private void evaluateProduct(Term term, Operand target, float beta)
+        {
+            int n = term.factors.size();
+            Resolved resolved[] = new Resolved[n];
+            long dimensions[] = new long[n + 1];
+            for (int i = 0; i < n; i++)
+            {
+                resolved[i] = resolve(term.factors.get(i));
+                dimensions[i] = resolved[i].rows();
+            }
+            dimensions[n] = resolved[n - 1].columns();
+            ChainOrder chainOrder = new ChainOrder(dimensions, costModel);
+            savedFlops += chainOrder.getLeftToRightFlops(0, n - 1) -
+                chainOrder.getFlops(0, n - 1);
+            savedCost += chainOrder.getLeftToRightCost(0, n - 1) -
+                chainOrder.getCost();
+            evaluateChain(chainOrder, resolved, 0, n - 1,
+                target, term.scale, beta);
+            for (Resolved r : resolved)
+            {
+                if (r.owned)
+                {
+                    release(r.operand);
+                }
+            }
+        }
+
+        /**
+         * Returns the operand for the given factor. If the factor is not
+         * a single matrix, then the steps for evaluating it into a
+         * temporary matrix are added.
+         *
+         * @param factor The factor
+         * @return The operand
+         */
+        private Resolved resolve(Factor factor)
+        {
+            MatrixExpression e = factor.expression;
+            if (e.kind == MatrixExpression.Kind.MATRIX)
+            {
+                return new Resolved(
+                    new Operand(e.matrix), factor.transposed, false);
+            }
+            Operand temporary = allocate(e.getRows(), e.getColumns());
+            evaluate(expand(e, false), temporary);
+            return new Resolved(temporary, factor.transposed, true);
+        }
+
+        /**
+         * Add the steps for computing the product of the given
+         * sub-chain, in the given order
+         *
+         * @param chainOrder The order
+         * @param resolved The operands of the chain
+         * @param i The index of the first operand
+         * @param j The index of the last operand
+         * @param target The target, or <code>null</code> if the result
+         * should be written into a new temporary matrix
+         * @param alpha The factor of the product
+         * @param beta The factor of the target
+         * @return The result
+         */
+        private Resolved evaluateChain(ChainOrder chainOrder,
+            Resolved resolved[], int i, int j,
+            Operand target, float alpha, float beta)
+        {
+            if (i == j)
+            {
+                return resolved[i];
+            }
+            int s = chainOrder.getSplit(i, j);
+            Resolved left = evaluateChain(
+                chainOrder, resolved, i, s, null, 1.0f, 0.0f);
+            Resolved right = evaluateChain(
+                chainOrder, resolved, s + 1, j, null, 1.0f, 0.0f);
+            boolean owned = false;
+            if (target == null)
+            {
+                target = allocate(left.rows(), right.columns());
+                owned = true;
+            }
+            multiply(left, right, target, alpha, beta);
+            if (left.owned && i != s)
+            {
+                release(left.operand);
+            }
+            if (right.owned && s + 1 != j)
+            {
+                release(right.operand);
+            }
+            return new Resolved(target, false, owned);
+        }
+
+        /**
+         * Add the step for computing
+         * <code>C = alpha * a * b + beta * C</code>
+         *
+         * @param a The left operand
+         * @param b The right operand
+         * @param C The target
+         * @param alpha The factor of the product
+         * @param beta The factor of the target
+         */
+        private void multiply(Resolved a, Resolved b, Operand C,
+            float alpha, float beta)
+        {
+            Operand A = a.operand;
+            Operand B = b.operand;
+            if (b.columns() == 1)
+            {
+                steps.add(new Step(Operation.GEMV, a.trans(), clblasNoTrans,
+                    A.rows, A.columns, 0, alpha, A, B, beta, C));
+            }
+            else if (a.rows() == 1)
+            {
+                int trans = b.transposed ? clblasNoTrans : clblasTrans;
+                steps.add(new Step(Operation.GEMV, trans, clblasNoTrans,
+                    B.rows, B.columns, 0, alpha, B, A, beta, C));
+            }
+            else
+            {
+                steps.add(new Step(Operation.GEMM, a.trans(), b.trans(),
+                    a.rows(), b.columns(), a.columns(),
+                    alpha, A, B, beta, C));
+            }
+        }
+
+        /**
+         * Add the step for computing <code>C = alpha * a + beta * C</code>
+         *
+         * @param C The target
+         * @param a The operand
+         * @param alpha The factor of the operand
+         * @param beta The factor of the target
+         */
+        private void add(Operand C, Resolved a, float alpha, float beta)
+        {
+            steps.add(new Step(Operation.ADD, a.trans(), clblasNoTrans,
+                C.rows, C.columns, 0, alpha, a.operand, null, beta, C));
+        }
+
+        /**
+         * Returns a temporary matrix with the given size, reusing one
+         * that is currently not used if possible
+         *
+         * @param rows The number of rows
+         * @param columns The number of columns
+         * @return The operand for the temporary matrix
+         */
+        private Operand allocate(long rows, long columns)
+        {
+            for (int i = 0; i < free.size(); i++)
+            {
+                int index = free.get(i);
+                long size[] = temporaries.get(index);
+                if (size[0] == rows && size[1] == columns)
+                {
+                    free.remove(i);
+                    return new Operand(index, rows, columns);
+                }
+            }
+            temporaries.add(new long[] { rows, columns });
+            return new Operand(temporaries.size() - 1, rows, columns);
+        }
+
+        /**
+         * Mark the given temporary matrix as not being used any more
+         *
+         * @param temporary The operand of the temporary matrix
+         */
+        private void release(Operand temporary)
+        {
+            free.add(temporary.temporary);
+        }
+    }
+
+    /**
+     * The {@link clblasOrder} of all matrices
+     */
+    private final int order;
+
+    /**
+     * The steps
+     */
+    private final List<Step> steps;
+
+    /**
+     * The sizes of the temporary matrices
+     */
+    private final List<long[]> temporaries;
+
+    /**
+     * The number of floating point operations
+     */
+    private final double flops;
+
+    /**
+     * The number of bytes that are read and written
+     */
+    private final double bytes;
+
+    /**
+     * The number of floating point operations that have been saved
+     * by the order of the products
+     */
+    private final double savedFlops;
+
+    /**
+     * The estimated time that has been saved by the order of the
+     * products
+     */
+    private final double savedCost;
+
+    /**
+     * The cost model
+     */
+    private final MatrixCostModel costModel;
+
+    /**
+     * Creates a new plan
+     *
+     * @param order The order
+     * @param costModel The cost model
+     * @param planner The planner that created the steps
+     */
+    private MatrixPlan(int order, MatrixCostModel costModel, Planner planner)
+    {
+        this.order = order;
+        this.costModel = costModel;
+        this.steps = Collections.unmodifiableList(
+            new ArrayList<Step>(planner.steps));
+        this.temporaries = Collections.unmodifiableList(
+            new ArrayList<long[]>(planner.temporaries));
+        double f = 0;
+        double b = 0;
+        for (Step step : steps)
+        {
+            f += step.getFlops();
+            b += step.getBytes();
+        }
+        this.flops = f;
+        this.bytes = b;
+        this.savedFlops = planner.savedFlops;
+        this.savedCost = planner.savedCost;
+    }
+
+    /**
+     * Returns the number of BLAS calls and kernels of this plan
+     *
+     * @return The number of calls
+     */
+    public int getCallCount()
+    {
+        return steps.size();
+    }
+
+    /**
+     * Returns the number of temporary matrices of this plan
+     *
+     * @return The number of temporary matrices
+     */
+    public int getTemporaryCount()
+    {
+        return temporaries.size();
+    }
+
+    /**
+     * Returns the total size of the temporary matrices of this plan, in
+     * bytes
+     *
+     * @return The size of the temporary matrices
+     */
+    public long getTemporaryBytes()
+    {
+        long bytes = 0;
+        for (long size[] : temporaries)
+        {
+            bytes += size[0] * size[1] * Sizeof.cl_float;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the number of floating point operations of this plan
+     *
+     * @return The number of operations
+     */
+    public double getFlops()
+    {
+        return flops;
+    }
+
+    /**
+     * Returns the number of floating point operations that this plan
+     * would require if all products were evaluated from left to right
+     *
+     * @return The number of operations
+     */
+    public double getLeftToRightFlops()
+    {
+        return flops + savedFlops;
+    }
+
+    /**
+     * Returns the number of bytes that are read and written by the
+     * calls of this plan in device memory
+     *
+     * @return The number of bytes
+     */
+    public double getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * Returns the cost model that this plan was created with
+     *
+     * @return The cost model
+     */
+    public MatrixCostModel getCostModel()
+    {
+        return costModel;
+    }
+
+    /**
+     * Returns the time that the calls of this plan are estimated to
+     * take according to its {@link #getCostModel() cost model}
+     *
+     * @return The estimated time, in seconds
+     */
+    public double getEstimatedSeconds()
+    {
+        return costModel.estimateSeconds(flops, bytes);
+    }
+
+    /**
+     * Returns the time that the calls of this plan are estimated to
+     * take if all products were evaluated from left to right
+     *
+     * @return The estimated time, in seconds
+     */
+    public double getLeftToRightEstimatedSeconds()
+    {
+        return getEstimatedSeconds() + savedCost;
+    }
+
+    /**
+     * Returns the steps of this plan
+     *
+     * @return The steps
+     */
+    List<Step> getSteps()
+    {
+        return steps;
+    }
+
+    /**
+     * Execute this plan with the given operations. The temporary
+     * matrices are created before the first step, and released after
+     * the last step was issued.
+     *
+     * @param operations The operations
+     */
+    void execute(MatrixOperations operations)
+    {
+        DeviceMatrix matrices[] = new DeviceMatrix[temporaries.size()];
+        try
+        {
+            for (int i = 0; i < matrices.length; i++)
+            {
+                long size[] = temporaries.get(i);
+                matrices[i] = operations.createTemporary(
+                    order, size[0], size[1]);
+            }
+            for (Step step : steps)
+            {
+                step.execute(operations, order, matrices);
+            }
+        }
+        finally
+        {
+            for (DeviceMatrix matrix : matrices)
+            {
+                if (matrix != null)
+                {
+                    operations.releaseTemporary(matrix);
+                }
+            }
+        }
+    }
+
+    /**
+     * Expand the given expression into a sum of terms
+     *
+     * @param e The expression
+     * @param transposed Whether the expression is transposed
+     * @return The terms
+     */
+    private static List<Term> expand(MatrixExpression e, boolean transposed)
+    {
+        List<Term> result = new ArrayList<Term>();
+        switch (e.kind)
+        {
+            case MATRIX:
+                result.add(new Term(1.0f, Collections.singletonList(
+                    new Factor(e, transposed))));
+                break;
+            case SCALED:
+                for (Term term : expand(e.left, transposed))
+                {
+                    result.add(new Term(term.scale * e.factor, term.factors));
+                }
+                break;
+            case TRANSPOSED:
+                return expand(e.left, !transposed);
+            case SUM:
+                result.addAll(expand(e.left, transposed));
+                result.addAll(expand(e.right, transposed));
+                break;
+            default:
+                Term first = expandProduct(
+                    transposed ? e.right : e.left, transposed);
+                Term second = expandProduct(
+                    transposed ? e.left : e.right, transposed);
+                List<Factor> factors = new ArrayList<Factor>(first.factors);
+                factors.addAll(second.factors);
+                result.add(new Term(first.scale * second.scale, factors));
+                break;
+        }
+        return result;
+    }
+
+    /**
+     * Expand the given operand of a product into a single term. If the
+     * operand is a sum, then it is kept as a single factor.
+     *
+     * @param e The expression
+     * @param transposed Whether the expression is transposed
+     * @return The term
+     */
+    private static Term expandProduct(MatrixExpression e, boolean transposed)
+    {
+        List<Term> terms = expand(e, transposed);
+        if (terms.size() == 1)
+        {
+            return terms.get(0);
+        }
+        return new Term(1.0f, Collections.singletonList(
+            new Factor(e, transposed)));
+    }
+
+    /**
+     * Returns whether the given factor is the given target matrix,
+     * without being transposed
+     *
+     * @param factor The factor
+     * @param target The target
+     * @return Whether the factor is the target
+     */
+    private static boolean isTarget(Factor factor, Operand target)
+    {
+        MatrixExpression e = factor.expression;
+        return target.matrix != null && !factor.transposed &&
+            e.kind == MatrixExpression.Kind.MATRIX &&
+            isSameMatrix(e.matrix, target.matrix);
+    }
+
+    /**
+     * Returns whether the given target matrix is used in the given terms
+     * in any other way than being added without being transposed, so
+     * that the result has to be computed in a temporary matrix
+     *
+     * @param terms The terms
+     * @param target The target matrix
+     * @return Whether the target is aliased
+     */
+    private static boolean isAliased(List<Term> terms, DeviceMatrix target)
+    {
+        Operand operand = new Operand(target);
+        for (Term term : terms)
+        {
+            if (term.factors.size() == 1 &&
+                isTarget(term.factors.get(0), operand))
+            {
+                continue;
+            }
+            for (Factor factor : term.factors)
+            {
+                if (uses(factor.expression, target))
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the given expression uses the memory object of
+     * the given matrix
+     *
+     * @param e The expression
+     * @param matrix The matrix
+     * @return Whether the matrix is used
+     */
+    private static boolean uses(MatrixExpression e, DeviceMatrix matrix)
+    {
+        if (e == null)
+        {
+            return false;
+        }
+        if (e.kind == MatrixExpression.Kind.MATRIX)
+        {
+            return e.matrix.getMem() == matrix.getMem();
+        }
+        return uses(e.left, matrix) || uses(e.right, matrix);
+    }
+
+    /**
+     * Returns whether the given matrices describe the same elements
+     *
+     * @param a The first matrix
+     * @param b The second matrix
+     * @return Whether the matrices are the same
+     */
+    private static boolean isSameMatrix(DeviceMatrix a, DeviceMatrix b)
+    {
+        return a == b || (a.getMem() == b.getMem() &&
+            a.getOffset() == b.getOffset() && a.getLd() == b.getLd() &&
+            a.getRows() == b.getRows() && a.getColumns() == b.getColumns());
+    }
+
+    /**
+     * Returns the increment of the given vector, which is a matrix with
+     * a single row or column
+     *
+     * @param vector The vector
+     * @return The increment
+     */
+    static long increment(DeviceMatrix vector)
+    {
+        boolean rowMajor = vector.getOrder() == clblasRowMajor;
+        if (vector.getRows() == 1)
+        {
+            return rowMajor ? 1 : vector.getLd();
+        }
+        return rowMajor ? vector.getLd() : 1;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("MatrixPlan[");
+        for (int i = 0; i < steps.size(); i++)
+        {
+            if (i > 0)
+            {
+                sb.append("; ");
+            }
+            sb.append(steps.get(i));
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+}
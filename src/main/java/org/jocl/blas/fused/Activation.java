@@ -0,0 +1,161 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.fused;
+
+/**
+ * Elementwise activation functions for a {@link GemmEpilogue}. <br>
+ * <br>
+ * Each activation function is available as a Java implementation, for
+ * reference computations on the host, and as an OpenCL expression for 
+ * generated kernels. Both implementations propagate NaN values.
+ */
+public enum Activation
+{
+    /**
+     * The identity, f(x) = x
+     */
+    IDENTITY
+    {
+        @Override
+        public float apply(float x)
+        {
+            return x;
+        }
+
+        @Override
+        String toOpenCL(String x)
+        {
+            return x;
+        }
+    },
+    
+    /**
+     * The rectified linear unit, f(x) = max(x, 0). A NaN is propagated.
+     */
+    RELU
+    {
+        @Override
+        public float apply(float x)
+        {
+            return x < 0.0f ? 0.0f : x;
+        }
+
+        @Override
+        String toOpenCL(String x)
+        {
+            // Not fmax, which would return 0 for NaN
+            return "(" + x + " < 0.0f ? 0.0f : " + x + ")";
+        }
+    },
+    
+    /**
+     * The Gaussian error linear unit, in the common tanh approximation, 
+     * f(x) = 0.5 * x * (1 + tanh(sqrt(2/pi) * (x + 0.044715 * x^3)))
+     */
+    GELU
+    {
+        @Override
+        public float apply(float x)
+        {
+            double t = Math.tanh(
+                GELU_FACTOR * (x + GELU_CUBIC_FACTOR * x * x * x));
+            return (float) (0.5 * x * (1.0 + t));
+        }
+
+        @Override
+        String toOpenCL(String x)
+        {
+            return "(0.5f * " + x + " * (1.0f + tanh(" + GELU_FACTOR + 
+                "f * (" + x + " + " + GELU_CUBIC_FACTOR + "f * " + 
+                x + " * " + x + " * " + x + "))))";
+        }
+    },
+    
+    /**
+     * The logistic sigmoid, f(x) = 1 / (1 + exp(-x))
+     */
+    SIGMOID
+    {
+        @Override
+        public float apply(float x)
+        {
+            return (float) (1.0 / (1.0 + Math.exp(-x)));
+        }
+
+        @Override
+        String toOpenCL(String x)
+        {
+            return "(1.0f / (1.0f + exp(-" + x + ")))";
+        }
+    },
+    
+    /**
+     * The hyperbolic tangent, f(x) = tanh(x)
+     */
+    TANH
+    {
+        @Override
+        public float apply(float x)
+        {
+            return (float) Math.tanh(x);
+        }
+
+        @Override
+        String toOpenCL(String x)
+        {
+            return "tanh(" + x + ")";
+        }
+    };
+    
+    /**
+     * The factor sqrt(2/pi) of the GELU approximation
+     */
+    private static final float GELU_FACTOR = 0.7978846f;
+    
+    /**
+     * The factor for the cubic term of the GELU approximation
+     */
+    private static final float GELU_CUBIC_FACTOR = 0.044715f;
+    
+    /**
+     * Apply this activation function to the given value
+     * 
+     * @param x The value
+     * @return The result
+     */
+    public abstract float apply(float x);
+    
+    /**
+     * Returns the OpenCL expression that applies this activation function
+     * to the given variable. The variable may occur multiple times in 
+     * the expression.
+     * 
+     * @param x The variable name
+     * @return The expression
+     */
+    abstract String toOpenCL(String x);
+}
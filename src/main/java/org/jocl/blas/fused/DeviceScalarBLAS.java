@@ -0,0 +1,340 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.fused;
+
+import static org.jocl.blas.fused.VectorExpression.scalar;
+import static org.jocl.blas.fused.VectorExpression.vector;
+
+import org.jocl.CLException;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.kernel.CachedKernel;
+import org.jocl.blas.kernel.KernelCache;
+
+/**
+ * Level 1 operations whose scalar factors reside in device memory. <br>
+ * <br>
+ * Functions like {@link org.jocl.blas.CLBLAS#clblasSdot}, 
+ * {@link org.jocl.blas.CLBLAS#clblasSnrm2} and 
+ * {@link org.jocl.blas.CLBLAS#clblasiSamax} write their result into a
+ * <code>cl_mem</code>. The methods of this class consume such results 
+ * directly, with small generated kernels that read the scalar when they
+ * are executed. So a sequence of operations where each factor depends 
+ * on the result of a previous reduction can be enqueued without reading
+ * the result back to the host, and without a synchronization point. 
+ * <br>
+ * <br>
+ * Operations that are not covered here can be expressed as a 
+ * {@link FusedChain} and executed with 
+ * {@link FusedChainExecutor#executeWithDeviceScalars}. For example, the
+ * update of the solution and the residual in the conjugate gradient 
+ * method, with <code>alpha = rr / pAp</code>, is
+ * <pre><code>
+ * VectorExpression alpha = scalar("rr").dividedBy(scalar("pAp"));
+ * FusedChain update = new FusedChain.Builder()
+ *     .assign("x", vector("x").plus(alpha.times(vector("p"))))
+ *     .assign("r", vector("r").minus(alpha.times(vector("Ap"))))
+ *     .build();
+ * </code></pre>
+ * This class is thread-safe.
+ */
+public final class DeviceScalarBLAS
+{
+    /**
+     * The chain for x = alpha * x
+     */
+    private static final FusedChain SCAL = new FusedChain.Builder()
+        .assign("x", scalar("alpha").times(vector("x")))
+        .build();
+
+    /**
+     * The chain for x = x / alpha
+     */
+    private static final FusedChain SCAL_RECIPROCAL = new FusedChain.Builder()
+        .assign("x", vector("x").dividedBy(scalar("alpha")))
+        .build();
+    
+    /**
+     * The chain for y = alpha * x + y
+     */
+    private static final FusedChain AXPY = new FusedChain.Builder()
+        .assign("y", scalar("alpha").times(vector("x")).plus(vector("y")))
+        .build();
+
+    /**
+     * The chain for y = -alpha * x + y
+     */
+    private static final FusedChain AXPY_NEGATED = new FusedChain.Builder()
+        .assign("y", vector("y").minus(scalar("alpha").times(vector("x"))))
+        .build();
+    
+    /**
+     * The chain for alpha = numerator / denominator
+     */
+    private static final FusedChain QUOTIENT = new FusedChain.Builder()
+        .assign("alpha", vector("numerator").dividedBy(vector("denominator")))
+        .build();
+    
+    /**
+     * The name of the kernel for selecting an element
+     */
+    private static final String SELECT_KERNEL_NAME = "selectElement";
+    
+    /**
+     * The executor for the chains
+     */
+    private final FusedChainExecutor executor;
+    
+    /**
+     * The context
+     */
+    private final cl_context context;
+    
+    /**
+     * The kernel cache
+     */
+    private final KernelCache kernelCache;
+    
+    /**
+     * Creates a new instance for the given context, using the shared
+     * {@link KernelCache#getInstance() kernel cache}
+     * 
+     * @param context The context
+     */
+    public DeviceScalarBLAS(cl_context context)
+    {
+        this(context, KernelCache.getInstance());
+    }
+
+    /**
+     * Creates a new instance for the given context, using the given 
+     * kernel cache
+     * 
+     * @param context The context
+     * @param kernelCache The kernel cache
+     */
+    public DeviceScalarBLAS(cl_context context, KernelCache kernelCache)
+    {
+        this.context = context;
+        this.kernelCache = kernelCache;
+        this.executor = new FusedChainExecutor(context, kernelCache);
+    }
+    
+    /**
+     * Scales a vector by a scalar from device memory: 
+     * <code>x = alpha * x</code>. 
+     * See {@link org.jocl.blas.CLBLAS#clblasSscal}.
+     * 
+     * @param commandQueue The command queue
+     * @param N The number of elements
+     * @param alpha The buffer containing alpha
+     * @param offAlpha The offset of alpha, in elements
+     * @param X The vector X
+     * @param offx The offset of X, in elements
+     * @param incx The increment of X
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the execution. May be <code>null</code>.
+     * @return The OpenCL status
+     * @throws CLException If the kernel can not be compiled
+     */
+    public int sscal(cl_command_queue commandQueue, long N, 
+        cl_mem alpha, long offAlpha, cl_mem X, long offx, int incx, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        return executor.executeWithDeviceScalars(commandQueue, SCAL, N, 
+            new cl_mem[] { X }, new long[] { offx }, new int[] { incx }, 
+            new cl_mem[] { alpha }, new long[] { offAlpha }, 
+            numEventsInWaitList, eventWaitList, event);
+    }
+
+    /**
+     * Divides a vector by a scalar from device memory: 
+     * <code>x = x / alpha</code>. This may, for example, be used for 
+     * normalizing a vector with the result of 
+     * {@link org.jocl.blas.CLBLAS#clblasSnrm2}.
+     * 
+     * @param commandQueue The command queue
+     * @param N The number of elements
+     * @param alpha The buffer containing alpha
+     * @param offAlpha The offset of alpha, in elements
+     * @param X The vector X
+     * @param offx The offset of X, in elements
+     * @param incx The increment of X
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the execution. May be <code>null</code>.
+     * @return The OpenCL status
+     * @throws CLException If the kernel can not be compiled
+     */
+    public int sscalReciprocal(cl_command_queue commandQueue, long N, 
+        cl_mem alpha, long offAlpha, cl_mem X, long offx, int incx, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        return executor.executeWithDeviceScalars(commandQueue, 
+            SCAL_RECIPROCAL, N, 
+            new cl_mem[] { X }, new long[] { offx }, new int[] { incx }, 
+            new cl_mem[] { alpha }, new long[] { offAlpha }, 
+            numEventsInWaitList, eventWaitList, event);
+    }
+    
+    /**
+     * Scale vector X by a scalar from device memory and add it to Y: 
+     * <code>y = alpha * x + y</code>, or, if <code>negate</code> is 
+     * <code>true</code>, <code>y = -alpha * x + y</code>.
+     * See {@link org.jocl.blas.CLBLAS#clblasSaxpy}.
+     * 
+     * @param commandQueue The command queue
+     * @param N The number of elements
+     * @param alpha The buffer containing alpha
+     * @param offAlpha The offset of alpha, in elements
+     * @param negate Whether alpha should be negated
+     * @param X The vector X
+     * @param offx The offset of X, in elements
+     * @param incx The increment of X
+     * @param Y The vector Y
+     * @param offy The offset of Y, in elements
+     * @param incy The increment of Y
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the execution. May be <code>null</code>.
+     * @return The OpenCL status
+     * @throws CLException If the kernel can not be compiled
+     */
+    public int saxpy(cl_command_queue commandQueue, long N, 
+        cl_mem alpha, long offAlpha, boolean negate, 
+        cl_mem X, long offx, int incx, cl_mem Y, long offy, int incy, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        return executor.executeWithDeviceScalars(commandQueue, 
+            negate ? AXPY_NEGATED : AXPY, N, new cl_mem[] { X, Y }, 
+            new long[] { offx, offy }, new int[] { incx, incy }, 
+            new cl_mem[] { alpha }, new long[] { offAlpha }, 
+            numEventsInWaitList, eventWaitList, event);
+    }
+    
+    /**
+     * Computes the quotient of two scalars in device memory, and stores 
+     * it in device memory: <code>alpha = numerator / denominator</code>. 
+     * This is typically used for computing the step size of an 
+     * iterative method from the results of two dot products.
+     * 
+     * @param commandQueue The command queue
+     * @param numerator The buffer containing the numerator
+     * @param offNumerator The offset of the numerator, in elements
+     * @param denominator The buffer containing the denominator
+     * @param offDenominator The offset of the denominator, in elements
+     * @param alpha The buffer for the result
+     * @param offAlpha The offset of the result, in elements
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the execution. May be <code>null</code>.
+     * @return The OpenCL status
+     * @throws CLException If the kernel can not be compiled
+     */
+    public int squotient(cl_command_queue commandQueue, 
+        cl_mem numerator, long offNumerator, 
+        cl_mem denominator, long offDenominator, 
+        cl_mem alpha, long offAlpha, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        return executor.execute(commandQueue, QUOTIENT, 1, 
+            new cl_mem[] { numerator, denominator, alpha }, 
+            new long[] { offNumerator, offDenominator, offAlpha }, 
+            new int[] { 1, 1, 1 }, new float[0], 
+            numEventsInWaitList, eventWaitList, event);
+    }
+    
+    /**
+     * Copies the element of X at the index that was computed with 
+     * {@link org.jocl.blas.CLBLAS#clblasiSamax} into a scalar in device
+     * memory, so that it may be used as the factor of subsequent 
+     * operations. The index is read as an <code>unsigned int</code>, 
+     * and is 1-based, as in the reference BLAS. If it is out of range, 
+     * then it is clamped to the valid range.
+     * 
+     * @param commandQueue The command queue
+     * @param N The number of elements
+     * @param iMax The buffer containing the index
+     * @param offiMax The offset of the index, in elements
+     * @param X The vector X
+     * @param offx The offset of X, in elements
+     * @param incx The increment of X. Must be positive.
+     * @param absolute Whether the absolute value should be stored
+     * @param result The buffer for the result
+     * @param offResult The offset of the result, in elements
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the execution. May be <code>null</code>.
+     * @return The OpenCL status
+     * @throws IllegalArgumentException If the increment is not positive
+     * @throws CLException If the kernel can not be compiled
+     */
+    public int selectElement(cl_command_queue commandQueue, long N, 
+        cl_mem iMax, long offiMax, cl_mem X, long offx, int incx, 
+        boolean absolute, cl_mem result, long offResult, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        if (incx <= 0)
+        {
+            throw new IllegalArgumentException(
+                "The increment must be positive, but is " + incx);
+        }
+        CachedKernel kernel = kernelCache.getKernel(context, 
+            createSelectKernelSource(absolute), SELECT_KERNEL_NAME);
+        return kernel.enqueue(commandQueue, new long[] { 1 }, null, 
+            numEventsInWaitList, eventWaitList, event, 
+            N, iMax, offiMax, X, offx, incx, result, offResult);
+    }
+    
+    /**
+     * Create the source code of the kernel for selecting an element
+     * 
+     * @param absolute Whether the absolute value should be stored
+     * @return The source code
+     */
+    private static String createSelectKernelSource(boolean absolute)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("__kernel void ").append(SELECT_KERNEL_NAME).append("(\n");
+        sb.append("    const long n,\n");
+        sb.append("    __global const uint *index, const long offIndex,\n");
+        sb.append("    __global const float *x, const long offx, ");
+        sb.append("const int incx,\n");
+        sb.append("    __global float *result, const long offResult)\n");
+        sb.append("{\n");
+        sb.append("    long i = (long)index[offIndex] - 1;\n");
+        sb.append("    i = clamp(i, 0L, n - 1);\n");
+        sb.append("    const float value = x[offx + i * incx];\n");
+        sb.append("    result[offResult] = ");
+        sb.append(absolute ? "fabs(value)" : "value").append(";\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+}
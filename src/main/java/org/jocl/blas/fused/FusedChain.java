@@ -0,0 +1,830 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.fused;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A chain of elementwise assignments to vectors, like the sequences of
+ * SCAL, AXPY and COPY operations that are used in iterative methods.
+ * For example, the chain 
+ * <pre><code>
+ * y = a*x + b*y;
+ * z = y;
+ * </code></pre>
+ * is created with
+ * <pre><code>
+ * FusedChain chain = new FusedChain.Builder()
+ *     .assign("y", scalar("a").times(vector("x"))
+ *         .plus(scalar("b").times(vector("y"))))
+ *     .assign("z", vector("y"))
+ *     .build();
+ * </code></pre>
+ * The assignments are executed in one pass over the vectors: Each 
+ * element of a vector is read at most once, all assignments are applied
+ * to the elements in the order in which they have been added, and each
+ * element of an assigned vector is written once. This is equivalent to 
+ * executing the assignments one after another, as long as the vectors 
+ * that are bound to different names do not overlap. <br>
+ * <br>
+ * The chain may be executed on the host, with {@link #execute(int, 
+ * float[][], int[], int[], float[])}, or on a device, with a 
+ * {@link FusedChainExecutor}. The OpenCL kernel for the device only 
+ * depends on the shape of the chain: The names of the vectors and 
+ * scalars are replaced by indices, in the order of their first 
+ * appearance. So chains with the same shape share one compiled kernel. 
+ * <br>
+ * <br>
+ * Instances of this class are immutable.
+ */
+public final class FusedChain
+{
+    /**
+     * A builder for {@link FusedChain} instances
+     */
+    public static final class Builder
+    {
+        /**
+         * The names of the assigned vectors
+         */
+        private final List<String> targets = new ArrayList<String>();
+        
+        /**
+         * The assigned expressions
+         */
+        private final List<VectorExpression> values = 
+            new ArrayList<VectorExpression>();
+        
+        /**
+         * Add the assignment of the given expression to the vector with
+         * the given name
+         * 
+         * @param target The name of the vector
+         * @param value The expression
+         * @return This builder
+         * @throws NullPointerException If any argument is 
+         * <code>null</code>
+         */
+        public Builder assign(String target, VectorExpression value)
+        {
+            if (target == null)
+            {
+                throw new NullPointerException("The target is null");
+            }
+            if (value == null)
+            {
+                throw new NullPointerException("The value is null");
+            }
+            targets.add(target);
+            values.add(value);
+            return this;
+        }
+        
+        /**
+         * Create the chain for the assignments that have been added
+         * 
+         * @return The chain
+         * @throws IllegalStateException If no assignments have been added
+         * @throws IllegalArgumentException If the same name is used for
+         * a vector and a scalar
+         */
+        public FusedChain build()
+        {
+            if (targets.isEmpty())
+            {
+                throw new IllegalStateException("No assignments were added");
+            }
+            return new FusedChain(targets, values);
+        }
+    }
+    
+    /**
+     * The name of the generated kernel function
+     */
+    public static final String KERNEL_NAME = "fusedChain";
+    
+    // The operation codes for the evaluation on the host
+    private static final int OP_VECTOR = 0;
+    private static final int OP_SCALAR = 1;
+    private static final int OP_CONSTANT = 2;
+    private static final int OP_ADD = 3;
+    private static final int OP_SUBTRACT = 4;
+    private static final int OP_MULTIPLY = 5;
+    private static final int OP_DIVIDE = 6;
+    private static final int OP_SAFE_DIVIDE = 7;
+    private static final int OP_NEGATE = 8;
+    private static final int OP_SQRT = 9;
+    
+    /**
+     * The indices of the vectors, in the order of their first appearance
+     */
+    private final Map<String, Integer> vectorIndices;
+    
+    /**
+     * The indices of the scalars, in the order of their first appearance
+     */
+    private final Map<String, Integer> scalarIndices;
+    
+    /**
+     * The constants
+     */
+    private final float constants[];
+    
+    /**
+     * The index of the target vector of each assignment
+     */
+    private final int targets[];
+    
+    /**
+     * The postfix code for the value of each assignment
+     */
+    private final int codes[][];
+    
+    /**
+     * The maximum stack depth for evaluating the codes
+     */
+    private final int maximumStackDepth;
+    
+    /**
+     * Whether each vector is read before it is assigned
+     */
+    private final boolean loaded[];
+    
+    /**
+     * Whether each vector is assigned
+     */
+    private final boolean stored[];
+    
+    /**
+     * The string representation of this chain
+     */
+    private final String string;
+    
+    /**
+     * The OpenCL source code of the kernel
+     */
+    private final String kernelSource;
+    
+    /**
+     * The OpenCL source code of the kernel that reads the scalars from 
+     * device memory
+     */
+    private final String deviceScalarKernelSource;
+    
+    /**
+     * Creates a new chain for the given assignments
+     * 
+     * @param targetNames The names of the target vectors
+     * @param values The assigned expressions
+     * @throws IllegalArgumentException If the same name is used for
+     * a vector and a scalar
+     */
+    FusedChain(List<String> targetNames, List<VectorExpression> values)
+    {
+        this.vectorIndices = new LinkedHashMap<String, Integer>();
+        this.scalarIndices = new LinkedHashMap<String, Integer>();
+        List<Float> constantList = new ArrayList<Float>();
+        List<Boolean> loadedList = new ArrayList<Boolean>();
+        List<Boolean> storedList = new ArrayList<Boolean>();
+        int n = targetNames.size();
+        this.targets = new int[n];
+        this.codes = new int[n][];
+        StringBuilder sb = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+        int maxDepth = 0;
+        for (int i = 0; i < n; i++)
+        {
+            VectorExpression value = values.get(i);
+            List<Integer> code = new ArrayList<Integer>();
+            int depth = compile(value, code, constantList, 
+                loadedList, storedList);
+            maxDepth = Math.max(maxDepth, depth);
+            this.codes[i] = toArray(code);
+            
+            String target = targetNames.get(i);
+            int t = indexOf(vectorIndices, target, 
+                loadedList, storedList);
+            storedList.set(t, true);
+            this.targets[i] = t;
+            
+            sb.append(target).append(" = ").append(value).append(";");
+            if (i < n - 1)
+            {
+                sb.append(" ");
+            }
+            body.append("    t").append(t).append(" = ");
+            appendSource(value, body);
+            body.append(";\n");
+        }
+        for (String name : scalarIndices.keySet())
+        {
+            if (vectorIndices.containsKey(name))
+            {
+                throw new IllegalArgumentException(
+                    "The name " + name + " is used for a vector and a scalar");
+            }
+        }
+        this.constants = new float[constantList.size()];
+        for (int i = 0; i < constants.length; i++)
+        {
+            constants[i] = constantList.get(i);
+        }
+        this.loaded = toBooleanArray(loadedList);
+        this.stored = toBooleanArray(storedList);
+        this.maximumStackDepth = maxDepth;
+        this.string = sb.toString();
+        this.kernelSource = createKernelSource(body.toString(), false);
+        this.deviceScalarKernelSource = 
+            createKernelSource(body.toString(), true);
+    }
+    
+    /**
+     * Compile the given expression into postfix code, and register the
+     * vectors, scalars and constants that it refers to
+     * 
+     * @param e The expression
+     * @param code The code
+     * @param constantList The constants
+     * @param loadedList Whether each vector has to be loaded
+     * @param storedList Whether each vector is stored
+     * @return The stack depth that is required for the evaluation
+     */
+    private int compile(VectorExpression e, List<Integer> code, 
+        List<Float> constantList, 
+        List<Boolean> loadedList, List<Boolean> storedList)
+    {
+        switch (e.kind)
+        {
+            case VECTOR:
+            {
+                int index = indexOf(vectorIndices, e.name, 
+                    loadedList, storedList);
+                if (!storedList.get(index))
+                {
+                    loadedList.set(index, true);
+                }
+                code.add(OP_VECTOR);
+                code.add(index);
+                return 1;
+            }
+            case SCALAR:
+            {
+                code.add(OP_SCALAR);
+                code.add(indexOf(scalarIndices, e.name, null, null));
+                return 1;
+            }
+            case CONSTANT:
+            {
+                code.add(OP_CONSTANT);
+                code.add(constantList.size());
+                constantList.add(e.value);
+                return 1;
+            }
+            case NEGATION:
+            case SQUARE_ROOT:
+            {
+                int depth = compile(e.left, code, constantList, 
+                    loadedList, storedList);
+                code.add(e.kind == VectorExpression.Kind.NEGATION ? 
+                    OP_NEGATE : OP_SQRT);
+                return depth;
+            }
+            default:
+            {
+                int leftDepth = compile(e.left, code, constantList, 
+                    loadedList, storedList);
+                int rightDepth = compile(e.right, code, constantList, 
+                    loadedList, storedList);
+                code.add(binaryOperation(e.kind));
+                return Math.max(leftDepth, rightDepth + 1);
+            }
+        }
+    }
+    
+    /**
+     * Returns the operation code for the given kind of binary expression
+     * 
+     * @param kind The kind
+     * @return The operation code
+     */
+    private static int binaryOperation(VectorExpression.Kind kind)
+    {
+        switch (kind)
+        {
+            case SUM:
+                return OP_ADD;
+            case DIFFERENCE:
+                return OP_SUBTRACT;
+            case PRODUCT:
+                return OP_MULTIPLY;
+            case QUOTIENT:
+                return OP_DIVIDE;
+            default:
+                return OP_SAFE_DIVIDE;
+        }
+    }
+    
+    /**
+     * Returns the index of the given name in the given map, adding it
+     * if it is not contained yet
+     * 
+     * @param indices The indices
+     * @param name The name
+     * @param loadedList The list of loaded flags, or <code>null</code>
+     * @param storedList The list of stored flags, or <code>null</code>
+     * @return The index
+     */
+    private static int indexOf(Map<String, Integer> indices, String name, 
+        List<Boolean> loadedList, List<Boolean> storedList)
+    {
+        Integer index = indices.get(name);
+        if (index == null)
+        {
+            index = indices.size();
+            indices.put(name, index);
+            if (loadedList != null)
+            {
+                loadedList.add(false);
+                storedList.add(false);
+            }
+        }
+        return index;
+    }
+    
+    /**
+     * Append the OpenCL source code for the given expression 
+     * 
+     * @param e The expression
+     * @param sb The string builder
+     */
+    private void appendSource(VectorExpression e, StringBuilder sb)
+    {
+        switch (e.kind)
+        {
+            case VECTOR:
+                sb.append("t").append(vectorIndices.get(e.name));
+                break;
+            case SCALAR:
+                sb.append("s").append(scalarIndices.get(e.name));
+                break;
+            case CONSTANT:
+                sb.append(toLiteral(e.value));
+                break;
+            case NEGATION:
+                sb.append("(-");
+                appendSource(e.left, sb);
+                sb.append(")");
+                break;
+            case SQUARE_ROOT:
+                sb.append("sqrt(");
+                appendSource(e.left, sb);
+                sb.append(")");
+                break;
+            case SAFE_QUOTIENT:
+                sb.append("(");
+                appendSource(e.right, sb);
+                sb.append(" != 0.0f ? ");
+                appendSource(e.left, sb);
+                sb.append(" / ");
+                appendSource(e.right, sb);
+                sb.append(" : 0.0f)");
+                break;
+            default:
+                sb.append("(");
+                appendSource(e.left, sb);
+                sb.append(e.kind == VectorExpression.Kind.SUM ? " + " : 
+                    e.kind == VectorExpression.Kind.DIFFERENCE ? " - " : 
+                    e.kind == VectorExpression.Kind.PRODUCT ? " * " : " / ");
+                appendSource(e.right, sb);
+                sb.append(")");
+                break;
+        }
+    }
+    
+    /**
+     * Returns the OpenCL literal for the given value
+     * 
+     * @param value The value
+     * @return The literal
+     */
+    static String toLiteral(float value)
+    {
+        if (Float.isNaN(value))
+        {
+            return "NAN";
+        }
+        if (Float.isInfinite(value))
+        {
+            return value > 0 ? "INFINITY" : "(-INFINITY)";
+        }
+        // Hexadecimal literals represent the value exactly
+        return "(" + Float.toHexString(value) + "f)";
+    }
+    
+    /**
+     * Create the source code of the kernel with the given body
+     * 
+     * @param body The assignments of the kernel body
+     * @param deviceScalars Whether the scalars are read from device 
+     * memory
+     * @return The source code
+     */
+    private String createKernelSource(String body, boolean deviceScalars)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("__kernel void ").append(KERNEL_NAME).append("(\n");
+        sb.append("    const long n");
+        for (int v = 0; v < vectorIndices.size(); v++)
+        {
+            sb.append(",\n    __global float *v").append(v);
+            sb.append(", const long off").append(v);
+            sb.append(", const int inc").append(v);
+        }
+        for (int s = 0; s < scalarIndices.size(); s++)
+        {
+            if (deviceScalars)
+            {
+                sb.append(",\n    __global const float *sp").append(s);
+                sb.append(", const long soff").append(s);
+            }
+            else
+            {
+                sb.append(",\n    const float s").append(s);
+            }
+        }
+        sb.append(")\n");
+        sb.append("{\n");
+        sb.append("    const long i = get_global_id(0);\n");
+        sb.append("    if (i >= n)\n");
+        sb.append("    {\n");
+        sb.append("        return;\n");
+        sb.append("    }\n");
+        if (deviceScalars)
+        {
+            for (int s = 0; s < scalarIndices.size(); s++)
+            {
+                sb.append("    const float s").append(s).append(" = sp");
+                sb.append(s).append("[soff").append(s).append("];\n");
+            }
+        }
+        for (int v = 0; v < vectorIndices.size(); v++)
+        {
+            sb.append("    float t").append(v);
+            if (loaded[v])
+            {
+                sb.append(" = v").append(v).append("[").append(index(v));
+                sb.append("]");
+            }
+            sb.append(";\n");
+        }
+        sb.append(body);
+        for (int v = 0; v < vectorIndices.size(); v++)
+        {
+            if (stored[v])
+            {
+                sb.append("    v").append(v).append("[").append(index(v));
+                sb.append("] = t").append(v).append(";\n");
+            }
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+    
+    /**
+     * Returns the OpenCL expression for the index of element i in the
+     * vector with the given index
+     * 
+     * @param v The vector index
+     * @return The index expression
+     */
+    private static String index(int v)
+    {
+        return "off" + v + " + i * inc" + v;
+    }
+    
+    /**
+     * Returns the names of the vectors, in the order in which they have
+     * to be passed to the <code>execute</code> methods
+     * 
+     * @return The names of the vectors
+     */
+    public List<String> getVectorNames()
+    {
+        return Collections.unmodifiableList(
+            new ArrayList<String>(vectorIndices.keySet()));
+    }
+    
+    /**
+     * Returns the names of the scalars, in the order in which they have
+     * to be passed to the <code>execute</code> methods
+     * 
+     * @return The names of the scalars
+     */
+    public List<String> getScalarNames()
+    {
+        return Collections.unmodifiableList(
+            new ArrayList<String>(scalarIndices.keySet()));
+    }
+    
+    /**
+     * Returns the number of vectors whose elements are read by this chain
+     * 
+     * @return The number of vectors that are read
+     */
+    public int getReadCount()
+    {
+        return count(loaded);
+    }
+    
+    /**
+     * Returns the number of vectors whose elements are written by this 
+     * chain
+     * 
+     * @return The number of vectors that are written
+     */
+    public int getWriteCount()
+    {
+        return count(stored);
+    }
+    
+    /**
+     * Returns the OpenCL source code of the kernel for this chain. The
+     * kernel is called {@link #KERNEL_NAME}. Its arguments are the 
+     * number of elements (<code>long</code>), followed by the buffer, 
+     * offset (<code>long</code>) and increment (<code>int</code>) of each
+     * vector, followed by the scalars (<code>float</code>). The offsets
+     * must already be adjusted for negative increments. 
+     * 
+     * @return The kernel source code
+     */
+    public String getKernelSource()
+    {
+        return kernelSource;
+    }
+    
+    /**
+     * Returns the OpenCL source code of the kernel for this chain that
+     * reads the scalars from device memory. The kernel is called 
+     * {@link #KERNEL_NAME}. Its arguments are the same as for the 
+     * {@link #getKernelSource() kernel source}, except that each scalar 
+     * is given as a buffer and an offset (<code>long</code>). 
+     * 
+     * @return The kernel source code
+     */
+    public String getDeviceScalarKernelSource()
+    {
+        return deviceScalarKernelSource;
+    }
+    
+    /**
+     * Execute this chain on the host. <br>
+     * <br>
+     * The vectors and scalars are given in the order of the 
+     * {@link #getVectorNames() vector names} and {@link #getScalarNames() 
+     * scalar names}. As in BLAS, the elements of a vector with a negative
+     * increment are accessed in reverse order, starting at the element
+     * with the largest index.
+     * 
+     * @param n The number of elements
+     * @param vectors The vectors
+     * @param offsets The offsets of the vectors
+     * @param increments The increments of the vectors
+     * @param scalars The scalars
+     * @throws IllegalArgumentException If the number of vectors, offsets,
+     * increments or scalars does not match the chain, or an increment 
+     * is 0
+     */
+    public void execute(int n, float vectors[][], int offsets[], 
+        int increments[], float scalars[])
+    {
+        int vectorCount = vectorIndices.size();
+        validate(vectors.length, offsets.length, increments.length, 
+            scalars.length);
+        if (n <= 0)
+        {
+            return;
+        }
+        int starts[] = new int[vectorCount];
+        for (int v = 0; v < vectorCount; v++)
+        {
+            starts[v] = start(offsets[v], increments[v], n);
+        }
+        float t[] = new float[vectorCount];
+        float stack[] = new float[maximumStackDepth];
+        for (int i = 0; i < n; i++)
+        {
+            for (int v = 0; v < vectorCount; v++)
+            {
+                if (loaded[v])
+                {
+                    t[v] = vectors[v][starts[v] + i * increments[v]];
+                }
+            }
+            for (int a = 0; a < targets.length; a++)
+            {
+                t[targets[a]] = evaluate(codes[a], t, scalars, stack);
+            }
+            for (int v = 0; v < vectorCount; v++)
+            {
+                if (stored[v])
+                {
+                    vectors[v][starts[v] + i * increments[v]] = t[v];
+                }
+            }
+        }
+    }
+    
+    /**
+     * Evaluate the given postfix code
+     * 
+     * @param code The code
+     * @param t The current elements of the vectors
+     * @param scalars The scalars
+     * @param stack The evaluation stack
+     * @return The result
+     */
+    private float evaluate(int code[], float t[], float scalars[], 
+        float stack[])
+    {
+        int sp = 0;
+        int pc = 0;
+        while (pc < code.length)
+        {
+            switch (code[pc++])
+            {
+                case OP_VECTOR:
+                    stack[sp++] = t[code[pc++]];
+                    break;
+                case OP_SCALAR:
+                    stack[sp++] = scalars[code[pc++]];
+                    break;
+                case OP_CONSTANT:
+                    stack[sp++] = constants[code[pc++]];
+                    break;
+                case OP_ADD:
+                    sp--;
+                    stack[sp - 1] += stack[sp];
+                    break;
+                case OP_SUBTRACT:
+                    sp--;
+                    stack[sp - 1] -= stack[sp];
+                    break;
+                case OP_MULTIPLY:
+                    sp--;
+                    stack[sp - 1] *= stack[sp];
+                    break;
+                case OP_DIVIDE:
+                    sp--;
+                    stack[sp - 1] /= stack[sp];
+                    break;
+                case OP_SAFE_DIVIDE:
+                    sp--;
+                    stack[sp - 1] = stack[sp] != 0.0f ? 
+                        stack[sp - 1] / stack[sp] : 0.0f;
+                    break;
+                case OP_NEGATE:
+                    stack[sp - 1] = -stack[sp - 1];
+                    break;
+                default:
+                    stack[sp - 1] = (float) Math.sqrt(stack[sp - 1]);
+                    break;
+            }
+        }
+        return stack[0];
+    }
+    
+    /**
+     * Validate the number of arguments for an execution of this chain
+     * 
+     * @param vectorCount The number of vectors
+     * @param offsetCount The number of offsets
+     * @param incrementCount The number of increments
+     * @param scalarCount The number of scalars
+     * @throws IllegalArgumentException If the numbers do not match
+     */
+    void validate(int vectorCount, int offsetCount, int incrementCount, 
+        int scalarCount)
+    {
+        int expectedVectorCount = vectorIndices.size();
+        if (vectorCount != expectedVectorCount || 
+            offsetCount != expectedVectorCount || 
+            incrementCount != expectedVectorCount)
+        {
+            throw new IllegalArgumentException("Expected " + 
+                expectedVectorCount + " vectors, offsets and increments, " + 
+                "but received " + vectorCount + ", " + offsetCount + 
+                " and " + incrementCount);
+        }
+        if (scalarCount != scalarIndices.size())
+        {
+            throw new IllegalArgumentException("Expected " + 
+                scalarIndices.size() + " scalars, but received " + 
+                scalarCount);
+        }
+    }
+    
+    /**
+     * Returns the index of the first element that is accessed in a 
+     * vector with the given offset and increment, for the given number
+     * of elements
+     * 
+     * @param offset The offset
+     * @param increment The increment
+     * @param n The number of elements
+     * @return The start index
+     * @throws IllegalArgumentException If the increment is 0
+     */
+    static int start(int offset, int increment, int n)
+    {
+        if (increment == 0)
+        {
+            throw new IllegalArgumentException("The increment may not be 0");
+        }
+        return increment > 0 ? offset : offset - (n - 1) * increment;
+    }
+    
+    /**
+     * Returns the number of <code>true</code> values in the given array
+     * 
+     * @param flags The array
+     * @return The number of <code>true</code> values
+     */
+    private static int count(boolean flags[])
+    {
+        int count = 0;
+        for (boolean flag : flags)
+        {
+            if (flag)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Convert the given list into an array
+     * 
+     * @param list The list
+     * @return The array
+     */
+    private static int[] toArray(List<Integer> list)
+    {
+        int result[] = new int[list.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+    
+    /**
+     * Convert the given list into an array
+     * 
+     * @param list The list
+     * @return The array
+     */
+    private static boolean[] toBooleanArray(List<Boolean> list)
+    {
+        boolean result[] = new boolean[list.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return string;
+    }
+}
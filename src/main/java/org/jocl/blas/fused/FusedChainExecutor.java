@@ -0,0 +1,225 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.fused;
+
+import org.jocl.CLException;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.kernel.CachedKernel;
+import org.jocl.blas.kernel.KernelCache;
+
+/**
+ * An executor for {@link FusedChain} instances on an OpenCL device. <br>
+ * <br>
+ * Each chain is executed with a single kernel launch, instead of one
+ * launch of a Level 1 BLAS function for each assignment, so that each
+ * vector is read and written at most once. The kernels are obtained 
+ * from a {@link KernelCache}, where they are identified by the shape 
+ * of the chain. <br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class FusedChainExecutor
+{
+    /**
+     * The context
+     */
+    private final cl_context context;
+    
+    /**
+     * The kernel cache
+     */
+    private final KernelCache kernelCache;
+    
+    /**
+     * Creates a new executor for the given context, using the shared
+     * {@link KernelCache#getInstance() kernel cache}
+     * 
+     * @param context The context
+     */
+    public FusedChainExecutor(cl_context context)
+    {
+        this(context, KernelCache.getInstance());
+    }
+
+    /**
+     * Creates a new executor for the given context, using the given 
+     * kernel cache
+     * 
+     * @param context The context
+     * @param kernelCache The kernel cache
+     */
+    public FusedChainExecutor(cl_context context, KernelCache kernelCache)
+    {
+        this.context = context;
+        this.kernelCache = kernelCache;
+    }
+    
+    /**
+     * Enqueue the execution of the given chain. <br>
+     * <br>
+     * The vectors and scalars are given in the order of the 
+     * {@link FusedChain#getVectorNames() vector names} and 
+     * {@link FusedChain#getScalarNames() scalar names} of the chain. 
+     * The offsets are given in elements. As in BLAS, the elements of a 
+     * vector with a negative increment are accessed in reverse order, 
+     * starting at the element with the largest index.
+     * 
+     * @param commandQueue The command queue
+     * @param chain The chain
+     * @param n The number of elements
+     * @param vectors The vectors
+     * @param offsets The offsets of the vectors
+     * @param increments The increments of the vectors
+     * @param scalars The scalars
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the execution. May be <code>null</code>.
+     * @return The OpenCL status
+     * @throws IllegalArgumentException If the number of vectors, offsets,
+     * increments or scalars does not match the chain, or an increment 
+     * is 0
+     * @throws CLException If the kernel can not be compiled
+     */
+    public int execute(cl_command_queue commandQueue, FusedChain chain, 
+        long n, cl_mem vectors[], long offsets[], int increments[], 
+        float scalars[], int numEventsInWaitList, cl_event eventWaitList[],
+        cl_event event)
+    {
+        chain.validate(vectors.length, offsets.length, increments.length, 
+            scalars.length);
+        CachedKernel kernel = kernelCache.getKernel(
+            context, chain.getKernelSource(), FusedChain.KERNEL_NAME);
+        Object arguments[] = createArguments(n, vectors, offsets, 
+            increments, scalars.length);
+        int a = arguments.length - scalars.length;
+        for (int s = 0; s < scalars.length; s++)
+        {
+            arguments[a++] = scalars[s];
+        }
+        return kernel.enqueue(commandQueue, n, 
+            numEventsInWaitList, eventWaitList, event, arguments);
+    }
+    
+    /**
+     * Enqueue the execution of the given chain, reading the scalars 
+     * from device memory. <br>
+     * <br>
+     * This allows scalars that have been computed on the device, for
+     * example, with {@link org.jocl.blas.CLBLAS#clblasSdot} or
+     * {@link org.jocl.blas.CLBLAS#clblasSnrm2}, to be used without 
+     * reading them back to the host. Each scalar is read from the given
+     * buffer, at the given offset (in elements), when the kernel is 
+     * executed. Otherwise, the parameters are the same as for 
+     * {@link #execute(cl_command_queue, FusedChain, long, cl_mem[], 
+     * long[], int[], float[], int, cl_event[], cl_event)}.
+     * 
+     * @param commandQueue The command queue
+     * @param chain The chain
+     * @param n The number of elements
+     * @param vectors The vectors
+     * @param offsets The offsets of the vectors
+     * @param increments The increments of the vectors
+     * @param scalars The buffers containing the scalars
+     * @param scalarOffsets The offsets of the scalars
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the execution. May be <code>null</code>.
+     * @return The OpenCL status
+     * @throws IllegalArgumentException If the number of vectors, offsets,
+     * increments, scalars or scalar offsets does not match the chain, or
+     * an increment is 0
+     * @throws CLException If the kernel can not be compiled
+     */
+    public int executeWithDeviceScalars(cl_command_queue commandQueue, 
+        FusedChain chain, long n, cl_mem vectors[], long offsets[], 
+        int increments[], cl_mem scalars[], long scalarOffsets[], 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        chain.validate(vectors.length, offsets.length, increments.length, 
+            scalars.length);
+        if (scalarOffsets.length != scalars.length)
+        {
+            throw new IllegalArgumentException("Expected " + 
+                scalars.length + " scalar offsets, but received " + 
+                scalarOffsets.length);
+        }
+        CachedKernel kernel = kernelCache.getKernel(context, 
+            chain.getDeviceScalarKernelSource(), FusedChain.KERNEL_NAME);
+        Object arguments[] = createArguments(n, vectors, offsets, 
+            increments, scalars.length * 2);
+        int a = arguments.length - scalars.length * 2;
+        for (int s = 0; s < scalars.length; s++)
+        {
+            arguments[a++] = scalars[s];
+            arguments[a++] = scalarOffsets[s];
+        }
+        return kernel.enqueue(commandQueue, n, 
+            numEventsInWaitList, eventWaitList, event, arguments);
+    }
+    
+    /**
+     * Create the array of kernel arguments, containing the number of 
+     * elements and the arguments for the vectors, followed by the given
+     * number of unused entries for the scalar arguments 
+     * 
+     * @param n The number of elements
+     * @param vectors The vectors
+     * @param offsets The offsets of the vectors
+     * @param increments The increments of the vectors
+     * @param scalarArgumentCount The number of scalar arguments
+     * @return The arguments
+     * @throws IllegalArgumentException If an increment is 0
+     */
+    private static Object[] createArguments(long n, cl_mem vectors[], 
+        long offsets[], int increments[], int scalarArgumentCount)
+    {
+        Object arguments[] = 
+            new Object[1 + vectors.length * 3 + scalarArgumentCount];
+        int a = 0;
+        arguments[a++] = n;
+        for (int v = 0; v < vectors.length; v++)
+        {
+            if (increments[v] == 0)
+            {
+                throw new IllegalArgumentException(
+                    "The increment may not be 0");
+            }
+            long start = offsets[v];
+            if (increments[v] < 0 && n > 0)
+            {
+                start -= (n - 1) * increments[v];
+            }
+            arguments[a++] = vectors[v];
+            arguments[a++] = start;
+            arguments[a++] = increments[v];
+        }
+        return arguments;
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.fused;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+
+import org.jocl.blas.host.HostBLAS;
+
+/**
+ * A description of the elementwise operations that are applied to the
+ * result C of a matrix-matrix product: The addition of a bias, an
+ * {@link Activation} function, and clamping to a range. For each 
+ * element, the result is
+ * <pre><code>
+ * C(i,j) = clamp(activation(C(i,j) + bias), minimum, maximum)
+ * </code></pre>
+ * where the bias is taken from a vector, either with one value for each
+ * row, or one value for each column of C, as defined by the 
+ * {@link Bias}. <br>
+ * <br>
+ * The epilogue only describes the operations. The bias vector itself 
+ * is passed to the methods that apply the epilogue, so that one 
+ * epilogue (and one generated kernel) may be used for different 
+ * vectors. Instances of this class are immutable. New instances are 
+ * created from {@link #NONE} by calling the <code>with...</code> 
+ * methods:
+ * <pre><code>
+ * GemmEpilogue epilogue = GemmEpilogue.NONE
+ *     .withBias(GemmEpilogue.Bias.ROW)
+ *     .withActivation(Activation.RELU)
+ *     .withClamp(0.0f, 6.0f);
+ * </code></pre>
+ */
+public final class GemmEpilogue
+{
+    /**
+     * How the bias vector is added to the matrix
+     */
+    public enum Bias
+    {
+        /**
+         * No bias is added
+         */
+        NONE,
+        
+        /**
+         * The bias vector contains one value for each row of C, which
+         * is added to all elements of this row
+         */
+        ROW,
+        
+        /**
+         * The bias vector contains one value for each column of C, which
+         * is added to all elements of this column
+         */
+        COLUMN
+    }
+    
+    /**
+     * The epilogue that does not modify the matrix
+     */
+    public static final GemmEpilogue NONE = new GemmEpilogue(
+        Bias.NONE, Activation.IDENTITY, 
+        Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
+    
+    /**
+     * The name of the generated kernel function
+     */
+    static final String KERNEL_NAME = "gemmEpilogue";
+    
+    /**
+     * The bias
+     */
+    private final Bias bias;
+    
+    /**
+     * The activation function
+     */
+    private final Activation activation;
+    
+    /**
+     * The minimum value
+     */
+    private final float minimum;
+    
+    /**
+     * The maximum value
+     */
+    private final float maximum;
+    
+    /**
+     * Creates a new epilogue
+     * 
+     * @param bias The bias
+     * @param activation The activation function
+     * @param minimum The minimum value
+     * @param maximum The maximum value
+     */
+    private GemmEpilogue(Bias bias, Activation activation, 
+        float minimum, float maximum)
+    {
+        this.bias = bias;
+        this.activation = activation;
+        this.minimum = minimum;
+        this.maximum = maximum;
+    }
+    
+    /**
+     * Returns a copy of this epilogue with the given bias
+     * 
+     * @param bias The bias
+     * @return The new epilogue
+     * @throws NullPointerException If the bias is <code>null</code>
+     */
+    public GemmEpilogue withBias(Bias bias)
+    {
+        if (bias == null)
+        {
+            throw new NullPointerException("The bias is null");
+        }
+        return new GemmEpilogue(bias, activation, minimum, maximum);
+    }
+
+    /**
+     * Returns a copy of this epilogue with the given activation function
+     * 
+     * @param activation The activation function
+     * @return The new epilogue
+     * @throws NullPointerException If the activation is <code>null</code>
+     */
+    public GemmEpilogue withActivation(Activation activation)
+    {
+        if (activation == null)
+        {
+            throw new NullPointerException("The activation is null");
+        }
+        return new GemmEpilogue(bias, activation, minimum, maximum);
+    }
+    
+    /**
+     * Returns a copy of this epilogue that clamps the results to the 
+     * given range. Infinite values may be used to disable clamping to
+     * one side.
+     * 
+     * @param minimum The minimum value
+     * @param maximum The maximum value
+     * @return The new epilogue
+     * @throws IllegalArgumentException If the minimum is larger than the
+     * maximum, or either of them is NaN
+     */
+    public GemmEpilogue withClamp(float minimum, float maximum)
+    {
+        if (!(minimum <= maximum))
+        {
+            throw new IllegalArgumentException(
+                "Invalid range: " + minimum + " to " + maximum);
+        }
+        return new GemmEpilogue(bias, activation, minimum, maximum);
+    }
+    
+    /**
+     * Returns the bias
+     * 
+     * @return The bias
+     */
+    public Bias getBias()
+    {
+        return bias;
+    }
+    
+    /**
+     * Returns the activation function
+     * 
+     * @return The activation function
+     */
+    public Activation getActivation()
+    {
+        return activation;
+    }
+    
+    /**
+     * Returns the minimum value
+     * 
+     * @return The minimum value
+     */
+    public float getMinimum()
+    {
+        return minimum;
+    }
+
+    /**
+     * Returns the maximum value
+     * 
+     * @return The maximum value
+     */
+    public float getMaximum()
+    {
+        return maximum;
+    }
+    
+    /**
+     * Returns whether this epilogue does not modify the matrix
+     * 
+     * @return Whether this epilogue is the identity
+     */
+    public boolean isIdentity()
+    {
+        return bias == Bias.NONE && activation == Activation.IDENTITY && 
+            minimum == Float.NEGATIVE_INFINITY && 
+            maximum == Float.POSITIVE_INFINITY;
+    }
+    
+    /**
+     * Apply this epilogue to a single value. A NaN is not clamped, as
+     * in the generated kernels.
+     * 
+     * @param value The value
+     * @param biasValue The bias value. Ignored if the bias is 
+     * {@link Bias#NONE}.
+     * @return The result
+     */
+    public float apply(float value, float biasValue)
+    {
+        float c = bias == Bias.NONE ? value : value + biasValue;
+        c = activation.apply(c);
+        if (c < minimum)
+        {
+            return minimum;
+        }
+        if (c > maximum)
+        {
+            return maximum;
+        }
+        return c;
+    }
+    
+    /**
+     * Apply this epilogue to the given M x N matrix C on the host
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder} of C
+     * @param M The number of rows of C
+     * @param N The number of columns of C
+     * @param C The matrix C
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     * @param biasVector The bias vector. May be <code>null</code> if 
+     * the bias is {@link Bias#NONE}.
+     * @param offBias The offset of the bias vector
+     */
+    public void apply(int order, int M, int N, float C[], int offC, int ldc,
+        float biasVector[], int offBias)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        int sCi = rowMajor ? ldc : 1;
+        int sCj = rowMajor ? 1 : ldc;
+        for (int i = 0; i < M; i++)
+        {
+            for (int j = 0; j < N; j++)
+            {
+                float b = 0.0f;
+                if (bias == Bias.ROW)
+                {
+                    b = biasVector[offBias + i];
+                }
+                else if (bias == Bias.COLUMN)
+                {
+                    b = biasVector[offBias + j];
+                }
+                int index = offC + i * sCi + j * sCj;
+                C[index] = apply(C[index], b);
+            }
+        }
+    }
+    
+    /**
+     * Reference implementation of a matrix-matrix product with this 
+     * epilogue on the host. This computes the product with 
+     * {@link HostBLAS#clblasSgemm}, and then applies this epilogue with 
+     * {@link #apply(int, int, int, float[], int, int, float[], int)}.
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param transA How matrix A is to be transposed
+     * @param transB How matrix B is to be transposed
+     * @param M The number of rows of op(A) and C
+     * @param N The number of columns of op(B) and C
+     * @param K The number of columns of op(A) and rows of op(B)
+     * @param alpha The factor of op(A)*op(B)
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param B The matrix B
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     * @param biasVector The bias vector. May be <code>null</code> if 
+     * the bias is {@link Bias#NONE}.
+     * @param offBias The offset of the bias vector
+     */
+    public void sgemm(int order, int transA, int transB, 
+        int M, int N, int K, float alpha, 
+        float A[], int offA, int lda, 
+        float B[], int offB, int ldb, float beta, 
+        float C[], int offC, int ldc, 
+        float biasVector[], int offBias)
+    {
+        HostBLAS.clblasSgemm(order, transA, transB, M, N, K, alpha, 
+            A, offA, lda, B, offB, ldb, beta, C, offC, ldc);
+        apply(order, M, N, C, offC, ldc, biasVector, offBias);
+    }
+    
+    /**
+     * Returns the OpenCL source code of the kernel that applies this 
+     * epilogue. The kernel is called {@link #KERNEL_NAME}, and is 
+     * executed for a 2-dimensional range. The first dimension is the 
+     * one where the elements of C are stored contiguously. Its arguments
+     * are the size of the matrix in the first and second dimension, the 
+     * buffer, offset and leading dimension of C, and, if there is a 
+     * bias, the buffer and offset of the bias. All sizes, offsets and 
+     * the leading dimension are <code>long</code> values. 
+     * 
+     * @param biasAlongFirstDimension Whether the index of the bias 
+     * vector is the index in the first dimension
+     * @return The kernel source code
+     */
+    String createKernelSource(boolean biasAlongFirstDimension)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("__kernel void ").append(KERNEL_NAME).append("(\n");
+        sb.append("    const long size0, const long size1,\n");
+        sb.append("    __global float *C, const long offC, const long ldc");
+        if (bias != Bias.NONE)
+        {
+            sb.append(",\n");
+            sb.append("    __global const float *bias, const long offBias");
+        }
+        sb.append(")\n");
+        sb.append("{\n");
+        sb.append("    const long i0 = get_global_id(0);\n");
+        sb.append("    const long i1 = get_global_id(1);\n");
+        sb.append("    if (i0 >= size0 || i1 >= size1)\n");
+        sb.append("    {\n");
+        sb.append("        return;\n");
+        sb.append("    }\n");
+        sb.append("    const long index = offC + i0 + i1 * ldc;\n");
+        sb.append("    float c = C[index];\n");
+        if (bias != Bias.NONE)
+        {
+            sb.append("    c += bias[offBias + ");
+            sb.append(biasAlongFirstDimension ? "i0" : "i1").append("];\n");
+        }
+        if (activation != Activation.IDENTITY)
+        {
+            sb.append("    c = ").append(activation.toOpenCL("c"));
+            sb.append(";\n");
+        }
+        // The clamping is not done with fmax and fmin, which would 
+        // replace NaN with the limit, unlike the host implementation
+        if (minimum != Float.NEGATIVE_INFINITY)
+        {
+            String literal = FusedChain.toLiteral(minimum);
+            sb.append("    c = c < ").append(literal).append(" ? ");
+            sb.append(literal).append(" : c;\n");
+        }
+        if (maximum != Float.POSITIVE_INFINITY)
+        {
+            String literal = FusedChain.toLiteral(maximum);
+            sb.append("    c = c > ").append(literal).append(" ? ");
+            sb.append(literal).append(" : c;\n");
+        }
+        sb.append("    C[index] = c;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "GemmEpilogue[bias=" + bias + ", activation=" + activation + 
+            ", minimum=" + minimum + ", maximum=" + maximum + "]";
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.fused;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasStatus.clblasSuccess;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.CLBLAS;
+import org.jocl.blas.kernel.CachedKernel;
+import org.jocl.blas.kernel.KernelCache;
+
+/**
+ * An executor for matrix-matrix products with a {@link GemmEpilogue} on
+ * an OpenCL device. <br>
+ * <br>
+ * The product is computed with {@link CLBLAS#clblasSgemm}. The kernels
+ * of clBLAS can not be extended, so the epilogue is applied in one 
+ * additional pass over C, with a kernel that is generated for the 
+ * epilogue and obtained from a {@link KernelCache}. This replaces the 
+ * separate passes for adding the bias, applying the activation and 
+ * clamping the result with a single read and write of each element. 
+ * <br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class GemmEpilogueExecutor
+{
+    /**
+     * The context
+     */
+    private final cl_context context;
+    
+    /**
+     * The kernel cache
+     */
+    private final KernelCache kernelCache;
+    
+    /**
+     * Creates a new executor for the given context, using the shared
+     * {@link KernelCache#getInstance() kernel cache}
+     * 
+     * @param context The context
+     */
+    public GemmEpilogueExecutor(cl_context context)
+    {
+        this(context, KernelCache.getInstance());
+    }
+
+    /**
+     * Creates a new executor for the given context, using the given 
+     * kernel cache
+     * 
+     * @param context The context
+     * @param kernelCache The kernel cache
+     */
+    public GemmEpilogueExecutor(cl_context context, KernelCache kernelCache)
+    {
+        this.context = context;
+        this.kernelCache = kernelCache;
+    }
+    
+    /**
+     * Enqueue a matrix-matrix product, as described in 
+     * {@link CLBLAS#clblasSgemm}, followed by the given epilogue.
+     * 
+     * @param commandQueue The command queue
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param transA How matrix A is to be transposed
+     * @param transB How matrix B is to be transposed
+     * @param M The number of rows of op(A) and C
+     * @param N The number of columns of op(B) and C
+     * @param K The number of columns of op(A) and rows of op(B)
+     * @param alpha The factor of op(A)*op(B)
+     * @param A The matrix A
+     * @param offA The offset of A, in elements
+     * @param lda The leading dimension of A
+     * @param B The matrix B
+     * @param offB The offset of B, in elements
+     * @param ldb The leading dimension of B
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C, in elements
+     * @param ldc The leading dimension of C
+     * @param epilogue The epilogue
+     * @param bias The bias vector. May be <code>null</code> if the bias
+     * of the epilogue is {@link GemmEpilogue.Bias#NONE}.
+     * @param offBias The offset of the bias vector, in elements
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the completion of the product and the
+     * epilogue. May be <code>null</code>.
+     * @return The {@link org.jocl.blas.clblasStatus} of the product, or 
+     * the OpenCL status of the epilogue
+     * @throws CLException If the epilogue kernel can not be compiled
+     */
+    public int sgemm(cl_command_queue commandQueue, 
+        int order, int transA, int transB, long M, long N, long K, 
+        float alpha, cl_mem A, long offA, long lda, 
+        cl_mem B, long offB, long ldb, float beta, 
+        cl_mem C, long offC, long ldc, 
+        GemmEpilogue epilogue, cl_mem bias, long offBias, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        cl_command_queue commandQueues[] = { commandQueue };
+        if (epilogue.isIdentity())
+        {
+            return CLBLAS.clblasSgemm(order, transA, transB, M, N, K, 
+                alpha, A, offA, lda, B, offB, ldb, beta, C, offC, ldc, 
+                1, commandQueues, numEventsInWaitList, eventWaitList, 
+                event == null ? null : new cl_event[] { event });
+        }
+        
+        // The event of the product is only needed for queues with 
+        // out-of-order execution, but it is cheap
+        cl_event gemmEvent = new cl_event();
+        int status = CLBLAS.clblasSgemm(order, transA, transB, M, N, K, 
+            alpha, A, offA, lda, B, offB, ldb, beta, C, offC, ldc, 
+            1, commandQueues, numEventsInWaitList, eventWaitList, 
+            new cl_event[] { gemmEvent });
+        if (status != clblasSuccess)
+        {
+            return status;
+        }
+        try
+        {
+            return apply(commandQueue, order, M, N, C, offC, ldc, 
+                epilogue, bias, offBias, 1, new cl_event[] { gemmEvent }, 
+                event);
+        }
+        finally
+        {
+            CL.clReleaseEvent(gemmEvent);
+        }
+    }
+    
+    /**
+     * Enqueue the application of the given epilogue to the given matrix
+     * 
+     * @param commandQueue The command queue
+     * @param order The {@link org.jocl.blas.clblasOrder} of C
+     * @param M The number of rows of C
+     * @param N The number of columns of C
+     * @param C The matrix C
+     * @param offC The offset of C, in elements
+     * @param ldc The leading dimension of C
+     * @param epilogue The epilogue
+     * @param bias The bias vector. May be <code>null</code> if the bias
+     * of the epilogue is {@link GemmEpilogue.Bias#NONE}.
+     * @param offBias The offset of the bias vector, in elements
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the completion of the epilogue. May be 
+     * <code>null</code>.
+     * @return The OpenCL status
+     * @throws CLException If the epilogue kernel can not be compiled
+     * @throws IllegalArgumentException If the epilogue has a bias, but 
+     * the bias vector is <code>null</code>
+     */
+    public int apply(cl_command_queue commandQueue, int order, 
+        long M, long N, cl_mem C, long offC, long ldc, 
+        GemmEpilogue epilogue, cl_mem bias, long offBias, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        boolean hasBias = epilogue.getBias() != GemmEpilogue.Bias.NONE;
+        if (hasBias && bias == null)
+        {
+            throw new IllegalArgumentException(
+                "The epilogue requires a bias vector");
+        }
+        
+        // The first dimension of the range is the one where the elements
+        // are stored contiguously, so that accesses are coalesced
+        boolean rowMajor = order == clblasRowMajor;
+        long size0 = rowMajor ? N : M;
+        long size1 = rowMajor ? M : N;
+        boolean biasAlongFirstDimension = rowMajor ? 
+            epilogue.getBias() == GemmEpilogue.Bias.COLUMN : 
+            epilogue.getBias() == GemmEpilogue.Bias.ROW;
+        
+        String source = epilogue.createKernelSource(biasAlongFirstDimension);
+        CachedKernel kernel = kernelCache.getKernel(
+            context, source, GemmEpilogue.KERNEL_NAME);
+        
+        // The kernel does not use local memory, so the local work size 
+        // is left to the implementation. It can always choose one that 
+        // divides the unpadded range, and that is supported by the 
+        // device and the kernel.
+        long globalWorkSize[] = { Math.max(size0, 1), Math.max(size1, 1) };
+        if (hasBias)
+        {
+            return kernel.enqueue(commandQueue, globalWorkSize, null, 
+                numEventsInWaitList, eventWaitList, event, 
+                size0, size1, C, offC, ldc, bias, offBias);
+        }
+        return kernel.enqueue(commandQueue, globalWorkSize, null, 
+            numEventsInWaitList, eventWaitList, event, 
+            size0, size1, C, offC, ldc);
+    }
+}
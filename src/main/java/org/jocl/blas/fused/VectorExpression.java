@@ -0,0 +1,264 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.fused;
+
+/**
+ * An elementwise expression of vectors and scalars, which may be used 
+ * as the right-hand side of an assignment in a {@link FusedChain}. <br>
+ * <br>
+ * Expressions are built from {@link #vector(String) vectors}, 
+ * {@link #scalar(String) scalars} and {@link #constant(float) constants},
+ * which are combined with {@link #plus}, {@link #minus}, {@link #times},
+ * {@link #dividedBy}, {@link #safelyDividedBy}, {@link #negate()} and 
+ * {@link #sqrt()}. All operations are applied elementwise, and 
+ * scalars and constants are broadcast to all elements. For example, 
+ * the right-hand side of <code>y = a*x + b*y</code> is 
+ * <pre><code>
+ * scalar("a").times(vector("x")).plus(scalar("b").times(vector("y")))
+ * </code></pre>
+ * Expressions are immutable.
+ */
+public final class VectorExpression
+{
+    /**
+     * The kinds of expressions
+     */
+    enum Kind
+    {
+        VECTOR, SCALAR, CONSTANT, SUM, DIFFERENCE, PRODUCT, QUOTIENT, 
+        SAFE_QUOTIENT, NEGATION, SQUARE_ROOT
+    }
+    
+    /**
+     * The kind of this expression
+     */
+    final Kind kind;
+    
+    /**
+     * The name of the vector or scalar, or <code>null</code>
+     */
+    final String name;
+    
+    /**
+     * The value of the constant
+     */
+    final float value;
+    
+    /**
+     * The left (or only) operand, or <code>null</code>
+     */
+    final VectorExpression left;
+
+    /**
+     * The right operand, or <code>null</code>
+     */
+    final VectorExpression right;
+    
+    /**
+     * Creates a new expression
+     * 
+     * @param kind The kind
+     * @param name The name
+     * @param value The value
+     * @param left The left operand
+     * @param right The right operand
+     */
+    private VectorExpression(Kind kind, String name, float value, 
+        VectorExpression left, VectorExpression right)
+    {
+        this.kind = kind;
+        this.name = name;
+        this.value = value;
+        this.left = left;
+        this.right = right;
+    }
+    
+    /**
+     * Creates an expression that refers to the vector with the given name
+     * 
+     * @param name The name
+     * @return The expression
+     * @throws NullPointerException If the name is <code>null</code>
+     */
+    public static VectorExpression vector(String name)
+    {
+        if (name == null)
+        {
+            throw new NullPointerException("The name is null");
+        }
+        return new VectorExpression(Kind.VECTOR, name, 0, null, null);
+    }
+    
+    /**
+     * Creates an expression that refers to the scalar with the given name
+     * 
+     * @param name The name
+     * @return The expression
+     * @throws NullPointerException If the name is <code>null</code>
+     */
+    public static VectorExpression scalar(String name)
+    {
+        if (name == null)
+        {
+            throw new NullPointerException("The name is null");
+        }
+        return new VectorExpression(Kind.SCALAR, name, 0, null, null);
+    }
+    
+    /**
+     * Creates an expression for the given constant
+     * 
+     * @param value The value
+     * @return The expression
+     */
+    public static VectorExpression constant(float value)
+    {
+        return new VectorExpression(Kind.CONSTANT, null, value, null, null);
+    }
+    
+    /**
+     * Returns the sum of this expression and the given one
+     * 
+     * @param other The other expression
+     * @return The sum
+     */
+    public VectorExpression plus(VectorExpression other)
+    {
+        return binary(Kind.SUM, other);
+    }
+
+    /**
+     * Returns the difference of this expression and the given one
+     * 
+     * @param other The other expression
+     * @return The difference
+     */
+    public VectorExpression minus(VectorExpression other)
+    {
+        return binary(Kind.DIFFERENCE, other);
+    }
+
+    /**
+     * Returns the product of this expression and the given one
+     * 
+     * @param other The other expression
+     * @return The product
+     */
+    public VectorExpression times(VectorExpression other)
+    {
+        return binary(Kind.PRODUCT, other);
+    }
+    
+    /**
+     * Returns the quotient of this expression and the given one
+     * 
+     * @param other The other expression
+     * @return The quotient
+     */
+    public VectorExpression dividedBy(VectorExpression other)
+    {
+        return binary(Kind.QUOTIENT, other);
+    }
+    
+    /**
+     * Returns the quotient of this expression and the given one, or 0
+     * where the given expression is 0. This is useful for the step sizes
+     * of iterative methods, which would otherwise turn into NaN when the
+     * method has converged exactly.
+     * 
+     * @param other The other expression
+     * @return The quotient
+     */
+    public VectorExpression safelyDividedBy(VectorExpression other)
+    {
+        return binary(Kind.SAFE_QUOTIENT, other);
+    }
+    
+    /**
+     * Returns the negation of this expression
+     * 
+     * @return The negation
+     */
+    public VectorExpression negate()
+    {
+        return new VectorExpression(Kind.NEGATION, null, 0, this, null);
+    }
+    
+    /**
+     * Returns the square root of this expression
+     * 
+     * @return The square root
+     */
+    public VectorExpression sqrt()
+    {
+        return new VectorExpression(Kind.SQUARE_ROOT, null, 0, this, null);
+    }
+    
+    /**
+     * Creates a binary expression of the given kind
+     * 
+     * @param kind The kind
+     * @param other The right operand
+     * @return The expression
+     * @throws NullPointerException If the operand is <code>null</code>
+     */
+    private VectorExpression binary(Kind kind, VectorExpression other)
+    {
+        if (other == null)
+        {
+            throw new NullPointerException("The operand is null");
+        }
+        return new VectorExpression(kind, null, 0, this, other);
+    }
+    
+    @Override
+    public String toString()
+    {
+        switch (kind)
+        {
+            case VECTOR:
+            case SCALAR:
+                return name;
+            case CONSTANT:
+                return String.valueOf(value);
+            case SUM:
+                return "(" + left + " + " + right + ")";
+            case DIFFERENCE:
+                return "(" + left + " - " + right + ")";
+            case PRODUCT:
+                return "(" + left + " * " + right + ")";
+            case QUOTIENT:
+                return "(" + left + " / " + right + ")";
+            case SAFE_QUOTIENT:
+                return "safeDiv(" + left + ", " + right + ")";
+            case NEGATION:
+                return "(-" + left + ")";
+            default:
+                return "sqrt(" + left + ")";
+        }
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.host;
+
+import static org.jocl.blas.clblasDiag.clblasUnit;
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasSide.clblasLeft;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+import static org.jocl.blas.clblasUplo.clblasLower;
+
+/**
+ * Pure Java implementations of a subset of the BLAS routines, operating
+ * on host arrays. <br>
+ * <br>
+ * The methods have the same names and parameters as the respective 
+ * methods in {@link org.jocl.blas.CLBLAS}, except for the command queue 
+ * and event parameters, and the <code>cl_mem</code> objects being 
+ * replaced by <code>float</code> arrays. They may be used as a reference
+ * for validating results, and as a fallback when no OpenCL device is 
+ * available.
+ */
+public final class HostBLAS
+{
+    /**
+     * Matrix-matrix product of general rectangular matrices. 
+     * See {@link org.jocl.blas.CLBLAS#clblasSgemm}.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param transA How matrix A is to be transposed
+     * @param transB How matrix B is to be transposed
+     * @param M The number of rows of op(A) and C
+     * @param N The number of columns of op(B) and C
+     * @param K The number of columns of op(A) and rows of op(B)
+     * @param alpha The factor of op(A)*op(B)
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param B The matrix B
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     */
+    public static void clblasSgemm(int order, int transA, int transB, 
+        int M, int N, int K, float alpha, 
+        float A[], int offA, int lda, 
+        float B[], int offB, int ldb, float beta, 
+        float C[], int offC, int ldc)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        boolean opA = (transA == clblasNoTrans) == rowMajor;
+        boolean opB = (transB == clblasNoTrans) == rowMajor;
+        int sAi = opA ? lda : 1;
+        int sAp = opA ? 1 : lda;
+        int sBp = opB ? ldb : 1;
+        int sBj = opB ? 1 : ldb;
+        int sCi = rowMajor ? ldc : 1;
+        int sCj = rowMajor ? 1 : ldc;
+        for (int i = 0; i < M; i++)
+        {
+            int ci = offC + i * sCi;
+            scale(C, ci, sCj, N, beta);
+            if (alpha == 0.0f)
+            {
+                continue;
+            }
+            for (int p = 0; p < K; p++)
+            {
+                float a = alpha * A[offA + i * sAi + p * sAp];
+                if (a == 0.0f)
+                {
+                    continue;
+                }
+                int bp = offB + p * sBp;
+                for (int j = 0; j < N; j++)
+                {
+                    C[ci + j * sCj] += a * B[bp + j * sBj];
+                }
+            }
+        }
+    }
+    
+    /**
+     * Matrix-vector product with a general rectangular matrix.
+     * See {@link org.jocl.blas.CLBLAS#clblasSgemv}.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param transA How matrix A is to be transposed
+     * @param M The number of rows of A
+     * @param N The number of columns of A
+     * @param alpha The factor of op(A)*x
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param x The vector x
+     * @param offx The offset of x
+     * @param incx The increment of x
+     * @param beta The factor of y
+     * @param y The vector y
+     * @param offy The offset of y
+     * @param incy The increment of y
+     */
+    public static void clblasSgemv(int order, int transA, 
+        int M, int N, float alpha, 
+        float A[], int offA, int lda, 
+        float x[], int offx, int incx, float beta, 
+        float y[], int offy, int incy)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        boolean opA = (transA == clblasNoTrans) == rowMajor;
+        int rows = transA == clblasNoTrans ? M : N;
+        int columns = transA == clblasNoTrans ? N : M;
+        int sAi = opA ? lda : 1;
+        int sAj = opA ? 1 : lda;
+        int x0 = start(offx, incx, columns);
+        int y0 = start(offy, incy, rows);
+        for (int i = 0; i < rows; i++)
+        {
+            int ai = offA + i * sAi;
+            float sum = 0.0f;
+            for (int j = 0; j < columns; j++)
+            {
+                sum += A[ai + j * sAj] * x[x0 + j * incx];
+            }
+            int iy = y0 + i * incy;
+            y[iy] = alpha * sum + (beta == 0.0f ? 0.0f : beta * y[iy]);
+        }
+    }
+    
+    /**
+     * Solving triangular systems of equations with multiple right-hand 
+     * sides. See {@link org.jocl.blas.CLBLAS#clblasStrsm}.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param side The {@link org.jocl.blas.clblasSide} of A
+     * @param uplo The {@link org.jocl.blas.clblasUplo} of A
+     * @param transA How matrix A is to be transposed
+     * @param diag The {@link org.jocl.blas.clblasDiag} of A
+     * @param M The number of rows of B
+     * @param N The number of columns of B
+     * @param alpha The factor of B
+     * @param A The triangular matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param B The matrix B, which is overwritten with the solution
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     */
+    public static void clblasStrsm(int order, int side, int uplo, 
+        int transA, int diag, int M, int N, float alpha, 
+        float A[], int offA, int lda, 
+        float B[], int offB, int ldb)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        boolean opA = (transA == clblasNoTrans) == rowMajor;
+        boolean lower = (uplo == clblasLower) == (transA == clblasNoTrans);
+        boolean unit = diag == clblasUnit;
+        int sAi = opA ? lda : 1;
+        int sAj = opA ? 1 : lda;
+        int sBi = rowMajor ? ldb : 1;
+        int sBj = rowMajor ? 1 : ldb;
+        boolean left = side == clblasLeft;
+        int n = left ? M : N;
+        int count = left ? N : M;
+        int sBs = left ? sBi : sBj;
+        int sBr = left ? sBj : sBi;
+        boolean forward = lower == left;
+        for (int r = 0; r < count; r++)
+        {
+            int b0 = offB + r * sBr;
+            for (int s = 0; s < n; s++)
+            {
+                int i = forward ? s : n - 1 - s;
+                float sum = alpha * B[b0 + i * sBs];
+                for (int t = 0; t < s; t++)
+                {
+                    int p = forward ? t : n - 1 - t;
+                    int a = left ? 
+                        offA + i * sAi + p * sAj : 
+                        offA + p * sAi + i * sAj;
+                    sum -= A[a] * B[b0 + p * sBs];
+                }
+                B[b0 + i * sBs] = 
+                    unit ? sum : sum / A[offA + i * sAi + i * sAj];
+            }
+        }
+    }
+    
+    /**
+     * Multiplication of a matrix with a triangular matrix. 
+     * See {@link org.jocl.blas.CLBLAS#clblasStrmm}.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param side The {@link org.jocl.blas.clblasSide} of A
+     * @param uplo The {@link org.jocl.blas.clblasUplo} of A
+     * @param transA How matrix A is to be transposed
+     * @param diag The {@link org.jocl.blas.clblasDiag} of A
+     * @param M The number of rows of B
+     * @param N The number of columns of B
+     * @param alpha The factor of the product
+     * @param A The triangular matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param B The matrix B, which is overwritten with the product
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     */
+    public static void clblasStrmm(int order, int side, int uplo, 
+        int transA, int diag, int M, int N, float alpha, 
+        float A[], int offA, int lda, 
+        float B[], int offB, int ldb)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        boolean opA = (transA == clblasNoTrans) == rowMajor;
+        boolean lower = (uplo == clblasLower) == (transA == clblasNoTrans);
+        boolean unit = diag == clblasUnit;
+        int sAi = opA ? lda : 1;
+        int sAj = opA ? 1 : lda;
+        int sBi = rowMajor ? ldb : 1;
+        int sBj = rowMajor ? 1 : ldb;
+        boolean left = side == clblasLeft;
+        int n = left ? M : N;
+        int count = left ? N : M;
+        int sBs = left ? sBi : sBj;
+        int sBr = left ? sBj : sBi;
+        // Process the elements so that each one is only overwritten 
+        // after it is no longer needed by the remaining ones
+        boolean forward = lower != left;
+        for (int r = 0; r < count; r++)
+        {
+            int b0 = offB + r * sBr;
+            for (int s = 0; s < n; s++)
+            {
+                int i = forward ? s : n - 1 - s;
+                float sum = unit ? B[b0 + i * sBs] : 
+                    A[offA + i * sAi + i * sAj] * B[b0 + i * sBs];
+                for (int t = s + 1; t < n; t++)
+                {
+                    int p = forward ? t : n - 1 - t;
+                    int a = left ? 
+                        offA + i * sAi + p * sAj : 
+                        offA + p * sAi + i * sAj;
+                    sum += A[a] * B[b0 + p * sBs];
+                }
+                B[b0 + i * sBs] = alpha * sum;
+            }
+        }
+    }
+    
+    /**
+     * Rank-k update of a symmetric matrix. 
+     * See {@link org.jocl.blas.CLBLAS#clblasSsyrk}. Only the triangle 
+     * of C that is given by the uplo parameter is referenced and updated.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param uplo The {@link org.jocl.blas.clblasUplo} of C
+     * @param transA How matrix A is to be transposed
+     * @param N The number of rows and columns of C
+     * @param K The number of columns of op(A)
+     * @param alpha The factor of op(A)*op(A)^T
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     */
+    public static void clblasSsyrk(int order, int uplo, int transA, 
+        int N, int K, float alpha, 
+        float A[], int offA, int lda, float beta, 
+        float C[], int offC, int ldc)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        boolean opA = (transA == clblasNoTrans) == rowMajor;
+        int sAi = opA ? lda : 1;
+        int sAp = opA ? 1 : lda;
+        int sCi = rowMajor ? ldc : 1;
+        int sCj = rowMajor ? 1 : ldc;
+        boolean lower = uplo == clblasLower;
+        for (int i = 0; i < N; i++)
+        {
+            int j0 = lower ? 0 : i;
+            int j1 = lower ? i + 1 : N;
+            for (int j = j0; j < j1; j++)
+            {
+                float sum = 0.0f;
+                for (int p = 0; p < K; p++)
+                {
+                    sum += A[offA + i * sAi + p * sAp] * 
+                        A[offA + j * sAi + p * sAp];
+                }
+                int c = offC + i * sCi + j * sCj;
+                C[c] = alpha * sum + (beta == 0.0f ? 0.0f : beta * C[c]);
+            }
+        }
+    }
+    
+    /**
+     * Computes the index of the first element of a vector, which is 
+     * the last element in memory for negative increments
+     * 
+     * @param off The offset
+     * @param inc The increment
+     * @param n The number of elements
+     * @return The start index
+     */
+    static int start(int off, int inc, int n)
+    {
+        return inc >= 0 ? off : off - (n - 1) * inc;
+    }
+    
+    /**
+     * Scale n elements of the given array, starting at the given index
+     * with the given stride, by the given factor. If the factor is 0,
+     * the elements are set to 0.
+     * 
+     * @param a The array
+     * @param index The start index
+     * @param stride The stride
+     * @param n The number of elements
+     * @param factor The factor
+     */
+    private static void scale(
+        float a[], int index, int stride, int n, float factor)
+    {
+        if (factor == 1.0f)
+        {
+            return;
+        }
+        for (int j = 0; j < n; j++)
+        {
+            int k = index + j * stride;
+            a[k] = factor == 0.0f ? 0.0f : factor * a[k];
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private HostBLAS()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
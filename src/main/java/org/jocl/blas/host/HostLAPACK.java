@@ -0,0 +1,516 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.host;
+
+import static org.jocl.blas.clblasDiag.clblasNonUnit;
+import static org.jocl.blas.clblasDiag.clblasUnit;
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasSide.clblasLeft;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+import static org.jocl.blas.clblasTranspose.clblasTrans;
+import static org.jocl.blas.clblasUplo.clblasLower;
+import static org.jocl.blas.clblasUplo.clblasUpper;
+
+/**
+ * Pure Java implementations of the LU, Cholesky and QR factorizations 
+ * and the corresponding solvers, operating on host arrays. <br>
+ * <br>
+ * The methods follow the LAPACK routines with the same names, with an
+ * additional {@link org.jocl.blas.clblasOrder} parameter and explicit
+ * offsets. Unlike in LAPACK, the pivot indices are zero-based. The 
+ * implementations are unblocked, and are intended as a reference for 
+ * validating the blocked implementations, and for factorizing the 
+ * panels of these implementations on the host.
+ */
+public final class HostLAPACK
+{
+    /**
+     * Computes the LU factorization of a general M x N matrix, using 
+     * partial pivoting with row interchanges. The factorization has the 
+     * form A = P * L * U, where P is a permutation matrix, L is lower 
+     * triangular with unit diagonal elements, and U is upper triangular. 
+     * The factors L and U are stored in A, without the unit diagonal
+     * elements of L.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param M The number of rows of A
+     * @param N The number of columns of A
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param ipiv The array that receives the min(M,N) pivot indices:
+     * Row i of the matrix was interchanged with row ipiv[offIpiv+i]
+     * @param offIpiv The offset of the pivot indices
+     * @return 0 if the factorization succeeded, or i+1 if U(i,i) is
+     * exactly zero, where i is the first such index. In the latter 
+     * case, the factorization has been completed, but U is singular.
+     */
+    public static int sgetrf(int order, int M, int N, 
+        float A[], int offA, int lda, int ipiv[], int offIpiv)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        int si = rowMajor ? lda : 1;
+        int sj = rowMajor ? 1 : lda;
+        int info = 0;
+        int n = Math.min(M, N);
+        for (int j = 0; j < n; j++)
+        {
+            int p = j;
+            float max = Math.abs(A[offA + j * si + j * sj]);
+            for (int i = j + 1; i < M; i++)
+            {
+                float a = Math.abs(A[offA + i * si + j * sj]);
+                if (a > max)
+                {
+                    max = a;
+                    p = i;
+                }
+            }
+            ipiv[offIpiv + j] = p;
+            if (p != j)
+            {
+                swapRows(A, offA + j * si, offA + p * si, sj, N);
+            }
+            float pivot = A[offA + j * si + j * sj];
+            if (pivot == 0.0f)
+            {
+                if (info == 0)
+                {
+                    info = j + 1;
+                }
+                continue;
+            }
+            for (int i = j + 1; i < M; i++)
+            {
+                int ij = offA + i * si + j * sj;
+                A[ij] /= pivot;
+                float l = A[ij];
+                if (l == 0.0f)
+                {
+                    continue;
+                }
+                for (int k = j + 1; k < N; k++)
+                {
+                    A[offA + i * si + k * sj] -= 
+                        l * A[offA + j * si + k * sj];
+                }
+            }
+        }
+        return info;
+    }
+    
+    /**
+     * Solves a system of linear equations A * X = B or A^T * X = B
+     * with a general N x N matrix A, using the LU factorization that 
+     * was computed with {@link #sgetrf}.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param trans Whether the system with A or with A^T is solved
+     * @param N The number of rows and columns of A
+     * @param NRHS The number of right-hand sides
+     * @param A The factors L and U
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param ipiv The pivot indices
+     * @param offIpiv The offset of the pivot indices
+     * @param B The right-hand sides, which are overwritten with the 
+     * solution
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     */
+    public static void sgetrs(int order, int trans, int N, int NRHS, 
+        float A[], int offA, int lda, int ipiv[], int offIpiv, 
+        float B[], int offB, int ldb)
+    {
+        if (trans == clblasNoTrans)
+        {
+            applyPivots(order, B, offB, ldb, NRHS, 
+                ipiv, offIpiv, 0, N, true);
+            HostBLAS.clblasStrsm(order, clblasLeft, clblasLower, 
+                clblasNoTrans, clblasUnit, N, NRHS, 1.0f, 
+                A, offA, lda, B, offB, ldb);
+            HostBLAS.clblasStrsm(order, clblasLeft, clblasUpper, 
+                clblasNoTrans, clblasNonUnit, N, NRHS, 1.0f, 
+                A, offA, lda, B, offB, ldb);
+        }
+        else
+        {
+            HostBLAS.clblasStrsm(order, clblasLeft, clblasUpper, 
+                clblasTrans, clblasNonUnit, N, NRHS, 1.0f, 
+                A, offA, lda, B, offB, ldb);
+            HostBLAS.clblasStrsm(order, clblasLeft, clblasLower, 
+                clblasTrans, clblasUnit, N, NRHS, 1.0f, 
+                A, offA, lda, B, offB, ldb);
+            applyPivots(order, B, offB, ldb, NRHS, 
+                ipiv, offIpiv, 0, N, false);
+        }
+    }
+    
+    /**
+     * Computes the Cholesky factorization of a symmetric positive 
+     * definite N x N matrix. The factorization has the form 
+     * A = U^T * U if uplo is clblasUpper, or A = L * L^T if uplo is 
+     * clblasLower. Only the respective triangle of A is referenced, 
+     * and overwritten with the factor.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param uplo The {@link org.jocl.blas.clblasUplo} of A
+     * @param N The number of rows and columns of A
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @return 0 if the factorization succeeded, or i+1 if the leading 
+     * minor of order i+1 is not positive definite. In the latter case,
+     * the factorization could not be completed.
+     */
+    public static int spotrf(int order, int uplo, int N, 
+        float A[], int offA, int lda)
+    {
+        // Address the elements of the triangle as those of L in A = L*L^T
+        boolean lower = (uplo == clblasLower) == (order != clblasRowMajor);
+        int si = lower ? 1 : lda;
+        int sj = lower ? lda : 1;
+        for (int j = 0; j < N; j++)
+        {
+            int jj = offA + j * si + j * sj;
+            float d = A[jj];
+            for (int k = 0; k < j; k++)
+            {
+                float l = A[offA + j * si + k * sj];
+                d -= l * l;
+            }
+            if (!(d > 0.0f))
+            {
+                return j + 1;
+            }
+            d = (float)Math.sqrt(d);
+            A[jj] = d;
+            for (int i = j + 1; i < N; i++)
+            {
+                int ij = offA + i * si + j * sj;
+                float sum = A[ij];
+                for (int k = 0; k < j; k++)
+                {
+                    sum -= A[offA + i * si + k * sj] * 
+                        A[offA + j * si + k * sj];
+                }
+                A[ij] = sum / d;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Solves a system of linear equations A * X = B with a symmetric 
+     * positive definite N x N matrix A, using the Cholesky factorization 
+     * that was computed with {@link #spotrf}.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param uplo The {@link org.jocl.blas.clblasUplo} of the factor
+     * @param N The number of rows and columns of A
+     * @param NRHS The number of right-hand sides
+     * @param A The factor
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param B The right-hand sides, which are overwritten with the 
+     * solution
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     */
+    public static void spotrs(int order, int uplo, int N, int NRHS, 
+        float A[], int offA, int lda, float B[], int offB, int ldb)
+    {
+        int first = uplo == clblasLower ? clblasNoTrans : clblasTrans;
+        int second = uplo == clblasLower ? clblasTrans : clblasNoTrans;
+        HostBLAS.clblasStrsm(order, clblasLeft, uplo, first, 
+            clblasNonUnit, N, NRHS, 1.0f, A, offA, lda, B, offB, ldb);
+        HostBLAS.clblasStrsm(order, clblasLeft, uplo, second, 
+            clblasNonUnit, N, NRHS, 1.0f, A, offA, lda, B, offB, ldb);
+    }
+    
+    /**
+     * Computes the QR factorization of a general M x N matrix, using
+     * Householder reflections. The factorization has the form 
+     * A = Q * R, where Q = H(0) * H(1) * ... * H(k-1) with k = min(M,N),
+     * and each H(i) = I - tau[i] * v * v^T. On return, the elements on 
+     * and above the diagonal of A contain R, and the elements below the 
+     * diagonal of column i contain the vector v of H(i), whose element 
+     * i is 1 and is not stored.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param M The number of rows of A
+     * @param N The number of columns of A
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param tau The array that receives the min(M,N) scalar factors
+     * of the reflections
+     * @param offTau The offset of the scalar factors
+     */
+    public static void sgeqrf(int order, int M, int N, 
+        float A[], int offA, int lda, float tau[], int offTau)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        int si = rowMajor ? lda : 1;
+        int sj = rowMajor ? 1 : lda;
+        int n = Math.min(M, N);
+        for (int j = 0; j < n; j++)
+        {
+            int jj = offA + j * si + j * sj;
+            double normSquared = 0.0;
+            for (int i = j + 1; i < M; i++)
+            {
+                float a = A[offA + i * si + j * sj];
+                normSquared += a * a;
+            }
+            float alpha = A[jj];
+            if (normSquared == 0.0)
+            {
+                tau[offTau + j] = 0.0f;
+                continue;
+            }
+            double norm = Math.sqrt(alpha * alpha + normSquared);
+            float beta = (float)(alpha >= 0.0f ? -norm : norm);
+            tau[offTau + j] = (beta - alpha) / beta;
+            float scale = 1.0f / (alpha - beta);
+            for (int i = j + 1; i < M; i++)
+            {
+                A[offA + i * si + j * sj] *= scale;
+            }
+            A[jj] = beta;
+            applyReflection(A, offA, si, sj, M, j, j + 1, N, 
+                tau[offTau + j], A, offA + j * si + j * sj, si);
+        }
+    }
+    
+    /**
+     * Forms the upper triangular factor T of a block reflector 
+     * H = H(0) * H(1) * ... * H(k-1) = I - V * T * V^T, where the 
+     * vectors of the reflections are stored in the columns of V, as 
+     * computed by {@link #sgeqrf}. See the LAPACK routine 
+     * <code>slarft</code> with direct='F' and storev='C'.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param M The number of rows of V
+     * @param K The number of reflections
+     * @param V The reflections, with implicit unit diagonal elements,
+     * where the elements above the diagonal are not referenced
+     * @param offV The offset of V
+     * @param ldv The leading dimension of V
+     * @param tau The scalar factors of the reflections
+     * @param offTau The offset of the scalar factors
+     * @param T The K x K matrix that receives the factor. The elements
+     * below the diagonal are set to zero.
+     * @param offT The offset of T
+     * @param ldt The leading dimension of T
+     */
+    public static void slarft(int order, int M, int K, 
+        float V[], int offV, int ldv, float tau[], int offTau,
+        float T[], int offT, int ldt)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        int vi = rowMajor ? ldv : 1;
+        int vj = rowMajor ? 1 : ldv;
+        int ti = rowMajor ? ldt : 1;
+        int tj = rowMajor ? 1 : ldt;
+        float column[] = new float[K];
+        for (int j = 0; j < K; j++)
+        {
+            float t = tau[offTau + j];
+            // column[0:j] = -tau[j] * V[:,0:j]^T * V[:,j]
+            for (int i = 0; i < j; i++)
+            {
+                float sum = V[offV + j * vi + i * vj];
+                for (int r = j + 1; r < M; r++)
+                {
+                    sum += V[offV + r * vi + i * vj] * 
+                        V[offV + r * vi + j * vj];
+                }
+                column[i] = -t * sum;
+            }
+            // T[0:j,j] = T[0:j,0:j] * column[0:j]
+            for (int i = 0; i < j; i++)
+            {
+                float sum = 0.0f;
+                for (int p = i; p < j; p++)
+                {
+                    sum += T[offT + i * ti + p * tj] * column[p];
+                }
+                T[offT + i * ti + j * tj] = sum;
+            }
+            T[offT + j * ti + j * tj] = t;
+            for (int i = j + 1; i < K; i++)
+            {
+                T[offT + i * ti + j * tj] = 0.0f;
+            }
+        }
+    }
+    
+    /**
+     * Multiplies the M x N matrix C from the left with Q or Q^T, where Q
+     * is the product of K reflections that was computed with 
+     * {@link #sgeqrf}.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param trans Whether C is multiplied with Q or with Q^T
+     * @param M The number of rows of C
+     * @param N The number of columns of C
+     * @param K The number of reflections
+     * @param A The reflections, as computed with {@link #sgeqrf}
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param tau The scalar factors of the reflections
+     * @param offTau The offset of the scalar factors
+     * @param C The matrix C, which is overwritten with the product
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     */
+    public static void sormqr(int order, int trans, int M, int N, int K, 
+        float A[], int offA, int lda, float tau[], int offTau, 
+        float C[], int offC, int ldc)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        int ai = rowMajor ? lda : 1;
+        int aj = rowMajor ? 1 : lda;
+        int ci = rowMajor ? ldc : 1;
+        int cj = rowMajor ? 1 : ldc;
+        for (int k = 0; k < K; k++)
+        {
+            int j = trans == clblasNoTrans ? K - 1 - k : k;
+            applyReflection(C, offC, ci, cj, M, j, 0, N, tau[offTau + j], 
+                A, offA + j * ai + j * aj, ai);
+        }
+    }
+    
+    /**
+     * Applies the reflection H = I - tau * v * v^T from the left to the 
+     * columns c0 to c1-1 of the rows j to M-1 of the given matrix, where
+     * the first element of v is 1, and the remaining ones are stored 
+     * in the given array.
+     * 
+     * @param C The matrix
+     * @param offC The offset of the matrix
+     * @param ci The row stride of the matrix
+     * @param cj The column stride of the matrix
+     * @param M The number of rows of the matrix
+     * @param j The first row that is affected
+     * @param c0 The first column that is affected
+     * @param c1 The column after the last one that is affected
+     * @param tau The scalar factor
+     * @param v The array containing the vector
+     * @param v0 The index of the first element of the vector
+     * @param inc The increment of the vector
+     */
+    private static void applyReflection(float C[], int offC, int ci, int cj, 
+        int M, int j, int c0, int c1, float tau, float v[], int v0, int inc)
+    {
+        if (tau == 0.0f)
+        {
+            return;
+        }
+        for (int c = c0; c < c1; c++)
+        {
+            int cc = offC + c * cj;
+            float w = C[cc + j * ci];
+            for (int i = j + 1; i < M; i++)
+            {
+                w += v[v0 + (i - j) * inc] * C[cc + i * ci];
+            }
+            w *= tau;
+            C[cc + j * ci] -= w;
+            for (int i = j + 1; i < M; i++)
+            {
+                C[cc + i * ci] -= w * v[v0 + (i - j) * inc];
+            }
+        }
+    }
+    
+    /**
+     * Performs the row interchanges that are described by the given
+     * pivot indices on the given matrix. See the LAPACK routine 
+     * <code>slaswp</code>.
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param N The number of columns of A
+     * @param ipiv The pivot indices
+     * @param offIpiv The offset of the pivot indices
+     * @param k1 The index of the first row interchange
+     * @param k2 The index after the last row interchange
+     * @param forward Whether the interchanges are performed in 
+     * increasing or in decreasing order
+     */
+    public static void applyPivots(int order, float A[], int offA, int lda, 
+        int N, int ipiv[], int offIpiv, int k1, int k2, boolean forward)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        int si = rowMajor ? lda : 1;
+        int sj = rowMajor ? 1 : lda;
+        for (int k = k1; k < k2; k++)
+        {
+            int i = forward ? k : k1 + k2 - 1 - k;
+            int p = ipiv[offIpiv + i];
+            if (p != i)
+            {
+                swapRows(A, offA + i * si, offA + p * si, sj, N);
+            }
+        }
+    }
+    
+    /**
+     * Swaps n elements with the given stride, starting at the given 
+     * indices
+     * 
+     * @param a The array
+     * @param i0 The first start index
+     * @param i1 The second start index
+     * @param stride The stride
+     * @param n The number of elements
+     */
+    private static void swapRows(float a[], int i0, int i1, int stride, 
+        int n)
+    {
+        for (int j = 0; j < n; j++)
+        {
+            int k0 = i0 + j * stride;
+            int k1 = i1 + j * stride;
+            float t = a[k0];
+            a[k0] = a[k1];
+            a[k1] = t;
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private HostLAPACK()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
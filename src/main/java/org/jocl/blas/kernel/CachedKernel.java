@@ -0,0 +1,214 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.kernel;
+
+import org.jocl.CL;
+import org.jocl.Pointer;
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_event;
+import org.jocl.cl_kernel;
+import org.jocl.cl_mem;
+
+/**
+ * A kernel that was created by a {@link KernelCache}. <br>
+ * <br>
+ * The arguments of a <code>cl_kernel</code> are shared state, so the 
+ * arguments of a cached kernel are only set in the {@link #enqueue}
+ * methods, which are synchronized: The arguments are captured when the
+ * kernel is enqueued, so the same kernel may safely be enqueued by 
+ * multiple threads.
+ */
+public final class CachedKernel
+{
+    /**
+     * The default local work size for 1-dimensional kernels
+     */
+    public static final int DEFAULT_LOCAL_WORK_SIZE = 64;
+    
+    /**
+     * The name of the kernel function
+     */
+    private final String name;
+    
+    /**
+     * The kernel
+     */
+    private final cl_kernel kernel;
+    
+    /**
+     * Creates a new cached kernel
+     * 
+     * @param name The name of the kernel function
+     * @param kernel The kernel
+     */
+    CachedKernel(String name, cl_kernel kernel)
+    {
+        this.name = name;
+        this.kernel = kernel;
+    }
+    
+    /**
+     * Returns the name of the kernel function
+     * 
+     * @return The name
+     */
+    public String getName()
+    {
+        return name;
+    }
+    
+    /**
+     * Enqueue this kernel for a 1-dimensional range that covers the 
+     * given number of work items. The global work size will be rounded 
+     * up to a multiple of the {@link #DEFAULT_LOCAL_WORK_SIZE}, so the 
+     * kernel has to check whether its global ID is smaller than n.
+     * 
+     * @param commandQueue The command queue
+     * @param n The number of work items
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the kernel execution. May be 
+     * <code>null</code>.
+     * @param arguments The kernel arguments. See {@link #enqueue(
+     * cl_command_queue, long[], long[], int, cl_event[], cl_event, 
+     * Object...)}
+     * @return The OpenCL status
+     * @throws IllegalArgumentException If an argument has an unsupported
+     * type
+     */
+    public int enqueue(cl_command_queue commandQueue, long n, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event, 
+        Object ... arguments)
+    {
+        long globalWorkSize = roundUp(Math.max(n, 1), 
+            DEFAULT_LOCAL_WORK_SIZE);
+        return enqueue(commandQueue, new long[] { globalWorkSize }, null, 
+            numEventsInWaitList, eventWaitList, event, arguments);
+    }
+    
+    /**
+     * Set the given arguments for this kernel, and enqueue it. <br>
+     * <br>
+     * The arguments may be <code>cl_mem</code> objects, or 
+     * <code>Float</code>, <code>Double</code>, <code>Integer</code> or
+     * <code>Long</code> values, which are passed as <code>float</code>, 
+     * <code>double</code>, <code>int</code> and <code>long</code>, 
+     * respectively. 
+     * 
+     * @param commandQueue The command queue
+     * @param globalWorkSize The global work size
+     * @param localWorkSize The local work size. May be <code>null</code>
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the kernel execution. May be 
+     * <code>null</code>.
+     * @param arguments The kernel arguments
+     * @return The OpenCL status
+     * @throws IllegalArgumentException If an argument has an unsupported
+     * type
+     */
+    public synchronized int enqueue(cl_command_queue commandQueue, 
+        long globalWorkSize[], long localWorkSize[], 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event, 
+        Object ... arguments)
+    {
+        for (int i = 0; i < arguments.length; i++)
+        {
+            int result = setArgument(i, arguments[i]);
+            if (result != CL.CL_SUCCESS)
+            {
+                return result;
+            }
+        }
+        return CL.clEnqueueNDRangeKernel(commandQueue, kernel, 
+            globalWorkSize.length, null, globalWorkSize, localWorkSize, 
+            numEventsInWaitList, eventWaitList, event);
+    }
+    
+    /**
+     * Set the specified kernel argument
+     * 
+     * @param index The argument index
+     * @param argument The argument
+     * @return The OpenCL status
+     * @throws IllegalArgumentException If the argument has an unsupported
+     * type
+     */
+    private int setArgument(int index, Object argument)
+    {
+        if (argument instanceof cl_mem)
+        {
+            return CL.clSetKernelArg(kernel, index, Sizeof.cl_mem, 
+                Pointer.to((cl_mem) argument));
+        }
+        if (argument instanceof Float)
+        {
+            return CL.clSetKernelArg(kernel, index, Sizeof.cl_float, 
+                Pointer.to(new float[] { (Float) argument }));
+        }
+        if (argument instanceof Double)
+        {
+            return CL.clSetKernelArg(kernel, index, Sizeof.cl_double, 
+                Pointer.to(new double[] { (Double) argument }));
+        }
+        if (argument instanceof Integer)
+        {
+            return CL.clSetKernelArg(kernel, index, Sizeof.cl_int, 
+                Pointer.to(new int[] { (Integer) argument }));
+        }
+        if (argument instanceof Long)
+        {
+            return CL.clSetKernelArg(kernel, index, Sizeof.cl_long, 
+                Pointer.to(new long[] { (Long) argument }));
+        }
+        throw new IllegalArgumentException(
+            "Unsupported type of kernel argument " + index + ": " + 
+            (argument == null ? null : argument.getClass()));
+    }
+    
+    /**
+     * Release this kernel
+     */
+    void release()
+    {
+        CL.clReleaseKernel(kernel);
+    }
+    
+    /**
+     * Round the given value up to the next multiple of the given divisor
+     * 
+     * @param value The value
+     * @param divisor The divisor
+     * @return The rounded value
+     */
+    public static long roundUp(long value, long divisor)
+    {
+        long r = value % divisor;
+        return r == 0 ? value : value + divisor - r;
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.kernel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.cl_context;
+import org.jocl.cl_kernel;
+import org.jocl.cl_program;
+
+/**
+ * A cache for kernels that are compiled from generated OpenCL source 
+ * code. <br>
+ * <br>
+ * Kernels are identified by their context, their source code and the 
+ * name of the kernel function. Code generators should therefore emit 
+ * source code that only depends on the shape of the computation (and 
+ * not, for example, on names that have been chosen by the user), so 
+ * that computations with the same shape share one compiled program. 
+ * <br>
+ * <br>
+ * This class is thread-safe. The programs and kernels remain in the 
+ * cache until they are {@link #release(cl_context) released}.
+ */
+public final class KernelCache
+{
+    /**
+     * The key for programs and kernels
+     */
+    private static final class Key
+    {
+        private final cl_context context;
+        private final String source;
+        private final String name;
+        
+        /**
+         * Creates a new key
+         * 
+         * @param context The context
+         * @param source The source code
+         * @param name The kernel name. May be <code>null</code> for 
+         * the key of a program.
+         */
+        Key(cl_context context, String source, String name)
+        {
+            this.context = context;
+            this.source = source;
+            this.name = name;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = context.hashCode();
+            result = 31 * result + source.hashCode();
+            result = 31 * result + (name == null ? 0 : name.hashCode());
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object object)
+        {
+            if (this == object)
+            {
+                return true;
+            }
+            if (!(object instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) object;
+            return context.equals(other.context) && 
+                source.equals(other.source) && 
+                (name == null ? other.name == null : name.equals(other.name));
+        }
+    }
+    
+    /**
+     * The shared instance
+     */
+    private static final KernelCache INSTANCE = new KernelCache();
+    
+    /**
+     * Returns the shared kernel cache
+     * 
+     * @return The shared kernel cache
+     */
+    public static KernelCache getInstance()
+    {
+        return INSTANCE;
+    }
+    
+    /**
+     * The programs, for the context and the source code
+     */
+    private final Map<Key, cl_program> programs;
+    
+    /**
+     * The kernels
+     */
+    private final Map<Key, CachedKernel> kernels;
+    
+    /**
+     * The number of programs that have been built
+     */
+    private int buildCount;
+    
+    /**
+     * Creates a new, empty kernel cache
+     */
+    public KernelCache()
+    {
+        this.programs = new HashMap<Key, cl_program>();
+        this.kernels = new HashMap<Key, CachedKernel>();
+    }
+    
+    /**
+     * Returns the kernel with the given name from the program that is
+     * compiled from the given source code for the given context. If
+     * the kernel is not yet contained in this cache, then it will be
+     * created, compiling the program if necessary.
+     * 
+     * @param context The context
+     * @param source The source code
+     * @param name The name of the kernel function
+     * @return The kernel
+     * @throws CLException If the program can not be compiled, or the 
+     * kernel can not be created
+     */
+    public synchronized CachedKernel getKernel(
+        cl_context context, String source, String name)
+    {
+        Key key = new Key(context, source, name);
+        CachedKernel kernel = kernels.get(key);
+        if (kernel == null)
+        {
+            cl_program program = getProgram(context, source);
+            int errcode[] = { 0 };
+            cl_kernel clKernel = CL.clCreateKernel(program, name, errcode);
+            check(errcode[0], "clCreateKernel for " + name);
+            kernel = new CachedKernel(name, clKernel);
+            kernels.put(key, kernel);
+        }
+        return kernel;
+    }
+    
+    /**
+     * Returns the program for the given source code, building it if 
+     * necessary
+     * 
+     * @param context The context
+     * @param source The source code
+     * @return The program
+     * @throws CLException If the program can not be compiled
+     */
+    private cl_program getProgram(cl_context context, String source)
+    {
+        Key key = new Key(context, source, null);
+        cl_program program = programs.get(key);
+        if (program == null)
+        {
+            int errcode[] = { 0 };
+            program = CL.clCreateProgramWithSource(context, 1, 
+                new String[] { source }, null, errcode);
+            check(errcode[0], "clCreateProgramWithSource");
+            int result = CL.clBuildProgram(program, 0, null, null, null, null);
+            if (result != CL.CL_SUCCESS)
+            {
+                CL.clReleaseProgram(program);
+                throw new CLException("clBuildProgram failed: " + 
+                    CL.stringFor_errorCode(result) + 
+                    ", source:\n" + source, result);
+            }
+            programs.put(key, program);
+            buildCount++;
+        }
+        return program;
+    }
+    
+    /**
+     * Returns the number of programs that have been built by this cache
+     * 
+     * @return The number of builds
+     */
+    public synchronized int getBuildCount()
+    {
+        return buildCount;
+    }
+    
+    /**
+     * Returns the number of kernels in this cache
+     * 
+     * @return The number of kernels
+     */
+    public synchronized int size()
+    {
+        return kernels.size();
+    }
+    
+    /**
+     * Release all programs and kernels of the given context. This has
+     * to be called before the context is released. The caller is 
+     * responsible for making sure that none of these kernels is still
+     * in use.
+     * 
+     * @param context The context
+     */
+    public synchronized void release(cl_context context)
+    {
+        List<CachedKernel> releasedKernels = new ArrayList<CachedKernel>();
+        Iterator<Entry<Key, CachedKernel>> ki = kernels.entrySet().iterator();
+        while (ki.hasNext())
+        {
+            Entry<Key, CachedKernel> entry = ki.next();
+            if (entry.getKey().context.equals(context))
+            {
+                releasedKernels.add(entry.getValue());
+                ki.remove();
+            }
+        }
+        for (CachedKernel kernel : releasedKernels)
+        {
+            kernel.release();
+        }
+        Iterator<Entry<Key, cl_program>> pi = programs.entrySet().iterator();
+        while (pi.hasNext())
+        {
+            Entry<Key, cl_program> entry = pi.next();
+            if (entry.getKey().context.equals(context))
+            {
+                CL.clReleaseProgram(entry.getValue());
+                pi.remove();
+            }
+        }
+    }
+    
+    /**
+     * Throws a CLException if the given result is not CL_SUCCESS
+     * 
+     * @param result The result
+     * @param name The name of the function that returned the result
+     * @throws CLException If the result is not CL_SUCCESS
+     */
+    private static void check(int result, String name)
+    {
+        if (result != CL.CL_SUCCESS)
+        {
+            throw new CLException(name + " failed: " + 
+                CL.stringFor_errorCode(result), result);
+        }
+    }
+}
@@ -0,0 +1,703 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.lapack;
+
+import static org.jocl.blas.clblasDiag.clblasNonUnit;
+import static org.jocl.blas.clblasDiag.clblasUnit;
+import static org.jocl.blas.clblasOrder.clblasColumnMajor;
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasSide.clblasLeft;
+import static org.jocl.blas.clblasSide.clblasRight;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+import static org.jocl.blas.clblasTranspose.clblasTrans;
+import static org.jocl.blas.clblasUplo.clblasLower;
+import static org.jocl.blas.clblasUplo.clblasUpper;
+
+import org.jocl.blas.host.HostLAPACK;
+
+/**
+ * Blocked, right-looking implementations of the LU, Cholesky and QR 
+ * factorizations and the corresponding solvers. <br>
+ * <br>
+ * The methods have the same semantics as the methods in 
+ * {@link HostLAPACK}. The panels of the matrix are factorized on the 
+ * host with {@link HostLAPACK}, and the trailing matrix is updated with 
+ * the Level 3 operations of the given {@link FactorizationBackend}. <br>
+ * <br>
+ * The factorizations use a look-ahead of one panel: The columns of the 
+ * next panel are updated first, and their read is issued before the 
+ * update of the remaining trailing matrix. With an asynchronous 
+ * backend, the factorization of the next panel on the host thus 
+ * overlaps with the update of the trailing matrix on the device.
+ */
+public final class BlockedFactorizations
+{
+    /**
+     * The default number of columns of a panel
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+    
+    /**
+     * Computes the LU factorization of a general M x N matrix, using
+     * the {@link #DEFAULT_BLOCK_SIZE}.
+     * See {@link #sgetrf(FactorizationBackend, int, int, int, Object, 
+     * long, int, int[], int)}
+     * 
+     * @param <M> The type of the matrices
+     * @param backend The {@link FactorizationBackend}
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param M The number of rows of A
+     * @param N The number of columns of A
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param ipiv The array that receives the min(M,N) pivot indices
+     * @return The info value, as described in {@link HostLAPACK#sgetrf}
+     */
+    public static <M> int sgetrf(FactorizationBackend<M> backend, 
+        int order, int M, int N, M A, long offA, int lda, int ipiv[])
+    {
+        return sgetrf(backend, order, M, N, A, offA, lda, ipiv, 
+            DEFAULT_BLOCK_SIZE);
+    }
+    
+    /**
+     * Computes the LU factorization of a general M x N matrix, using 
+     * partial pivoting with row interchanges. 
+     * See {@link HostLAPACK#sgetrf}. The pivot indices are zero-based.
+     * 
+     * @param <M> The type of the matrices
+     * @param backend The {@link FactorizationBackend}
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param M The number of rows of A
+     * @param N The number of columns of A
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param ipiv The array that receives the min(M,N) pivot indices
+     * @param blockSize The number of columns of a panel
+     * @return The info value, as described in {@link HostLAPACK#sgetrf}
+     * @throws IllegalArgumentException If the block size is not positive
+     */
+    public static <M> int sgetrf(FactorizationBackend<M> backend, 
+        int order, int M, int N, M A, long offA, int lda, int ipiv[], 
+        int blockSize)
+    {
+        checkBlockSize(blockSize);
+        int n = Math.min(M, N);
+        if (n == 0)
+        {
+            return 0;
+        }
+        int nb = Math.min(blockSize, n);
+        float panels[][] = { new float[M * nb], new float[M * nb] };
+        backend.readBlock(order, A, offA, lda, M, nb, panels[0]);
+        int info = 0;
+        for (int k = 0, p = 0; k < n; k += nb, p ^= 1)
+        {
+            int kb = Math.min(nb, n - k);
+            int rows = M - k;
+            float panel[] = panels[p];
+            backend.awaitBlock();
+            int panelInfo = HostLAPACK.sgetrf(order, rows, kb, panel, 0, 
+                HostFactorizationBackend.ld(order, rows, kb), ipiv, k);
+            if (info == 0 && panelInfo != 0)
+            {
+                info = k + panelInfo;
+            }
+            for (int i = k; i < k + kb; i++)
+            {
+                ipiv[i] += k;
+            }
+            backend.writeBlock(order, panel, rows, kb, 
+                A, offA + index(order, k, k, lda), lda);
+            if (k > 0)
+            {
+                backend.swapRows(order, A, offA, lda, k, 
+                    ipiv, k, k + kb, true);
+            }
+            int right = N - k - kb;
+            if (right <= 0)
+            {
+                continue;
+            }
+            long offA12 = offA + index(order, 0, k + kb, lda);
+            backend.swapRows(order, A, offA12, lda, right, 
+                ipiv, k, k + kb, true);
+            backend.strsm(order, clblasLeft, clblasLower, clblasNoTrans, 
+                clblasUnit, kb, right, 1.0f, 
+                A, offA + index(order, k, k, lda), lda, 
+                A, offA + index(order, k, k + kb, lda), lda);
+            int below = M - k - kb;
+            if (below <= 0)
+            {
+                continue;
+            }
+            int next = Math.min(nb, Math.max(0, n - k - kb));
+            long offL21 = offA + index(order, k + kb, k, lda);
+            if (next > 0)
+            {
+                backend.sgemm(order, clblasNoTrans, clblasNoTrans, 
+                    below, next, kb, -1.0f, A, offL21, lda, 
+                    A, offA + index(order, k, k + kb, lda), lda, 1.0f, 
+                    A, offA + index(order, k + kb, k + kb, lda), lda);
+                backend.readBlock(order, A, 
+                    offA + index(order, k + kb, k + kb, lda), lda, 
+                    below, next, panels[p ^ 1]);
+            }
+            int rest = right - next;
+            if (rest > 0)
+            {
+                backend.sgemm(order, clblasNoTrans, clblasNoTrans, 
+                    below, rest, kb, -1.0f, A, offL21, lda, 
+                    A, offA + index(order, k, k + kb + next, lda), lda, 1.0f, 
+                    A, offA + index(order, k + kb, k + kb + next, lda), lda);
+            }
+        }
+        backend.finish();
+        return info;
+    }
+    
+    /**
+     * Solves a system of linear equations A * X = B or A^T * X = B
+     * with a general N x N matrix A, using the LU factorization that 
+     * was computed with {@link #sgetrf}.
+     * See {@link HostLAPACK#sgetrs}.
+     *
+     * @param <M> The type of the matrices
+     * @param backend The {@link FactorizationBackend}
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param trans Whether the system with A or with A^T is solved
+     * @param N The number of rows and columns of A
+     * @param NRHS The number of right-hand sides
+     * @param A The factors L and U
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param ipiv The pivot indices
+     * @param B The right-hand sides, which are overwritten with the 
+     * solution
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     */
+    public static <M> void sgetrs(FactorizationBackend<M> backend, 
+        int order, int trans, int N, int NRHS, M A, long offA, int lda, 
+        int ipiv[], M B, long offB, int ldb)
+    {
+        if (trans == clblasNoTrans)
+        {
+            backend.swapRows(order, B, offB, ldb, NRHS, ipiv, 0, N, true);
+            backend.strsm(order, clblasLeft, clblasLower, clblasNoTrans, 
+                clblasUnit, N, NRHS, 1.0f, A, offA, lda, B, offB, ldb);
+            backend.strsm(order, clblasLeft, clblasUpper, clblasNoTrans, 
+                clblasNonUnit, N, NRHS, 1.0f, A, offA, lda, B, offB, ldb);
+        }
+        else
+        {
+            backend.strsm(order, clblasLeft, clblasUpper, clblasTrans, 
+                clblasNonUnit, N, NRHS, 1.0f, A, offA, lda, B, offB, ldb);
+            backend.strsm(order, clblasLeft, clblasLower, clblasTrans, 
+                clblasUnit, N, NRHS, 1.0f, A, offA, lda, B, offB, ldb);
+            backend.swapRows(order, B, offB, ldb, NRHS, ipiv, 0, N, false);
+        }
+        backend.finish();
+    }
+    
+    /**
+     * Computes the Cholesky factorization of a symmetric positive 
+     * definite N x N matrix, using the {@link #DEFAULT_BLOCK_SIZE}.
+     * See {@link #spotrf(FactorizationBackend, int, int, int, Object, 
+     * long, int, int)}
+     * 
+     * @param <M> The type of the matrices
+     * @param backend The {@link FactorizationBackend}
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param uplo The {@link org.jocl.blas.clblasUplo} of A
+     * @param N The number of rows and columns of A
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @return The info value, as described in {@link HostLAPACK#spotrf}
+     */
+    public static <M> int spotrf(FactorizationBackend<M> backend, 
+        int order, int uplo, int N, M A, long offA, int lda)
+    {
+        return spotrf(backend, order, uplo, N, A, offA, lda, 
+            DEFAULT_BLOCK_SIZE);
+    }
+    
+    /**
+     * Computes the Cholesky factorization of a symmetric positive 
+     * definite N x N matrix. See {@link HostLAPACK#spotrf}.
+     * 
+     * @param <M> The type of the matrices
+     * @param backend The {@link FactorizationBackend}
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param uplo The {@link org.jocl.blas.clblasUplo} of A
+     * @param N The number of rows and columns of A
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param blockSize The number of columns of a panel
+     * @return The info value, as described in {@link HostLAPACK#spotrf}
+     * @throws IllegalArgumentException If the block size is not positive
+     */
+    public static <M> int spotrf(FactorizationBackend<M> backend, 
+        int order, int uplo, int N, M A, long offA, int lda, int blockSize)
+    {
+        checkBlockSize(blockSize);
+        if (N == 0)
+        {
+            return 0;
+        }
+        // The upper triangle in one order is the lower triangle of the
+        // transposed matrix in the other order, so that the computation 
+        // can always be expressed in terms of L in A = L * L^T
+        int o = (uplo == clblasLower) ? order : 
+            (order == clblasRowMajor ? clblasColumnMajor : clblasRowMajor);
+        int nb = Math.min(blockSize, N);
+        float blocks[][] = { new float[nb * nb], new float[nb * nb] };
+        backend.readBlock(o, A, offA, lda, nb, nb, blocks[0]);
+        for (int k = 0, p = 0; k < N; k += nb, p ^= 1)
+        {
+            int kb = Math.min(nb, N - k);
+            float block[] = blocks[p];
+            backend.awaitBlock();
+            int blockInfo = HostLAPACK.spotrf(o, clblasLower, kb, block, 0, 
+                HostFactorizationBackend.ld(o, kb, kb));
+            if (blockInfo != 0)
+            {
+                backend.finish();
+                return k + blockInfo;
+            }
+            long offA11 = offA + index(o, k, k, lda);
+            backend.writeBlock(o, block, kb, kb, A, offA11, lda);
+            int below = N - k - kb;
+            if (below <= 0)
+            {
+                continue;
+            }
+            long offA21 = offA + index(o, k + kb, k, lda);
+            backend.strsm(o, clblasRight, clblasLower, clblasTrans, 
+                clblasNonUnit, below, kb, 1.0f, A, offA11, lda, 
+                A, offA21, lda);
+            int next = Math.min(nb, below);
+            long offA22 = offA + index(o, k + kb, k + kb, lda);
+            backend.ssyrk(o, clblasLower, clblasNoTrans, next, kb, -1.0f, 
+                A, offA21, lda, 1.0f, A, offA22, lda);
+            backend.readBlock(o, A, offA22, lda, next, next, blocks[p ^ 1]);
+            int rest = below - next;
+            if (rest > 0)
+            {
+                long offA31 = offA + index(o, k + kb + next, k, lda);
+                backend.sgemm(o, clblasNoTrans, clblasTrans, 
+                    rest, next, kb, -1.0f, A, offA31, lda, 
+                    A, offA21, lda, 1.0f, 
+                    A, offA + index(o, k + kb + next, k + kb, lda), lda);
+                backend.ssyrk(o, clblasLower, clblasNoTrans, rest, kb, -1.0f,
+                    A, offA31, lda, 1.0f, 
+                    A, offA + index(o, k + kb + next, k + kb + next, lda), 
+                    lda);
+            }
+        }
+        backend.finish();
+        return 0;
+    }
+    
+    /**
+     * Solves a system of linear equations A * X = B with a symmetric 
+     * positive definite N x N matrix A, using the Cholesky factorization 
+     * that was computed with {@link #spotrf}.
+     * See {@link HostLAPACK#spotrs}.
+     *
+     * @param <M> The type of the matrices
+     * @param backend The {@link FactorizationBackend}
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param uplo The {@link org.jocl.blas.clblasUplo} of the factor
+     * @param N The number of rows and columns of A
+     * @param NRHS The number of right-hand sides
+     * @param A The factor
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param B The right-hand sides, which are overwritten with the 
+     * solution
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     */
+    public static <M> void spotrs(FactorizationBackend<M> backend, 
+        int order, int uplo, int N, int NRHS, M A, long offA, int lda, 
+        M B, long offB, int ldb)
+    {
+        int first = uplo == clblasLower ? clblasNoTrans : clblasTrans;
+        int second = uplo == clblasLower ? clblasTrans : clblasNoTrans;
+        backend.strsm(order, clblasLeft, uplo, first, clblasNonUnit, 
+            N, NRHS, 1.0f, A, offA, lda, B, offB, ldb);
+        backend.strsm(order, clblasLeft, uplo, second, clblasNonUnit, 
+            N, NRHS, 1.0f, A, offA, lda, B, offB, ldb);
+        backend.finish();
+    }
+    
+    /**
+     * Computes the QR factorization of a general M x N matrix, using 
+     * the {@link #DEFAULT_BLOCK_SIZE}.
+     * See {@link #sgeqrf(FactorizationBackend, int, int, int, Object, 
+     * long, int, float[], int)}
+     * 
+     * @param <M> The type of the matrices
+     * @param backend The {@link FactorizationBackend}
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param M The number of rows of A
+     * @param N The number of columns of A
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param tau The array that receives the min(M,N) scalar factors
+     */
+    public static <M> void sgeqrf(FactorizationBackend<M> backend, 
+        int order, int M, int N, M A, long offA, int lda, float tau[])
+    {
+        sgeqrf(backend, order, M, N, A, offA, lda, tau, 
+            DEFAULT_BLOCK_SIZE);
+    }
+    
+    /**
+     * Computes the QR factorization of a general M x N matrix, using 
+     * Householder reflections. See {@link HostLAPACK#sgeqrf}. <br>
+     * <br>
+     * The reflections of each panel are combined into a block reflector
+     * in the compact WY representation H = I - V * T * V^T, which is 
+     * applied to the trailing matrix with two matrix products and one 
+     * triangular matrix multiplication.
+     * 
+     * @param <M> The type of the matrices
+     * @param backend The {@link FactorizationBackend}
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param M The number of rows of A
+     * @param N The number of columns of A
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param tau The array that receives the min(M,N) scalar factors
+     * @param blockSize The number of columns of a panel
+     * @throws IllegalArgumentException If the block size is not positive
+     */
+    public static <M> void sgeqrf(FactorizationBackend<M> backend, 
+        int order, int M, int N, M A, long offA, int lda, float tau[],
+        int blockSize)
+    {
+        checkBlockSize(blockSize);
+        int n = Math.min(M, N);
+        if (n == 0)
+        {
+            return;
+        }
+        int nb = Math.min(blockSize, n);
+        float panels[][] = { new float[M * nb], new float[M * nb] };
+        float v[] = new float[M * nb];
+        float t[] = new float[nb * nb];
+        M V = backend.createMatrix(M * nb);
+        M T = backend.createMatrix(nb * nb);
+        M W = backend.createMatrix(nb * N);
+        try
+        {
+            backend.readBlock(order, A, offA, lda, M, nb, panels[0]);
+            for (int k = 0, p = 0; k < n; k += nb, p ^= 1)
+            {
+                int kb = Math.min(nb, n - k);
+                int rows = M - k;
+                float panel[] = panels[p];
+                backend.awaitBlock();
+                int ldp = HostFactorizationBackend.ld(order, rows, kb);
+                HostLAPACK.sgeqrf(order, rows, kb, panel, 0, ldp, tau, k);
+                backend.writeBlock(order, panel, rows, kb, 
+                    A, offA + index(order, k, k, lda), lda);
+                int right = N - k - kb;
+                if (right <= 0)
+                {
+                    continue;
+                }
+                int ldt = HostFactorizationBackend.ld(order, kb, kb);
+                prepareBlockReflector(backend, order, rows, kb, 
+                    panel, tau, k, v, V, t, T);
+                int ldw = HostFactorizationBackend.ld(order, kb, right);
+                int next = Math.min(nb, n - k - kb);
+                if (next > 0)
+                {
+                    applyBlockReflector(backend, order, clblasTrans, 
+                        rows, next, kb, V, ldp, T, ldt, W, ldw, 
+                        A, offA + index(order, k, k + kb, lda), lda);
+                    backend.readBlock(order, A, 
+                        offA + index(order, k + kb, k + kb, lda), lda, 
+                        rows - kb, next, panels[p ^ 1]);
+                }
+                int rest = right - next;
+                if (rest > 0)
+                {
+                    applyBlockReflector(backend, order, clblasTrans, 
+                        rows, rest, kb, V, ldp, T, ldt, W, ldw, A, 
+                        offA + index(order, k, k + kb + next, lda), lda);
+                }
+            }
+            backend.finish();
+        }
+        finally
+        {
+            backend.releaseMatrix(V);
+            backend.releaseMatrix(T);
+            backend.releaseMatrix(W);
+        }
+    }
+    
+    /**
+     * Multiplies the M x N matrix C from the left with Q or Q^T, using 
+     * the {@link #DEFAULT_BLOCK_SIZE}. 
+     * See {@link #sormqr(FactorizationBackend, int, int, int, int, int, 
+     * Object, long, int, float[], Object, long, int, int)}
+     *
+     * @param <M> The type of the matrices
+     * @param backend The {@link FactorizationBackend}
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param trans Whether C is multiplied with Q or with Q^T
+     * @param M The number of rows of C
+     * @param N The number of columns of C
+     * @param K The number of reflections
+     * @param A The reflections, as computed with {@link #sgeqrf}
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param tau The scalar factors of the reflections
+     * @param C The matrix C, which is overwritten with the product
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     */
+    public static <M> void sormqr(FactorizationBackend<M> backend, 
+        int order, int trans, int M, int N, int K, M A, long offA, int lda, 
+        float tau[], M C, long offC, int ldc)
+    {
+        sormqr(backend, order, trans, M, N, K, A, offA, lda, tau, 
+            C, offC, ldc, DEFAULT_BLOCK_SIZE);
+    }
+    
+    /**
+     * Multiplies the M x N matrix C from the left with Q or Q^T, where Q
+     * is the product of K reflections that was computed with 
+     * {@link #sgeqrf}. See {@link HostLAPACK#sormqr}. The reflections 
+     * are applied as block reflectors, consisting of the given number 
+     * of reflections.
+     *
+     * @param <M> The type of the matrices
+     * @param backend The {@link FactorizationBackend}
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param trans Whether C is multiplied with Q or with Q^T
+     * @param M The number of rows of C
+     * @param N The number of columns of C
+     * @param K The number of reflections
+     * @param A The reflections, as computed with {@link #sgeqrf}
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param tau The scalar factors of the reflections
+     * @param C The matrix C, which is overwritten with the product
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     * @param blockSize The number of reflections in a block reflector
+     * @throws IllegalArgumentException If the block size is not positive
+     */
+    public static <M> void sormqr(FactorizationBackend<M> backend, 
+        int order, int trans, int M, int N, int K, M A, long offA, int lda, 
+        float tau[], M C, long offC, int ldc, int blockSize)
+    {
+        checkBlockSize(blockSize);
+        if (K == 0 || N == 0)
+        {
+            return;
+        }
+        int nb = Math.min(blockSize, K);
+        int blocks = (K + nb - 1) / nb;
+        float panels[][] = { new float[M * nb], new float[M * nb] };
+        float v[][] = { new float[M * nb], new float[M * nb] };
+        float t[][] = { new float[nb * nb], new float[nb * nb] };
+        M V = backend.createMatrix(M * nb);
+        M T = backend.createMatrix(nb * nb);
+        M W = backend.createMatrix(nb * N);
+        try
+        {
+            // Q^T = H(k-1) * ... * H(0) is applied starting with the 
+            // first block, and Q = H(0) * ... * H(k-1) starting with
+            // the last one. The panel of the next block is read while 
+            // the current one is applied.
+            boolean forward = trans != clblasNoTrans;
+            int b = forward ? 0 : blocks - 1;
+            int k = b * nb;
+            backend.readBlock(order, A, offA + index(order, k, k, lda), 
+                lda, M - k, Math.min(nb, K - k), panels[0]);
+            for (int i = 0; i < blocks; i++)
+            {
+                int p = i & 1;
+                b = forward ? i : blocks - 1 - i;
+                k = b * nb;
+                int kb = Math.min(nb, K - k);
+                int rows = M - k;
+                backend.awaitBlock();
+                if (i + 1 < blocks)
+                {
+                    int nk = (forward ? b + 1 : b - 1) * nb;
+                    backend.readBlock(order, A, 
+                        offA + index(order, nk, nk, lda), lda, 
+                        M - nk, Math.min(nb, K - nk), panels[p ^ 1]);
+                }
+                prepareBlockReflector(backend, order, rows, kb, 
+                    panels[p], tau, k, v[p], V, t[p], T);
+                applyBlockReflector(backend, order, trans, rows, N, kb, 
+                    V, HostFactorizationBackend.ld(order, rows, kb), 
+                    T, HostFactorizationBackend.ld(order, kb, kb), 
+                    W, HostFactorizationBackend.ld(order, kb, N), 
+                    C, offC + index(order, k, 0, ldc), ldc);
+            }
+            backend.finish();
+        }
+        finally
+        {
+            backend.releaseMatrix(V);
+            backend.releaseMatrix(T);
+            backend.releaseMatrix(W);
+        }
+    }
+    
+    /**
+     * Builds the explicit matrix V and the triangular factor T of the 
+     * block reflector that consists of the reflections in the given
+     * panel, and issues their writes into the given matrices
+     * 
+     * @param <M> The type of the matrices
+     * @param backend The {@link FactorizationBackend}
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param rows The number of rows of the panel
+     * @param kb The number of columns of the panel
+     * @param panel The panel, as computed by {@link HostLAPACK#sgeqrf}
+     * @param tau The scalar factors
+     * @param offTau The offset of the scalar factors of the panel
+     * @param v The array for V
+     * @param V The matrix that receives V
+     * @param t The array for T
+     * @param T The matrix that receives T
+     */
+    private static <M> void prepareBlockReflector(
+        FactorizationBackend<M> backend, int order, int rows, int kb, 
+        float panel[], float tau[], int offTau, 
+        float v[], M V, float t[], M T)
+    {
+        int ldv = HostFactorizationBackend.ld(order, rows, kb);
+        int ldt = HostFactorizationBackend.ld(order, kb, kb);
+        System.arraycopy(panel, 0, v, 0, rows * kb);
+        for (int j = 0; j < kb; j++)
+        {
+            for (int i = 0; i <= j; i++)
+            {
+                v[(int)index(order, i, j, ldv)] = i == j ? 1.0f : 0.0f;
+            }
+        }
+        HostLAPACK.slarft(order, rows, kb, v, 0, ldv, tau, offTau, 
+            t, 0, ldt);
+        backend.writeBlock(order, v, rows, kb, V, 0, ldv);
+        backend.writeBlock(order, t, kb, kb, T, 0, ldt);
+    }
+    
+    /**
+     * Issues the multiplication of the M x N matrix C from the left with 
+     * the block reflector H = I - V * T * V^T, or with its transpose
+     * 
+     * @param <M> The type of the matrices
+     * @param backend The {@link FactorizationBackend}
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param trans Whether C is multiplied with H or with H^T
+     * @param M The number of rows of C and V
+     * @param N The number of columns of C
+     * @param K The number of columns of V
+     * @param V The matrix V
+     * @param ldv The leading dimension of V
+     * @param T The upper triangular matrix T
+     * @param ldt The leading dimension of T
+     * @param W A workspace for K x N elements
+     * @param ldw The leading dimension of the workspace
+     * @param C The matrix C
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     */
+    private static <M> void applyBlockReflector(
+        FactorizationBackend<M> backend, int order, int trans, 
+        int M, int N, int K, M V, int ldv, M T, int ldt, M W, int ldw,
+        M C, long offC, int ldc)
+    {
+        // W = V^T * C
+        backend.sgemm(order, clblasTrans, clblasNoTrans, K, N, M, 1.0f, 
+            V, 0, ldv, C, offC, ldc, 0.0f, W, 0, ldw);
+        // W = op(T) * W
+        backend.strmm(order, clblasLeft, clblasUpper, 
+            trans == clblasNoTrans ? clblasNoTrans : clblasTrans, 
+            clblasNonUnit, K, N, 1.0f, T, 0, ldt, W, 0, ldw);
+        // C = C - V * W
+        backend.sgemm(order, clblasNoTrans, clblasNoTrans, M, N, K, -1.0f, 
+            V, 0, ldv, W, 0, ldw, 1.0f, C, offC, ldc);
+    }
+    
+    /**
+     * Returns the index of the element (i,j) of a matrix, relative to 
+     * the offset of the matrix
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param i The row index
+     * @param j The column index
+     * @param ld The leading dimension
+     * @return The index
+     */
+    private static long index(int order, int i, int j, int ld)
+    {
+        return order == clblasRowMajor ? 
+            (long)i * ld + j : i + (long)j * ld;
+    }
+    
+    /**
+     * Checks that the given block size is positive
+     * 
+     * @param blockSize The block size
+     * @throws IllegalArgumentException If the block size is not positive
+     */
+    private static void checkBlockSize(int blockSize)
+    {
+        if (blockSize <= 0)
+        {
+            throw new IllegalArgumentException(
+                "The block size must be positive, but is " + blockSize);
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private BlockedFactorizations()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
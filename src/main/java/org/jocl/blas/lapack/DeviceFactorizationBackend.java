@@ -0,0 +1,313 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.lapack;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.Pointer;
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.CLBLAS;
+import org.jocl.blas.clblasStatus;
+
+/**
+ * Implementation of a {@link FactorizationBackend} that operates on 
+ * <code>cl_mem</code> objects, using {@link CLBLAS}. <br>
+ * <br>
+ * All operations are enqueued in the given command queue, which must 
+ * be an in-order queue, and only the reads of blocks are synchronized
+ * with the host. Blocks are transferred with rectangular reads and
+ * writes, through direct buffers that are kept alive until the 
+ * respective transfer is known to be completed.
+ */
+public final class DeviceFactorizationBackend 
+    implements FactorizationBackend<cl_mem>
+{
+    /**
+     * The context
+     */
+    private final cl_context context;
+    
+    /**
+     * The command queue
+     */
+    private final cl_command_queue commandQueue;
+    
+    /**
+     * The direct buffer that receives the pending read
+     */
+    private ByteBuffer readBuffer;
+    
+    /**
+     * The array that receives the pending read, or <code>null</code>
+     * if there is no pending read
+     */
+    private float readBlock[];
+    
+    /**
+     * The number of elements of the pending read
+     */
+    private int readSize;
+    
+    /**
+     * The event of the pending read
+     */
+    private cl_event readEvent;
+    
+    /**
+     * The direct buffers of the writes that may not be completed yet
+     */
+    private final List<ByteBuffer> pendingWrites;
+    
+    /**
+     * The number of elements of {@link #pendingWrites} that had been
+     * enqueued before the pending read
+     */
+    private int writesBeforeRead;
+    
+    /**
+     * Creates a new backend that enqueues all operations in the given
+     * in-order command queue
+     * 
+     * @param context The context in which workspace matrices are created
+     * @param commandQueue The command queue
+     */
+    public DeviceFactorizationBackend(
+        cl_context context, cl_command_queue commandQueue)
+    {
+        this.context = context;
+        this.commandQueue = commandQueue;
+        this.pendingWrites = new ArrayList<ByteBuffer>();
+    }
+    
+    @Override
+    public cl_mem createMatrix(int size)
+    {
+        int errcode[] = { 0 };
+        cl_mem A = CL.clCreateBuffer(context, CL.CL_MEM_READ_WRITE, 
+            (long)Math.max(1, size) * Sizeof.cl_float, null, errcode);
+        check(errcode[0], "clCreateBuffer");
+        return A;
+    }
+
+    @Override
+    public void releaseMatrix(cl_mem A)
+    {
+        CL.clReleaseMemObject(A);
+    }
+    
+    @Override
+    public void readBlock(int order, cl_mem A, long offA, int lda, 
+        int rows, int cols, float[] block)
+    {
+        if (readBlock != null)
+        {
+            throw new IllegalStateException(
+                "There already is a pending read");
+        }
+        readSize = rows * cols;
+        if (readBuffer == null || readBuffer.capacity() < 
+            readSize * Sizeof.cl_float)
+        {
+            readBuffer = ByteBuffer.allocateDirect(
+                readSize * Sizeof.cl_float).order(ByteOrder.nativeOrder());
+        }
+        long region[] = region(order, rows, cols);
+        readEvent = new cl_event();
+        check(CL.clEnqueueReadBufferRect(commandQueue, A, false, 
+            origin(offA, lda), new long[3], region, 
+            (long)lda * Sizeof.cl_float, 0, region[0], 0, 
+            Pointer.to(readBuffer), 0, null, readEvent), 
+            "clEnqueueReadBufferRect");
+        CL.clFlush(commandQueue);
+        readBlock = block;
+        writesBeforeRead = pendingWrites.size();
+    }
+
+    @Override
+    public void awaitBlock()
+    {
+        if (readBlock == null)
+        {
+            return;
+        }
+        check(CL.clWaitForEvents(1, new cl_event[] { readEvent }), 
+            "clWaitForEvents");
+        CL.clReleaseEvent(readEvent);
+        readBuffer.asFloatBuffer().get(readBlock, 0, readSize);
+        // The queue is in-order, so all earlier writes are completed
+        pendingWrites.subList(0, writesBeforeRead).clear();
+        readEvent = null;
+        readBlock = null;
+    }
+
+    @Override
+    public void writeBlock(int order, float[] block, int rows, int cols, 
+        cl_mem A, long offA, int lda)
+    {
+        int size = rows * cols;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(
+            size * Sizeof.cl_float).order(ByteOrder.nativeOrder());
+        buffer.asFloatBuffer().put(block, 0, size);
+        long region[] = region(order, rows, cols);
+        check(CL.clEnqueueWriteBufferRect(commandQueue, A, false, 
+            origin(offA, lda), new long[3], region, 
+            (long)lda * Sizeof.cl_float, 0, region[0], 0, 
+            Pointer.to(buffer), 0, null, null), 
+            "clEnqueueWriteBufferRect");
+        pendingWrites.add(buffer);
+    }
+
+    @Override
+    public void swapRows(int order, cl_mem A, long offA, int lda, int N, 
+        int[] ipiv, int k1, int k2, boolean forward)
+    {
+        int inc = order == clblasRowMajor ? 1 : lda;
+        long rowStride = order == clblasRowMajor ? lda : 1;
+        for (int k = k1; k < k2; k++)
+        {
+            int i = forward ? k : k1 + k2 - 1 - k;
+            int p = ipiv[i];
+            if (p != i)
+            {
+                check(CLBLAS.clblasSswap(N, 
+                    A, offA + i * rowStride, inc, 
+                    A, offA + p * rowStride, inc, 
+                    1, new cl_command_queue[] { commandQueue }, 
+                    0, null, null), "clblasSswap");
+            }
+        }
+    }
+
+    @Override
+    public void strsm(int order, int side, int uplo, int transA, int diag, 
+        int M, int N, float alpha, cl_mem A, long offA, int lda, 
+        cl_mem B, long offB, int ldb)
+    {
+        check(CLBLAS.clblasStrsm(order, side, uplo, transA, diag, M, N, 
+            alpha, A, offA, lda, B, offB, ldb, 
+            1, new cl_command_queue[] { commandQueue }, 0, null, null), 
+            "clblasStrsm");
+    }
+
+    @Override
+    public void strmm(int order, int side, int uplo, int transA, int diag, 
+        int M, int N, float alpha, cl_mem A, long offA, int lda, 
+        cl_mem B, long offB, int ldb)
+    {
+        check(CLBLAS.clblasStrmm(order, side, uplo, transA, diag, M, N, 
+            alpha, A, offA, lda, B, offB, ldb, 
+            1, new cl_command_queue[] { commandQueue }, 0, null, null), 
+            "clblasStrmm");
+    }
+
+    @Override
+    public void sgemm(int order, int transA, int transB, 
+        int M, int N, int K, float alpha, 
+        cl_mem A, long offA, int lda, cl_mem B, long offB, int ldb, 
+        float beta, cl_mem C, long offC, int ldc)
+    {
+        check(CLBLAS.clblasSgemm(order, transA, transB, M, N, K, alpha, 
+            A, offA, lda, B, offB, ldb, beta, C, offC, ldc, 
+            1, new cl_command_queue[] { commandQueue }, 0, null, null), 
+            "clblasSgemm");
+    }
+
+    @Override
+    public void ssyrk(int order, int uplo, int transA, int N, int K, 
+        float alpha, cl_mem A, long offA, int lda, 
+        float beta, cl_mem C, long offC, int ldc)
+    {
+        check(CLBLAS.clblasSsyrk(order, uplo, transA, N, K, alpha, 
+            A, offA, lda, beta, C, offC, ldc, 
+            1, new cl_command_queue[] { commandQueue }, 0, null, null), 
+            "clblasSsyrk");
+    }
+
+    @Override
+    public void finish()
+    {
+        awaitBlock();
+        check(CL.clFinish(commandQueue), "clFinish");
+        pendingWrites.clear();
+    }
+    
+    /**
+     * Returns the buffer origin of a rectangular transfer of a block at 
+     * the given offset, as {x in bytes, y, 0}
+     * 
+     * @param off The offset of the block, in elements
+     * @param ld The leading dimension
+     * @return The origin
+     */
+    private static long[] origin(long off, int ld)
+    {
+        return new long[] { (off % ld) * Sizeof.cl_float, off / ld, 0 };
+    }
+    
+    /**
+     * Returns the region of a rectangular transfer of the given block, 
+     * as {width in bytes, height, 1}
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param rows The number of rows
+     * @param cols The number of columns
+     * @return The region
+     */
+    private static long[] region(int order, int rows, int cols)
+    {
+        int inner = order == clblasRowMajor ? cols : rows;
+        int outer = order == clblasRowMajor ? rows : cols;
+        return new long[] { (long)inner * Sizeof.cl_float, outer, 1 };
+    }
+    
+    /**
+     * Throws a CLException if the given result is not CL_SUCCESS
+     * 
+     * @param result The result
+     * @param name The name of the function that returned the result
+     * @throws CLException If the result is not CL_SUCCESS
+     */
+    private static void check(int result, String name)
+    {
+        if (result != CL.CL_SUCCESS)
+        {
+            throw new CLException(name + " failed: " + 
+                clblasStatus.stringFor(result), result);
+        }
+    }
+}
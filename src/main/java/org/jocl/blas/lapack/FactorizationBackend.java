@@ -0,0 +1,220 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.lapack;
+
+/**
+ * Interface for the operations that are required by the 
+ * {@link BlockedFactorizations}. The operations are modeled after the 
+ * respective methods in {@link org.jocl.blas.CLBLAS}, with the matrices
+ * being represented by instances of the type parameter. <br>
+ * <br>
+ * Implementations may execute the operations asynchronously, but have 
+ * to execute them in the order in which they are issued. Blocks that 
+ * are transferred between the matrices and the host are stored densely 
+ * in the order of the matrix, with a leading dimension that is the 
+ * number of rows for column-major order, and the number of columns 
+ * for row-major order.
+ * 
+ * @param <M> The type of the matrices
+ */
+public interface FactorizationBackend<M>
+{
+    /**
+     * Creates a new matrix with the given number of elements, which may 
+     * be used as a workspace
+     * 
+     * @param size The number of elements
+     * @return The matrix
+     */
+    M createMatrix(int size);
+    
+    /**
+     * Releases the given matrix, which was created with 
+     * {@link #createMatrix(int)}
+     * 
+     * @param A The matrix
+     */
+    void releaseMatrix(M A);
+    
+    /**
+     * Issue the read of the given block of a matrix into the given 
+     * array. The contents of the array are only valid after 
+     * {@link #awaitBlock()} returned. At most one read may be pending
+     * at any time.
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param A The matrix
+     * @param offA The offset of the first element of the block
+     * @param lda The leading dimension of the matrix
+     * @param rows The number of rows of the block
+     * @param cols The number of columns of the block
+     * @param block The array that will receive the block
+     */
+    void readBlock(int order, M A, long offA, int lda, 
+        int rows, int cols, float block[]);
+    
+    /**
+     * Wait until the read that was issued with the last call to 
+     * {@link #readBlock} is completed
+     */
+    void awaitBlock();
+    
+    /**
+     * Issue the write of the given block into the given matrix. The 
+     * given array may not be modified before a subsequent read was 
+     * awaited.
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param block The block
+     * @param rows The number of rows of the block
+     * @param cols The number of columns of the block
+     * @param A The matrix
+     * @param offA The offset of the first element of the block
+     * @param lda The leading dimension of the matrix
+     */
+    void writeBlock(int order, float block[], int rows, int cols,
+        M A, long offA, int lda);
+    
+    /**
+     * Issue the row interchanges that are described by the given pivot 
+     * indices. Row i of the matrix is swapped with row ipiv[i], for
+     * i = k1, ..., k2 - 1, in increasing order if forward is 
+     * <code>true</code>, and in decreasing order otherwise.
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param A The matrix
+     * @param offA The offset of the matrix
+     * @param lda The leading dimension of the matrix
+     * @param N The number of columns of the matrix
+     * @param ipiv The pivot indices
+     * @param k1 The index of the first row interchange
+     * @param k2 The index after the last row interchange
+     * @param forward Whether the interchanges are performed in 
+     * increasing order
+     */
+    void swapRows(int order, M A, long offA, int lda, int N, 
+        int ipiv[], int k1, int k2, boolean forward);
+    
+    /**
+     * Issue a triangular solve. 
+     * See {@link org.jocl.blas.CLBLAS#clblasStrsm}.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param side The {@link org.jocl.blas.clblasSide} of A
+     * @param uplo The {@link org.jocl.blas.clblasUplo} of A
+     * @param transA How matrix A is to be transposed
+     * @param diag The {@link org.jocl.blas.clblasDiag} of A
+     * @param M The number of rows of B
+     * @param N The number of columns of B
+     * @param alpha The factor of B
+     * @param A The triangular matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param B The matrix B
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     */
+    void strsm(int order, int side, int uplo, int transA, int diag, 
+        int M, int N, float alpha, M A, long offA, int lda, 
+        M B, long offB, int ldb);
+    
+    /**
+     * Issue a multiplication with a triangular matrix. 
+     * See {@link org.jocl.blas.CLBLAS#clblasStrmm}.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param side The {@link org.jocl.blas.clblasSide} of A
+     * @param uplo The {@link org.jocl.blas.clblasUplo} of A
+     * @param transA How matrix A is to be transposed
+     * @param diag The {@link org.jocl.blas.clblasDiag} of A
+     * @param M The number of rows of B
+     * @param N The number of columns of B
+     * @param alpha The factor of the product
+     * @param A The triangular matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param B The matrix B
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     */
+    void strmm(int order, int side, int uplo, int transA, int diag, 
+        int M, int N, float alpha, M A, long offA, int lda, 
+        M B, long offB, int ldb);
+    
+    /**
+     * Issue a matrix-matrix product. 
+     * See {@link org.jocl.blas.CLBLAS#clblasSgemm}.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param transA How matrix A is to be transposed
+     * @param transB How matrix B is to be transposed
+     * @param M The number of rows of op(A) and C
+     * @param N The number of columns of op(B) and C
+     * @param K The number of columns of op(A) and rows of op(B)
+     * @param alpha The factor of op(A)*op(B)
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param B The matrix B
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     */
+    void sgemm(int order, int transA, int transB, int M, int N, int K, 
+        float alpha, M A, long offA, int lda, M B, long offB, int ldb, 
+        float beta, M C, long offC, int ldc);
+    
+    /**
+     * Issue a symmetric rank-k update. 
+     * See {@link org.jocl.blas.CLBLAS#clblasSsyrk}.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param uplo The {@link org.jocl.blas.clblasUplo} of C
+     * @param transA How matrix A is to be transposed
+     * @param N The number of rows and columns of C
+     * @param K The number of columns of op(A)
+     * @param alpha The factor of op(A)*op(A)^T
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     */
+    void ssyrk(int order, int uplo, int transA, int N, int K, 
+        float alpha, M A, long offA, int lda, 
+        float beta, M C, long offC, int ldc);
+    
+    /**
+     * Wait until all operations that have been issued are completed
+     */
+    void finish();
+}
@@ -0,0 +1,165 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.lapack;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+
+import org.jocl.blas.host.HostBLAS;
+import org.jocl.blas.host.HostLAPACK;
+
+/**
+ * Implementation of a {@link FactorizationBackend} that operates on 
+ * <code>float</code> arrays, using {@link HostBLAS}. All operations 
+ * are executed immediately.
+ */
+public final class HostFactorizationBackend 
+    implements FactorizationBackend<float[]>
+{
+    @Override
+    public float[] createMatrix(int size)
+    {
+        return new float[size];
+    }
+
+    @Override
+    public void releaseMatrix(float[] A)
+    {
+        // Nothing to do here
+    }
+
+    @Override
+    public void readBlock(int order, float[] A, long offA, int lda, 
+        int rows, int cols, float[] block)
+    {
+        copyBlock(order, A, (int)offA, lda, block, 0, ld(order, rows, cols), 
+            rows, cols);
+    }
+
+    @Override
+    public void awaitBlock()
+    {
+        // Reads are executed immediately
+    }
+
+    @Override
+    public void writeBlock(int order, float[] block, int rows, int cols, 
+        float[] A, long offA, int lda)
+    {
+        copyBlock(order, block, 0, ld(order, rows, cols), A, (int)offA, lda, 
+            rows, cols);
+    }
+
+    @Override
+    public void swapRows(int order, float[] A, long offA, int lda, int N, 
+        int[] ipiv, int k1, int k2, boolean forward)
+    {
+        HostLAPACK.applyPivots(order, A, (int)offA, lda, N, 
+            ipiv, 0, k1, k2, forward);
+    }
+
+    @Override
+    public void strsm(int order, int side, int uplo, int transA, int diag, 
+        int M, int N, float alpha, float[] A, long offA, int lda, 
+        float[] B, long offB, int ldb)
+    {
+        HostBLAS.clblasStrsm(order, side, uplo, transA, diag, M, N, alpha, 
+            A, (int)offA, lda, B, (int)offB, ldb);
+    }
+
+    @Override
+    public void strmm(int order, int side, int uplo, int transA, int diag, 
+        int M, int N, float alpha, float[] A, long offA, int lda, 
+        float[] B, long offB, int ldb)
+    {
+        HostBLAS.clblasStrmm(order, side, uplo, transA, diag, M, N, alpha, 
+            A, (int)offA, lda, B, (int)offB, ldb);
+    }
+
+    @Override
+    public void sgemm(int order, int transA, int transB, 
+        int M, int N, int K, float alpha, 
+        float[] A, long offA, int lda, float[] B, long offB, int ldb, 
+        float beta, float[] C, long offC, int ldc)
+    {
+        HostBLAS.clblasSgemm(order, transA, transB, M, N, K, alpha, 
+            A, (int)offA, lda, B, (int)offB, ldb, beta, C, (int)offC, ldc);
+    }
+
+    @Override
+    public void ssyrk(int order, int uplo, int transA, int N, int K, 
+        float alpha, float[] A, long offA, int lda, 
+        float beta, float[] C, long offC, int ldc)
+    {
+        HostBLAS.clblasSsyrk(order, uplo, transA, N, K, alpha, 
+            A, (int)offA, lda, beta, C, (int)offC, ldc);
+    }
+
+    @Override
+    public void finish()
+    {
+        // Operations are executed immediately
+    }
+    
+    /**
+     * Returns the leading dimension of a dense block with the given size
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param rows The number of rows
+     * @param cols The number of columns
+     * @return The leading dimension
+     */
+    static int ld(int order, int rows, int cols)
+    {
+        return order == clblasRowMajor ? cols : rows;
+    }
+    
+    /**
+     * Copy a block between the given arrays
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param src The source
+     * @param srcOff The offset of the block in the source
+     * @param srcLd The leading dimension of the source
+     * @param dst The destination
+     * @param dstOff The offset of the block in the destination
+     * @param dstLd The leading dimension of the destination
+     * @param rows The number of rows of the block
+     * @param cols The number of columns of the block
+     */
+    private static void copyBlock(int order, 
+        float src[], int srcOff, int srcLd, 
+        float dst[], int dstOff, int dstLd, int rows, int cols)
+    {
+        int outer = order == clblasRowMajor ? rows : cols;
+        int inner = order == clblasRowMajor ? cols : rows;
+        for (int i = 0; i < outer; i++)
+        {
+            System.arraycopy(src, srcOff + i * srcLd, 
+                dst, dstOff + i * dstLd, inner);
+        }
+    }
+}
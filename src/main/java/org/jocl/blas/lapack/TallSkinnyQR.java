@@ -0,0 +1,484 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.lapack;
+
+import static org.jocl.blas.clblasDiag.clblasNonUnit;
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasSide.clblasLeft;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+import static org.jocl.blas.clblasTranspose.clblasTrans;
+import static org.jocl.blas.clblasUplo.clblasUpper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.jocl.blas.host.HostBLAS;
+import org.jocl.blas.host.HostLAPACK;
+
+/**
+ * A tall-skinny QR (TSQR) factorization of an M x N matrix with 
+ * M &gt;&gt; N. <br>
+ * <br>
+ * The matrix is given as a sequence of row blocks, each consisting of 
+ * at least N rows, and each associated with its own 
+ * {@link FactorizationBackend} - for example, one for each command 
+ * queue or device. The row blocks are factorized concurrently with 
+ * {@link BlockedFactorizations#sgeqrf}. Only their N x N factors R are
+ * transferred to the host, where they are stacked and factorized once 
+ * more, yielding the factor R of the whole matrix. <br>
+ * <br>
+ * Instances of this class are not thread-safe.
+ *
+ * @param <M> The type of the matrices
+ */
+public final class TallSkinnyQR<M>
+{
+    /**
+     * A row block of the matrix
+     */
+    private static final class Block<M>
+    {
+        /**
+         * The backend
+         */
+        final FactorizationBackend<M> backend;
+        
+        /**
+         * The matrix containing the block
+         */
+        final M A;
+        
+        /**
+         * The offset of the block
+         */
+        final long offA;
+        
+        /**
+         * The leading dimension
+         */
+        final int lda;
+        
+        /**
+         * The number of rows
+         */
+        final int rows;
+        
+        /**
+         * The scalar factors of the reflections of the block
+         */
+        final float tau[];
+        
+        /**
+         * Creates a new block
+         * 
+         * @param backend The backend
+         * @param A The matrix
+         * @param offA The offset
+         * @param lda The leading dimension
+         * @param rows The number of rows
+         * @param n The number of columns
+         */
+        Block(FactorizationBackend<M> backend, M A, long offA, int lda, 
+            int rows, int n)
+        {
+            this.backend = backend;
+            this.A = A;
+            this.offA = offA;
+            this.lda = lda;
+            this.rows = rows;
+            this.tau = new float[n];
+        }
+    }
+    
+    /**
+     * The {@link org.jocl.blas.clblasOrder}
+     */
+    private final int order;
+    
+    /**
+     * The number of columns
+     */
+    private final int N;
+    
+    /**
+     * The block size for the factorization of the row blocks
+     */
+    private final int blockSize;
+    
+    /**
+     * The row blocks
+     */
+    private final List<Block<M>> blocks;
+    
+    /**
+     * The stacked R factors of the row blocks, after their factorization
+     */
+    private float stacked[];
+    
+    /**
+     * The scalar factors of the factorization of the stacked R factors
+     */
+    private float stackedTau[];
+    
+    /**
+     * Creates a new, empty factorization for a matrix with the given 
+     * number of columns, using the 
+     * {@link BlockedFactorizations#DEFAULT_BLOCK_SIZE}
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param N The number of columns
+     */
+    public TallSkinnyQR(int order, int N)
+    {
+        this(order, N, BlockedFactorizations.DEFAULT_BLOCK_SIZE);
+    }
+    
+    /**
+     * Creates a new, empty factorization for a matrix with the given 
+     * number of columns
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param N The number of columns
+     * @param blockSize The block size for the factorization of the 
+     * row blocks
+     * @throws IllegalArgumentException If the number of columns is
+     * negative, or the block size is not positive
+     */
+    public TallSkinnyQR(int order, int N, int blockSize)
+    {
+        if (N < 0)
+        {
+            throw new IllegalArgumentException(
+                "The number of columns is negative: " + N);
+        }
+        if (blockSize <= 0)
+        {
+            throw new IllegalArgumentException(
+                "The block size must be positive, but is " + blockSize);
+        }
+        this.order = order;
+        this.N = N;
+        this.blockSize = blockSize;
+        this.blocks = new ArrayList<Block<M>>();
+    }
+    
+    /**
+     * Add the next row block of the matrix. The block will be 
+     * overwritten by its own QR factorization during 
+     * {@link #factor(ExecutorService)}.
+     * 
+     * @param backend The {@link FactorizationBackend} for the block
+     * @param A The matrix containing the block
+     * @param offA The offset of the block
+     * @param lda The leading dimension
+     * @param rows The number of rows of the block
+     * @throws IllegalArgumentException If the number of rows is smaller
+     * than the number of columns
+     * @throws IllegalStateException If the matrix was already factorized
+     */
+    public void addBlock(FactorizationBackend<M> backend, 
+        M A, long offA, int lda, int rows)
+    {
+        if (rows < N)
+        {
+            throw new IllegalArgumentException(
+                "The block has " + rows + " rows, but must have at " +
+                "least " + N + " rows");
+        }
+        if (stacked != null)
+        {
+            throw new IllegalStateException(
+                "The matrix was already factorized");
+        }
+        blocks.add(new Block<M>(backend, A, offA, lda, rows, N));
+    }
+    
+    /**
+     * Returns the number of row blocks
+     * 
+     * @return The number of row blocks
+     */
+    public int getBlockCount()
+    {
+        return blocks.size();
+    }
+    
+    /**
+     * Factorize the matrix, and return its N x N upper triangular factor 
+     * R, with a leading dimension of N. The row blocks are factorized 
+     * concurrently, using the given executor.
+     * 
+     * @param executor The executor
+     * @return The factor R
+     * @throws InterruptedException If the thread is interrupted while 
+     * waiting for the factorizations of the row blocks
+     * @throws IllegalStateException If no blocks have been added, or 
+     * the matrix was already factorized
+     */
+    public float[] factor(ExecutorService executor) 
+        throws InterruptedException
+    {
+        if (blocks.isEmpty())
+        {
+            throw new IllegalStateException("No blocks have been added");
+        }
+        if (stacked != null)
+        {
+            throw new IllegalStateException(
+                "The matrix was already factorized");
+        }
+        int count = blocks.size();
+        final float result[] = new float[count * N * N];
+        final int ldr = ld(N, N);
+        final int lds = ld(count * N, N);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int b = 0; b < count; b++)
+        {
+            final Block<M> block = blocks.get(b);
+            final long offR = index(b * N, 0, lds);
+            tasks.add(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                {
+                    float r[] = new float[N * N];
+                    BlockedFactorizations.sgeqrf(block.backend, order, 
+                        block.rows, N, block.A, block.offA, block.lda, 
+                        block.tau, blockSize);
+                    block.backend.readBlock(order, block.A, block.offA, 
+                        block.lda, N, N, r);
+                    block.backend.awaitBlock();
+                    for (int i = 0; i < N; i++)
+                    {
+                        for (int j = i; j < N; j++)
+                        {
+                            result[(int)(offR + index(i, j, lds))] = 
+                                r[(int)index(i, j, ldr)];
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        invokeAll(executor, tasks);
+        stacked = result;
+        stackedTau = new float[N];
+        HostLAPACK.sgeqrf(order, count * N, N, stacked, 0, lds, 
+            stackedTau, 0);
+        float R[] = new float[N * N];
+        for (int i = 0; i < N; i++)
+        {
+            for (int j = i; j < N; j++)
+            {
+                R[(int)index(i, j, ldr)] = stacked[(int)index(i, j, lds)];
+            }
+        }
+        return R;
+    }
+    
+    /**
+     * Computes the first N rows of Q^T * B, where B is a matrix with
+     * NRHS columns, consisting of row blocks that correspond to the 
+     * row blocks of the factorized matrix. The row blocks of B are 
+     * overwritten with the products of the Q^T factors of the row 
+     * blocks, which are computed concurrently using the given executor.
+     * 
+     * @param executor The executor
+     * @param B The matrices containing the row blocks of B
+     * @param offB The offsets of the row blocks of B
+     * @param ldb The leading dimensions of the row blocks of B
+     * @param NRHS The number of columns of B
+     * @return The N x NRHS result, with a leading dimension of NRHS
+     * for row-major order, and N for column-major order
+     * @throws InterruptedException If the thread is interrupted while 
+     * waiting for the products of the row blocks
+     * @throws IllegalStateException If the matrix was not factorized yet
+     * @throws IllegalArgumentException If the number of row blocks of
+     * B does not match the number of row blocks of the matrix
+     */
+    public float[] applyTranspose(ExecutorService executor, 
+        List<M> B, final long offB[], final int ldb[], final int NRHS)
+        throws InterruptedException
+    {
+        if (stacked == null)
+        {
+            throw new IllegalStateException(
+                "The matrix was not factorized yet");
+        }
+        int count = blocks.size();
+        if (B.size() != count || offB.length != count || 
+            ldb.length != count)
+        {
+            throw new IllegalArgumentException(
+                "Expected " + count + " row blocks of B");
+        }
+        final float result[] = new float[count * N * NRHS];
+        final int ldy = ld(N, NRHS);
+        final int lds = ld(count * N, NRHS);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int b = 0; b < count; b++)
+        {
+            final Block<M> block = blocks.get(b);
+            final M Bb = B.get(b);
+            final int bb = b;
+            tasks.add(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                {
+                    float y[] = new float[N * NRHS];
+                    BlockedFactorizations.sormqr(block.backend, order, 
+                        clblasTrans, block.rows, NRHS, N, 
+                        block.A, block.offA, block.lda, block.tau, 
+                        Bb, offB[bb], ldb[bb], blockSize);
+                    block.backend.readBlock(order, Bb, offB[bb], ldb[bb], 
+                        N, NRHS, y);
+                    block.backend.awaitBlock();
+                    long offS = index(bb * N, 0, lds);
+                    for (int i = 0; i < N; i++)
+                    {
+                        for (int j = 0; j < NRHS; j++)
+                        {
+                            result[(int)(offS + index(i, j, lds))] = 
+                                y[(int)index(i, j, ldy)];
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        invokeAll(executor, tasks);
+        HostLAPACK.sormqr(order, clblasTrans, count * N, NRHS, N, 
+            stacked, 0, ld(count * N, N), stackedTau, 0, result, 0, lds);
+        float Y[] = new float[N * NRHS];
+        for (int i = 0; i < N; i++)
+        {
+            for (int j = 0; j < NRHS; j++)
+            {
+                Y[(int)index(i, j, ldy)] = result[(int)index(i, j, lds)];
+            }
+        }
+        return Y;
+    }
+    
+    /**
+     * Computes the solution of the least-squares problem that minimizes 
+     * the norm of A * X - B, where A is the factorized matrix. See 
+     * {@link #applyTranspose(ExecutorService, List, long[], int[], int)}
+     * for the description of the parameters.
+     * 
+     * @param executor The executor
+     * @param B The matrices containing the row blocks of B
+     * @param offB The offsets of the row blocks of B
+     * @param ldb The leading dimensions of the row blocks of B
+     * @param NRHS The number of columns of B
+     * @return The N x NRHS solution X, with a leading dimension of NRHS
+     * for row-major order, and N for column-major order
+     * @throws InterruptedException If the thread is interrupted while 
+     * waiting for the products of the row blocks
+     * @throws IllegalStateException If the matrix was not factorized yet
+     * @throws IllegalArgumentException If the number of row blocks of
+     * B does not match the number of row blocks of the matrix
+     */
+    public float[] solve(ExecutorService executor, 
+        List<M> B, long offB[], int ldb[], int NRHS) 
+        throws InterruptedException
+    {
+        float X[] = applyTranspose(executor, B, offB, ldb, NRHS);
+        HostBLAS.clblasStrsm(order, clblasLeft, clblasUpper, 
+            clblasNoTrans, clblasNonUnit, N, NRHS, 1.0f, 
+            stacked, 0, ld(blocks.size() * N, N), X, 0, ld(N, NRHS));
+        return X;
+    }
+    
+    /**
+     * Executes all given tasks with the given executor, and waits until
+     * they are completed
+     * 
+     * @param executor The executor
+     * @param tasks The tasks
+     * @throws InterruptedException If the thread is interrupted while 
+     * waiting
+     */
+    private static void invokeAll(ExecutorService executor, 
+        List<Callable<Void>> tasks) throws InterruptedException
+    {
+        List<Future<Void>> futures = executor.invokeAll(tasks);
+        for (Future<Void> future : futures)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                {
+                    throw (RuntimeException)cause;
+                }
+                if (cause instanceof Error)
+                {
+                    throw (Error)cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+    
+    /**
+     * Returns the leading dimension of a dense matrix with the given 
+     * size, in the order of this factorization
+     * 
+     * @param rows The number of rows
+     * @param cols The number of columns
+     * @return The leading dimension
+     */
+    private int ld(int rows, int cols)
+    {
+        return HostFactorizationBackend.ld(order, rows, cols);
+    }
+    
+    /**
+     * Returns the index of the element (i,j) of a matrix in the order
+     * of this factorization
+     * 
+     * @param i The row index
+     * @param j The column index
+     * @param ld The leading dimension
+     * @return The index
+     */
+    private long index(int i, int j, int ld)
+    {
+        return order == clblasRowMajor ? 
+            (long)i * ld + j : i + (long)j * ld;
+    }
+}
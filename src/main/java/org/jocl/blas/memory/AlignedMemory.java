@@ -0,0 +1,188 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.memory;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Utility methods for allocating direct buffers whose start address is
+ * a multiple of a given alignment. <br>
+ * <br>
+ * The address of a direct buffer is determined with the
+ * <code>ByteBuffer#alignmentOffset</code> method that is available
+ * in Java 9 and later, or with the <code>address</code> method of the
+ * <code>sun.nio.ch.DirectBuffer</code> interface in older versions.
+ * Both are accessed via reflection, so that this class compiles with
+ * older versions.
+ */
+class AlignedMemory
+{
+    /**
+     * The method for the alignment offset, or <code>null</code>
+     */
+    private static final Method ALIGNMENT_OFFSET_METHOD =
+        findMethod("java.nio.ByteBuffer", "alignmentOffset",
+            int.class, int.class);
+
+    /**
+     * The method for the address, or <code>null</code>
+     */
+    private static final Method ADDRESS_METHOD =
+        findMethod("sun.nio.ch.DirectBuffer", "address");
+
+    /**
+     * Allocate a direct buffer with native byte order, whose start
+     * address is a multiple of the given alignment. If the address
+     * can not be determined on this platform, the buffer is returned
+     * as it was allocated.
+     *
+     * @param size The size, in bytes
+     * @param alignment The alignment, in bytes
+     * @return The buffer
+     * @throws IllegalArgumentException If the alignment is not a
+     * positive power of two, or the size is negative or too large
+     * for a buffer
+     */
+    static ByteBuffer allocate(long size, int alignment)
+    {
+        checkAlignment(alignment);
+        if (size < 0 || size > Integer.MAX_VALUE - alignment)
+        {
+            throw new IllegalArgumentException(
+                "Invalid size for a direct buffer: " + size);
+        }
+        ByteBuffer raw = ByteBuffer.allocateDirect(
+            (int) size + alignment - 1);
+        return align(raw, size, alignment);
+    }
+
+    /**
+     * Returns a slice of the given direct buffer with the given size,
+     * with native byte order, whose start address is a multiple of the
+     * given alignment. The given buffer must have a capacity of at least
+     * <code>size + alignment - 1</code> bytes. If the address can not be
+     * determined on this platform, the slice starts at the start of the
+     * given buffer.
+     *
+     * @param raw The buffer
+     * @param size The size, in bytes
+     * @param alignment The alignment, in bytes
+     * @return The aligned slice
+     */
+    static ByteBuffer align(ByteBuffer raw, long size, int alignment)
+    {
+        int offset = alignmentOffset(raw, alignment);
+        int skip = offset <= 0 ? 0 : alignment - offset;
+        raw.position(skip);
+        raw.limit(skip + (int) size);
+        return raw.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Returns the offset of the start address of the given direct
+     * buffer from the previous multiple of the given alignment, or -1
+     * if the address can not be determined
+     *
+     * @param buffer The buffer
+     * @param alignment The alignment
+     * @return The alignment offset
+     */
+    static int alignmentOffset(ByteBuffer buffer, int alignment)
+    {
+        try
+        {
+            if (ALIGNMENT_OFFSET_METHOD != null)
+            {
+                return (Integer) ALIGNMENT_OFFSET_METHOD.invoke(
+                    buffer, 0, alignment);
+            }
+            if (ADDRESS_METHOD != null)
+            {
+                long address = (Long) ADDRESS_METHOD.invoke(buffer);
+                return (int) (address & (alignment - 1));
+            }
+        }
+        catch (Exception e)
+        {
+            // Fall through
+        }
+        return -1;
+    }
+
+    /**
+     * Make sure that the given alignment is a positive power of two
+     *
+     * @param alignment The alignment
+     * @throws IllegalArgumentException If the alignment is not a
+     * positive power of two
+     */
+    static void checkAlignment(int alignment)
+    {
+        if (alignment <= 0 || (alignment & (alignment - 1)) != 0)
+        {
+            throw new IllegalArgumentException(
+                "The alignment must be a positive power of two, " +
+                "but is " + alignment);
+        }
+    }
+
+    /**
+     * Returns the specified public method, or <code>null</code> if it
+     * is not available
+     *
+     * @param className The class name
+     * @param name The method name
+     * @param parameterTypes The parameter types
+     * @return The method
+     */
+    private static Method findMethod(
+        String className, String name, Class<?> ... parameterTypes)
+    {
+        try
+        {
+            return Class.forName(className).getMethod(name, parameterTypes);
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+        catch (LinkageError e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private AlignedMemory()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
@@ -0,0 +1,734 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.memory;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.kernel.CachedKernel;
+import org.jocl.blas.kernel.KernelCache;
+
+/**
+ * Transfers of many small regions between a host matrix and a device
+ * matrix, with a single buffer transfer per call. <br>
+ * <br>
+ * Issuing one {@link org.jocl.blas.CLBLAS#clblasWriteSubMatrixAsync}
+ * or {@link org.jocl.blas.CLBLAS#clblasReadSubMatrixAsync} call for
+ * each region causes one enqueue per region, which dominates the
+ * time for scattered updates of few elements. This class first
+ * {@link #coalesce coalesces} the regions, by merging regions that
+ * are adjacent or overlapping and whose union is again a rectangle.
+ * <br>
+ * <br>
+ * For a {@link #write}, the elements of all regions are packed into
+ * one staging buffer on the host, together with a descriptor of each
+ * region. The staging buffer is transferred with one
+ * <code>clEnqueueWriteBuffer</code> call, and one kernel scatters the
+ * elements into the device matrix. For a {@link #read}, the
+ * descriptors are transferred, one kernel gathers the elements into
+ * the staging buffer, and the staging buffer is transferred with one
+ * <code>clEnqueueReadBuffer</code> call and scattered into the host
+ * matrix. <br>
+ * <br>
+ * The host and device matrix must have the same order and element
+ * size. Elements with a size of 4, 8 or 16 bytes are supported. The
+ * staging buffers are kept and grown as needed, until {@link #release}
+ * is called. <br>
+ * <br>
+ * Instances of this class are not thread-safe.
+ */
+public final class CoalescedRegionTransfers implements RegionTransfers
+{
+    /**
+     * The number of <code>long</code> values in the descriptor of
+     * one region: The first line, the position in the line, the line
+     * length, and the index of the first element in the packed data.
+     * Lines are rows for row-major matrices and columns for
+     * column-major matrices.
+     */
+    static final int DESCRIPTOR_SIZE = 4;
+
+    /**
+     * The source code of the kernels
+     */
+    private static final String KERNELS_SOURCE =
+        "inline long elementIndex(__global const long *d, const int n,\n" +
+        "    const long p, const long off, const long ld)\n" +
+        "{\n" +
+        "    int lo = 0;\n" +
+        "    int hi = n - 1;\n" +
+        "    while (lo < hi)\n" +
+        "    {\n" +
+        "        const int mid = (lo + hi + 1) / 2;\n" +
+        "        if (d[mid * 4 + 3] <= p)\n" +
+        "        {\n" +
+        "            lo = mid;\n" +
+        "        }\n" +
+        "        else\n" +
+        "        {\n" +
+        "            hi = mid - 1;\n" +
+        "        }\n" +
+        "    }\n" +
+        "    __global const long *r = d + lo * 4;\n" +
+        "    const long k = p - r[3];\n" +
+        "    return off + (r[0] + k / r[2]) * ld + r[1] + k % r[2];\n" +
+        "}\n" +
+        "\n" +
+        "#define REGION_KERNELS(SIZE, TYPE) \\\n" +
+        "__kernel void scatter##SIZE(const int n, const long total, \\\n" +
+        "    __global const long *staging, \\\n" +
+        "    __global TYPE *M, const long offM, const long ldM) \\\n" +
+        "{ \\\n" +
+        "    const long p = get_global_id(0); \\\n" +
+        "    if (p >= total) \\\n" +
+        "    { \\\n" +
+        "        return; \\\n" +
+        "    } \\\n" +
+        "    __global const TYPE *data = \\\n" +
+        "        (__global const TYPE *)(staging + n * 4); \\\n" +
+        "    M[elementIndex(staging, n, p, offM, ldM)] = data[p]; \\\n" +
+        "} \\\n" +
+        "__kernel void gather##SIZE(const int n, const long total, \\\n" +
+        "    __global long *staging, \\\n" +
+        "    __global const TYPE *M, const long offM, const long ldM) \\\n" +
+        "{ \\\n" +
+        "    const long p = get_global_id(0); \\\n" +
+        "    if (p >= total) \\\n" +
+        "    { \\\n" +
+        "        return; \\\n" +
+        "    } \\\n" +
+        "    __global TYPE *data = (__global TYPE *)(staging + n * 4); \\\n" +
+        "    data[p] = M[elementIndex(staging, n, p, offM, ldM)]; \\\n" +
+        "}\n" +
+        "\n" +
+        "REGION_KERNELS(4, uint)\n" +
+        "REGION_KERNELS(8, ulong)\n" +
+        "REGION_KERNELS(16, ulong2)\n";
+
+    /**
+     * The context
+     */
+    private final cl_context context;
+
+    /**
+     * The command queue
+     */
+    private final cl_command_queue commandQueue;
+
+    /**
+     * The kernel cache
+     */
+    private final KernelCache kernelCache;
+
+    /**
+     * The staging buffer on the host, or <code>null</code>
+     */
+    private HostVector hostStaging;
+
+    /**
+     * The staging buffer on the device, or <code>null</code>
+     */
+    private cl_mem deviceStaging;
+
+    /**
+     * The size of the staging buffer on the device, in bytes
+     */
+    private long deviceStagingSize;
+
+    /**
+     * The number of regions that have been requested
+     */
+    private long requestedRegionCount;
+
+    /**
+     * The number of regions that remained after coalescing
+     */
+    private long coalescedRegionCount;
+
+    /**
+     * The number of buffer transfers that have been performed
+     */
+    private long transferCount;
+
+    /**
+     * The number of bytes that have been transferred
+     */
+    private long transferredBytes;
+
+    /**
+     * Creates a new instance for the given context and command queue,
+     * using the shared {@link KernelCache#getInstance() kernel cache}
+     *
+     * @param context The context
+     * @param commandQueue The command queue
+     */
+    public CoalescedRegionTransfers(
+        cl_context context, cl_command_queue commandQueue)
+    {
+        this(context, commandQueue, KernelCache.getInstance());
+    }
+
+    /**
+     * Creates a new instance for the given context and command queue,
+     * using the given kernel cache
+     *
+     * @param context The context
+     * @param commandQueue The command queue
+     * @param kernelCache The kernel cache
+     */
+    public CoalescedRegionTransfers(cl_context context,
+        cl_command_queue commandQueue, KernelCache kernelCache)
+    {
+        this.context = context;
+        this.commandQueue = commandQueue;
+        this.kernelCache = kernelCache;
+    }
+
+    /**
+     * Transfer the given regions of the host matrix into the same
+     * regions of the device matrix, and wait for the completion
+     *
+     * @param host The host matrix
+     * @param device The device matrix
+     * @param regions The regions
+     * @throws IllegalArgumentException If the matrices do not have the
+     * same order and a supported element size, or a region does not
+     * lie within both matrices
+     * @throws CLException If an OpenCL error occurs
+     */
+    @Override
+    public void write(HostMatrix host, DeviceMatrix device,
+        List<MatrixRegion> regions)
+    {
+        List<MatrixRegion> merged = prepare(host, device, regions);
+        if (merged.isEmpty())
+        {
+            return;
+        }
+        int n = merged.size();
+        long total = countElements(merged);
+        long size = (long)n * DESCRIPTOR_SIZE * Sizeof.cl_long +
+            total * host.getElementSize();
+        ensureStaging(size);
+        pack(host, merged, hostStaging.buffer());
+
+        cl_event events[] = new cl_event[2];
+        int numEvents = 0;
+        try
+        {
+            cl_event writeEvent = new cl_event();
+            check(CL.clEnqueueWriteBuffer(commandQueue, deviceStaging,
+                false, 0, size, hostStaging.getPointer(), 0, null,
+                writeEvent), "clEnqueueWriteBuffer");
+            events[numEvents++] = writeEvent;
+
+            cl_event kernelEvent = new cl_event();
+            check(getKernel("scatter", host.getElementSize()).enqueue(
+                commandQueue, total, 1, new cl_event[] { writeEvent },
+                kernelEvent, n, total, deviceStaging, device.getMem(),
+                device.getOffset(), device.getLd()),
+                "clEnqueueNDRangeKernel");
+            events[numEvents++] = kernelEvent;
+        }
+        finally
+        {
+            QueueRegionTransfers.waitAndRelease(numEvents, events);
+        }
+        transferCount++;
+        transferredBytes += size;
+    }
+
+    /**
+     * Transfer the given regions of the device matrix into the same
+     * regions of the host matrix, and wait for the completion
+     *
+     * @param device The device matrix
+     * @param host The host matrix
+     * @param regions The regions
+     * @throws IllegalArgumentException If the matrices do not have the
+     * same order and a supported element size, or a region does not
+     * lie within both matrices
+     * @throws CLException If an OpenCL error occurs
+     */
+    @Override
+    public void read(DeviceMatrix device, HostMatrix host,
+        List<MatrixRegion> regions)
+    {
+        List<MatrixRegion> merged = prepare(host, device, regions);
+        if (merged.isEmpty())
+        {
+            return;
+        }
+        int n = merged.size();
+        long total = countElements(merged);
+        long descriptorsSize = (long)n * DESCRIPTOR_SIZE * Sizeof.cl_long;
+        long dataSize = total * host.getElementSize();
+        ensureStaging(descriptorsSize + dataSize);
+        ByteBuffer staging = hostStaging.buffer();
+        writeDescriptors(host.getOrder(), merged, staging);
+
+        cl_event events[] = new cl_event[3];
+        int numEvents = 0;
+        try
+        {
+            cl_event writeEvent = new cl_event();
+            check(CL.clEnqueueWriteBuffer(commandQueue, deviceStaging,
+                false, 0, descriptorsSize, hostStaging.getPointer(),
+                0, null, writeEvent), "clEnqueueWriteBuffer");
+            events[numEvents++] = writeEvent;
+
+            cl_event kernelEvent = new cl_event();
+            check(getKernel("gather", host.getElementSize()).enqueue(
+                commandQueue, total, 1, new cl_event[] { writeEvent },
+                kernelEvent, n, total, deviceStaging, device.getMem(),
+                device.getOffset(), device.getLd()),
+                "clEnqueueNDRangeKernel");
+            events[numEvents++] = kernelEvent;
+
+            cl_event readEvent = new cl_event();
+            check(CL.clEnqueueReadBuffer(commandQueue, deviceStaging,
+                false, descriptorsSize, dataSize,
+                hostStaging.getPointer().withByteOffset(descriptorsSize),
+                1, new cl_event[] { kernelEvent }, readEvent),
+                "clEnqueueReadBuffer");
+            events[numEvents++] = readEvent;
+        }
+        finally
+        {
+            QueueRegionTransfers.waitAndRelease(numEvents, events);
+        }
+        unpack(staging, (int)descriptorsSize, merged, host);
+        transferCount++;
+        transferredBytes += descriptorsSize + dataSize;
+    }
+
+    /**
+     * Returns the number of regions that have been passed to
+     * {@link #write} and {@link #read}
+     *
+     * @return The number of requested regions
+     */
+    public long getRequestedRegionCount()
+    {
+        return requestedRegionCount;
+    }
+
+    /**
+     * Returns the number of regions that remained after the requested
+     * regions have been {@link #coalesce coalesced}
+     *
+     * @return The number of coalesced regions
+     */
+    public long getCoalescedRegionCount()
+    {
+        return coalescedRegionCount;
+    }
+
+    /**
+     * Returns the number of calls to {@link #write} and {@link #read}
+     * that caused a transfer
+     *
+     * @return The number of transfers
+     */
+    public long getTransferCount()
+    {
+        return transferCount;
+    }
+
+    /**
+     * Returns the number of bytes that have been transferred, including
+     * the region descriptors
+     *
+     * @return The number of transferred bytes
+     */
+    public long getTransferredBytes()
+    {
+        return transferredBytes;
+    }
+
+    /**
+     * Release the staging buffers. They will be allocated again when
+     * this instance is used afterwards.
+     */
+    public void release()
+    {
+        if (hostStaging != null)
+        {
+            hostStaging.free();
+            hostStaging = null;
+        }
+        if (deviceStaging != null)
+        {
+            CL.clReleaseMemObject(deviceStaging);
+            deviceStaging = null;
+            deviceStagingSize = 0;
+        }
+    }
+
+    /**
+     * Coalesce the given regions: Empty regions are removed, and each
+     * pair of regions that are adjacent or overlapping and whose union
+     * is a rectangle is replaced by this rectangle, until no such pair
+     * remains. Overlapping regions whose union is not a rectangle are
+     * kept, so their common elements are transferred more than once.
+     *
+     * @param regions The regions
+     * @return The coalesced regions
+     */
+    public static List<MatrixRegion> coalesce(List<MatrixRegion> regions)
+    {
+        List<MatrixRegion> result = new ArrayList<MatrixRegion>();
+        for (MatrixRegion r : regions)
+        {
+            if (!r.isEmpty())
+            {
+                result.add(r);
+            }
+        }
+        boolean merged = true;
+        while (merged)
+        {
+            merged = false;
+            for (int i = 0; i < result.size(); i++)
+            {
+                for (int j = i + 1; j < result.size(); j++)
+                {
+                    MatrixRegion union = union(result.get(i), result.get(j));
+                    if (union != null)
+                    {
+                        result.set(i, union);
+                        result.remove(j);
+                        j = i;
+                        merged = true;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the union of the given regions if it is a rectangle,
+     * or <code>null</code> otherwise
+     *
+     * @param a The first region
+     * @param b The second region
+     * @return The union, or <code>null</code>
+     */
+    private static MatrixRegion union(MatrixRegion a, MatrixRegion b)
+    {
+        if (contains(a, b))
+        {
+            return a;
+        }
+        if (contains(b, a))
+        {
+            return b;
+        }
+        long aRowEnd = a.getRow() + a.getNumRows();
+        long bRowEnd = b.getRow() + b.getNumRows();
+        long aColumnEnd = a.getColumn() + a.getNumColumns();
+        long bColumnEnd = b.getColumn() + b.getNumColumns();
+        if (a.getRow() == b.getRow() && aRowEnd == bRowEnd &&
+            a.getColumn() <= bColumnEnd && b.getColumn() <= aColumnEnd)
+        {
+            long column = Math.min(a.getColumn(), b.getColumn());
+            return new MatrixRegion(a.getRow(), column, a.getNumRows(),
+                Math.max(aColumnEnd, bColumnEnd) - column);
+        }
+        if (a.getColumn() == b.getColumn() && aColumnEnd == bColumnEnd &&
+            a.getRow() <= bRowEnd && b.getRow() <= aRowEnd)
+        {
+            long row = Math.min(a.getRow(), b.getRow());
+            return new MatrixRegion(row, a.getColumn(),
+                Math.max(aRowEnd, bRowEnd) - row, a.getNumColumns());
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the first region contains the second one
+     *
+     * @param a The first region
+     * @param b The second region
+     * @return Whether a contains b
+     */
+    private static boolean contains(MatrixRegion a, MatrixRegion b)
+    {
+        return a.getRow() <= b.getRow() &&
+            a.getColumn() <= b.getColumn() &&
+            b.getRow() + b.getNumRows() <= a.getRow() + a.getNumRows() &&
+            b.getColumn() + b.getNumColumns() <=
+                a.getColumn() + a.getNumColumns();
+    }
+
+    /**
+     * Validate the given matrices and regions, and return the coalesced
+     * regions
+     *
+     * @param host The host matrix
+     * @param device The device matrix
+     * @param regions The regions
+     * @return The coalesced regions
+     * @throws IllegalArgumentException If the matrices do not have the
+     * same order and a supported element size, or a region does not
+     * lie within both matrices
+     */
+    private List<MatrixRegion> prepare(HostMatrix host, DeviceMatrix device,
+        List<MatrixRegion> regions)
+    {
+        int elementSize = host.getElementSize();
+        if (host.getOrder() != device.getOrder() ||
+            elementSize != device.getElementSize())
+        {
+            throw new IllegalArgumentException(
+                "The host matrix " + host + " does not match " + device);
+        }
+        if (elementSize != 4 && elementSize != 8 && elementSize != 16)
+        {
+            throw new IllegalArgumentException(
+                "Unsupported element size: " + elementSize);
+        }
+        for (MatrixRegion r : regions)
+        {
+            if (!r.isWithin(host.getRows(), host.getColumns()) ||
+                !r.isWithin(device.getRows(), device.getColumns()))
+            {
+                throw new IllegalArgumentException("The region " + r +
+                    " does not lie within " + host + " and " + device);
+            }
+        }
+        List<MatrixRegion> merged = coalesce(regions);
+        requestedRegionCount += regions.size();
+        coalescedRegionCount += merged.size();
+        return merged;
+    }
+
+    /**
+     * Make sure that the staging buffers have at least the given size
+     *
+     * @param size The size in bytes
+     * @throws CLException If the device buffer can not be created
+     */
+    private void ensureStaging(long size)
+    {
+        if (hostStaging == null || hostStaging.getSizeInBytes() < size)
+        {
+            if (hostStaging != null)
+            {
+                hostStaging.free();
+            }
+            hostStaging = HostVector.allocate(
+                size, 1, HostMemoryPool.PAGE_ALIGNMENT);
+        }
+        if (deviceStaging == null || deviceStagingSize < size)
+        {
+            if (deviceStaging != null)
+            {
+                CL.clReleaseMemObject(deviceStaging);
+                deviceStaging = null;
+            }
+            int errcode[] = { 0 };
+            cl_mem buffer = CL.clCreateBuffer(context,
+                CL.CL_MEM_READ_WRITE, size, null, errcode);
+            if (errcode[0] != CL.CL_SUCCESS)
+            {
+                throw new CLException("clCreateBuffer failed: " +
+                    CL.stringFor_errorCode(errcode[0]), errcode[0]);
+            }
+            deviceStaging = buffer;
+            deviceStagingSize = size;
+        }
+    }
+
+    /**
+     * Write the descriptors of the given regions and their elements from
+     * the given host matrix into the given staging buffer
+     *
+     * @param host The host matrix
+     * @param regions The regions
+     * @param staging The staging buffer
+     */
+    static void pack(HostMatrix host, List<MatrixRegion> regions,
+        ByteBuffer staging)
+    {
+        int position = writeDescriptors(host.getOrder(), regions, staging);
+        ByteBuffer dst = staging.duplicate();
+        ByteBuffer src = host.buffer().duplicate();
+        int elementSize = host.getElementSize();
+        for (MatrixRegion r : regions)
+        {
+            long line[] = lines(host.getOrder(), r);
+            int lineBytes = (int)(line[2] * elementSize);
+            for (long i = 0; i < line[3]; i++)
+            {
+                int start = (int)(((line[0] + i) * host.getLd() + line[1]) *
+                    elementSize);
+                src.limit(start + lineBytes).position(start);
+                dst.position(position);
+                dst.put(src);
+                position += lineBytes;
+            }
+        }
+    }
+
+    /**
+     * Write the elements of the given regions from the given staging
+     * buffer into the given host matrix
+     *
+     * @param staging The staging buffer
+     * @param position The byte position of the first element in the
+     * staging buffer
+     * @param regions The regions
+     * @param host The host matrix
+     */
+    static void unpack(ByteBuffer staging, int position,
+        List<MatrixRegion> regions, HostMatrix host)
+    {
+        ByteBuffer src = staging.duplicate();
+        ByteBuffer dst = host.buffer().duplicate();
+        int elementSize = host.getElementSize();
+        for (MatrixRegion r : regions)
+        {
+            long line[] = lines(host.getOrder(), r);
+            int lineBytes = (int)(line[2] * elementSize);
+            for (long i = 0; i < line[3]; i++)
+            {
+                int start = (int)(((line[0] + i) * host.getLd() + line[1]) *
+                    elementSize);
+                src.limit(position + lineBytes).position(position);
+                dst.position(start);
+                dst.put(src);
+                position += lineBytes;
+            }
+        }
+    }
+
+    /**
+     * Write the descriptors of the given regions into the given staging
+     * buffer, and return the byte position where the elements start
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param regions The regions
+     * @param staging The staging buffer
+     * @return The byte position after the descriptors
+     */
+    static int writeDescriptors(int order, List<MatrixRegion> regions,
+        ByteBuffer staging)
+    {
+        LongBuffer descriptors = staging.duplicate().order(
+            ByteOrder.nativeOrder()).asLongBuffer();
+        long start = 0;
+        for (MatrixRegion r : regions)
+        {
+            long line[] = lines(order, r);
+            descriptors.put(line[0]);
+            descriptors.put(line[1]);
+            descriptors.put(line[2]);
+            descriptors.put(start);
+            start += r.getNumElements();
+        }
+        return regions.size() * DESCRIPTOR_SIZE * Sizeof.cl_long;
+    }
+
+    /**
+     * Returns the given region in terms of lines: The first line, the
+     * position in the line, the line length, and the number of lines
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param r The region
+     * @return The line description
+     */
+    private static long[] lines(int order, MatrixRegion r)
+    {
+        if (order == clblasRowMajor)
+        {
+            return new long[] { r.getRow(), r.getColumn(),
+                r.getNumColumns(), r.getNumRows() };
+        }
+        return new long[] { r.getColumn(), r.getRow(),
+            r.getNumRows(), r.getNumColumns() };
+    }
+
+    /**
+     * Returns the total number of elements in the given regions
+     *
+     * @param regions The regions
+     * @return The number of elements
+     */
+    private static long countElements(List<MatrixRegion> regions)
+    {
+        long total = 0;
+        for (MatrixRegion r : regions)
+        {
+            total += r.getNumElements();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the kernel for the given operation and element size
+     *
+     * @param operation The operation, "scatter" or "gather"
+     * @param elementSize The element size
+     * @return The kernel
+     * @throws CLException If the kernels can not be compiled
+     */
+    private CachedKernel getKernel(String operation, int elementSize)
+    {
+        return kernelCache.getKernel(context, KERNELS_SOURCE,
+            operation + elementSize);
+    }
+
+    /**
+     * Throws a CLException if the given result is not CL_SUCCESS
+     *
+     * @param result The result
+     * @param name The name of the function that returned the result
+     * @throws CLException If the result is not CL_SUCCESS
+     */
+    private static void check(int result, String name)
+    {
+        if (result != CL.CL_SUCCESS)
+        {
+            throw new CLException(name + " failed: " +
+                CL.stringFor_errorCode(result), result);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.memory;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.cl_context;
+import org.jocl.cl_mem;
+import org.jocl.blas.CLBLAS;
+import org.jocl.blas.clblasOrder;
+
+/**
+ * A matrix in a device memory object. <br>
+ * <br>
+ * This describes the memory object, the offset and the leading
+ * dimension of a matrix, so that it can be passed to the CLBLAS
+ * routines. Instances may wrap existing memory objects, or be created
+ * with {@link #create}, which allocates a memory object with the same
+ * padded layout as a {@link HostMatrix} with the same parameters.
+ */
+public final class DeviceMatrix
+{
+    /**
+     * The memory object
+     */
+    private cl_mem mem;
+
+    /**
+     * The {@link clblasOrder}
+     */
+    private final int order;
+
+    /**
+     * The number of rows
+     */
+    private final long rows;
+
+    /**
+     * The number of columns
+     */
+    private final long columns;
+
+    /**
+     * The size of one element, in bytes
+     */
+    private final int elementSize;
+
+    /**
+     * The offset of the matrix in the memory object, in elements
+     */
+    private final long offset;
+
+    /**
+     * The leading dimension, in elements
+     */
+    private final long ld;
+
+    /**
+     * Creates a new device matrix that refers to the given memory
+     * object
+     *
+     * @param mem The memory object
+     * @param order The {@link clblasOrder}
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param elementSize The size of one element, in bytes
+     * @param offset The offset of the matrix in the memory object,
+     * in elements
+     * @param ld The leading dimension, in elements
+     * @throws IllegalArgumentException If any size or the offset is
+     * negative, or the leading dimension is smaller than the number of
+     * columns (for row-major matrices) or rows (for column-major
+     * matrices)
+     */
+    public DeviceMatrix(cl_mem mem, int order, long rows, long columns,
+        int elementSize, long offset, long ld)
+    {
+        if (rows < 0 || columns < 0 || offset < 0)
+        {
+            throw new IllegalArgumentException(
+                "The sizes may not be negative, but are rows=" + rows +
+                ", columns=" + columns + ", offset=" + offset);
+        }
+        long minLd = order == clblasRowMajor ? columns : rows;
+        if (ld < minLd)
+        {
+            throw new IllegalArgumentException("The leading dimension is " +
+                ld + ", but must be at least " + minLd);
+        }
+        this.mem = mem;
+        this.order = order;
+        this.rows = rows;
+        this.columns = columns;
+        this.elementSize = elementSize;
+        this.offset = offset;
+        this.ld = ld;
+    }
+
+    /**
+     * Creates a new device matrix, with a memory object that is
+     * allocated with {@link CLBLAS#clblasCreateMatrix}
+     *
+     * @param context The context
+     * @param order The {@link clblasOrder}
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param elementSize The size of one element, in bytes
+     * @param padding The padding of the leading dimension, in elements
+     * @return The device matrix
+     * @throws CLException If the memory object can not be created
+     */
+    public static DeviceMatrix create(cl_context context, int order,
+        long rows, long columns, int elementSize, long padding)
+    {
+        long ld[] = { 0 };
+        long fullsize[] = { 0 };
+        int errcode[] = { 0 };
+        cl_mem mem = CLBLAS.clblasCreateMatrix(context, order,
+            Math.max(rows, 1), Math.max(columns, 1), elementSize, padding,
+            ld, fullsize, errcode);
+        if (errcode[0] != CL.CL_SUCCESS)
+        {
+            throw new CLException("clblasCreateMatrix failed: " +
+                CL.stringFor_errorCode(errcode[0]), errcode[0]);
+        }
+        return new DeviceMatrix(mem, order, rows, columns, elementSize,
+            0, ld[0]);
+    }
+
+    /**
+     * Creates a new device matrix with the same layout as the given
+     * host matrix
+     *
+     * @param context The context
+     * @param hostMatrix The host matrix
+     * @return The device matrix
+     * @throws CLException If the memory object can not be created
+     */
+    public static DeviceMatrix createFor(
+        cl_context context, HostMatrix hostMatrix)
+    {
+        int order = hostMatrix.getOrder();
+        long rows = hostMatrix.getRows();
+        long columns = hostMatrix.getColumns();
+        long padding = hostMatrix.getLd() -
+            (order == clblasRowMajor ? columns : rows);
+        return create(context, order, rows, columns,
+            hostMatrix.getElementSize(), padding);
+    }
+
+    /**
+     * Returns the memory object
+     *
+     * @return The memory object
+     * @throws IllegalStateException If the matrix was released
+     */
+    public cl_mem getMem()
+    {
+        if (mem == null)
+        {
+            throw new IllegalStateException("The matrix was released");
+        }
+        return mem;
+    }
+
+    /**
+     * Returns the {@link clblasOrder}
+     *
+     * @return The order
+     */
+    public int getOrder()
+    {
+        return order;
+    }
+
+    /**
+     * Returns the number of rows
+     *
+     * @return The number of rows
+     */
+    public long getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns
+     *
+     * @return The number of columns
+     */
+    public long getColumns()
+    {
+        return columns;
+    }
+
+    /**
+     * Returns the size of one element, in bytes
+     *
+     * @return The element size
+     */
+    public int getElementSize()
+    {
+        return elementSize;
+    }
+
+    /**
+     * Returns the offset of the matrix in the memory object, in elements
+     *
+     * @return The offset
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * Returns the leading dimension, in elements
+     *
+     * @return The leading dimension
+     */
+    public long getLd()
+    {
+        return ld;
+    }
+
+    /**
+     * Returns the number of bytes that are covered by this matrix,
+     * including the padding, but excluding the offset
+     *
+     * @return The size in bytes
+     */
+    public long getSizeInBytes()
+    {
+        return HostMatrix.computeSize(order, rows, columns, elementSize, ld);
+    }
+
+    /**
+     * Returns whether this matrix has the same order, size, element size
+     * and leading dimension as the given host matrix, so that it can be
+     * transferred with a single call
+     *
+     * @param hostMatrix The host matrix
+     * @return Whether the layouts match
+     */
+    public boolean hasLayoutOf(HostMatrix hostMatrix)
+    {
+        return order == hostMatrix.getOrder() &&
+            rows == hostMatrix.getRows() &&
+            columns == hostMatrix.getColumns() &&
+            elementSize == hostMatrix.getElementSize() &&
+            ld == hostMatrix.getLd();
+    }
+
+    /**
+     * Returns whether this matrix was released
+     *
+     * @return Whether this matrix was released
+     */
+    public boolean isReleased()
+    {
+        return mem == null;
+    }
+
+    /**
+     * Release the memory object of this matrix. Calling this method on
+     * a matrix that was already released has no effect.
+     */
+    public void release()
+    {
+        if (mem != null)
+        {
+            CL.clReleaseMemObject(mem);
+            mem = null;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DeviceMatrix[" + rows + "x" + columns + ", ld=" + ld +
+            ", offset=" + offset + ", elementSize=" + elementSize + ", " +
+            clblasOrder.stringFor(order) + "]";
+    }
+}
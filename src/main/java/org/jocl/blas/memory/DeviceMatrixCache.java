@@ -0,0 +1,719 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.memory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_event;
+import org.jocl.blas.clblasStatus;
+
+/**
+ * A cache for device copies of host matrices, with a limited number of
+ * bytes. <br>
+ * <br>
+ * Matrices are identified by a user-supplied key and a version. When a
+ * matrix is {@link #acquire acquired}, and the cache contains a device
+ * copy for the key with at least the given version, the device copy is
+ * returned without any transfer. Otherwise, the host matrix is uploaded,
+ * reusing the memory object of an older version if it has the same
+ * layout. When the total size of the device copies would exceed the
+ * budget, entries are evicted according to the {@link EvictionPolicy},
+ * and their memory objects are released. <br>
+ * <br>
+ * Acquired matrices are pinned, and will not be evicted until they are
+ * {@link #unpin(Object) unpinned}. If all entries are pinned, the budget
+ * may temporarily be exceeded. <br>
+ * <br>
+ * When a device copy is modified on the device, it may be
+ * {@link #markDirty(Object, long) marked as dirty}, with a new version.
+ * Dirty entries are written back into the host matrix from which they
+ * have last been acquired before they are evicted, or when they are
+ * {@link #flush(Object) flushed}. This host matrix must not be freed
+ * while the entry is dirty. <br>
+ * <br>
+ * This class is thread-safe. All transfers are blocking.
+ */
+public final class DeviceMatrixCache
+{
+    /**
+     * The policies for selecting the entries that are evicted
+     */
+    public static enum EvictionPolicy
+    {
+        /**
+         * Evict the least recently used entry
+         */
+        LRU,
+
+        /**
+         * Evict the least frequently used entry. Among entries with the
+         * same number of uses, the least recently used one is evicted.
+         */
+        LFU
+    }
+
+    /**
+     * Interface for the allocations and transfers of the cache
+     */
+    interface Transfers
+    {
+        /**
+         * Allocate a device matrix with the layout of the given host
+         * matrix
+         *
+         * @param layout The host matrix
+         * @return The device matrix
+         */
+        DeviceMatrix allocate(HostMatrix layout);
+
+        /**
+         * Transfer the given host matrix to the given device matrix,
+         * and wait for the completion of the transfer
+         *
+         * @param source The host matrix
+         * @param target The device matrix
+         */
+        void upload(HostMatrix source, DeviceMatrix target);
+
+        /**
+         * Transfer the given device matrix to the given host matrix,
+         * and wait for the completion of the transfer
+         *
+         * @param source The device matrix
+         * @param target The host matrix
+         */
+        void download(DeviceMatrix source, HostMatrix target);
+
+        /**
+         * Release the given device matrix
+         *
+         * @param matrix The device matrix
+         */
+        void release(DeviceMatrix matrix);
+    }
+
+    /**
+     * Implementation of the {@link Transfers} for one command queue
+     */
+    private static class QueueTransfers implements Transfers
+    {
+        /**
+         * The context
+         */
+        private final cl_context context;
+
+        /**
+         * The command queue
+         */
+        private final cl_command_queue commandQueue;
+
+        /**
+         * Creates a new instance
+         *
+         * @param context The context
+         * @param commandQueue The command queue
+         */
+        QueueTransfers(cl_context context, cl_command_queue commandQueue)
+        {
+            this.context = context;
+            this.commandQueue = commandQueue;
+        }
+
+        @Override
+        public DeviceMatrix allocate(HostMatrix layout)
+        {
+            return DeviceMatrix.createFor(context, layout);
+        }
+
+        @Override
+        public void upload(HostMatrix source, DeviceMatrix target)
+        {
+            cl_event event = new cl_event();
+            check(source.enqueueWrite(commandQueue, target.getMem(),
+                target.getOffset(), target.getLd(), 0, null,
+                new cl_event[] { event }), "clblasWriteMatrixAsync");
+            waitAndRelease(event);
+        }
+
+        @Override
+        public void download(DeviceMatrix source, HostMatrix target)
+        {
+            cl_event event = new cl_event();
+            check(target.enqueueRead(commandQueue, source.getMem(),
+                source.getOffset(), source.getLd(), 0, null,
+                new cl_event[] { event }), "clblasReadMatrixAsync");
+            waitAndRelease(event);
+        }
+
+        @Override
+        public void release(DeviceMatrix matrix)
+        {
+            matrix.release();
+        }
+
+        /**
+         * Wait for the given event and release it
+         *
+         * @param event The event
+         * @throws CLException If waiting failed
+         */
+        private static void waitAndRelease(cl_event event)
+        {
+            try
+            {
+                check(CL.clWaitForEvents(1, new cl_event[] { event }),
+                    "clWaitForEvents");
+            }
+            finally
+            {
+                CL.clReleaseEvent(event);
+            }
+        }
+
+        /**
+         * Throws a CLException if the given result is not CL_SUCCESS
+         *
+         * @param result The result
+         * @param name The name of the function that returned the result
+         * @throws CLException If the result is not CL_SUCCESS
+         */
+        private static void check(int result, String name)
+        {
+            if (result != CL.CL_SUCCESS)
+            {
+                throw new CLException(name + " failed: " +
+                    clblasStatus.stringFor(result), result);
+            }
+        }
+    }
+
+    /**
+     * One entry of the cache
+     */
+    private static class Entry
+    {
+        /**
+         * The key
+         */
+        final Object key;
+
+        /**
+         * The version of the device copy
+         */
+        long version;
+
+        /**
+         * The device copy
+         */
+        DeviceMatrix matrix;
+
+        /**
+         * The host matrix from which the entry was last acquired
+         */
+        HostMatrix source;
+
+        /**
+         * Whether the device copy was modified on the device
+         */
+        boolean dirty;
+
+        /**
+         * The number of times that the entry was acquired
+         */
+        long uses;
+
+        /**
+         * The number of pins
+         */
+        int pins;
+
+        /**
+         * Creates a new entry
+         *
+         * @param key The key
+         */
+        Entry(Object key)
+        {
+            this.key = key;
+        }
+    }
+
+    /**
+     * The allocations and transfers
+     */
+    private final Transfers transfers;
+
+    /**
+     * The maximum number of bytes for the device copies
+     */
+    private final long byteBudget;
+
+    /**
+     * The eviction policy
+     */
+    private final EvictionPolicy policy;
+
+    /**
+     * The entries, in the order of their last access
+     */
+    private final LinkedHashMap<Object, Entry> entries;
+
+    /**
+     * The number of bytes of the device copies
+     */
+    private long usedBytes;
+
+    /**
+     * The number of acquisitions without a transfer
+     */
+    private long hitCount;
+
+    /**
+     * The number of acquisitions with a transfer
+     */
+    private long missCount;
+
+    /**
+     * The number of evicted entries
+     */
+    private long evictionCount;
+
+    /**
+     * The number of bytes that have been uploaded
+     */
+    private long uploadedBytes;
+
+    /**
+     * The number of dirty entries that have been written back
+     */
+    private long writeBackCount;
+
+    /**
+     * Creates a new cache that performs the transfers with the given
+     * command queue
+     *
+     * @param context The context
+     * @param commandQueue The command queue
+     * @param byteBudget The maximum number of bytes for device copies
+     * @param policy The eviction policy
+     * @throws IllegalArgumentException If the budget is negative
+     */
+    public DeviceMatrixCache(cl_context context,
+        cl_command_queue commandQueue, long byteBudget,
+        EvictionPolicy policy)
+    {
+        this(new QueueTransfers(context, commandQueue), byteBudget, policy);
+    }
+
+    /**
+     * Creates a new cache
+     *
+     * @param transfers The allocations and transfers
+     * @param byteBudget The maximum number of bytes for device copies
+     * @param policy The eviction policy
+     * @throws IllegalArgumentException If the budget is negative
+     */
+    DeviceMatrixCache(Transfers transfers, long byteBudget,
+        EvictionPolicy policy)
+    {
+        if (byteBudget < 0)
+        {
+            throw new IllegalArgumentException(
+                "The budget may not be negative, but is " + byteBudget);
+        }
+        this.transfers = transfers;
+        this.byteBudget = byteBudget;
+        this.policy = policy;
+        this.entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns a device copy of the given host matrix, and pins it. If
+     * the cache contains a device copy for the given key with at least
+     * the given version, it is returned. Otherwise, the host matrix is
+     * uploaded. A device copy that was marked as dirty is never
+     * replaced by an older or equal host version.
+     *
+     * @param key The key
+     * @param version The version of the host matrix
+     * @param source The host matrix
+     * @return The device matrix
+     * @throws IllegalStateException If the host matrix has a newer
+     * version than a device copy that is pinned or dirty
+     * @throws CLException If an OpenCL error occurs
+     */
+    public synchronized DeviceMatrix acquire(
+        Object key, long version, HostMatrix source)
+    {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version >= version)
+        {
+            hitCount++;
+            entry.uses++;
+            entry.pins++;
+            entry.source = source;
+            return entry.matrix;
+        }
+        missCount++;
+        if (entry != null)
+        {
+            if (entry.pins > 0 || entry.dirty)
+            {
+                throw new IllegalStateException("The device copy of " +
+                    key + " with version " + entry.version + " is " +
+                    (entry.dirty ? "dirty" : "pinned") +
+                    ", and can not be replaced with version " + version);
+            }
+            if (!entry.matrix.hasLayoutOf(source))
+            {
+                remove(entry);
+                entry = null;
+            }
+        }
+        if (entry == null)
+        {
+            makeRoom(source.getSizeInBytes());
+            entry = new Entry(key);
+            entry.matrix = transfers.allocate(source);
+            entries.put(key, entry);
+            usedBytes += entry.matrix.getSizeInBytes();
+        }
+        try
+        {
+            transfers.upload(source, entry.matrix);
+        }
+        catch (RuntimeException e)
+        {
+            remove(entry);
+            throw e;
+        }
+        uploadedBytes += source.getSizeInBytes();
+        entry.version = version;
+        entry.source = source;
+        entry.uses++;
+        entry.pins++;
+        return entry.matrix;
+    }
+
+    /**
+     * Unpin the device copy for the given key, so that it may be
+     * evicted again
+     *
+     * @param key The key
+     * @throws IllegalStateException If the device copy is not pinned
+     */
+    public synchronized void unpin(Object key)
+    {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.pins == 0)
+        {
+            throw new IllegalStateException(
+                "The device copy of " + key + " is not pinned");
+        }
+        entry.pins--;
+        if (usedBytes > byteBudget)
+        {
+            makeRoom(0);
+        }
+    }
+
+    /**
+     * Mark the device copy for the given key as dirty, meaning that it
+     * was modified on the device, and now represents the given version
+     *
+     * @param key The key
+     * @param version The new version
+     * @throws IllegalArgumentException If the cache does not contain
+     * a device copy for the given key, or the version is older than
+     * the version of the device copy
+     */
+    public synchronized void markDirty(Object key, long version)
+    {
+        Entry entry = entries.get(key);
+        if (entry == null)
+        {
+            throw new IllegalArgumentException(
+                "No device copy for " + key);
+        }
+        if (version < entry.version)
+        {
+            throw new IllegalArgumentException("The version " + version +
+                " is older than the version " + entry.version +
+                " of the device copy of " + key);
+        }
+        entry.version = version;
+        entry.dirty = true;
+    }
+
+    /**
+     * Write the device copy for the given key back into its host matrix,
+     * if it is dirty
+     *
+     * @param key The key
+     * @throws CLException If an OpenCL error occurs
+     */
+    public synchronized void flush(Object key)
+    {
+        Entry entry = entries.get(key);
+        if (entry != null)
+        {
+            writeBack(entry);
+        }
+    }
+
+    /**
+     * Write all dirty device copies back into their host matrices
+     *
+     * @throws CLException If an OpenCL error occurs
+     */
+    public synchronized void flushAll()
+    {
+        for (Entry entry : entries.values())
+        {
+            writeBack(entry);
+        }
+    }
+
+    /**
+     * Remove the device copy for the given key from this cache, and
+     * release its memory object, without writing it back
+     *
+     * @param key The key
+     * @throws IllegalStateException If the device copy is pinned
+     */
+    public synchronized void invalidate(Object key)
+    {
+        Entry entry = entries.get(key);
+        if (entry == null)
+        {
+            return;
+        }
+        if (entry.pins > 0)
+        {
+            throw new IllegalStateException(
+                "The device copy of " + key + " is pinned");
+        }
+        remove(entry);
+    }
+
+    /**
+     * Write all dirty device copies back into their host matrices, and
+     * release all memory objects. This must not be called while any of
+     * the device copies is still in use.
+     *
+     * @throws CLException If an OpenCL error occurs
+     */
+    public synchronized void clear()
+    {
+        flushAll();
+        List<Entry> all = new ArrayList<Entry>(entries.values());
+        for (Entry entry : all)
+        {
+            remove(entry);
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the device copies in this cache
+     *
+     * @return The used bytes
+     */
+    public synchronized long getUsedBytes()
+    {
+        return usedBytes;
+    }
+
+    /**
+     * Returns the maximum number of bytes of the device copies
+     *
+     * @return The byte budget
+     */
+    public long getByteBudget()
+    {
+        return byteBudget;
+    }
+
+    /**
+     * Returns the number of entries in this cache
+     *
+     * @return The number of entries
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of acquisitions that did not require a transfer
+     *
+     * @return The hit count
+     */
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of acquisitions that required a transfer
+     *
+     * @return The miss count
+     */
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of entries that have been evicted
+     *
+     * @return The eviction count
+     */
+    public synchronized long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of bytes that have been uploaded
+     *
+     * @return The uploaded bytes
+     */
+    public synchronized long getUploadedBytes()
+    {
+        return uploadedBytes;
+    }
+
+    /**
+     * Returns the number of dirty device copies that have been written
+     * back into their host matrices
+     *
+     * @return The write-back count
+     */
+    public synchronized long getWriteBackCount()
+    {
+        return writeBackCount;
+    }
+
+    /**
+     * Evict unpinned entries until the given number of bytes may be
+     * added without exceeding the budget, or no unpinned entries
+     * are left
+     *
+     * @param bytes The number of bytes
+     * @throws CLException If an OpenCL error occurs
+     */
+    private void makeRoom(long bytes)
+    {
+        while (usedBytes + bytes > byteBudget)
+        {
+            Entry victim = selectVictim();
+            if (victim == null)
+            {
+                return;
+            }
+            writeBack(victim);
+            remove(victim);
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Select the entry that should be evicted next, according to the
+     * eviction policy
+     *
+     * @return The entry, or <code>null</code> if all entries are pinned
+     */
+    private Entry selectVictim()
+    {
+        Entry victim = null;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext())
+        {
+            Entry entry = iterator.next();
+            if (entry.pins > 0)
+            {
+                continue;
+            }
+            if (policy == EvictionPolicy.LRU)
+            {
+                return entry;
+            }
+            if (victim == null || entry.uses < victim.uses)
+            {
+                victim = entry;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Write the given entry back into its host matrix, if it is dirty
+     *
+     * @param entry The entry
+     * @throws CLException If an OpenCL error occurs
+     */
+    private void writeBack(Entry entry)
+    {
+        if (entry.dirty)
+        {
+            transfers.download(entry.matrix, entry.source);
+            entry.dirty = false;
+            writeBackCount++;
+        }
+    }
+
+    /**
+     * Remove the given entry and release its device matrix
+     *
+     * @param entry The entry
+     */
+    private void remove(Entry entry)
+    {
+        entries.remove(entry.key);
+        usedBytes -= entry.matrix.getSizeInBytes();
+        transfers.release(entry.matrix);
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "DeviceMatrixCache[" +
+            "entries=" + entries.size() + "," +
+            "usedBytes=" + usedBytes + "," +
+            "byteBudget=" + byteBudget + "," +
+            "hits=" + hitCount + "," +
+            "misses=" + missCount + "," +
+            "evictions=" + evictionCount + "]";
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.memory;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.cl_context;
+import org.jocl.cl_mem;
+
+/**
+ * A pool of {@link DeviceMatrix} instances without padding, for
+ * temporary results. <br>
+ * <br>
+ * Matrices that are returned to the pool with {@link #release} are
+ * retained for later requests with the same order, size and element
+ * size, up to the given maximum number of retained bytes. Workloads
+ * that repeatedly compute intermediate results of the same shapes
+ * thus do not create new memory objects after the first iteration.
+ * <br>
+ * <br>
+ * A matrix may be returned to the pool as soon as the last command
+ * that uses it was enqueued, if the next user of the matrix enqueues
+ * its commands into the same in-order command queue. Otherwise, the
+ * commands that use the matrix must have completed. <br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class DeviceMatrixPool
+{
+    /**
+     * Interface for the creation and release of the memory objects
+     */
+    interface Allocator
+    {
+        /**
+         * Create a matrix without padding
+         *
+         * @param order The {@link org.jocl.blas.clblasOrder}
+         * @param rows The number of rows
+         * @param columns The number of columns
+         * @param elementSize The size of one element, in bytes
+         * @return The matrix
+         */
+        DeviceMatrix allocate(
+            int order, long rows, long columns, int elementSize);
+
+        /**
+         * Release the given matrix
+         *
+         * @param matrix The matrix
+         */
+        void release(DeviceMatrix matrix);
+    }
+
+    /**
+     * The key for the retained matrices
+     */
+    private static final class Key
+    {
+        /**
+         * The order
+         */
+        private final int order;
+
+        /**
+         * The number of rows
+         */
+        private final long rows;
+
+        /**
+         * The number of columns
+         */
+        private final long columns;
+
+        /**
+         * The element size
+         */
+        private final int elementSize;
+
+        /**
+         * Creates a new key
+         *
+         * @param order The order
+         * @param rows The number of rows
+         * @param columns The number of columns
+         * @param elementSize The element size
+         */
+        Key(int order, long rows, long columns, int elementSize)
+        {
+            this.order = order;
+            this.rows = rows;
+            this.columns = columns;
+            this.elementSize = elementSize;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = 31 + order;
+            result = 31 * result + (int)(rows ^ (rows >>> 32));
+            result = 31 * result + (int)(columns ^ (columns >>> 32));
+            result = 31 * result + elementSize;
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object object)
+        {
+            if (this == object)
+            {
+                return true;
+            }
+            if (!(object instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key)object;
+            return order == other.order && rows == other.rows &&
+                columns == other.columns && elementSize == other.elementSize;
+        }
+    }
+
+    /**
+     * The allocator
+     */
+    private final Allocator allocator;
+
+    /**
+     * The maximum number of bytes that are retained in this pool
+     */
+    private final long maxRetainedBytes;
+
+    /**
+     * The retained matrices, for each key
+     */
+    private final Map<Key, ArrayDeque<DeviceMatrix>> matrices;
+
+    /**
+     * The matrices that have been obtained from this pool and not been
+     * returned yet
+     */
+    private final Set<DeviceMatrix> acquired;
+
+    /**
+     * The number of bytes that are currently retained
+     */
+    private long retainedBytes;
+
+    /**
+     * The number of matrices that have been allocated
+     */
+    private long allocationCount;
+
+    /**
+     * The number of requests that have been served with a retained
+     * matrix
+     */
+    private long reuseCount;
+
+    /**
+     * Creates a new pool that creates memory objects in the given
+     * context
+     *
+     * @param context The context
+     * @param maxRetainedBytes The maximum number of bytes that are
+     * retained for reuse
+     * @throws IllegalArgumentException If the maximum is negative
+     */
+    public DeviceMatrixPool(final cl_context context, long maxRetainedBytes)
+    {
+        this(new Allocator()
+        {
+            @Override
+            public DeviceMatrix allocate(
+                int order, long rows, long columns, int elementSize)
+            {
+                long size = Math.max(rows * columns, 1) * elementSize;
+                int errcode[] = { 0 };
+                cl_mem mem = CL.clCreateBuffer(context,
+                    CL.CL_MEM_READ_WRITE, size, null, errcode);
+                if (errcode[0] != CL.CL_SUCCESS)
+                {
+                    throw new CLException("clCreateBuffer failed: " +
+                        CL.stringFor_errorCode(errcode[0]), errcode[0]);
+                }
+                return new DeviceMatrix(mem, order, rows, columns,
+                    elementSize, 0, computeLd(order, rows, columns));
+            }
+
+            @Override
+            public void release(DeviceMatrix matrix)
+            {
+                matrix.release();
+            }
+        }, maxRetainedBytes);
+    }
+
+    /**
+     * Creates a new pool with the given allocator
+     *
+     * @param allocator The allocator
+     * @param maxRetainedBytes The maximum number of bytes that are
+     * retained for reuse
+     * @throws IllegalArgumentException If the maximum is negative
+     */
+    DeviceMatrixPool(Allocator allocator, long maxRetainedBytes)
+    {
+        if (maxRetainedBytes < 0)
+        {
+            throw new IllegalArgumentException(
+                "The maximum retained bytes may not be negative, but is " +
+                maxRetainedBytes);
+        }
+        this.allocator = allocator;
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.matrices = new HashMap<Key, ArrayDeque<DeviceMatrix>>();
+        this.acquired = Collections.newSetFromMap(
+            new IdentityHashMap<DeviceMatrix, Boolean>());
+    }
+
+    /**
+     * Obtain a matrix without padding from this pool. The contents of
+     * the matrix are unspecified.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param elementSize The size of one element, in bytes
+     * @return The matrix
+     * @throws IllegalArgumentException If any size is negative
+     * @throws CLException If the memory object can not be created
+     */
+    public DeviceMatrix acquire(
+        int order, long rows, long columns, int elementSize)
+    {
+        if (rows < 0 || columns < 0)
+        {
+            throw new IllegalArgumentException(
+                "The sizes may not be negative, but are rows=" + rows +
+                ", columns=" + columns);
+        }
+        Key key = new Key(order, rows, columns, elementSize);
+        synchronized (this)
+        {
+            ArrayDeque<DeviceMatrix> deque = matrices.get(key);
+            if (deque != null && !deque.isEmpty())
+            {
+                DeviceMatrix matrix = deque.pop();
+                retainedBytes -= matrix.getSizeInBytes();
+                reuseCount++;
+                acquired.add(matrix);
+                return matrix;
+            }
+            allocationCount++;
+        }
+        DeviceMatrix matrix =
+            allocator.allocate(order, rows, columns, elementSize);
+        synchronized (this)
+        {
+            acquired.add(matrix);
+        }
+        return matrix;
+    }
+
+    /**
+     * Return the given matrix to this pool. If this would exceed the
+     * maximum number of retained bytes, the matrix is released.
+     *
+     * @param matrix The matrix
+     * @throws IllegalArgumentException If the matrix was not obtained
+     * from this pool, or was already returned
+     */
+    public void release(DeviceMatrix matrix)
+    {
+        synchronized (this)
+        {
+            if (!acquired.remove(matrix))
+            {
+                throw new IllegalArgumentException(
+                    "The matrix was not obtained from this pool: " + matrix);
+            }
+            long size = matrix.getSizeInBytes();
+            if (retainedBytes + size <= maxRetainedBytes)
+            {
+                Key key = new Key(matrix.getOrder(), matrix.getRows(),
+                    matrix.getColumns(), matrix.getElementSize());
+                ArrayDeque<DeviceMatrix> deque = matrices.get(key);
+                if (deque == null)
+                {
+                    deque = new ArrayDeque<DeviceMatrix>();
+                    matrices.put(key, deque);
+                }
+                deque.push(matrix);
+                retainedBytes += size;
+                return;
+            }
+        }
+        allocator.release(matrix);
+    }
+
+    /**
+     * Returns the number of bytes that are currently retained
+     *
+     * @return The retained bytes
+     */
+    public synchronized long getRetainedBytes()
+    {
+        return retainedBytes;
+    }
+
+    /**
+     * Returns the number of matrices that have been allocated by this
+     * pool
+     *
+     * @return The allocation count
+     */
+    public synchronized long getAllocationCount()
+    {
+        return allocationCount;
+    }
+
+    /**
+     * Returns the number of requests that have been served with a
+     * retained matrix
+     *
+     * @return The reuse count
+     */
+    public synchronized long getReuseCount()
+    {
+        return reuseCount;
+    }
+
+    /**
+     * Release all retained matrices. Matrices that have been obtained
+     * from this pool and not been returned yet are not affected.
+     */
+    public void clear()
+    {
+        Map<Key, ArrayDeque<DeviceMatrix>> released;
+        synchronized (this)
+        {
+            released = new HashMap<Key, ArrayDeque<DeviceMatrix>>(matrices);
+            matrices.clear();
+            retainedBytes = 0;
+        }
+        for (ArrayDeque<DeviceMatrix> deque : released.values())
+        {
+            for (DeviceMatrix matrix : deque)
+            {
+                allocator.release(matrix);
+            }
+        }
+    }
+
+    /**
+     * Computes the leading dimension of a matrix without padding
+     *
+     * @param order The order
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @return The leading dimension
+     */
+    private static long computeLd(int order, long rows, long columns)
+    {
+        return Math.max(order == clblasRowMajor ? columns : rows, 1);
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "DeviceMatrixPool[retainedBytes=" + retainedBytes +
+            ", allocations=" + allocationCount +
+            ", reuses=" + reuseCount + "]";
+    }
+}
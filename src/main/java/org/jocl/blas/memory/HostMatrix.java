@@ -0,0 +1,499 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.memory;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.CLBLAS;
+import org.jocl.blas.clblasOrder;
+
+/**
+ * A matrix in aligned off-heap host memory. <br>
+ * <br>
+ * The layout is the padded layout that is computed by
+ * {@link CLBLAS#clblasMatrixSizeInfo}: The leading dimension is the
+ * number of columns (for row-major matrices) or rows (for column-major
+ * matrices), plus the padding, and the size is the number of rows (or
+ * columns) times the leading dimension. A device matrix that is created
+ * with {@link CLBLAS#clblasCreateMatrix} for the same order, size and
+ * padding has the same leading dimension, so that the whole matrix can
+ * be transferred with a single rectangular copy. <br>
+ * <br>
+ * Instances are created with {@link #allocate}, or obtained from a
+ * {@link HostMemoryPool}.
+ */
+public final class HostMatrix extends HostMemory
+{
+    /**
+     * The {@link clblasOrder}
+     */
+    private final int order;
+
+    /**
+     * The number of rows
+     */
+    private final long rows;
+
+    /**
+     * The number of columns
+     */
+    private final long columns;
+
+    /**
+     * The size of one element, in bytes
+     */
+    private final int elementSize;
+
+    /**
+     * The leading dimension, in elements
+     */
+    private final long ld;
+
+    /**
+     * Creates a new host matrix
+     *
+     * @param buffer The aligned buffer
+     * @param alignment The alignment
+     * @param pool The pool, or <code>null</code>
+     * @param order The {@link clblasOrder}
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param elementSize The element size
+     * @param ld The leading dimension
+     */
+    HostMatrix(ByteBuffer buffer, int alignment, HostMemoryPool pool,
+        int order, long rows, long columns, int elementSize, long ld)
+    {
+        super(buffer, alignment, pool);
+        this.order = order;
+        this.rows = rows;
+        this.columns = columns;
+        this.elementSize = elementSize;
+        this.ld = ld;
+    }
+
+    /**
+     * Allocate a new host matrix that is not associated with a pool
+     *
+     * @param order The {@link clblasOrder}
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param elementSize The size of one element, in bytes
+     * @param padding The padding of the leading dimension, in elements
+     * @param alignment The alignment, in bytes
+     * @return The matrix
+     * @throws IllegalArgumentException If any size is negative, the
+     * alignment is not a positive power of two, or the matrix is too
+     * large for a direct buffer
+     */
+    public static HostMatrix allocate(int order, long rows, long columns,
+        int elementSize, long padding, int alignment)
+    {
+        long ld = computeLd(order, rows, columns, padding);
+        long size = computeSize(order, rows, columns, elementSize, ld);
+        ByteBuffer buffer = AlignedMemory.allocate(size, alignment);
+        return new HostMatrix(buffer, alignment, null,
+            order, rows, columns, elementSize, ld);
+    }
+
+    /**
+     * Computes the leading dimension of a matrix, in the same way as
+     * {@link CLBLAS#clblasMatrixSizeInfo}
+     *
+     * @param order The {@link clblasOrder}
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param padding The padding, in elements
+     * @return The leading dimension
+     * @throws IllegalArgumentException If any size is negative
+     */
+    static long computeLd(int order, long rows, long columns, long padding)
+    {
+        if (rows < 0 || columns < 0 || padding < 0)
+        {
+            throw new IllegalArgumentException(
+                "The sizes may not be negative, but are rows=" + rows +
+                ", columns=" + columns + ", padding=" + padding);
+        }
+        return (order == clblasRowMajor ? columns : rows) + padding;
+    }
+
+    /**
+     * Computes the size of a matrix, in bytes, in the same way as
+     * {@link CLBLAS#clblasMatrixSizeInfo}
+     *
+     * @param order The {@link clblasOrder}
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param elementSize The element size
+     * @param ld The leading dimension
+     * @return The size in bytes
+     */
+    static long computeSize(int order, long rows, long columns,
+        int elementSize, long ld)
+    {
+        return (order == clblasRowMajor ? rows : columns) * ld * elementSize;
+    }
+
+    /**
+     * Returns the {@link clblasOrder} of this matrix
+     *
+     * @return The order
+     */
+    public int getOrder()
+    {
+        return order;
+    }
+
+    /**
+     * Returns the number of rows
+     *
+     * @return The number of rows
+     */
+    public long getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns
+     *
+     * @return The number of columns
+     */
+    public long getColumns()
+    {
+        return columns;
+    }
+
+    /**
+     * Returns the size of one element, in bytes
+     *
+     * @return The element size
+     */
+    public int getElementSize()
+    {
+        return elementSize;
+    }
+
+    /**
+     * Returns the leading dimension, in elements
+     *
+     * @return The leading dimension
+     */
+    public long getLd()
+    {
+        return ld;
+    }
+
+    /**
+     * Returns the size of the padded matrix, in bytes
+     *
+     * @return The size in bytes
+     */
+    public long getSizeInBytes()
+    {
+        return computeSize(order, rows, columns, elementSize, ld);
+    }
+
+    /**
+     * Returns the float value at the given position
+     *
+     * @param row The row
+     * @param column The column
+     * @return The value
+     * @throws IndexOutOfBoundsException If the position is not valid
+     * @throws IllegalStateException If the memory was freed
+     */
+    public float getFloat(long row, long column)
+    {
+        return buffer().getFloat(byteIndex(row, column, Sizeof.cl_float));
+    }
+
+    /**
+     * Set the float value at the given position
+     *
+     * @param row The row
+     * @param column The column
+     * @param value The value
+     * @throws IndexOutOfBoundsException If the position is not valid
+     * @throws IllegalStateException If the memory was freed
+     */
+    public void putFloat(long row, long column, float value)
+    {
+        buffer().putFloat(byteIndex(row, column, Sizeof.cl_float), value);
+    }
+
+    /**
+     * Returns the double value at the given position
+     *
+     * @param row The row
+     * @param column The column
+     * @return The value
+     * @throws IndexOutOfBoundsException If the position is not valid
+     * @throws IllegalStateException If the memory was freed
+     */
+    public double getDouble(long row, long column)
+    {
+        return buffer().getDouble(byteIndex(row, column, Sizeof.cl_double));
+    }
+
+    /**
+     * Set the double value at the given position
+     *
+     * @param row The row
+     * @param column The column
+     * @param value The value
+     * @throws IndexOutOfBoundsException If the position is not valid
+     * @throws IllegalStateException If the memory was freed
+     */
+    public void putDouble(long row, long column, double value)
+    {
+        buffer().putDouble(byteIndex(row, column, Sizeof.cl_double), value);
+    }
+
+    /**
+     * Copy the given array, which has the same order as this matrix,
+     * into this matrix
+     *
+     * @param src The source array
+     * @param srcOff The offset in the source array
+     * @param ldSrc The leading dimension of the source array
+     * @throws IllegalArgumentException If the element size of this
+     * matrix is not the size of a float
+     * @throws IllegalStateException If the memory was freed
+     */
+    public void put(float src[], int srcOff, int ldSrc)
+    {
+        checkElementSize(Sizeof.cl_float);
+        FloatBuffer fb = buffer().asFloatBuffer();
+        int lines = lines();
+        int length = lineLength();
+        for (int i = 0; i < lines; i++)
+        {
+            fb.position((int) (i * ld));
+            fb.put(src, srcOff + i * ldSrc, length);
+        }
+    }
+
+    /**
+     * Copy this matrix into the given array, which has the same order
+     * as this matrix
+     *
+     * @param dst The destination array
+     * @param dstOff The offset in the destination array
+     * @param ldDst The leading dimension of the destination array
+     * @throws IllegalArgumentException If the element size of this
+     * matrix is not the size of a float
+     * @throws IllegalStateException If the memory was freed
+     */
+    public void get(float dst[], int dstOff, int ldDst)
+    {
+        checkElementSize(Sizeof.cl_float);
+        FloatBuffer fb = buffer().asFloatBuffer();
+        int lines = lines();
+        int length = lineLength();
+        for (int i = 0; i < lines; i++)
+        {
+            fb.position((int) (i * ld));
+            fb.get(dst, dstOff + i * ldDst, length);
+        }
+    }
+
+    /**
+     * Copy the given array, which has the same order as this matrix,
+     * into this matrix
+     *
+     * @param src The source array
+     * @param srcOff The offset in the source array
+     * @param ldSrc The leading dimension of the source array
+     * @throws IllegalArgumentException If the element size of this
+     * matrix is not the size of a double
+     * @throws IllegalStateException If the memory was freed
+     */
+    public void put(double src[], int srcOff, int ldSrc)
+    {
+        checkElementSize(Sizeof.cl_double);
+        DoubleBuffer db = buffer().asDoubleBuffer();
+        int lines = lines();
+        int length = lineLength();
+        for (int i = 0; i < lines; i++)
+        {
+            db.position((int) (i * ld));
+            db.put(src, srcOff + i * ldSrc, length);
+        }
+    }
+
+    /**
+     * Copy this matrix into the given array, which has the same order
+     * as this matrix
+     *
+     * @param dst The destination array
+     * @param dstOff The offset in the destination array
+     * @param ldDst The leading dimension of the destination array
+     * @throws IllegalArgumentException If the element size of this
+     * matrix is not the size of a double
+     * @throws IllegalStateException If the memory was freed
+     */
+    public void get(double dst[], int dstOff, int ldDst)
+    {
+        checkElementSize(Sizeof.cl_double);
+        DoubleBuffer db = buffer().asDoubleBuffer();
+        int lines = lines();
+        int length = lineLength();
+        for (int i = 0; i < lines; i++)
+        {
+            db.position((int) (i * ld));
+            db.get(dst, dstOff + i * ldDst, length);
+        }
+    }
+
+    /**
+     * Enqueue the transfer of this matrix into the given device matrix,
+     * with {@link CLBLAS#clblasWriteMatrixAsync}. This matrix must not
+     * be modified or freed before the transfer is complete.
+     *
+     * @param commandQueue The command queue
+     * @param B The device matrix
+     * @param offB The offset of the device matrix, in elements
+     * @param ldB The leading dimension of the device matrix
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param events The event of the transfer, or <code>null</code>
+     * @return The {@link org.jocl.blas.clblasStatus}
+     * @throws IllegalStateException If the memory was freed
+     */
+    public int enqueueWrite(cl_command_queue commandQueue,
+        cl_mem B, long offB, long ldB,
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event events[])
+    {
+        return CLBLAS.clblasWriteMatrixAsync(order, rows, columns,
+            elementSize, getPointer(), 0, ld, B, offB, ldB,
+            commandQueue, numEventsInWaitList, eventWaitList, events);
+    }
+
+    /**
+     * Enqueue the transfer of the given device matrix into this matrix,
+     * with {@link CLBLAS#clblasReadMatrixAsync}. This matrix must not
+     * be accessed or freed before the transfer is complete.
+     *
+     * @param commandQueue The command queue
+     * @param A The device matrix
+     * @param offA The offset of the device matrix, in elements
+     * @param ldA The leading dimension of the device matrix
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param events The event of the transfer, or <code>null</code>
+     * @return The {@link org.jocl.blas.clblasStatus}
+     * @throws IllegalStateException If the memory was freed
+     */
+    public int enqueueRead(cl_command_queue commandQueue,
+        cl_mem A, long offA, long ldA,
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event events[])
+    {
+        return CLBLAS.clblasReadMatrixAsync(order, rows, columns,
+            elementSize, A, offA, ldA, getPointer(), 0, ld,
+            commandQueue, numEventsInWaitList, eventWaitList, events);
+    }
+
+    /**
+     * Returns the number of lines (rows for row-major matrices, and
+     * columns for column-major matrices)
+     *
+     * @return The number of lines
+     */
+    private int lines()
+    {
+        return (int) (order == clblasRowMajor ? rows : columns);
+    }
+
+    /**
+     * Returns the number of elements in one line, excluding the padding
+     *
+     * @return The line length
+     */
+    private int lineLength()
+    {
+        return (int) (order == clblasRowMajor ? columns : rows);
+    }
+
+    /**
+     * Returns the byte index of the given element
+     *
+     * @param row The row
+     * @param column The column
+     * @param size The expected element size
+     * @return The byte index
+     * @throws IndexOutOfBoundsException If the position is not valid
+     * @throws IllegalArgumentException If the element size does not
+     * match
+     */
+    private int byteIndex(long row, long column, int size)
+    {
+        checkElementSize(size);
+        if (row < 0 || row >= rows || column < 0 || column >= columns)
+        {
+            throw new IndexOutOfBoundsException("Position (" + row + "," +
+                column + ") is not valid for a " + rows + "x" + columns +
+                " matrix");
+        }
+        long index = order == clblasRowMajor ?
+            row * ld + column : column * ld + row;
+        return (int) (index * elementSize);
+    }
+
+    /**
+     * Make sure that the element size of this matrix is the given size
+     *
+     * @param size The size
+     * @throws IllegalArgumentException If the size does not match
+     */
+    private void checkElementSize(int size)
+    {
+        if (elementSize != size)
+        {
+            throw new IllegalArgumentException("The element size is " +
+                elementSize + ", but an access with size " + size +
+                " was attempted");
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "HostMatrix[" + rows + "x" + columns + ", ld=" + ld +
+            ", elementSize=" + elementSize + ", " +
+            clblasOrder.stringFor(order) + "]";
+    }
+}
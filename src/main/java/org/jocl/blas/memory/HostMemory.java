@@ -0,0 +1,190 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.jocl.Pointer;
+
+/**
+ * Base class for blocks of aligned off-heap host memory. <br>
+ * <br>
+ * The memory is a direct buffer with native byte order, so that a
+ * {@link Pointer} to it can be passed to the transfer functions without
+ * an intermediate copy. The pointer is created once, and returned by
+ * {@link #getPointer()}. <br>
+ * <br>
+ * When the memory is no longer needed, it should be released with
+ * {@link #free()}. Memory that was obtained from a
+ * {@link HostMemoryPool} is then returned to the pool. Otherwise, it is
+ * released when the buffer is garbage collected. After the memory was
+ * freed, all accessors throw an <code>IllegalStateException</code>.
+ * <br>
+ * <br>
+ * Instances of this class are not thread-safe.
+ */
+public abstract class HostMemory
+{
+    /**
+     * The aligned buffer
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * The pointer to the buffer
+     */
+    private Pointer pointer;
+
+    /**
+     * The alignment, in bytes
+     */
+    private final int alignment;
+
+    /**
+     * The pool that the buffer was obtained from, or <code>null</code>
+     */
+    private final HostMemoryPool pool;
+
+    /**
+     * Creates a new host memory block
+     *
+     * @param buffer The aligned buffer
+     * @param alignment The alignment, in bytes
+     * @param pool The pool that the buffer was obtained from, or
+     * <code>null</code>
+     */
+    HostMemory(ByteBuffer buffer, int alignment, HostMemoryPool pool)
+    {
+        this.buffer = buffer;
+        this.pointer = Pointer.toBuffer(buffer);
+        this.alignment = alignment;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the pointer to this memory
+     *
+     * @return The pointer
+     * @throws IllegalStateException If the memory was freed
+     */
+    public final Pointer getPointer()
+    {
+        checkNotFreed();
+        return pointer;
+    }
+
+    /**
+     * Returns a new view on the buffer of this memory, with native
+     * byte order
+     *
+     * @return The buffer
+     * @throws IllegalStateException If the memory was freed
+     */
+    public final ByteBuffer getBuffer()
+    {
+        checkNotFreed();
+        return buffer.duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Returns the size of the buffer of this memory, in bytes. This
+     * may be larger than the size that was requested.
+     *
+     * @return The size in bytes
+     */
+    public final long getCapacity()
+    {
+        checkNotFreed();
+        return buffer.capacity();
+    }
+
+    /**
+     * Returns the alignment of this memory, in bytes
+     *
+     * @return The alignment
+     */
+    public final int getAlignment()
+    {
+        return alignment;
+    }
+
+    /**
+     * Returns whether this memory was freed
+     *
+     * @return Whether this memory was freed
+     */
+    public final boolean isFreed()
+    {
+        return buffer == null;
+    }
+
+    /**
+     * Free this memory. If it was obtained from a pool, then it is
+     * returned to the pool. Calling this method on memory that was
+     * already freed has no effect.
+     */
+    public final void free()
+    {
+        if (buffer == null)
+        {
+            return;
+        }
+        ByteBuffer b = buffer;
+        buffer = null;
+        pointer = null;
+        if (pool != null)
+        {
+            pool.recycle(b);
+        }
+    }
+
+    /**
+     * Returns the buffer of this memory, without creating a view
+     *
+     * @return The buffer
+     * @throws IllegalStateException If the memory was freed
+     */
+    final ByteBuffer buffer()
+    {
+        checkNotFreed();
+        return buffer;
+    }
+
+    /**
+     * Make sure that this memory was not freed
+     *
+     * @throws IllegalStateException If the memory was freed
+     */
+    final void checkNotFreed()
+    {
+        if (buffer == null)
+        {
+            throw new IllegalStateException("The memory was freed");
+        }
+    }
+}
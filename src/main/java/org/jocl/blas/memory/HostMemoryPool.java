@@ -0,0 +1,387 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.memory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jocl.CLException;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+
+/**
+ * A pool of aligned off-heap host memory blocks, for {@link HostMatrix}
+ * and {@link HostVector} instances. <br>
+ * <br>
+ * The requested sizes are rounded up to a multiple of the alignment,
+ * and freed blocks are retained for later requests of the same rounded
+ * size, up to the given maximum number of retained bytes. Workloads
+ * that repeatedly stage matrices of the same shapes thus do not
+ * allocate new direct buffers after the first iteration. <br>
+ * <br>
+ * A pool that is created with the constructor allocates direct buffers.
+ * A pool that is created with {@link #createPinned} allocates memory 
+ * objects with <code>CL_MEM_ALLOC_HOST_PTR</code> and maps them into the
+ * host address space, so that the memory is typically page-locked and
+ * transfers from and to it can use the DMA path of the runtime. Pinned 
+ * memory is not released by the garbage collector: Blocks that are not
+ * retained when they are freed are released immediately, and the 
+ * retained blocks are released by {@link #clear()}, which must be 
+ * called before the context and command queue are released. <br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class HostMemoryPool
+{
+    /**
+     * Interface for the allocation and release of the blocks
+     */
+    interface Allocator
+    {
+        /**
+         * Allocate a block with the given size and alignment
+         *
+         * @param size The size, in bytes
+         * @param alignment The alignment, in bytes
+         * @return The block
+         */
+        ByteBuffer allocate(long size, int alignment);
+
+        /**
+         * Release the given block
+         *
+         * @param block The block
+         */
+        void release(ByteBuffer block);
+    }
+
+    /**
+     * The {@link Allocator} for direct buffers, which are released by 
+     * the garbage collector
+     */
+    private static final Allocator DIRECT_ALLOCATOR = new Allocator()
+    {
+        @Override
+        public ByteBuffer allocate(long size, int alignment)
+        {
+            return AlignedMemory.allocate(size, alignment);
+        }
+
+        @Override
+        public void release(ByteBuffer block)
+        {
+            // Released by the garbage collector
+        }
+    };
+    
+    /**
+     * The alignment for page-aligned memory
+     */
+    public static final int PAGE_ALIGNMENT = 4096;
+
+    /**
+     * The alignment for cache-line-aligned memory
+     */
+    public static final int CACHE_LINE_ALIGNMENT = 64;
+
+    /**
+     * The allocator
+     */
+    private final Allocator allocator;
+
+    /**
+     * The alignment, in bytes
+     */
+    private final int alignment;
+
+    /**
+     * The maximum number of bytes that are retained in this pool
+     */
+    private final long maxRetainedBytes;
+
+    /**
+     * The retained blocks, for each rounded size
+     */
+    private final Map<Long, ArrayDeque<ByteBuffer>> blocks;
+
+    /**
+     * The number of bytes that are currently retained
+     */
+    private long retainedBytes;
+
+    /**
+     * The number of blocks that have been allocated
+     */
+    private long allocationCount;
+
+    /**
+     * The number of requests that have been served with a retained block
+     */
+    private long reuseCount;
+
+    /**
+     * Creates a new pool
+     *
+     * @param alignment The alignment, in bytes
+     * @param maxRetainedBytes The maximum number of bytes that are
+     * retained for reuse
+     * @throws IllegalArgumentException If the alignment is not a
+     * positive power of two, or the maximum is negative
+     */
+    public HostMemoryPool(int alignment, long maxRetainedBytes)
+    {
+        this(DIRECT_ALLOCATOR, alignment, maxRetainedBytes);
+    }
+
+    /**
+     * Creates a new pool of pinned host memory, which is allocated as
+     * memory objects with <code>CL_MEM_ALLOC_HOST_PTR</code> in the given
+     * context, and mapped into the host address space with the given 
+     * command queue. The retained blocks have to be released with 
+     * {@link #clear()} when the pool is no longer needed.
+     *
+     * @param context The context
+     * @param commandQueue The command queue
+     * @param alignment The alignment, in bytes
+     * @param maxRetainedBytes The maximum number of bytes that are
+     * retained for reuse
+     * @return The pool
+     * @throws IllegalArgumentException If the alignment is not a
+     * positive power of two, or the maximum is negative
+     */
+    public static HostMemoryPool createPinned(cl_context context, 
+        cl_command_queue commandQueue, int alignment, long maxRetainedBytes)
+    {
+        return new HostMemoryPool(new PinnedMemory(context, commandQueue), 
+            alignment, maxRetainedBytes);
+    }
+
+    /**
+     * Creates a new pool with the given allocator
+     *
+     * @param allocator The allocator
+     * @param alignment The alignment, in bytes
+     * @param maxRetainedBytes The maximum number of bytes that are
+     * retained for reuse
+     * @throws IllegalArgumentException If the alignment is not a
+     * positive power of two, or the maximum is negative
+     */
+    HostMemoryPool(Allocator allocator, int alignment, 
+        long maxRetainedBytes)
+    {
+        AlignedMemory.checkAlignment(alignment);
+        if (maxRetainedBytes < 0)
+        {
+            throw new IllegalArgumentException(
+                "The maximum retained bytes may not be negative, but is " +
+                maxRetainedBytes);
+        }
+        this.allocator = allocator;
+        this.alignment = alignment;
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.blocks = new HashMap<Long, ArrayDeque<ByteBuffer>>();
+    }
+
+    /**
+     * Obtain a matrix from this pool. The contents of the matrix are
+     * unspecified.
+     *
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param elementSize The size of one element, in bytes
+     * @param padding The padding of the leading dimension, in elements
+     * @return The matrix
+     * @throws IllegalArgumentException If any size is negative, or the
+     * matrix is too large for a direct buffer
+     * @throws CLException If pinned memory can not be allocated
+     */
+    public HostMatrix allocateMatrix(int order, long rows, long columns,
+        int elementSize, long padding)
+    {
+        long ld = HostMatrix.computeLd(order, rows, columns, padding);
+        long size = HostMatrix.computeSize(
+            order, rows, columns, elementSize, ld);
+        return new HostMatrix(acquire(size), alignment, this,
+            order, rows, columns, elementSize, ld);
+    }
+
+    /**
+     * Obtain a vector from this pool. The contents of the vector are
+     * unspecified.
+     *
+     * @param length The number of elements
+     * @param elementSize The size of one element, in bytes
+     * @return The vector
+     * @throws IllegalArgumentException If the length is negative, or the
+     * vector is too large for a direct buffer
+     * @throws CLException If pinned memory can not be allocated
+     */
+    public HostVector allocateVector(long length, int elementSize)
+    {
+        long size = HostVector.computeSize(length, elementSize);
+        return new HostVector(acquire(size), alignment, this,
+            length, elementSize);
+    }
+
+    /**
+     * Returns the alignment of the memory in this pool
+     *
+     * @return The alignment
+     */
+    public int getAlignment()
+    {
+        return alignment;
+    }
+
+    /**
+     * Returns the number of bytes that are currently retained
+     *
+     * @return The retained bytes
+     */
+    public synchronized long getRetainedBytes()
+    {
+        return retainedBytes;
+    }
+
+    /**
+     * Returns the number of blocks that have been allocated by this pool
+     *
+     * @return The allocation count
+     */
+    public synchronized long getAllocationCount()
+    {
+        return allocationCount;
+    }
+
+    /**
+     * Returns the number of requests that have been served with a
+     * retained block
+     *
+     * @return The reuse count
+     */
+    public synchronized long getReuseCount()
+    {
+        return reuseCount;
+    }
+
+    /**
+     * Release all retained blocks. Blocks that have been obtained from 
+     * this pool and not been freed yet are not affected.
+     */
+    public void clear()
+    {
+        List<ByteBuffer> released = new ArrayList<ByteBuffer>();
+        synchronized (this)
+        {
+            for (ArrayDeque<ByteBuffer> deque : blocks.values())
+            {
+                released.addAll(deque);
+            }
+            blocks.clear();
+            retainedBytes = 0;
+        }
+        for (ByteBuffer block : released)
+        {
+            allocator.release(block);
+        }
+    }
+
+    /**
+     * Obtain a block with at least the given size
+     *
+     * @param size The size, in bytes
+     * @return The block
+     */
+    private ByteBuffer acquire(long size)
+    {
+        long rounded = roundUp(Math.max(size, 1));
+        synchronized (this)
+        {
+            ArrayDeque<ByteBuffer> deque = blocks.get(rounded);
+            if (deque != null && !deque.isEmpty())
+            {
+                retainedBytes -= rounded;
+                reuseCount++;
+                return deque.pop();
+            }
+            allocationCount++;
+        }
+        return allocator.allocate(rounded, alignment);
+    }
+
+    /**
+     * Return the given block to this pool. If this would exceed the
+     * maximum number of retained bytes, the block is released.
+     *
+     * @param block The block
+     */
+    void recycle(ByteBuffer block)
+    {
+        long size = block.capacity();
+        synchronized (this)
+        {
+            if (retainedBytes + size <= maxRetainedBytes)
+            {
+                ArrayDeque<ByteBuffer> deque = blocks.get(size);
+                if (deque == null)
+                {
+                    deque = new ArrayDeque<ByteBuffer>();
+                    blocks.put(size, deque);
+                }
+                deque.push(block);
+                retainedBytes += size;
+                return;
+            }
+        }
+        allocator.release(block);
+    }
+
+    /**
+     * Round the given size up to a multiple of the alignment
+     *
+     * @param size The size
+     * @return The rounded size
+     */
+    private long roundUp(long size)
+    {
+        return (size + alignment - 1) & ~((long) alignment - 1);
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "HostMemoryPool[alignment=" + alignment +
+            ", retainedBytes=" + retainedBytes +
+            ", allocations=" + allocationCount +
+            ", reuses=" + reuseCount + "]";
+    }
+}
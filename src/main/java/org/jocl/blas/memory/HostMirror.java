@@ -0,0 +1,730 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jocl.CLException;
+import org.jocl.cl_command_queue;
+
+/**
+ * A lazily synchronized host copy of a {@link DeviceMatrix}. <br>
+ * <br>
+ * The matrix is divided into tiles. For each tile, the mirror tracks
+ * whether the host copy is stale, because the device matrix was
+ * modified, and whether it is dirty, because the host copy was
+ * modified. Initially, all tiles are stale. <br>
+ * <br>
+ * After a BLAS call modified the device matrix, this is reported with
+ * {@link #markDeviceModified(MatrixRegion)}. Reading elements from the
+ * mirror only transfers the stale tiles that they belong to, with
+ * {@link org.jocl.blas.CLBLAS#clblasReadSubMatrixAsync}. Writing
+ * elements only marks their tiles as dirty. The dirty tiles are
+ * transferred with {@link #flush()}, which must be called before the
+ * device matrix is used by the next BLAS call. In both directions,
+ * adjacent tiles are coalesced into rectangular regions, so that one
+ * transfer is issued for each region. <br>
+ * <br>
+ * The host matrix must have the same order, size and element size as
+ * the device matrix. Its leading dimension may be different. <br>
+ * <br>
+ * Instances of this class are not thread-safe.
+ */
+public final class HostMirror
+{
+    /**
+     * The device matrix
+     */
+    private final DeviceMatrix device;
+
+    /**
+     * The host matrix
+     */
+    private final HostMatrix host;
+
+    /**
+     * The transfers
+     */
+    private final RegionTransfers transfers;
+
+    /**
+     * The number of rows of one tile
+     */
+    private final int tileRows;
+
+    /**
+     * The number of columns of one tile
+     */
+    private final int tileColumns;
+
+    /**
+     * The number of tiles in the row direction
+     */
+    private final int numTileRows;
+
+    /**
+     * The number of tiles in the column direction
+     */
+    private final int numTileColumns;
+
+    /**
+     * Whether the host copy of each tile is stale, in row-major order
+     */
+    private final boolean stale[];
+
+    /**
+     * Whether the host copy of each tile is dirty, in row-major order
+     */
+    private final boolean dirty[];
+
+    /**
+     * The number of read transfers
+     */
+    private long readCount;
+
+    /**
+     * The number of elements that have been read
+     */
+    private long readElements;
+
+    /**
+     * The number of write transfers
+     */
+    private long writeCount;
+
+    /**
+     * The number of elements that have been written
+     */
+    private long writeElements;
+
+    /**
+     * Creates a new mirror that performs the transfers with the given
+     * command queue
+     *
+     * @param commandQueue The command queue
+     * @param device The device matrix
+     * @param host The host matrix
+     * @param tileRows The number of rows of one tile
+     * @param tileColumns The number of columns of one tile
+     * @throws IllegalArgumentException If the tile size is not positive,
+     * or the host matrix does not match the device matrix
+     */
+    public HostMirror(cl_command_queue commandQueue, DeviceMatrix device,
+        HostMatrix host, int tileRows, int tileColumns)
+    {
+        this(new QueueRegionTransfers(commandQueue), device, host,
+            tileRows, tileColumns);
+    }
+
+    /**
+     * Creates a new mirror that performs the transfers with the given
+     * {@link CoalescedRegionTransfers}, so that each {@link #sync} and
+     * {@link #flush()} causes a single buffer transfer
+     *
+     * @param transfers The transfers
+     * @param device The device matrix
+     * @param host The host matrix
+     * @param tileRows The number of rows of one tile
+     * @param tileColumns The number of columns of one tile
+     * @throws IllegalArgumentException If the tile size is not positive,
+     * or the host matrix does not match the device matrix
+     */
+    public HostMirror(CoalescedRegionTransfers transfers,
+        DeviceMatrix device, HostMatrix host, int tileRows, int tileColumns)
+    {
+        this((RegionTransfers) transfers, device, host,
+            tileRows, tileColumns);
+    }
+
+    /**
+     * Creates a new mirror
+     *
+     * @param transfers The transfers
+     * @param device The device matrix
+     * @param host The host matrix
+     * @param tileRows The number of rows of one tile
+     * @param tileColumns The number of columns of one tile
+     * @throws IllegalArgumentException If the tile size is not positive,
+     * or the host matrix does not match the device matrix
+     */
+    HostMirror(RegionTransfers transfers, DeviceMatrix device,
+        HostMatrix host, int tileRows, int tileColumns)
+    {
+        if (tileRows <= 0 || tileColumns <= 0)
+        {
+            throw new IllegalArgumentException("The tile size must be " +
+                "positive, but is " + tileRows + "x" + tileColumns);
+        }
+        if (host.getOrder() != device.getOrder() ||
+            host.getRows() != device.getRows() ||
+            host.getColumns() != device.getColumns() ||
+            host.getElementSize() != device.getElementSize())
+        {
+            throw new IllegalArgumentException(
+                "The host matrix " + host + " does not match " + device);
+        }
+        this.transfers = transfers;
+        this.device = device;
+        this.host = host;
+        this.tileRows = tileRows;
+        this.tileColumns = tileColumns;
+        this.numTileRows = (int) ((host.getRows() + tileRows - 1) / tileRows);
+        this.numTileColumns =
+            (int) ((host.getColumns() + tileColumns - 1) / tileColumns);
+        this.stale = new boolean[numTileRows * numTileColumns];
+        this.dirty = new boolean[numTileRows * numTileColumns];
+        Arrays.fill(stale, true);
+    }
+
+    /**
+     * Returns the device matrix
+     *
+     * @return The device matrix
+     */
+    public DeviceMatrix getDeviceMatrix()
+    {
+        return device;
+    }
+
+    /**
+     * Returns the host matrix. Only the regions that have been
+     * {@link #sync(MatrixRegion) synchronized} are valid.
+     *
+     * @return The host matrix
+     */
+    public HostMatrix getHostMatrix()
+    {
+        return host;
+    }
+
+    /**
+     * Report that the whole device matrix was modified
+     *
+     * @throws IllegalStateException If there are pending host writes
+     */
+    public void markDeviceModified()
+    {
+        markDeviceModified(
+            new MatrixRegion(0, 0, host.getRows(), host.getColumns()));
+    }
+
+    /**
+     * Report that the given region of the device matrix was modified
+     *
+     * @param region The region
+     * @throws IllegalArgumentException If the region is not within
+     * the matrix
+     * @throws IllegalStateException If there are pending host writes
+     * in the region, which would conflict with the modification
+     */
+    public void markDeviceModified(MatrixRegion region)
+    {
+        checkRegion(region);
+        if (region.isEmpty())
+        {
+            return;
+        }
+        int tr0 = tileRow(region.getRow());
+        int tr1 = tileRow(region.getRow() + region.getNumRows() - 1);
+        int tc0 = tileColumn(region.getColumn());
+        int tc1 = tileColumn(region.getColumn() + region.getNumColumns() - 1);
+        for (int tr = tr0; tr <= tr1; tr++)
+        {
+            for (int tc = tc0; tc <= tc1; tc++)
+            {
+                if (dirty[tr * numTileColumns + tc])
+                {
+                    throw new IllegalStateException("There are pending " +
+                        "host writes in " + region + ", flush first");
+                }
+            }
+        }
+        for (int tr = tr0; tr <= tr1; tr++)
+        {
+            for (int tc = tc0; tc <= tc1; tc++)
+            {
+                stale[tr * numTileColumns + tc] = true;
+            }
+        }
+    }
+
+    /**
+     * Make sure that the host copy of the given region is up to date,
+     * by reading all stale tiles that intersect the region
+     *
+     * @param region The region
+     * @throws IllegalArgumentException If the region is not within
+     * the matrix
+     * @throws CLException If an OpenCL error occurs
+     */
+    public void sync(MatrixRegion region)
+    {
+        checkRegion(region);
+        if (region.isEmpty())
+        {
+            return;
+        }
+        syncTiles(tileRow(region.getRow()),
+            tileRow(region.getRow() + region.getNumRows() - 1),
+            tileColumn(region.getColumn()),
+            tileColumn(region.getColumn() + region.getNumColumns() - 1));
+    }
+
+    /**
+     * Returns the float value at the given position, reading its tile
+     * if it is stale
+     *
+     * @param row The row
+     * @param column The column
+     * @return The value
+     * @throws IndexOutOfBoundsException If the position is not valid
+     * @throws CLException If an OpenCL error occurs
+     */
+    public float getFloat(long row, long column)
+    {
+        syncElement(row, column);
+        return host.getFloat(row, column);
+    }
+
+    /**
+     * Returns the double value at the given position, reading its tile
+     * if it is stale
+     *
+     * @param row The row
+     * @param column The column
+     * @return The value
+     * @throws IndexOutOfBoundsException If the position is not valid
+     * @throws CLException If an OpenCL error occurs
+     */
+    public double getDouble(long row, long column)
+    {
+        syncElement(row, column);
+        return host.getDouble(row, column);
+    }
+
+    /**
+     * Copy the given row into the given array, reading the stale tiles
+     * that it belongs to
+     *
+     * @param row The row
+     * @param dst The destination array
+     * @param dstOff The offset in the destination array
+     * @throws IndexOutOfBoundsException If the row is not valid
+     * @throws CLException If an OpenCL error occurs
+     */
+    public void getRow(long row, float dst[], int dstOff)
+    {
+        checkPosition(row, 0);
+        long columns = host.getColumns();
+        sync(new MatrixRegion(row, 0, 1, columns));
+        for (int c = 0; c < columns; c++)
+        {
+            dst[dstOff + c] = host.getFloat(row, c);
+        }
+    }
+
+    /**
+     * Set the float value at the given position, and mark its tile as
+     * dirty. If the tile is stale, it is read first.
+     *
+     * @param row The row
+     * @param column The column
+     * @param value The value
+     * @throws IndexOutOfBoundsException If the position is not valid
+     * @throws CLException If an OpenCL error occurs
+     */
+    public void putFloat(long row, long column, float value)
+    {
+        syncElement(row, column);
+        host.putFloat(row, column, value);
+        dirty[tileIndex(row, column)] = true;
+    }
+
+    /**
+     * Set the double value at the given position, and mark its tile as
+     * dirty. If the tile is stale, it is read first.
+     *
+     * @param row The row
+     * @param column The column
+     * @param value The value
+     * @throws IndexOutOfBoundsException If the position is not valid
+     * @throws CLException If an OpenCL error occurs
+     */
+    public void putDouble(long row, long column, double value)
+    {
+        syncElement(row, column);
+        host.putDouble(row, column, value);
+        dirty[tileIndex(row, column)] = true;
+    }
+
+    /**
+     * Transfer all dirty tiles to the device matrix
+     *
+     * @throws CLException If an OpenCL error occurs
+     */
+    public void flush()
+    {
+        List<MatrixRegion> regions = coalesce(dirty,
+            0, numTileRows - 1, 0, numTileColumns - 1);
+        if (regions.isEmpty())
+        {
+            return;
+        }
+        try
+        {
+            transfers.write(host, device, regions);
+        }
+        catch (RuntimeException e)
+        {
+            mark(dirty, regions);
+            throw e;
+        }
+        writeCount += regions.size();
+        writeElements += countElements(regions);
+    }
+
+    /**
+     * Returns the number of tiles that are stale
+     *
+     * @return The number of stale tiles
+     */
+    public int getStaleTileCount()
+    {
+        return count(stale);
+    }
+
+    /**
+     * Returns the number of tiles that are dirty
+     *
+     * @return The number of dirty tiles
+     */
+    public int getDirtyTileCount()
+    {
+        return count(dirty);
+    }
+
+    /**
+     * Returns the number of read transfers that have been issued
+     *
+     * @return The read count
+     */
+    public long getReadCount()
+    {
+        return readCount;
+    }
+
+    /**
+     * Returns the number of elements that have been read
+     *
+     * @return The number of read elements
+     */
+    public long getReadElements()
+    {
+        return readElements;
+    }
+
+    /**
+     * Returns the number of write transfers that have been issued
+     *
+     * @return The write count
+     */
+    public long getWriteCount()
+    {
+        return writeCount;
+    }
+
+    /**
+     * Returns the number of elements that have been written
+     *
+     * @return The number of written elements
+     */
+    public long getWriteElements()
+    {
+        return writeElements;
+    }
+
+    /**
+     * Make sure that the tile of the given element is not stale
+     *
+     * @param row The row
+     * @param column The column
+     * @throws IndexOutOfBoundsException If the position is not valid
+     */
+    private void syncElement(long row, long column)
+    {
+        checkPosition(row, column);
+        int tr = tileRow(row);
+        int tc = tileColumn(column);
+        if (stale[tr * numTileColumns + tc])
+        {
+            syncTiles(tr, tr, tc, tc);
+        }
+    }
+
+    /**
+     * Read the stale tiles in the given range of tiles
+     *
+     * @param tr0 The first tile row
+     * @param tr1 The last tile row, inclusive
+     * @param tc0 The first tile column
+     * @param tc1 The last tile column, inclusive
+     * @throws CLException If an OpenCL error occurs
+     */
+    private void syncTiles(int tr0, int tr1, int tc0, int tc1)
+    {
+        List<MatrixRegion> regions = coalesce(stale, tr0, tr1, tc0, tc1);
+        if (regions.isEmpty())
+        {
+            return;
+        }
+        try
+        {
+            transfers.read(device, host, regions);
+        }
+        catch (RuntimeException e)
+        {
+            mark(stale, regions);
+            throw e;
+        }
+        readCount += regions.size();
+        readElements += countElements(regions);
+    }
+
+    /**
+     * Collect the flagged tiles in the given range into rectangular
+     * regions, and clear their flags. Runs of adjacent flagged tiles in
+     * one tile row are combined, and runs that cover the same tile
+     * columns in consecutive tile rows are combined.
+     *
+     * @param flags The flags
+     * @param tr0 The first tile row
+     * @param tr1 The last tile row, inclusive
+     * @param tc0 The first tile column
+     * @param tc1 The last tile column, inclusive
+     * @return The regions, in elements
+     */
+    private List<MatrixRegion> coalesce(boolean flags[],
+        int tr0, int tr1, int tc0, int tc1)
+    {
+        // Each open rectangle is given as
+        // { firstTileRow, lastTileRow, firstTileColumn, lastTileColumn }
+        List<int[]> open = new ArrayList<int[]>();
+        List<int[]> closed = new ArrayList<int[]>();
+        for (int tr = tr0; tr <= tr1; tr++)
+        {
+            List<int[]> next = new ArrayList<int[]>();
+            int tc = tc0;
+            while (tc <= tc1)
+            {
+                if (!flags[tr * numTileColumns + tc])
+                {
+                    tc++;
+                    continue;
+                }
+                int start = tc;
+                while (tc <= tc1 && flags[tr * numTileColumns + tc])
+                {
+                    flags[tr * numTileColumns + tc] = false;
+                    tc++;
+                }
+                int end = tc - 1;
+                int rect[] = null;
+                for (int i = 0; i < open.size(); i++)
+                {
+                    int o[] = open.get(i);
+                    if (o[2] == start && o[3] == end)
+                    {
+                        rect = o;
+                        open.remove(i);
+                        break;
+                    }
+                }
+                if (rect == null)
+                {
+                    rect = new int[] { tr, tr, start, end };
+                }
+                rect[1] = tr;
+                next.add(rect);
+            }
+            closed.addAll(open);
+            open = next;
+        }
+        closed.addAll(open);
+
+        List<MatrixRegion> regions = new ArrayList<MatrixRegion>();
+        for (int rect[] : closed)
+        {
+            long row = (long) rect[0] * tileRows;
+            long column = (long) rect[2] * tileColumns;
+            long rowEnd = Math.min(
+                (long) (rect[1] + 1) * tileRows, host.getRows());
+            long columnEnd = Math.min(
+                (long) (rect[3] + 1) * tileColumns, host.getColumns());
+            regions.add(new MatrixRegion(
+                row, column, rowEnd - row, columnEnd - column));
+        }
+        return regions;
+    }
+
+    /**
+     * Set the flags of all tiles of the given regions
+     *
+     * @param flags The flags
+     * @param regions The regions
+     */
+    private void mark(boolean flags[], List<MatrixRegion> regions)
+    {
+        for (MatrixRegion r : regions)
+        {
+            for (int tr = tileRow(r.getRow());
+                tr <= tileRow(r.getRow() + r.getNumRows() - 1); tr++)
+            {
+                for (int tc = tileColumn(r.getColumn());
+                    tc <= tileColumn(r.getColumn() + r.getNumColumns() - 1);
+                    tc++)
+                {
+                    flags[tr * numTileColumns + tc] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the tile row of the given row
+     *
+     * @param row The row
+     * @return The tile row
+     */
+    private int tileRow(long row)
+    {
+        return (int) (row / tileRows);
+    }
+
+    /**
+     * Returns the tile column of the given column
+     *
+     * @param column The column
+     * @return The tile column
+     */
+    private int tileColumn(long column)
+    {
+        return (int) (column / tileColumns);
+    }
+
+    /**
+     * Returns the index of the tile of the given element
+     *
+     * @param row The row
+     * @param column The column
+     * @return The tile index
+     */
+    private int tileIndex(long row, long column)
+    {
+        return tileRow(row) * numTileColumns + tileColumn(column);
+    }
+
+    /**
+     * Make sure that the given position is valid
+     *
+     * @param row The row
+     * @param column The column
+     * @throws IndexOutOfBoundsException If the position is not valid
+     */
+    private void checkPosition(long row, long column)
+    {
+        if (row < 0 || row >= host.getRows() ||
+            column < 0 || column >= host.getColumns())
+        {
+            throw new IndexOutOfBoundsException("Position (" + row + "," +
+                column + ") is not valid for a " + host.getRows() + "x" +
+                host.getColumns() + " matrix");
+        }
+    }
+
+    /**
+     * Make sure that the given region is within the matrix
+     *
+     * @param region The region
+     * @throws IllegalArgumentException If the region is not within
+     * the matrix
+     */
+    private void checkRegion(MatrixRegion region)
+    {
+        if (!region.isWithin(host.getRows(), host.getColumns()))
+        {
+            throw new IllegalArgumentException("The region " + region +
+                " is not within a " + host.getRows() + "x" +
+                host.getColumns() + " matrix");
+        }
+    }
+
+    /**
+     * Returns the number of <code>true</code> values in the given array
+     *
+     * @param flags The array
+     * @return The number of <code>true</code> values
+     */
+    private static int count(boolean flags[])
+    {
+        int n = 0;
+        for (boolean flag : flags)
+        {
+            if (flag)
+            {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns the total number of elements in the given regions
+     *
+     * @param regions The regions
+     * @return The number of elements
+     */
+    private static long countElements(List<MatrixRegion> regions)
+    {
+        long n = 0;
+        for (MatrixRegion r : regions)
+        {
+            n += r.getNumElements();
+        }
+        return n;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "HostMirror[" + host.getRows() + "x" + host.getColumns() +
+            ", tiles=" + numTileRows + "x" + numTileColumns +
+            ", stale=" + getStaleTileCount() +
+            ", dirty=" + getDirtyTileCount() + "]";
+    }
+}
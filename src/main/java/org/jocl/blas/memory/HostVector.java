@@ -0,0 +1,240 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.CLBLAS;
+
+/**
+ * A vector in aligned off-heap host memory. <br>
+ * <br>
+ * Instances are created with {@link #allocate}, or obtained from a
+ * {@link HostMemoryPool}.
+ */
+public final class HostVector extends HostMemory
+{
+    /**
+     * The number of elements
+     */
+    private final long length;
+
+    /**
+     * The size of one element, in bytes
+     */
+    private final int elementSize;
+
+    /**
+     * Creates a new host vector
+     *
+     * @param buffer The aligned buffer
+     * @param alignment The alignment
+     * @param pool The pool, or <code>null</code>
+     * @param length The number of elements
+     * @param elementSize The element size
+     */
+    HostVector(ByteBuffer buffer, int alignment, HostMemoryPool pool,
+        long length, int elementSize)
+    {
+        super(buffer, alignment, pool);
+        this.length = length;
+        this.elementSize = elementSize;
+    }
+
+    /**
+     * Allocate a new host vector that is not associated with a pool
+     *
+     * @param length The number of elements
+     * @param elementSize The size of one element, in bytes
+     * @param alignment The alignment, in bytes
+     * @return The vector
+     * @throws IllegalArgumentException If the length is negative, the
+     * alignment is not a positive power of two, or the vector is too
+     * large for a direct buffer
+     */
+    public static HostVector allocate(long length, int elementSize,
+        int alignment)
+    {
+        ByteBuffer buffer = AlignedMemory.allocate(
+            computeSize(length, elementSize), alignment);
+        return new HostVector(buffer, alignment, null, length, elementSize);
+    }
+
+    /**
+     * Computes the size of a vector, in bytes
+     *
+     * @param length The number of elements
+     * @param elementSize The element size
+     * @return The size in bytes
+     * @throws IllegalArgumentException If the length is negative
+     */
+    static long computeSize(long length, int elementSize)
+    {
+        if (length < 0)
+        {
+            throw new IllegalArgumentException(
+                "The length may not be negative, but is " + length);
+        }
+        return length * elementSize;
+    }
+
+    /**
+     * Returns the number of elements
+     *
+     * @return The number of elements
+     */
+    public long getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Returns the size of one element, in bytes
+     *
+     * @return The element size
+     */
+    public int getElementSize()
+    {
+        return elementSize;
+    }
+
+    /**
+     * Returns the size of the vector, in bytes
+     *
+     * @return The size in bytes
+     */
+    public long getSizeInBytes()
+    {
+        return length * elementSize;
+    }
+
+    /**
+     * Returns a new float buffer view on this vector
+     *
+     * @return The float buffer
+     * @throws IllegalArgumentException If the element size of this
+     * vector is not the size of a float
+     * @throws IllegalStateException If the memory was freed
+     */
+    public FloatBuffer asFloatBuffer()
+    {
+        checkElementSize(Sizeof.cl_float);
+        ByteBuffer b = getBuffer();
+        b.limit((int) getSizeInBytes());
+        return b.asFloatBuffer();
+    }
+
+    /**
+     * Returns a new double buffer view on this vector
+     *
+     * @return The double buffer
+     * @throws IllegalArgumentException If the element size of this
+     * vector is not the size of a double
+     * @throws IllegalStateException If the memory was freed
+     */
+    public DoubleBuffer asDoubleBuffer()
+    {
+        checkElementSize(Sizeof.cl_double);
+        ByteBuffer b = getBuffer();
+        b.limit((int) getSizeInBytes());
+        return b.asDoubleBuffer();
+    }
+
+    /**
+     * Enqueue the transfer of this vector into the given device vector,
+     * with {@link CLBLAS#clblasWriteVectorAsync}. This vector must not
+     * be modified or freed before the transfer is complete.
+     *
+     * @param commandQueue The command queue
+     * @param B The device vector
+     * @param offB The offset of the device vector, in elements
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param events The event of the transfer, or <code>null</code>
+     * @return The {@link org.jocl.blas.clblasStatus}
+     * @throws IllegalStateException If the memory was freed
+     */
+    public int enqueueWrite(cl_command_queue commandQueue,
+        cl_mem B, long offB,
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event events[])
+    {
+        return CLBLAS.clblasWriteVectorAsync(length, elementSize,
+            getPointer(), 0, B, offB, commandQueue,
+            numEventsInWaitList, eventWaitList, events);
+    }
+
+    /**
+     * Enqueue the transfer of the given device vector into this vector,
+     * with {@link CLBLAS#clblasReadVectorAsync}. This vector must not
+     * be accessed or freed before the transfer is complete.
+     *
+     * @param commandQueue The command queue
+     * @param A The device vector
+     * @param offA The offset of the device vector, in elements
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param events The event of the transfer, or <code>null</code>
+     * @return The {@link org.jocl.blas.clblasStatus}
+     * @throws IllegalStateException If the memory was freed
+     */
+    public int enqueueRead(cl_command_queue commandQueue,
+        cl_mem A, long offA,
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event events[])
+    {
+        return CLBLAS.clblasReadVectorAsync(length, elementSize,
+            A, offA, getPointer(), 0, commandQueue,
+            numEventsInWaitList, eventWaitList, events);
+    }
+
+    /**
+     * Make sure that the element size of this vector is the given size
+     *
+     * @param size The size
+     * @throws IllegalArgumentException If the size does not match
+     */
+    private void checkElementSize(int size)
+    {
+        if (elementSize != size)
+        {
+            throw new IllegalArgumentException("The element size is " +
+                elementSize + ", but an access with size " + size +
+                " was attempted");
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "HostVector[" + length + ", elementSize=" + elementSize + "]";
+    }
+}
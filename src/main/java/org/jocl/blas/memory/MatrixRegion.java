@@ -0,0 +1,181 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.memory;
+
+/**
+ * A rectangular region of a matrix, given by the position of its 
+ * top-left element and its size.
+ */
+public final class MatrixRegion
+{
+    /**
+     * The row of the top-left element
+     */
+    private final long row;
+
+    /**
+     * The column of the top-left element
+     */
+    private final long column;
+
+    /**
+     * The number of rows
+     */
+    private final long numRows;
+
+    /**
+     * The number of columns
+     */
+    private final long numColumns;
+
+    /**
+     * Creates a new region
+     * 
+     * @param row The row of the top-left element
+     * @param column The column of the top-left element
+     * @param numRows The number of rows
+     * @param numColumns The number of columns
+     * @throws IllegalArgumentException If any value is negative
+     */
+    public MatrixRegion(long row, long column, long numRows, long numColumns)
+    {
+        if (row < 0 || column < 0 || numRows < 0 || numColumns < 0)
+        {
+            throw new IllegalArgumentException("Invalid region: " + 
+                row + "," + column + "," + numRows + "," + numColumns);
+        }
+        this.row = row;
+        this.column = column;
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+    }
+
+    /**
+     * Returns the row of the top-left element
+     * 
+     * @return The row
+     */
+    public long getRow()
+    {
+        return row;
+    }
+
+    /**
+     * Returns the column of the top-left element
+     * 
+     * @return The column
+     */
+    public long getColumn()
+    {
+        return column;
+    }
+
+    /**
+     * Returns the number of rows
+     * 
+     * @return The number of rows
+     */
+    public long getNumRows()
+    {
+        return numRows;
+    }
+
+    /**
+     * Returns the number of columns
+     * 
+     * @return The number of columns
+     */
+    public long getNumColumns()
+    {
+        return numColumns;
+    }
+    
+    /**
+     * Returns the number of elements in this region
+     * 
+     * @return The number of elements
+     */
+    public long getNumElements()
+    {
+        return numRows * numColumns;
+    }
+
+    /**
+     * Returns whether this region is empty
+     * 
+     * @return Whether this region is empty
+     */
+    public boolean isEmpty()
+    {
+        return numRows == 0 || numColumns == 0;
+    }
+
+    /**
+     * Returns whether this region lies within a matrix of the given size
+     * 
+     * @param rows The number of rows of the matrix
+     * @param columns The number of columns of the matrix
+     * @return Whether the region lies within the matrix
+     */
+    public boolean isWithin(long rows, long columns)
+    {
+        return row + numRows <= rows && column + numColumns <= columns;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        long h = row;
+        h = h * 31 + column;
+        h = h * 31 + numRows;
+        h = h * 31 + numColumns;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+        if (this == object)
+        {
+            return true;
+        }
+        if (!(object instanceof MatrixRegion))
+        {
+            return false;
+        }
+        MatrixRegion other = (MatrixRegion) object;
+        return row == other.row && column == other.column && 
+            numRows == other.numRows && numColumns == other.numColumns;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MatrixRegion[row=" + row + ",column=" + column + 
+            ",numRows=" + numRows + ",numColumns=" + numColumns + "]";
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.memory;
+
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_mem;
+
+/**
+ * A {@link HostMemoryPool.Allocator} for pinned host memory. Each block
+ * is backed by a memory object that is created with
+ * <code>CL_MEM_ALLOC_HOST_PTR</code>, so that the runtime allocates it
+ * in memory that is accessible for the device, which is typically
+ * page-locked. The memory object is mapped into the host address space
+ * with a blocking map, and the block is the aligned slice of the mapped
+ * buffer. When the block is released, the memory object is unmapped and
+ * released.
+ */
+final class PinnedMemory implements HostMemoryPool.Allocator
+{
+    /**
+     * A mapped memory object
+     */
+    private static final class Mapping
+    {
+        /**
+         * The memory object
+         */
+        final cl_mem mem;
+
+        /**
+         * The buffer that was returned by the map operation
+         */
+        final ByteBuffer mapped;
+
+        /**
+         * Creates a new mapping
+         *
+         * @param mem The memory object
+         * @param mapped The mapped buffer
+         */
+        Mapping(cl_mem mem, ByteBuffer mapped)
+        {
+            this.mem = mem;
+            this.mapped = mapped;
+        }
+    }
+
+    /**
+     * The context
+     */
+    private final cl_context context;
+
+    /**
+     * The command queue for mapping and unmapping
+     */
+    private final cl_command_queue commandQueue;
+
+    /**
+     * The mappings of the blocks that have been allocated and not been
+     * released yet
+     */
+    private final Map<ByteBuffer, Mapping> mappings;
+
+    /**
+     * Creates a new allocator
+     *
+     * @param context The context
+     * @param commandQueue The command queue for mapping and unmapping
+     */
+    PinnedMemory(cl_context context, cl_command_queue commandQueue)
+    {
+        this.context = context;
+        this.commandQueue = commandQueue;
+        this.mappings = new IdentityHashMap<ByteBuffer, Mapping>();
+    }
+
+    @Override
+    public ByteBuffer allocate(long size, int alignment)
+    {
+        if (size < 0 || size > Integer.MAX_VALUE - alignment)
+        {
+            throw new IllegalArgumentException(
+                "Invalid size for a mapped buffer: " + size);
+        }
+        long mappedSize = size + alignment - 1;
+        int errcode[] = { 0 };
+        cl_mem mem = CL.clCreateBuffer(context,
+            CL.CL_MEM_READ_WRITE | CL.CL_MEM_ALLOC_HOST_PTR,
+            mappedSize, null, errcode);
+        check(errcode[0], "clCreateBuffer");
+        ByteBuffer mapped = null;
+        try
+        {
+            mapped = CL.clEnqueueMapBuffer(commandQueue, mem, true,
+                CL.CL_MAP_READ | CL.CL_MAP_WRITE, 0, mappedSize,
+                0, null, null, errcode);
+            check(errcode[0], "clEnqueueMapBuffer");
+        }
+        finally
+        {
+            if (mapped == null || errcode[0] != CL.CL_SUCCESS)
+            {
+                CL.clReleaseMemObject(mem);
+            }
+        }
+        ByteBuffer block = AlignedMemory.align(mapped, size, alignment);
+        synchronized (mappings)
+        {
+            mappings.put(block, new Mapping(mem, mapped));
+        }
+        return block;
+    }
+
+    @Override
+    public void release(ByteBuffer block)
+    {
+        Mapping mapping;
+        synchronized (mappings)
+        {
+            mapping = mappings.remove(block);
+        }
+        if (mapping == null)
+        {
+            throw new IllegalArgumentException(
+                "The block was not allocated by this allocator");
+        }
+        try
+        {
+            check(CL.clEnqueueUnmapMemObject(commandQueue, mapping.mem,
+                mapping.mapped, 0, null, null), "clEnqueueUnmapMemObject");
+        }
+        finally
+        {
+            CL.clReleaseMemObject(mapping.mem);
+        }
+    }
+
+    /**
+     * Throws a CLException if the given result is not CL_SUCCESS
+     *
+     * @param result The result
+     * @param name The name of the function that returned the result
+     * @throws CLException If the result is not CL_SUCCESS
+     */
+    private static void check(int result, String name)
+    {
+        if (result != CL.CL_SUCCESS)
+        {
+            throw new CLException(name + " failed: " +
+                CL.stringFor_errorCode(result), result);
+        }
+    }
+}
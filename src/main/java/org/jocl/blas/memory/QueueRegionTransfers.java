@@ -0,0 +1,213 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.memory;
+
+import java.util.List;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_event;
+import org.jocl.blas.CLBLAS;
+import org.jocl.blas.clblasStatus;
+
+/**
+ * Implementation of {@link RegionTransfers} that enqueues one 
+ * {@link CLBLAS#clblasReadSubMatrixAsync} or 
+ * {@link CLBLAS#clblasWriteSubMatrixAsync} call for each region into 
+ * a command queue, and waits for all of them at once. <br>
+ * <br>
+ * The x dimension of the sub-matrix functions is the row, and the y 
+ * dimension is the column, as described in the clBLAS documentation.
+ */
+final class QueueRegionTransfers implements RegionTransfers
+{
+    /**
+     * The command queue
+     */
+    private final cl_command_queue commandQueue;
+    
+    /**
+     * Creates a new instance
+     * 
+     * @param commandQueue The command queue
+     */
+    QueueRegionTransfers(cl_command_queue commandQueue)
+    {
+        this.commandQueue = commandQueue;
+    }
+
+    @Override
+    public void read(DeviceMatrix device, HostMatrix host, 
+        List<MatrixRegion> regions)
+    {
+        cl_event events[] = new cl_event[regions.size()];
+        int n = 0;
+        try
+        {
+            for (MatrixRegion r : regions)
+            {
+                cl_event event = new cl_event();
+                check(enqueueRead(commandQueue, device, r, host, r, 
+                    0, null, event), "clblasReadSubMatrixAsync");
+                events[n++] = event;
+            }
+        }
+        finally
+        {
+            waitAndRelease(n, events);
+        }
+    }
+
+    @Override
+    public void write(HostMatrix host, DeviceMatrix device, 
+        List<MatrixRegion> regions)
+    {
+        cl_event events[] = new cl_event[regions.size()];
+        int n = 0;
+        try
+        {
+            for (MatrixRegion r : regions)
+            {
+                cl_event event = new cl_event();
+                check(enqueueWrite(commandQueue, host, r, device, r, 
+                    0, null, event), "clblasWriteSubMatrixAsync");
+                events[n++] = event;
+            }
+        }
+        finally
+        {
+            waitAndRelease(n, events);
+        }
+    }
+    
+    /**
+     * Enqueue the transfer of a region of a device matrix into a region 
+     * of a host matrix with the same size
+     * 
+     * @param commandQueue The command queue
+     * @param device The device matrix
+     * @param deviceRegion The region in the device matrix
+     * @param host The host matrix
+     * @param hostRegion The region in the host matrix
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event of the transfer, or <code>null</code>
+     * @return The {@link clblasStatus}
+     */
+    static int enqueueRead(cl_command_queue commandQueue, 
+        DeviceMatrix device, MatrixRegion deviceRegion, 
+        HostMatrix host, MatrixRegion hostRegion, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        return CLBLAS.clblasReadSubMatrixAsync(device.getOrder(), 
+            device.getElementSize(), 
+            device.getMem(), device.getOffset(), device.getLd(), 
+            device.getRows(), device.getColumns(), 
+            deviceRegion.getRow(), deviceRegion.getColumn(), 
+            host.getPointer(), 0, host.getLd(), 
+            host.getRows(), host.getColumns(), 
+            hostRegion.getRow(), hostRegion.getColumn(), 
+            deviceRegion.getNumRows(), deviceRegion.getNumColumns(), 
+            commandQueue, numEventsInWaitList, eventWaitList, 
+            event == null ? null : new cl_event[] { event });
+    }
+    
+    /**
+     * Enqueue the transfer of a region of a host matrix into a region 
+     * of a device matrix with the same size
+     * 
+     * @param commandQueue The command queue
+     * @param host The host matrix
+     * @param hostRegion The region in the host matrix
+     * @param device The device matrix
+     * @param deviceRegion The region in the device matrix
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event of the transfer, or <code>null</code>
+     * @return The {@link clblasStatus}
+     */
+    static int enqueueWrite(cl_command_queue commandQueue, 
+        HostMatrix host, MatrixRegion hostRegion, 
+        DeviceMatrix device, MatrixRegion deviceRegion, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        return CLBLAS.clblasWriteSubMatrixAsync(host.getOrder(), 
+            host.getElementSize(), 
+            host.getPointer(), 0, host.getLd(), 
+            host.getRows(), host.getColumns(), 
+            hostRegion.getRow(), hostRegion.getColumn(), 
+            device.getMem(), device.getOffset(), device.getLd(), 
+            device.getRows(), device.getColumns(), 
+            deviceRegion.getRow(), deviceRegion.getColumn(), 
+            hostRegion.getNumRows(), hostRegion.getNumColumns(), 
+            commandQueue, numEventsInWaitList, eventWaitList, 
+            event == null ? null : new cl_event[] { event });
+    }
+    
+    /**
+     * Wait for the given events and release them
+     * 
+     * @param n The number of events
+     * @param events The events
+     * @throws CLException If waiting failed
+     */
+    static void waitAndRelease(int n, cl_event events[])
+    {
+        if (n == 0)
+        {
+            return;
+        }
+        try
+        {
+            check(CL.clWaitForEvents(n, events), "clWaitForEvents");
+        }
+        finally
+        {
+            for (int i = 0; i < n; i++)
+            {
+                CL.clReleaseEvent(events[i]);
+            }
+        }
+    }
+
+    /**
+     * Throws a CLException if the given result is not CL_SUCCESS
+     *
+     * @param result The result
+     * @param name The name of the function that returned the result
+     * @throws CLException If the result is not CL_SUCCESS
+     */
+    static void check(int result, String name)
+    {
+        if (result != CL.CL_SUCCESS)
+        {
+            throw new CLException(name + " failed: " +
+                clblasStatus.stringFor(result), result);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.memory;
+
+import java.util.List;
+
+/**
+ * Interface for the transfer of regions between a host matrix and a
+ * device matrix with the same size and order
+ */
+interface RegionTransfers
+{
+    /**
+     * Transfer the given regions of the device matrix into the same 
+     * regions of the host matrix, and wait for the completion
+     * 
+     * @param device The device matrix
+     * @param host The host matrix
+     * @param regions The regions
+     * @throws org.jocl.CLException If an OpenCL error occurs
+     */
+    void read(DeviceMatrix device, HostMatrix host, 
+        List<MatrixRegion> regions);
+
+    /**
+     * Transfer the given regions of the host matrix into the same 
+     * regions of the device matrix, and wait for the completion
+     * 
+     * @param host The host matrix
+     * @param device The device matrix
+     * @param regions The regions
+     * @throws org.jocl.CLException If an OpenCL error occurs
+     */
+    void write(HostMatrix host, DeviceMatrix device, 
+        List<MatrixRegion> regions);
+}
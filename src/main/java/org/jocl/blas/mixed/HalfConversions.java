@@ -0,0 +1,154 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.mixed;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Utility methods for converting between <code>float</code> data and
+ * 16-bit data in a {@link HalfFormat}. The <code>short</code> values 
+ * contain the bits of the 16-bit values, and may be written into 
+ * <code>cl_mem</code> objects that are used with a 
+ * {@link MixedPrecisionExecutor}.
+ */
+public final class HalfConversions
+{
+    /**
+     * Converts the given float values into the given format
+     * 
+     * @param format The {@link HalfFormat}
+     * @param src The source values
+     * @param srcOff The offset in the source
+     * @param dst The destination
+     * @param dstOff The offset in the destination
+     * @param n The number of values
+     */
+    public static void encode(HalfFormat format, float src[], int srcOff, 
+        short dst[], int dstOff, int n)
+    {
+        for (int i = 0; i < n; i++)
+        {
+            dst[dstOff + i] = format.encode(src[srcOff + i]);
+        }
+    }
+    
+    /**
+     * Converts the given values from the given format into floats
+     * 
+     * @param format The {@link HalfFormat}
+     * @param src The source values
+     * @param srcOff The offset in the source
+     * @param dst The destination
+     * @param dstOff The offset in the destination
+     * @param n The number of values
+     */
+    public static void decode(HalfFormat format, short src[], int srcOff, 
+        float dst[], int dstOff, int n)
+    {
+        format.decode(src, srcOff, dst, dstOff, n);
+    }
+    
+    /**
+     * Converts the given float values into the given format, and returns
+     * the result as a new array
+     * 
+     * @param format The {@link HalfFormat}
+     * @param src The source values
+     * @return The converted values
+     */
+    public static short[] encode(HalfFormat format, float src[])
+    {
+        short dst[] = new short[src.length];
+        encode(format, src, 0, dst, 0, src.length);
+        return dst;
+    }
+    
+    /**
+     * Converts the given values from the given format into floats, and 
+     * returns the result as a new array
+     * 
+     * @param format The {@link HalfFormat}
+     * @param src The source values
+     * @return The converted values
+     */
+    public static float[] decode(HalfFormat format, short src[])
+    {
+        float dst[] = new float[src.length];
+        decode(format, src, 0, dst, 0, src.length);
+        return dst;
+    }
+    
+    /**
+     * Converts the remaining values of the given source buffer into the
+     * given format, and writes them into the destination buffer. The
+     * positions of both buffers are advanced by the number of values.
+     * 
+     * @param format The {@link HalfFormat}
+     * @param src The source buffer
+     * @param dst The destination buffer
+     * @throws java.nio.BufferOverflowException If the destination 
+     * buffer has fewer remaining elements than the source buffer
+     */
+    public static void encode(HalfFormat format, FloatBuffer src, 
+        ShortBuffer dst)
+    {
+        while (src.hasRemaining())
+        {
+            dst.put(format.encode(src.get()));
+        }
+    }
+    
+    /**
+     * Converts the remaining values of the given source buffer from the
+     * given format into floats, and writes them into the destination 
+     * buffer. The positions of both buffers are advanced by the number 
+     * of values.
+     * 
+     * @param format The {@link HalfFormat}
+     * @param src The source buffer
+     * @param dst The destination buffer
+     * @throws java.nio.BufferOverflowException If the destination 
+     * buffer has fewer remaining elements than the source buffer
+     */
+    public static void decode(HalfFormat format, ShortBuffer src, 
+        FloatBuffer dst)
+    {
+        while (src.hasRemaining())
+        {
+            dst.put(format.decode(src.get()));
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private HalfConversions()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.mixed;
+
+/**
+ * The 16-bit floating point formats that matrices may be stored in.
+ * Computations with these matrices are carried out in 32-bit floating 
+ * point precision, so these formats only reduce the memory footprint
+ * and bandwidth, and not the precision of the accumulation.
+ */
+public enum HalfFormat
+{
+    /**
+     * The IEEE 754 binary16 format, with 5 exponent bits and 10 
+     * mantissa bits. It is read in OpenCL kernels with 
+     * <code>vload_half</code>, which does not require the 
+     * <code>cl_khr_fp16</code> extension.
+     */
+    FP16
+    {
+        @Override
+        public short encode(float value)
+        {
+            int bits = Float.floatToRawIntBits(value);
+            int sign = (bits >>> 16) & 0x8000;
+            int exponent = (bits >>> 23) & 0xFF;
+            int mantissa = bits & 0x7FFFFF;
+            if (exponent == 0xFF)
+            {
+                int nan = mantissa != 0 ? 0x200 | (mantissa >>> 13) : 0;
+                return (short)(sign | 0x7C00 | nan);
+            }
+            int e = exponent - 127 + 15;
+            if (e >= 0x1F)
+            {
+                return (short)(sign | 0x7C00);
+            }
+            if (e <= 0)
+            {
+                if (e < -10)
+                {
+                    return (short)sign;
+                }
+                return (short)(sign | round(mantissa | 0x800000, 14 - e));
+            }
+            // A carry of the rounding into the exponent is intended
+            return (short)(sign | ((e << 10) + round(mantissa, 13)));
+        }
+
+        @Override
+        public float decode(short value)
+        {
+            return Fp16Table.VALUES[value & 0xFFFF];
+        }
+
+        @Override
+        void decode(short src[], int srcOff, float dst[], int dstOff, int n)
+        {
+            float values[] = Fp16Table.VALUES;
+            for (int i = 0; i < n; i++)
+            {
+                dst[dstOff + i] = values[src[srcOff + i] & 0xFFFF];
+            }
+        }
+
+        @Override
+        String getPointerType()
+        {
+            return "half";
+        }
+
+        @Override
+        String toOpenCL(String pointer, String index)
+        {
+            return "vload_half(" + index + ", " + pointer + ")";
+        }
+    },
+    
+    /**
+     * The bfloat16 format, consisting of the upper 16 bits of a 32-bit
+     * float, with 8 exponent bits and 7 mantissa bits
+     */
+    BF16
+    {
+        @Override
+        public short encode(float value)
+        {
+            int bits = Float.floatToRawIntBits(value);
+            if (Float.isNaN(value))
+            {
+                return (short)((bits >>> 16) | 0x40);
+            }
+            int rounding = 0x7FFF + ((bits >>> 16) & 1);
+            return (short)((bits + rounding) >>> 16);
+        }
+
+        @Override
+        public float decode(short value)
+        {
+            return Float.intBitsToFloat((value & 0xFFFF) << 16);
+        }
+
+        @Override
+        void decode(short src[], int srcOff, float dst[], int dstOff, int n)
+        {
+            for (int i = 0; i < n; i++)
+            {
+                dst[dstOff + i] = 
+                    Float.intBitsToFloat((src[srcOff + i] & 0xFFFF) << 16);
+            }
+        }
+
+        @Override
+        String getPointerType()
+        {
+            return "ushort";
+        }
+
+        @Override
+        String toOpenCL(String pointer, String index)
+        {
+            return "as_float(((uint)" + pointer + "[" + index + "]) << 16)";
+        }
+    };
+    
+    /**
+     * Converts the given value into this format, rounding to the nearest
+     * representable value, with ties to even
+     * 
+     * @param value The value
+     * @return The 16 bits of the value in this format
+     */
+    public abstract short encode(float value);
+    
+    /**
+     * Converts the given value from this format into a float. This 
+     * conversion is exact.
+     * 
+     * @param value The 16 bits of the value in this format
+     * @return The float value
+     */
+    public abstract float decode(short value);
+    
+    /**
+     * Converts the given values from this format into floats. This is
+     * implemented for each format, so that the loop does not dispatch
+     * on the format for each element.
+     * 
+     * @param src The source values
+     * @param srcOff The offset in the source
+     * @param dst The destination
+     * @param dstOff The offset in the destination
+     * @param n The number of values
+     */
+    abstract void decode(short src[], int srcOff, 
+        float dst[], int dstOff, int n);
+    
+    /**
+     * Returns the OpenCL type of the elements that the pointers to 
+     * values in this format are declared with
+     * 
+     * @return The type
+     */
+    abstract String getPointerType();
+    
+    /**
+     * Returns the OpenCL expression that reads the element with the 
+     * given index from the given pointer as a float
+     * 
+     * @param pointer The pointer
+     * @param index The index
+     * @return The expression
+     */
+    abstract String toOpenCL(String pointer, String index);
+    
+    /**
+     * Shifts the given mantissa to the right, rounding to the nearest
+     * value, with ties to even
+     * 
+     * @param mantissa The mantissa
+     * @param shift The shift
+     * @return The rounded mantissa
+     */
+    private static int round(int mantissa, int shift)
+    {
+        int result = mantissa >>> shift;
+        int remainder = mantissa & ((1 << shift) - 1);
+        int half = 1 << (shift - 1);
+        if (remainder > half || (remainder == half && (result & 1) != 0))
+        {
+            result++;
+        }
+        return result;
+    }
+    
+    /**
+     * Holder for the table of all FP16 values, which is only created
+     * when FP16 values are decoded on the host
+     */
+    private static final class Fp16Table
+    {
+        /**
+         * The float values of all FP16 values
+         */
+        static final float VALUES[] = createValues();
+        
+        /**
+         * Creates the float values of all FP16 values
+         * 
+         * @return The values
+         */
+        private static float[] createValues()
+        {
+            float values[] = new float[1 << 16];
+            for (int h = 0; h < values.length; h++)
+            {
+                int sign = (h & 0x8000) << 16;
+                int exponent = (h >>> 10) & 0x1F;
+                int mantissa = h & 0x3FF;
+                float value;
+                if (exponent == 0)
+                {
+                    value = mantissa * (1.0f / (1 << 24));
+                    values[h] = sign != 0 ? -value : value;
+                }
+                else if (exponent == 0x1F)
+                {
+                    values[h] = Float.intBitsToFloat(
+                        sign | 0x7F800000 | (mantissa << 13));
+                }
+                else
+                {
+                    values[h] = Float.intBitsToFloat(
+                        sign | ((exponent + 112) << 23) | (mantissa << 13));
+                }
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.mixed;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+
+/**
+ * Pure Java implementations of the mixed-precision matrix products of
+ * the {@link MixedPrecisionExecutor}, operating on host arrays. The 
+ * matrices A and B are stored in a {@link HalfFormat}, and all other 
+ * values are floats. The products are accumulated in float precision.
+ */
+public final class HostMixedPrecisionBLAS
+{
+    /**
+     * The number of elements of a row of the matrix that are decoded 
+     * at once in the matrix-vector product
+     */
+    private static final int GEMV_CHUNK_SIZE = 1024;
+    
+    /**
+     * Matrix-matrix product C = alpha * op(A) * op(B) + beta * C, where 
+     * A and B are stored in the given format. See 
+     * {@link org.jocl.blas.CLBLAS#clblasSgemm} for the description of 
+     * the remaining parameters.
+     *
+     * @param format The {@link HalfFormat} of A and B
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param transA How matrix A is to be transposed
+     * @param transB How matrix B is to be transposed
+     * @param M The number of rows of op(A) and C
+     * @param N The number of columns of op(B) and C
+     * @param K The number of columns of op(A) and rows of op(B)
+     * @param alpha The factor of op(A)*op(B)
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param B The matrix B
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     */
+    public static void sgemm(HalfFormat format, 
+        int order, int transA, int transB, int M, int N, int K, float alpha, 
+        short A[], int offA, int lda, short B[], int offB, int ldb, 
+        float beta, float C[], int offC, int ldc)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        boolean opA = (transA == clblasNoTrans) == rowMajor;
+        boolean opB = (transB == clblasNoTrans) == rowMajor;
+        int sAi = opA ? lda : 1;
+        int sAp = opA ? 1 : lda;
+        int sBp = opB ? ldb : 1;
+        int sBj = opB ? 1 : ldb;
+        int sCi = rowMajor ? ldc : 1;
+        int sCj = rowMajor ? 1 : ldc;
+        
+        // Decode op(B) once, as a dense K x N row-major matrix, and 
+        // each row of op(A) when it is used
+        float b[] = new float[K * N];
+        for (int p = 0; p < K; p++)
+        {
+            for (int j = 0; j < N; j++)
+            {
+                b[p * N + j] = format.decode(B[offB + p * sBp + j * sBj]);
+            }
+        }
+        float a[] = new float[K];
+        float sums[] = new float[N];
+        for (int i = 0; i < M; i++)
+        {
+            for (int p = 0; p < K; p++)
+            {
+                a[p] = format.decode(A[offA + i * sAi + p * sAp]);
+            }
+            for (int j = 0; j < N; j++)
+            {
+                sums[j] = 0.0f;
+            }
+            for (int p = 0; p < K; p++)
+            {
+                float ap = a[p];
+                int bp = p * N;
+                for (int j = 0; j < N; j++)
+                {
+                    sums[j] += ap * b[bp + j];
+                }
+            }
+            for (int j = 0; j < N; j++)
+            {
+                int c = offC + i * sCi + j * sCj;
+                C[c] = alpha * sums[j] + (beta == 0.0f ? 0.0f : beta * C[c]);
+            }
+        }
+    }
+    
+    /**
+     * Matrix-vector product y = alpha * op(A) * x + beta * y, where A is
+     * stored in the given format. See 
+     * {@link org.jocl.blas.CLBLAS#clblasSgemv} for the description of 
+     * the remaining parameters.
+     *
+     * @param format The {@link HalfFormat} of A
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param transA How matrix A is to be transposed
+     * @param M The number of rows of A
+     * @param N The number of columns of A
+     * @param alpha The factor of op(A)*x
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @param x The vector x
+     * @param offx The offset of x
+     * @param incx The increment of x
+     * @param beta The factor of y
+     * @param y The vector y
+     * @param offy The offset of y
+     * @param incy The increment of y
+     */
+    public static void sgemv(HalfFormat format, 
+        int order, int transA, int M, int N, float alpha, 
+        short A[], int offA, int lda, float x[], int offx, int incx, 
+        float beta, float y[], int offy, int incy)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        boolean opA = (transA == clblasNoTrans) == rowMajor;
+        int rows = transA == clblasNoTrans ? M : N;
+        int columns = transA == clblasNoTrans ? N : M;
+        int sAi = opA ? lda : 1;
+        int sAj = opA ? 1 : lda;
+        int x0 = incx >= 0 ? offx : offx - (columns - 1) * incx;
+        int y0 = incy >= 0 ? offy : offy - (rows - 1) * incy;
+        
+        // Decode each row in chunks, so that the decoding and the dot 
+        // product are two simple loops, instead of one loop that calls
+        // the format for each element
+        float row[] = new float[Math.min(columns, GEMV_CHUNK_SIZE)];
+        for (int i = 0; i < rows; i++)
+        {
+            int ai = offA + i * sAi;
+            float sum = 0.0f;
+            for (int j0 = 0; j0 < columns; j0 += row.length)
+            {
+                int n = Math.min(row.length, columns - j0);
+                if (sAj == 1)
+                {
+                    HalfConversions.decode(format, A, ai + j0, row, 0, n);
+                }
+                else
+                {
+                    for (int j = 0; j < n; j++)
+                    {
+                        row[j] = format.decode(A[ai + (j0 + j) * sAj]);
+                    }
+                }
+                sum += dot(row, n, x, x0 + j0 * incx, incx);
+            }
+            int iy = y0 + i * incy;
+            y[iy] = alpha * sum + (beta == 0.0f ? 0.0f : beta * y[iy]);
+        }
+    }
+
+    /**
+     * Computes the dot product of the first n elements of the given row
+     * and the given vector. The sum is split into four partial sums, so 
+     * that the additions do not form a single dependency chain.
+     * 
+     * @param row The row
+     * @param n The number of elements
+     * @param x The vector
+     * @param offx The index of the first element of the vector
+     * @param incx The increment of the vector
+     * @return The dot product
+     */
+    private static float dot(float row[], int n, 
+        float x[], int offx, int incx)
+    {
+        float s0 = 0.0f;
+        float s1 = 0.0f;
+        float s2 = 0.0f;
+        float s3 = 0.0f;
+        int j = 0;
+        if (incx == 1)
+        {
+            for (; j + 3 < n; j += 4)
+            {
+                s0 += row[j] * x[offx + j];
+                s1 += row[j + 1] * x[offx + j + 1];
+                s2 += row[j + 2] * x[offx + j + 2];
+                s3 += row[j + 3] * x[offx + j + 3];
+            }
+        }
+        for (; j < n; j++)
+        {
+            s0 += row[j] * x[offx + j * incx];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private HostMixedPrecisionBLAS()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
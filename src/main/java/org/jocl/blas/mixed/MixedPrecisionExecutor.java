@@ -0,0 +1,339 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.mixed;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+
+import org.jocl.CLException;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.kernel.CachedKernel;
+import org.jocl.blas.kernel.KernelCache;
+
+/**
+ * An executor for mixed-precision matrix products on an OpenCL device.
+ * <br>
+ * <br>
+ * The matrices A and B are stored in <code>cl_mem</code> objects in a 
+ * {@link HalfFormat}, and all vectors and the matrix C are stored as 
+ * floats. The elements of A and B are converted to float when they are 
+ * loaded, and all products are accumulated in float precision. 
+ * Compared to {@link org.jocl.blas.CLBLAS#clblasSgemv}, this halves the 
+ * memory traffic of the matrix, which dominates the run time of 
+ * matrix-vector products. <br>
+ * <br>
+ * The parameters follow the conventions of 
+ * {@link org.jocl.blas.CLBLAS}, with offsets and leading dimensions 
+ * given in elements. The kernels are generated for each format, and 
+ * obtained from a {@link KernelCache}. <br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class MixedPrecisionExecutor
+{
+    /**
+     * The name of the matrix-matrix product kernel
+     */
+    static final String GEMM_KERNEL_NAME = "mixedGemm";
+    
+    /**
+     * The name of the matrix-vector product kernel
+     */
+    static final String GEMV_KERNEL_NAME = "mixedGemv";
+    
+    /**
+     * The size of the tiles of the matrix-matrix product
+     */
+    private static final int TILE_SIZE = 16;
+    
+    /**
+     * The work group size of the matrix-vector product, where one work 
+     * group computes one element of the result
+     */
+    private static final int GROUP_SIZE = 
+        CachedKernel.DEFAULT_LOCAL_WORK_SIZE;
+    
+    /**
+     * The context
+     */
+    private final cl_context context;
+    
+    /**
+     * The kernel cache
+     */
+    private final KernelCache kernelCache;
+    
+    /**
+     * Creates a new executor for the given context, using the shared
+     * {@link KernelCache#getInstance() kernel cache}
+     * 
+     * @param context The context
+     */
+    public MixedPrecisionExecutor(cl_context context)
+    {
+        this(context, KernelCache.getInstance());
+    }
+
+    /**
+     * Creates a new executor for the given context, using the given 
+     * kernel cache
+     * 
+     * @param context The context
+     * @param kernelCache The kernel cache
+     */
+    public MixedPrecisionExecutor(cl_context context, 
+        KernelCache kernelCache)
+    {
+        this.context = context;
+        this.kernelCache = kernelCache;
+    }
+    
+    /**
+     * Enqueue the matrix-matrix product C = alpha * op(A) * op(B) + 
+     * beta * C, where A and B are stored in the given format. See 
+     * {@link HostMixedPrecisionBLAS#sgemm}.
+     * 
+     * @param commandQueue The command queue
+     * @param format The {@link HalfFormat} of A and B
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param transA How matrix A is to be transposed
+     * @param transB How matrix B is to be transposed
+     * @param M The number of rows of op(A) and C
+     * @param N The number of columns of op(B) and C
+     * @param K The number of columns of op(A) and rows of op(B)
+     * @param alpha The factor of op(A)*op(B)
+     * @param A The matrix A
+     * @param offA The offset of A, in elements
+     * @param lda The leading dimension of A
+     * @param B The matrix B
+     * @param offB The offset of B, in elements
+     * @param ldb The leading dimension of B
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C, in elements
+     * @param ldc The leading dimension of C
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the completion of the product. May be 
+     * <code>null</code>.
+     * @return The OpenCL status
+     * @throws CLException If the kernel can not be compiled
+     */
+    public int sgemm(cl_command_queue commandQueue, HalfFormat format, 
+        int order, int transA, int transB, long M, long N, long K, 
+        float alpha, cl_mem A, long offA, long lda, 
+        cl_mem B, long offB, long ldb, float beta, 
+        cl_mem C, long offC, long ldc, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        boolean opA = (transA == clblasNoTrans) == rowMajor;
+        boolean opB = (transB == clblasNoTrans) == rowMajor;
+        int sAi = (int)(opA ? lda : 1);
+        int sAp = (int)(opA ? 1 : lda);
+        int sBp = (int)(opB ? ldb : 1);
+        int sBj = (int)(opB ? 1 : ldb);
+        int sCi = (int)(rowMajor ? ldc : 1);
+        int sCj = (int)(rowMajor ? 1 : ldc);
+        CachedKernel kernel = kernelCache.getKernel(
+            context, createKernelSource(format), GEMM_KERNEL_NAME);
+        long globalWorkSize[] = {
+            CachedKernel.roundUp(Math.max(N, 1), TILE_SIZE),
+            CachedKernel.roundUp(Math.max(M, 1), TILE_SIZE)
+        };
+        long localWorkSize[] = { TILE_SIZE, TILE_SIZE };
+        return kernel.enqueue(commandQueue, globalWorkSize, localWorkSize, 
+            numEventsInWaitList, eventWaitList, event, 
+            (int)M, (int)N, (int)K, alpha, A, offA, sAi, sAp, 
+            B, offB, sBp, sBj, beta, C, offC, sCi, sCj);
+    }
+    
+    /**
+     * Enqueue the matrix-vector product y = alpha * op(A) * x + 
+     * beta * y, where A is stored in the given format. See
+     * {@link HostMixedPrecisionBLAS#sgemv}.
+     * 
+     * @param commandQueue The command queue
+     * @param format The {@link HalfFormat} of A
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param transA How matrix A is to be transposed
+     * @param M The number of rows of A
+     * @param N The number of columns of A
+     * @param alpha The factor of op(A)*x
+     * @param A The matrix A
+     * @param offA The offset of A, in elements
+     * @param lda The leading dimension of A
+     * @param x The vector x
+     * @param offx The offset of x, in elements
+     * @param incx The increment of x
+     * @param beta The factor of y
+     * @param y The vector y
+     * @param offy The offset of y, in elements
+     * @param incy The increment of y
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the completion of the product. May be 
+     * <code>null</code>.
+     * @return The OpenCL status
+     * @throws CLException If the kernel can not be compiled
+     */
+    public int sgemv(cl_command_queue commandQueue, HalfFormat format, 
+        int order, int transA, long M, long N, float alpha, 
+        cl_mem A, long offA, long lda, cl_mem x, long offx, int incx, 
+        float beta, cl_mem y, long offy, int incy, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        boolean opA = (transA == clblasNoTrans) == rowMajor;
+        long rows = transA == clblasNoTrans ? M : N;
+        long columns = transA == clblasNoTrans ? N : M;
+        int sAi = (int)(opA ? lda : 1);
+        int sAj = (int)(opA ? 1 : lda);
+        long x0 = incx >= 0 ? offx : offx - (columns - 1) * incx;
+        long y0 = incy >= 0 ? offy : offy - (rows - 1) * incy;
+        CachedKernel kernel = kernelCache.getKernel(
+            context, createKernelSource(format), GEMV_KERNEL_NAME);
+        return kernel.enqueue(commandQueue, 
+            new long[] { Math.max(rows, 1) * GROUP_SIZE }, 
+            new long[] { GROUP_SIZE }, 
+            numEventsInWaitList, eventWaitList, event, 
+            (int)rows, (int)columns, alpha, A, offA, sAi, sAj, 
+            x, x0, incx, beta, y, y0, incy);
+    }
+    
+    /**
+     * Creates the source code of the kernels for the given format
+     * 
+     * @param format The {@link HalfFormat}
+     * @return The source code
+     */
+    static String createKernelSource(HalfFormat format)
+    {
+        String type = format.getPointerType();
+        StringBuilder sb = new StringBuilder();
+        sb.append("#define TILE_SIZE ").append(TILE_SIZE).append("\n");
+        sb.append("#define GROUP_SIZE ").append(GROUP_SIZE).append("\n");
+        sb.append("\n");
+        sb.append("__kernel __attribute__((reqd_work_group_size(");
+        sb.append("TILE_SIZE, TILE_SIZE, 1)))\n");
+        sb.append("void ").append(GEMM_KERNEL_NAME).append("(\n");
+        sb.append("    const int M, const int N, const int K,\n");
+        sb.append("    const float alpha,\n");
+        sb.append("    __global const ").append(type).append(" *A, ");
+        sb.append("const long offA, const int sAi, const int sAp,\n");
+        sb.append("    __global const ").append(type).append(" *B, ");
+        sb.append("const long offB, const int sBp, const int sBj,\n");
+        sb.append("    const float beta,\n");
+        sb.append("    __global float *C, ");
+        sb.append("const long offC, const int sCi, const int sCj)\n");
+        sb.append("{\n");
+        sb.append("    __local float tileA[TILE_SIZE][TILE_SIZE + 1];\n");
+        sb.append("    __local float tileB[TILE_SIZE][TILE_SIZE + 1];\n");
+        sb.append("    const int lj = get_local_id(0);\n");
+        sb.append("    const int li = get_local_id(1);\n");
+        sb.append("    const int j = get_global_id(0);\n");
+        sb.append("    const int i = get_global_id(1);\n");
+        sb.append("    float sum = 0.0f;\n");
+        sb.append("    for (int p0 = 0; p0 < K; p0 += TILE_SIZE)\n");
+        sb.append("    {\n");
+        sb.append("        const int pa = p0 + lj;\n");
+        sb.append("        const int pb = p0 + li;\n");
+        sb.append("        tileA[li][lj] = (i < M && pa < K) ? ");
+        sb.append(format.toOpenCL("A", 
+            "offA + (long)i * sAi + (long)pa * sAp"));
+        sb.append(" : 0.0f;\n");
+        sb.append("        tileB[li][lj] = (pb < K && j < N) ? ");
+        sb.append(format.toOpenCL("B", 
+            "offB + (long)pb * sBp + (long)j * sBj"));
+        sb.append(" : 0.0f;\n");
+        sb.append("        barrier(CLK_LOCAL_MEM_FENCE);\n");
+        sb.append("        for (int p = 0; p < TILE_SIZE; p++)\n");
+        sb.append("        {\n");
+        sb.append("            sum += tileA[li][p] * tileB[p][lj];\n");
+        sb.append("        }\n");
+        sb.append("        barrier(CLK_LOCAL_MEM_FENCE);\n");
+        sb.append("    }\n");
+        sb.append("    if (i < M && j < N)\n");
+        sb.append("    {\n");
+        sb.append("        const long ic = offC + (long)i * sCi + ");
+        sb.append("(long)j * sCj;\n");
+        sb.append("        C[ic] = alpha * sum + ");
+        sb.append("(beta == 0.0f ? 0.0f : beta * C[ic]);\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        sb.append("\n");
+        sb.append("__kernel __attribute__((reqd_work_group_size(");
+        sb.append("GROUP_SIZE, 1, 1)))\n");
+        sb.append("void ").append(GEMV_KERNEL_NAME).append("(\n");
+        sb.append("    const int rows, const int columns,\n");
+        sb.append("    const float alpha,\n");
+        sb.append("    __global const ").append(type).append(" *A, ");
+        sb.append("const long offA, const int sAi, const int sAj,\n");
+        sb.append("    __global const float *x, ");
+        sb.append("const long offx, const int incx,\n");
+        sb.append("    const float beta,\n");
+        sb.append("    __global float *y, ");
+        sb.append("const long offy, const int incy)\n");
+        sb.append("{\n");
+        sb.append("    __local float partial[GROUP_SIZE];\n");
+        sb.append("    const int i = get_group_id(0);\n");
+        sb.append("    const int lane = get_local_id(0);\n");
+        sb.append("    float sum = 0.0f;\n");
+        sb.append("    if (i < rows)\n");
+        sb.append("    {\n");
+        sb.append("        const long ai = offA + (long)i * sAi;\n");
+        sb.append("        for (int j = lane; j < columns; ");
+        sb.append("j += GROUP_SIZE)\n");
+        sb.append("        {\n");
+        sb.append("            sum += ");
+        sb.append(format.toOpenCL("A", "ai + (long)j * sAj"));
+        sb.append(" * x[offx + (long)j * incx];\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+        sb.append("    partial[lane] = sum;\n");
+        sb.append("    barrier(CLK_LOCAL_MEM_FENCE);\n");
+        sb.append("    for (int s = GROUP_SIZE / 2; s > 0; s >>= 1)\n");
+        sb.append("    {\n");
+        sb.append("        if (lane < s)\n");
+        sb.append("        {\n");
+        sb.append("            partial[lane] += partial[lane + s];\n");
+        sb.append("        }\n");
+        sb.append("        barrier(CLK_LOCAL_MEM_FENCE);\n");
+        sb.append("    }\n");
+        sb.append("    if (lane == 0 && i < rows)\n");
+        sb.append("    {\n");
+        sb.append("        const long iy = offy + (long)i * incy;\n");
+        sb.append("        y[iy] = alpha * partial[0] + ");
+        sb.append("(beta == 0.0f ? 0.0f : beta * y[iy]);\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+}
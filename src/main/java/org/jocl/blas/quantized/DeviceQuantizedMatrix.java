@@ -0,0 +1,320 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.quantized;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.Pointer;
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_mem;
+import org.jocl.blas.CLBLAS;
+
+/**
+ * A {@link QuantizedMatrix} in device memory. <br>
+ * <br>
+ * The quantized values are stored in row-major order, in a memory 
+ * object that is created with {@link CLBLAS#clblasCreateMatrixFromHost},
+ * with one byte per element, and a leading dimension that is computed
+ * with {@link CLBLAS#clblasMatrixSizeInfo} from an optional padding. 
+ * The scales and zero points are stored in separate memory objects.
+ */
+public final class DeviceQuantizedMatrix
+{
+    /**
+     * The number of rows
+     */
+    private final int rows;
+    
+    /**
+     * The number of columns
+     */
+    private final int columns;
+    
+    /**
+     * The leading dimension of the data, in elements
+     */
+    private final long ld;
+    
+    /**
+     * The quantized values
+     */
+    private final cl_mem data;
+    
+    /**
+     * The scales
+     */
+    private final cl_mem scales;
+    
+    /**
+     * The zero points
+     */
+    private final cl_mem zeroPoints;
+    
+    /**
+     * Creates a new device quantized matrix
+     * 
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param ld The leading dimension of the data
+     * @param data The quantized values
+     * @param scales The scales
+     * @param zeroPoints The zero points
+     */
+    private DeviceQuantizedMatrix(int rows, int columns, long ld, 
+        cl_mem data, cl_mem scales, cl_mem zeroPoints)
+    {
+        this.rows = rows;
+        this.columns = columns;
+        this.ld = ld;
+        this.data = data;
+        this.scales = scales;
+        this.zeroPoints = zeroPoints;
+    }
+    
+    /**
+     * Creates a device quantized matrix for the given matrix, without
+     * padding of the rows
+     * 
+     * @param context The context
+     * @param commandQueue The command queue for the transfer of the data
+     * @param matrix The matrix
+     * @return The device quantized matrix
+     * @throws CLException If the memory objects can not be created
+     */
+    public static DeviceQuantizedMatrix create(cl_context context, 
+        cl_command_queue commandQueue, QuantizedMatrix matrix)
+    {
+        return create(context, commandQueue, matrix, 0);
+    }
+    
+    /**
+     * Creates a device quantized matrix for the given matrix. The 
+     * leading dimension of the data is the number of columns, plus the 
+     * given padding, as computed by {@link CLBLAS#clblasMatrixSizeInfo}.
+     * The transfer of the data is complete when this method returns.
+     * For a matrix without rows or columns, nothing is transferred.
+     * 
+     * @param context The context
+     * @param commandQueue The command queue for the transfer of the data
+     * @param matrix The matrix
+     * @param padding The additional padding of each row, in elements
+     * @return The device quantized matrix
+     * @throws CLException If the memory objects can not be created
+     */
+    public static DeviceQuantizedMatrix create(cl_context context, 
+        cl_command_queue commandQueue, QuantizedMatrix matrix, 
+        long padding)
+    {
+        int rows = matrix.getRows();
+        int columns = matrix.getColumns();
+        long ld[] = { 0 };
+        long fullsize[] = { 0 };
+        CLBLAS.clblasMatrixSizeInfo(clblasRowMajor, 
+            Math.max(rows, 1), Math.max(columns, 1), 
+            Sizeof.cl_char, padding, ld, fullsize);
+        int errcode[] = { 0 };
+        cl_mem dataMem = null;
+        if (rows == 0 || columns == 0)
+        {
+            // There are no values to upload, but the memory object can 
+            // not be empty
+            dataMem = CL.clCreateBuffer(context, CL.CL_MEM_READ_ONLY, 
+                fullsize[0], null, errcode);
+            check(errcode[0], "clCreateBuffer");
+        }
+        else
+        {
+            dataMem = CLBLAS.clblasCreateMatrixFromHost(context, 
+                clblasRowMajor, rows, columns, Sizeof.cl_char, ld[0], 
+                Pointer.to(matrix.data), 0, columns, commandQueue, 
+                0, null, errcode);
+            check(errcode[0], "clblasCreateMatrixFromHost");
+        }
+        cl_mem scales = null;
+        try
+        {
+            scales = createBuffer(context, 
+                Pointer.to(nonEmpty(matrix.scales)), 
+                rows * Sizeof.cl_float);
+            cl_mem zeroPoints = createBuffer(context, 
+                Pointer.to(nonEmpty(matrix.zeroPoints)), 
+                rows * Sizeof.cl_int);
+            return new DeviceQuantizedMatrix(rows, columns, ld[0], 
+                dataMem, scales, zeroPoints);
+        }
+        catch (CLException e)
+        {
+            CL.clReleaseMemObject(dataMem);
+            if (scales != null)
+            {
+                CL.clReleaseMemObject(scales);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Returns the number of rows
+     * 
+     * @return The number of rows
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+    
+    /**
+     * Returns the number of columns
+     * 
+     * @return The number of columns
+     */
+    public int getColumns()
+    {
+        return columns;
+    }
+    
+    /**
+     * Returns the leading dimension of the quantized values
+     * 
+     * @return The leading dimension
+     */
+    public long getLd()
+    {
+        return ld;
+    }
+    
+    /**
+     * Returns the quantized values
+     * 
+     * @return The quantized values
+     */
+    cl_mem getData()
+    {
+        return data;
+    }
+    
+    /**
+     * Returns the scales
+     * 
+     * @return The scales
+     */
+    cl_mem getScales()
+    {
+        return scales;
+    }
+    
+    /**
+     * Returns the zero points
+     * 
+     * @return The zero points
+     */
+    cl_mem getZeroPoints()
+    {
+        return zeroPoints;
+    }
+    
+    /**
+     * Release the memory objects of this matrix
+     */
+    public void release()
+    {
+        CL.clReleaseMemObject(data);
+        CL.clReleaseMemObject(scales);
+        CL.clReleaseMemObject(zeroPoints);
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "DeviceQuantizedMatrix[" + rows + "x" + columns + 
+            ", ld=" + ld + "]";
+    }
+    
+    /**
+     * Returns the given array, or an array with one element if the
+     * given array is empty, because memory objects can not be empty
+     * 
+     * @param array The array
+     * @return The non-empty array
+     */
+    private static int[] nonEmpty(int array[])
+    {
+        return array.length == 0 ? new int[1] : array;
+    }
+
+    /**
+     * Returns the given array, or an array with one element if the
+     * given array is empty, because memory objects can not be empty
+     * 
+     * @param array The array
+     * @return The non-empty array
+     */
+    private static float[] nonEmpty(float array[])
+    {
+        return array.length == 0 ? new float[1] : array;
+    }
+    
+    /**
+     * Creates a read-only buffer that is initialized with the given data
+     * 
+     * @param context The context
+     * @param data The data
+     * @param size The size in bytes
+     * @return The buffer
+     * @throws CLException If the buffer can not be created
+     */
+    private static cl_mem createBuffer(cl_context context, 
+        Pointer data, long size)
+    {
+        int errcode[] = { 0 };
+        cl_mem buffer = CL.clCreateBuffer(context, 
+            CL.CL_MEM_READ_ONLY | CL.CL_MEM_COPY_HOST_PTR, 
+            Math.max(size, Sizeof.cl_int), data, errcode);
+        check(errcode[0], "clCreateBuffer");
+        return buffer;
+    }
+    
+    /**
+     * Throws a CLException if the given error code is not CL_SUCCESS
+     * 
+     * @param errcode The error code
+     * @param name The name of the function
+     * @throws CLException If the error code is not CL_SUCCESS
+     */
+    private static void check(int errcode, String name)
+    {
+        if (errcode != CL.CL_SUCCESS)
+        {
+            throw new CLException(name + " failed: " + 
+                CL.stringFor_errorCode(errcode), errcode);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.quantized;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+
+/**
+ * Host implementations of products of a {@link QuantizedMatrix} with 
+ * float vectors and matrices. <br>
+ * <br>
+ * The float operands are quantized symmetrically, per vector and per 
+ * column, with {@link Int8Quantization#quantizeSymmetric}. The products 
+ * of the 8-bit integers are accumulated in 32-bit integers, and only 
+ * the accumulated sums are dequantized into the float results. The 
+ * results are thus the exact products of the dequantized operands, up
+ * to the rounding of the final float operations. <br>
+ * <br>
+ * The parameters follow the conventions of 
+ * {@link org.jocl.blas.host.HostBLAS}. The number of columns of the 
+ * quantized matrix may not exceed {@link #MAX_INNER_DIMENSION}, so that
+ * the sums can not overflow.
+ */
+public final class HostQuantizedBLAS
+{
+    /**
+     * The maximum number of columns of the quantized matrix. Each 
+     * product of a weight and an activation has an absolute value of 
+     * at most 128 * 127, so that 65536 products can be accumulated 
+     * without overflow.
+     */
+    public static final int MAX_INNER_DIMENSION = 1 << 16;
+    
+    /**
+     * Matrix-vector product y = alpha * A * x + beta * y, where A is a
+     * quantized matrix
+     * 
+     * @param alpha The factor of A*x
+     * @param A The quantized matrix
+     * @param x The vector x, with A.getColumns() elements
+     * @param offx The offset of x
+     * @param incx The increment of x
+     * @param beta The factor of y
+     * @param y The vector y, with A.getRows() elements
+     * @param offy The offset of y
+     * @param incy The increment of y
+     * @throws IllegalArgumentException If the matrix has more than
+     * {@link #MAX_INNER_DIMENSION} columns
+     */
+    public static void sgemv(float alpha, QuantizedMatrix A, 
+        float x[], int offx, int incx, 
+        float beta, float y[], int offy, int incy)
+    {
+        int M = A.getRows();
+        int K = checkInnerDimension(A);
+        byte qx[] = new byte[K];
+        float scaleX = Int8Quantization.quantizeSymmetric(
+            K, x, offx, incx, qx, 0);
+        int sumX = sum(qx, 0, K);
+        int y0 = incy >= 0 ? offy : offy - (M - 1) * incy;
+        for (int i = 0; i < M; i++)
+        {
+            int acc = dot(A.data, i * K, qx, 0, K) - A.zeroPoints[i] * sumX;
+            int iy = y0 + i * incy;
+            y[iy] = alpha * A.scales[i] * scaleX * acc + 
+                (beta == 0.0f ? 0.0f : beta * y[iy]);
+        }
+    }
+    
+    /**
+     * Matrix-matrix product C = alpha * A * op(B) + beta * C, where A is
+     * a quantized M x K matrix, with M = A.getRows() and 
+     * K = A.getColumns()
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder} of B and C
+     * @param transB How matrix B is to be transposed
+     * @param N The number of columns of op(B) and C
+     * @param alpha The factor of A*op(B)
+     * @param A The quantized matrix
+     * @param B The matrix B
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     * @throws IllegalArgumentException If the matrix has more than
+     * {@link #MAX_INNER_DIMENSION} columns
+     */
+    public static void sgemm(int order, int transB, int N, 
+        float alpha, QuantizedMatrix A, float B[], int offB, int ldb, 
+        float beta, float C[], int offC, int ldc)
+    {
+        int M = A.getRows();
+        int K = checkInnerDimension(A);
+        boolean rowMajor = order == clblasRowMajor;
+        boolean opB = (transB == clblasNoTrans) == rowMajor;
+        int sBp = opB ? ldb : 1;
+        int sBj = opB ? 1 : ldb;
+        int sCi = rowMajor ? ldc : 1;
+        int sCj = rowMajor ? 1 : ldc;
+        
+        // Quantize each column of op(B) into a contiguous block
+        byte qB[] = new byte[K * N];
+        float scalesB[] = new float[N];
+        int sumsB[] = new int[N];
+        for (int j = 0; j < N; j++)
+        {
+            scalesB[j] = Int8Quantization.quantizeSymmetric(
+                K, B, offB + j * sBj, sBp, qB, j * K);
+            sumsB[j] = sum(qB, j * K, K);
+        }
+        for (int i = 0; i < M; i++)
+        {
+            float scaleA = alpha * A.scales[i];
+            int zeroPointA = A.zeroPoints[i];
+            for (int j = 0; j < N; j++)
+            {
+                int acc = dot(A.data, i * K, qB, j * K, K) - 
+                    zeroPointA * sumsB[j];
+                int ic = offC + i * sCi + j * sCj;
+                C[ic] = scaleA * scalesB[j] * acc + 
+                    (beta == 0.0f ? 0.0f : beta * C[ic]);
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of columns of the given matrix
+     * 
+     * @param A The matrix
+     * @return The number of columns
+     * @throws IllegalArgumentException If the matrix has more than
+     * {@link #MAX_INNER_DIMENSION} columns
+     */
+    static int checkInnerDimension(QuantizedMatrix A)
+    {
+        int K = A.getColumns();
+        if (K > MAX_INNER_DIMENSION)
+        {
+            throw new IllegalArgumentException("The matrix has " + K + 
+                " columns, but at most " + MAX_INNER_DIMENSION + 
+                " are supported");
+        }
+        return K;
+    }
+    
+    /**
+     * Computes the dot product of the given ranges of the given arrays
+     * 
+     * @param a The first array
+     * @param offa The offset in the first array
+     * @param b The second array
+     * @param offb The offset in the second array
+     * @param n The number of elements
+     * @return The dot product
+     */
+    private static int dot(byte a[], int offa, byte b[], int offb, int n)
+    {
+        int sum = 0;
+        for (int k = 0; k < n; k++)
+        {
+            sum += a[offa + k] * b[offb + k];
+        }
+        return sum;
+    }
+    
+    /**
+     * Computes the sum of the given range of the given array
+     * 
+     * @param a The array
+     * @param off The offset
+     * @param n The number of elements
+     * @return The sum
+     */
+    private static int sum(byte a[], int off, int n)
+    {
+        int sum = 0;
+        for (int k = 0; k < n; k++)
+        {
+            sum += a[off + k];
+        }
+        return sum;
+    }
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private HostQuantizedBLAS()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.quantized;
+
+/**
+ * Methods for the quantization of float values to 8-bit integers, and
+ * the dequantization of 8-bit integers to float values. <br>
+ * <br>
+ * A value x is quantized with a scale s and a zero point z to the 
+ * integer q = clamp(rint(x / s) + z, -128, 127), and dequantized to 
+ * (q - z) * s. Rounding is to the nearest integer, with ties to even, 
+ * which is the rounding of the OpenCL <code>rint</code> function. <br>
+ * <br>
+ * Weights are quantized asymmetrically, with a scale and zero point 
+ * for each row, so that the full range of the row is covered by the 
+ * 256 integer values. Activations are quantized symmetrically, with a 
+ * zero point of 0, to the range [-127, 127].
+ */
+public final class Int8Quantization
+{
+    /**
+     * The smallest quantized value
+     */
+    public static final int MIN_VALUE = -128;
+    
+    /**
+     * The largest quantized value
+     */
+    public static final int MAX_VALUE = 127;
+    
+    /**
+     * Quantizes the given value
+     * 
+     * @param value The value
+     * @param scale The scale
+     * @param zeroPoint The zero point
+     * @return The quantized value
+     */
+    public static byte quantize(float value, float scale, int zeroPoint)
+    {
+        double q = Math.rint(value / scale) + zeroPoint;
+        return (byte)Math.max(MIN_VALUE, Math.min(MAX_VALUE, q));
+    }
+    
+    /**
+     * Dequantizes the given value
+     * 
+     * @param value The quantized value
+     * @param scale The scale
+     * @param zeroPoint The zero point
+     * @return The value
+     */
+    public static float dequantize(byte value, float scale, int zeroPoint)
+    {
+        return (value - zeroPoint) * scale;
+    }
+    
+    /**
+     * Computes the scale for the asymmetric quantization of values in 
+     * the given range. The range is extended to contain 0, so that 0 
+     * is represented exactly.
+     * 
+     * @param min The minimum value
+     * @param max The maximum value
+     * @return The scale
+     */
+    public static float computeScale(float min, float max)
+    {
+        float range = Math.max(max, 0.0f) - Math.min(min, 0.0f);
+        return range > 0.0f ? range / (MAX_VALUE - MIN_VALUE) : 1.0f;
+    }
+    
+    /**
+     * Computes the zero point for the asymmetric quantization of values 
+     * in the given range with the given scale
+     * 
+     * @param min The minimum value
+     * @param scale The scale
+     * @return The zero point
+     */
+    public static int computeZeroPoint(float min, float scale)
+    {
+        double zeroPoint = MIN_VALUE - Math.rint(Math.min(min, 0.0f) / scale);
+        return (int)Math.max(MIN_VALUE, Math.min(MAX_VALUE, zeroPoint));
+    }
+    
+    /**
+     * Quantizes the given vector symmetrically, with a zero point of 0
+     * and a scale that maps the largest absolute value to 127, and 
+     * writes the quantized values contiguously into the destination. 
+     * A negative increment denotes a vector that is stored in reverse 
+     * order, as in {@link org.jocl.blas.CLBLAS}.
+     * 
+     * @param n The number of elements
+     * @param x The vector
+     * @param offx The offset of the vector
+     * @param incx The increment of the vector
+     * @param dst The destination
+     * @param dstOff The offset in the destination
+     * @return The scale
+     */
+    public static float quantizeSymmetric(int n, 
+        float x[], int offx, int incx, byte dst[], int dstOff)
+    {
+        int x0 = incx >= 0 ? offx : offx - (n - 1) * incx;
+        float max = 0.0f;
+        for (int j = 0; j < n; j++)
+        {
+            max = Math.max(max, Math.abs(x[x0 + j * incx]));
+        }
+        float scale = max > 0.0f ? max / MAX_VALUE : 1.0f;
+        for (int j = 0; j < n; j++)
+        {
+            double q = Math.rint(x[x0 + j * incx] / scale);
+            dst[dstOff + j] = (byte)Math.max(-MAX_VALUE, 
+                Math.min(MAX_VALUE, q));
+        }
+        return scale;
+    }
+    
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private Int8Quantization()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
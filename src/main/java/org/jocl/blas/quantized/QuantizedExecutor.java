@@ -0,0 +1,534 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.quantized;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.kernel.CachedKernel;
+import org.jocl.blas.kernel.KernelCache;
+
+/**
+ * An executor for products of a {@link DeviceQuantizedMatrix} with 
+ * float vectors and matrices on an OpenCL device. <br>
+ * <br>
+ * The results are the same as those of {@link HostQuantizedBLAS}: 
+ * The float operand is quantized symmetrically per column by one 
+ * kernel, and a second kernel accumulates the products of the 8-bit 
+ * integers in 32-bit integers, and dequantizes the sums into the float
+ * result. The quantized operand is stored in temporary memory objects 
+ * that are released when the kernels are enqueued, which is valid 
+ * because OpenCL only deletes them after the kernels completed. <br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class QuantizedExecutor
+{
+    /**
+     * The source code of the kernels
+     */
+    private static final String KERNEL_SOURCE = 
+        "#define TILE_SIZE 16\n" +
+        "#define GROUP_SIZE " + CachedKernel.DEFAULT_LOCAL_WORK_SIZE + "\n" +
+        "\n" +
+        "__kernel __attribute__((reqd_work_group_size(GROUP_SIZE, 1, 1)))\n" +
+        "void quantizeColumns(const int K,\n" +
+        "    __global const float *B, const long offB, " +
+        "const int sBp, const int sBj,\n" +
+        "    __global char *qB, __global float *scalesB, " +
+        "__global int *sumsB)\n" +
+        "{\n" +
+        "    __local float maxima[GROUP_SIZE];\n" +
+        "    __local int sums[GROUP_SIZE];\n" +
+        "    const int j = get_group_id(0);\n" +
+        "    const int lane = get_local_id(0);\n" +
+        "    const long bj = offB + (long)j * sBj;\n" +
+        "    float m = 0.0f;\n" +
+        "    for (int p = lane; p < K; p += GROUP_SIZE)\n" +
+        "    {\n" +
+        "        m = fmax(m, fabs(B[bj + (long)p * sBp]));\n" +
+        "    }\n" +
+        "    maxima[lane] = m;\n" +
+        "    barrier(CLK_LOCAL_MEM_FENCE);\n" +
+        "    for (int s = GROUP_SIZE / 2; s > 0; s >>= 1)\n" +
+        "    {\n" +
+        "        if (lane < s)\n" +
+        "        {\n" +
+        "            maxima[lane] = fmax(maxima[lane], maxima[lane + s]);\n" +
+        "        }\n" +
+        "        barrier(CLK_LOCAL_MEM_FENCE);\n" +
+        "    }\n" +
+        "    const float scale = maxima[0] > 0.0f ? " +
+        "maxima[0] / 127.0f : 1.0f;\n" +
+        "    int sum = 0;\n" +
+        "    for (int p = lane; p < K; p += GROUP_SIZE)\n" +
+        "    {\n" +
+        "        const int q = (int)clamp(" +
+        "rint(B[bj + (long)p * sBp] / scale), -127.0f, 127.0f);\n" +
+        "        qB[(long)j * K + p] = (char)q;\n" +
+        "        sum += q;\n" +
+        "    }\n" +
+        "    sums[lane] = sum;\n" +
+        "    barrier(CLK_LOCAL_MEM_FENCE);\n" +
+        "    for (int s = GROUP_SIZE / 2; s > 0; s >>= 1)\n" +
+        "    {\n" +
+        "        if (lane < s)\n" +
+        "        {\n" +
+        "            sums[lane] += sums[lane + s];\n" +
+        "        }\n" +
+        "        barrier(CLK_LOCAL_MEM_FENCE);\n" +
+        "    }\n" +
+        "    if (lane == 0)\n" +
+        "    {\n" +
+        "        scalesB[j] = scale;\n" +
+        "        sumsB[j] = sums[0];\n" +
+        "    }\n" +
+        "}\n" +
+        "\n" +
+        "__kernel __attribute__((reqd_work_group_size(GROUP_SIZE, 1, 1)))\n" +
+        "void int8Gemv(const int M, const int K, const float alpha,\n" +
+        "    __global const char *A, const long ldA,\n" +
+        "    __global const float *scalesA, " +
+        "__global const int *zeroPointsA,\n" +
+        "    __global const char *qx, __global const float *scalesX, " +
+        "__global const int *sumsX,\n" +
+        "    const float beta, __global float *y, " +
+        "const long offy, const int incy)\n" +
+        "{\n" +
+        "    __local int partial[GROUP_SIZE];\n" +
+        "    const int i = get_group_id(0);\n" +
+        "    const int lane = get_local_id(0);\n" +
+        "    const long ai = (long)i * ldA;\n" +
+        "    int acc = 0;\n" +
+        "    for (int p = lane; p < K; p += GROUP_SIZE)\n" +
+        "    {\n" +
+        "        acc += A[ai + p] * qx[p];\n" +
+        "    }\n" +
+        "    partial[lane] = acc;\n" +
+        "    barrier(CLK_LOCAL_MEM_FENCE);\n" +
+        "    for (int s = GROUP_SIZE / 2; s > 0; s >>= 1)\n" +
+        "    {\n" +
+        "        if (lane < s)\n" +
+        "        {\n" +
+        "            partial[lane] += partial[lane + s];\n" +
+        "        }\n" +
+        "        barrier(CLK_LOCAL_MEM_FENCE);\n" +
+        "    }\n" +
+        "    if (lane == 0)\n" +
+        "    {\n" +
+        "        const int sum = partial[0] - zeroPointsA[i] * sumsX[0];\n" +
+        "        const long iy = offy + (long)i * incy;\n" +
+        "        y[iy] = alpha * scalesA[i] * scalesX[0] * (float)sum + " +
+        "(beta == 0.0f ? 0.0f : beta * y[iy]);\n" +
+        "    }\n" +
+        "}\n" +
+        "\n" +
+        "__kernel __attribute__((" +
+        "reqd_work_group_size(TILE_SIZE, TILE_SIZE, 1)))\n" +
+        "void int8Gemm(const int M, const int N, const int K, " +
+        "const float alpha,\n" +
+        "    __global const char *A, const long ldA,\n" +
+        "    __global const float *scalesA, " +
+        "__global const int *zeroPointsA,\n" +
+        "    __global const char *qB, __global const float *scalesB, " +
+        "__global const int *sumsB,\n" +
+        "    const float beta, __global float *C, const long offC, " +
+        "const int sCi, const int sCj)\n" +
+        "{\n" +
+        "    __local int tileA[TILE_SIZE][TILE_SIZE + 1];\n" +
+        "    __local int tileB[TILE_SIZE][TILE_SIZE + 1];\n" +
+        "    const int lj = get_local_id(0);\n" +
+        "    const int li = get_local_id(1);\n" +
+        "    const int j = get_global_id(0);\n" +
+        "    const int i = get_global_id(1);\n" +
+        "    const int jb = get_group_id(0) * TILE_SIZE + li;\n" +
+        "    int acc = 0;\n" +
+        "    for (int p0 = 0; p0 < K; p0 += TILE_SIZE)\n" +
+        "    {\n" +
+        "        const int p = p0 + lj;\n" +
+        "        tileA[li][lj] = (i < M && p < K) ? " +
+        "A[(long)i * ldA + p] : 0;\n" +
+        "        tileB[lj][li] = (jb < N && p < K) ? " +
+        "qB[(long)jb * K + p] : 0;\n" +
+        "        barrier(CLK_LOCAL_MEM_FENCE);\n" +
+        "        for (int q = 0; q < TILE_SIZE; q++)\n" +
+        "        {\n" +
+        "            acc += tileA[li][q] * tileB[q][lj];\n" +
+        "        }\n" +
+        "        barrier(CLK_LOCAL_MEM_FENCE);\n" +
+        "    }\n" +
+        "    if (i < M && j < N)\n" +
+        "    {\n" +
+        "        const int sum = acc - zeroPointsA[i] * sumsB[j];\n" +
+        "        const long ic = offC + (long)i * sCi + (long)j * sCj;\n" +
+        "        C[ic] = alpha * scalesA[i] * scalesB[j] * (float)sum + " +
+        "(beta == 0.0f ? 0.0f : beta * C[ic]);\n" +
+        "    }\n" +
+        "}\n";
+    
+    /**
+     * The size of the tiles of the matrix-matrix product
+     */
+    private static final int TILE_SIZE = 16;
+    
+    /**
+     * The work group size of the quantization and the matrix-vector 
+     * product
+     */
+    private static final int GROUP_SIZE = 
+        CachedKernel.DEFAULT_LOCAL_WORK_SIZE;
+    
+    /**
+     * The context
+     */
+    private final cl_context context;
+    
+    /**
+     * The kernel cache
+     */
+    private final KernelCache kernelCache;
+    
+    /**
+     * Creates a new executor for the given context, using the shared
+     * {@link KernelCache#getInstance() kernel cache}
+     * 
+     * @param context The context
+     */
+    public QuantizedExecutor(cl_context context)
+    {
+        this(context, KernelCache.getInstance());
+    }
+
+    /**
+     * Creates a new executor for the given context, using the given 
+     * kernel cache
+     * 
+     * @param context The context
+     * @param kernelCache The kernel cache
+     */
+    public QuantizedExecutor(cl_context context, KernelCache kernelCache)
+    {
+        this.context = context;
+        this.kernelCache = kernelCache;
+    }
+    
+    /**
+     * Enqueue the matrix-vector product y = alpha * A * x + beta * y, 
+     * where A is a quantized matrix. See 
+     * {@link HostQuantizedBLAS#sgemv}.
+     * 
+     * @param commandQueue The command queue
+     * @param alpha The factor of A*x
+     * @param A The quantized matrix
+     * @param x The vector x, with A.getColumns() elements
+     * @param offx The offset of x, in elements
+     * @param incx The increment of x
+     * @param beta The factor of y
+     * @param y The vector y, with A.getRows() elements
+     * @param offy The offset of y, in elements
+     * @param incy The increment of y
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the completion of the product. May be 
+     * <code>null</code>.
+     * @return The OpenCL status
+     * @throws CLException If the kernels can not be compiled, or the 
+     * temporary memory objects can not be created
+     * @throws IllegalArgumentException If the matrix has more than
+     * {@link HostQuantizedBLAS#MAX_INNER_DIMENSION} columns
+     */
+    public int sgemv(cl_command_queue commandQueue, float alpha, 
+        DeviceQuantizedMatrix A, cl_mem x, long offx, int incx, 
+        float beta, cl_mem y, long offy, int incy, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        int M = A.getRows();
+        int K = checkInnerDimension(A);
+        long x0 = incx >= 0 ? offx : offx - (K - 1L) * incx;
+        long y0 = incy >= 0 ? offy : offy - (M - 1L) * incy;
+        Quantized qx = new Quantized(K, 1);
+        try
+        {
+            cl_event quantizeEvent = new cl_event();
+            int status = qx.enqueue(commandQueue, x, x0, incx, 0, 
+                numEventsInWaitList, eventWaitList, quantizeEvent);
+            if (status != CL.CL_SUCCESS)
+            {
+                return status;
+            }
+            try
+            {
+                CachedKernel kernel = kernelCache.getKernel(
+                    context, KERNEL_SOURCE, "int8Gemv");
+                return kernel.enqueue(commandQueue, 
+                    new long[] { Math.max(M, 1) * (long)GROUP_SIZE }, 
+                    new long[] { GROUP_SIZE }, 
+                    1, new cl_event[] { quantizeEvent }, event, 
+                    M, K, alpha, A.getData(), A.getLd(), 
+                    A.getScales(), A.getZeroPoints(), 
+                    qx.values, qx.scales, qx.sums, beta, y, y0, incy);
+            }
+            finally
+            {
+                CL.clReleaseEvent(quantizeEvent);
+            }
+        }
+        finally
+        {
+            qx.release();
+        }
+    }
+    
+    /**
+     * Enqueue the matrix-matrix product C = alpha * A * op(B) + 
+     * beta * C, where A is a quantized M x K matrix, with 
+     * M = A.getRows() and K = A.getColumns(). See 
+     * {@link HostQuantizedBLAS#sgemm}.
+     * 
+     * @param commandQueue The command queue
+     * @param order The {@link org.jocl.blas.clblasOrder} of B and C
+     * @param transB How matrix B is to be transposed
+     * @param N The number of columns of op(B) and C
+     * @param alpha The factor of A*op(B)
+     * @param A The quantized matrix
+     * @param B The matrix B
+     * @param offB The offset of B, in elements
+     * @param ldb The leading dimension of B
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C, in elements
+     * @param ldc The leading dimension of C
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the completion of the product. May be 
+     * <code>null</code>.
+     * @return The OpenCL status
+     * @throws CLException If the kernels can not be compiled, or the 
+     * temporary memory objects can not be created
+     * @throws IllegalArgumentException If the matrix has more than
+     * {@link HostQuantizedBLAS#MAX_INNER_DIMENSION} columns
+     */
+    public int sgemm(cl_command_queue commandQueue, int order, int transB, 
+        long N, float alpha, DeviceQuantizedMatrix A, 
+        cl_mem B, long offB, long ldb, float beta, 
+        cl_mem C, long offC, long ldc, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        int M = A.getRows();
+        int K = checkInnerDimension(A);
+        boolean rowMajor = order == clblasRowMajor;
+        boolean opB = (transB == clblasNoTrans) == rowMajor;
+        int sBp = (int)(opB ? ldb : 1);
+        int sBj = (int)(opB ? 1 : ldb);
+        int sCi = (int)(rowMajor ? ldc : 1);
+        int sCj = (int)(rowMajor ? 1 : ldc);
+        Quantized qB = new Quantized(K, (int)N);
+        try
+        {
+            cl_event quantizeEvent = new cl_event();
+            int status = qB.enqueue(commandQueue, B, offB, sBp, sBj, 
+                numEventsInWaitList, eventWaitList, quantizeEvent);
+            if (status != CL.CL_SUCCESS)
+            {
+                return status;
+            }
+            try
+            {
+                CachedKernel kernel = kernelCache.getKernel(
+                    context, KERNEL_SOURCE, "int8Gemm");
+                long globalWorkSize[] = {
+                    CachedKernel.roundUp(Math.max(N, 1), TILE_SIZE),
+                    CachedKernel.roundUp(Math.max(M, 1), TILE_SIZE)
+                };
+                long localWorkSize[] = { TILE_SIZE, TILE_SIZE };
+                return kernel.enqueue(commandQueue, 
+                    globalWorkSize, localWorkSize, 
+                    1, new cl_event[] { quantizeEvent }, event, 
+                    M, (int)N, K, alpha, A.getData(), A.getLd(), 
+                    A.getScales(), A.getZeroPoints(), 
+                    qB.values, qB.scales, qB.sums, 
+                    beta, C, offC, sCi, sCj);
+            }
+            finally
+            {
+                CL.clReleaseEvent(quantizeEvent);
+            }
+        }
+        finally
+        {
+            qB.release();
+        }
+    }
+    
+    /**
+     * Returns the number of columns of the given matrix
+     * 
+     * @param A The matrix
+     * @return The number of columns
+     * @throws IllegalArgumentException If the matrix has more than
+     * {@link HostQuantizedBLAS#MAX_INNER_DIMENSION} columns
+     */
+    private static int checkInnerDimension(DeviceQuantizedMatrix A)
+    {
+        int K = A.getColumns();
+        if (K > HostQuantizedBLAS.MAX_INNER_DIMENSION)
+        {
+            throw new IllegalArgumentException("The matrix has " + K + 
+                " columns, but at most " +
+                HostQuantizedBLAS.MAX_INNER_DIMENSION + " are supported");
+        }
+        return K;
+    }
+    
+    /**
+     * The temporary memory objects for the columns of a float operand
+     * that are quantized on the device
+     */
+    private final class Quantized
+    {
+        /**
+         * The number of rows
+         */
+        private final int rows;
+        
+        /**
+         * The number of columns
+         */
+        private final int columns;
+        
+        /**
+         * The quantized values, stored column by column
+         */
+        final cl_mem values;
+        
+        /**
+         * The scale of each column
+         */
+        final cl_mem scales;
+        
+        /**
+         * The sum of the quantized values of each column
+         */
+        final cl_mem sums;
+        
+        /**
+         * Creates the memory objects for the given number of rows and
+         * columns
+         * 
+         * @param rows The number of rows
+         * @param columns The number of columns
+         * @throws CLException If the memory objects can not be created
+         */
+        Quantized(int rows, int columns)
+        {
+            this.rows = rows;
+            this.columns = columns;
+            int count = Math.max(columns, 1);
+            this.values = createBuffer(
+                Math.max((long)rows * columns, 1) * Sizeof.cl_char);
+            cl_mem scales = null;
+            try
+            {
+                scales = createBuffer(count * Sizeof.cl_float);
+                this.sums = createBuffer(count * Sizeof.cl_int);
+            }
+            catch (CLException e)
+            {
+                CL.clReleaseMemObject(values);
+                if (scales != null)
+                {
+                    CL.clReleaseMemObject(scales);
+                }
+                throw e;
+            }
+            this.scales = scales;
+        }
+        
+        /**
+         * Enqueue the quantization of the given operand
+         * 
+         * @param commandQueue The command queue
+         * @param B The operand
+         * @param offB The index of the first element
+         * @param sBp The stride between the rows
+         * @param sBj The stride between the columns
+         * @param numEventsInWaitList The number of events in the wait list
+         * @param eventWaitList The wait list
+         * @param event The event for the completion of the quantization
+         * @return The OpenCL status
+         */
+        int enqueue(cl_command_queue commandQueue, 
+            cl_mem B, long offB, int sBp, int sBj, 
+            int numEventsInWaitList, cl_event eventWaitList[], 
+            cl_event event)
+        {
+            CachedKernel kernel = kernelCache.getKernel(
+                context, KERNEL_SOURCE, "quantizeColumns");
+            return kernel.enqueue(commandQueue, 
+                new long[] { Math.max(columns, 1) * (long)GROUP_SIZE }, 
+                new long[] { GROUP_SIZE }, 
+                numEventsInWaitList, eventWaitList, event, 
+                rows, B, offB, sBp, sBj, values, scales, sums);
+        }
+        
+        /**
+         * Release the memory objects
+         */
+        void release()
+        {
+            CL.clReleaseMemObject(values);
+            CL.clReleaseMemObject(scales);
+            CL.clReleaseMemObject(sums);
+        }
+        
+        /**
+         * Creates a read-write buffer with the given size
+         * 
+         * @param size The size in bytes
+         * @return The buffer
+         */
+        private cl_mem createBuffer(long size)
+        {
+            int errcode[] = { 0 };
+            cl_mem buffer = CL.clCreateBuffer(context, 
+                CL.CL_MEM_READ_WRITE, size, null, errcode);
+            if (errcode[0] != CL.CL_SUCCESS)
+            {
+                throw new CLException("clCreateBuffer failed: " +
+                    CL.stringFor_errorCode(errcode[0]), errcode[0]);
+            }
+            return buffer;
+        }
+    }
+}
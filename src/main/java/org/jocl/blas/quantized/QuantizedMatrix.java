@@ -0,0 +1,240 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.quantized;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+
+import java.util.Arrays;
+
+/**
+ * A matrix of 8-bit integers, with a scale and a zero point for each 
+ * row. Element (i, j) represents the value 
+ * (data[i * columns + j] - zeroPoints[i]) * scales[i]. <br>
+ * <br>
+ * The rows are the output channels of a weight matrix: In the products
+ * of {@link HostQuantizedBLAS} and {@link QuantizedExecutor}, this is
+ * the matrix A, and each row yields one element of the result vector, 
+ * or one row of the result matrix. The data is stored in row-major 
+ * order, independent of the order of the matrix that was quantized.
+ * <br>
+ * <br>
+ * Instances of this class are immutable.
+ */
+public final class QuantizedMatrix
+{
+    /**
+     * The number of rows
+     */
+    private final int rows;
+    
+    /**
+     * The number of columns
+     */
+    private final int columns;
+    
+    /**
+     * The quantized values, in row-major order
+     */
+    final byte data[];
+    
+    /**
+     * The scale of each row
+     */
+    final float scales[];
+    
+    /**
+     * The zero point of each row
+     */
+    final int zeroPoints[];
+    
+    /**
+     * Creates a new quantized matrix. The given arrays are copied.
+     * 
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param data The quantized values, in row-major order
+     * @param scales The scale of each row
+     * @param zeroPoints The zero point of each row
+     * @throws IllegalArgumentException If the size is negative, the 
+     * arrays are too small, a scale is not positive, or a zero point is 
+     * not in [-128, 127]
+     */
+    public QuantizedMatrix(int rows, int columns, 
+        byte data[], float scales[], int zeroPoints[])
+    {
+        if (rows < 0 || columns < 0)
+        {
+            throw new IllegalArgumentException(
+                "Invalid size: " + rows + " x " + columns);
+        }
+        if (data.length < (long)rows * columns || 
+            scales.length < rows || zeroPoints.length < rows)
+        {
+            throw new IllegalArgumentException(
+                "Expected " + ((long)rows * columns) + " values and " + 
+                rows + " scales and zero points");
+        }
+        for (int i = 0; i < rows; i++)
+        {
+            if (!(scales[i] > 0.0f) || 
+                zeroPoints[i] < Int8Quantization.MIN_VALUE || 
+                zeroPoints[i] > Int8Quantization.MAX_VALUE)
+            {
+                throw new IllegalArgumentException(
+                    "Invalid scale " + scales[i] + " or zero point " + 
+                    zeroPoints[i] + " in row " + i);
+            }
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.data = Arrays.copyOf(data, rows * columns);
+        this.scales = Arrays.copyOf(scales, rows);
+        this.zeroPoints = Arrays.copyOf(zeroPoints, rows);
+    }
+    
+    /**
+     * Quantizes the given matrix, with a scale and zero point for each 
+     * row that are computed from the range of the row
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param M The number of rows
+     * @param N The number of columns
+     * @param A The matrix
+     * @param offA The offset of the matrix
+     * @param lda The leading dimension of the matrix
+     * @return The quantized matrix
+     */
+    public static QuantizedMatrix quantize(int order, int M, int N, 
+        float A[], int offA, int lda)
+    {
+        int si = order == clblasRowMajor ? lda : 1;
+        int sj = order == clblasRowMajor ? 1 : lda;
+        byte data[] = new byte[M * N];
+        float scales[] = new float[M];
+        int zeroPoints[] = new int[M];
+        for (int i = 0; i < M; i++)
+        {
+            int ai = offA + i * si;
+            float min = 0.0f;
+            float max = 0.0f;
+            for (int j = 0; j < N; j++)
+            {
+                float a = A[ai + j * sj];
+                min = Math.min(min, a);
+                max = Math.max(max, a);
+            }
+            float scale = Int8Quantization.computeScale(min, max);
+            int zeroPoint = Int8Quantization.computeZeroPoint(min, scale);
+            for (int j = 0; j < N; j++)
+            {
+                data[i * N + j] = Int8Quantization.quantize(
+                    A[ai + j * sj], scale, zeroPoint);
+            }
+            scales[i] = scale;
+            zeroPoints[i] = zeroPoint;
+        }
+        return new QuantizedMatrix(M, N, data, scales, zeroPoints);
+    }
+    
+    /**
+     * Writes the dequantized values of this matrix into the given matrix
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param A The matrix
+     * @param offA The offset of the matrix
+     * @param lda The leading dimension of the matrix
+     */
+    public void dequantize(int order, float A[], int offA, int lda)
+    {
+        int si = order == clblasRowMajor ? lda : 1;
+        int sj = order == clblasRowMajor ? 1 : lda;
+        for (int i = 0; i < rows; i++)
+        {
+            for (int j = 0; j < columns; j++)
+            {
+                A[offA + i * si + j * sj] = Int8Quantization.dequantize(
+                    data[i * columns + j], scales[i], zeroPoints[i]);
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of rows
+     * 
+     * @return The number of rows
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+    
+    /**
+     * Returns the number of columns
+     * 
+     * @return The number of columns
+     */
+    public int getColumns()
+    {
+        return columns;
+    }
+    
+    /**
+     * Returns a copy of the quantized values, in row-major order
+     * 
+     * @return The quantized values
+     */
+    public byte[] getData()
+    {
+        return data.clone();
+    }
+    
+    /**
+     * Returns a copy of the scales of the rows
+     * 
+     * @return The scales
+     */
+    public float[] getScales()
+    {
+        return scales.clone();
+    }
+    
+    /**
+     * Returns a copy of the zero points of the rows
+     * 
+     * @return The zero points
+     */
+    public int[] getZeroPoints()
+    {
+        return zeroPoints.clone();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "QuantizedMatrix[" + rows + "x" + columns + "]";
+    }
+}
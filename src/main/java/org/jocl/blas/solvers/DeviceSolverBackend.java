@@ -0,0 +1,403 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.solvers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.Pointer;
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.CLBLAS;
+import org.jocl.blas.clblasStatus;
+import org.jocl.blas.clblasTranspose;
+import org.jocl.blas.fused.FusedChain;
+import org.jocl.blas.fused.FusedChainExecutor;
+import org.jocl.blas.kernel.KernelCache;
+
+/**
+ * Implementation of a {@link SolverBackend} for vectors that are 
+ * <code>cl_mem</code> objects on an OpenCL device. <br>
+ * <br>
+ * All operations are enqueued into a single command queue, without 
+ * waiting for their completion. The scalars are stored in small pool
+ * buffers on the device, and the dot products are computed with 
+ * {@link CLBLAS#clblasSdot} directly into these buffers. The vector 
+ * updates and scalar computations are executed with generated kernels,
+ * using a {@link FusedChainExecutor}. Only {@link #readScalars(int[])}
+ * waits for the command queue to finish. <br>
+ * <br>
+ * If an operation fails, a CLException is thrown. Instances of this 
+ * class are not thread-safe, and have to be {@link #release() released}
+ * when they are no longer used.
+ */
+public final class DeviceSolverBackend implements SolverBackend<cl_mem>
+{
+    /**
+     * The number of scalars in one pool buffer
+     */
+    private static final int POOL_SIZE = 256;
+    
+    /**
+     * The context
+     */
+    private final cl_context context;
+    
+    /**
+     * The command queue
+     */
+    private final cl_command_queue commandQueue;
+    
+    /**
+     * The command queue, as an array for the CLBLAS functions
+     */
+    private final cl_command_queue commandQueues[];
+    
+    /**
+     * The size of the vectors
+     */
+    private final int size;
+    
+    /**
+     * The executor for the chains
+     */
+    private final FusedChainExecutor executor;
+    
+    /**
+     * The pool buffers for the scalars
+     */
+    private final List<cl_mem> pools;
+    
+    /**
+     * The number of scalars that have been created
+     */
+    private int scalarCount;
+    
+    /**
+     * The indices of the scalars that have been released
+     */
+    private final Deque<Integer> freeScalars;
+    
+    /**
+     * The scratch buffer for the dot products
+     */
+    private cl_mem scratchBuffer;
+    
+    /**
+     * Creates a new backend for vectors of the given size, using the 
+     * shared {@link KernelCache#getInstance() kernel cache}
+     * 
+     * @param context The context
+     * @param commandQueue The command queue
+     * @param size The size
+     * @throws CLException If the scratch buffer can not be created
+     */
+    public DeviceSolverBackend(cl_context context, 
+        cl_command_queue commandQueue, int size)
+    {
+        this(context, commandQueue, size, KernelCache.getInstance());
+    }
+    
+    /**
+     * Creates a new backend for vectors of the given size
+     * 
+     * @param context The context
+     * @param commandQueue The command queue
+     * @param size The size
+     * @param kernelCache The kernel cache
+     * @throws CLException If the scratch buffer can not be created
+     */
+    public DeviceSolverBackend(cl_context context, 
+        cl_command_queue commandQueue, int size, KernelCache kernelCache)
+    {
+        this.context = context;
+        this.commandQueue = commandQueue;
+        this.commandQueues = new cl_command_queue[] { commandQueue };
+        this.size = size;
+        this.executor = new FusedChainExecutor(context, kernelCache);
+        this.pools = new ArrayList<cl_mem>();
+        this.freeScalars = new ArrayDeque<Integer>();
+        this.scratchBuffer = createBuffer(Math.max(size, 1));
+    }
+    
+    /**
+     * Creates an operator for the given square matrix, whose products 
+     * are computed with {@link CLBLAS#clblasSgemv}
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder} of A
+     * @param A The matrix A
+     * @param offA The offset of A, in elements
+     * @param lda The leading dimension of A
+     * @return The operator
+     */
+    public LinearOperator<cl_mem> createDenseOperator(
+        final int order, final cl_mem A, final long offA, final long lda)
+    {
+        return new LinearOperator<cl_mem>()
+        {
+            @Override
+            public void apply(cl_mem x, cl_mem y)
+            {
+                check(CLBLAS.clblasSgemv(order, clblasTranspose.clblasNoTrans,
+                    size, size, 1.0f, A, offA, lda, x, 0, 1, 0.0f, y, 0, 1, 
+                    1, commandQueues, 0, null, (cl_event[]) null), 
+                    "clblasSgemv");
+            }
+        };
+    }
+    
+    @Override
+    public int getSize()
+    {
+        return size;
+    }
+
+    @Override
+    public cl_mem createVector()
+    {
+        return createBuffer(Math.max(size, 1));
+    }
+
+    @Override
+    public void releaseVector(cl_mem vector)
+    {
+        CL.clReleaseMemObject(vector);
+    }
+
+    @Override
+    public int createScalar()
+    {
+        Integer free = freeScalars.poll();
+        if (free != null)
+        {
+            return free;
+        }
+        if (scalarCount == pools.size() * POOL_SIZE)
+        {
+            pools.add(createBuffer(POOL_SIZE));
+        }
+        return scalarCount++;
+    }
+
+    @Override
+    public void releaseScalar(int scalar)
+    {
+        freeScalars.add(scalar);
+    }
+
+    @Override
+    public void dot(cl_mem x, cl_mem y, int result)
+    {
+        check(CLBLAS.clblasSdot(size, pool(result), offset(result), 
+            x, 0, 1, y, 0, 1, scratchBuffer, 1, commandQueues, 0, null, 
+            (cl_event[]) null), "clblasSdot");
+    }
+
+    @Override
+    public void execute(FusedChain chain, List<cl_mem> vectors, 
+        float[] scalars)
+    {
+        int n = vectors.size();
+        check(executor.execute(commandQueue, chain, size, 
+            vectors.toArray(new cl_mem[n]), new long[n], increments(n), 
+            scalars, 0, null, null), "fused chain");
+    }
+
+    @Override
+    public void executeWithScalars(FusedChain chain, List<cl_mem> vectors, 
+        int[] scalars)
+    {
+        int n = vectors.size();
+        check(executor.executeWithDeviceScalars(commandQueue, chain, size, 
+            vectors.toArray(new cl_mem[n]), new long[n], increments(n), 
+            pools(scalars), offsets(scalars), 0, null, null), 
+            "fused chain");
+    }
+
+    @Override
+    public void computeScalars(FusedChain chain, int[] scalars)
+    {
+        check(executor.execute(commandQueue, chain, 1, pools(scalars), 
+            offsets(scalars), increments(scalars.length), new float[0], 
+            0, null, null), "fused chain");
+    }
+
+    @Override
+    public float[] readScalars(int[] scalars)
+    {
+        Map<Integer, float[]> poolData = new LinkedHashMap<Integer, float[]>();
+        for (int scalar : scalars)
+        {
+            int p = scalar / POOL_SIZE;
+            if (!poolData.containsKey(p))
+            {
+                float data[] = new float[POOL_SIZE];
+                poolData.put(p, data);
+                check(CL.clEnqueueReadBuffer(commandQueue, pools.get(p), 
+                    true, 0, POOL_SIZE * Sizeof.cl_float, Pointer.to(data), 
+                    0, null, null), "clEnqueueReadBuffer");
+            }
+        }
+        float result[] = new float[scalars.length];
+        for (int s = 0; s < scalars.length; s++)
+        {
+            int scalar = scalars[s];
+            result[s] = poolData.get(scalar / POOL_SIZE)[scalar % POOL_SIZE];
+        }
+        return result;
+    }
+    
+    /**
+     * Release the scratch buffer and the scalar pools of this backend.
+     * The vectors that have been created by this backend have to be 
+     * released separately.
+     */
+    public void release()
+    {
+        if (scratchBuffer != null)
+        {
+            CL.clReleaseMemObject(scratchBuffer);
+            scratchBuffer = null;
+        }
+        for (cl_mem pool : pools)
+        {
+            CL.clReleaseMemObject(pool);
+        }
+        pools.clear();
+        freeScalars.clear();
+        scalarCount = 0;
+    }
+    
+    /**
+     * Returns the pool buffer that contains the given scalar
+     * 
+     * @param scalar The index of the scalar
+     * @return The pool buffer
+     */
+    private cl_mem pool(int scalar)
+    {
+        return pools.get(scalar / POOL_SIZE);
+    }
+
+    /**
+     * Returns the offset of the given scalar in its pool buffer
+     * 
+     * @param scalar The index of the scalar
+     * @return The offset, in elements
+     */
+    private static long offset(int scalar)
+    {
+        return scalar % POOL_SIZE;
+    }
+    
+    /**
+     * Returns the pool buffers for the given scalars
+     * 
+     * @param scalars The indices of the scalars
+     * @return The pool buffers
+     */
+    private cl_mem[] pools(int scalars[])
+    {
+        cl_mem result[] = new cl_mem[scalars.length];
+        for (int s = 0; s < scalars.length; s++)
+        {
+            result[s] = pool(scalars[s]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the offsets for the given scalars
+     * 
+     * @param scalars The indices of the scalars
+     * @return The offsets, in elements
+     */
+    private static long[] offsets(int scalars[])
+    {
+        long result[] = new long[scalars.length];
+        for (int s = 0; s < scalars.length; s++)
+        {
+            result[s] = offset(scalars[s]);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns an array with the given length, filled with 1
+     * 
+     * @param n The length
+     * @return The array
+     */
+    private static int[] increments(int n)
+    {
+        int result[] = new int[n];
+        Arrays.fill(result, 1);
+        return result;
+    }
+    
+    /**
+     * Create a buffer for the given number of float elements
+     * 
+     * @param n The number of elements
+     * @return The buffer
+     * @throws CLException If the buffer can not be created
+     */
+    private cl_mem createBuffer(long n)
+    {
+        int errcode[] = { 0 };
+        cl_mem buffer = CL.clCreateBuffer(context, CL.CL_MEM_READ_WRITE, 
+            n * Sizeof.cl_float, null, errcode);
+        check(errcode[0], "clCreateBuffer");
+        return buffer;
+    }
+    
+    /**
+     * Throws a CLException if the given result is not CL_SUCCESS
+     * 
+     * @param result The result
+     * @param name The name of the function that returned the result
+     * @throws CLException If the result is not CL_SUCCESS
+     */
+    private static void check(int result, String name)
+    {
+        if (result != CL.CL_SUCCESS)
+        {
+            throw new CLException(name + " failed: " + 
+                clblasStatus.stringFor(result), result);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.solvers;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.jocl.blas.clblasTranspose;
+import org.jocl.blas.fused.FusedChain;
+import org.jocl.blas.host.HostBLAS;
+
+/**
+ * Implementation of a {@link SolverBackend} for vectors that are 
+ * <code>float</code> arrays in host memory. <br>
+ * <br>
+ * This backend may be used as a fallback when no OpenCL device is 
+ * available, and for testing. Instances of this class are not 
+ * thread-safe.
+ */
+public final class HostSolverBackend implements SolverBackend<float[]>
+{
+    /**
+     * The size of the vectors
+     */
+    private final int size;
+    
+    /**
+     * The values of the scalars
+     */
+    private float scalars[];
+    
+    /**
+     * The number of scalars that have been created
+     */
+    private int scalarCount;
+    
+    /**
+     * The indices of the scalars that have been released
+     */
+    private final Deque<Integer> freeScalars;
+    
+    /**
+     * Creates a new backend for vectors of the given size
+     * 
+     * @param size The size
+     * @throws IllegalArgumentException If the size is negative
+     */
+    public HostSolverBackend(int size)
+    {
+        if (size < 0)
+        {
+            throw new IllegalArgumentException(
+                "The size may not be negative, but is " + size);
+        }
+        this.size = size;
+        this.scalars = new float[16];
+        this.freeScalars = new ArrayDeque<Integer>();
+    }
+    
+    /**
+     * Creates an operator for the given square matrix, whose products 
+     * are computed with {@link HostBLAS#clblasSgemv}
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder} of A
+     * @param A The matrix A
+     * @param offA The offset of A
+     * @param lda The leading dimension of A
+     * @return The operator
+     */
+    public LinearOperator<float[]> createDenseOperator(
+        final int order, final float A[], final int offA, final int lda)
+    {
+        return new LinearOperator<float[]>()
+        {
+            @Override
+            public void apply(float[] x, float[] y)
+            {
+                HostBLAS.clblasSgemv(order, clblasTranspose.clblasNoTrans, 
+                    size, size, 1.0f, A, offA, lda, x, 0, 1, 0.0f, y, 0, 1);
+            }
+        };
+    }
+    
+    @Override
+    public int getSize()
+    {
+        return size;
+    }
+
+    @Override
+    public float[] createVector()
+    {
+        return new float[size];
+    }
+
+    @Override
+    public void releaseVector(float[] vector)
+    {
+        // Nothing to do here
+    }
+
+    @Override
+    public int createScalar()
+    {
+        Integer free = freeScalars.poll();
+        if (free != null)
+        {
+            return free;
+        }
+        if (scalarCount == scalars.length)
+        {
+            scalars = Arrays.copyOf(scalars, scalars.length * 2);
+        }
+        return scalarCount++;
+    }
+
+    @Override
+    public void releaseScalar(int scalar)
+    {
+        freeScalars.add(scalar);
+    }
+
+    @Override
+    public void dot(float[] x, float[] y, int result)
+    {
+        double sum = 0.0;
+        for (int i = 0; i < size; i++)
+        {
+            sum += x[i] * y[i];
+        }
+        scalars[result] = (float) sum;
+    }
+
+    @Override
+    public void execute(FusedChain chain, List<float[]> vectors, 
+        float scalarValues[])
+    {
+        int n = vectors.size();
+        int increments[] = new int[n];
+        Arrays.fill(increments, 1);
+        chain.execute(size, vectors.toArray(new float[n][]), new int[n], 
+            increments, scalarValues);
+    }
+
+    @Override
+    public void executeWithScalars(FusedChain chain, List<float[]> vectors, 
+        int scalarIndices[])
+    {
+        float scalarValues[] = new float[scalarIndices.length];
+        for (int s = 0; s < scalarIndices.length; s++)
+        {
+            scalarValues[s] = scalars[scalarIndices[s]];
+        }
+        execute(chain, vectors, scalarValues);
+    }
+
+    @Override
+    public void computeScalars(FusedChain chain, int scalarIndices[])
+    {
+        int n = scalarIndices.length;
+        float values[][] = new float[n][1];
+        for (int s = 0; s < n; s++)
+        {
+            values[s][0] = scalars[scalarIndices[s]];
+        }
+        int increments[] = new int[n];
+        Arrays.fill(increments, 1);
+        chain.execute(1, values, new int[n], increments, new float[0]);
+        for (int s = 0; s < n; s++)
+        {
+            scalars[scalarIndices[s]] = values[s][0];
+        }
+    }
+
+    @Override
+    public float[] readScalars(int scalarIndices[])
+    {
+        float result[] = new float[scalarIndices.length];
+        for (int s = 0; s < scalarIndices.length; s++)
+        {
+            result[s] = scalars[scalarIndices[s]];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,898 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.solvers;
+
+import static org.jocl.blas.fused.VectorExpression.constant;
+import static org.jocl.blas.fused.VectorExpression.scalar;
+import static org.jocl.blas.fused.VectorExpression.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jocl.blas.fused.FusedChain;
+import org.jocl.blas.solvers.SolverResult.Status;
+
+/**
+ * Iterative solvers for linear systems <code>A * x = b</code>. <br>
+ * <br>
+ * The solvers are implemented on top of a {@link SolverBackend}, so the
+ * same implementation is used for vectors in host memory and for vectors
+ * in device memory. All scalars of the methods, including the results 
+ * of reductions, are kept in the backend, and all vector updates of one
+ * step are executed as a single {@link FusedChain}. So on a device, the 
+ * operations of all iterations are enqueued without waiting: The only 
+ * synchronization points are the convergence checks, which read the 
+ * residual norm back to the host every 
+ * {@link SolverOptions#getCheckInterval() check interval} iterations. 
+ * <br>
+ * <br>
+ * The divisions that compute step sizes yield 0 when the divisor is 0,
+ * so a method that converged exactly between two checks stays at the 
+ * solution instead of producing NaN values.
+ */
+public final class IterativeSolvers
+{
+    /**
+     * r = b - q
+     */
+    private static final FusedChain RESIDUAL = new FusedChain.Builder()
+        .assign("r", vector("b").minus(vector("q")))
+        .build();
+
+    /**
+     * y = x
+     */
+    private static final FusedChain COPY = new FusedChain.Builder()
+        .assign("y", vector("x"))
+        .build();
+    
+    /**
+     * x = 0
+     */
+    private static final FusedChain ZERO = new FusedChain.Builder()
+        .assign("x", constant(0.0f))
+        .build();
+
+    /**
+     * CG: alpha = rz / pq 
+     */
+    private static final FusedChain CG_STEP_SIZE = new FusedChain.Builder()
+        .assign("alpha", vector("rz").safelyDividedBy(vector("pq")))
+        .build();
+    
+    /**
+     * CG: x = x + alpha * p; r = r - alpha * q
+     */
+    private static final FusedChain CG_UPDATE = new FusedChain.Builder()
+        .assign("x", vector("x").plus(scalar("alpha").times(vector("p"))))
+        .assign("r", vector("r").minus(scalar("alpha").times(vector("q"))))
+        .build();
+    
+    /**
+     * CG: beta = rzNew / rz; rz = rzNew
+     */
+    private static final FusedChain CG_DIRECTION_FACTOR = 
+        new FusedChain.Builder()
+            .assign("beta", vector("rzNew").safelyDividedBy(vector("rz")))
+            .assign("rz", vector("rzNew"))
+            .build();
+    
+    /**
+     * CG: p = z + beta * p
+     */
+    private static final FusedChain CG_DIRECTION = new FusedChain.Builder()
+        .assign("p", vector("z").plus(scalar("beta").times(vector("p"))))
+        .build();
+    
+    /**
+     * BiCGSTAB: rho = 1; alpha = 1; omega = 1
+     */
+    private static final FusedChain BICGSTAB_INIT = new FusedChain.Builder()
+        .assign("rho", constant(1.0f))
+        .assign("alpha", constant(1.0f))
+        .assign("omega", constant(1.0f))
+        .build();
+
+    /**
+     * BiCGSTAB: v = 0; p = 0
+     */
+    private static final FusedChain BICGSTAB_ZERO = new FusedChain.Builder()
+        .assign("v", constant(0.0f))
+        .assign("p", constant(0.0f))
+        .build();
+    
+    /**
+     * BiCGSTAB: beta = (rhoNew / rho) * (alpha / omega); rho = rhoNew
+     */
+    private static final FusedChain BICGSTAB_BETA = new FusedChain.Builder()
+        .assign("beta", vector("rhoNew").safelyDividedBy(vector("rho"))
+            .times(vector("alpha").safelyDividedBy(vector("omega"))))
+        .assign("rho", vector("rhoNew"))
+        .build();
+    
+    /**
+     * BiCGSTAB: p = r + beta * (p - omega * v)
+     */
+    private static final FusedChain BICGSTAB_DIRECTION = 
+        new FusedChain.Builder()
+            .assign("p", vector("r").plus(scalar("beta").times(
+                vector("p").minus(scalar("omega").times(vector("v"))))))
+            .build();
+    
+    /**
+     * BiCGSTAB: alpha = rho / rhatv
+     */
+    private static final FusedChain BICGSTAB_ALPHA = new FusedChain.Builder()
+        .assign("alpha", vector("rho").safelyDividedBy(vector("rhatv")))
+        .build();
+    
+    /**
+     * BiCGSTAB: s = r - alpha * v
+     */
+    private static final FusedChain BICGSTAB_S = new FusedChain.Builder()
+        .assign("s", vector("r").minus(scalar("alpha").times(vector("v"))))
+        .build();
+    
+    /**
+     * BiCGSTAB: omega = ts / tt
+     */
+    private static final FusedChain BICGSTAB_OMEGA = new FusedChain.Builder()
+        .assign("omega", vector("ts").safelyDividedBy(vector("tt")))
+        .build();
+    
+    /**
+     * BiCGSTAB: x = x + alpha * phat + omega * shat; r = s - omega * t
+     */
+    private static final FusedChain BICGSTAB_UPDATE = new FusedChain.Builder()
+        .assign("x", vector("x")
+            .plus(scalar("alpha").times(vector("phat")))
+            .plus(scalar("omega").times(vector("shat"))))
+        .assign("r", vector("s").minus(scalar("omega").times(vector("t"))))
+        .build();
+    
+    /**
+     * GMRES: norm = sqrt(squaredNorm)
+     */
+    private static final FusedChain GMRES_NORM = new FusedChain.Builder()
+        .assign("norm", vector("squaredNorm").sqrt())
+        .build();
+    
+    /**
+     * GMRES: v = w / norm
+     */
+    private static final FusedChain GMRES_NORMALIZE = new FusedChain.Builder()
+        .assign("v", vector("w").safelyDividedBy(scalar("norm")))
+        .build();
+
+    /**
+     * GMRES: w = w - h * v
+     */
+    private static final FusedChain GMRES_ORTHOGONALIZE = 
+        new FusedChain.Builder()
+            .assign("w", vector("w").minus(scalar("h").times(vector("v"))))
+            .build();
+
+    /**
+     * GMRES: u = c * v
+     */
+    private static final FusedChain GMRES_SCALE = new FusedChain.Builder()
+        .assign("u", scalar("c").times(vector("v")))
+        .build();
+    
+    /**
+     * GMRES: u = u + c * v
+     */
+    private static final FusedChain GMRES_AXPY = new FusedChain.Builder()
+        .assign("u", vector("u").plus(scalar("c").times(vector("v"))))
+        .build();
+    
+    /**
+     * x = x + u
+     */
+    private static final FusedChain ADD = new FusedChain.Builder()
+        .assign("x", vector("x").plus(vector("u")))
+        .build();
+    
+    /**
+     * The empty array of host scalars
+     */
+    private static final float NO_SCALARS[] = new float[0];
+    
+    /**
+     * The vectors and scalars that are created by one solver invocation
+     * 
+     * @param <V> The type of the vectors
+     */
+    private static final class Workspace<V>
+    {
+        private final SolverBackend<V> backend;
+        private final List<V> vectors = new ArrayList<V>();
+        private final List<Integer> scalars = new ArrayList<Integer>();
+        
+        Workspace(SolverBackend<V> backend)
+        {
+            this.backend = backend;
+        }
+        
+        V vector()
+        {
+            V vector = backend.createVector();
+            vectors.add(vector);
+            return vector;
+        }
+        
+        int scalar()
+        {
+            int scalar = backend.createScalar();
+            scalars.add(scalar);
+            return scalar;
+        }
+        
+        void release()
+        {
+            for (V vector : vectors)
+            {
+                backend.releaseVector(vector);
+            }
+            for (Integer scalar : scalars)
+            {
+                backend.releaseScalar(scalar);
+            }
+        }
+    }
+    
+    /**
+     * Solve the given system with the preconditioned conjugate gradient
+     * method. The operator and the preconditioner must be symmetric and
+     * positive definite.
+     * 
+     * @param <V> The type of the vectors
+     * @param backend The backend
+     * @param operator The operator A
+     * @param preconditioner The preconditioner. May be <code>null</code>.
+     * @param b The right-hand side
+     * @param x The initial guess, which will receive the solution
+     * @param options The options
+     * @return The result
+     */
+    public static <V> SolverResult cg(SolverBackend<V> backend, 
+        LinearOperator<V> operator, Preconditioner<V> preconditioner, 
+        V b, V x, SolverOptions options)
+    {
+        Workspace<V> ws = new Workspace<V>(backend);
+        try
+        {
+            V r = ws.vector();
+            V q = ws.vector();
+            V p = ws.vector();
+            V z = preconditioner == null ? r : ws.vector();
+            int rz = ws.scalar();
+            int rzNew = ws.scalar();
+            int pq = ws.scalar();
+            int alpha = ws.scalar();
+            int beta = ws.scalar();
+            int rr = ws.scalar();
+            int bb = ws.scalar();
+            
+            operator.apply(x, q);
+            backend.execute(RESIDUAL, vectors(b, q, r), NO_SCALARS);
+            backend.dot(b, b, bb);
+            backend.dot(r, r, rr);
+            float initial[] = backend.readScalars(new int[] { bb, rr });
+            float bNorm = (float) Math.sqrt(initial[0]);
+            if (bNorm == 0.0f)
+            {
+                backend.execute(ZERO, vectors(x), NO_SCALARS);
+                return new SolverResult(Status.CONVERGED, 0, 0.0f, 1);
+            }
+            float residual = (float) Math.sqrt(initial[1]) / bNorm;
+            int checks = 1;
+            Status status = check(residual, options);
+            if (status != null)
+            {
+                return new SolverResult(status, 0, residual, checks);
+            }
+            
+            precondition(preconditioner, r, z);
+            backend.execute(COPY, vectors(z, p), NO_SCALARS);
+            backend.dot(r, z, rz);
+            int iteration = 0;
+            while (iteration < options.getMaximumIterations())
+            {
+                iteration++;
+                operator.apply(p, q);
+                backend.dot(p, q, pq);
+                backend.computeScalars(CG_STEP_SIZE, 
+                    new int[] { rz, pq, alpha });
+                backend.executeWithScalars(CG_UPDATE, 
+                    vectors(x, p, r, q), new int[] { alpha });
+                precondition(preconditioner, r, z);
+                backend.dot(r, z, rzNew);
+                backend.computeScalars(CG_DIRECTION_FACTOR, 
+                    new int[] { rzNew, rz, beta });
+                backend.executeWithScalars(CG_DIRECTION, 
+                    vectors(z, p), new int[] { beta });
+                
+                if (isCheckIteration(iteration, options))
+                {
+                    backend.dot(r, r, rr);
+                    float value = backend.readScalars(new int[] { rr })[0];
+                    residual = (float) Math.sqrt(value) / bNorm;
+                    checks++;
+                    status = check(residual, options);
+                    if (status != null)
+                    {
+                        return new SolverResult(
+                            status, iteration, residual, checks);
+                    }
+                }
+            }
+            return new SolverResult(
+                Status.MAXIMUM_ITERATIONS, iteration, residual, checks);
+        }
+        finally
+        {
+            ws.release();
+        }
+    }
+    
+    /**
+     * Solve the given system with the preconditioned BiCGSTAB method,
+     * using right preconditioning.
+     * 
+     * @param <V> The type of the vectors
+     * @param backend The backend
+     * @param operator The operator A
+     * @param preconditioner The preconditioner. May be <code>null</code>.
+     * @param b The right-hand side
+     * @param x The initial guess, which will receive the solution
+     * @param options The options
+     * @return The result
+     */
+    public static <V> SolverResult bicgstab(SolverBackend<V> backend, 
+        LinearOperator<V> operator, Preconditioner<V> preconditioner, 
+        V b, V x, SolverOptions options)
+    {
+        Workspace<V> ws = new Workspace<V>(backend);
+        try
+        {
+            V r = ws.vector();
+            V rhat = ws.vector();
+            V p = ws.vector();
+            V v = ws.vector();
+            V s = ws.vector();
+            V t = ws.vector();
+            V phat = preconditioner == null ? p : ws.vector();
+            V shat = preconditioner == null ? s : ws.vector();
+            int rho = ws.scalar();
+            int rhoNew = ws.scalar();
+            int alpha = ws.scalar();
+            int omega = ws.scalar();
+            int beta = ws.scalar();
+            int rhatv = ws.scalar();
+            int ts = ws.scalar();
+            int tt = ws.scalar();
+            int rr = ws.scalar();
+            int bb = ws.scalar();
+            
+            operator.apply(x, t);
+            backend.execute(RESIDUAL, vectors(b, t, r), NO_SCALARS);
+            backend.dot(b, b, bb);
+            backend.dot(r, r, rr);
+            float initial[] = backend.readScalars(new int[] { bb, rr });
+            float bNorm = (float) Math.sqrt(initial[0]);
+            if (bNorm == 0.0f)
+            {
+                backend.execute(ZERO, vectors(x), NO_SCALARS);
+                return new SolverResult(Status.CONVERGED, 0, 0.0f, 1);
+            }
+            float residual = (float) Math.sqrt(initial[1]) / bNorm;
+            int checks = 1;
+            Status status = check(residual, options);
+            if (status != null)
+            {
+                return new SolverResult(status, 0, residual, checks);
+            }
+            
+            backend.execute(COPY, vectors(r, rhat), NO_SCALARS);
+            backend.computeScalars(BICGSTAB_INIT, 
+                new int[] { rho, alpha, omega });
+            backend.execute(BICGSTAB_ZERO, vectors(v, p), NO_SCALARS);
+            int iteration = 0;
+            while (iteration < options.getMaximumIterations())
+            {
+                iteration++;
+                backend.dot(rhat, r, rhoNew);
+                backend.computeScalars(BICGSTAB_BETA, 
+                    new int[] { rhoNew, rho, alpha, omega, beta });
+                backend.executeWithScalars(BICGSTAB_DIRECTION, 
+                    vectors(r, p, v), new int[] { beta, omega });
+                precondition(preconditioner, p, phat);
+                operator.apply(phat, v);
+                backend.dot(rhat, v, rhatv);
+                backend.computeScalars(BICGSTAB_ALPHA, 
+                    new int[] { rho, rhatv, alpha });
+                backend.executeWithScalars(BICGSTAB_S, 
+                    vectors(r, v, s), new int[] { alpha });
+                precondition(preconditioner, s, shat);
+                operator.apply(shat, t);
+                backend.dot(t, s, ts);
+                backend.dot(t, t, tt);
+                backend.computeScalars(BICGSTAB_OMEGA, 
+                    new int[] { ts, tt, omega });
+                backend.executeWithScalars(BICGSTAB_UPDATE, 
+                    vectors(x, phat, shat, s, t, r), 
+                    new int[] { alpha, omega });
+                
+                if (isCheckIteration(iteration, options))
+                {
+                    backend.dot(r, r, rr);
+                    float value = backend.readScalars(new int[] { rr })[0];
+                    residual = (float) Math.sqrt(value) / bNorm;
+                    checks++;
+                    status = check(residual, options);
+                    if (status != null)
+                    {
+                        return new SolverResult(
+                            status, iteration, residual, checks);
+                    }
+                }
+            }
+            return new SolverResult(
+                Status.MAXIMUM_ITERATIONS, iteration, residual, checks);
+        }
+        finally
+        {
+            ws.release();
+        }
+    }
+    
+    /**
+     * Solve the given system with the restarted GMRES method, using 
+     * right preconditioning and modified Gram-Schmidt orthogonalization.
+     * <br>
+     * <br>
+     * The entries of the Hessenberg matrix are computed in the backend. 
+     * They are read back to the host every 
+     * {@link SolverOptions#getCheckInterval() check interval} iterations
+     * and at the end of each cycle, where the Givens rotations are 
+     * applied and the residual norm is estimated. The update of the 
+     * solution is computed on the host from the least-squares problem, 
+     * and applied in the backend. The number of iterations is the total
+     * number of Arnoldi steps.
+     * 
+     * @param <V> The type of the vectors
+     * @param backend The backend
+     * @param operator The operator A
+     * @param preconditioner The preconditioner. May be <code>null</code>.
+     * @param b The right-hand side
+     * @param x The initial guess, which will receive the solution
+     * @param options The options
+     * @return The result
+     */
+    public static <V> SolverResult gmres(SolverBackend<V> backend, 
+        LinearOperator<V> operator, Preconditioner<V> preconditioner, 
+        V b, V x, SolverOptions options)
+    {
+        int m = Math.min(options.getRestart(), 
+            Math.max(1, backend.getSize()));
+        Workspace<V> ws = new Workspace<V>(backend);
+        try
+        {
+            List<V> basis = new ArrayList<V>();
+            for (int i = 0; i <= m; i++)
+            {
+                basis.add(ws.vector());
+            }
+            V w = ws.vector();
+            V z = preconditioner == null ? null : ws.vector();
+            int h[][] = new int[m + 1][m];
+            for (int j = 0; j < m; j++)
+            {
+                for (int i = 0; i <= j + 1; i++)
+                {
+                    h[i][j] = ws.scalar();
+                }
+            }
+            int squaredNorm = ws.scalar();
+            int norm = ws.scalar();
+            int bb = ws.scalar();
+            
+            backend.dot(b, b, bb);
+            float bNorm = (float) Math.sqrt(
+                backend.readScalars(new int[] { bb })[0]);
+            int checks = 1;
+            if (bNorm == 0.0f)
+            {
+                backend.execute(ZERO, vectors(x), NO_SCALARS);
+                return new SolverResult(Status.CONVERGED, 0, 0.0f, checks);
+            }
+            
+            double H[][] = new double[m + 1][m];
+            double cs[] = new double[m];
+            double sn[] = new double[m];
+            double g[] = new double[m + 1];
+            int iteration = 0;
+            while (true)
+            {
+                // Start a cycle with the normalized residual
+                V v0 = basis.get(0);
+                operator.apply(x, w);
+                backend.execute(RESIDUAL, vectors(b, w, v0), NO_SCALARS);
+                backend.dot(v0, v0, squaredNorm);
+                backend.computeScalars(GMRES_NORM, 
+                    new int[] { squaredNorm, norm });
+                backend.executeWithScalars(GMRES_NORMALIZE, 
+                    vectors(v0, v0), new int[] { norm });
+                float beta = (float) Math.sqrt(
+                    backend.readScalars(new int[] { squaredNorm })[0]);
+                checks++;
+                float residual = beta / bNorm;
+                Status status = check(residual, options);
+                if (status != null)
+                {
+                    return new SolverResult(
+                        status, iteration, residual, checks);
+                }
+                if (iteration >= options.getMaximumIterations())
+                {
+                    return new SolverResult(Status.MAXIMUM_ITERATIONS, 
+                        iteration, residual, checks);
+                }
+                Arrays.fill(g, 0.0);
+                g[0] = beta;
+                
+                int j = 0;
+                int processed = 0;
+                while (j < m && iteration < options.getMaximumIterations())
+                {
+                    V vj = basis.get(j);
+                    V zj = vj;
+                    if (preconditioner != null)
+                    {
+                        preconditioner.apply(vj, z);
+                        zj = z;
+                    }
+                    operator.apply(zj, w);
+                    for (int i = 0; i <= j; i++)
+                    {
+                        V vi = basis.get(i);
+                        backend.dot(w, vi, h[i][j]);
+                        backend.executeWithScalars(GMRES_ORTHOGONALIZE, 
+                            vectors(w, vi), new int[] { h[i][j] });
+                    }
+                    backend.dot(w, w, squaredNorm);
+                    backend.computeScalars(GMRES_NORM, 
+                        new int[] { squaredNorm, h[j + 1][j] });
+                    backend.executeWithScalars(GMRES_NORMALIZE, 
+                        vectors(w, basis.get(j + 1)), new int[] { h[j + 1][j] });
+                    j++;
+                    iteration++;
+                    
+                    if (j % options.getCheckInterval() == 0 || j == m || 
+                        iteration == options.getMaximumIterations())
+                    {
+                        float values[] = 
+                            backend.readScalars(columns(h, processed, j));
+                        checks++;
+                        int index = 0;
+                        for (int c = processed; c < j; c++)
+                        {
+                            for (int i = 0; i <= c + 1; i++)
+                            {
+                                H[i][c] = values[index++];
+                            }
+                            applyGivens(H, cs, sn, g, c);
+                        }
+                        processed = j;
+                        residual = (float) (Math.abs(g[j]) / bNorm);
+                        status = check(residual, options);
+                        if (status != null)
+                        {
+                            break;
+                        }
+                    }
+                }
+                if (status == Status.BREAKDOWN)
+                {
+                    return new SolverResult(
+                        status, iteration, residual, checks);
+                }
+                
+                // Update the solution with the least-squares solution
+                double y[] = solveUpperTriangular(H, g, j);
+                V u = w;
+                backend.execute(GMRES_SCALE, vectors(basis.get(0), u), 
+                    new float[] { (float) y[0] });
+                for (int i = 1; i < j; i++)
+                {
+                    backend.execute(GMRES_AXPY, vectors(u, basis.get(i)), 
+                        new float[] { (float) y[i] });
+                }
+                if (preconditioner != null)
+                {
+                    preconditioner.apply(u, z);
+                    u = z;
+                }
+                backend.execute(ADD, vectors(x, u), NO_SCALARS);
+                if (status == Status.CONVERGED)
+                {
+                    return new SolverResult(
+                        status, iteration, residual, checks);
+                }
+                if (iteration >= options.getMaximumIterations())
+                {
+                    return new SolverResult(Status.MAXIMUM_ITERATIONS, 
+                        iteration, residual, checks);
+                }
+            }
+        }
+        finally
+        {
+            ws.release();
+        }
+    }
+    
+    /**
+     * Returns the indices of the scalars of the Hessenberg matrix in the
+     * given range of columns, in column-major order
+     * 
+     * @param h The scalar indices
+     * @param from The first column, inclusive
+     * @param to The last column, exclusive
+     * @return The indices
+     */
+    private static int[] columns(int h[][], int from, int to)
+    {
+        int count = 0;
+        for (int c = from; c < to; c++)
+        {
+            count += c + 2;
+        }
+        int result[] = new int[count];
+        int index = 0;
+        for (int c = from; c < to; c++)
+        {
+            for (int i = 0; i <= c + 1; i++)
+            {
+                result[index++] = h[i][c];
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Apply the previous Givens rotations to the given column of the 
+     * Hessenberg matrix, and compute and apply the rotation that 
+     * eliminates its subdiagonal element
+     * 
+     * @param H The Hessenberg matrix
+     * @param cs The cosines of the rotations
+     * @param sn The sines of the rotations
+     * @param g The right-hand side of the least-squares problem
+     * @param c The column
+     */
+    private static void applyGivens(double H[][], double cs[], double sn[], 
+        double g[], int c)
+    {
+        for (int i = 0; i < c; i++)
+        {
+            double t = cs[i] * H[i][c] + sn[i] * H[i + 1][c];
+            H[i + 1][c] = -sn[i] * H[i][c] + cs[i] * H[i + 1][c];
+            H[i][c] = t;
+        }
+        double a = H[c][c];
+        double b = H[c + 1][c];
+        double r = Math.hypot(a, b);
+        if (r == 0.0)
+        {
+            cs[c] = 1.0;
+            sn[c] = 0.0;
+        }
+        else
+        {
+            cs[c] = a / r;
+            sn[c] = b / r;
+            H[c][c] = r;
+        }
+        H[c + 1][c] = 0.0;
+        g[c + 1] = -sn[c] * g[c];
+        g[c] = cs[c] * g[c];
+    }
+    
+    /**
+     * Solve the upper triangular system that is given by the leading
+     * n x n part of the rotated Hessenberg matrix
+     * 
+     * @param H The rotated Hessenberg matrix
+     * @param g The right-hand side
+     * @param n The size of the system
+     * @return The solution
+     */
+    private static double[] solveUpperTriangular(double H[][], double g[], 
+        int n)
+    {
+        double y[] = new double[n];
+        for (int i = n - 1; i >= 0; i--)
+        {
+            double sum = g[i];
+            for (int l = i + 1; l < n; l++)
+            {
+                sum -= H[i][l] * y[l];
+            }
+            y[i] = H[i][i] != 0.0 ? sum / H[i][i] : 0.0;
+        }
+        return y;
+    }
+    
+    /**
+     * Apply the given preconditioner, if it is not <code>null</code>. 
+     * Otherwise, the vectors are expected to be identical.
+     * 
+     * @param <V> The type of the vectors
+     * @param preconditioner The preconditioner
+     * @param r The input vector
+     * @param z The output vector
+     */
+    private static <V> void precondition(
+        Preconditioner<V> preconditioner, V r, V z)
+    {
+        if (preconditioner != null)
+        {
+            preconditioner.apply(r, z);
+        }
+    }
+    
+    /**
+     * Returns whether the convergence should be checked in the given
+     * iteration
+     * 
+     * @param iteration The iteration, starting at 1
+     * @param options The options
+     * @return Whether the convergence should be checked
+     */
+    private static boolean isCheckIteration(
+        int iteration, SolverOptions options)
+    {
+        return iteration % options.getCheckInterval() == 0 || 
+            iteration == options.getMaximumIterations();
+    }
+    
+    /**
+     * Returns the status for the given relative residual norm, or 
+     * <code>null</code> if the iteration should continue
+     * 
+     * @param residual The relative residual norm
+     * @param options The options
+     * @return The status
+     */
+    private static Status check(float residual, SolverOptions options)
+    {
+        if (Float.isNaN(residual) || Float.isInfinite(residual))
+        {
+            return Status.BREAKDOWN;
+        }
+        if (residual <= options.getTolerance())
+        {
+            return Status.CONVERGED;
+        }
+        return null;
+    }
+    
+    /**
+     * Returns a list containing the given vector. The list and the 
+     * overloads of this method for more vectors are used instead of a 
+     * generic varargs method, which would cause unchecked warnings.
+     * 
+     * @param <V> The type of the vectors
+     * @param v0 The vector
+     * @return The list
+     */
+    private static <V> List<V> vectors(V v0)
+    {
+        List<V> list = new ArrayList<V>();
+        list.add(v0);
+        return list;
+    }
+    
+    /**
+     * Returns a list containing the given vectors
+     * 
+     * @param <V> The type of the vectors
+     * @param v0 The first vector
+     * @param v1 The second vector
+     * @return The list
+     */
+    private static <V> List<V> vectors(V v0, V v1)
+    {
+        List<V> list = vectors(v0);
+        list.add(v1);
+        return list;
+    }
+    
+    /**
+     * Returns a list containing the given vectors
+     * 
+     * @param <V> The type of the vectors
+     * @param v0 The first vector
+     * @param v1 The second vector
+     * @param v2 The third vector
+     * @return The list
+     */
+    private static <V> List<V> vectors(V v0, V v1, V v2)
+    {
+        List<V> list = vectors(v0, v1);
+        list.add(v2);
+        return list;
+    }
+    
+    /**
+     * Returns a list containing the given vectors
+     * 
+     * @param <V> The type of the vectors
+     * @param v0 The first vector
+     * @param v1 The second vector
+     * @param v2 The third vector
+     * @param v3 The fourth vector
+     * @return The list
+     */
+    private static <V> List<V> vectors(V v0, V v1, V v2, V v3)
+    {
+        List<V> list = vectors(v0, v1, v2);
+        list.add(v3);
+        return list;
+    }
+    
+    /**
+     * Returns a list containing the given vectors
+     * 
+     * @param <V> The type of the vectors
+     * @param v0 The first vector
+     * @param v1 The second vector
+     * @param v2 The third vector
+     * @param v3 The fourth vector
+     * @param v4 The fifth vector
+     * @param v5 The sixth vector
+     * @return The list
+     */
+    private static <V> List<V> vectors(V v0, V v1, V v2, V v3, V v4, V v5)
+    {
+        List<V> list = vectors(v0, v1, v2, v3);
+        list.add(v4);
+        list.add(v5);
+        return list;
+    }
+    
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private IterativeSolvers()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
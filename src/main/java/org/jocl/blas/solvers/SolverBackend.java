@@ -0,0 +1,140 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.solvers;
+
+import java.util.List;
+
+import org.jocl.blas.fused.FusedChain;
+
+/**
+ * Interface for the storage and the elementary operations that the
+ * {@link IterativeSolvers} are built on. <br>
+ * <br>
+ * A backend manages vectors of a fixed size, and scalars, which are 
+ * identified by an index. Scalars reside in the same memory as the 
+ * vectors, so that the result of a reduction can be used as a factor 
+ * of a subsequent operation without transferring it to the host. The 
+ * only operation that requires a transfer, and therefore a 
+ * synchronization, is {@link #readScalars(int[])}. <br>
+ * <br>
+ * All vector updates are expressed as {@link FusedChain} instances, so
+ * that the updates of one iteration can be executed in a single pass.
+ * 
+ * @param <V> The type of the vectors
+ */
+public interface SolverBackend<V>
+{
+    /**
+     * Returns the size of the vectors
+     * 
+     * @return The size
+     */
+    int getSize();
+    
+    /**
+     * Create a new vector, with unspecified contents
+     * 
+     * @return The vector
+     */
+    V createVector();
+    
+    /**
+     * Release the given vector, which was created by this backend
+     * 
+     * @param vector The vector
+     */
+    void releaseVector(V vector);
+    
+    /**
+     * Create a new scalar, with unspecified value
+     * 
+     * @return The index of the scalar
+     */
+    int createScalar();
+    
+    /**
+     * Release the given scalar
+     * 
+     * @param scalar The index of the scalar
+     */
+    void releaseScalar(int scalar);
+    
+    /**
+     * Compute the dot product of the given vectors, and store it in the
+     * given scalar
+     * 
+     * @param x The first vector
+     * @param y The second vector
+     * @param result The index of the scalar for the result
+     */
+    void dot(V x, V y, int result);
+    
+    /**
+     * Execute the given chain for the given vectors, with the given 
+     * scalar values from the host
+     * 
+     * @param chain The chain
+     * @param vectors The vectors, in the order of the 
+     * {@link FusedChain#getVectorNames() vector names}
+     * @param scalars The scalars, in the order of the 
+     * {@link FusedChain#getScalarNames() scalar names}
+     */
+    void execute(FusedChain chain, List<V> vectors, float scalars[]);
+    
+    /**
+     * Execute the given chain for the given vectors, with the scalars
+     * of this backend
+     * 
+     * @param chain The chain
+     * @param vectors The vectors, in the order of the 
+     * {@link FusedChain#getVectorNames() vector names}
+     * @param scalars The indices of the scalars, in the order of the 
+     * {@link FusedChain#getScalarNames() scalar names}
+     */
+    void executeWithScalars(
+        FusedChain chain, List<V> vectors, int scalars[]);
+    
+    /**
+     * Execute the given chain for scalars of this backend. The vectors
+     * of the chain are bound to the given scalars, which are treated as
+     * vectors of length 1, and the chain may not have any scalars.
+     * 
+     * @param chain The chain
+     * @param scalars The indices of the scalars, in the order of the 
+     * {@link FusedChain#getVectorNames() vector names}
+     */
+    void computeScalars(FusedChain chain, int scalars[]);
+    
+    /**
+     * Read the values of the given scalars. This waits until all 
+     * operations that have been started by this backend are completed.
+     * 
+     * @param scalars The indices of the scalars
+     * @return The values
+     */
+    float[] readScalars(int scalars[]);
+}
@@ -0,0 +1,218 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.solvers;
+
+/**
+ * The options for the {@link IterativeSolvers}. <br>
+ * <br>
+ * Instances of this class are immutable. New instances are created from
+ * {@link #DEFAULT} by calling the <code>with...</code> methods:
+ * <pre><code>
+ * SolverOptions options = SolverOptions.DEFAULT
+ *     .withTolerance(1e-5f)
+ *     .withCheckInterval(10);
+ * </code></pre>
+ */
+public final class SolverOptions
+{
+    /**
+     * The default options: At most 1000 iterations, a relative tolerance
+     * of 1e-6, a convergence check every 8 iterations, and a restart 
+     * length of 30 for GMRES.
+     */
+    public static final SolverOptions DEFAULT = 
+        new SolverOptions(1000, 1e-6f, 8, 30);
+    
+    /**
+     * The maximum number of iterations
+     */
+    private final int maximumIterations;
+    
+    /**
+     * The relative tolerance for the residual norm
+     */
+    private final float tolerance;
+    
+    /**
+     * The number of iterations between two convergence checks
+     */
+    private final int checkInterval;
+    
+    /**
+     * The number of iterations after which GMRES is restarted
+     */
+    private final int restart;
+    
+    /**
+     * Creates new options
+     * 
+     * @param maximumIterations The maximum number of iterations
+     * @param tolerance The relative tolerance
+     * @param checkInterval The check interval
+     * @param restart The restart length
+     */
+    private SolverOptions(int maximumIterations, float tolerance, 
+        int checkInterval, int restart)
+    {
+        this.maximumIterations = maximumIterations;
+        this.tolerance = tolerance;
+        this.checkInterval = checkInterval;
+        this.restart = restart;
+    }
+    
+    /**
+     * Returns a copy of these options with the given maximum number of 
+     * iterations
+     * 
+     * @param maximumIterations The maximum number of iterations
+     * @return The new options
+     * @throws IllegalArgumentException If the value is not positive
+     */
+    public SolverOptions withMaximumIterations(int maximumIterations)
+    {
+        if (maximumIterations <= 0)
+        {
+            throw new IllegalArgumentException(
+                "The maximum number of iterations must be positive, " + 
+                "but is " + maximumIterations);
+        }
+        return new SolverOptions(
+            maximumIterations, tolerance, checkInterval, restart);
+    }
+    
+    /**
+     * Returns a copy of these options with the given tolerance. A solver
+     * has converged when the norm of the residual, divided by the norm
+     * of the right-hand side, is not larger than the tolerance.
+     * 
+     * @param tolerance The relative tolerance
+     * @return The new options
+     * @throws IllegalArgumentException If the value is negative or NaN
+     */
+    public SolverOptions withTolerance(float tolerance)
+    {
+        if (!(tolerance >= 0))
+        {
+            throw new IllegalArgumentException(
+                "The tolerance may not be negative, but is " + tolerance);
+        }
+        return new SolverOptions(
+            maximumIterations, tolerance, checkInterval, restart);
+    }
+    
+    /**
+     * Returns a copy of these options with the given check interval.
+     * Checking the convergence requires the residual norm to be read 
+     * back to the host, which is a synchronization point. So the 
+     * convergence is only checked every <code>checkInterval</code> 
+     * iterations, at the cost of executing up to 
+     * <code>checkInterval-1</code> more iterations than necessary.
+     * 
+     * @param checkInterval The check interval
+     * @return The new options
+     * @throws IllegalArgumentException If the value is not positive
+     */
+    public SolverOptions withCheckInterval(int checkInterval)
+    {
+        if (checkInterval <= 0)
+        {
+            throw new IllegalArgumentException(
+                "The check interval must be positive, but is " + 
+                checkInterval);
+        }
+        return new SolverOptions(
+            maximumIterations, tolerance, checkInterval, restart);
+    }
+
+    /**
+     * Returns a copy of these options with the given restart length for
+     * GMRES, which is the maximum dimension of the Krylov subspace 
+     * before the method is restarted
+     * 
+     * @param restart The restart length
+     * @return The new options
+     * @throws IllegalArgumentException If the value is not positive
+     */
+    public SolverOptions withRestart(int restart)
+    {
+        if (restart <= 0)
+        {
+            throw new IllegalArgumentException(
+                "The restart length must be positive, but is " + restart);
+        }
+        return new SolverOptions(
+            maximumIterations, tolerance, checkInterval, restart);
+    }
+    
+    /**
+     * Returns the maximum number of iterations
+     * 
+     * @return The maximum number of iterations
+     */
+    public int getMaximumIterations()
+    {
+        return maximumIterations;
+    }
+
+    /**
+     * Returns the relative tolerance
+     * 
+     * @return The tolerance
+     */
+    public float getTolerance()
+    {
+        return tolerance;
+    }
+
+    /**
+     * Returns the number of iterations between two convergence checks
+     * 
+     * @return The check interval
+     */
+    public int getCheckInterval()
+    {
+        return checkInterval;
+    }
+
+    /**
+     * Returns the restart length for GMRES
+     * 
+     * @return The restart length
+     */
+    public int getRestart()
+    {
+        return restart;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "SolverOptions[maximumIterations=" + maximumIterations + 
+            ", tolerance=" + tolerance + ", checkInterval=" + checkInterval +
+            ", restart=" + restart + "]";
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.solvers;
+
+/**
+ * The result of one of the {@link IterativeSolvers}
+ */
+public final class SolverResult
+{
+    /**
+     * The reasons for the termination of a solver
+     */
+    public enum Status
+    {
+        /**
+         * The relative residual norm reached the tolerance
+         */
+        CONVERGED,
+        
+        /**
+         * The maximum number of iterations was reached
+         */
+        MAXIMUM_ITERATIONS,
+        
+        /**
+         * The method broke down, and the residual norm is not finite
+         */
+        BREAKDOWN
+    }
+    
+    /**
+     * The status
+     */
+    private final Status status;
+    
+    /**
+     * The number of iterations
+     */
+    private final int iterations;
+    
+    /**
+     * The relative residual norm at the last check
+     */
+    private final float relativeResidual;
+    
+    /**
+     * The number of convergence checks
+     */
+    private final int checks;
+    
+    /**
+     * Creates a new result
+     * 
+     * @param status The status
+     * @param iterations The number of iterations
+     * @param relativeResidual The relative residual norm
+     * @param checks The number of convergence checks
+     */
+    SolverResult(Status status, int iterations, float relativeResidual, 
+        int checks)
+    {
+        this.status = status;
+        this.iterations = iterations;
+        this.relativeResidual = relativeResidual;
+        this.checks = checks;
+    }
+    
+    /**
+     * Returns the reason for the termination of the solver
+     * 
+     * @return The status
+     */
+    public Status getStatus()
+    {
+        return status;
+    }
+    
+    /**
+     * Returns whether the solver converged
+     * 
+     * @return Whether the solver converged
+     */
+    public boolean isConverged()
+    {
+        return status == Status.CONVERGED;
+    }
+    
+    /**
+     * Returns the number of iterations that have been executed
+     * 
+     * @return The number of iterations
+     */
+    public int getIterations()
+    {
+        return iterations;
+    }
+    
+    /**
+     * Returns the norm of the residual, divided by the norm of the 
+     * right-hand side, as of the last convergence check. For GMRES, 
+     * this is the estimate from the least-squares problem.
+     * 
+     * @return The relative residual norm
+     */
+    public float getRelativeResidual()
+    {
+        return relativeResidual;
+    }
+    
+    /**
+     * Returns the number of convergence checks, each of which required 
+     * values to be read back to the host
+     * 
+     * @return The number of checks
+     */
+    public int getChecks()
+    {
+        return checks;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "SolverResult[status=" + status + ", iterations=" + 
+            iterations + ", relativeResidual=" + relativeResidual + 
+            ", checks=" + checks + "]";
+    }
+}
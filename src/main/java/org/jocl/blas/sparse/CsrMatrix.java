@@ -0,0 +1,251 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.sparse;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+
+import java.util.Arrays;
+
+/**
+ * A sparse matrix in the compressed sparse row (CSR) format. <br>
+ * <br>
+ * The column indices and values of the non-zero elements of row i are 
+ * stored at the indices rowPointers[i] to rowPointers[i+1]-1 of the 
+ * respective arrays. The column indices within one row do not have to 
+ * be sorted. <br>
+ * <br>
+ * Instances of this class are immutable.
+ */
+public final class CsrMatrix
+{
+    /**
+     * The number of rows
+     */
+    private final int rows;
+    
+    /**
+     * The number of columns
+     */
+    private final int columns;
+    
+    /**
+     * The row pointers, with rows+1 elements
+     */
+    final int rowPointers[];
+    
+    /**
+     * The column indices of the non-zero elements
+     */
+    final int columnIndices[];
+    
+    /**
+     * The values of the non-zero elements
+     */
+    final float values[];
+    
+    /**
+     * Creates a new CSR matrix. The given arrays are copied.
+     * 
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param rowPointers The row pointers, with rows+1 elements
+     * @param columnIndices The column indices of the non-zero elements
+     * @param values The values of the non-zero elements
+     * @throws IllegalArgumentException If the given arrays do not 
+     * describe a valid rows x columns CSR matrix
+     */
+    public CsrMatrix(int rows, int columns, 
+        int rowPointers[], int columnIndices[], float values[])
+    {
+        if (rows < 0 || columns < 0)
+        {
+            throw new IllegalArgumentException(
+                "Invalid size: " + rows + " x " + columns);
+        }
+        if (rowPointers.length != rows + 1 || rowPointers[0] != 0)
+        {
+            throw new IllegalArgumentException(
+                "Expected " + (rows + 1) + " row pointers, starting at 0");
+        }
+        int nnz = rowPointers[rows];
+        if (columnIndices.length < nnz || values.length < nnz)
+        {
+            throw new IllegalArgumentException(
+                "Expected " + nnz + " column indices and values");
+        }
+        for (int i = 0; i < rows; i++)
+        {
+            if (rowPointers[i + 1] < rowPointers[i])
+            {
+                throw new IllegalArgumentException(
+                    "The row pointers are not monotonic at row " + i);
+            }
+        }
+        for (int k = 0; k < nnz; k++)
+        {
+            if (columnIndices[k] < 0 || columnIndices[k] >= columns)
+            {
+                throw new IllegalArgumentException(
+                    "Invalid column index " + columnIndices[k] + 
+                    " for " + columns + " columns");
+            }
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.rowPointers = rowPointers.clone();
+        this.columnIndices = Arrays.copyOf(columnIndices, nnz);
+        this.values = Arrays.copyOf(values, nnz);
+    }
+    
+    /**
+     * Creates a CSR matrix containing the non-zero elements of the given
+     * dense matrix
+     * 
+     * @param order The {@link org.jocl.blas.clblasOrder}
+     * @param M The number of rows
+     * @param N The number of columns
+     * @param A The dense matrix
+     * @param offA The offset of the matrix
+     * @param lda The leading dimension of the matrix
+     * @return The CSR matrix
+     */
+    public static CsrMatrix fromDense(int order, int M, int N, 
+        float A[], int offA, int lda)
+    {
+        int si = order == clblasRowMajor ? lda : 1;
+        int sj = order == clblasRowMajor ? 1 : lda;
+        int rowPointers[] = new int[M + 1];
+        for (int i = 0; i < M; i++)
+        {
+            int count = 0;
+            for (int j = 0; j < N; j++)
+            {
+                if (A[offA + i * si + j * sj] != 0.0f)
+                {
+                    count++;
+                }
+            }
+            rowPointers[i + 1] = rowPointers[i] + count;
+        }
+        int columnIndices[] = new int[rowPointers[M]];
+        float values[] = new float[rowPointers[M]];
+        int k = 0;
+        for (int i = 0; i < M; i++)
+        {
+            for (int j = 0; j < N; j++)
+            {
+                float a = A[offA + i * si + j * sj];
+                if (a != 0.0f)
+                {
+                    columnIndices[k] = j;
+                    values[k] = a;
+                    k++;
+                }
+            }
+        }
+        return new CsrMatrix(M, N, rowPointers, columnIndices, values);
+    }
+    
+    /**
+     * Returns the number of rows
+     * 
+     * @return The number of rows
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+    
+    /**
+     * Returns the number of columns
+     * 
+     * @return The number of columns
+     */
+    public int getColumns()
+    {
+        return columns;
+    }
+    
+    /**
+     * Returns the number of non-zero elements
+     * 
+     * @return The number of non-zero elements
+     */
+    public int getNonZeroCount()
+    {
+        return rowPointers[rows];
+    }
+    
+    /**
+     * Returns the number of non-zero elements in the given row
+     * 
+     * @param row The row
+     * @return The number of non-zero elements
+     * @throws IndexOutOfBoundsException If the row is not valid
+     */
+    public int getRowLength(int row)
+    {
+        return rowPointers[row + 1] - rowPointers[row];
+    }
+    
+    /**
+     * Returns a copy of the row pointers
+     * 
+     * @return The row pointers
+     */
+    public int[] getRowPointers()
+    {
+        return rowPointers.clone();
+    }
+    
+    /**
+     * Returns a copy of the column indices
+     * 
+     * @return The column indices
+     */
+    public int[] getColumnIndices()
+    {
+        return columnIndices.clone();
+    }
+    
+    /**
+     * Returns a copy of the values
+     * 
+     * @return The values
+     */
+    public float[] getValues()
+    {
+        return values.clone();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "CsrMatrix[" + rows + "x" + columns + 
+            ", nnz=" + getNonZeroCount() + "]";
+    }
+}
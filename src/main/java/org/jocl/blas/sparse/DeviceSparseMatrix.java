@@ -0,0 +1,317 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.sparse;
+
+import org.jocl.CL;
+import org.jocl.CLException;
+import org.jocl.Pointer;
+import org.jocl.Sizeof;
+import org.jocl.cl_context;
+import org.jocl.cl_mem;
+
+/**
+ * A sparse matrix whose arrays are stored in <code>cl_mem</code> 
+ * objects, in the {@link SparseFormat#CSR CSR} or the 
+ * {@link SparseFormat#ELL ELL} format. Instances are created from a
+ * {@link CsrMatrix}, and may be used in the products of a 
+ * {@link SparseExecutor}. The memory objects have to be released by 
+ * calling {@link #release()}.
+ */
+public final class DeviceSparseMatrix
+{
+    /**
+     * The format
+     */
+    private final SparseFormat format;
+    
+    /**
+     * The number of rows
+     */
+    private final int rows;
+    
+    /**
+     * The number of columns
+     */
+    private final int columns;
+    
+    /**
+     * The number of non-zero elements
+     */
+    private final int nonZeroCount;
+    
+    /**
+     * The width, for the ELL format, or 0
+     */
+    private final int width;
+    
+    /**
+     * The row pointers, for the CSR format, or <code>null</code>
+     */
+    private final cl_mem rowPointers;
+    
+    /**
+     * The column indices
+     */
+    private final cl_mem columnIndices;
+    
+    /**
+     * The values
+     */
+    private final cl_mem values;
+    
+    /**
+     * Creates a new device sparse matrix
+     * 
+     * @param format The format
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param nonZeroCount The number of non-zero elements
+     * @param width The width
+     * @param rowPointers The row pointers
+     * @param columnIndices The column indices
+     * @param values The values
+     */
+    private DeviceSparseMatrix(SparseFormat format, 
+        int rows, int columns, int nonZeroCount, int width, 
+        cl_mem rowPointers, cl_mem columnIndices, cl_mem values)
+    {
+        this.format = format;
+        this.rows = rows;
+        this.columns = columns;
+        this.nonZeroCount = nonZeroCount;
+        this.width = width;
+        this.rowPointers = rowPointers;
+        this.columnIndices = columnIndices;
+        this.values = values;
+    }
+    
+    /**
+     * Creates a device sparse matrix for the given matrix, in the format
+     * that is chosen with {@link SparseFormat#select(CsrMatrix)}
+     * 
+     * @param context The context
+     * @param matrix The matrix
+     * @return The device sparse matrix
+     * @throws CLException If the memory objects can not be created
+     */
+    public static DeviceSparseMatrix create(
+        cl_context context, CsrMatrix matrix)
+    {
+        return create(context, matrix, SparseFormat.select(matrix));
+    }
+    
+    /**
+     * Creates a device sparse matrix for the given matrix, in the given
+     * format
+     * 
+     * @param context The context
+     * @param matrix The matrix
+     * @param format The format
+     * @return The device sparse matrix
+     * @throws CLException If the memory objects can not be created
+     */
+    public static DeviceSparseMatrix create(
+        cl_context context, CsrMatrix matrix, SparseFormat format)
+    {
+        int rows = matrix.getRows();
+        int columns = matrix.getColumns();
+        int nnz = matrix.getNonZeroCount();
+        if (format == SparseFormat.ELL)
+        {
+            EllMatrix ell = EllMatrix.fromCsr(matrix);
+            cl_mem columnIndices = createBuffer(context, 
+                Pointer.to(nonEmpty(ell.columnIndices)), 
+                ell.columnIndices.length * Sizeof.cl_int);
+            cl_mem values = createBuffer(context, 
+                Pointer.to(nonEmpty(ell.values)), 
+                ell.values.length * Sizeof.cl_float);
+            return new DeviceSparseMatrix(format, rows, columns, nnz, 
+                ell.getWidth(), null, columnIndices, values);
+        }
+        cl_mem rowPointers = createBuffer(context, 
+            Pointer.to(matrix.rowPointers), 
+            matrix.rowPointers.length * Sizeof.cl_int);
+        cl_mem columnIndices = createBuffer(context, 
+            Pointer.to(nonEmpty(matrix.columnIndices)), 
+            nnz * Sizeof.cl_int);
+        cl_mem values = createBuffer(context, 
+            Pointer.to(nonEmpty(matrix.values)), 
+            nnz * Sizeof.cl_float);
+        return new DeviceSparseMatrix(format, rows, columns, nnz, 0, 
+            rowPointers, columnIndices, values);
+    }
+    
+    /**
+     * Returns the format
+     * 
+     * @return The format
+     */
+    public SparseFormat getFormat()
+    {
+        return format;
+    }
+    
+    /**
+     * Returns the number of rows
+     * 
+     * @return The number of rows
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+    
+    /**
+     * Returns the number of columns
+     * 
+     * @return The number of columns
+     */
+    public int getColumns()
+    {
+        return columns;
+    }
+    
+    /**
+     * Returns the number of non-zero elements
+     * 
+     * @return The number of non-zero elements
+     */
+    public int getNonZeroCount()
+    {
+        return nonZeroCount;
+    }
+    
+    /**
+     * Returns the number of slots of each row for the ELL format, or 0 
+     * for the CSR format
+     * 
+     * @return The width
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+    
+    /**
+     * Returns the row pointers for the CSR format, or <code>null</code>
+     * for the ELL format
+     * 
+     * @return The row pointers
+     */
+    cl_mem getRowPointers()
+    {
+        return rowPointers;
+    }
+    
+    /**
+     * Returns the column indices
+     * 
+     * @return The column indices
+     */
+    cl_mem getColumnIndices()
+    {
+        return columnIndices;
+    }
+    
+    /**
+     * Returns the values
+     * 
+     * @return The values
+     */
+    cl_mem getValues()
+    {
+        return values;
+    }
+    
+    /**
+     * Release the memory objects of this matrix
+     */
+    public void release()
+    {
+        if (rowPointers != null)
+        {
+            CL.clReleaseMemObject(rowPointers);
+        }
+        CL.clReleaseMemObject(columnIndices);
+        CL.clReleaseMemObject(values);
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "DeviceSparseMatrix[" + format + ", " + rows + "x" + 
+            columns + ", nnz=" + nonZeroCount + "]";
+    }
+    
+    /**
+     * Returns the given array, or an array with one element if the
+     * given array is empty, because memory objects can not be empty
+     * 
+     * @param array The array
+     * @return The non-empty array
+     */
+    private static int[] nonEmpty(int array[])
+    {
+        return array.length == 0 ? new int[1] : array;
+    }
+
+    /**
+     * Returns the given array, or an array with one element if the
+     * given array is empty, because memory objects can not be empty
+     * 
+     * @param array The array
+     * @return The non-empty array
+     */
+    private static float[] nonEmpty(float array[])
+    {
+        return array.length == 0 ? new float[1] : array;
+    }
+    
+    /**
+     * Creates a read-only buffer that is initialized with the given data
+     * 
+     * @param context The context
+     * @param data The data
+     * @param size The size in bytes
+     * @return The buffer
+     * @throws CLException If the buffer can not be created
+     */
+    private static cl_mem createBuffer(cl_context context, 
+        Pointer data, long size)
+    {
+        int errcode[] = { 0 };
+        cl_mem buffer = CL.clCreateBuffer(context, 
+            CL.CL_MEM_READ_ONLY | CL.CL_MEM_COPY_HOST_PTR, 
+            Math.max(size, Sizeof.cl_int), data, errcode);
+        if (errcode[0] != CL.CL_SUCCESS)
+        {
+            throw new CLException("clCreateBuffer failed: " + 
+                CL.stringFor_errorCode(errcode[0]), errcode[0]);
+        }
+        return buffer;
+    }
+}
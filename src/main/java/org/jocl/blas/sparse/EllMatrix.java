@@ -0,0 +1,182 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.sparse;
+
+import java.util.Arrays;
+
+/**
+ * A sparse matrix in the ELLPACK (ELL) format. <br>
+ * <br>
+ * Each row is padded to the same number of elements, which is the 
+ * maximum number of non-zero elements in any row. The elements are 
+ * stored slot by slot: Slot k of row i is stored at index k*rows+i, 
+ * so that the work items that process consecutive rows access 
+ * consecutive memory locations. Padding slots have a column index of 
+ * -1 and a value of 0. <br>
+ * <br>
+ * This format is efficient for matrices where all rows have a similar 
+ * number of non-zero elements. See {@link SparseFormat#select}. <br>
+ * <br>
+ * Instances of this class are immutable.
+ */
+public final class EllMatrix
+{
+    /**
+     * The number of rows
+     */
+    private final int rows;
+    
+    /**
+     * The number of columns
+     */
+    private final int columns;
+    
+    /**
+     * The number of slots of each row
+     */
+    private final int width;
+    
+    /**
+     * The column indices, with width*rows elements
+     */
+    final int columnIndices[];
+    
+    /**
+     * The values, with width*rows elements
+     */
+    final float values[];
+    
+    /**
+     * Creates a new ELL matrix
+     * 
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param width The number of slots of each row
+     * @param columnIndices The column indices
+     * @param values The values
+     */
+    private EllMatrix(int rows, int columns, int width, 
+        int columnIndices[], float values[])
+    {
+        this.rows = rows;
+        this.columns = columns;
+        this.width = width;
+        this.columnIndices = columnIndices;
+        this.values = values;
+    }
+    
+    /**
+     * Creates an ELL matrix containing the elements of the given CSR 
+     * matrix
+     * 
+     * @param csr The CSR matrix
+     * @return The ELL matrix
+     */
+    public static EllMatrix fromCsr(CsrMatrix csr)
+    {
+        int rows = csr.getRows();
+        int width = 0;
+        for (int i = 0; i < rows; i++)
+        {
+            width = Math.max(width, csr.getRowLength(i));
+        }
+        int columnIndices[] = new int[width * rows];
+        float values[] = new float[width * rows];
+        Arrays.fill(columnIndices, -1);
+        for (int i = 0; i < rows; i++)
+        {
+            int k0 = csr.rowPointers[i];
+            int k1 = csr.rowPointers[i + 1];
+            for (int k = k0; k < k1; k++)
+            {
+                int index = (k - k0) * rows + i;
+                columnIndices[index] = csr.columnIndices[k];
+                values[index] = csr.values[k];
+            }
+        }
+        return new EllMatrix(
+            rows, csr.getColumns(), width, columnIndices, values);
+    }
+    
+    /**
+     * Returns the number of rows
+     * 
+     * @return The number of rows
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+    
+    /**
+     * Returns the number of columns
+     * 
+     * @return The number of columns
+     */
+    public int getColumns()
+    {
+        return columns;
+    }
+    
+    /**
+     * Returns the number of slots of each row, which is the maximum 
+     * number of non-zero elements in any row
+     * 
+     * @return The width
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+    
+    /**
+     * Returns a copy of the column indices
+     * 
+     * @return The column indices
+     */
+    public int[] getColumnIndices()
+    {
+        return columnIndices.clone();
+    }
+    
+    /**
+     * Returns a copy of the values
+     * 
+     * @return The values
+     */
+    public float[] getValues()
+    {
+        return values.clone();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "EllMatrix[" + rows + "x" + columns + 
+            ", width=" + width + "]";
+    }
+}
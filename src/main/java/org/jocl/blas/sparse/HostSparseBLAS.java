@@ -0,0 +1,455 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.sparse;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Pure Java implementations of sparse matrix-vector and sparse 
+ * matrix-dense matrix products, operating on host arrays. <br>
+ * <br>
+ * The methods have the same semantics as the respective methods of 
+ * the {@link SparseExecutor}. The rows of the sparse matrix are split 
+ * into ranges that contain roughly the same number of non-zero 
+ * elements. One range is processed by the calling thread, and the 
+ * remaining ones are forked to the given executor and joined before 
+ * the method returns. If the executor is <code>null</code>, or the 
+ * matrix is small, all rows are processed by the calling thread.
+ */
+public final class HostSparseBLAS
+{
+    /**
+     * The minimum number of multiply-add operations that justify 
+     * forking a task
+     */
+    static final int MINIMUM_WORK_PER_TASK = 16384;
+    
+    /**
+     * Interface for the computation for a range of rows
+     */
+    private static interface RowRange
+    {
+        /**
+         * Compute the results for the given range of rows
+         * 
+         * @param row0 The first row, inclusive
+         * @param row1 The last row, exclusive
+         */
+        void compute(int row0, int row1);
+    }
+    
+    /**
+     * Computes y = alpha * A * x + beta * y for a CSR matrix A.
+     * If beta is 0, then y does not have to be initialized.
+     * 
+     * @param executor The executor for the forked tasks. May be 
+     * <code>null</code>.
+     * @param alpha The factor of A*x
+     * @param A The matrix A
+     * @param x The vector x
+     * @param offx The offset of x
+     * @param incx The increment of x
+     * @param beta The factor of y
+     * @param y The vector y
+     * @param offy The offset of y
+     * @param incy The increment of y
+     * @throws InterruptedException If the thread is interrupted while 
+     * waiting for the forked tasks
+     */
+    public static void scsrmv(ExecutorService executor, final float alpha, 
+        final CsrMatrix A, final float x[], int offx, final int incx, 
+        final float beta, final float y[], int offy, final int incy) 
+        throws InterruptedException
+    {
+        final int x0 = start(offx, incx, A.getColumns());
+        final int y0 = start(offy, incy, A.getRows());
+        forkJoin(executor, partition(A.rowPointers, 1), new RowRange()
+        {
+            @Override
+            public void compute(int row0, int row1)
+            {
+                for (int i = row0; i < row1; i++)
+                {
+                    float sum = 0.0f;
+                    for (int k = A.rowPointers[i]; 
+                        k < A.rowPointers[i + 1]; k++)
+                    {
+                        sum += A.values[k] * 
+                            x[x0 + A.columnIndices[k] * incx];
+                    }
+                    int iy = y0 + i * incy;
+                    y[iy] = combine(alpha, sum, beta, y[iy]);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Computes y = alpha * A * x + beta * y for an ELL matrix A.
+     * If beta is 0, then y does not have to be initialized.
+     * 
+     * @param executor The executor for the forked tasks. May be 
+     * <code>null</code>.
+     * @param alpha The factor of A*x
+     * @param A The matrix A
+     * @param x The vector x
+     * @param offx The offset of x
+     * @param incx The increment of x
+     * @param beta The factor of y
+     * @param y The vector y
+     * @param offy The offset of y
+     * @param incy The increment of y
+     * @throws InterruptedException If the thread is interrupted while 
+     * waiting for the forked tasks
+     */
+    public static void sellmv(ExecutorService executor, final float alpha, 
+        final EllMatrix A, final float x[], int offx, final int incx, 
+        final float beta, final float y[], int offy, final int incy) 
+        throws InterruptedException
+    {
+        final int rows = A.getRows();
+        final int width = A.getWidth();
+        final int x0 = start(offx, incx, A.getColumns());
+        final int y0 = start(offy, incy, rows);
+        forkJoin(executor, partition(rows, width), new RowRange()
+        {
+            @Override
+            public void compute(int row0, int row1)
+            {
+                for (int i = row0; i < row1; i++)
+                {
+                    float sum = 0.0f;
+                    for (int k = 0; k < width; k++)
+                    {
+                        int column = A.columnIndices[k * rows + i];
+                        if (column >= 0)
+                        {
+                            sum += A.values[k * rows + i] * 
+                                x[x0 + column * incx];
+                        }
+                    }
+                    int iy = y0 + i * incy;
+                    y[iy] = combine(alpha, sum, beta, y[iy]);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Computes C = alpha * A * B + beta * C for a CSR matrix A, where 
+     * B and C are dense matrices with N columns. If beta is 0, then C 
+     * does not have to be initialized.
+     * 
+     * @param executor The executor for the forked tasks. May be 
+     * <code>null</code>.
+     * @param order The {@link org.jocl.blas.clblasOrder} of B and C
+     * @param N The number of columns of B and C
+     * @param alpha The factor of A*B
+     * @param A The matrix A
+     * @param B The matrix B
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     * @throws InterruptedException If the thread is interrupted while 
+     * waiting for the forked tasks
+     */
+    public static void scsrmm(ExecutorService executor, int order, 
+        final int N, final float alpha, final CsrMatrix A, 
+        final float B[], final int offB, int ldb, final float beta, 
+        final float C[], final int offC, int ldc) 
+        throws InterruptedException
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        final int sBi = rowMajor ? ldb : 1;
+        final int sBj = rowMajor ? 1 : ldb;
+        final int sCi = rowMajor ? ldc : 1;
+        final int sCj = rowMajor ? 1 : ldc;
+        forkJoin(executor, partition(A.rowPointers, N), new RowRange()
+        {
+            @Override
+            public void compute(int row0, int row1)
+            {
+                float sums[] = new float[N];
+                for (int i = row0; i < row1; i++)
+                {
+                    for (int j = 0; j < N; j++)
+                    {
+                        sums[j] = 0.0f;
+                    }
+                    for (int k = A.rowPointers[i]; 
+                        k < A.rowPointers[i + 1]; k++)
+                    {
+                        float a = A.values[k];
+                        int b0 = offB + A.columnIndices[k] * sBi;
+                        for (int j = 0; j < N; j++)
+                        {
+                            sums[j] += a * B[b0 + j * sBj];
+                        }
+                    }
+                    for (int j = 0; j < N; j++)
+                    {
+                        int c = offC + i * sCi + j * sCj;
+                        C[c] = combine(alpha, sums[j], beta, C[c]);
+                    }
+                }
+            }
+        });
+    }
+    
+    /**
+     * Computes C = alpha * A * B + beta * C for an ELL matrix A, where 
+     * B and C are dense matrices with N columns. If beta is 0, then C 
+     * does not have to be initialized.
+     * 
+     * @param executor The executor for the forked tasks. May be 
+     * <code>null</code>.
+     * @param order The {@link org.jocl.blas.clblasOrder} of B and C
+     * @param N The number of columns of B and C
+     * @param alpha The factor of A*B
+     * @param A The matrix A
+     * @param B The matrix B
+     * @param offB The offset of B
+     * @param ldb The leading dimension of B
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C
+     * @param ldc The leading dimension of C
+     * @throws InterruptedException If the thread is interrupted while 
+     * waiting for the forked tasks
+     */
+    public static void sellmm(ExecutorService executor, int order, 
+        final int N, final float alpha, final EllMatrix A, 
+        final float B[], final int offB, int ldb, final float beta, 
+        final float C[], final int offC, int ldc) 
+        throws InterruptedException
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        final int sBi = rowMajor ? ldb : 1;
+        final int sBj = rowMajor ? 1 : ldb;
+        final int sCi = rowMajor ? ldc : 1;
+        final int sCj = rowMajor ? 1 : ldc;
+        final int rows = A.getRows();
+        final int width = A.getWidth();
+        forkJoin(executor, partition(rows, width * N), new RowRange()
+        {
+            @Override
+            public void compute(int row0, int row1)
+            {
+                float sums[] = new float[N];
+                for (int i = row0; i < row1; i++)
+                {
+                    for (int j = 0; j < N; j++)
+                    {
+                        sums[j] = 0.0f;
+                    }
+                    for (int k = 0; k < width; k++)
+                    {
+                        int column = A.columnIndices[k * rows + i];
+                        if (column < 0)
+                        {
+                            continue;
+                        }
+                        float a = A.values[k * rows + i];
+                        int b0 = offB + column * sBi;
+                        for (int j = 0; j < N; j++)
+                        {
+                            sums[j] += a * B[b0 + j * sBj];
+                        }
+                    }
+                    for (int j = 0; j < N; j++)
+                    {
+                        int c = offC + i * sCi + j * sCj;
+                        C[c] = combine(alpha, sums[j], beta, C[c]);
+                    }
+                }
+            }
+        });
+    }
+    
+    /**
+     * Returns alpha * sum + beta * c, where c is ignored if beta is 0
+     * 
+     * @param alpha The factor of the sum
+     * @param sum The sum
+     * @param beta The factor of c
+     * @param c The previous value
+     * @return The result
+     */
+    private static float combine(float alpha, float sum, float beta, float c)
+    {
+        return alpha * sum + (beta == 0.0f ? 0.0f : beta * c);
+    }
+    
+    /**
+     * Splits the rows of a CSR matrix into ranges with roughly the same 
+     * number of non-zero elements
+     * 
+     * @param rowPointers The row pointers
+     * @param columns The number of columns of the dense operand
+     * @return The boundaries of the ranges
+     */
+    static int[] partition(int rowPointers[], int columns)
+    {
+        int rows = rowPointers.length - 1;
+        long nnz = rowPointers[rows];
+        int tasks = taskCount(nnz * columns, rows);
+        int bounds[] = new int[tasks + 1];
+        int row = 0;
+        for (int t = 1; t < tasks; t++)
+        {
+            long target = nnz * t / tasks;
+            while (row < rows && rowPointers[row] < target)
+            {
+                row++;
+            }
+            bounds[t] = row;
+        }
+        bounds[tasks] = rows;
+        return bounds;
+    }
+    
+    /**
+     * Splits the given number of rows into ranges of the same size
+     * 
+     * @param rows The number of rows
+     * @param workPerRow The number of operations for each row
+     * @return The boundaries of the ranges
+     */
+    private static int[] partition(int rows, int workPerRow)
+    {
+        int tasks = taskCount((long)rows * workPerRow, rows);
+        int bounds[] = new int[tasks + 1];
+        for (int t = 1; t <= tasks; t++)
+        {
+            bounds[t] = (int)((long)rows * t / tasks);
+        }
+        return bounds;
+    }
+    
+    /**
+     * Returns the number of tasks for the given amount of work
+     * 
+     * @param work The number of operations
+     * @param rows The number of rows
+     * @return The number of tasks
+     */
+    private static int taskCount(long work, int rows)
+    {
+        int processors = Runtime.getRuntime().availableProcessors();
+        long tasks = Math.min(processors, work / MINIMUM_WORK_PER_TASK);
+        return (int)Math.max(1, Math.min(tasks, rows));
+    }
+    
+    /**
+     * Computes the given row ranges. The first range is computed by the
+     * calling thread, and the remaining ones by the given executor. 
+     * 
+     * @param executor The executor. May be <code>null</code>.
+     * @param bounds The boundaries of the ranges
+     * @param rowRange The computation
+     * @throws InterruptedException If the thread is interrupted while 
+     * waiting for the forked tasks
+     */
+    private static void forkJoin(ExecutorService executor, int bounds[], 
+        final RowRange rowRange) throws InterruptedException
+    {
+        int ranges = bounds.length - 1;
+        if (executor == null || ranges <= 1)
+        {
+            rowRange.compute(bounds[0], bounds[ranges]);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int r = 1; r < ranges; r++)
+        {
+            final int row0 = bounds[r];
+            final int row1 = bounds[r + 1];
+            futures.add(executor.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                {
+                    rowRange.compute(row0, row1);
+                    return null;
+                }
+            }));
+        }
+        rowRange.compute(bounds[0], bounds[1]);
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                {
+                    throw (RuntimeException)cause;
+                }
+                if (cause instanceof Error)
+                {
+                    throw (Error)cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+    
+    /**
+     * Computes the index of the first element of a vector, which is 
+     * the last element in memory for negative increments
+     * 
+     * @param off The offset
+     * @param inc The increment
+     * @param n The number of elements
+     * @return The start index
+     */
+    private static int start(int off, int inc, int n)
+    {
+        return inc >= 0 ? off : off - (n - 1) * inc;
+    }
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private HostSparseBLAS()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.sparse;
+
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+
+import org.jocl.CLException;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.blas.kernel.CachedKernel;
+import org.jocl.blas.kernel.KernelCache;
+
+/**
+ * An executor for sparse matrix-vector and sparse matrix-dense matrix 
+ * products on an OpenCL device, with a {@link DeviceSparseMatrix} and
+ * dense vectors and matrices that are stored in <code>cl_mem</code> 
+ * objects, using the same conventions as {@link org.jocl.blas.CLBLAS}. 
+ * <br>
+ * <br>
+ * The kernels are obtained from a {@link KernelCache}. For the CSR 
+ * format, one work item processes one row if the rows are short. If 
+ * the average row length is at least {@link #VECTOR_ROW_LENGTH}, one 
+ * work group processes one row, so that the accesses to the elements 
+ * of the row are coalesced. For the ELL format, one work item 
+ * processes one row, and the slot-major layout makes the accesses 
+ * coalesced. <br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class SparseExecutor
+{
+    /**
+     * The average row length starting at which one work group is used 
+     * for each row of a CSR matrix in matrix-vector products
+     */
+    static final int VECTOR_ROW_LENGTH = 32;
+    
+    /**
+     * The size of the tiles of the 2-dimensional range of the 
+     * matrix-matrix products
+     */
+    private static final int TILE_SIZE = 16;
+    
+    /**
+     * The work group size of the kernel that uses one work group per row
+     */
+    private static final int GROUP_SIZE = 
+        CachedKernel.DEFAULT_LOCAL_WORK_SIZE;
+    
+    /**
+     * The source code of the kernels
+     */
+    private static final String KERNELS_SOURCE =
+        "#define GROUP_SIZE " + GROUP_SIZE + "\n" +
+        "\n" +
+        "__kernel void csrmvScalar(const int rows, const float alpha,\n" +
+        "    __global const int *rowPointers,\n" +
+        "    __global const int *columnIndices,\n" +
+        "    __global const float *values,\n" +
+        "    __global const float *x, const long offx, const int incx,\n" +
+        "    const float beta,\n" +
+        "    __global float *y, const long offy, const int incy)\n" +
+        "{\n" +
+        "    const int i = get_global_id(0);\n" +
+        "    if (i >= rows)\n" +
+        "    {\n" +
+        "        return;\n" +
+        "    }\n" +
+        "    float sum = 0.0f;\n" +
+        "    const int k1 = rowPointers[i + 1];\n" +
+        "    for (int k = rowPointers[i]; k < k1; k++)\n" +
+        "    {\n" +
+        "        sum += values[k] * x[offx + (long)columnIndices[k] * incx];\n" +
+        "    }\n" +
+        "    const long iy = offy + (long)i * incy;\n" +
+        "    y[iy] = alpha * sum + (beta == 0.0f ? 0.0f : beta * y[iy]);\n" +
+        "}\n" +
+        "\n" +
+        "__kernel __attribute__((reqd_work_group_size(GROUP_SIZE, 1, 1)))\n" +
+        "void csrmvVector(const int rows, const float alpha,\n" +
+        "    __global const int *rowPointers,\n" +
+        "    __global const int *columnIndices,\n" +
+        "    __global const float *values,\n" +
+        "    __global const float *x, const long offx, const int incx,\n" +
+        "    const float beta,\n" +
+        "    __global float *y, const long offy, const int incy)\n" +
+        "{\n" +
+        "    __local float partial[GROUP_SIZE];\n" +
+        "    const int i = get_group_id(0);\n" +
+        "    const int lane = get_local_id(0);\n" +
+        "    float sum = 0.0f;\n" +
+        "    const int k1 = rowPointers[i + 1];\n" +
+        "    for (int k = rowPointers[i] + lane; k < k1; k += GROUP_SIZE)\n" +
+        "    {\n" +
+        "        sum += values[k] * x[offx + (long)columnIndices[k] * incx];\n" +
+        "    }\n" +
+        "    partial[lane] = sum;\n" +
+        "    barrier(CLK_LOCAL_MEM_FENCE);\n" +
+        "    for (int s = GROUP_SIZE / 2; s > 0; s >>= 1)\n" +
+        "    {\n" +
+        "        if (lane < s)\n" +
+        "        {\n" +
+        "            partial[lane] += partial[lane + s];\n" +
+        "        }\n" +
+        "        barrier(CLK_LOCAL_MEM_FENCE);\n" +
+        "    }\n" +
+        "    if (lane == 0)\n" +
+        "    {\n" +
+        "        const long iy = offy + (long)i * incy;\n" +
+        "        y[iy] = alpha * partial[0] + \n" +
+        "            (beta == 0.0f ? 0.0f : beta * y[iy]);\n" +
+        "    }\n" +
+        "}\n" +
+        "\n" +
+        "__kernel void ellmv(const int rows, const int width,\n" +
+        "    const float alpha,\n" +
+        "    __global const int *columnIndices,\n" +
+        "    __global const float *values,\n" +
+        "    __global const float *x, const long offx, const int incx,\n" +
+        "    const float beta,\n" +
+        "    __global float *y, const long offy, const int incy)\n" +
+        "{\n" +
+        "    const int i = get_global_id(0);\n" +
+        "    if (i >= rows)\n" +
+        "    {\n" +
+        "        return;\n" +
+        "    }\n" +
+        "    float sum = 0.0f;\n" +
+        "    for (int k = 0; k < width; k++)\n" +
+        "    {\n" +
+        "        const int column = columnIndices[k * rows + i];\n" +
+        "        if (column >= 0)\n" +
+        "        {\n" +
+        "            sum += values[k * rows + i] * \n" +
+        "                x[offx + (long)column * incx];\n" +
+        "        }\n" +
+        "    }\n" +
+        "    const long iy = offy + (long)i * incy;\n" +
+        "    y[iy] = alpha * sum + (beta == 0.0f ? 0.0f : beta * y[iy]);\n" +
+        "}\n" +
+        "\n" +
+        "__kernel void csrmm(const int rows, const int n,\n" +
+        "    const float alpha,\n" +
+        "    __global const int *rowPointers,\n" +
+        "    __global const int *columnIndices,\n" +
+        "    __global const float *values,\n" +
+        "    __global const float *B, const long offB,\n" +
+        "    const int sBi, const int sBj,\n" +
+        "    const float beta,\n" +
+        "    __global float *C, const long offC,\n" +
+        "    const int sCi, const int sCj)\n" +
+        "{\n" +
+        "    const int j = get_global_id(0);\n" +
+        "    const int i = get_global_id(1);\n" +
+        "    if (i >= rows || j >= n)\n" +
+        "    {\n" +
+        "        return;\n" +
+        "    }\n" +
+        "    float sum = 0.0f;\n" +
+        "    const int k1 = rowPointers[i + 1];\n" +
+        "    for (int k = rowPointers[i]; k < k1; k++)\n" +
+        "    {\n" +
+        "        sum += values[k] * \n" +
+        "            B[offB + (long)columnIndices[k] * sBi + (long)j * sBj];\n" +
+        "    }\n" +
+        "    const long ic = offC + (long)i * sCi + (long)j * sCj;\n" +
+        "    C[ic] = alpha * sum + (beta == 0.0f ? 0.0f : beta * C[ic]);\n" +
+        "}\n" +
+        "\n" +
+        "__kernel void ellmm(const int rows, const int width, const int n,\n" +
+        "    const float alpha,\n" +
+        "    __global const int *columnIndices,\n" +
+        "    __global const float *values,\n" +
+        "    __global const float *B, const long offB,\n" +
+        "    const int sBi, const int sBj,\n" +
+        "    const float beta,\n" +
+        "    __global float *C, const long offC,\n" +
+        "    const int sCi, const int sCj)\n" +
+        "{\n" +
+        "    const int j = get_global_id(0);\n" +
+        "    const int i = get_global_id(1);\n" +
+        "    if (i >= rows || j >= n)\n" +
+        "    {\n" +
+        "        return;\n" +
+        "    }\n" +
+        "    float sum = 0.0f;\n" +
+        "    for (int k = 0; k < width; k++)\n" +
+        "    {\n" +
+        "        const int column = columnIndices[k * rows + i];\n" +
+        "        if (column >= 0)\n" +
+        "        {\n" +
+        "            sum += values[k * rows + i] * \n" +
+        "                B[offB + (long)column * sBi + (long)j * sBj];\n" +
+        "        }\n" +
+        "    }\n" +
+        "    const long ic = offC + (long)i * sCi + (long)j * sCj;\n" +
+        "    C[ic] = alpha * sum + (beta == 0.0f ? 0.0f : beta * C[ic]);\n" +
+        "}\n";
+    
+    /**
+     * The context
+     */
+    private final cl_context context;
+    
+    /**
+     * The kernel cache
+     */
+    private final KernelCache kernelCache;
+    
+    /**
+     * Creates a new executor for the given context, using the shared
+     * {@link KernelCache#getInstance() kernel cache}
+     * 
+     * @param context The context
+     */
+    public SparseExecutor(cl_context context)
+    {
+        this(context, KernelCache.getInstance());
+    }
+
+    /**
+     * Creates a new executor for the given context, using the given 
+     * kernel cache
+     * 
+     * @param context The context
+     * @param kernelCache The kernel cache
+     */
+    public SparseExecutor(cl_context context, KernelCache kernelCache)
+    {
+        this.context = context;
+        this.kernelCache = kernelCache;
+    }
+    
+    /**
+     * Enqueue the computation of y = alpha * A * x + beta * y. If beta
+     * is 0, then y does not have to be initialized. Vectors with a 
+     * negative increment are accessed in reverse order, as in 
+     * {@link org.jocl.blas.CLBLAS#clblasSgemv}.
+     * 
+     * @param commandQueue The command queue
+     * @param alpha The factor of A*x
+     * @param A The matrix A
+     * @param x The vector x
+     * @param offx The offset of x, in elements
+     * @param incx The increment of x
+     * @param beta The factor of y
+     * @param y The vector y
+     * @param offy The offset of y, in elements
+     * @param incy The increment of y
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the completion of the product. May be 
+     * <code>null</code>.
+     * @return The OpenCL status
+     * @throws CLException If the kernels can not be compiled
+     */
+    public int spmv(cl_command_queue commandQueue, float alpha, 
+        DeviceSparseMatrix A, cl_mem x, long offx, int incx, 
+        float beta, cl_mem y, long offy, int incy, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        int rows = A.getRows();
+        long x0 = start(offx, incx, A.getColumns());
+        long y0 = start(offy, incy, rows);
+        if (A.getFormat() == SparseFormat.ELL)
+        {
+            return getKernel("ellmv").enqueue(commandQueue, rows, 
+                numEventsInWaitList, eventWaitList, event, 
+                rows, A.getWidth(), alpha, A.getColumnIndices(), 
+                A.getValues(), x, x0, incx, beta, y, y0, incy);
+        }
+        if (rows > 0 && 
+            A.getNonZeroCount() >= (long)VECTOR_ROW_LENGTH * rows)
+        {
+            return getKernel("csrmvVector").enqueue(commandQueue, 
+                new long[] { (long)rows * GROUP_SIZE }, 
+                new long[] { GROUP_SIZE }, 
+                numEventsInWaitList, eventWaitList, event, 
+                rows, alpha, A.getRowPointers(), A.getColumnIndices(), 
+                A.getValues(), x, x0, incx, beta, y, y0, incy);
+        }
+        return getKernel("csrmvScalar").enqueue(commandQueue, rows, 
+            numEventsInWaitList, eventWaitList, event, 
+            rows, alpha, A.getRowPointers(), A.getColumnIndices(), 
+            A.getValues(), x, x0, incx, beta, y, y0, incy);
+    }
+    
+    /**
+     * Enqueue the computation of C = alpha * A * B + beta * C, where B 
+     * and C are dense matrices with N columns. If beta is 0, then C does 
+     * not have to be initialized.
+     * 
+     * @param commandQueue The command queue
+     * @param order The {@link org.jocl.blas.clblasOrder} of B and C
+     * @param N The number of columns of B and C
+     * @param alpha The factor of A*B
+     * @param A The matrix A
+     * @param B The matrix B
+     * @param offB The offset of B, in elements
+     * @param ldb The leading dimension of B
+     * @param beta The factor of C
+     * @param C The matrix C
+     * @param offC The offset of C, in elements
+     * @param ldc The leading dimension of C
+     * @param numEventsInWaitList The number of events in the wait list
+     * @param eventWaitList The wait list
+     * @param event The event for the completion of the product. May be 
+     * <code>null</code>.
+     * @return The OpenCL status
+     * @throws CLException If the kernels can not be compiled
+     */
+    public int spmm(cl_command_queue commandQueue, int order, long N, 
+        float alpha, DeviceSparseMatrix A, cl_mem B, long offB, long ldb, 
+        float beta, cl_mem C, long offC, long ldc, 
+        int numEventsInWaitList, cl_event eventWaitList[], cl_event event)
+    {
+        boolean rowMajor = order == clblasRowMajor;
+        int sBi = (int)(rowMajor ? ldb : 1);
+        int sBj = (int)(rowMajor ? 1 : ldb);
+        int sCi = (int)(rowMajor ? ldc : 1);
+        int sCj = (int)(rowMajor ? 1 : ldc);
+        int rows = A.getRows();
+        long globalWorkSize[] = {
+            CachedKernel.roundUp(Math.max(N, 1), TILE_SIZE),
+            CachedKernel.roundUp(Math.max(rows, 1), TILE_SIZE)
+        };
+        long localWorkSize[] = { TILE_SIZE, TILE_SIZE };
+        if (A.getFormat() == SparseFormat.ELL)
+        {
+            return getKernel("ellmm").enqueue(commandQueue, 
+                globalWorkSize, localWorkSize, 
+                numEventsInWaitList, eventWaitList, event, 
+                rows, A.getWidth(), (int)N, alpha, A.getColumnIndices(), 
+                A.getValues(), B, offB, sBi, sBj, beta, C, offC, sCi, sCj);
+        }
+        return getKernel("csrmm").enqueue(commandQueue, 
+            globalWorkSize, localWorkSize, 
+            numEventsInWaitList, eventWaitList, event, 
+            rows, (int)N, alpha, A.getRowPointers(), A.getColumnIndices(), 
+            A.getValues(), B, offB, sBi, sBj, beta, C, offC, sCi, sCj);
+    }
+    
+    /**
+     * Returns the kernel with the given name
+     * 
+     * @param name The name
+     * @return The kernel
+     * @throws CLException If the kernels can not be compiled
+     */
+    private CachedKernel getKernel(String name)
+    {
+        return kernelCache.getKernel(context, KERNELS_SOURCE, name);
+    }
+    
+    /**
+     * Returns the offset of the first element of a vector in memory, 
+     * which is the last element for negative increments
+     * 
+     * @param off The offset
+     * @param inc The increment
+     * @param n The number of elements
+     * @return The offset
+     */
+    private static long start(long off, int inc, int n)
+    {
+        return inc >= 0 ? off : off - (long)(n - 1) * inc;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas.sparse;
+
+/**
+ * The storage formats for sparse matrices
+ */
+public enum SparseFormat
+{
+    /**
+     * The compressed sparse row format. See {@link CsrMatrix}.
+     */
+    CSR,
+    
+    /**
+     * The ELLPACK format. See {@link EllMatrix}.
+     */
+    ELL;
+    
+    /**
+     * The maximum ratio between the number of stored elements of the 
+     * ELL format and the number of non-zero elements for which the 
+     * ELL format is selected
+     */
+    static final float MAXIMUM_ELL_PADDING = 1.5f;
+    
+    /**
+     * Selects the format for the given matrix, based on the distribution
+     * of its row lengths. <br>
+     * <br>
+     * The ELL format is selected if the rows are so regular that padding 
+     * all rows to the maximum row length at most increases the number 
+     * of stored elements by the factor {@link #MAXIMUM_ELL_PADDING}. 
+     * Otherwise, the padding would waste more memory bandwidth than the 
+     * coalesced access pattern of ELL saves, and CSR is selected.
+     * 
+     * @param matrix The matrix
+     * @return The format
+     */
+    public static SparseFormat select(CsrMatrix matrix)
+    {
+        int rows = matrix.getRows();
+        int nnz = matrix.getNonZeroCount();
+        if (nnz == 0)
+        {
+            return CSR;
+        }
+        long maximum = 0;
+        for (int i = 0; i < rows; i++)
+        {
+            maximum = Math.max(maximum, matrix.getRowLength(i));
+        }
+        if (maximum * rows <= MAXIMUM_ELL_PADDING * nnz)
+        {
+            return ELL;
+        }
+        return CSR;
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * JOCLBLAS - Java bindings for clBLAS
+ *
+ * Copyright (c) 2015-2016 Marco Hutter - http://www.jocl.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jocl.blas;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_FLOAT;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import org.jocl.NativePointerObject;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+
+/**
+ * A {@link CLBLASBackend} that calls the functions of the clBLAS library
+ * directly, via the Foreign Function and Memory API, bypassing the JNI
+ * layer of {@link CLBLAS}. <br>
+ * <br>
+ * This class requires Java 22 or later. It is compiled from a separate
+ * source directory by the <code>java22</code> build profile, and may be
+ * selected with the system property
+ * {@value CLBLASBackends#BACKEND_PROPERTY} set to
+ * {@value CLBLASBackends#FOREIGN_BACKEND}. The clBLAS library is looked
+ * up with the name that is given by the system property
+ * {@value #LIBRARY_PROPERTY}, or with the platform specific name of the
+ * <code>clBLAS</code> library by default. The application should be
+ * started with <code>--enable-native-access=ALL-UNNAMED</code>. <br>
+ * <br>
+ * The command queue array, the event array and the event wait list that
+ * are passed to clBLAS are kept in native memory for each thread, so
+ * that a call does not allocate any memory, unless the wait list is
+ * longer than in all previous calls of the same thread. Unlike the JNI
+ * methods, the calls do not check the arguments for <code>null</code>
+ * values: A <code>null</code> memory object or command queue is passed
+ * to clBLAS as a <code>NULL</code> handle.
+ */
+public final class ForeignCLBLASBackend implements CLBLASBackend
+{
+    /**
+     * The name of the system property that contains the name or path
+     * of the clBLAS library
+     */
+    public static final String LIBRARY_PROPERTY =
+        "org.jocl.blas.clblas.library";
+
+    /**
+     * The handle for the native pointer of a
+     * {@link NativePointerObject}
+     */
+    private static final VarHandle NATIVE_POINTER = createNativePointer();
+
+    /**
+     * The native memory of one thread
+     */
+    private static class Scratch
+    {
+        /**
+         * The arena for the memory of this thread, which is released
+         * when the memory is no longer reachable
+         */
+        private final Arena arena = Arena.ofAuto();
+
+        /**
+         * The command queue array
+         */
+        final MemorySegment queues = arena.allocate(ADDRESS);
+
+        /**
+         * The event array
+         */
+        final MemorySegment events = arena.allocate(ADDRESS);
+
+        /**
+         * The event wait list
+         */
+        private MemorySegment waitList = arena.allocate(ADDRESS, 4);
+
+        /**
+         * Returns the command queue array, containing the given
+         * command queue
+         *
+         * @param commandQueue The command queue
+         * @return The command queue array
+         */
+        MemorySegment queues(cl_command_queue commandQueue)
+        {
+            queues.set(ADDRESS, 0, handle(commandQueue));
+            return queues;
+        }
+
+        /**
+         * Returns the event array for the given event, or a
+         * <code>NULL</code> segment if the event is <code>null</code>
+         *
+         * @param event The event
+         * @return The event array
+         */
+        MemorySegment events(cl_event event)
+        {
+            if (event == null)
+            {
+                return MemorySegment.NULL;
+            }
+            events.set(ADDRESS, 0, MemorySegment.NULL);
+            return events;
+        }
+
+        /**
+         * Returns the wait list containing the first <code>n</code> of
+         * the given events, or a <code>NULL</code> segment if
+         * <code>n</code> is 0
+         *
+         * @param eventWaitList The events
+         * @param n The number of events
+         * @return The wait list
+         */
+        MemorySegment waitList(cl_event eventWaitList[], int n)
+        {
+            if (n == 0 || eventWaitList == null)
+            {
+                return MemorySegment.NULL;
+            }
+            if (waitList.byteSize() < n * ADDRESS.byteSize())
+            {
+                waitList = arena.allocate(ADDRESS, n);
+            }
+            for (int i = 0; i < n; i++)
+            {
+                waitList.setAtIndex(ADDRESS, i, handle(eventWaitList[i]));
+            }
+            return waitList;
+        }
+
+        /**
+         * Store the event that was written by clBLAS into the given
+         * event, if the given result indicates success
+         *
+         * @param result The result of the clBLAS function
+         * @param event The event. May be <code>null</code>.
+         * @return The result
+         */
+        int complete(int result, cl_event event)
+        {
+            if (event != null && result == clblasStatus.clblasSuccess)
+            {
+                NATIVE_POINTER.set((NativePointerObject) event,
+                    events.get(ADDRESS, 0).address());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The native memory of each thread
+     */
+    private final ThreadLocal<Scratch> scratch =
+        ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * The handle for clblasSgemm
+     */
+    private final MethodHandle sgemm;
+
+    /**
+     * The handle for clblasSgemv
+     */
+    private final MethodHandle sgemv;
+
+    /**
+     * The handle for clblasSaxpy
+     */
+    private final MethodHandle saxpy;
+
+    /**
+     * The handle for clblasSscal
+     */
+    private final MethodHandle sscal;
+
+    /**
+     * Creates a new backend for the clBLAS library that is given by the
+     * system property {@value #LIBRARY_PROPERTY}, or the default
+     * clBLAS library
+     *
+     * @throws IllegalArgumentException If the library can not be found
+     * @throws java.util.NoSuchElementException If the library does not
+     * contain one of the functions
+     */
+    public ForeignCLBLASBackend()
+    {
+        this(System.getProperty(
+            LIBRARY_PROPERTY, System.mapLibraryName("clBLAS")));
+    }
+
+    /**
+     * Creates a new backend for the clBLAS library with the given name
+     * or path
+     *
+     * @param library The name or path of the library
+     * @throws IllegalArgumentException If the library can not be found
+     * @throws java.util.NoSuchElementException If the library does not
+     * contain one of the functions
+     */
+    public ForeignCLBLASBackend(String library)
+    {
+        Linker linker = Linker.nativeLinker();
+        SymbolLookup lookup =
+            SymbolLookup.libraryLookup(library, Arena.global());
+
+        // The trailing arguments of all functions: The number of queues,
+        // the queues, the number of wait events, the wait list, and the
+        // events
+        sgemm = linker.downcallHandle(
+            lookup.find("clblasSgemm").orElseThrow(),
+            FunctionDescriptor.of(JAVA_INT,
+                JAVA_INT, JAVA_INT, JAVA_INT,
+                JAVA_LONG, JAVA_LONG, JAVA_LONG, JAVA_FLOAT,
+                ADDRESS, JAVA_LONG, JAVA_LONG,
+                ADDRESS, JAVA_LONG, JAVA_LONG, JAVA_FLOAT,
+                ADDRESS, JAVA_LONG, JAVA_LONG,
+                JAVA_INT, ADDRESS, JAVA_INT, ADDRESS, ADDRESS));
+        sgemv = linker.downcallHandle(
+            lookup.find("clblasSgemv").orElseThrow(),
+            FunctionDescriptor.of(JAVA_INT,
+                JAVA_INT, JAVA_INT, JAVA_LONG, JAVA_LONG, JAVA_FLOAT,
+                ADDRESS, JAVA_LONG, JAVA_LONG,
+                ADDRESS, JAVA_LONG, JAVA_INT, JAVA_FLOAT,
+                ADDRESS, JAVA_LONG, JAVA_INT,
+                JAVA_INT, ADDRESS, JAVA_INT, ADDRESS, ADDRESS));
+        saxpy = linker.downcallHandle(
+            lookup.find("clblasSaxpy").orElseThrow(),
+            FunctionDescriptor.of(JAVA_INT,
+                JAVA_LONG, JAVA_FLOAT,
+                ADDRESS, JAVA_LONG, JAVA_INT,
+                ADDRESS, JAVA_LONG, JAVA_INT,
+                JAVA_INT, ADDRESS, JAVA_INT, ADDRESS, ADDRESS));
+        sscal = linker.downcallHandle(
+            lookup.find("clblasSscal").orElseThrow(),
+            FunctionDescriptor.of(JAVA_INT,
+                JAVA_LONG, JAVA_FLOAT,
+                ADDRESS, JAVA_LONG, JAVA_INT,
+                JAVA_INT, ADDRESS, JAVA_INT, ADDRESS, ADDRESS));
+    }
+
+    @Override
+    public int sgemm(int order, int transA, int transB,
+        long M, long N, long K, float alpha,
+        cl_mem A, long offA, long lda, cl_mem B, long offB, long ldb,
+        float beta, cl_mem C, long offC, long ldc,
+        cl_command_queue commandQueue, int numEventsInWaitList,
+        cl_event eventWaitList[], cl_event event)
+    {
+        Scratch current = scratch.get();
+        try
+        {
+            int result = (int) sgemm.invokeExact(
+                order, transA, transB, M, N, K, alpha,
+                handle(A), offA, lda, handle(B), offB, ldb,
+                beta, handle(C), offC, ldc,
+                1, current.queues(commandQueue), numEventsInWaitList,
+                current.waitList(eventWaitList, numEventsInWaitList),
+                current.events(event));
+            return current.complete(result, event);
+        }
+        catch (Throwable t)
+        {
+            throw propagate(t);
+        }
+    }
+
+    @Override
+    public int sgemv(int order, int transA, long M, long N,
+        float alpha, cl_mem A, long offA, long lda,
+        cl_mem x, long offx, int incx,
+        float beta, cl_mem y, long offy, int incy,
+        cl_command_queue commandQueue, int numEventsInWaitList,
+        cl_event eventWaitList[], cl_event event)
+    {
+        Scratch current = scratch.get();
+        try
+        {
+            int result = (int) sgemv.invokeExact(
+                order, transA, M, N, alpha,
+                handle(A), offA, lda, handle(x), offx, incx,
+                beta, handle(y), offy, incy,
+                1, current.queues(commandQueue), numEventsInWaitList,
+                current.waitList(eventWaitList, numEventsInWaitList),
+                current.events(event));
+            return current.complete(result, event);
+        }
+        catch (Throwable t)
+        {
+            throw propagate(t);
+        }
+    }
+
+    @Override
+    public int saxpy(long N, float alpha,
+        cl_mem X, long offx, int incx, cl_mem Y, long offy, int incy,
+        cl_command_queue commandQueue, int numEventsInWaitList,
+        cl_event eventWaitList[], cl_event event)
+    {
+        Scratch current = scratch.get();
+        try
+        {
+            int result = (int) saxpy.invokeExact(
+                N, alpha, handle(X), offx, incx, handle(Y), offy, incy,
+                1, current.queues(commandQueue), numEventsInWaitList,
+                current.waitList(eventWaitList, numEventsInWaitList),
+                current.events(event));
+            return current.complete(result, event);
+        }
+        catch (Throwable t)
+        {
+            throw propagate(t);
+        }
+    }
+
+    @Override
+    public int sscal(long N, float alpha,
+        cl_mem X, long offx, int incx,
+        cl_command_queue commandQueue, int numEventsInWaitList,
+        cl_event eventWaitList[], cl_event event)
+    {
+        Scratch current = scratch.get();
+        try
+        {
+            int result = (int) sscal.invokeExact(
+                N, alpha, handle(X), offx, incx,
+                1, current.queues(commandQueue), numEventsInWaitList,
+                current.waitList(eventWaitList, numEventsInWaitList),
+                current.events(event));
+            return current.complete(result, event);
+        }
+        catch (Throwable t)
+        {
+            throw propagate(t);
+        }
+    }
+
+    /**
+     * Returns a segment with the address of the given object, or a
+     * <code>NULL</code> segment if the object is <code>null</code>
+     *
+     * @param object The object
+     * @return The segment
+     */
+    private static MemorySegment handle(NativePointerObject object)
+    {
+        if (object == null)
+        {
+            return MemorySegment.NULL;
+        }
+        return MemorySegment.ofAddress((long) NATIVE_POINTER.get(object));
+    }
+
+    /**
+     * Returns the given throwable if it is unchecked, or wraps it into
+     * an IllegalStateException
+     *
+     * @param t The throwable
+     * @return The exception to throw
+     */
+    private static RuntimeException propagate(Throwable t)
+    {
+        if (t instanceof RuntimeException)
+        {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error)
+        {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+
+    /**
+     * Creates the handle for the native pointer of a
+     * {@link NativePointerObject}
+     *
+     * @return The handle
+     * @throws ExceptionInInitializerError If the field can not be
+     * accessed
+     */
+    private static VarHandle createNativePointer()
+    {
+        try
+        {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(
+                NativePointerObject.class, MethodHandles.lookup());
+            return lookup.findVarHandle(
+                NativePointerObject.class, "nativePointer", long.class);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
@@ -23866,3 +23866,294 @@ JNIEXPORT jint JNICALL Java_org_jocl_blas_CLBLAS_clblasFillSubMatrixAsyncNative(
     return jniResult;
 }
 
+// BindingGenerator: begin functions
+/**
+* Copies synchronously a sub-matrix from a Java array (A) to device (B).
+*     See  clblasWriteSubMatrix(). The array is accessed in a critical region
+*     instead of being copied. The caller is responsible for waiting for
+*     all events that the transfer depends on and for all commands that
+*     were enqueued before, and for limiting the size of the transfer,
+*     because no other JNI functions may be called and the garbage
+*     collector may be blocked while the array is held.
+*/
+JNIEXPORT jint JNICALL Java_org_jocl_blas_CLBLAS_clblasWriteSubMatrixCriticalNative(JNIEnv *env, jclass cls, jint order, jlong element_size, jobject A, jlong offA, jlong ldA, jlong nrA, jlong ncA, jlong xA, jlong yA, jobject B, jlong offB, jlong ldB, jlong nrB, jlong ncB, jlong xB, jlong yB, jlong nx, jlong ny, jobject command_queue)
+{
+    // Null-checks for non-primitive arguments
+    if (A == nullptr)
+    {
+        ThrowByName(env, "java/lang/NullPointerException", "Parameter 'A' is null for clblasWriteSubMatrix");
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+    if (B == nullptr)
+    {
+        ThrowByName(env, "java/lang/NullPointerException", "Parameter 'B' is null for clblasWriteSubMatrix");
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+    if (command_queue == nullptr)
+    {
+        ThrowByName(env, "java/lang/NullPointerException", "Parameter 'command_queue' is null for clblasWriteSubMatrix");
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+
+    // Log message
+    Logger::log(LOG_TRACE, "Executing clblasWriteSubMatrixCritical(order=%d, element_size=%ld, A=%p, offA=%ld, ldA=%ld, nrA=%ld, ncA=%ld, xA=%ld, yA=%ld, B=%p, offB=%ld, ldB=%ld, nrB=%ld, ncB=%ld, xB=%ld, yB=%ld, nx=%ld, ny=%ld, command_queue=%p)\n",
+        order, element_size, A, offA, ldA, nrA, ncA, xA, yA, B, offB, ldB, nrB, ncB, xB, yB, nx, ny, command_queue);
+
+    // Native variable declarations
+    clblasOrder order_native;
+    size_t element_size_native = 0;
+    size_t offA_native = 0;
+    size_t ldA_native = 0;
+    size_t nrA_native = 0;
+    size_t ncA_native = 0;
+    size_t xA_native = 0;
+    size_t yA_native = 0;
+    cl_mem B_native = nullptr;
+    size_t offB_native = 0;
+    size_t ldB_native = 0;
+    size_t nrB_native = 0;
+    size_t ncB_native = 0;
+    size_t xB_native = 0;
+    size_t yB_native = 0;
+    size_t nx_native = 0;
+    size_t ny_native = 0;
+    cl_command_queue command_queue_native = nullptr;
+
+    // Obtain native variable values. This has to be done before the 
+    // array is accessed, because it involves JNI calls
+    order_native = (clblasOrder)order;
+    element_size_native = (size_t)element_size;
+    offA_native = (size_t)offA;
+    ldA_native = (size_t)ldA;
+    nrA_native = (size_t)nrA;
+    ncA_native = (size_t)ncA;
+    xA_native = (size_t)xA;
+    yA_native = (size_t)yA;
+    if (!initNative(env, B, B_native, true)) return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    offB_native = (size_t)offB;
+    ldB_native = (size_t)ldB;
+    nrB_native = (size_t)nrB;
+    ncB_native = (size_t)ncB;
+    xB_native = (size_t)xB;
+    yB_native = (size_t)yB;
+    nx_native = (size_t)nx;
+    ny_native = (size_t)ny;
+    if (!initNative(env, command_queue, command_queue_native, true)) return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+
+    // Native function call, with the array held in a critical region
+    void *array_native = env->GetPrimitiveArrayCritical((jarray)A, nullptr);
+    if (array_native == nullptr)
+    {
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+    clblasStatus jniResult_native = clblasWriteSubMatrix(order_native, element_size_native, array_native, offA_native, ldA_native, nrA_native, ncA_native, xA_native, yA_native, B_native, offB_native, ldB_native, nrB_native, ncB_native, xB_native, yB_native, nx_native, ny_native, command_queue_native, 0, nullptr);
+    env->ReleasePrimitiveArrayCritical((jarray)A, array_native, JNI_ABORT);
+
+    // Return the result
+    jint jniResult = (jint)jniResult_native;
+    return jniResult;
+}
+
+/**
+* Copies synchronously a sub-matrix from device (A) to a Java array (B).
+*     See  clblasReadSubMatrix(). The array is accessed in a critical region
+*     instead of being copied. The caller is responsible for waiting for
+*     all events that the transfer depends on and for all commands that
+*     were enqueued before, and for limiting the size of the transfer,
+*     because no other JNI functions may be called and the garbage
+*     collector may be blocked while the array is held.
+*/
+JNIEXPORT jint JNICALL Java_org_jocl_blas_CLBLAS_clblasReadSubMatrixCriticalNative(JNIEnv *env, jclass cls, jint order, jlong element_size, jobject A, jlong offA, jlong ldA, jlong nrA, jlong ncA, jlong xA, jlong yA, jobject B, jlong offB, jlong ldB, jlong nrB, jlong ncB, jlong xB, jlong yB, jlong nx, jlong ny, jobject command_queue)
+{
+    // Null-checks for non-primitive arguments
+    if (A == nullptr)
+    {
+        ThrowByName(env, "java/lang/NullPointerException", "Parameter 'A' is null for clblasReadSubMatrix");
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+    if (B == nullptr)
+    {
+        ThrowByName(env, "java/lang/NullPointerException", "Parameter 'B' is null for clblasReadSubMatrix");
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+    if (command_queue == nullptr)
+    {
+        ThrowByName(env, "java/lang/NullPointerException", "Parameter 'command_queue' is null for clblasReadSubMatrix");
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+
+    // Log message
+    Logger::log(LOG_TRACE, "Executing clblasReadSubMatrixCritical(order=%d, element_size=%ld, A=%p, offA=%ld, ldA=%ld, nrA=%ld, ncA=%ld, xA=%ld, yA=%ld, B=%p, offB=%ld, ldB=%ld, nrB=%ld, ncB=%ld, xB=%ld, yB=%ld, nx=%ld, ny=%ld, command_queue=%p)\n",
+        order, element_size, A, offA, ldA, nrA, ncA, xA, yA, B, offB, ldB, nrB, ncB, xB, yB, nx, ny, command_queue);
+
+    // Native variable declarations
+    clblasOrder order_native;
+    size_t element_size_native = 0;
+    cl_mem A_native = nullptr;
+    size_t offA_native = 0;
+    size_t ldA_native = 0;
+    size_t nrA_native = 0;
+    size_t ncA_native = 0;
+    size_t xA_native = 0;
+    size_t yA_native = 0;
+    size_t offB_native = 0;
+    size_t ldB_native = 0;
+    size_t nrB_native = 0;
+    size_t ncB_native = 0;
+    size_t xB_native = 0;
+    size_t yB_native = 0;
+    size_t nx_native = 0;
+    size_t ny_native = 0;
+    cl_command_queue command_queue_native = nullptr;
+
+    // Obtain native variable values. This has to be done before the 
+    // array is accessed, because it involves JNI calls
+    order_native = (clblasOrder)order;
+    element_size_native = (size_t)element_size;
+    if (!initNative(env, A, A_native, true)) return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    offA_native = (size_t)offA;
+    ldA_native = (size_t)ldA;
+    nrA_native = (size_t)nrA;
+    ncA_native = (size_t)ncA;
+    xA_native = (size_t)xA;
+    yA_native = (size_t)yA;
+    offB_native = (size_t)offB;
+    ldB_native = (size_t)ldB;
+    nrB_native = (size_t)nrB;
+    ncB_native = (size_t)ncB;
+    xB_native = (size_t)xB;
+    yB_native = (size_t)yB;
+    nx_native = (size_t)nx;
+    ny_native = (size_t)ny;
+    if (!initNative(env, command_queue, command_queue_native, true)) return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+
+    // Native function call, with the array held in a critical region
+    void *array_native = env->GetPrimitiveArrayCritical((jarray)B, nullptr);
+    if (array_native == nullptr)
+    {
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+    clblasStatus jniResult_native = clblasReadSubMatrix(order_native, element_size_native, A_native, offA_native, ldA_native, nrA_native, ncA_native, xA_native, yA_native, array_native, offB_native, ldB_native, nrB_native, ncB_native, xB_native, yB_native, nx_native, ny_native, command_queue_native, 0, nullptr);
+    env->ReleasePrimitiveArrayCritical((jarray)B, array_native, 0);
+
+    // Return the result
+    jint jniResult = (jint)jniResult_native;
+    return jniResult;
+}
+
+/**
+* Copies synchronously a vector from a Java array (A) to device (B).
+*     See  clblasWriteVector() and  clblasWriteSubMatrixCriticalNative().
+*/
+JNIEXPORT jint JNICALL Java_org_jocl_blas_CLBLAS_clblasWriteVectorCriticalNative(JNIEnv *env, jclass cls, jlong nb_elem, jlong element_size, jobject A, jlong offA, jobject B, jlong offB, jobject command_queue)
+{
+    // Null-checks for non-primitive arguments
+    if (A == nullptr)
+    {
+        ThrowByName(env, "java/lang/NullPointerException", "Parameter 'A' is null for clblasWriteVector");
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+    if (B == nullptr)
+    {
+        ThrowByName(env, "java/lang/NullPointerException", "Parameter 'B' is null for clblasWriteVector");
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+    if (command_queue == nullptr)
+    {
+        ThrowByName(env, "java/lang/NullPointerException", "Parameter 'command_queue' is null for clblasWriteVector");
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+
+    // Log message
+    Logger::log(LOG_TRACE, "Executing clblasWriteVectorCritical(nb_elem=%ld, element_size=%ld, A=%p, offA=%ld, B=%p, offB=%ld, command_queue=%p)\n",
+        nb_elem, element_size, A, offA, B, offB, command_queue);
+
+    // Native variable declarations
+    size_t nb_elem_native = 0;
+    size_t element_size_native = 0;
+    size_t offA_native = 0;
+    cl_mem B_native = nullptr;
+    size_t offB_native = 0;
+    cl_command_queue command_queue_native = nullptr;
+
+    // Obtain native variable values. This has to be done before the 
+    // array is accessed, because it involves JNI calls
+    nb_elem_native = (size_t)nb_elem;
+    element_size_native = (size_t)element_size;
+    offA_native = (size_t)offA;
+    if (!initNative(env, B, B_native, true)) return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    offB_native = (size_t)offB;
+    if (!initNative(env, command_queue, command_queue_native, true)) return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+
+    // Native function call, with the array held in a critical region
+    void *array_native = env->GetPrimitiveArrayCritical((jarray)A, nullptr);
+    if (array_native == nullptr)
+    {
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+    clblasStatus jniResult_native = clblasWriteVector(nb_elem_native, element_size_native, array_native, offA_native, B_native, offB_native, command_queue_native, 0, nullptr);
+    env->ReleasePrimitiveArrayCritical((jarray)A, array_native, JNI_ABORT);
+
+    // Return the result
+    jint jniResult = (jint)jniResult_native;
+    return jniResult;
+}
+
+/**
+* Copies synchronously a vector from device (A) to a Java array (B).
+*     See  clblasReadVector() and  clblasWriteSubMatrixCriticalNative().
+*/
+JNIEXPORT jint JNICALL Java_org_jocl_blas_CLBLAS_clblasReadVectorCriticalNative(JNIEnv *env, jclass cls, jlong nb_elem, jlong element_size, jobject A, jlong offA, jobject B, jlong offB, jobject command_queue)
+{
+    // Null-checks for non-primitive arguments
+    if (A == nullptr)
+    {
+        ThrowByName(env, "java/lang/NullPointerException", "Parameter 'A' is null for clblasReadVector");
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+    if (B == nullptr)
+    {
+        ThrowByName(env, "java/lang/NullPointerException", "Parameter 'B' is null for clblasReadVector");
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+    if (command_queue == nullptr)
+    {
+        ThrowByName(env, "java/lang/NullPointerException", "Parameter 'command_queue' is null for clblasReadVector");
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+
+    // Log message
+    Logger::log(LOG_TRACE, "Executing clblasReadVectorCritical(nb_elem=%ld, element_size=%ld, A=%p, offA=%ld, B=%p, offB=%ld, command_queue=%p)\n",
+        nb_elem, element_size, A, offA, B, offB, command_queue);
+
+    // Native variable declarations
+    size_t nb_elem_native = 0;
+    size_t element_size_native = 0;
+    cl_mem A_native = nullptr;
+    size_t offA_native = 0;
+    size_t offB_native = 0;
+    cl_command_queue command_queue_native = nullptr;
+
+    // Obtain native variable values. This has to be done before the 
+    // array is accessed, because it involves JNI calls
+    nb_elem_native = (size_t)nb_elem;
+    element_size_native = (size_t)element_size;
+    if (!initNative(env, A, A_native, true)) return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    offA_native = (size_t)offA;
+    offB_native = (size_t)offB;
+    if (!initNative(env, command_queue, command_queue_native, true)) return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+
+    // Native function call, with the array held in a critical region
+    void *array_native = env->GetPrimitiveArrayCritical((jarray)B, nullptr);
+    if (array_native == nullptr)
+    {
+        return JOCL_BLAS_STATUS_INTERNAL_ERROR;
+    }
+    clblasStatus jniResult_native = clblasReadVector(nb_elem_native, element_size_native, A_native, offA_native, array_native, offB_native, command_queue_native, 0, nullptr);
+    env->ReleasePrimitiveArrayCritical((jarray)B, array_native, 0);
+
+    // Return the result
+    jint jniResult = (jint)jniResult_native;
+    return jniResult;
+}
+// BindingGenerator: end functions
@@ -1428,6 +1428,40 @@ extern "C" {
     JNIEXPORT jint JNICALL Java_org_jocl_blas_CLBLAS_clblasFillSubMatrixAsyncNative
         (JNIEnv *, jclass, jint, jlong, jobject, jlong, jlong, jlong, jlong, jint, jint, jlong, jlong, jobject, jobject, jint, jobjectArray, jobjectArray);
 
+    // BindingGenerator: begin declarations
+    /*
+    * Class:     org_jocl_blas_CLBLAS
+    * Method:    clblasWriteSubMatrixCriticalNative
+    * Signature: (IJLjava/lang/Object;JJJJJJLorg/jocl/cl_mem;JJJJJJJJLorg/jocl/cl_command_queue;)I
+    */
+    JNIEXPORT jint JNICALL Java_org_jocl_blas_CLBLAS_clblasWriteSubMatrixCriticalNative
+        (JNIEnv *, jclass, jint, jlong, jobject, jlong, jlong, jlong, jlong, jlong, jlong, jobject, jlong, jlong, jlong, jlong, jlong, jlong, jlong, jlong, jobject);
+
+    /*
+    * Class:     org_jocl_blas_CLBLAS
+    * Method:    clblasReadSubMatrixCriticalNative
+    * Signature: (IJLorg/jocl/cl_mem;JJJJJJLjava/lang/Object;JJJJJJJJLorg/jocl/cl_command_queue;)I
+    */
+    JNIEXPORT jint JNICALL Java_org_jocl_blas_CLBLAS_clblasReadSubMatrixCriticalNative
+        (JNIEnv *, jclass, jint, jlong, jobject, jlong, jlong, jlong, jlong, jlong, jlong, jobject, jlong, jlong, jlong, jlong, jlong, jlong, jlong, jlong, jobject);
+
+    /*
+    * Class:     org_jocl_blas_CLBLAS
+    * Method:    clblasWriteVectorCriticalNative
+    * Signature: (JJLjava/lang/Object;JLorg/jocl/cl_mem;JLorg/jocl/cl_command_queue;)I
+    */
+    JNIEXPORT jint JNICALL Java_org_jocl_blas_CLBLAS_clblasWriteVectorCriticalNative
+        (JNIEnv *, jclass, jlong, jlong, jobject, jlong, jobject, jlong, jobject);
+
+    /*
+    * Class:     org_jocl_blas_CLBLAS
+    * Method:    clblasReadVectorCriticalNative
+    * Signature: (JJLorg/jocl/cl_mem;JLjava/lang/Object;JLorg/jocl/cl_command_queue;)I
+    */
+    JNIEXPORT jint JNICALL Java_org_jocl_blas_CLBLAS_clblasReadVectorCriticalNative
+        (JNIEnv *, jclass, jlong, jlong, jobject, jlong, jobject, jlong, jobject);
+    // BindingGenerator: end declarations
+
 #ifdef __cplusplus
 }
 #endif
@@ -0,0 +1,63 @@
+package org.jocl.blas;
+
+import static org.jocl.blas.clblasOrder.clblasColumnMajor;
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link ArrayRegions} validation of the regions that are
+ * accessed by the array transfer helpers
+ */
+public class ArrayRegionsTest
+{
+    @Test
+    public void testValidRegions()
+    {
+        // 4x3 region at (x=1,y=2) with ld=8: The last element of the
+        // row-major region is at 2 + (2+3-1)*8 + (1+4-1) = 38
+        ArrayRegions.checkSubMatrix(
+            "A", clblasRowMajor, 39, 2, 8, 1, 2, 4, 3);
+        // Column-major: 2 + (1+4-1)*8 + (2+3-1) = 38
+        ArrayRegions.checkSubMatrix(
+            "A", clblasColumnMajor, 39, 2, 8, 1, 2, 4, 3);
+        // Empty regions do not access the array
+        ArrayRegions.checkSubMatrix(
+            "A", clblasRowMajor, 0, 100, 8, 100, 100, 0, 3);
+        ArrayRegions.checkVector("A", 10, 4, 6);
+        ArrayRegions.checkVector("A", 10, 10, 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRowMajorRegionTooLarge()
+    {
+        ArrayRegions.checkSubMatrix(
+            "A", clblasRowMajor, 38, 2, 8, 1, 2, 4, 3);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testColumnMajorRegionTooLarge()
+    {
+        ArrayRegions.checkSubMatrix(
+            "A", clblasColumnMajor, 38, 2, 8, 1, 2, 4, 3);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testNegativeOffset()
+    {
+        ArrayRegions.checkSubMatrix(
+            "A", clblasRowMajor, 100, -1, 8, 0, 0, 2, 2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testVectorTooLarge()
+    {
+        ArrayRegions.checkVector("B", 10, 5, 6);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testVectorOverflow()
+    {
+        ArrayRegions.checkVector("B", 10, 5, Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,145 @@
+package org.jocl.blas;
+
+import static org.jocl.CL.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_context_properties;
+import org.jocl.cl_device_id;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.jocl.cl_platform_id;
+
+/**
+ * A benchmark for the time per call of the {@link CLBLASBackend}
+ * implementations. Each backend enqueues SSCAL calls on a vector with a
+ * single element, so that the time is dominated by the call overhead
+ * and the enqueueing in clBLAS, and not by the computation. This
+ * requires an OpenCL device. The number of calls per run may be given as
+ * the first argument. <br>
+ * <br>
+ * The JNI backend is always measured. The Foreign Function and Memory
+ * backend is measured when it is available, which requires Java 22,
+ * the library being built with the <code>java22</code> profile, and
+ * <code>--enable-native-access=ALL-UNNAMED</code>. The difference
+ * between the times is the per-call saving of bypassing the JNI layer.
+ */
+public class CLBLASBackendCallBenchmark
+{
+    private static final int RUNS = 10;
+    private static final int CALLS_PER_FINISH = 1000;
+
+    public static void main(String[] args)
+    {
+        int calls = 100000;
+        if (args.length > 0)
+        {
+            calls = Integer.parseInt(args[0]);
+        }
+        setExceptionsEnabled(true);
+        CLBLAS.setExceptionsEnabled(true);
+
+        List<String> names = new ArrayList<String>();
+        List<CLBLASBackend> backends = new ArrayList<CLBLASBackend>();
+        names.add("jni");
+        backends.add(CLBLASBackends.getJniBackend());
+        try
+        {
+            backends.add(CLBLASBackends.createBackend(
+                CLBLASBackends.FOREIGN_BACKEND));
+            names.add(CLBLASBackends.FOREIGN_BACKEND);
+        }
+        catch (IllegalStateException e)
+        {
+            System.out.println("The Foreign Function and Memory backend " +
+                "is not available: " + e.getCause());
+        }
+
+        cl_platform_id platforms[] = new cl_platform_id[1];
+        clGetPlatformIDs(1, platforms, null);
+        cl_device_id devices[] = new cl_device_id[1];
+        clGetDeviceIDs(platforms[0], CL_DEVICE_TYPE_ALL, 1, devices, null);
+        cl_context_properties contextProperties = new cl_context_properties();
+        contextProperties.addProperty(CL_CONTEXT_PLATFORM, platforms[0]);
+        cl_context context = clCreateContext(
+            contextProperties, 1, devices, null, null, null);
+        cl_command_queue queue =
+            clCreateCommandQueue(context, devices[0], 0, null);
+        CLBLAS.clblasSetup();
+
+        cl_mem buffer = clCreateBuffer(context, CL_MEM_READ_WRITE,
+            Sizeof.cl_float, null, null);
+        try
+        {
+            // Warm-up, which includes the compilation of the kernel
+            for (CLBLASBackend backend : backends)
+            {
+                run(backend, queue, buffer, calls, false);
+                run(backend, queue, buffer, calls, true);
+            }
+            System.out.println("Calls per run: " + calls +
+                ", runs: " + RUNS);
+            for (int i = 0; i < backends.size(); i++)
+            {
+                CLBLASBackend backend = backends.get(i);
+                double without = best(backend, queue, buffer, calls, false);
+                double with = best(backend, queue, buffer, calls, true);
+                System.out.printf(
+                    "%-4s: %8.1f ns per call, %8.1f ns per call with event%n",
+                    names.get(i), without, with);
+            }
+        }
+        finally
+        {
+            clReleaseMemObject(buffer);
+            CLBLAS.clblasTeardown();
+            clReleaseCommandQueue(queue);
+            clReleaseContext(context);
+        }
+    }
+
+    /**
+     * Returns the smallest time per call of all runs, in nanoseconds
+     */
+    private static double best(CLBLASBackend backend,
+        cl_command_queue queue, cl_mem buffer, int calls, boolean events)
+    {
+        double best = Double.POSITIVE_INFINITY;
+        for (int r = 0; r < RUNS; r++)
+        {
+            best = Math.min(best, run(backend, queue, buffer, calls, events));
+        }
+        return best;
+    }
+
+    /**
+     * Enqueues the given number of calls, and returns the time per call,
+     * in nanoseconds. The time includes waiting for the queue after each
+     * {@value #CALLS_PER_FINISH} calls, so that the queue does not grow
+     * without bounds.
+     */
+    private static double run(CLBLASBackend backend,
+        cl_command_queue queue, cl_mem buffer, int calls, boolean events)
+    {
+        cl_event event = events ? new cl_event() : null;
+        long before = System.nanoTime();
+        for (int i = 0; i < calls; i++)
+        {
+            backend.sscal(1, 1.0f, buffer, 0, 1, queue, 0, null, event);
+            if (event != null)
+            {
+                clReleaseEvent(event);
+            }
+            if ((i + 1) % CALLS_PER_FINISH == 0)
+            {
+                clFinish(queue);
+            }
+        }
+        clFinish(queue);
+        return (double) (System.nanoTime() - before) / calls;
+    }
+}
@@ -0,0 +1,125 @@
+package org.jocl.blas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.jocl.cl_command_queue;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.junit.Test;
+
+/**
+ * Tests for the selection of the {@link CLBLASBackend} with 
+ * {@link CLBLASBackends}. This does not require the native library.
+ */
+public class CLBLASBackendsTest
+{
+    @Test
+    public void testDefaultIsJni()
+    {
+        assertSame(CLBLASBackends.getJniBackend(), 
+            CLBLASBackends.createBackend(null));
+        assertSame(CLBLASBackends.getJniBackend(), 
+            CLBLASBackends.createBackend("jni"));
+    }
+
+    @Test
+    public void testCreateByClassName()
+    {
+        CLBLASBackend backend = CLBLASBackends.createBackend(
+            RecordingBackend.class.getName());
+        assertTrue(backend instanceof RecordingBackend);
+    }
+
+    @Test
+    public void testCreateForeign()
+    {
+        // The backend is only available when it was compiled with Java 22
+        // and the clBLAS library can be found
+        try
+        {
+            CLBLASBackend backend = CLBLASBackends.createBackend(
+                CLBLASBackends.FOREIGN_BACKEND);
+            assertEquals(CLBLASBackends.FOREIGN_BACKEND_CLASS, 
+                backend.getClass().getName());
+        }
+        catch (IllegalStateException e)
+        {
+            assertTrue(e.getMessage().contains(
+                CLBLASBackends.FOREIGN_BACKEND));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCreateUnknownClass()
+    {
+        CLBLASBackends.createBackend("org.example.DoesNotExist");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCreateWrongType()
+    {
+        CLBLASBackends.createBackend(String.class.getName());
+    }
+
+    @Test
+    public void testSetBackend()
+    {
+        RecordingBackend backend = new RecordingBackend();
+        CLBLASBackends.setBackend(backend);
+        try
+        {
+            assertSame(backend, CLBLASBackends.getBackend());
+        }
+        finally
+        {
+            CLBLASBackends.setBackend(null);
+        }
+        assertSame(CLBLASBackends.getJniBackend(), 
+            CLBLASBackends.getBackend());
+    }
+
+    public static class RecordingBackend implements CLBLASBackend
+    {
+        @Override
+        public int sgemm(int order, int transA, int transB, 
+            long M, long N, long K, float alpha, 
+            cl_mem A, long offA, long lda, cl_mem B, long offB, long ldb, 
+            float beta, cl_mem C, long offC, long ldc, 
+            cl_command_queue commandQueue, int numEventsInWaitList, 
+            cl_event eventWaitList[], cl_event event)
+        {
+            return clblasStatus.clblasSuccess;
+        }
+
+        @Override
+        public int sgemv(int order, int transA, long M, long N, 
+            float alpha, cl_mem A, long offA, long lda, 
+            cl_mem x, long offx, int incx, 
+            float beta, cl_mem y, long offy, int incy, 
+            cl_command_queue commandQueue, int numEventsInWaitList, 
+            cl_event eventWaitList[], cl_event event)
+        {
+            return clblasStatus.clblasSuccess;
+        }
+
+        @Override
+        public int saxpy(long N, float alpha, 
+            cl_mem X, long offx, int incx, cl_mem Y, long offy, int incy, 
+            cl_command_queue commandQueue, int numEventsInWaitList, 
+            cl_event eventWaitList[], cl_event event)
+        {
+            return clblasStatus.clblasSuccess;
+        }
+
+        @Override
+        public int sscal(long N, float alpha, 
+            cl_mem X, long offx, int incx, 
+            cl_command_queue commandQueue, int numEventsInWaitList, 
+            cl_event eventWaitList[], cl_event event)
+        {
+            return clblasStatus.clblasSuccess;
+        }
+    }
+}
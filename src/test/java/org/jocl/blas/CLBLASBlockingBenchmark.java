@@ -0,0 +1,218 @@
+package org.jocl.blas;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jocl.CL;
+import org.jocl.EventCallbackFunction;
+import org.jocl.cl_event;
+
+/**
+ * A benchmark for the carrier thread utilization of the 
+ * {@link CLBLASBlocking} methods, with 10000 concurrent readers 
+ * against a simulated backend. This does not require an OpenCL device.
+ * <br>
+ * <br>
+ * Each reader waits for a simulated transfer that completes after a 
+ * fixed latency. With {@link CLBLASBlocking#await(cl_event)}, the readers
+ * run in virtual threads that are unmounted while waiting. For 
+ * comparison, the blocking inside native code is modeled by readers that
+ * hold one carrier thread for the whole duration of the transfer. The
+ * simulated latency in milliseconds may be given as the first argument.
+ * The
+ * virtual threads require Java 21 or later, and are created via 
+ * reflection, so that this class compiles with older versions.
+ */
+public class CLBLASBlockingBenchmark
+{
+    private static final int NUM_READERS = 10000;
+    private static long latencyMs = 2;
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length > 0)
+        {
+            latencyMs = Long.parseLong(args[0]);
+        }
+        ExecutorService virtualExecutor = createVirtualThreadExecutor();
+        if (virtualExecutor == null)
+        {
+            System.out.println("Virtual threads are not available, " + 
+                "skipping benchmark");
+            return;
+        }
+        int carriers = Runtime.getRuntime().availableProcessors();
+        final ScheduledExecutorService device = 
+            Executors.newScheduledThreadPool(2);
+        CLBLASBlocking.setEventCallbackRegistrar(
+            new CLBLASBlocking.EventCallbackRegistrar()
+        {
+            @Override
+            public int register(final cl_event event,
+                final EventCallbackFunction callback)
+            {
+                device.schedule(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        callback.function(event, CL.CL_COMPLETE, null);
+                    }
+                }, latencyMs, TimeUnit.MILLISECONDS);
+                return CL.CL_SUCCESS;
+            }
+        });
+        try
+        {
+            // Warm-up
+            runParked(virtualExecutor);
+
+            Result parked = runParked(virtualExecutor);
+            Result pinned = runPinned(carriers);
+            System.out.println("Readers: " + NUM_READERS + 
+                ", simulated transfer latency: " + latencyMs + " ms, " + 
+                "carrier threads: " + carriers);
+            System.out.println("Native blocking (pinned carrier): " + pinned);
+            System.out.println("CLBLASBlocking (parked)         : " + parked);
+        }
+        finally
+        {
+            CLBLASBlocking.setEventCallbackRegistrar(null);
+            virtualExecutor.shutdown();
+            device.shutdown();
+        }
+    }
+
+    private static Result runParked(ExecutorService executor) 
+        throws InterruptedException
+    {
+        final CountDownLatch done = new CountDownLatch(NUM_READERS);
+        final AtomicInteger waiting = new AtomicInteger();
+        final AtomicInteger peakWaiting = new AtomicInteger();
+        final Set<String> carrierNames = Collections.newSetFromMap(
+            new ConcurrentHashMap<String, Boolean>());
+        long before = System.nanoTime();
+        for (int i = 0; i < NUM_READERS; i++)
+        {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    carrierNames.add(carrierName());
+                    updatePeak(peakWaiting, waiting.incrementAndGet());
+                    CLBLASBlocking.await(new cl_event());
+                    waiting.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long after = System.nanoTime();
+        return new Result(after - before, peakWaiting.get(), 
+            carrierNames.size());
+    }
+
+    private static Result runPinned(int carriers) throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(carriers);
+        final CountDownLatch done = new CountDownLatch(NUM_READERS);
+        final AtomicInteger waiting = new AtomicInteger();
+        final AtomicInteger peakWaiting = new AtomicInteger();
+        long before = System.nanoTime();
+        for (int i = 0; i < NUM_READERS; i++)
+        {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    updatePeak(peakWaiting, waiting.incrementAndGet());
+                    try
+                    {
+                        Thread.sleep(latencyMs);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    waiting.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long after = System.nanoTime();
+        executor.shutdown();
+        return new Result(after - before, peakWaiting.get(), carriers);
+    }
+
+    private static void updatePeak(AtomicInteger peak, int value)
+    {
+        while (true)
+        {
+            int current = peak.get();
+            if (value <= current || peak.compareAndSet(current, value))
+            {
+                return;
+            }
+        }
+    }
+
+    private static String carrierName()
+    {
+        // The string representation of a virtual thread contains the 
+        // name of its current carrier thread after the '@'
+        String s = Thread.currentThread().toString();
+        int index = s.lastIndexOf('@');
+        return index < 0 ? s : s.substring(index + 1);
+    }
+
+    private static ExecutorService createVirtualThreadExecutor()
+    {
+        try
+        {
+            Method method = Executors.class.getMethod(
+                "newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    private static class Result
+    {
+        private final long durationNs;
+        private final int peakWaiting;
+        private final int carriersUsed;
+
+        Result(long durationNs, int peakWaiting, int carriersUsed)
+        {
+            this.durationNs = durationNs;
+            this.peakWaiting = peakWaiting;
+            this.carriersUsed = carriersUsed;
+        }
+
+        @Override
+        public String toString()
+        {
+            double seconds = durationNs / 1e9;
+            return String.format(
+                "%8.3f s, %10.1f reads/s, " + 
+                "peak concurrent waits %5d, carriers used %3d, " + 
+                "waits per carrier %7.1f",
+                seconds, NUM_READERS / seconds, peakWaiting, carriersUsed, 
+                (double) peakWaiting / carriersUsed);
+        }
+    }
+}
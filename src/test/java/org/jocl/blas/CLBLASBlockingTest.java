@@ -0,0 +1,141 @@
+package org.jocl.blas;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+
+import org.jocl.Pointer;
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_mem;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link CLBLASBlocking} transfer helpers with pointers to
+ * Java memory. These are rejected before anything is enqueued, so this
+ * does not require an OpenCL device.
+ */
+public class CLBLASBlockingTest
+{
+    /**
+     * A transfer that is called with a host pointer
+     */
+    private interface Transfer
+    {
+        /**
+         * Execute the transfer with the given host pointer
+         *
+         * @param host The host pointer
+         * @param device The device memory
+         * @param queue The command queue
+         */
+        void run(Pointer host, cl_mem device, cl_command_queue queue);
+    }
+
+    /**
+     * The transfers of all helpers that accept a host pointer
+     */
+    private static final Transfer TRANSFERS[] = {
+        new Transfer()
+        {
+            @Override
+            public void run(Pointer host, cl_mem device,
+                cl_command_queue queue)
+            {
+                CLBLASBlocking.clblasWriteSubMatrix(
+                    clblasOrder.clblasRowMajor, Sizeof.cl_float,
+                    host, 0, 2, 2, 2, 0, 0, device, 0, 2, 2, 2, 0, 0, 2, 2,
+                    queue, 0, null);
+            }
+        },
+        new Transfer()
+        {
+            @Override
+            public void run(Pointer host, cl_mem device,
+                cl_command_queue queue)
+            {
+                CLBLASBlocking.clblasReadSubMatrix(
+                    clblasOrder.clblasRowMajor, Sizeof.cl_float,
+                    device, 0, 2, 2, 2, 0, 0, host, 0, 2, 2, 2, 0, 0, 2, 2,
+                    queue, 0, null);
+            }
+        },
+        new Transfer()
+        {
+            @Override
+            public void run(Pointer host, cl_mem device,
+                cl_command_queue queue)
+            {
+                CLBLASBlocking.clblasWriteVector(4, Sizeof.cl_float,
+                    host, 0, device, 0, queue, 0, null);
+            }
+        },
+        new Transfer()
+        {
+            @Override
+            public void run(Pointer host, cl_mem device,
+                cl_command_queue queue)
+            {
+                CLBLASBlocking.clblasReadVector(4, Sizeof.cl_float,
+                    device, 0, host, 0, queue, 0, null);
+            }
+        },
+        new Transfer()
+        {
+            @Override
+            public void run(Pointer host, cl_mem device,
+                cl_command_queue queue)
+            {
+                CLBLASBlocking.clblasWriteMatrix(clblasOrder.clblasRowMajor,
+                    2, 2, Sizeof.cl_float, host, 0, 2, device, 0, 2,
+                    queue, 0, null);
+            }
+        },
+        new Transfer()
+        {
+            @Override
+            public void run(Pointer host, cl_mem device,
+                cl_command_queue queue)
+            {
+                CLBLASBlocking.clblasReadMatrix(clblasOrder.clblasRowMajor,
+                    2, 2, Sizeof.cl_float, device, 0, 2, host, 0, 2,
+                    queue, 0, null);
+            }
+        }
+    };
+
+    /**
+     * Asserts that all transfers reject the given host pointer
+     */
+    private static void assertRejected(Pointer host)
+    {
+        for (Transfer transfer : TRANSFERS)
+        {
+            try
+            {
+                transfer.run(host, FakeHandles.createMem(),
+                    FakeHandles.createCommandQueue());
+                fail("Expected IllegalArgumentException");
+            }
+            catch (IllegalArgumentException e)
+            {
+                assertTrue(e.getMessage().contains("Java array"));
+            }
+        }
+    }
+
+    @Test
+    public void testArrayPointerIsRejected()
+    {
+        assertRejected(Pointer.to(new float[4]));
+        assertRejected(Pointer.to(new float[8]).withByteOffset(
+            4 * Sizeof.cl_float));
+    }
+
+    @Test
+    public void testNonDirectBufferPointerIsRejected()
+    {
+        assertRejected(Pointer.toBuffer(ByteBuffer.allocate(16)));
+    }
+}
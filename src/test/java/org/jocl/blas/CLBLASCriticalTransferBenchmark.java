@@ -0,0 +1,247 @@
+package org.jocl.blas;
+
+import static org.jocl.CL.*;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.jocl.Pointer;
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_context_properties;
+import org.jocl.cl_device_id;
+import org.jocl.cl_mem;
+import org.jocl.cl_platform_id;
+
+/**
+ * A benchmark comparing the synchronous vector transfers that receive
+ * a {@link Pointer} to a Java array with the overloads that receive the
+ * array directly, and access it in a critical region. This requires an
+ * OpenCL device. The number of elements may be given as the first
+ * argument. <br>
+ * <br>
+ * Besides the times, the benchmark measures the host memory that each
+ * path uses for copies of the array: On Linux, the peak resident set
+ * size is reset before a transfer, and its increase during the transfer
+ * is reported. A copy of the array that is made by the JNI layer shows
+ * up as an increase of roughly the size of the array.
+ */
+public class CLBLASCriticalTransferBenchmark
+{
+    private static final int RUNS = 20;
+
+    public static void main(String[] args)
+    {
+        int n = 64 << 20;
+        if (args.length > 0)
+        {
+            n = Integer.parseInt(args[0]);
+        }
+        setExceptionsEnabled(true);
+        CLBLAS.setExceptionsEnabled(true);
+
+        cl_platform_id platforms[] = new cl_platform_id[1];
+        clGetPlatformIDs(1, platforms, null);
+        cl_device_id devices[] = new cl_device_id[1];
+        clGetDeviceIDs(platforms[0], CL_DEVICE_TYPE_ALL, 1, devices, null);
+        cl_context_properties contextProperties = new cl_context_properties();
+        contextProperties.addProperty(CL_CONTEXT_PLATFORM, platforms[0]);
+        cl_context context = clCreateContext(
+            contextProperties, 1, devices, null, null, null);
+        cl_command_queue queue =
+            clCreateCommandQueue(context, devices[0], 0, null);
+        CLBLAS.clblasSetup();
+
+        float array[] = new float[n];
+        for (int i = 0; i < n; i++)
+        {
+            array[i] = i;
+        }
+        cl_mem buffer = clCreateBuffer(context, CL_MEM_READ_WRITE,
+            (long) n * Sizeof.cl_float, null, null);
+        try
+        {
+            // Warm-up
+            runPointer(queue, buffer, array);
+            runCritical(queue, buffer, array);
+
+            Result pointer = runPointer(queue, buffer, array);
+            Result critical = runCritical(queue, buffer, array);
+            System.out.println("Elements: " + n + ", runs: " + RUNS);
+            System.out.println("Pointer.to(array): " + pointer);
+            System.out.println("float[] overload : " + critical);
+
+            final cl_command_queue q = queue;
+            final cl_mem b = buffer;
+            final float a[] = array;
+            long pointerCopy = measurePeakRssIncrease(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    CLBLAS.clblasWriteVector(a.length, Sizeof.cl_float,
+                        Pointer.to(a), 0, b, 0, q, 0, null);
+                }
+            });
+            long criticalCopy = measurePeakRssIncrease(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    CLBLAS.clblasWriteVector(a.length, a, 0, b, 0, q, 0, null);
+                }
+            });
+            if (pointerCopy < 0 || criticalCopy < 0)
+            {
+                System.out.println("Host copy sizes are not available " +
+                    "(requires /proc/self/clear_refs)");
+            }
+            else
+            {
+                System.out.println("Peak RSS increase per write: " +
+                    "Pointer.to(array) " + pointerCopy + " bytes, " +
+                    "float[] overload " + criticalCopy + " bytes, " +
+                    "saved " + (pointerCopy - criticalCopy) + " bytes " +
+                    "(array size " + (long) n * Sizeof.cl_float + " bytes)");
+            }
+        }
+        finally
+        {
+            clReleaseMemObject(buffer);
+            CLBLAS.clblasTeardown();
+            clReleaseCommandQueue(queue);
+            clReleaseContext(context);
+        }
+    }
+
+    /**
+     * Reset the peak resident set size of this process, run the given
+     * transfer, and return the increase of the peak resident set size.
+     * Returns -1 if this is not supported on the current platform.
+     */
+    private static long measurePeakRssIncrease(Runnable transfer)
+    {
+        try
+        {
+            // Writing 5 resets the peak RSS to the current RSS
+            FileWriter writer = new FileWriter("/proc/self/clear_refs");
+            try
+            {
+                writer.write("5");
+            }
+            finally
+            {
+                writer.close();
+            }
+            long before = readStatus("VmHWM:");
+            transfer.run();
+            long after = readStatus("VmHWM:");
+            if (before < 0 || after < 0)
+            {
+                return -1;
+            }
+            return after - before;
+        }
+        catch (IOException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the value of the given field of /proc/self/status, in
+     * bytes, or -1 if the field is not found
+     */
+    private static long readStatus(String field) throws IOException
+    {
+        BufferedReader reader =
+            new BufferedReader(new FileReader("/proc/self/status"));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.startsWith(field))
+                {
+                    String tokens[] =
+                        line.substring(field.length()).trim().split("\\s+");
+                    return Long.parseLong(tokens[0]) * 1024;
+                }
+            }
+            return -1;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private static Result runPointer(
+        cl_command_queue queue, cl_mem buffer, float array[])
+    {
+        int n = array.length;
+        Pointer pointer = Pointer.to(array);
+        long write = 0;
+        long read = 0;
+        for (int r = 0; r < RUNS; r++)
+        {
+            long before = System.nanoTime();
+            CLBLAS.clblasWriteVector(n, Sizeof.cl_float, pointer, 0,
+                buffer, 0, queue, 0, null);
+            long middle = System.nanoTime();
+            CLBLAS.clblasReadVector(n, Sizeof.cl_float, buffer, 0,
+                pointer, 0, queue, 0, null);
+            long after = System.nanoTime();
+            write += middle - before;
+            read += after - middle;
+        }
+        return new Result(n, write, read);
+    }
+
+    private static Result runCritical(
+        cl_command_queue queue, cl_mem buffer, float array[])
+    {
+        int n = array.length;
+        long write = 0;
+        long read = 0;
+        for (int r = 0; r < RUNS; r++)
+        {
+            long before = System.nanoTime();
+            CLBLAS.clblasWriteVector(n, array, 0, buffer, 0, queue, 0, null);
+            long middle = System.nanoTime();
+            CLBLAS.clblasReadVector(n, buffer, 0, array, 0, queue, 0, null);
+            long after = System.nanoTime();
+            write += middle - before;
+            read += after - middle;
+        }
+        return new Result(n, write, read);
+    }
+
+    private static class Result
+    {
+        private final long bytes;
+        private final long writeNs;
+        private final long readNs;
+
+        Result(int n, long writeNs, long readNs)
+        {
+            this.bytes = (long) n * Sizeof.cl_float;
+            this.writeNs = writeNs;
+            this.readNs = readNs;
+        }
+
+        @Override
+        public String toString()
+        {
+            double writeMs = writeNs / 1e6 / RUNS;
+            double readMs = readNs / 1e6 / RUNS;
+            return String.format(
+                "write %8.3f ms (%6.2f GB/s), read %8.3f ms (%6.2f GB/s)",
+                writeMs, bytes / (writeMs * 1e6),
+                readMs, bytes / (readMs * 1e6));
+        }
+    }
+}
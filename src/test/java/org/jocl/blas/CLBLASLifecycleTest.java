@@ -0,0 +1,204 @@
+package org.jocl.blas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link CLBLASLifecycle}. These tests use a stub library
+ * and do not require the native library or an OpenCL device.
+ */
+public class CLBLASLifecycleTest
+{
+    /**
+     * A stub library that counts the setup and teardown calls, and
+     * records whether they have been made in an invalid state
+     */
+    private static class StubLibrary implements CLBLASLifecycle.Library
+    {
+        final AtomicBoolean initialized = new AtomicBoolean();
+        final AtomicInteger setups = new AtomicInteger();
+        final AtomicInteger teardowns = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        volatile int setupResult = clblasStatus.clblasSuccess;
+
+        @Override
+        public int setup()
+        {
+            if (setupResult != clblasStatus.clblasSuccess)
+            {
+                return setupResult;
+            }
+            if (!initialized.compareAndSet(false, true))
+            {
+                errors.incrementAndGet();
+            }
+            setups.incrementAndGet();
+            return clblasStatus.clblasSuccess;
+        }
+
+        @Override
+        public void teardown()
+        {
+            if (!initialized.compareAndSet(true, false))
+            {
+                errors.incrementAndGet();
+            }
+            teardowns.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testLazySetupAndSingleTeardown()
+    {
+        StubLibrary library = new StubLibrary();
+        CLBLASLifecycle lifecycle = new CLBLASLifecycle(library);
+        assertEquals(0, library.setups.get());
+
+        assertEquals(clblasStatus.clblasSuccess, lifecycle.acquire());
+        assertEquals(clblasStatus.clblasSuccess, lifecycle.acquire());
+        assertEquals(1, library.setups.get());
+        assertEquals(2, lifecycle.getReferenceCount());
+
+        lifecycle.release();
+        assertEquals(0, library.teardowns.get());
+        lifecycle.release();
+        assertEquals(1, library.teardowns.get());
+        assertFalse(lifecycle.isInitialized());
+    }
+
+    @Test
+    public void testSetupAgainAfterTeardown()
+    {
+        StubLibrary library = new StubLibrary();
+        CLBLASLifecycle lifecycle = new CLBLASLifecycle(library);
+        lifecycle.acquire();
+        lifecycle.release();
+        lifecycle.acquire();
+        lifecycle.release();
+        assertEquals(2, library.setups.get());
+        assertEquals(2, library.teardowns.get());
+        assertEquals(0, library.errors.get());
+    }
+
+    @Test
+    public void testFailedSetup()
+    {
+        StubLibrary library = new StubLibrary();
+        library.setupResult = clblasStatus.clblasOutOfResources;
+        CLBLASLifecycle lifecycle = new CLBLASLifecycle(library);
+        assertEquals(clblasStatus.clblasOutOfResources, lifecycle.acquire());
+        assertEquals(0, lifecycle.getReferenceCount());
+
+        library.setupResult = clblasStatus.clblasSuccess;
+        assertEquals(clblasStatus.clblasSuccess, lifecycle.acquire());
+        assertTrue(lifecycle.isInitialized());
+        lifecycle.release();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnbalancedRelease()
+    {
+        CLBLASLifecycle lifecycle = new CLBLASLifecycle(new StubLibrary());
+        lifecycle.release();
+    }
+
+    @Test
+    public void testConcurrentAcquireRelease() throws Exception
+    {
+        final StubLibrary library = new StubLibrary();
+        final CLBLASLifecycle lifecycle = new CLBLASLifecycle(library);
+        final int numThreads = 16;
+        final int numIterations = 20000;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try
+        {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < numThreads; t++)
+            {
+                futures.add(executor.submit(new Callable<Integer>()
+                {
+                    @Override
+                    public Integer call() throws Exception
+                    {
+                        start.await();
+                        int violations = 0;
+                        for (int i = 0; i < numIterations; i++)
+                        {
+                            lifecycle.acquire();
+                            if (!library.initialized.get())
+                            {
+                                violations++;
+                            }
+                            lifecycle.release();
+                        }
+                        return violations;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> future : futures)
+            {
+                assertEquals("Library not initialized while referenced", 
+                    0, future.get().intValue());
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertEquals(0, library.errors.get());
+        assertEquals(0, lifecycle.getReferenceCount());
+        assertFalse(library.initialized.get());
+        assertEquals(library.setups.get(), library.teardowns.get());
+        assertEquals(library.setups.get(), lifecycle.getSetupCount());
+    }
+
+    @Test
+    public void testConcurrentWithLongLivedReference() throws Exception
+    {
+        final StubLibrary library = new StubLibrary();
+        final CLBLASLifecycle lifecycle = new CLBLASLifecycle(library);
+        lifecycle.acquire();
+
+        final int numThreads = 8;
+        final CountDownLatch done = new CountDownLatch(numThreads);
+        for (int t = 0; t < numThreads; t++)
+        {
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < 20000; i++)
+                    {
+                        lifecycle.acquire();
+                        lifecycle.release();
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+
+        // While one reference was held, there may never be a teardown
+        assertEquals(1, library.setups.get());
+        assertEquals(0, library.teardowns.get());
+        lifecycle.release();
+        assertEquals(1, library.teardowns.get());
+        assertEquals(0, library.errors.get());
+    }
+}
@@ -0,0 +1,351 @@
+package org.jocl.blas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jocl.CL;
+import org.jocl.EventCallbackFunction;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link ExecutionContext}, with events that only count
+ * their references, and operations that are not enqueued
+ */
+public class ExecutionContextTest
+{
+    /**
+     * Events that count how often each event was retained and released
+     */
+    private static class CountingEvents implements ExecutionContext.Events
+    {
+        final Map<cl_event, Integer> references =
+            new IdentityHashMap<cl_event, Integer>();
+
+        @Override
+        public synchronized void retain(cl_event event)
+        {
+            Integer count = references.get(event);
+            references.put(event, count == null ? 1 : count + 1);
+        }
+
+        @Override
+        public synchronized void release(cl_event event)
+        {
+            Integer count = references.get(event);
+            assertTrue("Released unretained event",
+                count != null && count > 0);
+            references.put(event, count - 1);
+        }
+
+        @Override
+        public void onComplete(cl_event event,
+            EventCallbackFunction callback)
+        {
+            callback.function(event, CL.CL_COMPLETE, null);
+        }
+
+        synchronized int getReferences(cl_event event)
+        {
+            Integer count = references.get(event);
+            return count == null ? 0 : count;
+        }
+    }
+
+    /**
+     * An operation that records the queue and the events that it was
+     * enqueued with
+     */
+    private static class RecordingOperation
+        implements ExecutionContext.Operation
+    {
+        cl_command_queue commandQueue;
+        cl_event waitEvents[];
+
+        @Override
+        public int enqueue(cl_command_queue commandQueue,
+            int numWaitEvents, cl_event eventWaitList[], cl_event event)
+        {
+            this.commandQueue = commandQueue;
+            this.waitEvents = eventWaitList == null ?
+                new cl_event[0] : eventWaitList.clone();
+            return CL.CL_SUCCESS;
+        }
+    }
+
+    /**
+     * Creates the given number of command queues
+     */
+    private static cl_command_queue[] createQueues(int n)
+    {
+        cl_command_queue commandQueues[] = new cl_command_queue[n];
+        for (int i = 0; i < n; i++)
+        {
+            commandQueues[i] = FakeHandles.createCommandQueue();
+        }
+        return commandQueues;
+    }
+
+    /**
+     * Starts a thread that is assigned to the queue with the given index,
+     * and executes the given runnable in this thread
+     */
+    private static Thread startOnQueue(final ExecutionContext context,
+        final int queueIndex, final Runnable runnable)
+        throws InterruptedException
+    {
+        while (true)
+        {
+            final boolean matching[] = new boolean[1];
+            final CountDownLatch checked = new CountDownLatch(1);
+            Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    matching[0] = context.getQueueIndex() == queueIndex;
+                    checked.countDown();
+                    if (matching[0])
+                    {
+                        runnable.run();
+                    }
+                }
+            });
+            thread.start();
+            checked.await();
+            if (matching[0])
+            {
+                return thread;
+            }
+            thread.join();
+        }
+    }
+
+    /**
+     * Submits the given operation from a thread that is assigned to the
+     * queue with the given index, and waits until it was submitted
+     */
+    private static void submitOnQueue(final ExecutionContext context,
+        int queueIndex, final cl_mem reads[], final cl_mem writes[],
+        final RecordingOperation operation, final cl_event event)
+        throws InterruptedException
+    {
+        Thread thread = startOnQueue(context, queueIndex, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                context.submit(reads, writes, operation, event);
+            }
+        });
+        thread.join();
+    }
+
+    /**
+     * Asserts that the given operation waited for exactly the given event
+     */
+    private static void assertWaitEvents(
+        RecordingOperation operation, cl_event expected)
+    {
+        assertEquals(1, operation.waitEvents.length);
+        assertSame(expected, operation.waitEvents[0]);
+    }
+
+    @Test
+    public void testQueueAssignment() throws InterruptedException
+    {
+        cl_command_queue commandQueues[] = createQueues(4);
+        final ExecutionContext context = new ExecutionContext(
+            commandQueues, false, new CountingEvents());
+
+        RecordingOperation operation = new RecordingOperation();
+        cl_mem written[] = { FakeHandles.createMem() };
+        context.submit(null, written, operation, null);
+        assertSame(context.getCommandQueue(), operation.commandQueue);
+        assertSame(commandQueues[context.getQueueIndex()],
+            operation.commandQueue);
+        assertEquals(context.getQueueIndex(), context.getQueueIndex());
+
+        final Set<Integer> used = new HashSet<Integer>();
+        for (int i = 0; i < 64; i++)
+        {
+            Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    synchronized (used)
+                    {
+                        used.add(context.getQueueIndex());
+                    }
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+        assertEquals(new HashSet<Integer>(Arrays.asList(0, 1, 2, 3)), used);
+    }
+
+    @Test
+    public void testCrossQueueWaits() throws InterruptedException
+    {
+        CountingEvents events = new CountingEvents();
+        ExecutionContext context =
+            new ExecutionContext(createQueues(2), true, events);
+        cl_mem a[] = { FakeHandles.createMem() };
+        cl_mem b[] = { FakeHandles.createMem() };
+
+        cl_event write0 = FakeHandles.createEvent();
+        RecordingOperation operation = new RecordingOperation();
+        submitOnQueue(context, 0, b, a, operation, write0);
+        assertEquals(0, operation.waitEvents.length);
+
+        // Reading on the same queue does not wait
+        cl_event read0 = FakeHandles.createEvent();
+        submitOnQueue(context, 0, a, null, operation, read0);
+        assertEquals(0, operation.waitEvents.length);
+
+        // Reading on another queue waits for the write
+        cl_event read1 = FakeHandles.createEvent();
+        submitOnQueue(context, 1, a, null, operation, read1);
+        assertWaitEvents(operation, write0);
+
+        // Writing waits for the read on the other queue
+        cl_event write0b = FakeHandles.createEvent();
+        submitOnQueue(context, 0, null, a, operation, write0b);
+        assertWaitEvents(operation, read1);
+
+        // Writing a buffer that was read on another queue waits for it
+        cl_event write1 = FakeHandles.createEvent();
+        submitOnQueue(context, 1, null, b, operation, write1);
+        assertWaitEvents(operation, write0);
+
+        List<QueueStatistics> statistics = context.getStatistics();
+        assertEquals(3, statistics.get(0).getSubmitted());
+        assertEquals(1, statistics.get(0).getCrossQueueWaits());
+        assertEquals(3, statistics.get(0).getCompleted());
+        assertEquals(2, statistics.get(1).getSubmitted());
+        assertEquals(2, statistics.get(1).getCrossQueueWaits());
+
+        // The wait events are only referenced by the states
+        assertEquals(0, events.getReferences(write0));
+        assertEquals(0, events.getReferences(read0));
+        assertEquals(0, events.getReferences(read1));
+        assertEquals(1, events.getReferences(write0b));
+        assertEquals(1, events.getReferences(write1));
+    }
+
+    @Test
+    public void testForget() throws InterruptedException
+    {
+        CountingEvents events = new CountingEvents();
+        ExecutionContext context =
+            new ExecutionContext(createQueues(2), false, events);
+        cl_mem a[] = { FakeHandles.createMem() };
+
+        cl_event write0 = FakeHandles.createEvent();
+        cl_event read1 = FakeHandles.createEvent();
+        RecordingOperation operation = new RecordingOperation();
+        submitOnQueue(context, 0, null, a, operation, write0);
+        submitOnQueue(context, 1, a, null, operation, read1);
+        assertEquals(1, events.getReferences(write0));
+        assertEquals(1, events.getReferences(read1));
+
+        context.forget(a[0]);
+        assertEquals(0, events.getReferences(write0));
+        assertEquals(0, events.getReferences(read1));
+
+        // Forgetting twice or forgetting unknown buffers has no effect
+        context.forget(a[0]);
+        context.forget(FakeHandles.createMem());
+
+        // After forgetting, there are no dependencies
+        submitOnQueue(context, 0, null, a, operation,
+            FakeHandles.createEvent());
+        assertEquals(0, operation.waitEvents.length);
+    }
+
+    @Test
+    public void testConcurrentWritesAreOrdered() throws InterruptedException
+    {
+        final CountingEvents events = new CountingEvents();
+        final ExecutionContext context =
+            new ExecutionContext(createQueues(2), false, events);
+        final cl_mem a[] = { FakeHandles.createMem() };
+        final cl_mem b[] = { FakeHandles.createMem() };
+        final cl_mem ab[] = { b[0], a[0] };
+
+        // The first write is blocked while it is being enqueued
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final cl_event first = FakeHandles.createEvent();
+        Thread firstThread = startOnQueue(context, 0, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                context.submit(null, ab, new ExecutionContext.Operation()
+                {
+                    @Override
+                    public int enqueue(cl_command_queue commandQueue,
+                        int numWaitEvents, cl_event eventWaitList[],
+                        cl_event event)
+                    {
+                        entered.countDown();
+                        try
+                        {
+                            proceed.await();
+                        }
+                        catch (InterruptedException e)
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                        return CL.CL_SUCCESS;
+                    }
+                }, first);
+            }
+        });
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+        // The second write on the other queue has to wait for the first
+        final RecordingOperation second = new RecordingOperation();
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Thread secondThread = startOnQueue(context, 1, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    context.submit(a, b, second, FakeHandles.createEvent());
+                }
+                catch (Throwable t)
+                {
+                    errors.add(t);
+                }
+            }
+        });
+        Thread.sleep(100);
+        assertEquals(null, second.commandQueue);
+        proceed.countDown();
+        firstThread.join();
+        secondThread.join();
+
+        assertTrue(errors.isEmpty());
+        assertWaitEvents(second, first);
+        assertEquals(1, events.getReferences(first));
+    }
+}
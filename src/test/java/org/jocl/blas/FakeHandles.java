@@ -0,0 +1,102 @@
+package org.jocl.blas;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jocl.NativePointerObject;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_event;
+import org.jocl.cl_mem;
+
+/**
+ * Creates OpenCL handles for tests that do not use an OpenCL device.
+ * <br>
+ * <br>
+ * The equals and hashCode methods of JOCL objects compare the native
+ * pointers, so all handles that are created with their default
+ * constructor are equal. The handles that are created here receive
+ * distinct, fake native pointers, so that they can be used as keys in
+ * the same way as real handles. They must not be passed to OpenCL.
+ */
+public final class FakeHandles
+{
+    /**
+     * The next fake native pointer
+     */
+    private static final AtomicLong nextPointer = new AtomicLong(0x1000);
+
+    /**
+     * The field of the native pointer
+     */
+    private static final Field nativePointer;
+    static
+    {
+        try
+        {
+            nativePointer =
+                NativePointerObject.class.getDeclaredField("nativePointer");
+            nativePointer.setAccessible(true);
+        }
+        catch (NoSuchFieldException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Creates a memory object handle with a distinct native pointer
+     *
+     * @return The handle
+     */
+    public static cl_mem createMem()
+    {
+        return assignPointer(new cl_mem());
+    }
+
+    /**
+     * Creates an event handle with a distinct native pointer
+     *
+     * @return The handle
+     */
+    public static cl_event createEvent()
+    {
+        return assignPointer(new cl_event());
+    }
+
+    /**
+     * Creates a command queue handle with a distinct native pointer
+     *
+     * @return The handle
+     */
+    public static cl_command_queue createCommandQueue()
+    {
+        return assignPointer(new cl_command_queue());
+    }
+
+    /**
+     * Assigns a distinct native pointer to the given object
+     *
+     * @param object The object
+     * @return The object
+     */
+    private static <T extends NativePointerObject> T assignPointer(T object)
+    {
+        try
+        {
+            nativePointer.setLong(object, nextPointer.getAndAdd(16));
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        return object;
+    }
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private FakeHandles()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
@@ -0,0 +1,68 @@
+package org.jocl.blas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests that the native method declarations of {@link CLBLAS} match 
+ * the JNI functions, using the {@link NativeSignatureVerifier}. This 
+ * does not require the native library.
+ */
+public class NativeSignatureTest
+{
+    @Test
+    public void testCLBLASMatchesJOCLBLAS() throws IOException
+    {
+        List<String> mismatches = NativeSignatureVerifier.verify(
+            "org.jocl.blas.CLBLAS", 
+            new File("src/main/java/org/jocl/blas/CLBLAS.java"), 
+            new File("src/main/native/JOCLBLAS.cpp"));
+        assertEquals(Collections.<String>emptyList(), mismatches);
+    }
+
+    @Test
+    public void testDetectsMissingParameter() throws IOException
+    {
+        File javaFile = write("Example.java", 
+            "class Example {\n" + 
+            "    private static native int fNative(\n" +
+            "        float beta, cl_mem C, long offC, long ldc);\n" + 
+            "    private static native void gNative(int[] a);\n" + 
+            "}\n");
+        File nativeFile = write("Example.cpp", 
+            "JNIEXPORT jint JNICALL Java_org_example_Example_fNative(" + 
+            "JNIEnv *env, jclass cls, jfloat beta, jobject C, jlong ldc)\n" + 
+            "JNIEXPORT void JNICALL Java_org_example_Example_hNative(" + 
+            "JNIEnv *env, jclass cls)\n");
+        List<String> mismatches = NativeSignatureVerifier.verify(
+            "org.example.Example", javaFile, nativeFile);
+        assertEquals(3, mismatches.size());
+        assertTrue(mismatches.get(0).startsWith("fNative"));
+        assertEquals("gNative: no JNI implementation", mismatches.get(1));
+        assertEquals("hNative: no Java declaration", mismatches.get(2));
+    }
+
+    private static File write(String name, String content) throws IOException
+    {
+        File file = File.createTempFile("NativeSignatureTest", name);
+        file.deleteOnExit();
+        FileWriter writer = new FileWriter(file);
+        try
+        {
+            writer.write(content);
+        }
+        finally
+        {
+            writer.close();
+        }
+        return file;
+    }
+}
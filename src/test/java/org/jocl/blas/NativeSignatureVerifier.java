@@ -0,0 +1,287 @@
+package org.jocl.blas;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the <code>native</code> method declarations of a Java class 
+ * with the <code>JNIEXPORT</code> functions of the JNI source file that
+ * implements them. <br>
+ * <br>
+ * For each method, the return type and the types and names of all 
+ * parameters have to match, where the Java types are mapped to the 
+ * JNI types as by <code>javah</code>. Declarations without an 
+ * implementation and implementations without a declaration are 
+ * reported as well. The paths of the Java source file and the JNI 
+ * source file may be given as arguments of the main method, and 
+ * default to the files of {@link CLBLAS}.
+ */
+public class NativeSignatureVerifier
+{
+    private static final Pattern JAVA_NATIVE = Pattern.compile(
+        "\\bnative\\s+([\\w\\.\\[\\]]+)\\s+(\\w+)\\s*\\(([^)]*)\\)\\s*;");
+    private static final Pattern JNI_EXPORT = Pattern.compile(
+        "JNIEXPORT\\s+(\\w+)\\s+JNICALL\\s+(Java_\\w+)\\s*\\(([^)]*)\\)");
+
+    public static void main(String[] args) throws IOException
+    {
+        String javaPath = args.length > 0 ? args[0] : 
+            "src/main/java/org/jocl/blas/CLBLAS.java";
+        String nativePath = args.length > 1 ? args[1] : 
+            "src/main/native/JOCLBLAS.cpp";
+        List<String> mismatches = verify(
+            "org.jocl.blas.CLBLAS", new File(javaPath), new File(nativePath));
+        for (String mismatch : mismatches)
+        {
+            System.out.println(mismatch);
+        }
+        System.out.println(mismatches.size() + " mismatches");
+        if (!mismatches.isEmpty())
+        {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Verify the native methods of the given class against the given
+     * JNI source file
+     * 
+     * @param className The fully qualified name of the class
+     * @param javaFile The Java source file of the class
+     * @param nativeFile The JNI source file
+     * @return The descriptions of all mismatches
+     * @throws IOException If a file can not be read
+     */
+    public static List<String> verify(String className, 
+        File javaFile, File nativeFile) throws IOException
+    {
+        String prefix = "Java_" + mangle(className).replace('.', '_') + "_";
+        Map<String, Signature> declared = new LinkedHashMap<String, Signature>();
+        List<String> mismatches = new ArrayList<String>();
+        Matcher javaMatcher = JAVA_NATIVE.matcher(read(javaFile));
+        while (javaMatcher.find())
+        {
+            String name = javaMatcher.group(2);
+            Signature signature = new Signature(
+                toJniType(javaMatcher.group(1)), 
+                parseJavaParameters(javaMatcher.group(3)));
+            if (declared.put(prefix + mangle(name), signature) != null)
+            {
+                mismatches.add(name + ": overloaded native methods " + 
+                    "are not supported");
+            }
+        }
+        Map<String, Signature> exported = new LinkedHashMap<String, Signature>();
+        Matcher jniMatcher = JNI_EXPORT.matcher(read(nativeFile));
+        while (jniMatcher.find())
+        {
+            String function = jniMatcher.group(2);
+            if (function.startsWith(prefix))
+            {
+                exported.put(function, new Signature(jniMatcher.group(1), 
+                    parseJniParameters(jniMatcher.group(3))));
+            }
+        }
+        for (Map.Entry<String, Signature> entry : declared.entrySet())
+        {
+            String function = entry.getKey();
+            String name = function.substring(prefix.length());
+            Signature expected = entry.getValue();
+            Signature actual = exported.get(function);
+            if (actual == null)
+            {
+                mismatches.add(name + ": no JNI implementation");
+            }
+            else if (!expected.equals(actual))
+            {
+                mismatches.add(name + ": Java declaration " + expected + 
+                    " does not match JNI implementation " + actual);
+            }
+        }
+        for (String function : exported.keySet())
+        {
+            if (!declared.containsKey(function))
+            {
+                mismatches.add(function.substring(prefix.length()) + 
+                    ": no Java declaration");
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * Parses the given Java parameter list into a list of JNI type and 
+     * name pairs
+     */
+    private static List<String> parseJavaParameters(String parameters)
+    {
+        List<String> result = new ArrayList<String>();
+        for (String parameter : split(parameters))
+        {
+            // Either "type[] name" or "type name[]"
+            String tokens[] = parameter.replace("[]", " [] ").trim()
+                .split("\\s+");
+            StringBuilder type = new StringBuilder(tokens[0]);
+            String name = null;
+            for (int i = 1; i < tokens.length; i++)
+            {
+                if (tokens[i].equals("[]"))
+                {
+                    type.append("[]");
+                }
+                else if (!tokens[i].equals("final"))
+                {
+                    name = tokens[i];
+                }
+            }
+            result.add(toJniType(type.toString()) + " " + name);
+        }
+        return result;
+    }
+
+    /**
+     * Parses the given JNI parameter list, without the leading 
+     * <code>JNIEnv</code> and <code>jclass</code> parameters, into a 
+     * list of type and name pairs
+     */
+    private static List<String> parseJniParameters(String parameters)
+    {
+        List<String> all = split(parameters);
+        List<String> result = new ArrayList<String>();
+        for (int i = 2; i < all.size(); i++)
+        {
+            result.add(all.get(i).trim().replaceAll("\\s+", " "));
+        }
+        return result;
+    }
+
+    private static List<String> split(String parameters)
+    {
+        List<String> result = new ArrayList<String>();
+        for (String parameter : parameters.split(","))
+        {
+            if (parameter.trim().length() > 0)
+            {
+                result.add(parameter.trim());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the JNI type for the given Java type
+     */
+    private static String toJniType(String javaType)
+    {
+        if (javaType.endsWith("[]"))
+        {
+            String component = javaType.substring(0, javaType.length() - 2);
+            if (isPrimitive(component))
+            {
+                return "j" + component + "Array";
+            }
+            return "jobjectArray";
+        }
+        if (javaType.equals("void"))
+        {
+            return "void";
+        }
+        if (isPrimitive(javaType))
+        {
+            return "j" + javaType;
+        }
+        if (javaType.equals("String") || javaType.equals("java.lang.String"))
+        {
+            return "jstring";
+        }
+        return "jobject";
+    }
+
+    private static boolean isPrimitive(String type)
+    {
+        return type.equals("boolean") || type.equals("byte") || 
+            type.equals("char") || type.equals("short") || 
+            type.equals("int") || type.equals("long") || 
+            type.equals("float") || type.equals("double");
+    }
+
+    /**
+     * Escapes the underscores in the given name, as required for the 
+     * names of JNI functions
+     */
+    private static String mangle(String name)
+    {
+        return name.replace("_", "_1");
+    }
+
+    private static String read(File file) throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new FileInputStream(file), "UTF-8"));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                // Remove line comments, which may contain parentheses
+                int comment = line.indexOf("//");
+                if (comment >= 0)
+                {
+                    line = line.substring(0, comment);
+                }
+                sb.append(line).append("\n");
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return sb.toString();
+    }
+
+    private static class Signature
+    {
+        private final String returnType;
+        private final List<String> parameters;
+
+        Signature(String returnType, List<String> parameters)
+        {
+            this.returnType = returnType;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public boolean equals(Object object)
+        {
+            if (!(object instanceof Signature))
+            {
+                return false;
+            }
+            Signature other = (Signature) object;
+            return returnType.equals(other.returnType) && 
+                parameters.equals(other.parameters);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return returnType.hashCode() * 31 + parameters.hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            return returnType + " " + parameters;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.jocl.blas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link ShapeRecorder} and {@link ShapeSignature} classes.
+ * These tests do not require the native library.
+ */
+public class ShapeRecorderTest
+{
+    @Test
+    public void testFormatAndParse()
+    {
+        ShapeSignature signature = new ShapeSignature("clblasSgemm", 
+            clblasOrder.clblasColumnMajor, 
+            clblasTranspose.clblasNoTrans, 
+            clblasTranspose.clblasTrans, 
+            ShapeSignature.UNUSED, ShapeSignature.UNUSED, 
+            ShapeSignature.UNUSED, 128, 64, 32);
+        ShapeSignature parsed = ShapeSignature.parse(signature.format());
+        assertEquals(signature, parsed);
+        assertEquals(signature.hashCode(), parsed.hashCode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalid()
+    {
+        ShapeSignature.parse("clblasSgemm,1,2,3");
+    }
+
+    @Test
+    public void testRecordDistinct()
+    {
+        ShapeRecorder recorder = new ShapeRecorder();
+        for (int i = 0; i < 10; i++)
+        {
+            recorder.record(createGemv(i % 3));
+        }
+        assertEquals(3, recorder.getSignatures().size());
+    }
+
+    @Test
+    public void testMaximumSize()
+    {
+        ShapeRecorder recorder = new ShapeRecorder(5);
+        for (int i = 0; i < 10; i++)
+        {
+            recorder.record(createGemv(i));
+        }
+        assertEquals(5, recorder.getSignatures().size());
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException
+    {
+        ShapeRecorder recorder = new ShapeRecorder();
+        Set<ShapeSignature> expected = new HashSet<ShapeSignature>();
+        for (int i = 0; i < 10; i++)
+        {
+            ShapeSignature signature = createGemv(i);
+            recorder.record(signature);
+            expected.add(signature);
+        }
+        File file = File.createTempFile("ShapeRecorderTest", ".txt");
+        try
+        {
+            recorder.write(file);
+            List<ShapeSignature> read = ShapeRecorder.read(file);
+            assertEquals(expected, new HashSet<ShapeSignature>(read));
+        }
+        finally
+        {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testReadMissingFile() throws IOException
+    {
+        File file = new File("ShapeRecorderTest-does-not-exist.txt");
+        assertTrue(ShapeRecorder.read(file).isEmpty());
+    }
+
+    private static ShapeSignature createGemv(int size)
+    {
+        return new ShapeSignature("clblasSgemv", 
+            clblasOrder.clblasRowMajor, clblasTranspose.clblasNoTrans,
+            ShapeSignature.UNUSED, ShapeSignature.UNUSED, 
+            ShapeSignature.UNUSED, ShapeSignature.UNUSED, 
+            size, size + 1, ShapeSignature.UNUSED);
+    }
+}
@@ -0,0 +1,80 @@
+package org.jocl.blas.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link AdaptiveWindow} of the 
+ * {@link SgemvCoalescingExecutor}
+ */
+public class AdaptiveWindowTest
+{
+    private static final long MAXIMUM_WINDOW_NS = 
+        TimeUnit.MILLISECONDS.toNanos(1);
+    
+    @Test
+    public void testInitialWindowIsZero()
+    {
+        AdaptiveWindow window = new AdaptiveWindow(MAXIMUM_WINDOW_NS, 8);
+        assertEquals(0, window.getWindowNs());
+        window.onArrival(0);
+        assertEquals(0, window.getWindowNs());
+    }
+
+    @Test
+    public void testWindowUnderHighLoad()
+    {
+        AdaptiveWindow window = new AdaptiveWindow(MAXIMUM_WINDOW_NS, 8);
+        long gapNs = TimeUnit.MICROSECONDS.toNanos(10);
+        arrive(window, 0, gapNs, 100);
+        assertEquals(7 * gapNs, window.getWindowNs());
+    }
+
+    @Test
+    public void testWindowIsLimited()
+    {
+        AdaptiveWindow window = new AdaptiveWindow(MAXIMUM_WINDOW_NS, 64);
+        long gapNs = TimeUnit.MICROSECONDS.toNanos(100);
+        arrive(window, 0, gapNs, 100);
+        assertEquals(MAXIMUM_WINDOW_NS, window.getWindowNs());
+    }
+
+    @Test
+    public void testWindowUnderLowLoad()
+    {
+        AdaptiveWindow window = new AdaptiveWindow(MAXIMUM_WINDOW_NS, 8);
+        long gapNs = TimeUnit.MILLISECONDS.toNanos(5);
+        arrive(window, 0, gapNs, 100);
+        assertEquals(0, window.getWindowNs());
+    }
+
+    @Test
+    public void testWindowFollowsLoad()
+    {
+        AdaptiveWindow window = new AdaptiveWindow(MAXIMUM_WINDOW_NS, 8);
+        long gapNs = TimeUnit.MICROSECONDS.toNanos(10);
+        long nowNs = arrive(window, 0, gapNs, 100);
+        long highLoadWindowNs = window.getWindowNs();
+        arrive(window, nowNs, gapNs * 5, 5);
+        long lowerLoadWindowNs = window.getWindowNs();
+        assertTrue(lowerLoadWindowNs > highLoadWindowNs);
+        arrive(window, nowNs, MAXIMUM_WINDOW_NS * 10, 100);
+        assertEquals(0, window.getWindowNs());
+    }
+    
+    private static long arrive(
+        AdaptiveWindow window, long startNs, long gapNs, int count)
+    {
+        long nowNs = startNs;
+        for (int i = 0; i < count; i++)
+        {
+            nowNs += gapNs;
+            window.onArrival(nowNs);
+        }
+        return nowNs;
+    }
+}
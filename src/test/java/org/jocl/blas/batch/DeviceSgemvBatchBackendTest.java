@@ -0,0 +1,61 @@
+package org.jocl.blas.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import org.jocl.Sizeof;
+import org.junit.Test;
+
+/**
+ * Tests for the argument setup of the {@link DeviceSgemvBatchBackend}
+ * that does not require an OpenCL device
+ */
+public class DeviceSgemvBatchBackendTest
+{
+    private static FloatBuffer createStagingBuffer(int size)
+    {
+        return ByteBuffer.allocateDirect(size * Sizeof.cl_float)
+            .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    @Test
+    public void testInputsAreStagedInDirectBuffer()
+    {
+        FloatBuffer staging = createStagingBuffer(8);
+        float inputs[] = { 1, 2, 3, 4, 5, 6 };
+        FloatBuffer staged =
+            DeviceSgemvBatchBackend.stage(staging, inputs, 4);
+        assertTrue(staged.isDirect());
+        assertEquals(0, staged.position());
+        assertEquals(4, staged.remaining());
+        for (int i = 0; i < 4; i++)
+        {
+            assertEquals(inputs[i], staged.get(i), 0.0f);
+        }
+
+        // Staging again starts at the beginning of the buffer
+        staged = DeviceSgemvBatchBackend.stage(
+            staging, new float[] { 7, 8 }, 2);
+        assertEquals(0, staged.position());
+        assertEquals(2, staged.remaining());
+        assertEquals(7.0f, staged.get(0), 0.0f);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInputsLargerThanStagingBuffer()
+    {
+        DeviceSgemvBatchBackend.stage(
+            createStagingBuffer(2), new float[4], 4);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInputsShorterThanBatch()
+    {
+        DeviceSgemvBatchBackend.stage(
+            createStagingBuffer(8), new float[2], 4);
+    }
+}
@@ -0,0 +1,30 @@
+package org.jocl.blas.batch;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link PipelineStatistics}
+ */
+public class PipelineStatisticsTest
+{
+    @Test
+    public void testThroughputAndOccupancy()
+    {
+        PipelineStatistics s = new PipelineStatistics(
+            50, 2000000000L, 40, 1000, 300, 900, 250);
+        assertEquals(25.0, s.getThroughput(), 1e-9);
+        assertEquals(0.3, s.getUploadOccupancy(), 1e-9);
+        assertEquals(0.9, s.getComputeOccupancy(), 1e-9);
+        assertEquals(0.25, s.getDownloadOccupancy(), 1e-9);
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        PipelineStatistics s = new PipelineStatistics(0, 0, 0, 0, 0, 0, 0);
+        assertEquals(0.0, s.getThroughput(), 0.0);
+        assertEquals(0.0, s.getComputeOccupancy(), 0.0);
+    }
+}
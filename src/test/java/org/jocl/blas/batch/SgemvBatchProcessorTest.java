@@ -0,0 +1,216 @@
+package org.jocl.blas.batch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.clblasTranspose;
+import org.jocl.blas.host.HostBLAS;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link SgemvBatchProcessor}, using the 
+ * {@link HostSgemvBatchBackend}
+ */
+public class SgemvBatchProcessorTest
+{
+    private static class CollectingListener implements SgemvBatchListener
+    {
+        final List<float[]> inputs = new ArrayList<float[]>();
+        final List<float[]> outputs = new ArrayList<float[]>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        volatile Throwable error;
+
+        @Override
+        public void onNext(float[] input, float[] output)
+        {
+            inputs.add(input);
+            outputs.add(output);
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+            error = throwable;
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete()
+        {
+            completed.countDown();
+        }
+    }
+
+    @Test
+    public void testResultsInOrder() throws Exception
+    {
+        testResultsInOrder(clblasOrder.clblasRowMajor, 
+            clblasTranspose.clblasNoTrans);
+        testResultsInOrder(clblasOrder.clblasRowMajor, 
+            clblasTranspose.clblasTrans);
+        testResultsInOrder(clblasOrder.clblasColumnMajor, 
+            clblasTranspose.clblasNoTrans);
+        testResultsInOrder(clblasOrder.clblasColumnMajor, 
+            clblasTranspose.clblasTrans);
+    }
+
+    private static void testResultsInOrder(int order, int transW) 
+        throws Exception
+    {
+        int rows = 7;
+        int columns = 5;
+        int ldw = order == clblasOrder.clblasRowMajor ? columns : rows;
+        float W[] = createRandom(rows * columns, 0);
+        int inputSize = transW == clblasTranspose.clblasNoTrans ? 
+            columns : rows;
+        int outputSize = transW == clblasTranspose.clblasNoTrans ? 
+            rows : columns;
+
+        SgemvBatchBackend backend = new HostSgemvBatchBackend(
+            order, transW, rows, columns, W, ldw, 16);
+        CollectingListener listener = new CollectingListener();
+        SgemvBatchProcessor processor = new SgemvBatchProcessor(
+            backend, 16, 1, TimeUnit.MILLISECONDS, 64, listener);
+        List<float[]> submitted = new ArrayList<float[]>();
+        for (int i = 0; i < 100; i++)
+        {
+            float x[] = createRandom(inputSize, i + 1);
+            submitted.add(x);
+            processor.submit(x);
+        }
+        processor.close();
+        assertTrue(processor.awaitTermination(10, TimeUnit.SECONDS));
+        assertNull(listener.error);
+        assertEquals(100, listener.outputs.size());
+        for (int i = 0; i < 100; i++)
+        {
+            float x[] = submitted.get(i);
+            float expected[] = new float[outputSize];
+            HostBLAS.clblasSgemv(order, transW, rows, columns, 1.0f, 
+                W, 0, ldw, x, 0, 1, 0.0f, expected, 0, 1);
+            assertSame(x, listener.inputs.get(i));
+            assertArrayEquals(expected, listener.outputs.get(i), 1e-5f);
+        }
+    }
+
+    @Test
+    public void testBatching() throws Exception
+    {
+        SgemvBatchBackend backend = new HostSgemvBatchBackend(
+            clblasOrder.clblasRowMajor, clblasTranspose.clblasNoTrans, 
+            3, 4, new float[12], 4, 64);
+        CollectingListener listener = new CollectingListener();
+        SgemvBatchProcessor processor = new SgemvBatchProcessor(
+            backend, 64, 10, TimeUnit.SECONDS, 1000, listener);
+        for (int i = 0; i < 640; i++)
+        {
+            processor.submit(new float[4]);
+        }
+        processor.close();
+        assertTrue(processor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(640, processor.getVectorCount());
+        assertEquals(10, processor.getBatchCount());
+    }
+
+    @Test
+    public void testMaximumLatency() throws Exception
+    {
+        SgemvBatchBackend backend = new HostSgemvBatchBackend(
+            clblasOrder.clblasRowMajor, clblasTranspose.clblasNoTrans, 
+            3, 4, new float[12], 4, 64);
+        final CountDownLatch received = new CountDownLatch(3);
+        CollectingListener listener = new CollectingListener()
+        {
+            @Override
+            public void onNext(float[] input, float[] output)
+            {
+                super.onNext(input, output);
+                received.countDown();
+            }
+        };
+        SgemvBatchProcessor processor = new SgemvBatchProcessor(
+            backend, 64, 20, TimeUnit.MILLISECONDS, 1000, listener);
+        for (int i = 0; i < 3; i++)
+        {
+            processor.submit(new float[4]);
+        }
+        // The batch is not full, but has to be processed after the 
+        // maximum latency, without closing the processor
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertEquals(1, processor.getBatchCount());
+        processor.close();
+        assertTrue(processor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBackpressure() throws Exception
+    {
+        SgemvBatchBackend backend = new HostSgemvBatchBackend(
+            clblasOrder.clblasRowMajor, clblasTranspose.clblasNoTrans, 
+            3, 4, new float[12], 4, 2);
+        final CountDownLatch blocker = new CountDownLatch(1);
+        CollectingListener listener = new CollectingListener()
+        {
+            @Override
+            public void onNext(float[] input, float[] output)
+            {
+                try
+                {
+                    blocker.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                super.onNext(input, output);
+            }
+        };
+        SgemvBatchProcessor processor = new SgemvBatchProcessor(
+            backend, 2, 0, TimeUnit.MILLISECONDS, 4, listener);
+        for (int i = 0; i < 4; i++)
+        {
+            assertTrue(processor.offer(new float[4], 1, TimeUnit.SECONDS));
+        }
+        assertFalse(processor.offer(new float[4], 50, TimeUnit.MILLISECONDS));
+        blocker.countDown();
+        assertTrue(processor.offer(new float[4], 5, TimeUnit.SECONDS));
+        processor.close();
+        assertTrue(processor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(5, listener.outputs.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSubmitAfterClose() throws Exception
+    {
+        SgemvBatchBackend backend = new HostSgemvBatchBackend(
+            clblasOrder.clblasRowMajor, clblasTranspose.clblasNoTrans, 
+            3, 4, new float[12], 4, 2);
+        SgemvBatchProcessor processor = new SgemvBatchProcessor(
+            backend, 2, 0, TimeUnit.MILLISECONDS, 4, 
+            new CollectingListener());
+        processor.close();
+        processor.submit(new float[4]);
+    }
+
+    private static float[] createRandom(int n, long seed)
+    {
+        Random random = new Random(seed);
+        float result[] = new float[n];
+        for (int i = 0; i < n; i++)
+        {
+            result[i] = random.nextFloat() - 0.5f;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,380 @@
+package org.jocl.blas.batch;
+
+import static org.jocl.blas.clblasOrder.clblasColumnMajor;
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasStatus.clblasInvalidValue;
+import static org.jocl.blas.clblasStatus.clblasSuccess;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+import static org.jocl.blas.clblasTranspose.clblasTrans;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jocl.cl_mem;
+import org.jocl.blas.FakeHandles;
+import org.jocl.blas.host.HostBLAS;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link SgemvCoalescingExecutor}, with operations that
+ * are executed on the host
+ */
+public class SgemvCoalescingExecutorTest
+{
+    /**
+     * Operations on float arrays. The first call to {@link #finish()}
+     * blocks until {@link #release} is counted down, so that the
+     * requests that are submitted in the meantime are collected in one
+     * window.
+     */
+    private static class HostOperations
+        implements SgemvCoalescingExecutor.Operations
+    {
+        final Map<cl_mem, float[]> data =
+            new IdentityHashMap<cl_mem, float[]>();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Random random = new Random(0);
+        volatile int sgemmStatus = clblasSuccess;
+        int finishCount;
+
+        cl_mem create(int size)
+        {
+            cl_mem mem = FakeHandles.createMem();
+            float array[] = new float[size];
+            for (int i = 0; i < size; i++)
+            {
+                array[i] = random.nextFloat() - 0.5f;
+            }
+            data.put(mem, array);
+            return mem;
+        }
+
+        @Override
+        public synchronized int sgemv(int order, int transA,
+            long M, long N, float alpha, cl_mem A, long offA, long lda,
+            cl_mem x, long offx, int incx,
+            float beta, cl_mem y, long offy, int incy)
+        {
+            HostBLAS.clblasSgemv(order, transA, (int) M, (int) N, alpha,
+                data.get(A), (int) offA, (int) lda,
+                data.get(x), (int) offx, incx, beta,
+                data.get(y), (int) offy, incy);
+            return clblasSuccess;
+        }
+
+        @Override
+        public synchronized int sgemm(int order, int transA, int transB,
+            long M, long N, long K, float alpha,
+            cl_mem A, long offA, long lda, cl_mem B, long offB, long ldb,
+            float beta, cl_mem C, long offC, long ldc)
+        {
+            if (sgemmStatus != clblasSuccess)
+            {
+                return sgemmStatus;
+            }
+            HostBLAS.clblasSgemm(order, transA, transB,
+                (int) M, (int) N, (int) K, alpha,
+                data.get(A), (int) offA, (int) lda,
+                data.get(B), (int) offB, (int) ldb, beta,
+                data.get(C), (int) offC, (int) ldc);
+            return clblasSuccess;
+        }
+
+        @Override
+        public synchronized int scopy(long N, cl_mem X, long offx,
+            int incx, cl_mem Y, long offy, int incy)
+        {
+            float x[] = data.get(X);
+            float y[] = data.get(Y);
+            for (int i = 0; i < N; i++)
+            {
+                y[(int) offy + i * incy] = x[(int) offx + i * incx];
+            }
+            return clblasSuccess;
+        }
+
+        @Override
+        public synchronized int sscal(long N, float alpha,
+            cl_mem X, long offx, int incx)
+        {
+            float x[] = data.get(X);
+            for (int i = 0; i < N; i++)
+            {
+                x[(int) offx + i * incx] *= alpha;
+            }
+            return clblasSuccess;
+        }
+
+        @Override
+        public synchronized int saxpy(long N, float alpha,
+            cl_mem X, long offx, int incx, cl_mem Y, long offy, int incy)
+        {
+            float x[] = data.get(X);
+            float y[] = data.get(Y);
+            for (int i = 0; i < N; i++)
+            {
+                y[(int) offy + i * incy] += alpha * x[(int) offx + i * incx];
+            }
+            return clblasSuccess;
+        }
+
+        @Override
+        public int finish()
+        {
+            boolean first;
+            synchronized (this)
+            {
+                first = finishCount++ == 0;
+            }
+            if (first)
+            {
+                blocked.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return clblasSuccess;
+        }
+
+        @Override
+        public synchronized cl_mem createBuffer(long size)
+        {
+            return create((int) size);
+        }
+
+        @Override
+        public synchronized void releaseBuffer(cl_mem buffer)
+        {
+            data.remove(buffer);
+        }
+
+        synchronized float[] copy(cl_mem mem)
+        {
+            return data.get(mem).clone();
+        }
+    }
+
+    /**
+     * Submit a request that blocks the worker in its first
+     * {@link HostOperations#finish()}, and wait until it is blocked
+     */
+    private static void block(SgemvCoalescingExecutor executor,
+        HostOperations h) throws InterruptedException
+    {
+        cl_mem A = h.create(1);
+        executor.sgemv(clblasColumnMajor, clblasNoTrans, 1, 1, 1.0f,
+            A, 0, 1, h.create(1), 0, 1, 0.0f, h.create(1), 0, 1);
+        assertTrue(h.blocked.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testMergedCallsMatchSgemv() throws Exception
+    {
+        int order[] = { clblasRowMajor, clblasColumnMajor };
+        int trans[] = { clblasTrans, clblasNoTrans };
+        for (int c = 0; c < order.length; c++)
+        {
+            HostOperations h = new HostOperations();
+            SgemvCoalescingExecutor executor = new SgemvCoalescingExecutor(
+                h, 8, 10, TimeUnit.MILLISECONDS);
+            block(executor, h);
+
+            // A 5x7 matrix with lda 9, in both orders
+            int M = 5;
+            int N = 7;
+            int lda = 9;
+            cl_mem A = h.create((order[c] == clblasRowMajor ? M : N) * lda);
+            int xSize = trans[c] == clblasNoTrans ? N : M;
+            int ySize = trans[c] == clblasNoTrans ? M : N;
+            float alphas[] = { 1.0f, 2.0f, -0.5f };
+            float betas[] = { 0.0f, 1.0f, 3.0f };
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            List<cl_mem> ys = new ArrayList<cl_mem>();
+            List<float[]> expected = new ArrayList<float[]>();
+            for (int i = 0; i < alphas.length; i++)
+            {
+                // Strided vectors with offsets
+                cl_mem x = h.create(1 + xSize * 2);
+                cl_mem y = h.create(2 + ySize * 3);
+                float e[] = h.copy(y);
+                HostBLAS.clblasSgemv(order[c], trans[c], M, N, alphas[i],
+                    h.copy(A), 0, lda, h.copy(x), 1, 2, betas[i], e, 2, 3);
+                expected.add(e);
+                ys.add(y);
+                futures.add(executor.sgemv(order[c], trans[c], M, N,
+                    alphas[i], A, 0, lda, x, 1, 2, betas[i], y, 2, 3));
+            }
+            h.release.countDown();
+            for (int i = 0; i < futures.size(); i++)
+            {
+                assertEquals(clblasSuccess,
+                    futures.get(i).get(10, TimeUnit.SECONDS).intValue());
+                float actual[] = h.copy(ys.get(i));
+                for (int j = 0; j < actual.length; j++)
+                {
+                    assertEquals(expected.get(i)[j], actual[j], 1e-5f);
+                }
+            }
+            assertEquals(1, executor.getGemmCount());
+            assertEquals(1, executor.getGemvCount());
+            assertEquals(4, executor.getRequestCount());
+            executor.close();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            // Only the vectors of the test remain, the scratch buffers
+            // have been released
+            assertEquals(3 + 1 + 2 * alphas.length, h.data.size());
+        }
+    }
+
+    @Test
+    public void testDependentCallIsNotMerged() throws Exception
+    {
+        HostOperations h = new HostOperations();
+        SgemvCoalescingExecutor executor = new SgemvCoalescingExecutor(
+            h, 8, 10, TimeUnit.MILLISECONDS);
+        block(executor, h);
+
+        int n = 4;
+        cl_mem A = h.create(n * n);
+        cl_mem x = h.create(n);
+        cl_mem y0 = h.create(n);
+        cl_mem y1 = h.create(n);
+        float expected0[] = new float[n];
+        float expected1[] = new float[n];
+        HostBLAS.clblasSgemv(clblasColumnMajor, clblasNoTrans, n, n, 1.0f,
+            h.copy(A), 0, n, h.copy(x), 0, 1, 0.0f, expected0, 0, 1);
+        HostBLAS.clblasSgemv(clblasColumnMajor, clblasNoTrans, n, n, 1.0f,
+            h.copy(A), 0, n, expected0, 0, 1, 0.0f, expected1, 0, 1);
+
+        // The second call reads the result of the first one
+        Future<Integer> f0 = executor.sgemv(clblasColumnMajor,
+            clblasNoTrans, n, n, 1.0f, A, 0, n, x, 0, 1, 0.0f, y0, 0, 1);
+        Future<Integer> f1 = executor.sgemv(clblasColumnMajor,
+            clblasNoTrans, n, n, 1.0f, A, 0, n, y0, 0, 1, 0.0f, y1, 0, 1);
+        h.release.countDown();
+        assertEquals(clblasSuccess, f0.get(10, TimeUnit.SECONDS).intValue());
+        assertEquals(clblasSuccess, f1.get(10, TimeUnit.SECONDS).intValue());
+        float actual1[] = h.copy(y1);
+        for (int i = 0; i < n; i++)
+        {
+            assertEquals(expected1[i], actual1[i], 1e-5f);
+        }
+        assertEquals(0, executor.getGemmCount());
+        assertEquals(3, executor.getGemvCount());
+        executor.close();
+    }
+
+    @Test
+    public void testFailedGemmCompletesGroup() throws Exception
+    {
+        HostOperations h = new HostOperations();
+        h.sgemmStatus = clblasInvalidValue;
+        SgemvCoalescingExecutor executor = new SgemvCoalescingExecutor(
+            h, 8, 10, TimeUnit.MILLISECONDS);
+        block(executor, h);
+        cl_mem A = h.create(4);
+        Future<Integer> f0 = executor.sgemv(clblasColumnMajor,
+            clblasNoTrans, 2, 2, 1.0f, A, 0, 2, h.create(2), 0, 1,
+            0.0f, h.create(2), 0, 1);
+        Future<Integer> f1 = executor.sgemv(clblasColumnMajor,
+            clblasNoTrans, 2, 2, 1.0f, A, 0, 2, h.create(2), 0, 1,
+            0.0f, h.create(2), 0, 1);
+        h.release.countDown();
+        assertEquals(clblasInvalidValue,
+            f0.get(10, TimeUnit.SECONDS).intValue());
+        assertEquals(clblasInvalidValue,
+            f1.get(10, TimeUnit.SECONDS).intValue());
+        executor.close();
+    }
+
+    @Test
+    public void testNoRequestIsLostWhenClosing() throws Exception
+    {
+        for (int run = 0; run < 50; run++)
+        {
+            final HostOperations h = new HostOperations();
+            h.release.countDown();
+            final SgemvCoalescingExecutor executor =
+                new SgemvCoalescingExecutor(h, 4, 0, TimeUnit.MILLISECONDS);
+            final cl_mem A = h.create(1);
+            final List<Future<Integer>> futures =
+                new ArrayList<Future<Integer>>();
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int t = 0; t < 4; t++)
+            {
+                final cl_mem x;
+                final cl_mem y;
+                synchronized (h)
+                {
+                    x = h.create(1);
+                    y = h.create(1);
+                }
+                Thread thread = new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            start.await();
+                            for (int i = 0; i < 20; i++)
+                            {
+                                Future<Integer> f = executor.sgemv(
+                                    clblasColumnMajor, clblasNoTrans,
+                                    1, 1, 1.0f, A, 0, 1, x, 0, 1,
+                                    0.0f, y, 0, 1);
+                                synchronized (futures)
+                                {
+                                    futures.add(f);
+                                }
+                            }
+                        }
+                        catch (IllegalStateException e)
+                        {
+                            // Closed
+                        }
+                        catch (InterruptedException e)
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            executor.close();
+            for (Thread thread : threads)
+            {
+                thread.join();
+            }
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            synchronized (futures)
+            {
+                for (Future<Integer> f : futures)
+                {
+                    if (!f.isDone())
+                    {
+                        fail("A request was not completed");
+                    }
+                }
+            }
+        }
+    }
+}
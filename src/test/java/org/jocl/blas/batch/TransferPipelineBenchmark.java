@@ -0,0 +1,123 @@
+package org.jocl.blas.batch;
+
+import static org.jocl.CL.*;
+
+import org.jocl.Sizeof;
+import org.jocl.cl_command_queue;
+import org.jocl.cl_context;
+import org.jocl.cl_context_properties;
+import org.jocl.cl_device_id;
+import org.jocl.cl_mem;
+import org.jocl.cl_platform_id;
+import org.jocl.blas.CLBLAS;
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.clblasTranspose;
+import org.jocl.blas.memory.HostMatrix;
+import org.jocl.blas.memory.HostMemoryPool;
+
+/**
+ * A benchmark comparing a {@link TransferPipeline} with one slot, where
+ * the upload, computation and download of each batch are performed 
+ * strictly in sequence, to pipelines with several slots, where they 
+ * overlap. This requires an OpenCL device.
+ */
+public class TransferPipelineBenchmark
+{
+    private static final int BATCHES = 64;
+    private static final int M = 1024;
+    private static final int N = 1024;
+    private static final int K = 1024;
+
+    public static void main(String[] args)
+    {
+        setExceptionsEnabled(true);
+        CLBLAS.setExceptionsEnabled(true);
+
+        cl_platform_id platforms[] = new cl_platform_id[1];
+        clGetPlatformIDs(1, platforms, null);
+        cl_device_id devices[] = new cl_device_id[1];
+        clGetDeviceIDs(platforms[0], CL_DEVICE_TYPE_ALL, 1, devices, null);
+        cl_context_properties contextProperties = new cl_context_properties();
+        contextProperties.addProperty(CL_CONTEXT_PLATFORM, platforms[0]);
+        cl_context context = clCreateContext(
+            contextProperties, 1, devices, null, null, null);
+        cl_command_queue queues[] = new cl_command_queue[3];
+        for (int i = 0; i < queues.length; i++)
+        {
+            queues[i] = clCreateCommandQueue(
+                context, devices[0], CL_QUEUE_PROFILING_ENABLE, null);
+        }
+        CLBLAS.clblasSetup();
+
+        int order = clblasOrder.clblasRowMajor;
+        cl_mem W = clCreateBuffer(context, CL_MEM_READ_ONLY,
+            (long) K * N * Sizeof.cl_float, null, null);
+        HostMemoryPool pool = new HostMemoryPool(
+            HostMemoryPool.PAGE_ALIGNMENT, 1L << 30);
+        HostMatrix inputs[] = new HostMatrix[4];
+        HostMatrix outputs[] = new HostMatrix[4];
+        for (int i = 0; i < inputs.length; i++)
+        {
+            inputs[i] = pool.allocateMatrix(order, M, K, Sizeof.cl_float, 0);
+            outputs[i] = pool.allocateMatrix(order, M, N, Sizeof.cl_float, 0);
+        }
+        BatchComputation computation = new SgemmBatchComputation(order, 
+            clblasTranspose.clblasNoTrans, clblasTranspose.clblasNoTrans, 
+            M, N, K, 1.0f, W, 0, N);
+        try
+        {
+            // Warm-up
+            run(context, queues, 1, computation, inputs, outputs);
+
+            System.out.println("Batches: " + BATCHES + 
+                ", " + M + "x" + K + " times " + K + "x" + N);
+            for (int depth = 1; depth <= 4; depth++)
+            {
+                PipelineStatistics s = 
+                    run(context, queues, depth, computation, inputs, outputs);
+                System.out.println(String.format(
+                    "depth %d: %8.2f batches/s, occupancy " + 
+                    "upload %4.2f, compute %4.2f, download %4.2f", 
+                    depth, s.getThroughput(), s.getUploadOccupancy(), 
+                    s.getComputeOccupancy(), s.getDownloadOccupancy()));
+            }
+        }
+        finally
+        {
+            for (int i = 0; i < inputs.length; i++)
+            {
+                inputs[i].free();
+                outputs[i].free();
+            }
+            clReleaseMemObject(W);
+            CLBLAS.clblasTeardown();
+            for (cl_command_queue queue : queues)
+            {
+                clReleaseCommandQueue(queue);
+            }
+            clReleaseContext(context);
+        }
+    }
+
+    private static PipelineStatistics run(cl_context context, 
+        cl_command_queue queues[], int depth, BatchComputation computation, 
+        HostMatrix inputs[], HostMatrix outputs[])
+    {
+        TransferPipeline pipeline = new TransferPipeline(context, 
+            queues[0], queues[1], queues[2], depth, computation, null);
+        try
+        {
+            for (int b = 0; b < BATCHES; b++)
+            {
+                int i = b % inputs.length;
+                pipeline.submit(inputs[i], outputs[i]);
+            }
+            pipeline.finish();
+            return pipeline.getStatistics();
+        }
+        finally
+        {
+            pipeline.release();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.jocl.blas.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link ChainOrder}
+ */
+public class ChainOrderTest
+{
+    /**
+     * Computes the smallest cost of the sub-chain [i,j] by trying all
+     * parenthesizations
+     */
+    private static double bruteForce(
+        long d[], int i, int j, MatrixCostModel model)
+    {
+        if (i == j)
+        {
+            return 0;
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (int s = i; s < j; s++)
+        {
+            long M = d[i];
+            long K = d[s + 1];
+            long N = d[j + 1];
+            double cost = bruteForce(d, i, s, model) +
+                bruteForce(d, s + 1, j, model) + model.estimateSeconds(
+                    ChainOrder.productFlops(M, K, N),
+                    ChainOrder.productBytes(M, K, N));
+            best = Math.min(best, cost);
+        }
+        return best;
+    }
+
+    @Test
+    public void testMatchesBruteForce()
+    {
+        Random random = new Random(0);
+        MatrixCostModel models[] = {
+            MatrixCostModel.FLOPS_ONLY, MatrixCostModel.DEFAULT
+        };
+        for (int run = 0; run < 50; run++)
+        {
+            long d[] = new long[2 + random.nextInt(6)];
+            for (int i = 0; i < d.length; i++)
+            {
+                d[i] = 1 + random.nextInt(100);
+            }
+            for (MatrixCostModel model : models)
+            {
+                ChainOrder order = new ChainOrder(d, model);
+                double expected = bruteForce(d, 0, d.length - 2, model);
+                assertEquals(expected, order.getCost(), expected * 1e-12);
+                assertTrue(order.getCost() <=
+                    order.getLeftToRightCost(0, d.length - 2));
+            }
+        }
+    }
+
+    @Test
+    public void testFlopsOnly()
+    {
+        ChainOrder order = new ChainOrder(new long[] { 10, 100, 5, 50 });
+        assertEquals("((M0 * M1) * M2)", order.toString());
+        double flops = 2.0 * (10 * 100 * 5 + 10 * 5 * 50);
+        assertEquals(flops, order.getCost(), 0.0);
+        assertEquals(flops, order.getFlops(0, 2), 0.0);
+        assertEquals(flops, order.getLeftToRightFlops(0, 2), 0.0);
+    }
+
+    @Test
+    public void testTransferCostChangesOrder()
+    {
+        long d[] = { 2, 3, 64, 8 };
+        ChainOrder flopsOnly = new ChainOrder(d);
+        assertEquals("((M0 * M1) * M2)", flopsOnly.toString());
+
+        // One byte costs as much as one floating point operation
+        ChainOrder withTransfers =
+            new ChainOrder(d, new MatrixCostModel(1.0, 1.0));
+        assertEquals("(M0 * (M1 * M2))", withTransfers.toString());
+        assertTrue(withTransfers.getFlops(0, 2) >
+            withTransfers.getLeftToRightFlops(0, 2));
+        assertTrue(withTransfers.getCost() <
+            withTransfers.getLeftToRightCost(0, 2));
+    }
+}
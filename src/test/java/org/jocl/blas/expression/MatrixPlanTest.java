@@ -0,0 +1,442 @@
+package org.jocl.blas.expression;
+
+import static org.jocl.blas.clblasOrder.clblasColumnMajor;
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.jocl.blas.clblasTranspose.clblasNoTrans;
+import static org.jocl.blas.clblasTranspose.clblasTrans;
+import static org.jocl.blas.expression.MatrixExpression.matrix;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.jocl.Sizeof;
+import org.jocl.cl_mem;
+import org.jocl.blas.host.HostBLAS;
+import org.jocl.blas.memory.DeviceMatrix;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link MatrixPlan}, executed with {@link HostBLAS}
+ */
+public class MatrixPlanTest
+{
+    /**
+     * Operations that store the matrices in float arrays on the host
+     */
+    private static class HostOperations implements MatrixOperations
+    {
+        final Map<cl_mem, float[]> data =
+            new IdentityHashMap<cl_mem, float[]>();
+        final Random random = new Random(0);
+        int temporaries;
+
+        DeviceMatrix create(int order, long rows, long columns, long ld)
+        {
+            cl_mem mem = new cl_mem();
+            long lines = order == clblasRowMajor ? rows : columns;
+            float array[] = new float[(int)(lines * ld)];
+            for (int i = 0; i < array.length; i++)
+            {
+                array[i] = random.nextFloat() - 0.5f;
+            }
+            data.put(mem, array);
+            return new DeviceMatrix(
+                mem, order, rows, columns, Sizeof.cl_float, 0, ld);
+        }
+
+        DeviceMatrix createPadded(
+            int order, long rows, long columns, long padding)
+        {
+            return create(order, rows, columns, padding +
+                (order == clblasRowMajor ? columns : rows));
+        }
+
+        float get(DeviceMatrix m, long row, long column)
+        {
+            long index = m.getOrder() == clblasRowMajor ?
+                row * m.getLd() + column : column * m.getLd() + row;
+            return data.get(m.getMem())[(int)(m.getOffset() + index)];
+        }
+
+        @Override
+        public DeviceMatrix createTemporary(
+            int order, long rows, long columns)
+        {
+            temporaries++;
+            return create(order, rows, columns,
+                order == clblasRowMajor ? columns : rows);
+        }
+
+        @Override
+        public void releaseTemporary(DeviceMatrix matrix)
+        {
+            temporaries--;
+            data.remove(matrix.getMem());
+        }
+
+        @Override
+        public void gemm(int order, int transA, int transB,
+            long M, long N, long K, float alpha,
+            DeviceMatrix A, DeviceMatrix B, float beta, DeviceMatrix C)
+        {
+            HostBLAS.clblasSgemm(order, transA, transB,
+                (int)M, (int)N, (int)K, alpha,
+                data.get(A.getMem()), (int)A.getOffset(), (int)A.getLd(),
+                data.get(B.getMem()), (int)B.getOffset(), (int)B.getLd(),
+                beta,
+                data.get(C.getMem()), (int)C.getOffset(), (int)C.getLd());
+        }
+
+        @Override
+        public void gemv(int order, int transA, long M, long N,
+            float alpha, DeviceMatrix A, DeviceMatrix x, long incx,
+            float beta, DeviceMatrix y, long incy)
+        {
+            HostBLAS.clblasSgemv(order, transA, (int)M, (int)N, alpha,
+                data.get(A.getMem()), (int)A.getOffset(), (int)A.getLd(),
+                data.get(x.getMem()), (int)x.getOffset(), (int)incx, beta,
+                data.get(y.getMem()), (int)y.getOffset(), (int)incy);
+        }
+
+        @Override
+        public void add(int order, int transA, long M, long N,
+            float alpha, DeviceMatrix A, float beta, DeviceMatrix C)
+        {
+            float c[] = data.get(C.getMem());
+            for (long i = 0; i < M; i++)
+            {
+                for (long j = 0; j < N; j++)
+                {
+                    float a = transA == clblasNoTrans ?
+                        get(A, i, j) : get(A, j, i);
+                    long index = order == clblasRowMajor ?
+                        i * C.getLd() + j : j * C.getLd() + i;
+                    int k = (int)(C.getOffset() + index);
+                    c[k] = beta == 0.0f ? alpha * a : alpha * a + beta * c[k];
+                }
+            }
+        }
+
+        /**
+         * Compute the value of the given expression with the current
+         * contents of the matrices
+         */
+        double[][] evaluate(MatrixExpression e)
+        {
+            switch (e.kind)
+            {
+                case MATRIX:
+                {
+                    DeviceMatrix m = e.matrix;
+                    double r[][] = new double[(int)m.getRows()]
+                        [(int)m.getColumns()];
+                    for (int i = 0; i < r.length; i++)
+                    {
+                        for (int j = 0; j < r[i].length; j++)
+                        {
+                            r[i][j] = get(m, i, j);
+                        }
+                    }
+                    return r;
+                }
+                case SCALED:
+                {
+                    double r[][] = evaluate(e.left);
+                    for (double row[] : r)
+                    {
+                        for (int j = 0; j < row.length; j++)
+                        {
+                            row[j] *= e.factor;
+                        }
+                    }
+                    return r;
+                }
+                case TRANSPOSED:
+                {
+                    double a[][] = evaluate(e.left);
+                    double r[][] = new double[a[0].length][a.length];
+                    for (int i = 0; i < a.length; i++)
+                    {
+                        for (int j = 0; j < a[i].length; j++)
+                        {
+                            r[j][i] = a[i][j];
+                        }
+                    }
+                    return r;
+                }
+                case PRODUCT:
+                {
+                    double a[][] = evaluate(e.left);
+                    double b[][] = evaluate(e.right);
+                    double r[][] = new double[a.length][b[0].length];
+                    for (int i = 0; i < a.length; i++)
+                    {
+                        for (int p = 0; p < b.length; p++)
+                        {
+                            for (int j = 0; j < b[0].length; j++)
+                            {
+                                r[i][j] += a[i][p] * b[p][j];
+                            }
+                        }
+                    }
+                    return r;
+                }
+                default:
+                {
+                    double r[][] = evaluate(e.left);
+                    double b[][] = evaluate(e.right);
+                    for (int i = 0; i < r.length; i++)
+                    {
+                        for (int j = 0; j < r[i].length; j++)
+                        {
+                            r[i][j] += b[i][j];
+                        }
+                    }
+                    return r;
+                }
+            }
+        }
+
+        /**
+         * Execute the plan with a single assignment, and compare the
+         * result with the reference result
+         */
+        MatrixPlan check(DeviceMatrix target, MatrixExpression value)
+        {
+            return check(target, value, MatrixCostModel.FLOPS_ONLY);
+        }
+
+        MatrixPlan check(DeviceMatrix target, MatrixExpression value,
+            MatrixCostModel costModel)
+        {
+            double expected[][] = evaluate(value);
+            MatrixPlan plan = new MatrixPlan.Builder(costModel)
+                .assign(target, value).build();
+            plan.execute(this);
+            assertEquals(0, temporaries);
+            for (int i = 0; i < expected.length; i++)
+            {
+                for (int j = 0; j < expected[i].length; j++)
+                {
+                    assertEquals(expected[i][j], get(target, i, j), 1e-4);
+                }
+            }
+            return plan;
+        }
+    }
+
+    @Test
+    public void testScalarsAndTargetAreFoldedIntoGemm()
+    {
+        for (int order : new int[] { clblasRowMajor, clblasColumnMajor })
+        {
+            HostOperations h = new HostOperations();
+            DeviceMatrix A = h.create(order, 5, 7, 9);
+            DeviceMatrix B = h.create(order, 7, 6, 8);
+            DeviceMatrix D = h.create(order, 5, 6, 10);
+            MatrixPlan plan = h.check(D, matrix(A).times(matrix(B))
+                .times(2.0f).plus(matrix(D).times(0.5f)));
+            assertEquals(1, plan.getCallCount());
+            assertEquals(0, plan.getTemporaryCount());
+            MatrixPlan.Step step = plan.getSteps().get(0);
+            assertEquals(MatrixPlan.Operation.GEMM, step.operation);
+            assertEquals(2.0f, step.alpha, 0.0f);
+            assertEquals(0.5f, step.beta, 0.0f);
+        }
+    }
+
+    @Test
+    public void testSumWithOtherMatrix()
+    {
+        HostOperations h = new HostOperations();
+        DeviceMatrix A = h.create(clblasColumnMajor, 4, 3, 4);
+        DeviceMatrix B = h.create(clblasColumnMajor, 3, 5, 3);
+        DeviceMatrix C = h.create(clblasColumnMajor, 5, 4, 5);
+        DeviceMatrix D = h.create(clblasColumnMajor, 4, 5, 6);
+        MatrixPlan plan = h.check(D, matrix(A).times(matrix(B)).times(3.0f)
+            .minus(matrix(C).transpose()));
+        assertEquals(2, plan.getCallCount());
+        assertEquals(0, plan.getTemporaryCount());
+        assertEquals(MatrixPlan.Operation.ADD,
+            plan.getSteps().get(1).operation);
+        assertEquals(clblasTrans, plan.getSteps().get(1).transA);
+    }
+
+    @Test
+    public void testTransposesAreFoldedIntoFlags()
+    {
+        for (int order : new int[] { clblasRowMajor, clblasColumnMajor })
+        {
+            HostOperations h = new HostOperations();
+            DeviceMatrix A = h.create(order, 5, 7, 9);
+            DeviceMatrix B = h.create(order, 7, 6, 8);
+            DeviceMatrix D = h.create(order, 6, 5, 7);
+            MatrixPlan plan = h.check(D,
+                matrix(A).times(matrix(B)).transpose());
+            assertEquals(1, plan.getCallCount());
+            MatrixPlan.Step step = plan.getSteps().get(0);
+            assertEquals(clblasTrans, step.transA);
+            assertEquals(clblasTrans, step.transB);
+        }
+    }
+
+    @Test
+    public void testMatrixVectorProducts()
+    {
+        for (int order : new int[] { clblasRowMajor, clblasColumnMajor })
+        {
+            HostOperations h = new HostOperations();
+            DeviceMatrix D = h.createPadded(order, 6, 4, 3);
+            DeviceMatrix x = h.createPadded(order, 6, 1, 1);
+            DeviceMatrix y = h.createPadded(order, 1, 6, 2);
+            DeviceMatrix E = h.createPadded(order, 4, 1, 0);
+            DeviceMatrix F = h.createPadded(order, 1, 4, 3);
+            MatrixPlan plan = h.check(E, matrix(D).transpose()
+                .times(matrix(x)));
+            assertEquals(MatrixPlan.Operation.GEMV,
+                plan.getSteps().get(0).operation);
+            assertEquals(1, plan.getCallCount());
+            plan = h.check(F, matrix(y).times(matrix(D)).times(-1.0f));
+            assertEquals(MatrixPlan.Operation.GEMV,
+                plan.getSteps().get(0).operation);
+            assertEquals(1, plan.getCallCount());
+        }
+    }
+
+    @Test
+    public void testChainIsReordered()
+    {
+        HostOperations h = new HostOperations();
+        DeviceMatrix A = h.create(clblasRowMajor, 30, 40, 40);
+        DeviceMatrix B = h.create(clblasRowMajor, 40, 50, 50);
+        DeviceMatrix x = h.create(clblasRowMajor, 50, 1, 1);
+        DeviceMatrix y = h.create(clblasRowMajor, 30, 1, 1);
+        MatrixPlan plan = h.check(y, matrix(A).times(matrix(B))
+            .times(matrix(x)));
+        assertEquals(2, plan.getCallCount());
+        assertEquals(1, plan.getTemporaryCount());
+        assertEquals(MatrixPlan.Operation.GEMV,
+            plan.getSteps().get(0).operation);
+        assertEquals(MatrixPlan.Operation.GEMV,
+            plan.getSteps().get(1).operation);
+        assertEquals(2.0 * (40 * 50 + 30 * 40), plan.getFlops(), 0.0);
+        assertTrue(plan.getFlops() < plan.getLeftToRightFlops());
+    }
+
+    @Test
+    public void testChainIsReorderedByCostModel()
+    {
+        HostOperations h = new HostOperations();
+        DeviceMatrix A = h.create(clblasRowMajor, 2, 3, 3);
+        DeviceMatrix B = h.create(clblasRowMajor, 3, 64, 64);
+        DeviceMatrix C = h.create(clblasRowMajor, 64, 8, 8);
+        DeviceMatrix D = h.create(clblasRowMajor, 2, 8, 8);
+        MatrixExpression product = matrix(A).times(matrix(B))
+            .times(matrix(C));
+
+        MatrixPlan flopsOnly = h.check(D, product);
+        assertEquals(2.0 * (2 * 3 * 64 + 2 * 64 * 8),
+            flopsOnly.getFlops(), 0.0);
+        assertEquals(flopsOnly.getFlops(),
+            flopsOnly.getEstimatedSeconds(), 0.0);
+
+        MatrixCostModel model = new MatrixCostModel(1.0, 1.0);
+        MatrixPlan withTransfers = h.check(D, product, model);
+        assertEquals(2.0 * (3 * 64 * 8 + 2 * 3 * 8),
+            withTransfers.getFlops(), 0.0);
+        assertEquals(4.0 * (3 * 64 + 64 * 8 + 3 * 8 + 2 * 3 + 3 * 8 + 2 * 8),
+            withTransfers.getBytes(), 0.0);
+        assertEquals(withTransfers.getFlops() + withTransfers.getBytes(),
+            withTransfers.getEstimatedSeconds(), 0.0);
+        assertEquals(flopsOnly.getFlops(),
+            withTransfers.getLeftToRightFlops(), 0.0);
+        assertTrue(withTransfers.getEstimatedSeconds() <
+            withTransfers.getLeftToRightEstimatedSeconds());
+    }
+
+    @Test
+    public void testTemporariesAreReused()
+    {
+        HostOperations h = new HostOperations();
+        DeviceMatrix M[] = new DeviceMatrix[5];
+        MatrixExpression product = null;
+        for (int i = 0; i < M.length; i++)
+        {
+            M[i] = h.create(clblasColumnMajor, 8, 8, 8);
+            product = product == null ?
+                matrix(M[i]) : product.times(matrix(M[i]));
+        }
+        DeviceMatrix D = h.create(clblasColumnMajor, 8, 8, 8);
+        MatrixPlan plan = h.check(D, product);
+        assertEquals(4, plan.getCallCount());
+        assertEquals(2, plan.getTemporaryCount());
+    }
+
+    @Test
+    public void testTargetAsOperand()
+    {
+        HostOperations h = new HostOperations();
+        DeviceMatrix S = h.create(clblasRowMajor, 5, 5, 5);
+        DeviceMatrix D = h.create(clblasRowMajor, 4, 5, 6);
+        MatrixPlan plan = h.check(D, matrix(D).times(matrix(S))
+            .plus(matrix(D)));
+        assertEquals(1, plan.getTemporaryCount());
+        assertEquals(3, plan.getCallCount());
+    }
+
+    @Test
+    public void testSumInProduct()
+    {
+        HostOperations h = new HostOperations();
+        DeviceMatrix A = h.create(clblasColumnMajor, 4, 3, 4);
+        DeviceMatrix C = h.create(clblasColumnMajor, 4, 3, 5);
+        DeviceMatrix B = h.create(clblasColumnMajor, 3, 5, 3);
+        DeviceMatrix D = h.create(clblasColumnMajor, 4, 5, 4);
+        MatrixPlan plan = h.check(D, matrix(A).plus(matrix(C)).times(2.0f)
+            .times(matrix(B)));
+        assertEquals(1, plan.getTemporaryCount());
+        assertEquals(3, plan.getCallCount());
+    }
+
+    @Test
+    public void testSequentialAssignments()
+    {
+        HostOperations h = new HostOperations();
+        DeviceMatrix A = h.create(clblasColumnMajor, 5, 7, 5);
+        DeviceMatrix B = h.create(clblasColumnMajor, 7, 6, 7);
+        DeviceMatrix D = h.create(clblasColumnMajor, 5, 6, 5);
+        DeviceMatrix x = h.create(clblasColumnMajor, 5, 1, 5);
+        DeviceMatrix E = h.create(clblasColumnMajor, 6, 1, 6);
+        MatrixExpression d = matrix(A).times(matrix(B)).times(0.5f)
+            .plus(matrix(D).times(2.0f));
+        double expectedD[][] = h.evaluate(d);
+        MatrixPlan plan = new MatrixPlan.Builder()
+            .assign(D, d)
+            .assign(E, matrix(D).transpose().times(matrix(x)))
+            .build();
+        assertEquals(2, plan.getCallCount());
+        assertEquals(0, plan.getTemporaryCount());
+        plan.execute(h);
+        for (int j = 0; j < 6; j++)
+        {
+            double e = 0;
+            for (int i = 0; i < 5; i++)
+            {
+                assertEquals(expectedD[i][j], h.get(D, i, j), 1e-4);
+                e += expectedD[i][j] * h.get(x, i, 0);
+            }
+            assertEquals(e, h.get(E, j, 0), 1e-4);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSizeMismatch()
+    {
+        HostOperations h = new HostOperations();
+        DeviceMatrix A = h.create(clblasColumnMajor, 4, 3, 4);
+        matrix(A).times(matrix(A));
+    }
+}
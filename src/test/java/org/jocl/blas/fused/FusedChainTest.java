@@ -0,0 +1,149 @@
+package org.jocl.blas.fused;
+
+import static org.jocl.blas.fused.VectorExpression.constant;
+import static org.jocl.blas.fused.VectorExpression.scalar;
+import static org.jocl.blas.fused.VectorExpression.vector;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link FusedChain}
+ */
+public class FusedChainTest
+{
+    private static FusedChain createUpdateChain(
+        String x, String y, String z, String a, String b)
+    {
+        return new FusedChain.Builder()
+            .assign(y, scalar(a).times(vector(x))
+                .plus(scalar(b).times(vector(y))))
+            .assign(z, vector(y))
+            .build();
+    }
+
+    @Test
+    public void testUpdateChain()
+    {
+        FusedChain chain = createUpdateChain("x", "y", "z", "a", "b");
+        assertEquals(Arrays.asList("x", "y", "z"), chain.getVectorNames());
+        assertEquals(Arrays.asList("a", "b"), chain.getScalarNames());
+        assertEquals(2, chain.getReadCount());
+        assertEquals(2, chain.getWriteCount());
+
+        float x[] = { 1, 2, 3, 4 };
+        float y[] = { 10, 20, 30, 40 };
+        float z[] = new float[4];
+        chain.execute(4, new float[][] { x, y, z }, 
+            new int[3], new int[] { 1, 1, 1 }, new float[] { 2, 0.5f });
+
+        float expected[] = { 7, 14, 21, 28 };
+        assertArrayEquals(expected, y, 0.0f);
+        assertArrayEquals(expected, z, 0.0f);
+    }
+
+    @Test
+    public void testSequentialSemantics()
+    {
+        // x = 2*x; y = x + y; x = x - c
+        FusedChain chain = new FusedChain.Builder()
+            .assign("x", constant(2).times(vector("x")))
+            .assign("y", vector("x").plus(vector("y")))
+            .assign("x", vector("x").minus(scalar("c")))
+            .build();
+        float x[] = { 1, 2, 3 };
+        float y[] = { 1, 1, 1 };
+        chain.execute(3, new float[][] { x, y }, 
+            new int[2], new int[] { 1, 1 }, new float[] { 1 });
+        assertArrayEquals(new float[] { 1, 3, 5 }, x, 0.0f);
+        assertArrayEquals(new float[] { 3, 5, 7 }, y, 0.0f);
+    }
+
+    @Test
+    public void testOffsetsAndIncrements()
+    {
+        FusedChain chain = new FusedChain.Builder()
+            .assign("y", vector("x").negate())
+            .build();
+        float x[] = { 0, 1, 2, 3, 4, 5, 6 };
+        float y[] = new float[8];
+        
+        // x with increment 2 from offset 1, y reversed from offset 2
+        chain.execute(3, new float[][] { x, y }, 
+            new int[] { 1, 2 }, new int[] { 2, -1 }, new float[0]);
+        assertArrayEquals(new float[] { 0, 0, -5, -3, -1, 0, 0, 0 }, y, 0.0f);
+    }
+
+    @Test
+    public void testKernelSourceDependsOnlyOnShape()
+    {
+        FusedChain c0 = createUpdateChain("x", "y", "z", "a", "b");
+        FusedChain c1 = createUpdateChain("p", "q", "r", "alpha", "beta");
+        assertEquals(c0.getKernelSource(), c1.getKernelSource());
+        
+        FusedChain c2 = new FusedChain.Builder()
+            .assign("y", scalar("a").times(vector("x"))
+                .minus(scalar("b").times(vector("y"))))
+            .assign("z", vector("y"))
+            .build();
+        assertFalse(c0.getKernelSource().equals(c2.getKernelSource()));
+    }
+
+    @Test
+    public void testQuotientOfScalars()
+    {
+        // The update step of the conjugate gradient method
+        VectorExpression alpha = scalar("rr").dividedBy(scalar("pAp"));
+        FusedChain chain = new FusedChain.Builder()
+            .assign("x", vector("x").plus(alpha.times(vector("p"))))
+            .assign("r", vector("r").minus(alpha.times(vector("Ap"))))
+            .build();
+        assertEquals(Arrays.asList("x", "p", "r", "Ap"), 
+            chain.getVectorNames());
+        float x[] = { 1, 1 };
+        float p[] = { 2, 4 };
+        float r[] = { 3, 3 };
+        float Ap[] = { 1, 2 };
+        chain.execute(2, new float[][] { x, p, r, Ap }, new int[4], 
+            new int[] { 1, 1, 1, 1 }, new float[] { 3, 4 });
+        assertArrayEquals(new float[] { 2.5f, 4.0f }, x, 0.0f);
+        assertArrayEquals(new float[] { 2.25f, 1.5f }, r, 0.0f);
+    }
+
+    @Test
+    public void testDeviceScalarKernelSource()
+    {
+        FusedChain chain = createUpdateChain("x", "y", "z", "a", "b");
+        String source = chain.getDeviceScalarKernelSource();
+        assertTrue(source.contains("__global const float *sp1"));
+        assertTrue(source.contains("const float s1 = sp1[soff1];"));
+        assertFalse(source.equals(chain.getKernelSource()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNameUsedForVectorAndScalar()
+    {
+        new FusedChain.Builder()
+            .assign("y", scalar("x").times(vector("x")))
+            .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongNumberOfScalars()
+    {
+        FusedChain chain = createUpdateChain("x", "y", "z", "a", "b");
+        chain.execute(1, new float[3][1], new int[3], 
+            new int[] { 1, 1, 1 }, new float[1]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEmptyChain()
+    {
+        new FusedChain.Builder().build();
+    }
+}
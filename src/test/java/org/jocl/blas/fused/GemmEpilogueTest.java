@@ -0,0 +1,164 @@
+package org.jocl.blas.fused;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.clblasTranspose;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link GemmEpilogue} and the {@link Activation} functions
+ */
+public class GemmEpilogueTest
+{
+    @Test
+    public void testActivations()
+    {
+        assertEquals(2.0f, Activation.IDENTITY.apply(2.0f), 0.0f);
+        assertEquals(0.0f, Activation.RELU.apply(-2.0f), 0.0f);
+        assertEquals(2.0f, Activation.RELU.apply(2.0f), 0.0f);
+        assertEquals(0.5f, Activation.SIGMOID.apply(0.0f), 0.0f);
+        assertEquals(0.0f, Activation.TANH.apply(0.0f), 0.0f);
+        assertEquals(0.0f, Activation.GELU.apply(0.0f), 0.0f);
+        assertEquals(0.841192f, Activation.GELU.apply(1.0f), 1e-5f);
+        assertEquals(-0.158808f, Activation.GELU.apply(-1.0f), 1e-5f);
+    }
+
+    @Test
+    public void testApply()
+    {
+        GemmEpilogue epilogue = GemmEpilogue.NONE
+            .withActivation(Activation.RELU)
+            .withClamp(-1.0f, 6.0f);
+        assertEquals(0.0f, epilogue.apply(-3.0f, 100.0f), 0.0f);
+        assertEquals(6.0f, epilogue.apply(8.0f, 0.0f), 0.0f);
+        
+        GemmEpilogue withBias = epilogue.withBias(GemmEpilogue.Bias.ROW);
+        assertEquals(4.0f, withBias.apply(-1.0f, 5.0f), 0.0f);
+        assertTrue(GemmEpilogue.NONE.isIdentity());
+        assertFalse(withBias.isIdentity());
+    }
+
+    @Test
+    public void testBiasInBothOrders()
+    {
+        testBiasInBothOrders(GemmEpilogue.Bias.ROW);
+        testBiasInBothOrders(GemmEpilogue.Bias.COLUMN);
+    }
+
+    private static void testBiasInBothOrders(GemmEpilogue.Bias bias)
+    {
+        int M = 5;
+        int N = 3;
+        int K = 4;
+        float A[] = createRandom(M * K, 0);
+        float B[] = createRandom(K * N, 1);
+        float biasVector[] = createRandom(Math.max(M, N), 2);
+        GemmEpilogue epilogue = GemmEpilogue.NONE
+            .withBias(bias)
+            .withActivation(Activation.GELU);
+        
+        float rowMajorC[] = new float[M * N];
+        epilogue.sgemm(clblasOrder.clblasRowMajor, 
+            clblasTranspose.clblasNoTrans, clblasTranspose.clblasNoTrans, 
+            M, N, K, 1.0f, A, 0, K, B, 0, N, 0.0f, rowMajorC, 0, N, 
+            biasVector, 0);
+        
+        // The same matrices, stored in column-major order
+        float cmA[] = transpose(A, M, K);
+        float cmB[] = transpose(B, K, N);
+        float columnMajorC[] = new float[M * N];
+        epilogue.sgemm(clblasOrder.clblasColumnMajor, 
+            clblasTranspose.clblasNoTrans, clblasTranspose.clblasNoTrans, 
+            M, N, K, 1.0f, cmA, 0, M, cmB, 0, K, 0.0f, columnMajorC, 0, M, 
+            biasVector, 0);
+        assertArrayEquals(rowMajorC, transpose(columnMajorC, N, M), 1e-6f);
+        
+        for (int i = 0; i < M; i++)
+        {
+            for (int j = 0; j < N; j++)
+            {
+                float sum = 0;
+                for (int p = 0; p < K; p++)
+                {
+                    sum += A[i * K + p] * B[p * N + j];
+                }
+                float b = biasVector[bias == GemmEpilogue.Bias.ROW ? i : j];
+                float expected = Activation.GELU.apply(sum + b);
+                assertEquals(expected, rowMajorC[i * N + j], 1e-5f);
+            }
+        }
+    }
+
+    @Test
+    public void testKernelSource()
+    {
+        GemmEpilogue epilogue = GemmEpilogue.NONE
+            .withBias(GemmEpilogue.Bias.ROW)
+            .withActivation(Activation.RELU)
+            .withClamp(Float.NEGATIVE_INFINITY, 6.0f);
+        String source = epilogue.createKernelSource(true);
+        assertTrue(source.contains("bias[offBias + i0]"));
+        assertTrue(source.contains("const long size0, const long size1"));
+        assertTrue(source.contains("const long ldc"));
+        assertTrue(source.contains("(c < 0.0f ? 0.0f : c)"));
+        assertTrue(source.contains("c = c > "));
+        assertFalse(source.contains("c = c < "));
+        
+        String noBias = GemmEpilogue.NONE
+            .withActivation(Activation.TANH).createKernelSource(false);
+        assertFalse(noBias.contains("bias"));
+    }
+
+    @Test
+    public void testNaNIsPropagated()
+    {
+        assertTrue(Float.isNaN(Activation.RELU.apply(Float.NaN)));
+        GemmEpilogue epilogue = GemmEpilogue.NONE
+            .withActivation(Activation.RELU)
+            .withClamp(-1.0f, 6.0f);
+        assertTrue(Float.isNaN(epilogue.apply(Float.NaN, 0.0f)));
+        assertTrue(Float.isNaN(epilogue.withBias(GemmEpilogue.Bias.ROW)
+            .apply(1.0f, Float.NaN)));
+        
+        // The kernel must not use fmax or fmin, which drop NaN
+        String source = epilogue.createKernelSource(false);
+        assertFalse(source.contains("fmax"));
+        assertFalse(source.contains("fmin"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidClamp()
+    {
+        GemmEpilogue.NONE.withClamp(1.0f, 0.0f);
+    }
+
+    private static float[] transpose(float a[], int rows, int columns)
+    {
+        float result[] = new float[a.length];
+        for (int r = 0; r < rows; r++)
+        {
+            for (int c = 0; c < columns; c++)
+            {
+                result[c * rows + r] = a[r * columns + c];
+            }
+        }
+        return result;
+    }
+
+    private static float[] createRandom(int n, long seed)
+    {
+        Random random = new Random(seed);
+        float result[] = new float[n];
+        for (int i = 0; i < n; i++)
+        {
+            result[i] = random.nextFloat() * 2.0f - 1.0f;
+        }
+        return result;
+    }
+}
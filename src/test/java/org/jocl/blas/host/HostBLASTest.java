@@ -0,0 +1,164 @@
+package org.jocl.blas.host;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.clblasTranspose;
+import org.junit.Test;
+
+/**
+ * Tests for {@link HostBLAS}, comparing the results against a 
+ * straightforward computation based on explicit matrix elements
+ */
+public class HostBLASTest
+{
+    private static final int ORDERS[] = 
+    { 
+        clblasOrder.clblasRowMajor, 
+        clblasOrder.clblasColumnMajor 
+    };
+    private static final int TRANSPOSES[] = 
+    { 
+        clblasTranspose.clblasNoTrans, 
+        clblasTranspose.clblasTrans 
+    };
+
+    @Test
+    public void testSgemm()
+    {
+        int M = 5;
+        int N = 4;
+        int K = 3;
+        for (int order : ORDERS)
+        {
+            for (int transA : TRANSPOSES)
+            {
+                for (int transB : TRANSPOSES)
+                {
+                    float a[][] = createRandom(M, K, 1);
+                    float b[][] = createRandom(K, N, 2);
+                    float c[][] = createRandom(M, N, 3);
+                    float expected[][] = new float[M][N];
+                    for (int i = 0; i < M; i++)
+                    {
+                        for (int j = 0; j < N; j++)
+                        {
+                            float sum = 0;
+                            for (int p = 0; p < K; p++)
+                            {
+                                sum += a[i][p] * b[p][j];
+                            }
+                            expected[i][j] = 2.0f * sum + 0.5f * c[i][j];
+                        }
+                    }
+                    boolean tA = transA != clblasTranspose.clblasNoTrans;
+                    boolean tB = transB != clblasTranspose.clblasNoTrans;
+                    int lda = ld(order, tA ? K : M, tA ? M : K) + 1;
+                    int ldb = ld(order, tB ? N : K, tB ? K : N) + 2;
+                    int ldc = ld(order, M, N) + 3;
+                    float A[] = pack(order, tA ? transpose(a) : a, lda, 1);
+                    float B[] = pack(order, tB ? transpose(b) : b, ldb, 2);
+                    float C[] = pack(order, c, ldc, 3);
+                    HostBLAS.clblasSgemm(order, transA, transB, M, N, K, 
+                        2.0f, A, 1, lda, B, 2, ldb, 0.5f, C, 3, ldc);
+                    assertArrayEquals(pack(order, expected, ldc, 3), C, 1e-5f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSgemv()
+    {
+        int M = 5;
+        int N = 4;
+        for (int order : ORDERS)
+        {
+            for (int transA : TRANSPOSES)
+            {
+                boolean tA = transA != clblasTranspose.clblasNoTrans;
+                float a[][] = createRandom(M, N, 1);
+                float x[] = createRandom(1, tA ? M : N, 2)[0];
+                float y[] = createRandom(1, tA ? N : M, 3)[0];
+                float op[][] = tA ? transpose(a) : a;
+                float expected[] = new float[y.length];
+                for (int i = 0; i < op.length; i++)
+                {
+                    float sum = 0;
+                    for (int j = 0; j < op[i].length; j++)
+                    {
+                        sum += op[i][j] * x[j];
+                    }
+                    expected[i] = 2.0f * sum + 0.5f * y[i];
+                }
+                int lda = ld(order, M, N);
+                float A[] = pack(order, a, lda, 0);
+                float X[] = strided(x, 2);
+                float Y[] = strided(y, 3);
+                HostBLAS.clblasSgemv(order, transA, M, N, 2.0f, 
+                    A, 0, lda, X, 0, 2, 0.5f, Y, 0, 3);
+                assertArrayEquals(strided(expected, 3), Y, 1e-5f);
+            }
+        }
+    }
+
+    private static int ld(int order, int rows, int columns)
+    {
+        return order == clblasOrder.clblasRowMajor ? columns : rows;
+    }
+
+    private static float[] pack(int order, float m[][], int ld, int off)
+    {
+        int rows = m.length;
+        int columns = m[0].length;
+        boolean rowMajor = order == clblasOrder.clblasRowMajor;
+        float result[] = new float[off + ld * (rowMajor ? rows : columns)];
+        for (int i = 0; i < rows; i++)
+        {
+            for (int j = 0; j < columns; j++)
+            {
+                result[off + (rowMajor ? i * ld + j : j * ld + i)] = m[i][j];
+            }
+        }
+        return result;
+    }
+
+    private static float[] strided(float v[], int inc)
+    {
+        float result[] = new float[v.length * inc];
+        for (int i = 0; i < v.length; i++)
+        {
+            result[i * inc] = v[i];
+        }
+        return result;
+    }
+
+    private static float[][] transpose(float m[][])
+    {
+        float result[][] = new float[m[0].length][m.length];
+        for (int i = 0; i < m.length; i++)
+        {
+            for (int j = 0; j < m[0].length; j++)
+            {
+                result[j][i] = m[i][j];
+            }
+        }
+        return result;
+    }
+
+    private static float[][] createRandom(int rows, int columns, long seed)
+    {
+        Random random = new Random(seed);
+        float result[][] = new float[rows][columns];
+        for (int i = 0; i < rows; i++)
+        {
+            for (int j = 0; j < columns; j++)
+            {
+                result[i][j] = random.nextFloat() - 0.5f;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,268 @@
+package org.jocl.blas.lapack;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.clblasTranspose;
+import org.jocl.blas.clblasUplo;
+import org.jocl.blas.host.HostBLAS;
+import org.jocl.blas.host.HostLAPACK;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BlockedFactorizations}, running the blocked 
+ * algorithms on the {@link HostFactorizationBackend} and comparing the
+ * results against the unblocked {@link HostLAPACK} reference
+ */
+public class BlockedFactorizationsTest
+{
+    private static final int ORDERS[] = 
+    { 
+        clblasOrder.clblasRowMajor, 
+        clblasOrder.clblasColumnMajor 
+    };
+    private static final int UPLOS[] = 
+    { 
+        clblasUplo.clblasUpper, 
+        clblasUplo.clblasLower 
+    };
+    private final HostFactorizationBackend backend = 
+        new HostFactorizationBackend();
+
+    @Test
+    public void testSgetrfMatchesReference()
+    {
+        int sizes[][] = { { 11, 11 }, { 13, 7 }, { 7, 13 }, { 1, 1 } };
+        for (int order : ORDERS)
+        {
+            for (int size[] : sizes)
+            {
+                int M = size[0];
+                int N = size[1];
+                int lda = ld(order, M, N) + 2;
+                float A[] = createRandom(1 + lda * Math.max(M, N), 1);
+                float expected[] = A.clone();
+                int expectedIpiv[] = new int[Math.min(M, N)];
+                int ipiv[] = new int[Math.min(M, N)];
+                int expectedInfo = HostLAPACK.sgetrf(
+                    order, M, N, expected, 1, lda, expectedIpiv, 0);
+                int info = BlockedFactorizations.sgetrf(
+                    backend, order, M, N, A, 1, lda, ipiv, 3);
+                assertEquals(expectedInfo, info);
+                assertArrayEquals(expectedIpiv, ipiv);
+                assertArrayEquals(expected, A, 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void testSgetrsSolves()
+    {
+        int N = 10;
+        int NRHS = 3;
+        int transposes[] = 
+        { 
+            clblasTranspose.clblasNoTrans, 
+            clblasTranspose.clblasTrans 
+        };
+        for (int order : ORDERS)
+        {
+            for (int trans : transposes)
+            {
+                float A[] = createRandom(N * N, 2);
+                for (int i = 0; i < N; i++)
+                {
+                    A[i * N + i] += 2.0f;
+                }
+                float X[] = createRandom(N * NRHS, 3);
+                float B[] = new float[N * NRHS];
+                int ldb = ld(order, N, NRHS);
+                HostBLAS.clblasSgemm(order, trans, 
+                    clblasTranspose.clblasNoTrans, N, NRHS, N, 1.0f, 
+                    A, 0, N, X, 0, ldb, 0.0f, B, 0, ldb);
+                int ipiv[] = new int[N];
+                assertEquals(0, BlockedFactorizations.sgetrf(
+                    backend, order, N, N, A, 0, N, ipiv, 4));
+                BlockedFactorizations.sgetrs(backend, order, trans, 
+                    N, NRHS, A, 0, N, ipiv, B, 0, ldb);
+                assertArrayEquals(X, B, 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void testSgetrfReportsSingularity()
+    {
+        int N = 6;
+        float A[] = createRandom(N * N, 4);
+        for (int i = 0; i < N; i++)
+        {
+            A[i * N + 4] = 0.0f;
+        }
+        int ipiv[] = new int[N];
+        int info = BlockedFactorizations.sgetrf(backend, 
+            clblasOrder.clblasRowMajor, N, N, A, 0, N, ipiv, 2);
+        assertEquals(5, info);
+    }
+
+    @Test
+    public void testSpotrfMatchesReference()
+    {
+        int N = 11;
+        for (int order : ORDERS)
+        {
+            for (int uplo : UPLOS)
+            {
+                int lda = N + 1;
+                float A[] = createSpd(N, lda, 5);
+                float expected[] = A.clone();
+                assertEquals(0, HostLAPACK.spotrf(
+                    order, uplo, N, expected, 0, lda));
+                assertEquals(0, BlockedFactorizations.spotrf(
+                    backend, order, uplo, N, A, 0, lda, 3));
+                assertArrayEquals(expected, A, 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void testSpotrsSolves()
+    {
+        int N = 9;
+        int NRHS = 2;
+        for (int order : ORDERS)
+        {
+            for (int uplo : UPLOS)
+            {
+                float A[] = createSpd(N, N, 6);
+                float X[] = createRandom(N * NRHS, 7);
+                float B[] = new float[N * NRHS];
+                int ldb = ld(order, N, NRHS);
+                HostBLAS.clblasSgemm(order, clblasTranspose.clblasNoTrans, 
+                    clblasTranspose.clblasNoTrans, N, NRHS, N, 1.0f, 
+                    A, 0, N, X, 0, ldb, 0.0f, B, 0, ldb);
+                assertEquals(0, BlockedFactorizations.spotrf(
+                    backend, order, uplo, N, A, 0, N, 4));
+                BlockedFactorizations.spotrs(backend, order, uplo, 
+                    N, NRHS, A, 0, N, B, 0, ldb);
+                assertArrayEquals(X, B, 1e-3f);
+            }
+        }
+    }
+
+    @Test
+    public void testSpotrfReportsIndefiniteMatrix()
+    {
+        int N = 7;
+        float A[] = createSpd(N, N, 8);
+        A[5 * N + 5] = -100.0f;
+        int info = BlockedFactorizations.spotrf(backend, 
+            clblasOrder.clblasColumnMajor, clblasUplo.clblasLower, 
+            N, A, 0, N, 2);
+        assertEquals(6, info);
+    }
+
+    @Test
+    public void testSgeqrfMatchesReference()
+    {
+        int sizes[][] = { { 13, 7 }, { 7, 13 }, { 10, 10 } };
+        for (int order : ORDERS)
+        {
+            for (int size[] : sizes)
+            {
+                int M = size[0];
+                int N = size[1];
+                int lda = ld(order, M, N) + 1;
+                float A[] = createRandom(lda * Math.max(M, N), 9);
+                float expected[] = A.clone();
+                float expectedTau[] = new float[Math.min(M, N)];
+                float tau[] = new float[Math.min(M, N)];
+                HostLAPACK.sgeqrf(order, M, N, expected, 0, lda, 
+                    expectedTau, 0);
+                BlockedFactorizations.sgeqrf(
+                    backend, order, M, N, A, 0, lda, tau, 3);
+                assertArrayEquals(expectedTau, tau, 1e-4f);
+                assertArrayEquals(expected, A, 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void testSormqrReconstructsMatrix()
+    {
+        int M = 12;
+        int N = 5;
+        for (int order : ORDERS)
+        {
+            int lda = ld(order, M, N);
+            float A[] = createRandom(M * N, 10);
+            float original[] = A.clone();
+            float tau[] = new float[N];
+            BlockedFactorizations.sgeqrf(
+                backend, order, M, N, A, 0, lda, tau, 2);
+            
+            // Q * R must be the original matrix
+            float QR[] = new float[M * N];
+            for (int i = 0; i < N; i++)
+            {
+                for (int j = i; j < N; j++)
+                {
+                    int index = order == clblasOrder.clblasRowMajor ? 
+                        i * lda + j : i + j * lda;
+                    QR[index] = A[index];
+                }
+            }
+            BlockedFactorizations.sormqr(backend, order, 
+                clblasTranspose.clblasNoTrans, M, N, N, A, 0, lda, tau, 
+                QR, 0, lda, 2);
+            assertArrayEquals(original, QR, 1e-4f);
+            
+            // Q^T applied to the original matrix must yield R
+            float expected[] = original.clone();
+            HostLAPACK.sormqr(order, clblasTranspose.clblasTrans, 
+                M, N, N, A, 0, lda, tau, 0, expected, 0, lda);
+            BlockedFactorizations.sormqr(backend, order, 
+                clblasTranspose.clblasTrans, M, N, N, A, 0, lda, tau, 
+                original, 0, lda, 2);
+            assertArrayEquals(expected, original, 1e-4f);
+        }
+    }
+
+    private static int ld(int order, int rows, int columns)
+    {
+        return order == clblasOrder.clblasRowMajor ? columns : rows;
+    }
+
+    private static float[] createSpd(int n, int ld, long seed)
+    {
+        float r[] = createRandom(n * n, seed);
+        float result[] = new float[n * ld];
+        for (int i = 0; i < n; i++)
+        {
+            for (int j = 0; j < n; j++)
+            {
+                float sum = i == j ? n : 0.0f;
+                for (int k = 0; k < n; k++)
+                {
+                    sum += r[i * n + k] * r[j * n + k];
+                }
+                result[i * ld + j] = sum;
+            }
+        }
+        return result;
+    }
+
+    private static float[] createRandom(int n, long seed)
+    {
+        Random random = new Random(seed);
+        float result[] = new float[n];
+        for (int i = 0; i < n; i++)
+        {
+            result[i] = random.nextFloat() - 0.5f;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,169 @@
+package org.jocl.blas.lapack;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.clblasTranspose;
+import org.jocl.blas.host.HostBLAS;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TallSkinnyQR}, using one {@link HostFactorizationBackend}
+ * for each row block
+ */
+public class TallSkinnyQRTest
+{
+    private static final int ORDERS[] = 
+    { 
+        clblasOrder.clblasRowMajor, 
+        clblasOrder.clblasColumnMajor 
+    };
+    private static final int ROWS[] = { 9, 6, 11 };
+    private static final int N = 4;
+
+    @Test
+    public void testFactorMatchesGramMatrix() throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(ROWS.length);
+        try
+        {
+            testFactorMatchesGramMatrix(executor);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static void testFactorMatchesGramMatrix(ExecutorService executor)
+        throws InterruptedException
+    {
+        for (int order : ORDERS)
+        {
+            float A[][] = createBlocks(order, N, 1);
+            float gram[] = gram(order, A);
+            TallSkinnyQR<float[]> qr = createQR(order, A);
+            float R[] = qr.factor(executor);
+            
+            // R^T * R must be A^T * A
+            float RtR[] = new float[N * N];
+            HostBLAS.clblasSgemm(order, clblasTranspose.clblasTrans, 
+                clblasTranspose.clblasNoTrans, N, N, N, 1.0f, 
+                R, 0, N, R, 0, N, 0.0f, RtR, 0, N);
+            assertArrayEquals(gram, RtR, 1e-4f);
+        }
+    }
+
+    @Test
+    public void testSolveLeastSquares() throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(ROWS.length);
+        try
+        {
+            testSolveLeastSquares(executor);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static void testSolveLeastSquares(ExecutorService executor)
+        throws InterruptedException
+    {
+        int NRHS = 2;
+        for (int order : ORDERS)
+        {
+            float A[][] = createBlocks(order, N, 2);
+            float B[][] = createBlocks(order, NRHS, 3);
+            
+            // The solution must satisfy the normal equations 
+            // A^T * A * X = A^T * B
+            float gram[] = gram(order, A);
+            float AtB[] = new float[N * NRHS];
+            int ldx = order == clblasOrder.clblasRowMajor ? NRHS : N;
+            for (int b = 0; b < ROWS.length; b++)
+            {
+                HostBLAS.clblasSgemm(order, clblasTranspose.clblasTrans, 
+                    clblasTranspose.clblasNoTrans, N, NRHS, ROWS[b], 1.0f, 
+                    A[b], 0, ld(order, ROWS[b], N), 
+                    B[b], 0, ld(order, ROWS[b], NRHS), 1.0f, AtB, 0, ldx);
+            }
+            
+            TallSkinnyQR<float[]> qr = createQR(order, A);
+            qr.factor(executor);
+            int ldb[] = new int[ROWS.length];
+            for (int b = 0; b < ROWS.length; b++)
+            {
+                ldb[b] = ld(order, ROWS[b], NRHS);
+            }
+            List<float[]> list = Arrays.asList(B);
+            float X[] = qr.solve(executor, list, new long[ROWS.length], 
+                ldb, NRHS);
+            float gramX[] = new float[N * NRHS];
+            HostBLAS.clblasSgemm(order, clblasTranspose.clblasNoTrans, 
+                clblasTranspose.clblasNoTrans, N, NRHS, N, 1.0f, 
+                gram, 0, N, X, 0, ldx, 0.0f, gramX, 0, ldx);
+            assertArrayEquals(AtB, gramX, 1e-3f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBlockWithTooFewRows()
+    {
+        TallSkinnyQR<float[]> qr = 
+            new TallSkinnyQR<float[]>(clblasOrder.clblasRowMajor, N);
+        qr.addBlock(new HostFactorizationBackend(), 
+            new float[N * N], 0, N, N - 1);
+    }
+
+    private static TallSkinnyQR<float[]> createQR(int order, float A[][])
+    {
+        TallSkinnyQR<float[]> qr = new TallSkinnyQR<float[]>(order, N, 2);
+        for (int b = 0; b < ROWS.length; b++)
+        {
+            qr.addBlock(new HostFactorizationBackend(), 
+                A[b], 0, ld(order, ROWS[b], N), ROWS[b]);
+        }
+        return qr;
+    }
+
+    private static float[] gram(int order, float A[][])
+    {
+        float result[] = new float[N * N];
+        for (int b = 0; b < ROWS.length; b++)
+        {
+            HostBLAS.clblasSgemm(order, clblasTranspose.clblasTrans, 
+                clblasTranspose.clblasNoTrans, N, N, ROWS[b], 1.0f, 
+                A[b], 0, ld(order, ROWS[b], N), 
+                A[b], 0, ld(order, ROWS[b], N), 1.0f, result, 0, N);
+        }
+        return result;
+    }
+
+    private static int ld(int order, int rows, int columns)
+    {
+        return order == clblasOrder.clblasRowMajor ? columns : rows;
+    }
+
+    private static float[][] createBlocks(int order, int columns, long seed)
+    {
+        Random random = new Random(seed);
+        float result[][] = new float[ROWS.length][];
+        for (int b = 0; b < ROWS.length; b++)
+        {
+            result[b] = new float[ROWS[b] * columns];
+            for (int i = 0; i < result[b].length; i++)
+            {
+                result[b][i] = random.nextFloat() - 0.5f;
+            }
+        }
+        return result;
+    }
+}
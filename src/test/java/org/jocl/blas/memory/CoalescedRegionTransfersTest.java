@@ -0,0 +1,175 @@
+package org.jocl.blas.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jocl.Sizeof;
+import org.jocl.blas.clblasOrder;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CoalescedRegionTransfers}
+ */
+public class CoalescedRegionTransfersTest
+{
+    @Test
+    public void testCoalesceAdjacentRegions()
+    {
+        List<MatrixRegion> merged = CoalescedRegionTransfers.coalesce(
+            Arrays.asList(
+                new MatrixRegion(0, 0, 2, 2),
+                new MatrixRegion(0, 2, 2, 3),
+                new MatrixRegion(2, 0, 1, 5)));
+        assertEquals(Arrays.asList(new MatrixRegion(0, 0, 3, 5)), merged);
+    }
+
+    @Test
+    public void testCoalesceOverlappingAndContainedRegions()
+    {
+        List<MatrixRegion> merged = CoalescedRegionTransfers.coalesce(
+            Arrays.asList(
+                new MatrixRegion(1, 1, 2, 4),
+                new MatrixRegion(1, 3, 2, 4),
+                new MatrixRegion(2, 2, 1, 1),
+                new MatrixRegion(5, 5, 0, 3)));
+        assertEquals(Arrays.asList(new MatrixRegion(1, 1, 2, 6)), merged);
+    }
+
+    @Test
+    public void testCoalesceKeepsNonRectangularUnions()
+    {
+        List<MatrixRegion> regions = Arrays.asList(
+            new MatrixRegion(0, 0, 2, 2),
+            new MatrixRegion(1, 1, 2, 2),
+            new MatrixRegion(5, 0, 1, 1));
+        assertEquals(regions, CoalescedRegionTransfers.coalesce(regions));
+    }
+
+    @Test
+    public void testPackAndUnpackRowMajor()
+    {
+        testPackAndUnpack(clblasOrder.clblasRowMajor);
+    }
+
+    @Test
+    public void testPackAndUnpackColumnMajor()
+    {
+        testPackAndUnpack(clblasOrder.clblasColumnMajor);
+    }
+
+    /**
+     * Pack regions of a matrix, scatter them into a matrix that
+     * simulates the device memory, in the same way as the kernels,
+     * and unpack them into another matrix
+     *
+     * @param order The order
+     */
+    private static void testPackAndUnpack(int order)
+    {
+        HostMatrix source = HostMatrix.allocate(
+            order, 6, 7, Sizeof.cl_float, 3, 64);
+        for (int i = 0; i < 6; i++)
+        {
+            for (int j = 0; j < 7; j++)
+            {
+                source.putFloat(i, j, i * 10 + j);
+            }
+        }
+        List<MatrixRegion> regions = Arrays.asList(
+            new MatrixRegion(0, 1, 2, 3),
+            new MatrixRegion(4, 0, 2, 7),
+            new MatrixRegion(3, 6, 1, 1));
+        ByteBuffer staging = ByteBuffer.allocateDirect(1024).order(
+            ByteOrder.nativeOrder());
+        CoalescedRegionTransfers.pack(source, regions, staging);
+
+        int n = regions.size();
+        int position = n * CoalescedRegionTransfers.DESCRIPTOR_SIZE *
+            Sizeof.cl_long;
+        HostMatrix device = HostMatrix.allocate(
+            order, 6, 7, Sizeof.cl_float, 1, 64);
+        LongBuffer descriptors = staging.duplicate().order(
+            ByteOrder.nativeOrder()).asLongBuffer();
+        ByteBuffer dataBytes = staging.duplicate().order(
+            ByteOrder.nativeOrder());
+        dataBytes.position(position);
+        FloatBuffer data = dataBytes.slice().order(
+            ByteOrder.nativeOrder()).asFloatBuffer();
+        FloatBuffer deviceData = device.getBuffer().asFloatBuffer();
+        long total = 2 * 3 + 2 * 7 + 1;
+        for (long p = 0; p < total; p++)
+        {
+            int index = (int)elementIndex(descriptors, n, p, device.getLd());
+            deviceData.put(index, data.get((int)p));
+        }
+        for (MatrixRegion r : regions)
+        {
+            assertRegionEquals(source, device, r);
+        }
+
+        ByteBuffer readStaging = ByteBuffer.allocateDirect(1024).order(
+            ByteOrder.nativeOrder());
+        CoalescedRegionTransfers.pack(device, regions, readStaging);
+        HostMatrix target = HostMatrix.allocate(
+            order, 6, 7, Sizeof.cl_float, 0, 64);
+        CoalescedRegionTransfers.unpack(
+            readStaging, position, regions, target);
+        for (MatrixRegion r : regions)
+        {
+            assertRegionEquals(source, target, r);
+        }
+        assertEquals(0.0f, target.getFloat(2, 0), 0.0f);
+    }
+
+    /**
+     * Computes the index of a packed element in the matrix, in the
+     * same way as the scatter and gather kernels
+     *
+     * @param d The descriptors
+     * @param n The number of regions
+     * @param p The index of the packed element
+     * @param ld The leading dimension
+     * @return The element index
+     */
+    private static long elementIndex(LongBuffer d, int n, long p, long ld)
+    {
+        int lo = 0;
+        int hi = n - 1;
+        while (lo < hi)
+        {
+            int mid = (lo + hi + 1) / 2;
+            if (d.get(mid * 4 + 3) <= p)
+            {
+                lo = mid;
+            }
+            else
+            {
+                hi = mid - 1;
+            }
+        }
+        long k = p - d.get(lo * 4 + 3);
+        long length = d.get(lo * 4 + 2);
+        return (d.get(lo * 4) + k / length) * ld + d.get(lo * 4 + 1) +
+            k % length;
+    }
+
+    private static void assertRegionEquals(
+        HostMatrix expected, HostMatrix actual, MatrixRegion r)
+    {
+        for (long i = r.getRow(); i < r.getRow() + r.getNumRows(); i++)
+        {
+            for (long j = r.getColumn();
+                j < r.getColumn() + r.getNumColumns(); j++)
+            {
+                assertEquals(expected.getFloat(i, j),
+                    actual.getFloat(i, j), 0.0f);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.jocl.blas.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jocl.Sizeof;
+import org.jocl.cl_mem;
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.memory.DeviceMatrixCache.EvictionPolicy;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeviceMatrixCache}
+ */
+public class DeviceMatrixCacheTest
+{
+    /**
+     * Transfers that only record the operations
+     */
+    private static class RecordingTransfers 
+        implements DeviceMatrixCache.Transfers
+    {
+        int uploads;
+        int downloads;
+        final List<DeviceMatrix> released = new ArrayList<DeviceMatrix>();
+
+        @Override
+        public DeviceMatrix allocate(HostMatrix layout)
+        {
+            return new DeviceMatrix(new cl_mem(), layout.getOrder(), 
+                layout.getRows(), layout.getColumns(), 
+                layout.getElementSize(), 0, layout.getLd());
+        }
+
+        @Override
+        public void upload(HostMatrix source, DeviceMatrix target)
+        {
+            uploads++;
+        }
+
+        @Override
+        public void download(DeviceMatrix source, HostMatrix target)
+        {
+            downloads++;
+        }
+
+        @Override
+        public void release(DeviceMatrix matrix)
+        {
+            released.add(matrix);
+        }
+    }
+
+    private static HostMatrix matrix(int rows)
+    {
+        // 10 columns of floats: 40 bytes per row
+        return HostMatrix.allocate(clblasOrder.clblasRowMajor, rows, 10, 
+            Sizeof.cl_float, 0, HostMemoryPool.CACHE_LINE_ALIGNMENT);
+    }
+
+    @Test
+    public void testHitsAndVersions()
+    {
+        RecordingTransfers transfers = new RecordingTransfers();
+        DeviceMatrixCache cache = new DeviceMatrixCache(
+            transfers, 1000, EvictionPolicy.LRU);
+        HostMatrix a = matrix(5);
+        DeviceMatrix d0 = cache.acquire("a", 1, a);
+        cache.unpin("a");
+        DeviceMatrix d1 = cache.acquire("a", 1, a);
+        cache.unpin("a");
+        assertSame(d0, d1);
+        assertEquals(1, transfers.uploads);
+        assertEquals(1, cache.getHitCount());
+
+        // A new version with the same layout reuses the memory object
+        DeviceMatrix d2 = cache.acquire("a", 2, a);
+        cache.unpin("a");
+        assertSame(d0, d2);
+        assertEquals(2, transfers.uploads);
+        assertEquals(200, cache.getUsedBytes());
+        assertEquals(400, cache.getUploadedBytes());
+    }
+
+    @Test
+    public void testLruEviction()
+    {
+        RecordingTransfers transfers = new RecordingTransfers();
+        DeviceMatrixCache cache = new DeviceMatrixCache(
+            transfers, 500, EvictionPolicy.LRU);
+        DeviceMatrix a = cache.acquire("a", 0, matrix(5));
+        cache.unpin("a");
+        cache.acquire("b", 0, matrix(5));
+        cache.unpin("b");
+        cache.acquire("a", 0, matrix(5));
+        cache.unpin("a");
+        // 200 + 200 + 200 exceeds 500: "b" is least recently used
+        DeviceMatrix c = cache.acquire("c", 0, matrix(5));
+        cache.unpin("c");
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(1, transfers.released.size());
+        assertTrue(transfers.released.get(0) != a);
+        assertTrue(transfers.released.get(0) != c);
+        assertEquals(400, cache.getUsedBytes());
+    }
+
+    @Test
+    public void testLfuEviction()
+    {
+        RecordingTransfers transfers = new RecordingTransfers();
+        DeviceMatrixCache cache = new DeviceMatrixCache(
+            transfers, 500, EvictionPolicy.LFU);
+        for (int i = 0; i < 3; i++)
+        {
+            cache.acquire("a", 0, matrix(5));
+            cache.unpin("a");
+        }
+        DeviceMatrix b = cache.acquire("b", 0, matrix(5));
+        cache.unpin("b");
+        cache.acquire("a", 0, matrix(5));
+        cache.unpin("a");
+        cache.acquire("c", 0, matrix(5));
+        cache.unpin("c");
+        assertEquals(1, transfers.released.size());
+        assertSame(b, transfers.released.get(0));
+    }
+
+    @Test
+    public void testPinnedEntriesAreNotEvicted()
+    {
+        RecordingTransfers transfers = new RecordingTransfers();
+        DeviceMatrixCache cache = new DeviceMatrixCache(
+            transfers, 300, EvictionPolicy.LRU);
+        cache.acquire("a", 0, matrix(5));
+        cache.acquire("b", 0, matrix(5));
+        assertEquals(400, cache.getUsedBytes());
+        assertEquals(0, cache.getEvictionCount());
+
+        // Unpinning an entry while over budget evicts it
+        cache.unpin("a");
+        assertEquals(200, cache.getUsedBytes());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testDirtyEntriesAreWrittenBack()
+    {
+        RecordingTransfers transfers = new RecordingTransfers();
+        DeviceMatrixCache cache = new DeviceMatrixCache(
+            transfers, 300, EvictionPolicy.LRU);
+        HostMatrix a = matrix(5);
+        cache.acquire("a", 1, a);
+        cache.markDirty("a", 2);
+
+        // The host version 1 is older than the device copy
+        cache.acquire("a", 1, a);
+        assertEquals(1, transfers.uploads);
+        cache.unpin("a");
+        cache.unpin("a");
+
+        cache.acquire("b", 0, matrix(5));
+        cache.unpin("b");
+        assertEquals(1, transfers.downloads);
+        assertEquals(1, cache.getWriteBackCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNewerHostVersionOfDirtyEntry()
+    {
+        RecordingTransfers transfers = new RecordingTransfers();
+        DeviceMatrixCache cache = new DeviceMatrixCache(
+            transfers, 1000, EvictionPolicy.LRU);
+        HostMatrix a = matrix(5);
+        cache.acquire("a", 1, a);
+        cache.unpin("a");
+        cache.markDirty("a", 2);
+        cache.acquire("a", 3, a);
+    }
+}
@@ -0,0 +1,97 @@
+package org.jocl.blas.memory;
+
+import static org.jocl.blas.clblasOrder.clblasColumnMajor;
+import static org.jocl.blas.clblasOrder.clblasRowMajor;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jocl.Sizeof;
+import org.jocl.cl_mem;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeviceMatrixPool}, with an allocator that does not
+ * create memory objects
+ */
+public class DeviceMatrixPoolTest
+{
+    /**
+     * An allocator that records the released matrices
+     */
+    private static class TestAllocator implements DeviceMatrixPool.Allocator
+    {
+        final List<DeviceMatrix> released = new ArrayList<DeviceMatrix>();
+
+        @Override
+        public DeviceMatrix allocate(
+            int order, long rows, long columns, int elementSize)
+        {
+            long ld = order == clblasRowMajor ? columns : rows;
+            return new DeviceMatrix(new cl_mem(), order, rows, columns,
+                elementSize, 0, ld);
+        }
+
+        @Override
+        public void release(DeviceMatrix matrix)
+        {
+            released.add(matrix);
+        }
+    }
+
+    @Test
+    public void testReuse()
+    {
+        TestAllocator allocator = new TestAllocator();
+        DeviceMatrixPool pool = new DeviceMatrixPool(allocator, 1 << 20);
+        DeviceMatrix a = pool.acquire(clblasRowMajor, 4, 8, Sizeof.cl_float);
+        pool.release(a);
+        assertEquals(4 * 8 * Sizeof.cl_float, pool.getRetainedBytes());
+
+        DeviceMatrix b = pool.acquire(clblasRowMajor, 4, 8, Sizeof.cl_float);
+        assertSame(a, b);
+        assertEquals(0, pool.getRetainedBytes());
+
+        // Different order or shape
+        DeviceMatrix c =
+            pool.acquire(clblasColumnMajor, 4, 8, Sizeof.cl_float);
+        DeviceMatrix d = pool.acquire(clblasRowMajor, 8, 4, Sizeof.cl_float);
+        assertNotSame(a, c);
+        assertNotSame(a, d);
+        assertEquals(3, pool.getAllocationCount());
+        assertEquals(1, pool.getReuseCount());
+        assertEquals(0, allocator.released.size());
+    }
+
+    @Test
+    public void testRetainedLimit()
+    {
+        TestAllocator allocator = new TestAllocator();
+        DeviceMatrixPool pool = new DeviceMatrixPool(allocator, 256);
+        DeviceMatrix a = pool.acquire(clblasRowMajor, 8, 8, Sizeof.cl_float);
+        DeviceMatrix b = pool.acquire(clblasRowMajor, 8, 8, Sizeof.cl_float);
+        pool.release(a);
+        pool.release(b);
+        assertEquals(256, pool.getRetainedBytes());
+        assertEquals(1, allocator.released.size());
+        assertSame(b, allocator.released.get(0));
+
+        pool.clear();
+        assertEquals(0, pool.getRetainedBytes());
+        assertEquals(2, allocator.released.size());
+        assertSame(a, allocator.released.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReleaseTwice()
+    {
+        DeviceMatrixPool pool =
+            new DeviceMatrixPool(new TestAllocator(), 1 << 20);
+        DeviceMatrix a = pool.acquire(clblasRowMajor, 2, 2, Sizeof.cl_float);
+        pool.release(a);
+        pool.release(a);
+    }
+}
@@ -0,0 +1,107 @@
+package org.jocl.blas.memory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.jocl.Sizeof;
+import org.jocl.blas.clblasOrder;
+import org.junit.Test;
+
+/**
+ * Tests for {@link HostMatrix} and {@link HostVector}
+ */
+public class HostMatrixTest
+{
+    @Test
+    public void testPaddedLayout()
+    {
+        HostMatrix r = HostMatrix.allocate(clblasOrder.clblasRowMajor, 
+            5, 7, Sizeof.cl_float, 3, HostMemoryPool.CACHE_LINE_ALIGNMENT);
+        assertEquals(10, r.getLd());
+        assertEquals(5 * 10 * Sizeof.cl_float, r.getSizeInBytes());
+
+        HostMatrix c = HostMatrix.allocate(clblasOrder.clblasColumnMajor, 
+            5, 7, Sizeof.cl_double, 3, HostMemoryPool.CACHE_LINE_ALIGNMENT);
+        assertEquals(8, c.getLd());
+        assertEquals(7 * 8 * Sizeof.cl_double, c.getSizeInBytes());
+    }
+
+    @Test
+    public void testAlignment()
+    {
+        for (int alignment : new int[] { 
+            HostMemoryPool.CACHE_LINE_ALIGNMENT, 
+            HostMemoryPool.PAGE_ALIGNMENT })
+        {
+            for (int i = 0; i < 10; i++)
+            {
+                HostMatrix m = HostMatrix.allocate(
+                    clblasOrder.clblasRowMajor, 3 + i, 5, 
+                    Sizeof.cl_float, 0, alignment);
+                int offset = AlignedMemory.alignmentOffset(
+                    m.getBuffer(), alignment);
+                assertTrue(offset == 0 || offset == -1);
+            }
+        }
+    }
+
+    @Test
+    public void testPutGetRoundTrip()
+    {
+        int M = 4;
+        int N = 6;
+        float A[] = new float[M * N];
+        for (int i = 0; i < A.length; i++)
+        {
+            A[i] = i;
+        }
+        for (int order : new int[] { 
+            clblasOrder.clblasRowMajor, clblasOrder.clblasColumnMajor })
+        {
+            int lda = order == clblasOrder.clblasRowMajor ? N : M;
+            HostMatrix m = HostMatrix.allocate(order, M, N, 
+                Sizeof.cl_float, 5, HostMemoryPool.CACHE_LINE_ALIGNMENT);
+            m.put(A, 0, lda);
+            for (int i = 0; i < M; i++)
+            {
+                for (int j = 0; j < N; j++)
+                {
+                    int index = order == clblasOrder.clblasRowMajor ? 
+                        i * N + j : j * M + i;
+                    assertEquals(A[index], m.getFloat(i, j), 0.0f);
+                }
+            }
+            float B[] = new float[M * N];
+            m.get(B, 0, lda);
+            assertArrayEquals(A, B, 0.0f);
+        }
+    }
+
+    @Test
+    public void testVector()
+    {
+        HostVector v = HostVector.allocate(
+            10, Sizeof.cl_double, HostMemoryPool.CACHE_LINE_ALIGNMENT);
+        v.asDoubleBuffer().put(3, 1.5);
+        assertEquals(10, v.asDoubleBuffer().capacity());
+        assertEquals(1.5, v.asDoubleBuffer().get(3), 0.0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAccessAfterFree()
+    {
+        HostMatrix m = HostMatrix.allocate(clblasOrder.clblasRowMajor, 
+            2, 2, Sizeof.cl_float, 0, HostMemoryPool.CACHE_LINE_ALIGNMENT);
+        m.free();
+        m.getFloat(0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongElementSize()
+    {
+        HostMatrix m = HostMatrix.allocate(clblasOrder.clblasRowMajor, 
+            2, 2, Sizeof.cl_float, 0, HostMemoryPool.CACHE_LINE_ALIGNMENT);
+        m.getDouble(0, 0);
+    }
+}
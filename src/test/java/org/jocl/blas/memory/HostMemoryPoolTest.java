@@ -0,0 +1,102 @@
+package org.jocl.blas.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jocl.Sizeof;
+import org.jocl.blas.clblasOrder;
+import org.junit.Test;
+
+/**
+ * Tests for {@link HostMemoryPool}
+ */
+public class HostMemoryPoolTest
+{
+    /**
+     * An allocator that records the released blocks
+     */
+    private static class TestAllocator implements HostMemoryPool.Allocator
+    {
+        final List<ByteBuffer> released = new ArrayList<ByteBuffer>();
+
+        @Override
+        public ByteBuffer allocate(long size, int alignment)
+        {
+            return ByteBuffer.allocateDirect((int) size);
+        }
+
+        @Override
+        public void release(ByteBuffer block)
+        {
+            released.add(block);
+        }
+    }
+
+    @Test
+    public void testReuse()
+    {
+        HostMemoryPool pool = new HostMemoryPool(
+            HostMemoryPool.PAGE_ALIGNMENT, 1 << 20);
+        HostMatrix a = pool.allocateMatrix(
+            clblasOrder.clblasRowMajor, 10, 10, Sizeof.cl_float, 0);
+        assertEquals(HostMemoryPool.PAGE_ALIGNMENT, a.getCapacity());
+        a.free();
+        assertTrue(a.isFreed());
+        assertEquals(HostMemoryPool.PAGE_ALIGNMENT, pool.getRetainedBytes());
+
+        // Same rounded size, different shape
+        HostVector v = pool.allocateVector(1000, Sizeof.cl_float);
+        assertEquals(1, pool.getAllocationCount());
+        assertEquals(1, pool.getReuseCount());
+        assertEquals(0, pool.getRetainedBytes());
+
+        // Freeing twice has no effect
+        v.free();
+        v.free();
+        assertEquals(HostMemoryPool.PAGE_ALIGNMENT, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void testRetainedLimit()
+    {
+        HostMemoryPool pool = new HostMemoryPool(
+            HostMemoryPool.CACHE_LINE_ALIGNMENT, 256);
+        HostVector a = pool.allocateVector(64, Sizeof.cl_float);
+        HostVector b = pool.allocateVector(64, Sizeof.cl_float);
+        a.free();
+        b.free();
+        assertEquals(256, pool.getRetainedBytes());
+        pool.clear();
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void testReleaseByAllocator()
+    {
+        TestAllocator allocator = new TestAllocator();
+        HostMemoryPool pool = new HostMemoryPool(
+            allocator, HostMemoryPool.CACHE_LINE_ALIGNMENT, 256);
+        HostVector a = pool.allocateVector(64, Sizeof.cl_float);
+        HostVector b = pool.allocateVector(64, Sizeof.cl_float);
+        ByteBuffer blockB = b.buffer();
+        a.free();
+        b.free();
+
+        // The block that exceeds the limit is released immediately
+        assertEquals(1, allocator.released.size());
+        assertSame(blockB, allocator.released.get(0));
+
+        HostVector c = pool.allocateVector(64, Sizeof.cl_float);
+        assertEquals(2, pool.getAllocationCount());
+        assertEquals(1, pool.getReuseCount());
+        c.free();
+        pool.clear();
+        assertEquals(2, allocator.released.size());
+        assertEquals(0, pool.getRetainedBytes());
+    }
+}
@@ -0,0 +1,168 @@
+package org.jocl.blas.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jocl.Sizeof;
+import org.jocl.cl_mem;
+import org.jocl.blas.clblasOrder;
+import org.junit.Test;
+
+/**
+ * Tests for {@link HostMirror}
+ */
+public class HostMirrorTest
+{
+    /**
+     * Transfers that copy between the host matrix and another host 
+     * matrix that simulates the device memory
+     */
+    private static class SimulatedTransfers implements RegionTransfers
+    {
+        final HostMatrix deviceImage;
+        final List<MatrixRegion> reads = new ArrayList<MatrixRegion>();
+        final List<MatrixRegion> writes = new ArrayList<MatrixRegion>();
+
+        SimulatedTransfers(HostMatrix deviceImage)
+        {
+            this.deviceImage = deviceImage;
+        }
+
+        @Override
+        public void read(DeviceMatrix device, HostMatrix host, 
+            List<MatrixRegion> regions)
+        {
+            reads.addAll(regions);
+            copy(deviceImage, host, regions);
+        }
+
+        @Override
+        public void write(HostMatrix host, DeviceMatrix device, 
+            List<MatrixRegion> regions)
+        {
+            writes.addAll(regions);
+            copy(host, deviceImage, regions);
+        }
+
+        private static void copy(HostMatrix src, HostMatrix dst, 
+            List<MatrixRegion> regions)
+        {
+            for (MatrixRegion r : regions)
+            {
+                for (long i = r.getRow(); i < r.getRow() + r.getNumRows(); i++)
+                {
+                    for (long j = r.getColumn(); 
+                        j < r.getColumn() + r.getNumColumns(); j++)
+                    {
+                        dst.putFloat(i, j, src.getFloat(i, j));
+                    }
+                }
+            }
+        }
+    }
+
+    private static final int ROWS = 10;
+    private static final int COLUMNS = 12;
+
+    private static HostMatrix hostMatrix()
+    {
+        return HostMatrix.allocate(clblasOrder.clblasRowMajor, ROWS, 
+            COLUMNS, Sizeof.cl_float, 0, HostMemoryPool.CACHE_LINE_ALIGNMENT);
+    }
+
+    private static HostMirror createMirror(SimulatedTransfers transfers)
+    {
+        DeviceMatrix device = new DeviceMatrix(new cl_mem(), 
+            clblasOrder.clblasRowMajor, ROWS, COLUMNS, Sizeof.cl_float, 
+            0, COLUMNS);
+        return new HostMirror(transfers, device, hostMatrix(), 4, 4);
+    }
+
+    private static SimulatedTransfers createTransfers()
+    {
+        HostMatrix deviceImage = hostMatrix();
+        for (int i = 0; i < ROWS; i++)
+        {
+            for (int j = 0; j < COLUMNS; j++)
+            {
+                deviceImage.putFloat(i, j, i * 100 + j);
+            }
+        }
+        return new SimulatedTransfers(deviceImage);
+    }
+
+    @Test
+    public void testRowReadOnlyTransfersItsTiles()
+    {
+        SimulatedTransfers transfers = createTransfers();
+        HostMirror mirror = createMirror(transfers);
+        assertEquals(9, mirror.getStaleTileCount());
+
+        float row[] = new float[COLUMNS];
+        mirror.getRow(5, row, 0);
+        assertEquals(503.0f, row[3], 0.0f);
+        assertEquals(511.0f, row[11], 0.0f);
+
+        // The three tiles of tile row 1 are read with one transfer
+        assertEquals(1, transfers.reads.size());
+        assertEquals(new MatrixRegion(4, 0, 4, 12), transfers.reads.get(0));
+        assertEquals(6, mirror.getStaleTileCount());
+
+        // Reading again does not transfer anything
+        mirror.getFloat(7, 11);
+        assertEquals(1, mirror.getReadCount());
+
+        // The last tile row only has 2 rows
+        assertEquals(911.0f, mirror.getFloat(9, 11), 0.0f);
+        assertEquals(new MatrixRegion(8, 8, 2, 4), transfers.reads.get(1));
+    }
+
+    @Test
+    public void testDeviceModification()
+    {
+        SimulatedTransfers transfers = createTransfers();
+        HostMirror mirror = createMirror(transfers);
+        mirror.sync(new MatrixRegion(0, 0, ROWS, COLUMNS));
+        assertEquals(0, mirror.getStaleTileCount());
+
+        transfers.deviceImage.putFloat(1, 1, -1.0f);
+        mirror.markDeviceModified(new MatrixRegion(1, 1, 1, 1));
+        assertEquals(1, mirror.getStaleTileCount());
+        assertEquals(-1.0f, mirror.getFloat(1, 1), 0.0f);
+    }
+
+    @Test
+    public void testWritesAreCoalesced()
+    {
+        SimulatedTransfers transfers = createTransfers();
+        HostMirror mirror = createMirror(transfers);
+        mirror.sync(new MatrixRegion(0, 0, ROWS, COLUMNS));
+
+        // Dirty tiles (0,0), (0,1), (1,0), (1,1) and (2,2)
+        mirror.putFloat(0, 0, 1.0f);
+        mirror.putFloat(3, 5, 2.0f);
+        mirror.putFloat(4, 3, 3.0f);
+        mirror.putFloat(7, 7, 4.0f);
+        mirror.putFloat(9, 11, 5.0f);
+        assertEquals(5, mirror.getDirtyTileCount());
+        mirror.flush();
+        assertEquals(0, mirror.getDirtyTileCount());
+
+        assertEquals(2, transfers.writes.size());
+        assertEquals(new MatrixRegion(0, 0, 8, 8), transfers.writes.get(0));
+        assertEquals(new MatrixRegion(8, 8, 2, 4), transfers.writes.get(1));
+        assertEquals(4.0f, transfers.deviceImage.getFloat(7, 7), 0.0f);
+        assertEquals(5.0f, transfers.deviceImage.getFloat(9, 11), 0.0f);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDeviceModificationWithPendingWrites()
+    {
+        SimulatedTransfers transfers = createTransfers();
+        HostMirror mirror = createMirror(transfers);
+        mirror.putFloat(0, 0, 1.0f);
+        mirror.markDeviceModified();
+    }
+}
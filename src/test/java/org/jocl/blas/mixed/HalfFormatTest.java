@@ -0,0 +1,97 @@
+package org.jocl.blas.mixed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link HalfFormat} and {@link HalfConversions}
+ */
+public class HalfFormatTest
+{
+    @Test
+    public void testFp16Exact()
+    {
+        HalfFormat f = HalfFormat.FP16;
+        assertEquals((short)0x3C00, f.encode(1.0f));
+        assertEquals((short)0xC000, f.encode(-2.0f));
+        assertEquals((short)0x7BFF, f.encode(65504.0f));
+        assertEquals((short)0x0001, f.encode((float)Math.pow(2, -24)));
+        assertEquals(65504.0f, f.decode((short)0x7BFF), 0.0f);
+        assertEquals((float)Math.pow(2, -24), f.decode((short)0x0001), 0.0f);
+    }
+
+    @Test
+    public void testFp16Special()
+    {
+        HalfFormat f = HalfFormat.FP16;
+        assertEquals((short)0x7C00, f.encode(Float.POSITIVE_INFINITY));
+        assertEquals((short)0xFC00, f.encode(Float.NEGATIVE_INFINITY));
+        assertEquals((short)0x7C00, f.encode(1.0e6f));
+        assertEquals((short)0x8000, f.encode(-1.0e-10f));
+        assertTrue(Float.isNaN(f.decode(f.encode(Float.NaN))));
+        assertEquals(Float.POSITIVE_INFINITY, f.decode((short)0x7C00), 0.0f);
+    }
+
+    @Test
+    public void testFp16RoundToNearestEven()
+    {
+        HalfFormat f = HalfFormat.FP16;
+        float ulp = (float)Math.pow(2, -10);
+        // Halfway between 1 and 1+ulp rounds to the even value 1
+        assertEquals((short)0x3C00, f.encode(1.0f + ulp / 2));
+        // Halfway between 1+ulp and 1+2ulp rounds to the even 1+2ulp
+        assertEquals((short)0x3C02, f.encode(1.0f + 3 * ulp / 2));
+    }
+
+    @Test
+    public void testBf16()
+    {
+        HalfFormat f = HalfFormat.BF16;
+        assertEquals((short)0x3F80, f.encode(1.0f));
+        assertEquals((short)0x7F80, f.encode(Float.POSITIVE_INFINITY));
+        assertTrue(Float.isNaN(f.decode(f.encode(Float.NaN))));
+        float ulp = (float)Math.pow(2, -7);
+        assertEquals((short)0x3F80, f.encode(1.0f + ulp / 2));
+        assertEquals((short)0x3F82, f.encode(1.0f + 3 * ulp / 2));
+    }
+
+    @Test
+    public void testAllFp16ValuesRoundTrip()
+    {
+        for (HalfFormat f : HalfFormat.values())
+        {
+            for (int i = 0; i < 65536; i++)
+            {
+                short s = (short)i;
+                float value = f.decode(s);
+                if (!Float.isNaN(value))
+                {
+                    assertEquals(s, f.encode(value));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConversions()
+    {
+        float src[] = { 0.5f, -1.25f, 3.0f, 1024.0f };
+        for (HalfFormat f : HalfFormat.values())
+        {
+            short encoded[] = HalfConversions.encode(f, src);
+            float decoded[] = HalfConversions.decode(f, encoded);
+            for (int i = 0; i < src.length; i++)
+            {
+                assertEquals(src[i], decoded[i], 0.0f);
+            }
+            ShortBuffer sb = ShortBuffer.allocate(src.length);
+            HalfConversions.encode(f, FloatBuffer.wrap(src), sb);
+            assertEquals(encoded[2], sb.get(2));
+        }
+    }
+}
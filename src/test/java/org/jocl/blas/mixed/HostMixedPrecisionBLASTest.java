@@ -0,0 +1,117 @@
+package org.jocl.blas.mixed;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.clblasTranspose;
+import org.jocl.blas.host.HostBLAS;
+import org.junit.Test;
+
+/**
+ * Tests for {@link HostMixedPrecisionBLAS}, comparing the results 
+ * against the products of {@link HostBLAS} on the decoded matrices
+ */
+public class HostMixedPrecisionBLASTest
+{
+    private static final int ORDERS[] = {
+        clblasOrder.clblasRowMajor, clblasOrder.clblasColumnMajor };
+    private static final int TRANSPOSES[] = {
+        clblasTranspose.clblasNoTrans, clblasTranspose.clblasTrans };
+
+    @Test
+    public void testSgemm()
+    {
+        int M = 13;
+        int N = 9;
+        int K = 21;
+        Random random = new Random(0);
+        for (HalfFormat format : HalfFormat.values())
+        {
+            for (int order : ORDERS)
+            {
+                for (int transA : TRANSPOSES)
+                {
+                    for (int transB : TRANSPOSES)
+                    {
+                        short A[] = random(format, random, 3 + M * K);
+                        short B[] = random(format, random, 2 + K * N);
+                        float C[] = randomFloats(random, 1 + M * N);
+                        float expected[] = C.clone();
+                        boolean rowMajor = order == clblasOrder.clblasRowMajor;
+                        boolean nA = transA == clblasTranspose.clblasNoTrans;
+                        boolean nB = transB == clblasTranspose.clblasNoTrans;
+                        int lda = (nA == rowMajor) ? K : M;
+                        int ldb = (nB == rowMajor) ? N : K;
+                        int ldc = rowMajor ? N : M;
+                        HostBLAS.clblasSgemm(order, transA, transB, 
+                            M, N, K, 0.5f, 
+                            HalfConversions.decode(format, A), 3, lda, 
+                            HalfConversions.decode(format, B), 2, ldb, 
+                            0.25f, expected, 1, ldc);
+                        HostMixedPrecisionBLAS.sgemm(format, order, 
+                            transA, transB, M, N, K, 0.5f, A, 3, lda, 
+                            B, 2, ldb, 0.25f, C, 1, ldc);
+                        assertClose(expected, C);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSgemv()
+    {
+        int M = 17;
+        int N = 11;
+        Random random = new Random(1);
+        for (HalfFormat format : HalfFormat.values())
+        {
+            for (int order : ORDERS)
+            {
+                for (int transA : TRANSPOSES)
+                {
+                    for (int incx : new int[] { 1, -2 })
+                    {
+                        short A[] = random(format, random, 4 + M * N);
+                        float x[] = randomFloats(random, 2 * Math.max(M, N));
+                        float y[] = randomFloats(random, 1 + Math.max(M, N));
+                        float expected[] = y.clone();
+                        int lda = order == clblasOrder.clblasRowMajor ? N : M;
+                        HostBLAS.clblasSgemv(order, transA, M, N, 2.0f, 
+                            HalfConversions.decode(format, A), 4, lda, 
+                            x, 1, incx, -1.0f, expected, 1, 1);
+                        HostMixedPrecisionBLAS.sgemv(format, order, 
+                            transA, M, N, 2.0f, A, 4, lda, 
+                            x, 1, incx, -1.0f, y, 1, 1);
+                        assertClose(expected, y);
+                    }
+                }
+            }
+        }
+    }
+
+    private static short[] random(HalfFormat format, Random random, int n)
+    {
+        return HalfConversions.encode(format, randomFloats(random, n));
+    }
+
+    private static float[] randomFloats(Random random, int n)
+    {
+        float result[] = new float[n];
+        for (int i = 0; i < n; i++)
+        {
+            result[i] = random.nextFloat() * 2 - 1;
+        }
+        return result;
+    }
+
+    private static void assertClose(float expected[], float actual[])
+    {
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertEquals(expected[i], actual[i], 1e-4f);
+        }
+    }
+}
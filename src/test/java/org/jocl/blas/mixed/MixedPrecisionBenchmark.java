@@ -0,0 +1,107 @@
+package org.jocl.blas.mixed;
+
+import java.util.Random;
+
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.clblasTranspose;
+import org.jocl.blas.host.HostBLAS;
+
+/**
+ * A benchmark for the matrix-vector product with a matrix that is 
+ * stored in float precision, compared to a matrix that is stored in a
+ * {@link HalfFormat}, on the host path. This does not require an OpenCL
+ * device. <br>
+ * <br>
+ * The matrix is larger than the caches, so that the product is bound 
+ * by the memory bandwidth. The reported bandwidth refers to the bytes 
+ * of the matrix that are read. The number of rows and columns may be 
+ * given as the first and second argument.
+ */
+public class MixedPrecisionBenchmark
+{
+    private static final int RUNS = 20;
+    private static int rows = 4096;
+    private static int columns = 8192;
+
+    public static void main(String[] args)
+    {
+        if (args.length > 1)
+        {
+            rows = Integer.parseInt(args[0]);
+            columns = Integer.parseInt(args[1]);
+        }
+        Random random = new Random(0);
+        float A[] = new float[rows * columns];
+        for (int i = 0; i < A.length; i++)
+        {
+            A[i] = random.nextFloat() * 2 - 1;
+        }
+        float x[] = new float[columns];
+        for (int i = 0; i < x.length; i++)
+        {
+            x[i] = random.nextFloat() * 2 - 1;
+        }
+        short bf16[] = HalfConversions.encode(HalfFormat.BF16, A);
+        short fp16[] = HalfConversions.encode(HalfFormat.FP16, A);
+        float y[] = new float[rows];
+
+        // Warm-up
+        for (int i = 0; i < 5; i++)
+        {
+            runFloat(A, x, y);
+            runHalf(HalfFormat.BF16, bf16, x, y);
+            runHalf(HalfFormat.FP16, fp16, x, y);
+        }
+        System.out.println("Matrix: " + rows + " x " + columns + 
+            ", runs: " + RUNS);
+        System.out.println("FP32: " + runFloat(A, x, y));
+        System.out.println("BF16: " + runHalf(HalfFormat.BF16, bf16, x, y));
+        System.out.println("FP16: " + runHalf(HalfFormat.FP16, fp16, x, y));
+    }
+
+    private static Result runFloat(float A[], float x[], float y[])
+    {
+        long before = System.nanoTime();
+        for (int r = 0; r < RUNS; r++)
+        {
+            HostBLAS.clblasSgemv(clblasOrder.clblasRowMajor, 
+                clblasTranspose.clblasNoTrans, rows, columns, 1.0f, 
+                A, 0, columns, x, 0, 1, 0.0f, y, 0, 1);
+        }
+        long after = System.nanoTime();
+        return new Result((after - before) / RUNS, (long)A.length * 4);
+    }
+
+    private static Result runHalf(HalfFormat format, short A[], 
+        float x[], float y[])
+    {
+        long before = System.nanoTime();
+        for (int r = 0; r < RUNS; r++)
+        {
+            HostMixedPrecisionBLAS.sgemv(format, clblasOrder.clblasRowMajor, 
+                clblasTranspose.clblasNoTrans, rows, columns, 1.0f, 
+                A, 0, columns, x, 0, 1, 0.0f, y, 0, 1);
+        }
+        long after = System.nanoTime();
+        return new Result((after - before) / RUNS, (long)A.length * 2);
+    }
+
+    private static class Result
+    {
+        private final long durationNs;
+        private final long bytes;
+
+        Result(long durationNs, long bytes)
+        {
+            this.durationNs = durationNs;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%8.3f ms, matrix %6.1f MB, %6.2f GB/s", 
+                durationNs / 1e6, bytes / 1e6, (double)bytes / durationNs);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.jocl.blas.quantized;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.clblasTranspose;
+import org.jocl.blas.host.HostBLAS;
+import org.junit.Test;
+
+/**
+ * Tests for {@link HostQuantizedBLAS}, comparing the results against 
+ * the products of {@link HostBLAS} on the dequantized operands
+ */
+public class HostQuantizedBLASTest
+{
+    @Test
+    public void testSgemv()
+    {
+        int M = 23;
+        int K = 41;
+        Random random = new Random(0);
+        QuantizedMatrix A = randomMatrix(random, M, K);
+        float dA[] = new float[M * K];
+        A.dequantize(clblasOrder.clblasRowMajor, dA, 0, K);
+        for (int incx : new int[] { 1, 2, -1 })
+        {
+            float x[] = randomFloats(random, 1 + K * Math.abs(incx));
+            float y[] = randomFloats(random, M);
+            float expected[] = y.clone();
+            float dx[] = dequantizedVector(K, x, 1, incx);
+            HostBLAS.clblasSgemv(clblasOrder.clblasRowMajor, 
+                clblasTranspose.clblasNoTrans, M, K, 1.5f, 
+                dA, 0, K, dx, 0, 1, 0.5f, expected, 0, 1);
+            HostQuantizedBLAS.sgemv(1.5f, A, x, 1, incx, 0.5f, y, 0, 1);
+            assertClose(expected, y);
+        }
+    }
+
+    @Test
+    public void testSgemm()
+    {
+        int M = 13;
+        int K = 29;
+        int N = 7;
+        Random random = new Random(1);
+        QuantizedMatrix A = randomMatrix(random, M, K);
+        for (int order : new int[] { 
+            clblasOrder.clblasRowMajor, clblasOrder.clblasColumnMajor })
+        {
+            for (int transB : new int[] { 
+                clblasTranspose.clblasNoTrans, clblasTranspose.clblasTrans })
+            {
+                boolean rowMajor = order == clblasOrder.clblasRowMajor;
+                boolean opB = 
+                    (transB == clblasTranspose.clblasNoTrans) == rowMajor;
+                int ldb = opB ? N : K;
+                int ldc = rowMajor ? N : M;
+                float B[] = randomFloats(random, K * N);
+                float C[] = randomFloats(random, M * N);
+                float expected[] = C.clone();
+                
+                // The dequantized op(B), as a row-major K x N matrix
+                float dB[] = new float[K * N];
+                for (int j = 0; j < N; j++)
+                {
+                    float column[] = dequantizedVector(K, B, 
+                        opB ? j : j * ldb, opB ? ldb : 1);
+                    for (int p = 0; p < K; p++)
+                    {
+                        dB[p * N + j] = column[p];
+                    }
+                }
+                float dA2[] = new float[M * K];
+                A.dequantize(order, dA2, 0, rowMajor ? K : M);
+                float dB2[] = new float[K * N];
+                for (int p = 0; p < K; p++)
+                {
+                    for (int j = 0; j < N; j++)
+                    {
+                        dB2[rowMajor ? p * N + j : j * K + p] = dB[p * N + j];
+                    }
+                }
+                HostBLAS.clblasSgemm(order, clblasTranspose.clblasNoTrans, 
+                    clblasTranspose.clblasNoTrans, M, N, K, 2.0f, 
+                    dA2, 0, rowMajor ? K : M, dB2, 0, rowMajor ? N : K, 
+                    -1.0f, expected, 0, ldc);
+                HostQuantizedBLAS.sgemm(order, transB, N, 2.0f, A, 
+                    B, 0, ldb, -1.0f, C, 0, ldc);
+                assertClose(expected, C);
+            }
+        }
+    }
+
+    private static QuantizedMatrix randomMatrix(Random random, int M, int K)
+    {
+        float A[] = randomFloats(random, M * K);
+        for (int i = 0; i < A.length; i++)
+        {
+            A[i] += 0.5f;
+        }
+        return QuantizedMatrix.quantize(
+            clblasOrder.clblasRowMajor, M, K, A, 0, K);
+    }
+
+    private static float[] dequantizedVector(int n, 
+        float x[], int offx, int incx)
+    {
+        byte q[] = new byte[n];
+        float scale = Int8Quantization.quantizeSymmetric(
+            n, x, offx, incx, q, 0);
+        float result[] = new float[n];
+        for (int j = 0; j < n; j++)
+        {
+            result[j] = Int8Quantization.dequantize(q[j], scale, 0);
+        }
+        return result;
+    }
+
+    private static float[] randomFloats(Random random, int n)
+    {
+        float result[] = new float[n];
+        for (int i = 0; i < n; i++)
+        {
+            result[i] = random.nextFloat() * 2 - 1;
+        }
+        return result;
+    }
+
+    private static void assertClose(float expected[], float actual[])
+    {
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertEquals(expected[i], actual[i], 1e-4f);
+        }
+    }
+}
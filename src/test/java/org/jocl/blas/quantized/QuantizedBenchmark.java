@@ -0,0 +1,136 @@
+package org.jocl.blas.quantized;
+
+import java.util.Random;
+
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.clblasTranspose;
+import org.jocl.blas.host.HostBLAS;
+
+/**
+ * A benchmark for the matrix-vector and matrix-matrix products with a 
+ * {@link QuantizedMatrix}, compared to the products with a float 
+ * matrix, on the host path. This does not require an OpenCL device.
+ * <br>
+ * <br>
+ * The reported bandwidth refers to the bytes of the weight matrix that
+ * are read by the matrix-vector product. The number of rows and 
+ * columns may be given as the first and second argument.
+ */
+public class QuantizedBenchmark
+{
+    private static final int RUNS = 20;
+    private static final int GEMM_COLUMNS = 32;
+    private static int rows = 4096;
+    private static int columns = 8192;
+
+    public static void main(String[] args)
+    {
+        if (args.length > 1)
+        {
+            rows = Integer.parseInt(args[0]);
+            columns = Integer.parseInt(args[1]);
+        }
+        Random random = new Random(0);
+        float A[] = randomFloats(random, rows * columns);
+        float x[] = randomFloats(random, columns);
+        float B[] = randomFloats(random, columns * GEMM_COLUMNS);
+        QuantizedMatrix q = QuantizedMatrix.quantize(
+            clblasOrder.clblasRowMajor, rows, columns, A, 0, columns);
+        float y[] = new float[rows];
+        float C[] = new float[rows * GEMM_COLUMNS];
+
+        // Warm-up
+        for (int i = 0; i < 5; i++)
+        {
+            runFloatGemv(A, x, y);
+            runQuantizedGemv(q, x, y);
+        }
+        runFloatGemm(A, B, C);
+        runQuantizedGemm(q, B, C);
+        
+        System.out.println("Matrix: " + rows + " x " + columns + 
+            ", runs: " + RUNS);
+        System.out.println("GEMV FP32: " + runFloatGemv(A, x, y));
+        System.out.println("GEMV INT8: " + runQuantizedGemv(q, x, y));
+        System.out.println("GEMM FP32, " + GEMM_COLUMNS + " columns: " + 
+            runFloatGemm(A, B, C));
+        System.out.println("GEMM INT8, " + GEMM_COLUMNS + " columns: " + 
+            runQuantizedGemm(q, B, C));
+    }
+
+    private static Result runFloatGemv(float A[], float x[], float y[])
+    {
+        long before = System.nanoTime();
+        for (int r = 0; r < RUNS; r++)
+        {
+            HostBLAS.clblasSgemv(clblasOrder.clblasRowMajor, 
+                clblasTranspose.clblasNoTrans, rows, columns, 1.0f, 
+                A, 0, columns, x, 0, 1, 0.0f, y, 0, 1);
+        }
+        long after = System.nanoTime();
+        return new Result((after - before) / RUNS, (long)A.length * 4);
+    }
+
+    private static Result runQuantizedGemv(QuantizedMatrix A, 
+        float x[], float y[])
+    {
+        long before = System.nanoTime();
+        for (int r = 0; r < RUNS; r++)
+        {
+            HostQuantizedBLAS.sgemv(1.0f, A, x, 0, 1, 0.0f, y, 0, 1);
+        }
+        long after = System.nanoTime();
+        return new Result((after - before) / RUNS, (long)rows * columns);
+    }
+
+    private static Result runFloatGemm(float A[], float B[], float C[])
+    {
+        long before = System.nanoTime();
+        HostBLAS.clblasSgemm(clblasOrder.clblasRowMajor, 
+            clblasTranspose.clblasNoTrans, clblasTranspose.clblasNoTrans, 
+            rows, GEMM_COLUMNS, columns, 1.0f, A, 0, columns, 
+            B, 0, GEMM_COLUMNS, 0.0f, C, 0, GEMM_COLUMNS);
+        long after = System.nanoTime();
+        return new Result(after - before, (long)A.length * 4);
+    }
+
+    private static Result runQuantizedGemm(QuantizedMatrix A, 
+        float B[], float C[])
+    {
+        long before = System.nanoTime();
+        HostQuantizedBLAS.sgemm(clblasOrder.clblasRowMajor, 
+            clblasTranspose.clblasNoTrans, GEMM_COLUMNS, 1.0f, A, 
+            B, 0, GEMM_COLUMNS, 0.0f, C, 0, GEMM_COLUMNS);
+        long after = System.nanoTime();
+        return new Result(after - before, (long)rows * columns);
+    }
+
+    private static float[] randomFloats(Random random, int n)
+    {
+        float result[] = new float[n];
+        for (int i = 0; i < n; i++)
+        {
+            result[i] = random.nextFloat() * 2 - 1;
+        }
+        return result;
+    }
+
+    private static class Result
+    {
+        private final long durationNs;
+        private final long bytes;
+
+        Result(long durationNs, long bytes)
+        {
+            this.durationNs = durationNs;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%9.3f ms, matrix %6.1f MB, %6.2f GB/s", 
+                durationNs / 1e6, bytes / 1e6, (double)bytes / durationNs);
+        }
+    }
+}
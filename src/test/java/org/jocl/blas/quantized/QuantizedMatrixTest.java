@@ -0,0 +1,90 @@
+package org.jocl.blas.quantized;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.jocl.blas.clblasOrder;
+import org.junit.Test;
+
+/**
+ * Tests for {@link QuantizedMatrix} and {@link Int8Quantization}
+ */
+public class QuantizedMatrixTest
+{
+    @Test
+    public void testRoundTripError()
+    {
+        int M = 7;
+        int N = 19;
+        Random random = new Random(0);
+        float A[] = new float[M * N];
+        for (int i = 0; i < A.length; i++)
+        {
+            A[i] = random.nextFloat() * 4 - 1;
+        }
+        for (int order : new int[] { 
+            clblasOrder.clblasRowMajor, clblasOrder.clblasColumnMajor })
+        {
+            int lda = order == clblasOrder.clblasRowMajor ? N : M;
+            QuantizedMatrix q = QuantizedMatrix.quantize(order, M, N, A, 0, lda);
+            float D[] = new float[M * N];
+            q.dequantize(order, D, 0, lda);
+            float scales[] = q.getScales();
+            for (int i = 0; i < M; i++)
+            {
+                for (int j = 0; j < N; j++)
+                {
+                    int index = order == clblasOrder.clblasRowMajor ? 
+                        i * N + j : j * M + i;
+                    assertEquals(A[index], D[index], scales[i] / 2 + 1e-6f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testZeroIsExact()
+    {
+        float A[] = { 0.0f, 0.3f, 1.7f, 0.0f, -2.5f, 0.1f };
+        QuantizedMatrix q = QuantizedMatrix.quantize(
+            clblasOrder.clblasRowMajor, 2, 3, A, 0, 3);
+        float D[] = new float[6];
+        q.dequantize(clblasOrder.clblasRowMajor, D, 0, 3);
+        assertEquals(0.0f, D[0], 0.0f);
+        assertEquals(0.0f, D[3], 0.0f);
+    }
+
+    @Test
+    public void testConstantRow()
+    {
+        float A[] = { 0.0f, 0.0f, 0.0f };
+        QuantizedMatrix q = QuantizedMatrix.quantize(
+            clblasOrder.clblasRowMajor, 1, 3, A, 0, 3);
+        assertTrue(q.getScales()[0] > 0.0f);
+        float D[] = new float[3];
+        q.dequantize(clblasOrder.clblasRowMajor, D, 0, 3);
+        assertEquals(0.0f, D[1], 0.0f);
+    }
+
+    @Test
+    public void testQuantizeSymmetric()
+    {
+        float x[] = { 1.0f, -2.0f, 0.5f };
+        byte q[] = new byte[3];
+        float scale = Int8Quantization.quantizeSymmetric(3, x, 0, -1, q, 0);
+        assertEquals(2.0f / 127, scale, 0.0f);
+        // Negative increment: the vector is stored in reverse order
+        assertEquals(32, q[0]);
+        assertEquals(-127, q[1]);
+        assertEquals(64, q[2]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidZeroPoint()
+    {
+        new QuantizedMatrix(1, 1, new byte[1], new float[] { 1.0f }, 
+            new int[] { 128 });
+    }
+}
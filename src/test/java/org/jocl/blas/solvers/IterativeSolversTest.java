@@ -0,0 +1,247 @@
+package org.jocl.blas.solvers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.clblasTranspose;
+import org.jocl.blas.host.HostBLAS;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link IterativeSolvers}, using the 
+ * {@link HostSolverBackend}
+ */
+public class IterativeSolversTest
+{
+    private static final int N = 60;
+
+    private static final SolverOptions OPTIONS = SolverOptions.DEFAULT
+        .withTolerance(1e-5f)
+        .withCheckInterval(4)
+        .withRestart(20);
+
+    private interface Solver
+    {
+        SolverResult solve(HostSolverBackend backend, 
+            LinearOperator<float[]> operator, 
+            Preconditioner<float[]> preconditioner, 
+            float b[], float x[], SolverOptions options);
+    }
+
+    private static final Solver CG = new Solver()
+    {
+        @Override
+        public SolverResult solve(HostSolverBackend backend, 
+            LinearOperator<float[]> operator, 
+            Preconditioner<float[]> preconditioner, 
+            float b[], float x[], SolverOptions options)
+        {
+            return IterativeSolvers.cg(
+                backend, operator, preconditioner, b, x, options);
+        }
+    };
+
+    private static final Solver BICGSTAB = new Solver()
+    {
+        @Override
+        public SolverResult solve(HostSolverBackend backend, 
+            LinearOperator<float[]> operator, 
+            Preconditioner<float[]> preconditioner, 
+            float b[], float x[], SolverOptions options)
+        {
+            return IterativeSolvers.bicgstab(
+                backend, operator, preconditioner, b, x, options);
+        }
+    };
+
+    private static final Solver GMRES = new Solver()
+    {
+        @Override
+        public SolverResult solve(HostSolverBackend backend, 
+            LinearOperator<float[]> operator, 
+            Preconditioner<float[]> preconditioner, 
+            float b[], float x[], SolverOptions options)
+        {
+            return IterativeSolvers.gmres(
+                backend, operator, preconditioner, b, x, options);
+        }
+    };
+
+    @Test
+    public void testCgSymmetric()
+    {
+        float A[] = createSymmetricPositiveDefinite(N, 0);
+        testSolver(CG, A, false);
+        testSolver(CG, A, true);
+    }
+
+    @Test
+    public void testBicgstabNonsymmetric()
+    {
+        float A[] = createNonsymmetric(N, 1);
+        testSolver(BICGSTAB, A, false);
+        testSolver(BICGSTAB, A, true);
+    }
+
+    @Test
+    public void testGmresNonsymmetric()
+    {
+        float A[] = createNonsymmetric(N, 2);
+        testSolver(GMRES, A, false);
+        testSolver(GMRES, A, true);
+    }
+
+    @Test
+    public void testExactConvergenceBetweenChecks()
+    {
+        // With the identity, all methods converge exactly in the first
+        // iteration, and have to stay at the solution until the check
+        float A[] = new float[N * N];
+        for (int i = 0; i < N; i++)
+        {
+            A[i * N + i] = 1.0f;
+        }
+        SolverOptions options = OPTIONS.withCheckInterval(8);
+        for (Solver solver : new Solver[] { CG, BICGSTAB, GMRES })
+        {
+            SolverResult result = testSolver(solver, A, false, options);
+            assertTrue(result.getIterations() <= 8);
+        }
+    }
+
+    @Test
+    public void testZeroRightHandSide()
+    {
+        HostSolverBackend backend = new HostSolverBackend(N);
+        float A[] = createSymmetricPositiveDefinite(N, 3);
+        float x[] = createRandom(N, 4);
+        SolverResult result = IterativeSolvers.cg(backend, 
+            backend.createDenseOperator(clblasOrder.clblasRowMajor, A, 0, N),
+            null, new float[N], x, OPTIONS);
+        assertTrue(result.isConverged());
+        assertEquals(0, result.getIterations());
+        assertArrayEquals(new float[N], x, 0.0f);
+    }
+
+    @Test
+    public void testMaximumIterations()
+    {
+        HostSolverBackend backend = new HostSolverBackend(N);
+        float A[] = createSymmetricPositiveDefinite(N, 5);
+        float b[] = createRandom(N, 6);
+        SolverResult result = IterativeSolvers.cg(backend, 
+            backend.createDenseOperator(clblasOrder.clblasRowMajor, A, 0, N),
+            null, b, new float[N], 
+            OPTIONS.withTolerance(0.0f).withMaximumIterations(5));
+        assertEquals(SolverResult.Status.MAXIMUM_ITERATIONS, 
+            result.getStatus());
+        assertEquals(5, result.getIterations());
+        
+        // The initial check, one after 4 iterations, and one at the end
+        assertEquals(3, result.getChecks());
+    }
+
+    private static SolverResult testSolver(
+        Solver solver, float A[], boolean preconditioned)
+    {
+        return testSolver(solver, A, preconditioned, OPTIONS);
+    }
+
+    private static SolverResult testSolver(Solver solver, float A[], 
+        boolean preconditioned, SolverOptions options)
+    {
+        HostSolverBackend backend = new HostSolverBackend(N);
+        LinearOperator<float[]> operator = 
+            backend.createDenseOperator(clblasOrder.clblasRowMajor, A, 0, N);
+        Preconditioner<float[]> preconditioner = 
+            preconditioned ? createJacobi(A) : null;
+        float b[] = createRandom(N, 7);
+        float x[] = new float[N];
+        SolverResult result = solver.solve(
+            backend, operator, preconditioner, b, x, options);
+        assertTrue(result.toString(), result.isConverged());
+        assertTrue(result.getChecks() <= 
+            result.getIterations() / options.getCheckInterval() + 
+            result.getIterations() / options.getRestart() + 3);
+        
+        float r[] = new float[N];
+        System.arraycopy(b, 0, r, 0, N);
+        HostBLAS.clblasSgemv(clblasOrder.clblasRowMajor, 
+            clblasTranspose.clblasNoTrans, N, N, -1.0f, A, 0, N, 
+            x, 0, 1, 1.0f, r, 0, 1);
+        float relativeResidual = norm(r) / norm(b);
+        assertTrue("Residual " + relativeResidual + " for " + result, 
+            relativeResidual < 1e-4f);
+        return result;
+    }
+
+    private static Preconditioner<float[]> createJacobi(final float A[])
+    {
+        return new Preconditioner<float[]>()
+        {
+            @Override
+            public void apply(float[] r, float[] z)
+            {
+                for (int i = 0; i < N; i++)
+                {
+                    z[i] = r[i] / A[i * N + i];
+                }
+            }
+        };
+    }
+
+    private static float[] createSymmetricPositiveDefinite(int n, long seed)
+    {
+        float B[] = createRandom(n * n, seed);
+        float A[] = new float[n * n];
+        for (int i = 0; i < n; i++)
+        {
+            for (int j = 0; j < n; j++)
+            {
+                float sum = 0;
+                for (int k = 0; k < n; k++)
+                {
+                    sum += B[k * n + i] * B[k * n + j];
+                }
+                A[i * n + j] = sum;
+            }
+            A[i * n + i] += n * (1 + i % 5);
+        }
+        return A;
+    }
+
+    private static float[] createNonsymmetric(int n, long seed)
+    {
+        float A[] = createRandom(n * n, seed);
+        for (int i = 0; i < n; i++)
+        {
+            A[i * n + i] += n * (1 + i % 3);
+        }
+        return A;
+    }
+
+    private static float norm(float x[])
+    {
+        double sum = 0;
+        for (float v : x)
+        {
+            sum += v * v;
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    private static float[] createRandom(int n, long seed)
+    {
+        Random random = new Random(seed);
+        float result[] = new float[n];
+        for (int i = 0; i < n; i++)
+        {
+            result[i] = random.nextFloat() * 2.0f - 1.0f;
+        }
+        return result;
+    }
+}
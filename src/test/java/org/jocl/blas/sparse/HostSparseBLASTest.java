@@ -0,0 +1,160 @@
+package org.jocl.blas.sparse;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jocl.blas.clblasOrder;
+import org.jocl.blas.clblasTranspose;
+import org.jocl.blas.host.HostBLAS;
+import org.junit.Test;
+
+/**
+ * Tests for {@link HostSparseBLAS}, comparing the results against the
+ * dense products of {@link HostBLAS}
+ */
+public class HostSparseBLASTest
+{
+    @Test
+    public void testSpmvSequential() throws InterruptedException
+    {
+        testSpmv(null, 37, 29, 0.2f);
+    }
+
+    @Test
+    public void testSpmvForked() throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            testSpmv(executor, 300, 250, 0.6f);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSpmmSequential() throws InterruptedException
+    {
+        testSpmm(null, 23, 19, 5, 0.3f);
+    }
+
+    @Test
+    public void testSpmmForked() throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            testSpmm(executor, 200, 150, 8, 0.4f);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static void testSpmv(ExecutorService executor, 
+        int M, int N, float density) throws InterruptedException
+    {
+        float A[] = createSparse(M, N, density, 1);
+        CsrMatrix csr = CsrMatrix.fromDense(
+            clblasOrder.clblasRowMajor, M, N, A, 0, N);
+        EllMatrix ell = EllMatrix.fromCsr(csr);
+        float x[] = createRandom(2 * N, 2);
+        float y[] = createRandom(M, 3);
+        float expected[] = y.clone();
+        HostBLAS.clblasSgemv(clblasOrder.clblasRowMajor, 
+            clblasTranspose.clblasNoTrans, M, N, 2.0f, A, 0, N, 
+            x, 1, -2, 0.5f, expected, 0, 1);
+        
+        float csrResult[] = y.clone();
+        HostSparseBLAS.scsrmv(executor, 2.0f, csr, x, 1, -2, 
+            0.5f, csrResult, 0, 1);
+        assertArrayEquals(expected, csrResult, 1e-4f);
+        
+        float ellResult[] = y.clone();
+        HostSparseBLAS.sellmv(executor, 2.0f, ell, x, 1, -2, 
+            0.5f, ellResult, 0, 1);
+        assertArrayEquals(expected, ellResult, 1e-4f);
+    }
+
+    private static void testSpmm(ExecutorService executor, 
+        int M, int K, int N, float density) throws InterruptedException
+    {
+        int orders[] = 
+        { 
+            clblasOrder.clblasRowMajor, 
+            clblasOrder.clblasColumnMajor 
+        };
+        float A[] = createSparse(M, K, density, 4);
+        CsrMatrix csr = CsrMatrix.fromDense(
+            clblasOrder.clblasColumnMajor, M, K, A, 0, M);
+        EllMatrix ell = EllMatrix.fromCsr(csr);
+        for (int order : orders)
+        {
+            boolean rowMajor = order == clblasOrder.clblasRowMajor;
+            int ldb = (rowMajor ? N : K) + 1;
+            int ldc = (rowMajor ? N : M) + 2;
+            float B[] = createRandom(ldb * (rowMajor ? K : N), 5);
+            float C[] = createRandom(ldc * (rowMajor ? M : N), 6);
+            float expected[] = C.clone();
+            float dense[] = A;
+            int lda = M;
+            if (rowMajor)
+            {
+                dense = new float[M * K];
+                for (int i = 0; i < M; i++)
+                {
+                    for (int j = 0; j < K; j++)
+                    {
+                        dense[i * K + j] = A[i + j * M];
+                    }
+                }
+                lda = K;
+            }
+            HostBLAS.clblasSgemm(order, clblasTranspose.clblasNoTrans, 
+                clblasTranspose.clblasNoTrans, M, N, K, 1.5f, 
+                dense, 0, lda, B, 0, ldb, -1.0f, expected, 0, ldc);
+            
+            float csrResult[] = C.clone();
+            HostSparseBLAS.scsrmm(executor, order, N, 1.5f, csr, 
+                B, 0, ldb, -1.0f, csrResult, 0, ldc);
+            assertArrayEquals(expected, csrResult, 1e-4f);
+
+            float ellResult[] = C.clone();
+            HostSparseBLAS.sellmm(executor, order, N, 1.5f, ell, 
+                B, 0, ldb, -1.0f, ellResult, 0, ldc);
+            assertArrayEquals(expected, ellResult, 1e-4f);
+        }
+    }
+
+    private static float[] createSparse(int rows, int columns, 
+        float density, long seed)
+    {
+        Random random = new Random(seed);
+        float result[] = new float[rows * columns];
+        for (int i = 0; i < result.length; i++)
+        {
+            if (random.nextFloat() < density)
+            {
+                result[i] = random.nextFloat() - 0.5f;
+            }
+        }
+        return result;
+    }
+
+    private static float[] createRandom(int n, long seed)
+    {
+        Random random = new Random(seed);
+        float result[] = new float[n];
+        for (int i = 0; i < n; i++)
+        {
+            result[i] = random.nextFloat() - 0.5f;
+        }
+        return result;
+    }
+}
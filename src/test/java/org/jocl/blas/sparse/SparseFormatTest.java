@@ -0,0 +1,57 @@
+package org.jocl.blas.sparse;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for the selection of the {@link SparseFormat} and the conversion
+ * into an {@link EllMatrix}
+ */
+public class SparseFormatTest
+{
+    @Test
+    public void testRegularRowsSelectEll()
+    {
+        // Every row has 2 or 3 elements
+        CsrMatrix matrix = new CsrMatrix(4, 5, 
+            new int[] { 0, 2, 5, 7, 10 }, 
+            new int[] { 0, 1, 1, 2, 3, 0, 4, 2, 3, 4 },
+            new float[10]);
+        assertEquals(SparseFormat.ELL, SparseFormat.select(matrix));
+    }
+
+    @Test
+    public void testSkewedRowsSelectCsr()
+    {
+        // One long row and three rows with a single element
+        CsrMatrix matrix = new CsrMatrix(4, 8, 
+            new int[] { 0, 8, 9, 10, 11 }, 
+            new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 0, 1, 2 },
+            new float[11]);
+        assertEquals(SparseFormat.CSR, SparseFormat.select(matrix));
+    }
+
+    @Test
+    public void testEllLayout()
+    {
+        CsrMatrix matrix = new CsrMatrix(3, 3, 
+            new int[] { 0, 2, 2, 3 }, 
+            new int[] { 0, 2, 1 },
+            new float[] { 1.0f, 2.0f, 3.0f });
+        EllMatrix ell = EllMatrix.fromCsr(matrix);
+        assertEquals(2, ell.getWidth());
+        assertArrayEquals(new int[] { 0, -1, 1, 2, -1, -1 }, 
+            ell.getColumnIndices());
+        assertArrayEquals(new float[] { 1.0f, 0.0f, 3.0f, 2.0f, 0.0f, 0.0f },
+            ell.getValues(), 0.0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidColumnIndex()
+    {
+        new CsrMatrix(1, 2, new int[] { 0, 1 }, new int[] { 2 }, 
+            new float[] { 1.0f });
+    }
+}